@@ -0,0 +1,360 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.querycache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.pinot.common.metrics.BrokerGauge;
+import org.apache.pinot.common.metrics.BrokerMeter;
+import org.apache.pinot.common.metrics.BrokerMetrics;
+import org.apache.pinot.common.request.BrokerRequest;
+import org.apache.pinot.common.request.PinotQuery;
+import org.apache.pinot.common.response.broker.BrokerResponseNative;
+import org.apache.pinot.core.routing.SegmentsToQuery;
+import org.apache.pinot.core.routing.TableRouteInfo;
+import org.apache.pinot.core.transport.ServerInstance;
+import org.apache.pinot.spi.config.table.QueryConfig;
+import org.apache.pinot.spi.env.PinotConfiguration;
+import org.apache.pinot.spi.utils.CommonConstants.Broker;
+import org.apache.pinot.spi.utils.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The {@code BrokerQueryResultCache} caches the final broker responses of single-stage queries.
+ * <p>The cache key is a hash of:
+ * <ul>
+ *   <li>The compiled query (without query options) and the sorted query options</li>
+ *   <li>For each queried physical table: the table name, the query sent to the servers and the sorted list of segments
+ *   selected by the routing</li>
+ *   <li>For each queried physical table: the routing generation, which is bumped whenever the routing of the table
+ *   changes (e.g. external view change, segment refresh), so that the cached results become unreachable</li>
+ * </ul>
+ * <p>Entries are bounded by an estimated memory budget, and expire after a TTL which can be configured per table via
+ * {@link QueryConfig#getResultCacheTtlMs()}. Only complete responses (no exception, no partial result) are cached.
+ * The entries of a table are evicted when its routing changes, so that the unreachable entries do not take the memory
+ * budget until they expire.
+ * <p>Only the result of the query is cached, but not the execution stats (e.g. number of documents scanned, number of
+ * servers queried), which are left empty for the responses served from the cache.
+ */
+@ThreadSafe
+public class BrokerQueryResultCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BrokerQueryResultCache.class);
+
+  // Rough per entry overhead (key, cache node, entry object) accounted in the memory budget
+  private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+  private final BrokerMetrics _brokerMetrics;
+  private final long _maxSizeInBytes;
+  private final long _defaultTtlMs;
+  private final boolean _realtimeEnabled;
+  private final Cache<String, CachedResponse> _cache;
+  private final Map<String, AtomicLong> _routingGenerations = new ConcurrentHashMap<>();
+  // Keys of the cached entries for each table, used to evict the entries of the table when its routing changes
+  private final Map<String, Set<String>> _tableKeys = new ConcurrentHashMap<>();
+  private final AtomicLong _sizeInBytes = new AtomicLong();
+
+  public BrokerQueryResultCache(PinotConfiguration config, BrokerMetrics brokerMetrics) {
+    this(config.getProperty(Broker.CONFIG_OF_BROKER_QUERY_RESULT_CACHE_MAX_SIZE_BYTES,
+            Broker.DEFAULT_BROKER_QUERY_RESULT_CACHE_MAX_SIZE_BYTES),
+        config.getProperty(Broker.CONFIG_OF_BROKER_QUERY_RESULT_CACHE_TTL_MS,
+            Broker.DEFAULT_BROKER_QUERY_RESULT_CACHE_TTL_MS),
+        config.getProperty(Broker.CONFIG_OF_BROKER_QUERY_RESULT_CACHE_REALTIME_ENABLED,
+            Broker.DEFAULT_BROKER_QUERY_RESULT_CACHE_REALTIME_ENABLED), brokerMetrics);
+  }
+
+  @VisibleForTesting
+  BrokerQueryResultCache(long maxSizeInBytes, long defaultTtlMs, boolean realtimeEnabled,
+      BrokerMetrics brokerMetrics) {
+    _brokerMetrics = brokerMetrics;
+    _maxSizeInBytes = maxSizeInBytes;
+    _defaultTtlMs = defaultTtlMs;
+    _realtimeEnabled = realtimeEnabled;
+    _cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxSizeInBytes)
+        .<String, CachedResponse>weigher((key, value) -> value.getSizeInBytes())
+        .<String, CachedResponse>removalListener(notification -> {
+          CachedResponse cachedResponse = notification.getValue();
+          _sizeInBytes.addAndGet(-cachedResponse.getSizeInBytes());
+          // The replaced entry has the same key and tables as the new entry
+          if (notification.getCause() != RemovalCause.REPLACED) {
+            for (String tableName : cachedResponse._tableNames) {
+              Set<String> keys = _tableKeys.get(tableName);
+              if (keys != null) {
+                keys.remove(notification.getKey());
+              }
+            }
+          }
+        })
+        .build();
+    _brokerMetrics.setOrUpdateGlobalGauge(BrokerGauge.QUERY_RESULT_CACHE_ENTRIES, _cache::size);
+    _brokerMetrics.setOrUpdateGlobalGauge(BrokerGauge.QUERY_RESULT_CACHE_SIZE_BYTES, _sizeInBytes::get);
+    LOGGER.info("Initialized broker query result cache with max size: {} bytes, default TTL: {}ms, realtime enabled: "
+        + "{}", maxSizeInBytes, defaultTtlMs, realtimeEnabled);
+  }
+
+  /**
+   * Returns the TTL for the results of a query hitting the given tables, which is the minimum TTL across the tables.
+   * Returns non-positive value if the results should not be cached.
+   */
+  public long getTtlMs(TableRouteInfo routeInfo) {
+    long ttlMs = Long.MAX_VALUE;
+    if (routeInfo.getOfflineBrokerRequest() != null) {
+      ttlMs = Math.min(ttlMs, getTtlMs(routeInfo.getOfflineTableQueryConfig()));
+    }
+    if (routeInfo.getRealtimeBrokerRequest() != null) {
+      if (!_realtimeEnabled) {
+        return 0;
+      }
+      ttlMs = Math.min(ttlMs, getTtlMs(routeInfo.getRealtimeTableQueryConfig()));
+    }
+    return ttlMs != Long.MAX_VALUE ? ttlMs : 0;
+  }
+
+  private long getTtlMs(@Nullable QueryConfig queryConfig) {
+    if (queryConfig != null && queryConfig.getResultCacheTtlMs() != null) {
+      return queryConfig.getResultCacheTtlMs();
+    }
+    return _defaultTtlMs;
+  }
+
+  /**
+   * Computes the cache key for the query based on the routing already calculated within the given route info.
+   */
+  public CacheKey getCacheKey(PinotQuery pinotQuery, TableRouteInfo routeInfo) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    putQuery(hasher, pinotQuery);
+    List<String> tableNames = new ArrayList<>(2);
+    List<Long> routingGenerations = new ArrayList<>(2);
+    BrokerRequest offlineBrokerRequest = routeInfo.getOfflineBrokerRequest();
+    if (offlineBrokerRequest != null) {
+      String offlineTableName = routeInfo.getOfflineTableName();
+      long routingGeneration = getRoutingGeneration(offlineTableName);
+      putTable(hasher, offlineTableName, routingGeneration, offlineBrokerRequest.getPinotQuery(),
+          routeInfo.getOfflineRoutingTable());
+      tableNames.add(offlineTableName);
+      routingGenerations.add(routingGeneration);
+    }
+    BrokerRequest realtimeBrokerRequest = routeInfo.getRealtimeBrokerRequest();
+    if (realtimeBrokerRequest != null) {
+      String realtimeTableName = routeInfo.getRealtimeTableName();
+      long routingGeneration = getRoutingGeneration(realtimeTableName);
+      putTable(hasher, realtimeTableName, routingGeneration, realtimeBrokerRequest.getPinotQuery(),
+          routeInfo.getRealtimeRoutingTable());
+      tableNames.add(realtimeTableName);
+      routingGenerations.add(routingGeneration);
+    }
+    return new CacheKey(hasher.hash().toString(), tableNames, routingGenerations);
+  }
+
+  private static void putQuery(Hasher hasher, PinotQuery pinotQuery) {
+    PinotQuery queryWithoutOptions = pinotQuery.deepCopy();
+    queryWithoutOptions.unsetQueryOptions();
+    hasher.putString(queryWithoutOptions.toString(), StandardCharsets.UTF_8);
+    Map<String, String> queryOptions = pinotQuery.getQueryOptions();
+    if (queryOptions != null) {
+      for (Map.Entry<String, String> entry : new TreeMap<>(queryOptions).entrySet()) {
+        hasher.putString(entry.getKey(), StandardCharsets.UTF_8).putByte((byte) '=')
+            .putString(entry.getValue(), StandardCharsets.UTF_8).putByte((byte) ';');
+      }
+    }
+  }
+
+  private static void putTable(Hasher hasher, String tableNameWithType, long routingGeneration,
+      PinotQuery serverPinotQuery, @Nullable Map<ServerInstance, SegmentsToQuery> routingTable) {
+    hasher.putString(tableNameWithType, StandardCharsets.UTF_8).putLong(routingGeneration);
+    putQuery(hasher, serverPinotQuery);
+    List<String> segments = new ArrayList<>();
+    if (routingTable != null) {
+      for (SegmentsToQuery segmentsToQuery : routingTable.values()) {
+        segments.addAll(segmentsToQuery.getSegments());
+        segments.addAll(segmentsToQuery.getOptionalSegments());
+      }
+    }
+    segments.sort(null);
+    for (String segment : segments) {
+      hasher.putString(segment, StandardCharsets.UTF_8).putByte((byte) ',');
+    }
+  }
+
+  /**
+   * Returns a copy of the cached response for the given key, or {@code null} if it does not exist or has expired. The
+   * returned response does not contain the execution stats.
+   */
+  @Nullable
+  public BrokerResponseNative get(CacheKey cacheKey, String rawTableName) {
+    CachedResponse cachedResponse = _cache.getIfPresent(cacheKey._key);
+    if (cachedResponse != null) {
+      if (cachedResponse._expirationTimeMs > System.currentTimeMillis()) {
+        try {
+          BrokerResponseNative brokerResponse =
+              JsonUtils.bytesToObject(cachedResponse._serializedResponse, BrokerResponseNative.class);
+          _brokerMetrics.addMeteredTableValue(rawTableName, BrokerMeter.QUERY_RESULT_CACHE_HITS, 1);
+          return brokerResponse;
+        } catch (Exception e) {
+          LOGGER.warn("Caught exception while deserializing cached response for table: {}", rawTableName, e);
+        }
+      }
+      _cache.invalidate(cacheKey._key);
+    }
+    _brokerMetrics.addMeteredTableValue(rawTableName, BrokerMeter.QUERY_RESULT_CACHE_MISSES, 1);
+    return null;
+  }
+
+  /**
+   * Caches the response for the given key if the response is complete, and the routing of the queried tables has not
+   * changed since the key was computed.
+   */
+  public void put(CacheKey cacheKey, BrokerResponseNative brokerResponse, long ttlMs) {
+    if (!isCacheable(brokerResponse)) {
+      return;
+    }
+    for (int i = 0; i < cacheKey._tableNames.size(); i++) {
+      if (getRoutingGeneration(cacheKey._tableNames.get(i)) != cacheKey._routingGenerations.get(i)) {
+        return;
+      }
+    }
+    byte[] serializedResponse;
+    try {
+      serializedResponse = JsonUtils.objectToBytes(getResultResponse(brokerResponse));
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while serializing response for tables: {}", cacheKey._tableNames, e);
+      return;
+    }
+    CachedResponse cachedResponse =
+        new CachedResponse(serializedResponse, System.currentTimeMillis() + ttlMs, cacheKey._tableNames);
+    if (cachedResponse.getSizeInBytes() > _maxSizeInBytes) {
+      return;
+    }
+    for (String tableName : cacheKey._tableNames) {
+      _tableKeys.computeIfAbsent(tableName, k -> ConcurrentHashMap.newKeySet()).add(cacheKey._key);
+    }
+    _sizeInBytes.addAndGet(cachedResponse.getSizeInBytes());
+    _cache.put(cacheKey._key, cachedResponse);
+    // Evict the entry if the routing changed while it was added, in which case the entry might be missed by the
+    // eviction in invalidate()
+    for (int i = 0; i < cacheKey._tableNames.size(); i++) {
+      if (getRoutingGeneration(cacheKey._tableNames.get(i)) != cacheKey._routingGenerations.get(i)) {
+        _cache.invalidate(cacheKey._key);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns a response with only the result of the given response, without the execution stats which do not apply to
+   * the queries served from the cache.
+   */
+  private static BrokerResponseNative getResultResponse(BrokerResponseNative brokerResponse) {
+    BrokerResponseNative resultResponse = new BrokerResponseNative();
+    resultResponse.setResultTable(brokerResponse.getResultTable());
+    resultResponse.setGroupsTrimmed(brokerResponse.isGroupsTrimmed());
+    resultResponse.setNumGroupsLimitReached(brokerResponse.isNumGroupsLimitReached());
+    resultResponse.setNumGroupsWarningLimitReached(brokerResponse.isNumGroupsWarningLimitReached());
+    resultResponse.setMaxRowsInDistinctReached(brokerResponse.isMaxRowsInDistinctReached());
+    resultResponse.setMaxRowsWithoutChangeInDistinctReached(brokerResponse.isMaxRowsWithoutChangeInDistinctReached());
+    resultResponse.setMaxExecutionTimeInDistinctReached(brokerResponse.isMaxExecutionTimeInDistinctReached());
+    resultResponse.setRLSFiltersApplied(brokerResponse.getRLSFiltersApplied());
+    return resultResponse;
+  }
+
+  private static boolean isCacheable(BrokerResponseNative brokerResponse) {
+    return brokerResponse.getResultTable() != null && !brokerResponse.isPartialResult()
+        && brokerResponse.getNumServersQueried() == brokerResponse.getNumServersResponded()
+        && brokerResponse.getTraceInfo().isEmpty();
+  }
+
+  private long getRoutingGeneration(String tableNameWithType) {
+    AtomicLong routingGeneration = _routingGenerations.get(tableNameWithType);
+    return routingGeneration != null ? routingGeneration.get() : 0;
+  }
+
+  /**
+   * Invalidates all the cached results for the given table. Should be invoked whenever the routing of the table
+   * changes.
+   */
+  public void invalidate(String tableNameWithType) {
+    _routingGenerations.computeIfAbsent(tableNameWithType, k -> new AtomicLong()).incrementAndGet();
+    Set<String> keys = _tableKeys.remove(tableNameWithType);
+    if (keys != null) {
+      _cache.invalidateAll(keys);
+    }
+  }
+
+  public void invalidateAll() {
+    _cache.invalidateAll();
+  }
+
+  @VisibleForTesting
+  long getSizeInBytes() {
+    return _sizeInBytes.get();
+  }
+
+  @VisibleForTesting
+  long getNumEntries() {
+    return _cache.size();
+  }
+
+  public static class CacheKey {
+    private final String _key;
+    private final List<String> _tableNames;
+    private final List<Long> _routingGenerations;
+
+    private CacheKey(String key, List<String> tableNames, List<Long> routingGenerations) {
+      _key = key;
+      _tableNames = tableNames;
+      _routingGenerations = routingGenerations;
+    }
+
+    public String getKey() {
+      return _key;
+    }
+  }
+
+  private static class CachedResponse {
+    final byte[] _serializedResponse;
+    final long _expirationTimeMs;
+    final List<String> _tableNames;
+
+    CachedResponse(byte[] serializedResponse, long expirationTimeMs, List<String> tableNames) {
+      _serializedResponse = serializedResponse;
+      _expirationTimeMs = expirationTimeMs;
+      _tableNames = tableNames;
+    }
+
+    int getSizeInBytes() {
+      return _serializedResponse.length + ENTRY_OVERHEAD_BYTES;
+    }
+  }
+}
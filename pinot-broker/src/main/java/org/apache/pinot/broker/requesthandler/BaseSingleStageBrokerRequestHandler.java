@@ -54,6 +54,7 @@ import org.apache.hc.client5.http.io.HttpClientConnectionManager;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.pinot.broker.api.AccessControl;
 import org.apache.pinot.broker.broker.AccessControlFactory;
+import org.apache.pinot.broker.querycache.BrokerQueryResultCache;
 import org.apache.pinot.broker.querylog.QueryLogger;
 import org.apache.pinot.broker.queryquota.QueryQuotaManager;
 import org.apache.pinot.common.config.provider.TableCache;
@@ -181,6 +182,8 @@ public abstract class BaseSingleStageBrokerRequestHandler extends BaseBrokerRequ
   protected BlockingQueue<Pair<String, String>> _multistageCompileQueryQueue;
   protected ImplicitHybridTableRouteProvider _implicitHybridTableRouteProvider;
   protected LogicalTableRouteProvider _logicalTableRouteProvider;
+  @Nullable
+  protected final BrokerQueryResultCache _queryResultCache;
 
   public BaseSingleStageBrokerRequestHandler(PinotConfiguration config, String brokerId,
       BrokerRequestIdGenerator requestIdGenerator, RoutingManager routingManager,
@@ -220,6 +223,13 @@ public abstract class BaseSingleStageBrokerRequestHandler extends BaseBrokerRequ
     _implicitHybridTableRouteProvider = new ImplicitHybridTableRouteProvider();
     _logicalTableRouteProvider = new LogicalTableRouteProvider(multiClusterRoutingContext);
 
+    if (_config.getProperty(Broker.CONFIG_OF_BROKER_QUERY_RESULT_CACHE_ENABLED,
+        Broker.DEFAULT_BROKER_QUERY_RESULT_CACHE_ENABLED)) {
+      _queryResultCache = new BrokerQueryResultCache(_config, _brokerMetrics);
+    } else {
+      _queryResultCache = null;
+    }
+
     LOGGER.info("Initialized {} with broker id: {}, timeout: {}ms, query response limit: {}, "
             + "default query limit {}, query log max length: {}, query log max rate: {}, query cancellation "
             + "enabled: {}", getClass().getSimpleName(), _brokerId, _brokerTimeoutMs, _queryResponseLimit,
@@ -258,6 +268,9 @@ public abstract class BaseSingleStageBrokerRequestHandler extends BaseBrokerRequ
     if (_enableMultistageMigrationMetric) {
       _multistageCompileExecutor.shutdownNow();
     }
+    if (_queryResultCache != null) {
+      _queryResultCache.invalidateAll();
+    }
   }
 
   @VisibleForTesting
@@ -745,6 +758,21 @@ public abstract class BaseSingleStageBrokerRequestHandler extends BaseBrokerRequ
     // can be expensive.
     QueryThreadContext.checkTerminationAndSampleUsage("Broker request routing");
 
+    // Look up the query result cache. The cache key must be computed before the query options are modified for the
+    // server requests (e.g. timeout).
+    // NOTE: Logical tables are not supported because the routing tables are not available from the route info.
+    BrokerQueryResultCache.CacheKey resultCacheKey = null;
+    long resultCacheTtlMs = 0;
+    BrokerResponseNative cachedBrokerResponse = null;
+    if (_queryResultCache != null && logicalTableConfig == null && errorMsgs.isEmpty() && !pinotQuery.isExplain()
+        && !QueryOptionsUtils.isSkipResultCache(pinotQuery.getQueryOptions())) {
+      resultCacheTtlMs = _queryResultCache.getTtlMs(routeInfo);
+      if (resultCacheTtlMs > 0) {
+        resultCacheKey = _queryResultCache.getCacheKey(pinotQuery, routeInfo);
+        cachedBrokerResponse = _queryResultCache.get(resultCacheKey, rawTableName);
+      }
+    }
+
     // Set timeout in the requests
     long timeSpentMs = TimeUnit.NANOSECONDS.toMillis(routingEndTimeNs - compilationStartTimeNs);
     // Remaining time in milliseconds for the server query execution
@@ -832,7 +860,10 @@ public abstract class BaseSingleStageBrokerRequestHandler extends BaseBrokerRequ
       }
     }
     BrokerResponseNative brokerResponse;
-    if (isQueryCancellationEnabled()) {
+    if (cachedBrokerResponse != null) {
+      brokerResponse = cachedBrokerResponse;
+      brokerResponse.setClientRequestId(extractClientRequestId(sqlNodeAndOptions));
+    } else if (isQueryCancellationEnabled()) {
       // Start to track the running query for cancellation just before sending it out to servers to avoid any
       // potential failures that could happen before sending it out, like failures to calculate the routing table etc.
       // TODO: Even tracking the query as late as here, a potential race condition between calling cancel API and
@@ -856,6 +887,9 @@ public abstract class BaseSingleStageBrokerRequestHandler extends BaseBrokerRequ
       brokerResponse = processBrokerRequest(requestId, brokerRequest, serverBrokerRequest, routeInfo,
           remainingTimeMs, serverStats, requestContext);
     }
+    if (resultCacheKey != null && cachedBrokerResponse == null) {
+      _queryResultCache.put(resultCacheKey, brokerResponse, resultCacheTtlMs);
+    }
     brokerResponse.setTablesQueried(Set.of(rawTableName));
     brokerResponse.setPools(Stream.concat(
             offlineExecutionServers != null ? offlineExecutionServers.stream() : Stream.empty(),
@@ -1114,6 +1148,14 @@ public abstract class BaseSingleStageBrokerRequestHandler extends BaseBrokerRequ
     return errorMessage;
   }
 
+  /**
+   * Returns the query result cache, or {@code null} if it is not enabled.
+   */
+  @Nullable
+  public BrokerQueryResultCache getQueryResultCache() {
+    return _queryResultCache;
+  }
+
   @Override
   protected void onQueryStart(long requestId, @Nullable String clientRequestId, String query, Object... extras) {
     super.onQueryStart(requestId, clientRequestId, query, extras);
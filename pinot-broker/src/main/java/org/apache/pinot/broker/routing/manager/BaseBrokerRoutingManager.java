@@ -140,6 +140,8 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
   private final ExecutorService _executorService;
   @Nullable
   private Consumer<ServerInstance> _serverReenableCallback;
+  @Nullable
+  private Consumer<String> _routingChangeCallback;
 
   // Global read-write lock for protecting the global data structures such as _enabledServerInstanceMap,
   // _excludedServers, and _routableServers. Write lock must be held if any of these are modified, read lock must be
@@ -199,6 +201,26 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
     _serverReenableCallback = callback;
   }
 
+  /**
+   * Sets a callback to be invoked with the table name (with type) when the routing of a table is built, removed, or
+   * changed due to segment assignment change or segment refresh.
+   * This is useful for invalidating the cached query results for the table.
+   */
+  public void setRoutingChangeCallback(Consumer<String> callback) {
+    _routingChangeCallback = callback;
+  }
+
+  private void onRoutingChange(String tableNameWithType) {
+    if (_routingChangeCallback != null) {
+      try {
+        _routingChangeCallback.accept(tableNameWithType);
+      } catch (Exception e) {
+        LOGGER.error("Caught unexpected exception while invoking routing change callback for table: {}",
+            tableNameWithType, e);
+      }
+    }
+  }
+
   private Object getRoutingTableBuildLock(String tableNameWithType) {
     String rawTableName = TableNameBuilder.extractRawTableName(tableNameWithType);
     return _routingTableBuildLocks.computeIfAbsent(rawTableName, k -> new Object());
@@ -363,6 +385,7 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
         LOGGER.error("Caught unexpected exception while updating routing entry on segment assignment change for "
             + "table: {}", tableNameWithType, e);
       }
+      onRoutingChange(tableNameWithType);
       return true;
     }
     return false;
@@ -872,6 +895,7 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
       } else {
         LOGGER.info("Rebuilt routing for table: {}", tableNameWithType);
       }
+      onRoutingChange(tableNameWithType);
 
       // Check for updates to the IS / EV after adding the routing entry, as it is possible that the
       // processSegmentAssignmentChange() may have run and missed updating this newly added entry. Only update
@@ -956,6 +980,7 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
 
       if (_routingEntryMap.remove(tableNameWithType) != null) {
         LOGGER.info("Removed routing for table: {}", tableNameWithType);
+        onRoutingChange(tableNameWithType);
 
         // Remove time boundary manager for the offline part routing if the removed routing is the real-time part of a
         // hybrid table
@@ -1052,6 +1077,7 @@ public abstract class BaseBrokerRoutingManager implements RoutingManager, Cluste
       RoutingEntry routingEntry = _routingEntryMap.get(tableNameWithType);
       if (routingEntry != null) {
         routingEntry.refreshSegment(segment);
+        onRoutingChange(tableNameWithType);
         LOGGER.info("Refreshed segment: {} for table: {}", segment, tableNameWithType);
       } else {
         LOGGER.warn("Routing does not exist for table: {}, skipping refreshing segment", tableNameWithType);
@@ -0,0 +1,218 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.broker.querycache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.pinot.common.metrics.BrokerMetrics;
+import org.apache.pinot.common.request.BrokerRequest;
+import org.apache.pinot.common.response.broker.BrokerResponseNative;
+import org.apache.pinot.common.response.broker.QueryProcessingException;
+import org.apache.pinot.common.response.broker.ResultTable;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.core.routing.SegmentsToQuery;
+import org.apache.pinot.core.routing.TableRouteInfo;
+import org.apache.pinot.core.transport.ServerInstance;
+import org.apache.pinot.spi.config.table.QueryConfig;
+import org.apache.pinot.spi.exception.QueryErrorCode;
+import org.apache.pinot.sql.parsers.CalciteSqlCompiler;
+import org.mockito.Mockito;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+
+public class BrokerQueryResultCacheTest {
+  private static final String RAW_TABLE_NAME = "testTable";
+  private static final String OFFLINE_TABLE_NAME = "testTable_OFFLINE";
+  private static final String REALTIME_TABLE_NAME = "testTable_REALTIME";
+  private static final String QUERY = "SELECT COUNT(*) FROM testTable WHERE col > 10";
+
+  @Test
+  public void testHitAndMiss() {
+    BrokerQueryResultCache cache = new BrokerQueryResultCache(1024 * 1024, 60_000L, false, mockBrokerMetrics());
+    TableRouteInfo routeInfo = mockOfflineRouteInfo(QUERY, List.of("seg0", "seg1"), null);
+    BrokerRequest brokerRequest = CalciteSqlCompiler.compileToBrokerRequest(QUERY);
+
+    BrokerQueryResultCache.CacheKey cacheKey = cache.getCacheKey(brokerRequest.getPinotQuery(), routeInfo);
+    assertNull(cache.get(cacheKey, RAW_TABLE_NAME));
+    cache.put(cacheKey, getBrokerResponse(100L), 60_000L);
+    assertEquals(cache.getNumEntries(), 1);
+
+    // Same query compiled again with segments in different order should hit the cache
+    BrokerRequest sameBrokerRequest = CalciteSqlCompiler.compileToBrokerRequest(QUERY);
+    TableRouteInfo sameRouteInfo = mockOfflineRouteInfo(QUERY, List.of("seg1", "seg0"), null);
+    BrokerQueryResultCache.CacheKey sameCacheKey = cache.getCacheKey(sameBrokerRequest.getPinotQuery(), sameRouteInfo);
+    assertEquals(sameCacheKey.getKey(), cacheKey.getKey());
+    BrokerResponseNative cachedResponse = cache.get(sameCacheKey, RAW_TABLE_NAME);
+    assertNotNull(cachedResponse);
+    assertEquals(cachedResponse.getResultTable().getRows().get(0)[0], 100);
+    // Execution stats should not be served from the cache
+    assertEquals(cachedResponse.getNumDocsScanned(), 0L);
+    assertEquals(cachedResponse.getNumServersQueried(), 0);
+    assertEquals(cachedResponse.getTimeUsedMs(), 0L);
+
+    // Different segments should miss the cache
+    TableRouteInfo otherRouteInfo = mockOfflineRouteInfo(QUERY, List.of("seg0", "seg1", "seg2"), null);
+    BrokerQueryResultCache.CacheKey otherCacheKey =
+        cache.getCacheKey(sameBrokerRequest.getPinotQuery(), otherRouteInfo);
+    assertNotEquals(otherCacheKey.getKey(), cacheKey.getKey());
+    assertNull(cache.get(otherCacheKey, RAW_TABLE_NAME));
+
+    // Different query options should miss the cache
+    BrokerRequest brokerRequestWithOptions =
+        CalciteSqlCompiler.compileToBrokerRequest("SET useStarTree = false; " + QUERY);
+    assertNotEquals(cache.getCacheKey(brokerRequestWithOptions.getPinotQuery(), routeInfo).getKey(),
+        cacheKey.getKey());
+  }
+
+  @Test
+  public void testInvalidation() {
+    BrokerQueryResultCache cache = new BrokerQueryResultCache(1024 * 1024, 60_000L, false, mockBrokerMetrics());
+    TableRouteInfo routeInfo = mockOfflineRouteInfo(QUERY, List.of("seg0"), null);
+    BrokerRequest brokerRequest = CalciteSqlCompiler.compileToBrokerRequest(QUERY);
+
+    BrokerQueryResultCache.CacheKey cacheKey = cache.getCacheKey(brokerRequest.getPinotQuery(), routeInfo);
+    cache.put(cacheKey, getBrokerResponse(1L), 60_000L);
+    assertNotNull(cache.get(cacheKey, RAW_TABLE_NAME));
+
+    // Routing change should make the cached result unreachable, and evict it
+    cache.invalidate(OFFLINE_TABLE_NAME);
+    assertEquals(cache.getNumEntries(), 0);
+    assertEquals(cache.getSizeInBytes(), 0);
+    BrokerQueryResultCache.CacheKey newCacheKey = cache.getCacheKey(brokerRequest.getPinotQuery(), routeInfo);
+    assertNotEquals(newCacheKey.getKey(), cacheKey.getKey());
+    assertNull(cache.get(newCacheKey, RAW_TABLE_NAME));
+
+    // Result computed with the routing before the change should not be cached
+    cache.invalidate(OFFLINE_TABLE_NAME);
+    cache.put(newCacheKey, getBrokerResponse(2L), 60_000L);
+    assertNull(cache.get(newCacheKey, RAW_TABLE_NAME));
+
+    // Only the entries of the invalidated table should be evicted
+    BrokerQueryResultCache.CacheKey latestCacheKey = cache.getCacheKey(brokerRequest.getPinotQuery(), routeInfo);
+    cache.put(latestCacheKey, getBrokerResponse(3L), 60_000L);
+    assertEquals(cache.getNumEntries(), 1);
+    long sizeInBytes = cache.getSizeInBytes();
+    cache.invalidate(REALTIME_TABLE_NAME);
+    assertEquals(cache.getNumEntries(), 1);
+    assertEquals(cache.getSizeInBytes(), sizeInBytes);
+    assertNotNull(cache.get(latestCacheKey, RAW_TABLE_NAME));
+    cache.invalidate(OFFLINE_TABLE_NAME);
+    assertEquals(cache.getNumEntries(), 0);
+    assertEquals(cache.getSizeInBytes(), 0);
+  }
+
+  @Test
+  public void testNonCacheableResponses() {
+    BrokerQueryResultCache cache = new BrokerQueryResultCache(1024 * 1024, 60_000L, false, mockBrokerMetrics());
+    TableRouteInfo routeInfo = mockOfflineRouteInfo(QUERY, List.of("seg0"), null);
+    BrokerQueryResultCache.CacheKey cacheKey =
+        cache.getCacheKey(CalciteSqlCompiler.compileToBrokerRequest(QUERY).getPinotQuery(), routeInfo);
+
+    BrokerResponseNative responseWithException = getBrokerResponse(1L);
+    responseWithException.addException(new QueryProcessingException(QueryErrorCode.SERVER_NOT_RESPONDING, "error"));
+    cache.put(cacheKey, responseWithException, 60_000L);
+    assertEquals(cache.getNumEntries(), 0);
+
+    BrokerResponseNative responseWithMissingServer = getBrokerResponse(1L);
+    responseWithMissingServer.setNumServersResponded(0);
+    cache.put(cacheKey, responseWithMissingServer, 60_000L);
+    assertEquals(cache.getNumEntries(), 0);
+
+    // Response larger than the cache should not be cached
+    BrokerQueryResultCache smallCache = new BrokerQueryResultCache(16, 60_000L, false, mockBrokerMetrics());
+    smallCache.put(cacheKey, getBrokerResponse(1L), 60_000L);
+    assertEquals(smallCache.getNumEntries(), 0);
+    assertEquals(smallCache.getSizeInBytes(), 0);
+  }
+
+  @Test
+  public void testTtl()
+      throws Exception {
+    BrokerQueryResultCache cache = new BrokerQueryResultCache(1024 * 1024, 60_000L, false, mockBrokerMetrics());
+    assertEquals(cache.getTtlMs(mockOfflineRouteInfo(QUERY, List.of("seg0"), null)), 60_000L);
+    QueryConfig queryConfig = new QueryConfig(null, null, null, null, null, null, 10L);
+    TableRouteInfo routeInfo = mockOfflineRouteInfo(QUERY, List.of("seg0"), queryConfig);
+    assertEquals(cache.getTtlMs(routeInfo), 10L);
+    QueryConfig disabledQueryConfig = new QueryConfig(null, null, null, null, null, null, 0L);
+    assertEquals(cache.getTtlMs(mockOfflineRouteInfo(QUERY, List.of("seg0"), disabledQueryConfig)), 0L);
+
+    // Entry should expire after the TTL
+    BrokerQueryResultCache.CacheKey cacheKey =
+        cache.getCacheKey(CalciteSqlCompiler.compileToBrokerRequest(QUERY).getPinotQuery(), routeInfo);
+    cache.put(cacheKey, getBrokerResponse(1L), cache.getTtlMs(routeInfo));
+    Thread.sleep(20L);
+    assertNull(cache.get(cacheKey, RAW_TABLE_NAME));
+    assertEquals(cache.getNumEntries(), 0);
+    assertEquals(cache.getSizeInBytes(), 0);
+
+    // REALTIME table should only be cached when enabled
+    TableRouteInfo realtimeRouteInfo = mock(TableRouteInfo.class);
+    when(realtimeRouteInfo.getRealtimeTableName()).thenReturn(REALTIME_TABLE_NAME);
+    when(realtimeRouteInfo.getRealtimeBrokerRequest()).thenReturn(CalciteSqlCompiler.compileToBrokerRequest(QUERY));
+    assertEquals(cache.getTtlMs(realtimeRouteInfo), 0L);
+    BrokerQueryResultCache realtimeCache =
+        new BrokerQueryResultCache(1024 * 1024, 60_000L, true, mockBrokerMetrics());
+    assertEquals(realtimeCache.getTtlMs(realtimeRouteInfo), 60_000L);
+  }
+
+  private static BrokerMetrics mockBrokerMetrics() {
+    return Mockito.mock(BrokerMetrics.class);
+  }
+
+  private static TableRouteInfo mockOfflineRouteInfo(String query, List<String> segments,
+      QueryConfig queryConfig) {
+    TableRouteInfo routeInfo = mock(TableRouteInfo.class);
+    BrokerRequest offlineBrokerRequest = CalciteSqlCompiler.compileToBrokerRequest(query);
+    offlineBrokerRequest.getPinotQuery().getDataSource().setTableName(OFFLINE_TABLE_NAME);
+    when(routeInfo.getOfflineTableName()).thenReturn(OFFLINE_TABLE_NAME);
+    when(routeInfo.getOfflineBrokerRequest()).thenReturn(offlineBrokerRequest);
+    when(routeInfo.getOfflineTableQueryConfig()).thenReturn(queryConfig);
+    // Split the segments across 2 servers
+    List<String> segments0 = new ArrayList<>();
+    List<String> segments1 = new ArrayList<>();
+    for (int i = 0; i < segments.size(); i++) {
+      (i % 2 == 0 ? segments0 : segments1).add(segments.get(i));
+    }
+    when(routeInfo.getOfflineRoutingTable()).thenReturn(
+        Map.of(mock(ServerInstance.class), new SegmentsToQuery(segments0, List.of()), mock(ServerInstance.class),
+            new SegmentsToQuery(segments1, List.of())));
+    return routeInfo;
+  }
+
+  private static BrokerResponseNative getBrokerResponse(long count) {
+    BrokerResponseNative brokerResponse = new BrokerResponseNative();
+    DataSchema dataSchema = new DataSchema(new String[]{"count(*)"}, new ColumnDataType[]{ColumnDataType.LONG});
+    List<Object[]> rows = new ArrayList<>();
+    rows.add(new Object[]{count});
+    brokerResponse.setResultTable(new ResultTable(dataSchema, rows));
+    brokerResponse.setNumDocsScanned(count);
+    brokerResponse.setNumServersQueried(2);
+    brokerResponse.setNumServersResponded(2);
+    return brokerResponse;
+  }
+}
@@ -19,6 +19,8 @@
 package org.apache.pinot.common.datatable;
 
 import com.google.common.base.Preconditions;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.HashMap;
@@ -49,6 +51,15 @@ public interface DataTable {
   byte[] toBytes()
       throws IOException;
 
+  /**
+   * Serializes the data table into a {@link ByteBuf} with the same content as {@link #toBytes()}. Implementations may
+   * wrap the internal buffers of the data table instead of copying them.
+   */
+  default ByteBuf toByteBuf()
+      throws IOException {
+    return Unpooled.wrappedBuffer(toBytes());
+  }
+
   Map<String, String> getMetadata();
 
   DataSchema getDataSchema();
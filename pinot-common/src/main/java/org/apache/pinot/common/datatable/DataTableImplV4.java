@@ -21,6 +21,8 @@ package org.apache.pinot.common.datatable;
 
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -29,6 +31,7 @@ import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import javax.annotation.Nullable;
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.pinot.common.CustomObject;
 import org.apache.pinot.common.datablock.DataBlockUtils;
 import org.apache.pinot.common.utils.DataSchema;
@@ -413,110 +416,176 @@ public class DataTableImplV4 implements DataTable {
     return _errCodeToExceptionMap;
   }
 
+  /**
+   * Serializes the data table into a single byte array of the exact size, so that the fixed size and variable size
+   * data, which are the bulk of the large responses, are copied only once without growing an intermediate buffer.
+   *
+   * <p>The serialization time and memory metadata are measured after all the sections except the metadata are written,
+   * as before. Because they are encoded as fixed size longs, their space is reserved up front and they are appended to
+   * the serialized metadata after the measurement.
+   */
   @Override
   public byte[] toBytes()
       throws IOException {
     ThreadResourceSnapshot resourceSnapshot = new ThreadResourceSnapshot();
 
-    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-    DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream);
-    writeLeadingSections(dataOutputStream);
+    byte[] exceptionsBytes = serializeExceptions();
+    byte[] dictionaryBytes = _stringDictionary != null ? serializeStringDictionary() : null;
+    byte[] dataSchemaBytes = _dataSchema != null ? _dataSchema.toBytes() : null;
 
-    // Add table serialization time and memory metadata when the corresponding measurement is enabled.
+    // Serialize the metadata without the serialization time and memory, which are measured after writing the data
+    // NOTE: We ignore metadata serialization time in "responseSerializationCpuTimeNs" as it's negligible while
+    // considering it will bring a lot code complexity.
+    Map<String, String> metadata = getMetadata();
+    metadata.remove(MetadataKey.RESPONSE_SER_CPU_TIME_NS.getName());
+    metadata.remove(MetadataKey.RESPONSE_SER_MEM_ALLOCATED_BYTES.getName());
+    byte[] metadataBytes = serializeMetadata();
     // When CPU time/memory usage is not collectable, we omit these values from the metadata.
-    if (ThreadResourceUsageProvider.isThreadCpuTimeMeasurementEnabled()) {
-      getMetadata().put(MetadataKey.RESPONSE_SER_CPU_TIME_NS.getName(),
-          String.valueOf(resourceSnapshot.getCpuTimeNs()));
+    boolean cpuTimeMeasurementEnabled = ThreadResourceUsageProvider.isThreadCpuTimeMeasurementEnabled();
+    boolean memoryMeasurementEnabled = ThreadResourceUsageProvider.isThreadMemoryMeasurementEnabled();
+    int numResourceUsageEntries = (cpuTimeMeasurementEnabled ? 1 : 0) + (memoryMeasurementEnabled ? 1 : 0);
+    int metadataLength = metadataBytes.length + numResourceUsageEntries * (Integer.BYTES + Long.BYTES);
+
+    long size = HEADER_SIZE + exceptionsBytes.length + getLength(dictionaryBytes) + getLength(dataSchemaBytes)
+        + getLength(_fixedSizeDataBytes) + getLength(_variableSizeDataBytes) + Integer.BYTES + metadataLength;
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Serialized data table size: " + size + " exceeds the max array size");
     }
-    if (ThreadResourceUsageProvider.isThreadMemoryMeasurementEnabled()) {
-      getMetadata().put(MetadataKey.RESPONSE_SER_MEM_ALLOCATED_BYTES.getName(),
-          String.valueOf(resourceSnapshot.getAllocatedBytes()));
+    byte[] bytes = new byte[(int) size];
+    ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+    writeLeadingSections(byteBuffer, exceptionsBytes, dictionaryBytes, dataSchemaBytes);
+
+    // Add table serialization time and memory metadata when the corresponding measurement is enabled.
+    long cpuTimeNs = 0;
+    if (cpuTimeMeasurementEnabled) {
+      cpuTimeNs = resourceSnapshot.getCpuTimeNs();
+      metadata.put(MetadataKey.RESPONSE_SER_CPU_TIME_NS.getName(), String.valueOf(cpuTimeNs));
+    }
+    long allocatedBytes = 0;
+    if (memoryMeasurementEnabled) {
+      allocatedBytes = resourceSnapshot.getAllocatedBytes();
+      metadata.put(MetadataKey.RESPONSE_SER_MEM_ALLOCATED_BYTES.getName(), String.valueOf(allocatedBytes));
     }
 
-    // Write metadata: length followed by actual metadata bytes.
-    // NOTE: We ignore metadata serialization time in "responseSerializationCpuTimeNs" as it's negligible while
-    // considering it will bring a lot code complexity.
-    byte[] metadataBytes = serializeMetadata();
-    dataOutputStream.writeInt(metadataBytes.length);
-    dataOutputStream.write(metadataBytes);
+    // Write metadata: length followed by actual metadata bytes, where the number of entries is patched to include the
+    // serialization time and memory entries appended at the end.
+    byteBuffer.putInt(metadataLength);
+    byteBuffer.putInt(ByteBuffer.wrap(metadataBytes).getInt() + numResourceUsageEntries);
+    byteBuffer.put(metadataBytes, Integer.BYTES, metadataBytes.length - Integer.BYTES);
+    if (cpuTimeMeasurementEnabled) {
+      byteBuffer.putInt(MetadataKey.RESPONSE_SER_CPU_TIME_NS.getId());
+      byteBuffer.putLong(cpuTimeNs);
+    }
+    if (memoryMeasurementEnabled) {
+      byteBuffer.putInt(MetadataKey.RESPONSE_SER_MEM_ALLOCATED_BYTES.getId());
+      byteBuffer.putLong(allocatedBytes);
+    }
+    assert !byteBuffer.hasRemaining();
 
-    return byteArrayOutputStream.toByteArray();
+    return bytes;
   }
 
-  private void writeLeadingSections(DataOutputStream dataOutputStream)
+  /**
+   * Serializes the data table into a composite buffer wrapping the serialized sections, so that the fixed size and
+   * variable size data are not copied at all. The server writes this buffer to the response channel.
+   *
+   * <p>The serialization time and memory metadata are measured after all the sections except the metadata are
+   * serialized.
+   */
+  @Override
+  public ByteBuf toByteBuf()
       throws IOException {
-    dataOutputStream.writeInt(getVersion());
-    dataOutputStream.writeInt(_numRows);
-    dataOutputStream.writeInt(_numColumns);
-    int dataOffset = HEADER_SIZE;
+    ThreadResourceSnapshot resourceSnapshot = new ThreadResourceSnapshot();
 
-    // Write exceptions section offset(START|SIZE).
-    dataOutputStream.writeInt(dataOffset);
-    byte[] exceptionsBytes;
-    exceptionsBytes = serializeExceptions();
-    dataOutputStream.writeInt(exceptionsBytes.length);
-    dataOffset += exceptionsBytes.length;
+    byte[] exceptionsBytes = serializeExceptions();
+    byte[] dictionaryBytes = _stringDictionary != null ? serializeStringDictionary() : null;
+    byte[] dataSchemaBytes = _dataSchema != null ? _dataSchema.toBytes() : null;
 
-    // Write dictionary map section offset(START|SIZE).
-    dataOutputStream.writeInt(dataOffset);
-    byte[] dictionaryBytes = null;
-    if (_stringDictionary != null) {
-      dictionaryBytes = serializeStringDictionary();
-      dataOutputStream.writeInt(dictionaryBytes.length);
-      dataOffset += dictionaryBytes.length;
-    } else {
-      dataOutputStream.writeInt(0);
-    }
+    byte[] headerBytes = new byte[HEADER_SIZE];
+    writeHeader(ByteBuffer.wrap(headerBytes), exceptionsBytes, dictionaryBytes, dataSchemaBytes);
 
-    // Write data schema section offset(START|SIZE).
-    dataOutputStream.writeInt(dataOffset);
-    byte[] dataSchemaBytes = null;
-    if (_dataSchema != null) {
-      dataSchemaBytes = _dataSchema.toBytes();
-      dataOutputStream.writeInt(dataSchemaBytes.length);
-      dataOffset += dataSchemaBytes.length;
-    } else {
-      dataOutputStream.writeInt(0);
+    // Add table serialization time and memory metadata when the corresponding measurement is enabled.
+    // NOTE: We ignore metadata serialization time in "responseSerializationCpuTimeNs" as it's negligible while
+    // considering it will bring a lot code complexity.
+    Map<String, String> metadata = getMetadata();
+    metadata.remove(MetadataKey.RESPONSE_SER_CPU_TIME_NS.getName());
+    metadata.remove(MetadataKey.RESPONSE_SER_MEM_ALLOCATED_BYTES.getName());
+    if (ThreadResourceUsageProvider.isThreadCpuTimeMeasurementEnabled()) {
+      metadata.put(MetadataKey.RESPONSE_SER_CPU_TIME_NS.getName(), String.valueOf(resourceSnapshot.getCpuTimeNs()));
     }
-
-    // Write fixed size data section offset(START|SIZE).
-    dataOutputStream.writeInt(dataOffset);
-    if (_fixedSizeDataBytes != null) {
-      dataOutputStream.writeInt(_fixedSizeDataBytes.length);
-      dataOffset += _fixedSizeDataBytes.length;
-    } else {
-      dataOutputStream.writeInt(0);
+    if (ThreadResourceUsageProvider.isThreadMemoryMeasurementEnabled()) {
+      metadata.put(MetadataKey.RESPONSE_SER_MEM_ALLOCATED_BYTES.getName(),
+          String.valueOf(resourceSnapshot.getAllocatedBytes()));
     }
+    byte[] metadataBytes = serializeMetadata();
 
-    // Write variable size data section offset(START|SIZE).
-    dataOutputStream.writeInt(dataOffset);
-    if (_variableSizeDataBytes != null) {
-      dataOutputStream.writeInt(_variableSizeDataBytes.length);
-    } else {
-      dataOutputStream.writeInt(0);
+    long size = HEADER_SIZE + exceptionsBytes.length + getLength(dictionaryBytes) + getLength(dataSchemaBytes)
+        + getLength(_fixedSizeDataBytes) + getLength(_variableSizeDataBytes) + Integer.BYTES + metadataBytes.length;
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Serialized data table size: " + size + " exceeds the max buffer size");
     }
+    // Wrap all the sections, where metadata is written as length followed by actual metadata bytes.
+    return Unpooled.wrappedBuffer(headerBytes, exceptionsBytes, ArrayUtils.nullToEmpty(dictionaryBytes),
+        ArrayUtils.nullToEmpty(dataSchemaBytes), ArrayUtils.nullToEmpty(_fixedSizeDataBytes),
+        ArrayUtils.nullToEmpty(_variableSizeDataBytes), Ints.toByteArray(metadataBytes.length), metadataBytes);
+  }
+
+  private void writeLeadingSections(ByteBuffer byteBuffer, byte[] exceptionsBytes, @Nullable byte[] dictionaryBytes,
+      @Nullable byte[] dataSchemaBytes) {
+    writeHeader(byteBuffer, exceptionsBytes, dictionaryBytes, dataSchemaBytes);
 
     // Write actual data.
-    // Write exceptions bytes.
-    dataOutputStream.write(exceptionsBytes);
-    // Write dictionary map bytes.
+    byteBuffer.put(exceptionsBytes);
     if (dictionaryBytes != null) {
-      dataOutputStream.write(dictionaryBytes);
+      byteBuffer.put(dictionaryBytes);
     }
-    // Write data schema bytes.
     if (dataSchemaBytes != null) {
-      dataOutputStream.write(dataSchemaBytes);
+      byteBuffer.put(dataSchemaBytes);
     }
-    // Write fixed size data bytes.
     if (_fixedSizeDataBytes != null) {
-      dataOutputStream.write(_fixedSizeDataBytes);
+      byteBuffer.put(_fixedSizeDataBytes);
     }
-    // Write variable size data bytes.
     if (_variableSizeDataBytes != null) {
-      dataOutputStream.write(_variableSizeDataBytes);
+      byteBuffer.put(_variableSizeDataBytes);
     }
   }
 
+  private void writeHeader(ByteBuffer byteBuffer, byte[] exceptionsBytes, @Nullable byte[] dictionaryBytes,
+      @Nullable byte[] dataSchemaBytes) {
+    byteBuffer.putInt(getVersion());
+    byteBuffer.putInt(_numRows);
+    byteBuffer.putInt(_numColumns);
+    int dataOffset = HEADER_SIZE;
+
+    // Write exceptions section offset(START|SIZE).
+    byteBuffer.putInt(dataOffset);
+    byteBuffer.putInt(exceptionsBytes.length);
+    dataOffset += exceptionsBytes.length;
+
+    // Write dictionary map section offset(START|SIZE).
+    byteBuffer.putInt(dataOffset);
+    byteBuffer.putInt(getLength(dictionaryBytes));
+    dataOffset += getLength(dictionaryBytes);
+
+    // Write data schema section offset(START|SIZE).
+    byteBuffer.putInt(dataOffset);
+    byteBuffer.putInt(getLength(dataSchemaBytes));
+    dataOffset += getLength(dataSchemaBytes);
+
+    // Write fixed size data section offset(START|SIZE).
+    byteBuffer.putInt(dataOffset);
+    byteBuffer.putInt(getLength(_fixedSizeDataBytes));
+    dataOffset += getLength(_fixedSizeDataBytes);
+
+    // Write variable size data section offset(START|SIZE).
+    byteBuffer.putInt(dataOffset);
+    byteBuffer.putInt(getLength(_variableSizeDataBytes));
+  }
+
+  private static int getLength(@Nullable byte[] bytes) {
+    return bytes != null ? bytes.length : 0;
+  }
+
   /**
    * Serialize metadata section to bytes.
    * Format of the bytes looks like:
@@ -281,6 +281,12 @@ public class BrokerMeter implements AbstractMetrics.Meter {
 
   public static final BrokerMeter RLS_FILTERS_APPLIED = create("RLS_FILTERS_APPLIED", "queries", false);
 
+  /**
+   * Number of single-stage queries served from / missed in the broker query result cache.
+   */
+  public static final BrokerMeter QUERY_RESULT_CACHE_HITS = create("QUERY_RESULT_CACHE_HITS", "queries", false);
+  public static final BrokerMeter QUERY_RESULT_CACHE_MISSES = create("QUERY_RESULT_CACHE_MISSES", "queries", false);
+
   // Audit logging metrics
   public static final BrokerMeter AUDIT_REQUEST_FAILURES = create("AUDIT_REQUEST_FAILURES", "failures", true);
   public static final BrokerMeter AUDIT_RESPONSE_FAILURES = create("AUDIT_RESPONSE_FAILURES", "failures", true);
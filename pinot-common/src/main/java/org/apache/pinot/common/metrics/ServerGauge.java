@@ -66,6 +66,7 @@ public enum ServerGauge implements AbstractMetrics.Gauge {
   // Incremented when the semaphore is acquired and decremented when the semaphore is released
   SEGMENT_TABLE_DOWNLOAD_COUNT("segmentTableDownloadCount", false),
   SEGMENT_DOWNLOAD_COUNT("segmentDownloadCount", true),
+  SEGMENT_WARM_UP_PENDING_COUNT("segments", false, "Number of loaded segments waiting to be warmed up"),
   SEGMENT_ALL_PREPROCESS_COUNT("segmentAllPreprocessCount", true),
   SEGMENT_STARTREE_PREPROCESS_COUNT("segmentStartreePreprocessCount", true),
   SEGMENT_MULTI_COL_TEXT_INDEX_PREPROCESS_COUNT("segmentMultiColTextIndexPreprocessCount", true),
@@ -101,6 +101,8 @@ public enum ServerMeter implements AbstractMetrics.Meter {
   SEGMENT_DOWNLOAD_FAILURES("segments", false),
   SEGMENT_DOWNLOAD_FROM_REMOTE_FAILURES("segments", false),
   SEGMENT_DOWNLOAD_FROM_PEERS_FAILURES("segments", false),
+  SEGMENT_WARM_UP_BYTES("bytes", false, "Size of the index buffers warmed up for the loaded segments"),
+  SEGMENTS_WARMED_UP("segments", false),
   SEGMENT_BUILD_FAILURE("segments", false),
   SEGMENT_UPLOAD_FAILURE("segments", false),
   SEGMENT_UPLOAD_SUCCESS("segments", false),
@@ -135,6 +137,8 @@ public enum ServerMeter implements AbstractMetrics.Meter {
   NUM_SEGMENTS_PRUNED_INVALID("numSegmentsPrunedInvalid", false),
   NUM_SEGMENTS_PRUNED_BY_LIMIT("numSegmentsPrunedByLimit", false),
   NUM_SEGMENTS_PRUNED_BY_VALUE("numSegmentsPrunedByValue", false),
+  SEGMENT_RESULT_CACHE_HITS("segments", false, "Number of segments served from the segment result cache"),
+  SEGMENT_RESULT_CACHE_MISSES("segments", false, "Number of cacheable segments not found in the segment result cache"),
   LARGE_QUERY_RESPONSES_SENT("largeResponses", false),
   TOTAL_THREAD_CPU_TIME_MILLIS("millis", false),
   THREAD_MEM_ALLOCATED_BYTES("bytes", false),
@@ -171,6 +171,14 @@ public class QueryOptionsUtils {
     return "false".equalsIgnoreCase(queryOptions.get(QueryOptionKey.USE_STAR_TREE));
   }
 
+  public static boolean isAllowStaleConsumingSegmentStarTree(Map<String, String> queryOptions) {
+    return Boolean.parseBoolean(queryOptions.get(QueryOptionKey.ALLOW_STALE_CONSUMING_SEGMENT_STAR_TREE));
+  }
+
+  public static boolean isSkipResultCache(Map<String, String> queryOptions) {
+    return "false".equalsIgnoreCase(queryOptions.get(QueryOptionKey.USE_RESULT_CACHE));
+  }
+
   /**
    * When true, use JsonIndexDistinctOperator for SELECT DISTINCT jsonExtractIndex(...) when applicable.
    * Set via query option useIndexBasedDistinctOperator=true.
@@ -302,6 +310,12 @@ public class QueryOptionsUtils {
     return checkedParseIntPositive(QueryOptionKey.MAX_EXECUTION_THREADS, maxExecutionThreadsString);
   }
 
+  @Nullable
+  public static Integer getMorselMinDocs(Map<String, String> queryOptions) {
+    String morselMinDocsString = queryOptions.get(QueryOptionKey.MORSEL_MIN_DOCS);
+    return checkedParseIntNonNegative(QueryOptionKey.MORSEL_MIN_DOCS, morselMinDocsString);
+  }
+
   @Nullable
   public static Integer getMinSegmentGroupTrimSize(Map<String, String> queryOptions) {
     String minSegmentGroupTrimSizeString = queryOptions.get(QueryOptionKey.MIN_SEGMENT_GROUP_TRIM_SIZE);
@@ -376,6 +390,10 @@ public class QueryOptionsUtils {
     return Boolean.parseBoolean(queryOptions.get(QueryOptionKey.ERROR_ON_NUM_GROUPS_LIMIT));
   }
 
+  public static boolean isSpillOnNumGroupsLimit(Map<String, String> queryOptions) {
+    return Boolean.parseBoolean(queryOptions.get(QueryOptionKey.SPILL_ON_NUM_GROUPS_LIMIT));
+  }
+
   @Nullable
   public static Integer getNumGroupsLimit(Map<String, String> queryOptions) {
     String maxNumGroupLimit = queryOptions.get(QueryOptionKey.NUM_GROUPS_LIMIT);
@@ -458,6 +476,18 @@ public class QueryOptionsUtils {
     return joinOverflowModeStr != null ? JoinOverFlowMode.valueOf(joinOverflowModeStr) : null;
   }
 
+  @Nullable
+  public static Integer getNumSpillPartitions(Map<String, String> queryOptions) {
+    String numSpillPartitions = queryOptions.get(QueryOptionKey.NUM_SPILL_PARTITIONS);
+    return checkedParseIntPositive(QueryOptionKey.NUM_SPILL_PARTITIONS, numSpillPartitions);
+  }
+
+  @Nullable
+  public static Integer getMaxRowsInSortedExchange(Map<String, String> queryOptions) {
+    String maxRowsInSortedExchange = queryOptions.get(QueryOptionKey.MAX_ROWS_IN_SORTED_EXCHANGE);
+    return checkedParseIntPositive(QueryOptionKey.MAX_ROWS_IN_SORTED_EXCHANGE, maxRowsInSortedExchange);
+  }
+
   @Nullable
   public static Integer getMaxRowsInWindow(Map<String, String> queryOptions) {
     String maxRowsInWindow = queryOptions.get(QueryOptionKey.MAX_ROWS_IN_WINDOW);
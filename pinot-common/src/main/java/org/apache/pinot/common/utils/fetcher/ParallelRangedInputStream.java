@@ -0,0 +1,199 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.common.utils.fetcher;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.RateLimiter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import javax.annotation.concurrent.NotThreadSafe;
+import org.apache.commons.io.IOUtils;
+import org.apache.pinot.spi.filesystem.PinotFS;
+import org.apache.pinot.spi.utils.retry.RetryPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Input stream that reads a remote file with multiple parallel ranged requests to the {@link PinotFS}, and returns the
+ * bytes in order. It allows consuming the file (e.g. decompressing and untarring a segment tarball) while it is being
+ * downloaded, without staging the whole file on the local disk.
+ *
+ * <p>The file is split into parts of fixed size, and up to {@code numParallelParts} parts are fetched ahead of the
+ * part being read, so at most {@code (numParallelParts + 1) * partSize} bytes are buffered in memory. Each part is
+ * retried on its own with the given retry policy. The download bandwidth is throttled by all the given rate limiters
+ * (in bytes per second), e.g. one shared by the server and one shared by the table.
+ */
+@NotThreadSafe
+public class ParallelRangedInputStream extends InputStream {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ParallelRangedInputStream.class);
+  // Granularity of the rate limiting within a part
+  private static final int RATE_LIMIT_CHUNK_SIZE = 1024 * 1024;
+  private static final byte[] EMPTY_PART = new byte[0];
+
+  private final PinotFS _pinotFS;
+  private final URI _uri;
+  private final long _length;
+  private final int _partSize;
+  private final int _numParts;
+  private final int _numParallelParts;
+  private final ExecutorService _executorService;
+  private final List<RateLimiter> _rateLimiters;
+  private final RetryPolicy _retryPolicy;
+  private final ArrayDeque<Future<byte[]>> _pendingParts = new ArrayDeque<>();
+
+  private int _nextPartId;
+  private byte[] _currentPart = EMPTY_PART;
+  private int _currentPartOffset;
+  private boolean _closed;
+
+  public ParallelRangedInputStream(PinotFS pinotFS, URI uri, long length, int partSize, int numParallelParts,
+      ExecutorService executorService, List<RateLimiter> rateLimiters, RetryPolicy retryPolicy) {
+    Preconditions.checkArgument(length >= 0, "Invalid length: %s", length);
+    Preconditions.checkArgument(partSize > 0, "Invalid part size: %s", partSize);
+    Preconditions.checkArgument(numParallelParts > 0, "Invalid number of parallel parts: %s", numParallelParts);
+    long numParts = (length + partSize - 1) / partSize;
+    Preconditions.checkArgument(numParts <= Integer.MAX_VALUE, "Too many parts for length: %s, part size: %s", length,
+        partSize);
+    _pinotFS = pinotFS;
+    _uri = uri;
+    _length = length;
+    _partSize = partSize;
+    _numParts = (int) numParts;
+    _numParallelParts = numParallelParts;
+    _executorService = executorService;
+    _rateLimiters = rateLimiters;
+    _retryPolicy = retryPolicy;
+    submitParts();
+  }
+
+  private void submitParts() {
+    while (_nextPartId < _numParts && _pendingParts.size() < _numParallelParts) {
+      int partId = _nextPartId++;
+      _pendingParts.add(_executorService.submit(() -> fetchPart(partId)));
+    }
+  }
+
+  private byte[] fetchPart(int partId)
+      throws Exception {
+    long offset = (long) partId * _partSize;
+    int size = (int) Math.min(_partSize, _length - offset);
+    byte[] part = new byte[size];
+    _retryPolicy.attempt(() -> {
+      try (InputStream inputStream = _pinotFS.open(_uri, offset, size)) {
+        int bytesRead = 0;
+        while (bytesRead < size) {
+          int chunkSize = Math.min(RATE_LIMIT_CHUNK_SIZE, size - bytesRead);
+          for (RateLimiter rateLimiter : _rateLimiters) {
+            rateLimiter.acquire(chunkSize);
+          }
+          IOUtils.readFully(inputStream, part, bytesRead, chunkSize);
+          bytesRead += chunkSize;
+        }
+        return true;
+      } catch (IOException e) {
+        LOGGER.warn("Caught exception while fetching part: {} (offset: {}, size: {}) of: {}", partId, offset, size,
+            _uri, e);
+        return false;
+      }
+    });
+    return part;
+  }
+
+  /**
+   * Makes sure the current part has bytes to read, returns {@code false} if the end of the file is reached.
+   */
+  private boolean ensureCurrentPart()
+      throws IOException {
+    if (_closed) {
+      throw new IOException("Stream is closed");
+    }
+    while (_currentPartOffset == _currentPart.length) {
+      Future<byte[]> future = _pendingParts.poll();
+      if (future == null) {
+        return false;
+      }
+      // Release the consumed part before waiting for the next one
+      _currentPart = EMPTY_PART;
+      _currentPartOffset = 0;
+      try {
+        _currentPart = future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while fetching: " + _uri);
+      } catch (ExecutionException e) {
+        throw new IOException("Failed to fetch part of: " + _uri, e.getCause());
+      }
+      submitParts();
+    }
+    return true;
+  }
+
+  @Override
+  public int read()
+      throws IOException {
+    if (!ensureCurrentPart()) {
+      return -1;
+    }
+    return _currentPart[_currentPartOffset++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len)
+      throws IOException {
+    Objects.checkFromIndexSize(off, len, b.length);
+    if (len == 0) {
+      return 0;
+    }
+    if (!ensureCurrentPart()) {
+      return -1;
+    }
+    int bytesToRead = Math.min(len, _currentPart.length - _currentPartOffset);
+    System.arraycopy(_currentPart, _currentPartOffset, b, off, bytesToRead);
+    _currentPartOffset += bytesToRead;
+    return bytesToRead;
+  }
+
+  @Override
+  public int available() {
+    return _currentPart.length - _currentPartOffset;
+  }
+
+  @Override
+  public void close() {
+    if (_closed) {
+      return;
+    }
+    _closed = true;
+    for (Future<byte[]> future : _pendingParts) {
+      future.cancel(true);
+    }
+    _pendingParts.clear();
+    _currentPart = EMPTY_PART;
+    _currentPartOffset = 0;
+  }
+}
@@ -18,21 +18,72 @@
  */
 package org.apache.pinot.common.utils.fetcher;
 
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.RateLimiter;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+import org.apache.pinot.common.utils.NamedThreadFactory;
 import org.apache.pinot.common.utils.TarCompressionUtils;
+import org.apache.pinot.spi.env.PinotConfiguration;
 import org.apache.pinot.spi.filesystem.PinotFS;
 import org.apache.pinot.spi.filesystem.PinotFSFactory;
+import org.apache.pinot.spi.utils.DataSizeUtils;
 import org.apache.pinot.spi.utils.retry.AttemptsExceededException;
 import org.apache.pinot.spi.utils.retry.RetriableOperationException;
 import org.apache.pinot.spi.utils.retry.RetryPolicies;
 
 
+/**
+ * Segment fetcher based on the {@link PinotFS} of the URI scheme.
+ *
+ * <p>When streaming the download and untar, the segment can be downloaded with multiple parallel ranged requests (see
+ * {@link ParallelRangedInputStream}), which is configured with:
+ * <ul>
+ *   <li>{@code parallel.download.parts}: number of parts to download in parallel for each segment</li>
+ *   <li>{@code parallel.download.part.size}: size of each part (e.g. '16M')</li>
+ *   <li>{@code download.rate.limit.bytes.per.sec}: download bandwidth limit shared by all the segment downloads of this
+ *   fetcher, i.e. of the server</li>
+ * </ul>
+ */
 public class PinotFSSegmentFetcher extends BaseSegmentFetcher {
+  public static final String PARALLEL_DOWNLOAD_PARTS_CONFIG_KEY = "parallel.download.parts";
+  public static final String PARALLEL_DOWNLOAD_PART_SIZE_CONFIG_KEY = "parallel.download.part.size";
+  public static final String DOWNLOAD_RATE_LIMIT_CONFIG_KEY = "download.rate.limit.bytes.per.sec";
+  public static final int DEFAULT_PARALLEL_DOWNLOAD_PARTS = 1;
+  public static final String DEFAULT_PARALLEL_DOWNLOAD_PART_SIZE = "16M";
+  public static final long DEFAULT_DOWNLOAD_RATE_LIMIT = -1;
+
+  private int _numParallelDownloadParts;
+  private int _downloadPartSize;
+  private RateLimiter _downloadRateLimiter;
+  private ExecutorService _downloadExecutorService;
+
+  @Override
+  protected void doInit(PinotConfiguration config) {
+    _numParallelDownloadParts = config.getProperty(PARALLEL_DOWNLOAD_PARTS_CONFIG_KEY, DEFAULT_PARALLEL_DOWNLOAD_PARTS);
+    Preconditions.checkArgument(_numParallelDownloadParts > 0, "Invalid number of parallel download parts: %s",
+        _numParallelDownloadParts);
+    long downloadPartSize = DataSizeUtils.toBytes(
+        config.getProperty(PARALLEL_DOWNLOAD_PART_SIZE_CONFIG_KEY, DEFAULT_PARALLEL_DOWNLOAD_PART_SIZE));
+    Preconditions.checkArgument(downloadPartSize > 0 && downloadPartSize <= Integer.MAX_VALUE,
+        "Invalid download part size: %s", downloadPartSize);
+    _downloadPartSize = (int) downloadPartSize;
+    long downloadRateLimit = config.getProperty(DOWNLOAD_RATE_LIMIT_CONFIG_KEY, DEFAULT_DOWNLOAD_RATE_LIMIT);
+    _downloadRateLimiter = downloadRateLimit > 0 ? RateLimiter.create(downloadRateLimit) : null;
+    // NOTE: Threads are only created when ranged download is used, and are shared by all the segment downloads
+    _downloadExecutorService = Executors.newCachedThreadPool(new NamedThreadFactory("segment-download-part", true));
+    _logger.info("Initialized with numParallelDownloadParts: {}, downloadPartSize: {}, downloadRateLimit: {}",
+        _numParallelDownloadParts, _downloadPartSize, downloadRateLimit);
+  }
 
   @Override
   protected void fetchSegmentToLocalWithoutRetry(URI uri, File dest)
@@ -47,6 +98,20 @@ public class PinotFSSegmentFetcher extends BaseSegmentFetcher {
   @Override
   public File fetchUntarSegmentToLocalStreamed(URI uri, File dest, long rateLimit, AtomicInteger attempts)
       throws Exception {
+    return fetchUntarSegmentToLocalStreamed(uri, dest, rateLimit, attempts, null);
+  }
+
+  @Override
+  public File fetchUntarSegmentToLocalStreamed(URI uri, File dest, long rateLimit, AtomicInteger attempts,
+      @Nullable RateLimiter downloadRateLimiter)
+      throws Exception {
+    List<RateLimiter> downloadRateLimiters = new ArrayList<>(2);
+    if (_downloadRateLimiter != null) {
+      downloadRateLimiters.add(_downloadRateLimiter);
+    }
+    if (downloadRateLimiter != null) {
+      downloadRateLimiters.add(downloadRateLimiter);
+    }
     PinotFS pinotFS;
     if (uri.getScheme() == null) {
       pinotFS = PinotFSFactory.create(PinotFSFactory.LOCAL_PINOT_FS_SCHEME);
@@ -58,7 +123,7 @@ public class PinotFSSegmentFetcher extends BaseSegmentFetcher {
     try {
       int tries =
           RetryPolicies.exponentialBackoffRetryPolicy(_retryCount, _retryWaitMs, _retryDelayScaleFactor).attempt(() -> {
-            try (InputStream inputStream = pinotFS.open(uri)) {
+            try (InputStream inputStream = openSegment(pinotFS, uri, downloadRateLimiters)) {
               List<File> untarredFiles = TarCompressionUtils.untarWithRateLimiter(inputStream, dest, rateLimit);
               untarredFileRef.set(untarredFiles.get(0));
               return true;
@@ -74,4 +139,18 @@ public class PinotFSSegmentFetcher extends BaseSegmentFetcher {
     }
     return untarredFileRef.get();
   }
+
+  /**
+   * Opens the segment with a single stream, or with parallel ranged requests when multiple download parts are
+   * configured or the download bandwidth needs to be throttled.
+   */
+  private InputStream openSegment(PinotFS pinotFS, URI uri, List<RateLimiter> downloadRateLimiters)
+      throws IOException {
+    if (_numParallelDownloadParts == 1 && downloadRateLimiters.isEmpty()) {
+      return pinotFS.open(uri);
+    }
+    return new ParallelRangedInputStream(pinotFS, uri, pinotFS.length(uri), _downloadPartSize,
+        _numParallelDownloadParts, _downloadExecutorService, downloadRateLimiters,
+        RetryPolicies.exponentialBackoffRetryPolicy(_retryCount, _retryWaitMs, _retryDelayScaleFactor));
+  }
 }
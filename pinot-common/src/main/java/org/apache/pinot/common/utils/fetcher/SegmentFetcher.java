@@ -18,11 +18,13 @@
  */
 package org.apache.pinot.common.utils.fetcher;
 
+import com.google.common.util.concurrent.RateLimiter;
 import java.io.File;
 import java.net.URI;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
+import javax.annotation.Nullable;
 import org.apache.pinot.spi.env.PinotConfiguration;
 
 
@@ -45,6 +47,17 @@ public interface SegmentFetcher {
   File fetchUntarSegmentToLocalStreamed(URI uri, File dest, long rateLimit, AtomicInteger attempts)
       throws Exception;
 
+  /**
+   * Fetches a segment from URI location and untar to local in a streamed manner, and throttles the download bandwidth
+   * with the given rate limiter (e.g. shared by all the segment downloads of a table). Segment fetchers not supporting
+   * download throttling ignore the rate limiter.
+   */
+  default File fetchUntarSegmentToLocalStreamed(URI uri, File dest, long rateLimit, AtomicInteger attempts,
+      @Nullable RateLimiter downloadRateLimiter)
+      throws Exception {
+    return fetchUntarSegmentToLocalStreamed(uri, dest, rateLimit, attempts);
+  }
+
   /**
    * Fetches a segment to local from any uri in the given list.
    */
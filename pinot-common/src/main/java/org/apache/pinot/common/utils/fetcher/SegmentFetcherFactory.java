@@ -18,6 +18,7 @@
  */
 package org.apache.pinot.common.utils.fetcher;
 
+import com.google.common.util.concurrent.RateLimiter;
 import java.io.File;
 import java.net.URI;
 import java.util.Collections;
@@ -157,6 +158,18 @@ public class SegmentFetcherFactory {
     return fetchAndStreamUntarToLocal(new URI(uri), tempRootDir, maxStreamRateInByte, attempts);
   }
 
+  /**
+   * Same as {@link #fetchAndStreamUntarToLocal(URI, File, long, AtomicInteger)}, but also throttles the download
+   * bandwidth with the given rate limiter (in bytes per second) if supported by the segment fetcher.
+   */
+  public static File fetchAndStreamUntarToLocal(String uri, File tempRootDir, long maxStreamRateInByte,
+      AtomicInteger attempts, @Nullable RateLimiter downloadRateLimiter)
+      throws Exception {
+    URI segmentUri = new URI(uri);
+    return getSegmentFetcher(segmentUri.getScheme()).fetchUntarSegmentToLocalStreamed(segmentUri, tempRootDir,
+        maxStreamRateInByte, attempts, downloadRateLimiter);
+  }
+
   /**
    * Fetches a segment from a URI location to a local file and decrypts it if needed
    * @param uri remote segment location
@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.common.utils.fetcher;
+
+import com.google.common.util.concurrent.RateLimiter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.pinot.spi.filesystem.LocalPinotFS;
+import org.apache.pinot.spi.filesystem.PinotFS;
+import org.apache.pinot.spi.utils.retry.RetryPolicies;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+
+public class ParallelRangedInputStreamTest {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "ParallelRangedInputStreamTest");
+  private static final int PART_SIZE = 1000;
+
+  private ExecutorService _executorService;
+
+  @BeforeClass
+  public void setUp()
+      throws IOException {
+    FileUtils.deleteQuietly(TEMP_DIR);
+    FileUtils.forceMkdir(TEMP_DIR);
+    _executorService = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _executorService.shutdownNow();
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @Test
+  public void testRead()
+      throws IOException {
+    Random random = new Random();
+    // Cover empty file, single partial part, exact multiple of the part size and trailing partial part
+    for (int length : new int[]{0, 1, 999, PART_SIZE, 10 * PART_SIZE, 10 * PART_SIZE + 123}) {
+      byte[] expected = new byte[length];
+      random.nextBytes(expected);
+      File file = new File(TEMP_DIR, "file" + length);
+      FileUtils.writeByteArrayToFile(file, expected);
+      for (int numParallelParts : new int[]{1, 3, 20}) {
+        try (InputStream inputStream = new ParallelRangedInputStream(new LocalPinotFS(), file.toURI(), length,
+            PART_SIZE, numParallelParts, _executorService, List.of(), RetryPolicies.noDelayRetryPolicy(1))) {
+          assertEquals(IOUtils.toByteArray(inputStream), expected);
+          assertEquals(inputStream.read(), -1);
+        }
+        // Read byte by byte
+        try (InputStream inputStream = new ParallelRangedInputStream(new LocalPinotFS(), file.toURI(), length,
+            PART_SIZE, numParallelParts, _executorService, List.of(RateLimiter.create(1024 * 1024 * 1024)),
+            RetryPolicies.noDelayRetryPolicy(1))) {
+          for (int i = 0; i < length; i++) {
+            assertEquals(inputStream.read(), expected[i] & 0xFF);
+          }
+          assertEquals(inputStream.read(), -1);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testRetryPart()
+      throws IOException {
+    int length = 5 * PART_SIZE + 1;
+    byte[] expected = new byte[length];
+    new Random().nextBytes(expected);
+    File file = new File(TEMP_DIR, "retryFile");
+    FileUtils.writeByteArrayToFile(file, expected);
+
+    // Fail the first request of each part
+    Set<Long> requestedOffsets = ConcurrentHashMap.newKeySet();
+    PinotFS pinotFS = new LocalPinotFS() {
+      @Override
+      public InputStream open(URI uri, long offset, long length)
+          throws IOException {
+        if (requestedOffsets.add(offset)) {
+          throw new IOException("Injected failure");
+        }
+        return super.open(uri, offset, length);
+      }
+    };
+    try (InputStream inputStream = new ParallelRangedInputStream(pinotFS, file.toURI(), length, PART_SIZE, 2,
+        _executorService, List.of(), RetryPolicies.noDelayRetryPolicy(2))) {
+      assertEquals(IOUtils.toByteArray(inputStream), expected);
+    }
+    assertEquals(requestedOffsets.size(), 6);
+
+    // Fail when the retries are exhausted
+    requestedOffsets.clear();
+    try (InputStream inputStream = new ParallelRangedInputStream(pinotFS, file.toURI(), length, PART_SIZE, 2,
+        _executorService, List.of(), RetryPolicies.noDelayRetryPolicy(1))) {
+      IOException e = expectThrows(IOException.class, () -> IOUtils.toByteArray(inputStream));
+      assertTrue(e.getMessage().contains("Failed to fetch part"));
+    }
+  }
+}
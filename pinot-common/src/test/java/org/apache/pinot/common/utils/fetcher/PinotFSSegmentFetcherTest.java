@@ -18,12 +18,14 @@
  */
 package org.apache.pinot.common.utils.fetcher;
 
+import com.google.common.util.concurrent.RateLimiter;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.charset.Charset;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.pinot.common.utils.TarCompressionUtils;
 import org.apache.pinot.spi.env.PinotConfiguration;
 import org.apache.pinot.spi.filesystem.LocalPinotFS;
@@ -226,4 +228,34 @@ public class PinotFSSegmentFetcherTest {
     String actualContent = FileUtils.readFileToString(largeIndexFile, Charset.defaultCharset());
     assertEquals(actualContent, largeContent.toString());
   }
+
+  @Test
+  public void testFetchUntarSegmentToLocalStreamedWithParallelParts()
+      throws Exception {
+    PinotConfiguration fetcherConfig = new PinotConfiguration();
+    fetcherConfig.setProperty(BaseSegmentFetcher.RETRY_COUNT_CONFIG_KEY, 3);
+    fetcherConfig.setProperty(BaseSegmentFetcher.RETRY_WAIT_MS_CONFIG_KEY, 10);
+    fetcherConfig.setProperty(PinotFSSegmentFetcher.PARALLEL_DOWNLOAD_PARTS_CONFIG_KEY, 4);
+    fetcherConfig.setProperty(PinotFSSegmentFetcher.PARALLEL_DOWNLOAD_PART_SIZE_CONFIG_KEY, "1K");
+    fetcherConfig.setProperty(PinotFSSegmentFetcher.DOWNLOAD_RATE_LIMIT_CONFIG_KEY, 100 * 1024 * 1024);
+    PinotFSSegmentFetcher segmentFetcher = new PinotFSSegmentFetcher();
+    segmentFetcher.init(fetcherConfig);
+
+    // Use random content so that the tarball spans many parts
+    String segmentName = SEGMENT_NAME + "_parallel";
+    String testContent = RandomStringUtils.randomAlphanumeric(100_000);
+    File segmentTar = createTestSegmentTar(segmentName, testContent);
+    assertTrue(segmentTar.length() > 10 * 1024);
+
+    AtomicInteger failedAttempts = new AtomicInteger(0);
+    File untarredSegment =
+        segmentFetcher.fetchUntarSegmentToLocalStreamed(segmentTar.toURI(), DOWNLOAD_DIR, -1, failedAttempts,
+            RateLimiter.create(100 * 1024 * 1024));
+    assertNotNull(untarredSegment);
+    assertEquals(untarredSegment.getName(), segmentName);
+    assertEquals(failedAttempts.get(), 0);
+    assertEquals(FileUtils.readFileToString(new File(untarredSegment, "index"), Charset.defaultCharset()),
+        testContent);
+    assertTrue(new File(untarredSegment, "metadata.properties").exists());
+  }
 }
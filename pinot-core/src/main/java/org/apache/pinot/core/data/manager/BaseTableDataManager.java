@@ -22,6 +22,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.RateLimiter;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
@@ -77,6 +78,7 @@ import org.apache.pinot.segment.local.segment.index.dictionary.DictionaryIndexTy
 import org.apache.pinot.segment.local.segment.index.loader.IndexLoadingConfig;
 import org.apache.pinot.segment.local.segment.index.loader.LoaderUtils;
 import org.apache.pinot.segment.local.segment.index.loader.invertedindex.MultiColumnTextIndexHandler;
+import org.apache.pinot.segment.local.segment.store.SegmentArchive;
 import org.apache.pinot.segment.local.startree.StarTreeBuilderUtils;
 import org.apache.pinot.segment.local.startree.v2.builder.StarTreeV2BuilderConfig;
 import org.apache.pinot.segment.local.upsert.PartitionUpsertMetadataManager;
@@ -87,6 +89,7 @@ import org.apache.pinot.segment.local.utils.SegmentOperationsThrottlerSet;
 import org.apache.pinot.segment.local.utils.SegmentReloadSemaphore;
 import org.apache.pinot.segment.local.utils.ServerReloadJobStatusCache;
 import org.apache.pinot.segment.local.utils.TableConfigUtils;
+import org.apache.pinot.segment.local.warmup.SegmentWarmUpManager;
 import org.apache.pinot.segment.spi.ColumnMetadata;
 import org.apache.pinot.segment.spi.ImmutableSegment;
 import org.apache.pinot.segment.spi.IndexSegment;
@@ -116,6 +119,7 @@ import org.apache.pinot.spi.data.FieldSpec;
 import org.apache.pinot.spi.data.Schema;
 import org.apache.pinot.spi.utils.CommonConstants;
 import org.apache.pinot.spi.utils.ConsumingSegmentConsistencyModeListener;
+import org.apache.pinot.spi.utils.ReadMode;
 import org.apache.pinot.spi.utils.builder.TableNameBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -150,6 +154,11 @@ public abstract class BaseTableDataManager implements TableDataManager {
   protected String _peerDownloadScheme;
   protected long _streamSegmentDownloadUntarRateLimitBytesPerSec;
   protected boolean _isStreamSegmentDownloadUntar;
+  // Limits the download bandwidth of all the segments of the table, null for no limit
+  protected RateLimiter _segmentDownloadRateLimiter;
+  // Warms up the hot index buffers of the added segments, null when not enabled
+  @Nullable
+  protected SegmentWarmUpManager _segmentWarmUpManager;
   @Nullable
   protected SegmentOperationsThrottlerSet _segmentOperationsThrottlerSet;
 
@@ -240,6 +249,19 @@ public abstract class BaseTableDataManager implements TableDataManager {
               + "The rate limit interval for streamed download-untar is {} bytes/s",
           _streamSegmentDownloadUntarRateLimitBytesPerSec);
     }
+    long segmentDownloadRateLimitBytesPerSec = instanceDataManagerConfig.getTableLevelSegmentDownloadRateLimit();
+    if (segmentDownloadRateLimitBytesPerSec > 0) {
+      LOGGER.info("Limiting segment download rate for table: {} to {} bytes/s", _tableNameWithType,
+          segmentDownloadRateLimitBytesPerSec);
+      _segmentDownloadRateLimiter = RateLimiter.create(segmentDownloadRateLimitBytesPerSec);
+    } else {
+      _segmentDownloadRateLimiter = null;
+    }
+    // Segment warm-up only applies to the memory mapped segments
+    if (instanceDataManagerConfig.getReadMode() == ReadMode.mmap) {
+      _segmentWarmUpManager = SegmentWarmUpManager.create(_tableNameWithType, _indexDir,
+          instanceDataManagerConfig.getConfig().subset(SegmentWarmUpManager.CONFIG_PREFIX), _serverMetrics);
+    }
     int maxParallelSegmentDownloads = instanceDataManagerConfig.getMaxParallelSegmentDownloads();
     _numSegmentsAcquiredDownloadSemaphore = new AtomicInteger(0);
     _serverMetrics.setValueOfTableGauge(_tableNameWithType, ServerGauge.SEGMENT_TABLE_DOWNLOAD_COUNT, 0);
@@ -293,6 +315,9 @@ public abstract class BaseTableDataManager implements TableDataManager {
     _logger.info("Shutting down table data manager");
     _shutDown = true;
     doShutdown();
+    if (_segmentWarmUpManager != null) {
+      _segmentWarmUpManager.persist();
+    }
     _logger.info("Shut down table data manager");
   }
 
@@ -372,6 +397,9 @@ public abstract class BaseTableDataManager implements TableDataManager {
       oldSegmentManager.offload();
       releaseSegment(oldSegmentManager);
     }
+    if (_segmentWarmUpManager != null) {
+      _segmentWarmUpManager.warmUpAsync(this, immutableSegment);
+    }
   }
 
   @Override
@@ -724,10 +752,19 @@ public abstract class BaseTableDataManager implements TableDataManager {
     _serverMetrics.addMeteredTableValue(_tableNameWithType, ServerMeter.DELETED_SEGMENT_COUNT, 1L);
     _serverMetrics.addValueToTableGauge(_tableNameWithType, ServerGauge.DOCUMENT_COUNT,
         -segmentDataManager.getSegment().getSegmentMetadata().getTotalDocs());
+    if (_segmentWarmUpManager != null) {
+      _segmentWarmUpManager.onSegmentClosed(segmentDataManager.getSegment());
+    }
     segmentDataManager.destroy();
     _logger.info("Closed segment: {}", segmentName);
   }
 
+  @Nullable
+  @Override
+  public SegmentWarmUpManager getSegmentWarmUpManager() {
+    return _segmentWarmUpManager;
+  }
+
   @Override
   public int getNumSegments() {
     return _segmentDataManagerMap.size();
@@ -1186,19 +1223,29 @@ public abstract class BaseTableDataManager implements TableDataManager {
       long downloadStartTime = System.currentTimeMillis();
       try {
         File untarredSegmentDir;
-        if (_isStreamSegmentDownloadUntar && zkMetadata.getCrypterName() == null) {
+        // Segment archive is a seekable alternative to the segment tarball, which is extracted instead of untarred
+        boolean isSegmentArchive = downloadUrl.endsWith(SegmentArchive.FILE_EXTENSION);
+        if (_isStreamSegmentDownloadUntar && zkMetadata.getCrypterName() == null && !isSegmentArchive) {
           _logger.info("Downloading segment: {} using streamed download-untar with maxStreamRateInByte: {}",
               segmentName, _streamSegmentDownloadUntarRateLimitBytesPerSec);
           AtomicInteger failedAttempts = new AtomicInteger(0);
           try {
             untarredSegmentDir = SegmentFetcherFactory.fetchAndStreamUntarToLocal(downloadUrl, tempRootDir,
-                _streamSegmentDownloadUntarRateLimitBytesPerSec, failedAttempts);
+                _streamSegmentDownloadUntarRateLimitBytesPerSec, failedAttempts, _segmentDownloadRateLimiter);
             _logger.info("Downloaded and untarred segment: {} from: {}, failed attempts: {}", segmentName, downloadUrl,
                 failedAttempts.get());
           } finally {
             _serverMetrics.addMeteredTableValue(_tableNameWithType,
                 ServerMeter.SEGMENT_STREAMED_DOWNLOAD_UNTAR_FAILURES, failedAttempts.get());
           }
+        } else if (isSegmentArchive) {
+          File segmentArchiveFile = new File(tempRootDir, segmentName + SegmentArchive.FILE_EXTENSION);
+          SegmentFetcherFactory.fetchAndDecryptSegmentToLocal(downloadUrl, segmentArchiveFile,
+              zkMetadata.getCrypterName());
+          _logger.info("Downloaded segment archive: {} from: {} to: {}, file length: {}", segmentName, downloadUrl,
+              segmentArchiveFile, segmentArchiveFile.length());
+          untarredSegmentDir = new File(tempRootDir, segmentName);
+          SegmentArchive.extract(segmentArchiveFile, untarredSegmentDir);
         } else {
           File segmentTarFile = new File(tempRootDir, segmentName + TarCompressionUtils.TAR_COMPRESSED_FILE_EXTENSION);
           SegmentFetcherFactory.fetchAndDecryptSegmentToLocal(downloadUrl, segmentTarFile, zkMetadata.getCrypterName());
@@ -0,0 +1,209 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.data.manager.realtime;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import org.apache.pinot.segment.local.segment.creator.TransformPipeline;
+import org.apache.pinot.spi.stream.MessageBatch;
+import org.apache.pinot.spi.stream.StreamDataDecoder;
+import org.apache.pinot.spi.stream.StreamDataDecoderResult;
+import org.apache.pinot.spi.stream.StreamMessage;
+
+
+/**
+ * Decodes and transforms the messages of a {@link MessageBatch} in parallel with a bounded worker pool, so that the
+ * consumer thread only needs to index the processed rows in offset order.
+ *
+ * <p>The batch is split into one contiguous chunk of messages per worker. Each worker owns a {@link StreamDataDecoder}
+ * and a {@link TransformPipeline} because neither of them is thread-safe, and the decoders must not reuse the decoded
+ * row across messages. The consumer thread waits for the chunks in order, so it can index the first chunk while the
+ * other chunks are still being processed.
+ *
+ * <p>This class is used by the consumer thread only.
+ */
+@NotThreadSafe
+class PipelinedStreamMessageProcessor implements Closeable {
+  private final List<StreamDataDecoder> _decoders;
+  private final List<TransformPipeline> _transformPipelines;
+  private final int _numWorkers;
+  private final ExecutorService _executorService;
+  private final List<Future<?>> _futures;
+
+  private ProcessedStreamMessage[] _processedMessages;
+  private int _chunkSize;
+  private volatile boolean _cancelled;
+
+  PipelinedStreamMessageProcessor(String segmentName, List<StreamDataDecoder> decoders,
+      List<TransformPipeline> transformPipelines) {
+    Preconditions.checkArgument(!decoders.isEmpty() && decoders.size() == transformPipelines.size(),
+        "Expect the same number of decoders and transform pipelines, got: %s and %s", decoders.size(),
+        transformPipelines.size());
+    _decoders = decoders;
+    _transformPipelines = transformPipelines;
+    _numWorkers = decoders.size();
+    _executorService = Executors.newFixedThreadPool(_numWorkers,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat(segmentName + "-decoder-%d").build());
+    _futures = new ArrayList<>(_numWorkers);
+  }
+
+  int getNumWorkers() {
+    return _numWorkers;
+  }
+
+  /**
+   * Submits the messages of the given batch to the workers. The previous batch is finished first if needed.
+   */
+  void submit(MessageBatch<?> messageBatch) {
+    if (!_futures.isEmpty()) {
+      finish();
+    }
+    int numMessages = messageBatch.getMessageCount();
+    if (numMessages == 0) {
+      return;
+    }
+    ProcessedStreamMessage[] processedMessages = new ProcessedStreamMessage[numMessages];
+    int chunkSize = (numMessages + _numWorkers - 1) / _numWorkers;
+    _processedMessages = processedMessages;
+    _chunkSize = chunkSize;
+    _cancelled = false;
+    for (int i = 0; i < _numWorkers; i++) {
+      int startIndex = i * chunkSize;
+      int endIndex = Math.min(startIndex + chunkSize, numMessages);
+      if (startIndex >= endIndex) {
+        break;
+      }
+      StreamDataDecoder decoder = _decoders.get(i);
+      TransformPipeline transformPipeline = _transformPipelines.get(i);
+      _futures.add(_executorService.submit(() -> {
+        for (int index = startIndex; index < endIndex && !_cancelled; index++) {
+          processedMessages[index] =
+              ProcessedStreamMessage.process(messageBatch.getStreamMessage(index), decoder, transformPipeline);
+        }
+      }));
+    }
+  }
+
+  /**
+   * Returns the processed message at the given index of the current batch, waiting for its chunk to be processed.
+   */
+  ProcessedStreamMessage getProcessedMessage(int index)
+      throws InterruptedException {
+    try {
+      _futures.get(index / _chunkSize).get();
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Caught exception while decoding the stream messages", e.getCause());
+    }
+    return _processedMessages[index];
+  }
+
+  /**
+   * Cancels the processing of the current batch, and waits for the workers to stop so that the decoders and transform
+   * pipelines can be reused for the next batch.
+   */
+  void finish() {
+    _cancelled = true;
+    boolean interrupted = false;
+    for (Future<?> future : _futures) {
+      while (true) {
+        try {
+          future.get();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          // Already surfaced (or ignored when the batch is not fully indexed)
+          break;
+        }
+      }
+    }
+    _futures.clear();
+    _processedMessages = null;
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  void reportStats() {
+    for (TransformPipeline transformPipeline : _transformPipelines) {
+      transformPipeline.reportStats();
+    }
+  }
+
+  @Override
+  public void close() {
+    _cancelled = true;
+    _executorService.shutdownNow();
+  }
+
+  /**
+   * Result of decoding and transforming a stream message.
+   */
+  static class ProcessedStreamMessage {
+    private final StreamDataDecoderResult _decodeResult;
+    private final TransformPipeline.Result _transformResult;
+    private final Exception _transformException;
+
+    private ProcessedStreamMessage(StreamDataDecoderResult decodeResult,
+        @Nullable TransformPipeline.Result transformResult, @Nullable Exception transformException) {
+      _decodeResult = decodeResult;
+      _transformResult = transformResult;
+      _transformException = transformException;
+    }
+
+    static ProcessedStreamMessage process(StreamMessage<?> streamMessage, StreamDataDecoder decoder,
+        TransformPipeline transformPipeline) {
+      StreamDataDecoderResult decodeResult = decoder.decode(streamMessage);
+      if (decodeResult.getException() != null) {
+        return new ProcessedStreamMessage(decodeResult, null, null);
+      }
+      try {
+        return new ProcessedStreamMessage(decodeResult, transformPipeline.processRow(decodeResult.getResult()), null);
+      } catch (Exception e) {
+        return new ProcessedStreamMessage(decodeResult, null, e);
+      }
+    }
+
+    StreamDataDecoderResult getDecodeResult() {
+      return _decodeResult;
+    }
+
+    /**
+     * Returns the transform result, or {@code null} if the message cannot be decoded or transformed.
+     */
+    @Nullable
+    TransformPipeline.Result getTransformResult() {
+      return _transformResult;
+    }
+
+    @Nullable
+    Exception getTransformException() {
+      return _transformException;
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.data.manager.realtime;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.pinot.common.utils.LLCSegmentName;
+import org.apache.pinot.segment.local.realtime.impl.RealtimeSegmentStatsHistory;
+import org.apache.pinot.spi.env.PinotConfiguration;
+import org.apache.pinot.spi.utils.CommonConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Server level memory budget for the consuming segments.
+ * When the budget is configured, the budget is evenly shared by the consuming partitions expected on the server, and
+ * the max number of rows of a new consuming segment is capped by the memory used per row observed in the past consuming
+ * segments of the same table (recorded in {@link RealtimeSegmentStatsHistory}). This keeps the consuming segments from
+ * over-committing the server memory, and lets more partitions be hosted on the server with a predictable footprint.
+ * The expected number of consuming partitions is the largest of the configured value, the number of partitions assigned
+ * to the server in the ideal states of the realtime tables, and the number of partitions currently consuming. Using
+ * the expected number instead of the number of segments registered so far keeps the segments started first (e.g. while
+ * the server is starting up) from taking the whole budget.
+ * The flush threshold from the segment ZK metadata is used as is when the budget is not configured, or when there is no
+ * prior statistics for the table.
+ */
+public class RealtimeConsumerMemoryBudget {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RealtimeConsumerMemoryBudget.class);
+
+  // Do not cap the max number of rows below this value to avoid creating tiny segments
+  @VisibleForTesting
+  static final int MIN_ROWS_PER_SEGMENT = 10_000;
+
+  private final Set<String> _consumingSegments = ConcurrentHashMap.newKeySet();
+  // Number of consuming partitions assigned to this server in the ideal state, keyed by table name with type
+  private final Map<String, Integer> _numConsumingPartitionsPerTable = new ConcurrentHashMap<>();
+  private volatile long _budgetBytes = CommonConstants.Server.DEFAULT_SERVER_CONSUMPTION_MEMORY_BUDGET_BYTES;
+  private volatile int _expectedNumConsumingPartitions =
+      CommonConstants.Server.DEFAULT_SERVER_CONSUMPTION_MEMORY_BUDGET_EXPECTED_CONSUMING_PARTITIONS;
+
+  private static class InstanceHolder {
+    private static final RealtimeConsumerMemoryBudget INSTANCE = new RealtimeConsumerMemoryBudget();
+  }
+
+  public static RealtimeConsumerMemoryBudget getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  @VisibleForTesting
+  RealtimeConsumerMemoryBudget() {
+  }
+
+  public void init(PinotConfiguration serverConfig) {
+    setBudgetBytes(serverConfig.getProperty(CommonConstants.Server.CONFIG_OF_SERVER_CONSUMPTION_MEMORY_BUDGET_BYTES,
+        CommonConstants.Server.DEFAULT_SERVER_CONSUMPTION_MEMORY_BUDGET_BYTES));
+    _expectedNumConsumingPartitions = serverConfig.getProperty(
+        CommonConstants.Server.CONFIG_OF_SERVER_CONSUMPTION_MEMORY_BUDGET_EXPECTED_CONSUMING_PARTITIONS,
+        CommonConstants.Server.DEFAULT_SERVER_CONSUMPTION_MEMORY_BUDGET_EXPECTED_CONSUMING_PARTITIONS);
+  }
+
+  public void setBudgetBytes(long budgetBytes) {
+    _budgetBytes = budgetBytes;
+    if (budgetBytes > 0) {
+      LOGGER.info("Set memory budget for consuming segments to {} bytes", budgetBytes);
+    }
+  }
+
+  public long getBudgetBytes() {
+    return _budgetBytes;
+  }
+
+  /**
+   * Sets the number of consuming partitions assigned to this server for the given table.
+   */
+  public void setNumConsumingPartitions(String tableNameWithType, int numConsumingPartitions) {
+    _numConsumingPartitionsPerTable.put(tableNameWithType, numConsumingPartitions);
+  }
+
+  public void removeTable(String tableNameWithType) {
+    _numConsumingPartitionsPerTable.remove(tableNameWithType);
+  }
+
+  /**
+   * Registers a consuming segment. Registering the same segment multiple times has no effect.
+   */
+  public void register(String segmentName) {
+    _consumingSegments.add(segmentName);
+  }
+
+  public void unregister(String segmentName) {
+    _consumingSegments.remove(segmentName);
+  }
+
+  public int getNumConsumingSegments() {
+    return _consumingSegments.size();
+  }
+
+  /**
+   * Returns the number of consuming partitions the budget is shared by.
+   */
+  public int getExpectedNumConsumingPartitions() {
+    int numAssignedPartitions = 0;
+    for (int numConsumingPartitions : _numConsumingPartitionsPerTable.values()) {
+      numAssignedPartitions += numConsumingPartitions;
+    }
+    // The committing segment and the next consuming segment of the same partition can be registered at the same time,
+    // so count the distinct partitions instead of the segments
+    Set<String> consumingPartitions = new HashSet<>();
+    for (String segmentName : _consumingSegments) {
+      LLCSegmentName llcSegmentName = LLCSegmentName.of(segmentName);
+      if (llcSegmentName != null) {
+        consumingPartitions.add(llcSegmentName.getTableName() + "__" + llcSegmentName.getPartitionGroupId());
+      } else {
+        consumingPartitions.add(segmentName);
+      }
+    }
+    return Math.max(Math.max(_expectedNumConsumingPartitions, numAssignedPartitions), consumingPartitions.size());
+  }
+
+  /**
+   * Returns the max number of rows for a consuming segment so that the consuming segments of all the expected consuming
+   * partitions on the server fit in the memory budget, which is no more than the given row threshold.
+   */
+  public int getMaxRowCount(int rowThreshold, RealtimeSegmentStatsHistory statsHistory) {
+    long budgetBytes = _budgetBytes;
+    if (budgetBytes <= 0) {
+      return rowThreshold;
+    }
+    long bytesPerRow = statsHistory.getEstimatedMemoryBytesPerRow();
+    if (bytesPerRow <= 0) {
+      return rowThreshold;
+    }
+    long budgetBytesPerSegment = budgetBytes / Math.max(getExpectedNumConsumingPartitions(), 1);
+    long maxRowCount = Math.max(budgetBytesPerSegment / bytesPerRow, MIN_ROWS_PER_SEGMENT);
+    return (int) Math.min(rowThreshold, maxRowCount);
+  }
+}
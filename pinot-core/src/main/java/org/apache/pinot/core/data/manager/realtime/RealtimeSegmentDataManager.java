@@ -55,6 +55,7 @@ import org.apache.pinot.common.utils.PauselessConsumptionUtils;
 import org.apache.pinot.common.utils.TarCompressionUtils;
 import org.apache.pinot.core.data.manager.SegmentOperationsTaskContext;
 import org.apache.pinot.core.data.manager.SegmentOperationsTaskType;
+import org.apache.pinot.core.data.manager.realtime.PipelinedStreamMessageProcessor.ProcessedStreamMessage;
 import org.apache.pinot.core.data.manager.realtime.RealtimeConsumptionRateManager.ConsumptionRateLimiter;
 import org.apache.pinot.segment.local.data.manager.SegmentDataManager;
 import org.apache.pinot.segment.local.dedup.DedupContext;
@@ -309,6 +310,9 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
   private final PartitionGroupConsumptionStatus _partitionGroupConsumptionStatus;
   final String _clientId;
   private final TransformPipeline _transformPipeline;
+  // Decodes and transforms the messages in parallel when configured, null otherwise
+  @Nullable
+  private final PipelinedStreamMessageProcessor _pipelinedMessageProcessor;
   private PartitionGroupConsumer _partitionGroupConsumer = null;
   private StreamMetadataProvider _partitionMetadataProvider = null;
   private final File _resourceTmpDir;
@@ -593,6 +597,9 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
     boolean canTakeMore = true;
     boolean prematureExit = false;
 
+    if (_pipelinedMessageProcessor != null) {
+      _pipelinedMessageProcessor.submit(messageBatch);
+    }
     for (int index = 0; index < messageCount; index++) {
       prematureExit = _shouldStop || endCriteriaReached();
       if (prematureExit) {
@@ -623,9 +630,25 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
         throw new RuntimeException("Realtime segment full");
       }
 
-      // Decode message
+      // Decode and transform message
       StreamMessage<?> streamMessage = messageBatch.getStreamMessage(index);
-      StreamDataDecoderResult decodedRow = _streamDataDecoder.decode(streamMessage);
+      ProcessedStreamMessage processedMessage;
+      if (_pipelinedMessageProcessor != null) {
+        try {
+          processedMessage = _pipelinedMessageProcessor.getProcessedMessage(index);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          if (_shouldStop) {
+            _segmentLogger.debug("Interrupted to stop consumption");
+            prematureExit = true;
+            break;
+          }
+          throw new RuntimeException("Interrupted while decoding the stream messages", e);
+        }
+      } else {
+        processedMessage = ProcessedStreamMessage.process(streamMessage, _streamDataDecoder, _transformPipeline);
+      }
+      StreamDataDecoderResult decodedRow = processedMessage.getDecodeResult();
       StreamMessageMetadata metadata = streamMessage.getMetadata();
       StreamPartitionMsgOffset offset = metadata.getOffset();
       StreamPartitionMsgOffset nextOffset = metadata.getNextOffset();
@@ -639,16 +662,16 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
         _numRowsErrored++;
         _numBytesDropped += rowSizeInBytes;
       } else {
-        TransformPipeline.Result result = null;
-        try {
-          result = _transformPipeline.processRow(decodedRow.getResult());
-        } catch (Exception e) {
+        TransformPipeline.Result result = processedMessage.getTransformResult();
+        Exception transformException = processedMessage.getTransformException();
+        if (transformException != null) {
           _numRowsErrored++;
           _numBytesDropped += rowSizeInBytes;
           String errorMessage = "Caught exception while transforming the record at offset: " + offset + " , row: "
               + decodedRow.getResult();
-          _segmentLogger.error(errorMessage, e);
-          _realtimeTableDataManager.addSegmentError(_segmentNameStr, new SegmentErrorInfo(now(), errorMessage, e));
+          _segmentLogger.error(errorMessage, transformException);
+          _realtimeTableDataManager.addSegmentError(_segmentNameStr,
+              new SegmentErrorInfo(now(), errorMessage, transformException));
         }
         if (result != null) {
           if (result.getSkippedRowCount() > 0) {
@@ -670,6 +693,33 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
                     result.getSanitizedRowCount(), realtimeRowsSanitizedMeter);
           }
           List<GenericRow> transformedRows = result.getTransformedRows();
+          int numTransformedRows = transformedRows.size();
+          if (numTransformedRows > 1 && _realtimeSegment.canIndexBatch(numTransformedRows)) {
+            // Index the rows decoded from the same message (e.g. Arrow record batch) column by column
+            try {
+              canTakeMore = _realtimeSegment.indexBatch(transformedRows, metadata);
+              indexedMessageCount += numTransformedRows;
+              _lastRowMetadata = metadata;
+              _lastConsumedTimestampMs = System.currentTimeMillis();
+              realtimeRowsConsumedMeter =
+                  _serverMetrics.addMeteredTableValue(_clientId, ServerMeter.REALTIME_ROWS_CONSUMED, numTransformedRows,
+                      realtimeRowsConsumedMeter);
+              _serverMetrics.addMeteredGlobalValue(ServerMeter.REALTIME_ROWS_CONSUMED, numTransformedRows);
+
+              int recordSerializedValueLength = metadata.getRecordSerializedSize();
+              if (recordSerializedValueLength > 0) {
+                long bytesConsumed = (long) recordSerializedValueLength * numTransformedRows;
+                realtimeBytesIngestedMeter =
+                    _serverMetrics.addMeteredTableValue(_clientId, ServerMeter.REALTIME_BYTES_CONSUMED, bytesConsumed,
+                        realtimeBytesIngestedMeter);
+                _serverMetrics.addMeteredGlobalValue(ServerMeter.REALTIME_BYTES_CONSUMED, bytesConsumed);
+              }
+              transformedRows = List.of();
+            } catch (Exception e) {
+              _segmentLogger.warn("Caught exception while indexing {} rows at offset: {} as a batch, indexing them "
+                  + "one by one", numTransformedRows, offset, e);
+            }
+          }
           for (GenericRow transformedRow : transformedRows) {
             try {
               canTakeMore = _realtimeSegment.index(transformedRow, metadata);
@@ -704,6 +754,10 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
       _numRowsConsumed++;
       streamMessageCount++;
     }
+    if (_pipelinedMessageProcessor != null) {
+      // Stop processing the remaining messages if exiting early
+      _pipelinedMessageProcessor.finish();
+    }
 
     updateCurrentDocumentCountMetrics();
     if (messageBatch.getUnfilteredMessageCount() > 0) {
@@ -1366,6 +1420,10 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
       closePartitionMetadataProvider();
       releaseConsumerSemaphore();
       _transformPipeline.reportStats();
+      if (_pipelinedMessageProcessor != null) {
+        _pipelinedMessageProcessor.close();
+        _pipelinedMessageProcessor.reportStats();
+      }
     }
   }
 
@@ -1658,6 +1716,7 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
   @Override
   protected void doDestroy() {
     _realtimeSegment.destroy();
+    RealtimeConsumerMemoryBudget.getInstance().unregister(_segmentNameStr);
   }
 
   public void startConsumption() {
@@ -1792,6 +1851,21 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
     if (segmentMaxRowCount <= 0) {
       segmentMaxRowCount = StreamConfig.DEFAULT_FLUSH_THRESHOLD_ROWS;
     }
+    // Cap the max number of rows so that all the consuming segments on the server fit in the memory budget
+    RealtimeConsumerMemoryBudget memoryBudget = RealtimeConsumerMemoryBudget.getInstance();
+    if (memoryBudget.getBudgetBytes() > 0) {
+      memoryBudget.setNumConsumingPartitions(_tableNameWithType,
+          realtimeTableDataManager.getHostedPartitionsGroupIds().size());
+    }
+    memoryBudget.register(_segmentNameStr);
+    int maxRowCountWithinBudget =
+        memoryBudget.getMaxRowCount(segmentMaxRowCount, realtimeTableDataManager.getStatsHistory());
+    if (maxRowCountWithinBudget < segmentMaxRowCount) {
+      _segmentLogger.info("Capping max number of rows from: {} to: {} to fit in the memory budget of: {} bytes for: {} "
+              + "consuming partitions", segmentMaxRowCount, maxRowCountWithinBudget, memoryBudget.getBudgetBytes(),
+          memoryBudget.getExpectedNumConsumingPartitions());
+      segmentMaxRowCount = maxRowCountWithinBudget;
+    }
     _segmentMaxRowCount = segmentMaxRowCount;
 
     _isOffHeap = indexLoadingConfig.isRealtimeOffHeapAllocation();
@@ -1817,7 +1891,10 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
         .setPartitionUpsertMetadataManager(partitionUpsertMetadataManager)
         .setPartitionDedupMetadataManager(partitionDedupMetadataManager)
         .setConsumerDir(consumerDir)
-        .setTextIndexConfig(_tableConfig.getIndexingConfig().getMultiColumnTextIndexConfig());
+        .setTextIndexConfig(_tableConfig.getIndexingConfig().getMultiColumnTextIndexConfig())
+        .setStarTreeIndexConfigs(
+            indexingConfig.isEnableConsumingSegmentStarTree() ? indexingConfig.getStarTreeIndexConfigs() : null)
+        .setStarTreeRefreshIntervalMs(indexingConfig.getConsumingSegmentStarTreeRefreshIntervalMs());
 
     // Create message decoder
     Set<String> fieldsToRead = IngestionUtils.getFieldsForRecordExtractor(_tableConfig, _schema);
@@ -1850,6 +1927,21 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
       throw e;
     }
 
+    int numDecodeThreads = ingestionConfig != null && ingestionConfig.getStreamIngestionConfig() != null
+        ? ingestionConfig.getStreamIngestionConfig().getNumDecodeThreads() : 0;
+    if (numDecodeThreads > 1) {
+      try {
+        _pipelinedMessageProcessor = createPipelinedMessageProcessor(numDecodeThreads, fieldsToRead);
+      } catch (Exception e) {
+        _realtimeTableDataManager.addSegmentError(_segmentNameStr,
+            new SegmentErrorInfo(now(), "Failed to initialize the pipelined message processor", e));
+        throw e;
+      }
+      _segmentLogger.info("Decoding and transforming stream messages with {} threads", numDecodeThreads);
+    } else {
+      _pipelinedMessageProcessor = null;
+    }
+
     try {
       _startOffset = _partitionGroupConsumptionStatus.getStartOffset();
       _currentOffset = _streamPartitionMsgOffsetFactory.create(_startOffset);
@@ -1867,6 +1959,7 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
       _segmentCommitterFactory =
           new SegmentCommitterFactory(_segmentLogger, _protocolHandler, tableConfig, indexLoadingConfig, serverMetrics);
     } catch (Throwable t) {
+      RealtimeConsumerMemoryBudget.getInstance().unregister(_segmentNameStr);
       _realtimeTableDataManager.addSegmentError(_segmentNameStr, new SegmentErrorInfo(now(),
           "Failed to initialize segment data manager", t));
       _segmentLogger.warn(
@@ -2130,6 +2223,21 @@ public class RealtimeSegmentDataManager extends SegmentDataManager {
     }
   }
 
+  /**
+   * Creates a {@link PipelinedStreamMessageProcessor} with a dedicated decoder and transform pipeline for each thread.
+   * The decoders do not reuse the decoded row because the rows are buffered until the consumer thread indexes them.
+   */
+  private PipelinedStreamMessageProcessor createPipelinedMessageProcessor(int numThreads, Set<String> fieldsToRead) {
+    boolean isKeyBytesType = StreamDataDecoderImpl.isKeyBytesType(_schema);
+    List<StreamDataDecoder> decoders = new ArrayList<>(numThreads);
+    List<TransformPipeline> transformPipelines = new ArrayList<>(numThreads);
+    for (int i = 0; i < numThreads; i++) {
+      decoders.add(new StreamDataDecoderImpl(createMessageDecoder(fieldsToRead), isKeyBytesType, false));
+      transformPipelines.add(new TransformPipeline(_tableConfig, _schema));
+    }
+    return new PipelinedStreamMessageProcessor(_segmentNameStr, decoders, transformPipelines);
+  }
+
   /**
    * Creates a {@link StreamMessageDecoder} using properties in {@link StreamConfig}.
    *
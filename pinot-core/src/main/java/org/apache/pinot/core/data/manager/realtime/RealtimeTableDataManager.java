@@ -277,6 +277,7 @@ public class RealtimeTableDataManager extends BaseTableDataManager {
     // Make sure we do metric cleanup when we shut down the table.
     // Do this first, so we do not show ingestion lag during shutdown.
     _ingestionDelayTracker.shutdown();
+    RealtimeConsumerMemoryBudget.getInstance().removeTable(_tableNameWithType);
     if (_tableUpsertMetadataManager != null || _tableDedupMetadataManager != null) {
       // Stop the upsert metadata manager first to prevent removing metadata when destroying segments
       if (_tableUpsertMetadataManager != null) {
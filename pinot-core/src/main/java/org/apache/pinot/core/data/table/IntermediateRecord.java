@@ -34,4 +34,12 @@ public class IntermediateRecord {
     _record = record;
     _values = values;
   }
+
+  /**
+   * Creates an intermediate record without the values to be ordered. Such records can be merged by the combine
+   * operators, but cannot be ordered by the {@link TableResizer}.
+   */
+  public static IntermediateRecord create(Key key, Record record) {
+    return new IntermediateRecord(key, record, null);
+  }
 }
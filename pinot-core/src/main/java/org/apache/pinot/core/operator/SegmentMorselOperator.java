@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.operator;
+
+import java.util.Collections;
+import java.util.List;
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.core.operator.blocks.results.BaseResultsBlock;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.SegmentContext;
+
+
+/**
+ * Wrapper around the segment-level operator that processes a doc id range (morsel) of a segment. Multiple morsels of
+ * the same segment are processed as separate operators by the combine operator, and their results are merged the same
+ * way as the results from different segments.
+ * <p>The child operator reports the total docs of the whole segment, so this wrapper reports the number of docs within
+ * the morsel instead to keep the total docs of the query accurate. The combine operator counts the segment only once
+ * based on {@link #getMorselId()} and {@link #getSegmentContext()}.
+ */
+@SuppressWarnings("unchecked")
+public class SegmentMorselOperator extends BaseOperator<BaseResultsBlock> {
+  private static final String EXPLAIN_NAME = "SEGMENT_MORSEL";
+
+  private final Operator<BaseResultsBlock> _childOperator;
+  private final SegmentContext _segmentContext;
+  private final int _morselId;
+  private final int _startDocId;
+  private final int _endDocId;
+
+  public SegmentMorselOperator(Operator<BaseResultsBlock> childOperator, SegmentContext segmentContext, int morselId,
+      int startDocId, int endDocId) {
+    _childOperator = childOperator;
+    _segmentContext = segmentContext;
+    _morselId = morselId;
+    _startDocId = startDocId;
+    _endDocId = endDocId;
+  }
+
+  /**
+   * Returns the context of the whole segment, which is shared by all the morsels of the segment.
+   */
+  public SegmentContext getSegmentContext() {
+    return _segmentContext;
+  }
+
+  /**
+   * Returns the id of the morsel within the segment, starting from 0.
+   */
+  public int getMorselId() {
+    return _morselId;
+  }
+
+  @Override
+  protected BaseResultsBlock getNextBlock() {
+    return _childOperator.nextBlock();
+  }
+
+  @Override
+  public String toExplainString() {
+    return EXPLAIN_NAME + "(morsel:" + _morselId + ",docIds:[" + _startDocId + "," + _endDocId + "))";
+  }
+
+  @Override
+  public List<Operator> getChildOperators() {
+    return Collections.singletonList(_childOperator);
+  }
+
+  @Override
+  public IndexSegment getIndexSegment() {
+    return _segmentContext.getIndexSegment();
+  }
+
+  @Override
+  public ExecutionStatistics getExecutionStatistics() {
+    ExecutionStatistics executionStatistics = _childOperator.getExecutionStatistics();
+    return new ExecutionStatistics(executionStatistics.getNumDocsScanned(),
+        executionStatistics.getNumEntriesScannedInFilter(), executionStatistics.getNumEntriesScannedPostFilter(),
+        _endDocId - _startDocId);
+  }
+}
@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.operator;
+
+import java.util.Collections;
+import java.util.List;
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.core.data.table.IntermediateRecord;
+import org.apache.pinot.core.operator.blocks.results.AggregationResultsBlock;
+import org.apache.pinot.core.operator.blocks.results.BaseResultsBlock;
+import org.apache.pinot.core.operator.blocks.results.GroupByResultsBlock;
+import org.apache.pinot.core.query.aggregation.groupby.AggregationGroupByResult;
+import org.apache.pinot.core.query.cache.CachedSegmentResult;
+import org.apache.pinot.core.query.cache.SegmentResultCache;
+import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.segment.spi.IndexSegment;
+
+
+/**
+ * A wrapper around the segment-level aggregation and group-by operators backed by the {@link SegmentResultCache}.
+ * <ul>
+ *   <li>When the segment result is cached, returns a copy of the cached result without running the child operator</li>
+ *   <li>Otherwise, runs the child operator and caches its result</li>
+ * </ul>
+ * Segment level group-by results are always returned as intermediate records so that the same records can be returned
+ * and cached.
+ */
+@SuppressWarnings("unchecked")
+public class SegmentResultCacheOperator extends BaseOperator<BaseResultsBlock> {
+  private static final String EXPLAIN_NAME = "SEGMENT_RESULT_CACHE";
+
+  private final IndexSegment _indexSegment;
+  private final QueryContext _queryContext;
+  private final SegmentResultCache _segmentResultCache;
+  private final String _cacheKey;
+  private final Operator<BaseResultsBlock> _childOperator;
+
+  private CachedSegmentResult _cachedResult;
+
+  /**
+   * Constructor for the segment with cached result.
+   */
+  public SegmentResultCacheOperator(IndexSegment indexSegment, QueryContext queryContext,
+      SegmentResultCache segmentResultCache, String cacheKey, CachedSegmentResult cachedResult) {
+    _indexSegment = indexSegment;
+    _queryContext = queryContext;
+    _segmentResultCache = segmentResultCache;
+    _cacheKey = cacheKey;
+    _childOperator = null;
+    _cachedResult = cachedResult;
+  }
+
+  /**
+   * Constructor for the segment without cached result.
+   */
+  public SegmentResultCacheOperator(IndexSegment indexSegment, QueryContext queryContext,
+      SegmentResultCache segmentResultCache, String cacheKey, Operator<BaseResultsBlock> childOperator) {
+    _indexSegment = indexSegment;
+    _queryContext = queryContext;
+    _segmentResultCache = segmentResultCache;
+    _cacheKey = cacheKey;
+    _childOperator = childOperator;
+  }
+
+  @Override
+  protected BaseResultsBlock getNextBlock() {
+    if (_childOperator == null) {
+      return _cachedResult.toResultsBlock(_queryContext);
+    }
+    BaseResultsBlock resultsBlock = _childOperator.nextBlock();
+    if (resultsBlock instanceof AggregationResultsBlock) {
+      _cachedResult = CachedSegmentResult.fromAggregationResults((AggregationResultsBlock) resultsBlock,
+          _childOperator.getExecutionStatistics());
+    } else if (resultsBlock instanceof GroupByResultsBlock) {
+      GroupByResultsBlock groupByResultsBlock = (GroupByResultsBlock) resultsBlock;
+      if (groupByResultsBlock.getNumGroups() > _segmentResultCache.getMaxNumGroups()) {
+        return resultsBlock;
+      }
+      List<IntermediateRecord> intermediateRecords = groupByResultsBlock.getIntermediateRecords();
+      if (intermediateRecords == null) {
+        AggregationGroupByResult aggregationGroupByResult = groupByResultsBlock.getAggregationGroupByResult();
+        intermediateRecords = CachedSegmentResult.toIntermediateRecords(aggregationGroupByResult,
+            _queryContext.getGroupByExpressions().size(), _queryContext.getAggregationFunctions().length);
+        GroupByResultsBlock convertedResultsBlock =
+            new GroupByResultsBlock(groupByResultsBlock.getDataSchema(), intermediateRecords, _queryContext);
+        convertedResultsBlock.setGroupsTrimmed(groupByResultsBlock.isGroupsTrimmed());
+        convertedResultsBlock.setNumGroupsLimitReached(groupByResultsBlock.isNumGroupsLimitReached());
+        convertedResultsBlock.setNumGroupsWarningLimitReached(groupByResultsBlock.isNumGroupsWarningLimitReached());
+        groupByResultsBlock = convertedResultsBlock;
+        resultsBlock = convertedResultsBlock;
+      }
+      _cachedResult = CachedSegmentResult.fromGroupByResults(groupByResultsBlock, intermediateRecords, _queryContext,
+          _childOperator.getExecutionStatistics());
+    }
+    // The cached result does not share mutable objects with the results block, which can be merged in place
+    if (_cachedResult != null) {
+      _segmentResultCache.put(_cacheKey, _cachedResult);
+    }
+    return resultsBlock;
+  }
+
+  @Override
+  public String toExplainString() {
+    return EXPLAIN_NAME;
+  }
+
+  @Override
+  public List<Operator> getChildOperators() {
+    return _childOperator != null ? Collections.singletonList(_childOperator) : Collections.emptyList();
+  }
+
+  @Override
+  public IndexSegment getIndexSegment() {
+    return _indexSegment;
+  }
+
+  @Override
+  public ExecutionStatistics getExecutionStatistics() {
+    if (_childOperator != null) {
+      return _childOperator.getExecutionStatistics();
+    }
+    return _cachedResult.getExecutionStatistics();
+  }
+}
@@ -18,7 +18,10 @@
  */
 package org.apache.pinot.core.operator.combine;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.Phaser;
@@ -28,6 +31,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import org.apache.pinot.core.common.Operator;
 import org.apache.pinot.core.operator.BaseOperator;
 import org.apache.pinot.core.operator.ExecutionStatistics;
+import org.apache.pinot.core.operator.SegmentMorselOperator;
 import org.apache.pinot.core.operator.blocks.results.BaseResultsBlock;
 import org.apache.pinot.core.operator.blocks.results.ExceptionResultsBlock;
 import org.apache.pinot.core.operator.combine.merger.ResultsBlockMerger;
@@ -36,6 +40,7 @@ import org.apache.pinot.core.query.scheduler.resources.ResourceManager;
 import org.apache.pinot.core.util.QueryMultiThreadingUtils;
 import org.apache.pinot.core.util.trace.TraceRunnable;
 import org.apache.pinot.segment.spi.MutableSegment;
+import org.apache.pinot.segment.spi.SegmentContext;
 import org.apache.pinot.spi.accounting.ThreadResourceSnapshot;
 import org.apache.pinot.spi.exception.EarlyTerminationException;
 import org.apache.pinot.spi.exception.QueryErrorCode;
@@ -145,7 +150,7 @@ public abstract class BaseCombineOperator<T extends BaseResultsBlock> extends Ba
 
   /// Attaches the execution statistics to the results block.
   protected BaseResultsBlock attachExecutionStats(BaseResultsBlock resultsBlock) {
-    int numSegmentsProcessed = _operators.size();
+    int numSegmentsProcessed = 0;
     int numSegmentsMatched = 0;
     int numConsumingSegmentsProcessed = 0;
     int numConsumingSegmentsMatched = 0;
@@ -153,9 +158,26 @@ public abstract class BaseCombineOperator<T extends BaseResultsBlock> extends Ba
     long numEntriesScannedInFilter = 0;
     long numEntriesScannedPostFilter = 0;
     long numTotalDocs = 0;
+    // Matched segments split into multiple morsels, where a segment is matched if any of its morsels is matched
+    Set<SegmentContext> matchedMorselSegments = null;
     for (Operator operator : _operators) {
       ExecutionStatistics executionStatistics = operator.getExecutionStatistics();
-      if (executionStatistics.getNumDocsScanned() > 0) {
+      boolean matched = executionStatistics.getNumDocsScanned() > 0;
+      if (operator instanceof SegmentMorselOperator) {
+        // Count each segment only once for all its morsels
+        if (((SegmentMorselOperator) operator).getMorselId() == 0) {
+          numSegmentsProcessed++;
+        }
+        if (matched) {
+          if (matchedMorselSegments == null) {
+            matchedMorselSegments = Collections.newSetFromMap(new IdentityHashMap<>());
+          }
+          matched = matchedMorselSegments.add(((SegmentMorselOperator) operator).getSegmentContext());
+        }
+      } else {
+        numSegmentsProcessed++;
+      }
+      if (matched) {
         numSegmentsMatched++;
       }
 
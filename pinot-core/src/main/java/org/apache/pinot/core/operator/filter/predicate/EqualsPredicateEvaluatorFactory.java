@@ -128,10 +128,8 @@ public class EqualsPredicateEvaluatorFactory {
       // reimplemented here to ensure applySV can be inlined
       int matches = 0;
       for (int i = 0; i < limit; i++) {
-        int value = values[i];
-        if (applySV(value)) {
-          docIds[matches++] = docIds[i];
-        }
+        docIds[matches] = docIds[i];
+        matches += applySV(values[i]) ? 1 : 0;
       }
       return matches;
     }
@@ -193,10 +191,8 @@ public class EqualsPredicateEvaluatorFactory {
       // reimplemented here to ensure applySV can be inlined
       int matches = 0;
       for (int i = 0; i < limit; i++) {
-        int value = values[i];
-        if (applySV(value)) {
-          docIds[matches++] = docIds[i];
-        }
+        docIds[matches] = docIds[i];
+        matches += applySV(values[i]) ? 1 : 0;
       }
       return matches;
     }
@@ -246,10 +242,8 @@ public class EqualsPredicateEvaluatorFactory {
       // reimplemented here to ensure applySV can be inlined
       int matches = 0;
       for (int i = 0; i < limit; i++) {
-        long value = values[i];
-        if (applySV(value)) {
-          docIds[matches++] = docIds[i];
-        }
+        docIds[matches] = docIds[i];
+        matches += applySV(values[i]) ? 1 : 0;
       }
       return matches;
     }
@@ -294,10 +288,8 @@ public class EqualsPredicateEvaluatorFactory {
       // reimplemented here to ensure applySV can be inlined
       int matches = 0;
       for (int i = 0; i < limit; i++) {
-        float value = values[i];
-        if (applySV(value)) {
-          docIds[matches++] = docIds[i];
-        }
+        docIds[matches] = docIds[i];
+        matches += applySV(values[i]) ? 1 : 0;
       }
       return matches;
     }
@@ -342,10 +334,8 @@ public class EqualsPredicateEvaluatorFactory {
       // reimplemented here to ensure applySV can be inlined
       int matches = 0;
       for (int i = 0; i < limit; i++) {
-        double value = values[i];
-        if (applySV(value)) {
-          docIds[matches++] = docIds[i];
-        }
+        docIds[matches] = docIds[i];
+        matches += applySV(values[i]) ? 1 : 0;
       }
       return matches;
     }
@@ -192,10 +192,8 @@ public class InPredicateEvaluatorFactory {
       // reimplemented here to ensure applySV can be inlined
       int matches = 0;
       for (int i = 0; i < limit; i++) {
-        int value = values[i];
-        if (applySV(value)) {
-          docIds[matches++] = docIds[i];
-        }
+        docIds[matches] = docIds[i];
+        matches += applySV(values[i]) ? 1 : 0;
       }
       return matches;
     }
@@ -240,10 +238,8 @@ public class InPredicateEvaluatorFactory {
       // reimplemented here to ensure applySV can be inlined
       int matches = 0;
       for (int i = 0; i < limit; i++) {
-        int value = values[i];
-        if (applySV(value)) {
-          docIds[matches++] = docIds[i];
-        }
+        docIds[matches] = docIds[i];
+        matches += applySV(values[i]) ? 1 : 0;
       }
       return matches;
     }
@@ -282,10 +278,8 @@ public class InPredicateEvaluatorFactory {
       // reimplemented here to ensure applySV can be inlined
       int matches = 0;
       for (int i = 0; i < limit; i++) {
-        long value = values[i];
-        if (applySV(value)) {
-          docIds[matches++] = docIds[i];
-        }
+        docIds[matches] = docIds[i];
+        matches += applySV(values[i]) ? 1 : 0;
       }
       return matches;
     }
@@ -324,10 +318,8 @@ public class InPredicateEvaluatorFactory {
       // reimplemented here to ensure applySV can be inlined
       int matches = 0;
       for (int i = 0; i < limit; i++) {
-        float value = values[i];
-        if (applySV(value)) {
-          docIds[matches++] = docIds[i];
-        }
+        docIds[matches] = docIds[i];
+        matches += applySV(values[i]) ? 1 : 0;
       }
       return matches;
     }
@@ -366,10 +358,8 @@ public class InPredicateEvaluatorFactory {
       // reimplemented here to ensure applySV can be inlined
       int matches = 0;
       for (int i = 0; i < limit; i++) {
-        double value = values[i];
-        if (applySV(value)) {
-          docIds[matches++] = docIds[i];
-        }
+        docIds[matches] = docIds[i];
+        matches += applySV(values[i]) ? 1 : 0;
       }
       return matches;
     }
@@ -75,6 +75,9 @@ public interface PredicateEvaluator {
   /**
    * Apply the predicate to a batch of single-value entries.
    * Compact matching entries into the prefix of the docIds array.
+   * <p>Implementations overriding the batch methods for performance should keep the loop branch-free: always copy the
+   * docId to the output position and advance the output position only on a match. This allows the JIT to use
+   * conditional moves instead of a branch that mispredicts when matches and non-matches are mixed.
    *
    * @param limit How much of the input to consume.
    * @param docIds The docIds associated with the values - may be modified by invocation.
@@ -218,7 +218,7 @@ public class RangePredicateEvaluatorFactory {
 
     @Override
     public boolean applySV(int dictId) {
-      return _startDictId <= dictId && _endDictId > dictId;
+      return _startDictId <= dictId & _endDictId > dictId;
     }
 
     @Override
@@ -226,10 +226,8 @@ public class RangePredicateEvaluatorFactory {
       // reimplemented here to ensure applySV can be inlined
       int matches = 0;
       for (int i = 0; i < limit; i++) {
-        int dictId = dictIds[i];
-        if (applySV(dictId)) {
-          docIds[matches++] = docIds[i];
-        }
+        docIds[matches] = docIds[i];
+        matches += applySV(dictIds[i]) ? 1 : 0;
       }
       return matches;
     }
@@ -362,7 +360,7 @@ public class RangePredicateEvaluatorFactory {
 
     @Override
     public boolean applySV(int value) {
-      return value >= _inclusiveLowerBound && value <= _inclusiveUpperBound;
+      return value >= _inclusiveLowerBound & value <= _inclusiveUpperBound;
     }
 
     @Override
@@ -370,10 +368,8 @@ public class RangePredicateEvaluatorFactory {
       // reimplemented here to ensure applySV can be inlined
       int matches = 0;
       for (int i = 0; i < limit; i++) {
-        int value = values[i];
-        if (applySV(value)) {
-          docIds[matches++] = docIds[i];
-        }
+        docIds[matches] = docIds[i];
+        matches += applySV(values[i]) ? 1 : 0;
       }
       return matches;
     }
@@ -418,7 +414,7 @@ public class RangePredicateEvaluatorFactory {
 
     @Override
     public boolean applySV(long value) {
-      return value >= _inclusiveLowerBound && value <= _inclusiveUpperBound;
+      return value >= _inclusiveLowerBound & value <= _inclusiveUpperBound;
     }
 
     @Override
@@ -426,10 +422,8 @@ public class RangePredicateEvaluatorFactory {
       // reimplemented here to ensure applySV can be inlined
       int matches = 0;
       for (int i = 0; i < limit; i++) {
-        long value = values[i];
-        if (applySV(value)) {
-          docIds[matches++] = docIds[i];
-        }
+        docIds[matches] = docIds[i];
+        matches += applySV(values[i]) ? 1 : 0;
       }
       return matches;
     }
@@ -474,7 +468,7 @@ public class RangePredicateEvaluatorFactory {
 
     @Override
     public boolean applySV(float value) {
-      return value >= _inclusiveLowerBound && value <= _inclusiveUpperBound;
+      return value >= _inclusiveLowerBound & value <= _inclusiveUpperBound;
     }
 
     @Override
@@ -482,10 +476,8 @@ public class RangePredicateEvaluatorFactory {
       // reimplemented here to ensure applySV can be inlined
       int matches = 0;
       for (int i = 0; i < limit; i++) {
-        float value = values[i];
-        if (applySV(value)) {
-          docIds[matches++] = docIds[i];
-        }
+        docIds[matches] = docIds[i];
+        matches += applySV(values[i]) ? 1 : 0;
       }
       return matches;
     }
@@ -530,7 +522,7 @@ public class RangePredicateEvaluatorFactory {
 
     @Override
     public boolean applySV(double value) {
-      return value >= _inclusiveLowerBound && value <= _inclusiveUpperBound;
+      return value >= _inclusiveLowerBound & value <= _inclusiveUpperBound;
     }
 
     @Override
@@ -538,10 +530,8 @@ public class RangePredicateEvaluatorFactory {
       // reimplemented here to ensure applySV can be inlined
       int matches = 0;
       for (int i = 0; i < limit; i++) {
-        double value = values[i];
-        if (applySV(value)) {
-          docIds[matches++] = docIds[i];
-        }
+        docIds[matches] = docIds[i];
+        matches += applySV(values[i]) ? 1 : 0;
       }
       return matches;
     }
@@ -23,7 +23,6 @@ import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.util.List;
 import java.util.Map;
-import org.apache.commons.lang3.ArrayUtils;
 import org.apache.pinot.common.function.FunctionInfo;
 import org.apache.pinot.common.function.FunctionUtils;
 import org.apache.pinot.common.function.QueryFunctionInvoker;
@@ -45,15 +44,24 @@ public class ScalarTransformFunctionWrapper extends BaseTransformFunction {
   private final QueryFunctionInvoker _functionInvoker;
   private final ColumnDataType _resultType;
   private final TransformResultMetadata _resultMetadata;
+  private final boolean _deterministic;
 
   private Object[] _scalarArguments;
   private int _numNonLiteralArguments;
   private int[] _nonLiteralIndices;
   private TransformFunction[] _nonLiteralFunctions;
   private Object[][] _nonLiteralValues;
+  // Reused across blocks to hold the boxed values of the non-literal arguments
+  private Object[][] _boxedValueBuffers;
+
+  // For deterministic function with only literal arguments, the result is evaluated once and reused for all the rows
+  private boolean _constantResult;
+  private boolean _constantResultEvaluated;
+  private Object _constantResultValue;
 
   public ScalarTransformFunctionWrapper(FunctionInfo functionInfo) {
     _name = functionInfo.getMethod().getName();
+    _deterministic = functionInfo.isDeterministic();
     _functionInvoker = new QueryFunctionInvoker(functionInfo);
     Class<?>[] parameterClasses = _functionInvoker.getParameterClasses();
     PinotDataType[] parameterTypes = _functionInvoker.getParameterTypes();
@@ -150,6 +158,8 @@ public class ScalarTransformFunctionWrapper extends BaseTransformFunction {
       }
     }
     _nonLiteralValues = new Object[_numNonLiteralArguments][];
+    _boxedValueBuffers = new Object[_numNonLiteralArguments][];
+    _constantResult = _numNonLiteralArguments == 0 && _deterministic;
   }
 
   @Override
@@ -169,7 +179,7 @@ public class ScalarTransformFunctionWrapper extends BaseTransformFunction {
       for (int j = 0; j < _numNonLiteralArguments; j++) {
         _scalarArguments[_nonLiteralIndices[j]] = _nonLiteralValues[j][i];
       }
-      Object value = _functionInvoker.invoke(_scalarArguments);
+      Object value = invokeFunction();
       _intValuesSV[i] = value != null ? (int) _resultType.toInternal(value) : NullValuePlaceHolder.INT;
     }
     return _intValuesSV;
@@ -187,7 +197,7 @@ public class ScalarTransformFunctionWrapper extends BaseTransformFunction {
       for (int j = 0; j < _numNonLiteralArguments; j++) {
         _scalarArguments[_nonLiteralIndices[j]] = _nonLiteralValues[j][i];
       }
-      Object value = _functionInvoker.invoke(_scalarArguments);
+      Object value = invokeFunction();
       _longValuesSV[i] = value != null ? (long) _resultType.toInternal(value) : NullValuePlaceHolder.LONG;
     }
     return _longValuesSV;
@@ -205,7 +215,7 @@ public class ScalarTransformFunctionWrapper extends BaseTransformFunction {
       for (int j = 0; j < _numNonLiteralArguments; j++) {
         _scalarArguments[_nonLiteralIndices[j]] = _nonLiteralValues[j][i];
       }
-      Object value = _functionInvoker.invoke(_scalarArguments);
+      Object value = invokeFunction();
       _floatValuesSV[i] =
           value != null ? (float) _resultType.toInternal(value) : NullValuePlaceHolder.FLOAT;
     }
@@ -224,7 +234,7 @@ public class ScalarTransformFunctionWrapper extends BaseTransformFunction {
       for (int j = 0; j < _numNonLiteralArguments; j++) {
         _scalarArguments[_nonLiteralIndices[j]] = _nonLiteralValues[j][i];
       }
-      Object value = _functionInvoker.invoke(_scalarArguments);
+      Object value = invokeFunction();
       _doubleValuesSV[i] =
           value != null ? (double) _resultType.toInternal(value) : NullValuePlaceHolder.DOUBLE;
     }
@@ -243,7 +253,7 @@ public class ScalarTransformFunctionWrapper extends BaseTransformFunction {
       for (int j = 0; j < _numNonLiteralArguments; j++) {
         _scalarArguments[_nonLiteralIndices[j]] = _nonLiteralValues[j][i];
       }
-      Object value = _functionInvoker.invoke(_scalarArguments);
+      Object value = invokeFunction();
       _bigDecimalValuesSV[i] =
           value != null ? (BigDecimal) _resultType.toInternal(value) : NullValuePlaceHolder.BIG_DECIMAL;
     }
@@ -262,7 +272,7 @@ public class ScalarTransformFunctionWrapper extends BaseTransformFunction {
       for (int j = 0; j < _numNonLiteralArguments; j++) {
         _scalarArguments[_nonLiteralIndices[j]] = _nonLiteralValues[j][i];
       }
-      Object value = _functionInvoker.invoke(_scalarArguments);
+      Object value = invokeFunction();
       _stringValuesSV[i] =
           value != null ? (String) _resultType.toInternal(value) : NullValuePlaceHolder.STRING;
     }
@@ -281,7 +291,7 @@ public class ScalarTransformFunctionWrapper extends BaseTransformFunction {
       for (int j = 0; j < _numNonLiteralArguments; j++) {
         _scalarArguments[_nonLiteralIndices[j]] = _nonLiteralValues[j][i];
       }
-      Object value = _functionInvoker.invoke(_scalarArguments);
+      Object value = invokeFunction();
       byte[] bytes =
           value != null ? ((ByteArray) _resultType.toInternal(value)).getBytes() : NullValuePlaceHolder.BYTES;
       _bytesValuesSV[i] = bytes;
@@ -301,7 +311,7 @@ public class ScalarTransformFunctionWrapper extends BaseTransformFunction {
       for (int j = 0; j < _numNonLiteralArguments; j++) {
         _scalarArguments[_nonLiteralIndices[j]] = _nonLiteralValues[j][i];
       }
-      _intValuesMV[i] = (int[]) _resultType.toInternal(_functionInvoker.invoke(_scalarArguments));
+      _intValuesMV[i] = (int[]) _resultType.toInternal(invokeFunction());
     }
     return _intValuesMV;
   }
@@ -318,7 +328,7 @@ public class ScalarTransformFunctionWrapper extends BaseTransformFunction {
       for (int j = 0; j < _numNonLiteralArguments; j++) {
         _scalarArguments[_nonLiteralIndices[j]] = _nonLiteralValues[j][i];
       }
-      _longValuesMV[i] = (long[]) _resultType.toInternal(_functionInvoker.invoke(_scalarArguments));
+      _longValuesMV[i] = (long[]) _resultType.toInternal(invokeFunction());
     }
     return _longValuesMV;
   }
@@ -335,7 +345,7 @@ public class ScalarTransformFunctionWrapper extends BaseTransformFunction {
       for (int j = 0; j < _numNonLiteralArguments; j++) {
         _scalarArguments[_nonLiteralIndices[j]] = _nonLiteralValues[j][i];
       }
-      _floatValuesMV[i] = (float[]) _resultType.toInternal(_functionInvoker.invoke(_scalarArguments));
+      _floatValuesMV[i] = (float[]) _resultType.toInternal(invokeFunction());
     }
     return _floatValuesMV;
   }
@@ -352,7 +362,7 @@ public class ScalarTransformFunctionWrapper extends BaseTransformFunction {
       for (int j = 0; j < _numNonLiteralArguments; j++) {
         _scalarArguments[_nonLiteralIndices[j]] = _nonLiteralValues[j][i];
       }
-      _doubleValuesMV[i] = (double[]) _resultType.toInternal(_functionInvoker.invoke(_scalarArguments));
+      _doubleValuesMV[i] = (double[]) _resultType.toInternal(invokeFunction());
     }
     return _doubleValuesMV;
   }
@@ -369,53 +379,102 @@ public class ScalarTransformFunctionWrapper extends BaseTransformFunction {
       for (int j = 0; j < _numNonLiteralArguments; j++) {
         _scalarArguments[_nonLiteralIndices[j]] = _nonLiteralValues[j][i];
       }
-      _stringValuesMV[i] = (String[]) _resultType.toInternal(_functionInvoker.invoke(_scalarArguments));
+      _stringValuesMV[i] = (String[]) _resultType.toInternal(invokeFunction());
     }
     return _stringValuesMV;
   }
 
+  /**
+   * Invokes the function with the current arguments, or returns the cached result when the result is constant.
+   */
+  private Object invokeFunction() {
+    if (!_constantResult) {
+      return _functionInvoker.invoke(_scalarArguments);
+    }
+    if (!_constantResultEvaluated) {
+      _constantResultValue = _functionInvoker.invoke(_scalarArguments);
+      _constantResultEvaluated = true;
+    }
+    return _constantResultValue;
+  }
+
+  /**
+   * Returns the buffer to hold the boxed values of the given non-literal argument, which is reused across blocks.
+   */
+  private Object[] getBoxedValueBuffer(int argumentIndex, int numValues) {
+    Object[] buffer = _boxedValueBuffers[argumentIndex];
+    if (buffer == null || buffer.length < numValues) {
+      buffer = new Object[numValues];
+      _boxedValueBuffers[argumentIndex] = buffer;
+    }
+    return buffer;
+  }
+
   /**
    * Helper method to fetch values for the non-literal transform functions based on the parameter types.
    */
   private void getNonLiteralValues(ValueBlock valueBlock) {
+    int numDocs = valueBlock.getNumDocs();
     PinotDataType[] parameterTypes = _functionInvoker.getParameterTypes();
     for (int i = 0; i < _numNonLiteralArguments; i++) {
       PinotDataType parameterType = parameterTypes[_nonLiteralIndices[i]];
       TransformFunction transformFunction = _nonLiteralFunctions[i];
       switch (parameterType) {
-        case INTEGER:
-          _nonLiteralValues[i] = ArrayUtils.toObject(transformFunction.transformToIntValuesSV(valueBlock));
+        case INTEGER: {
+          int[] intValues = transformFunction.transformToIntValuesSV(valueBlock);
+          Object[] values = getBoxedValueBuffer(i, numDocs);
+          for (int j = 0; j < numDocs; j++) {
+            values[j] = intValues[j];
+          }
+          _nonLiteralValues[i] = values;
           break;
-        case LONG:
-          _nonLiteralValues[i] = ArrayUtils.toObject(transformFunction.transformToLongValuesSV(valueBlock));
+        }
+        case LONG: {
+          long[] longValues = transformFunction.transformToLongValuesSV(valueBlock);
+          Object[] values = getBoxedValueBuffer(i, numDocs);
+          for (int j = 0; j < numDocs; j++) {
+            values[j] = longValues[j];
+          }
+          _nonLiteralValues[i] = values;
           break;
-        case FLOAT:
-          _nonLiteralValues[i] = ArrayUtils.toObject(transformFunction.transformToFloatValuesSV(valueBlock));
+        }
+        case FLOAT: {
+          float[] floatValues = transformFunction.transformToFloatValuesSV(valueBlock);
+          Object[] values = getBoxedValueBuffer(i, numDocs);
+          for (int j = 0; j < numDocs; j++) {
+            values[j] = floatValues[j];
+          }
+          _nonLiteralValues[i] = values;
           break;
-        case DOUBLE:
-          _nonLiteralValues[i] = ArrayUtils.toObject(transformFunction.transformToDoubleValuesSV(valueBlock));
+        }
+        case DOUBLE: {
+          double[] doubleValues = transformFunction.transformToDoubleValuesSV(valueBlock);
+          Object[] values = getBoxedValueBuffer(i, numDocs);
+          for (int j = 0; j < numDocs; j++) {
+            values[j] = doubleValues[j];
+          }
+          _nonLiteralValues[i] = values;
           break;
+        }
         case BIG_DECIMAL:
           _nonLiteralValues[i] = transformFunction.transformToBigDecimalValuesSV(valueBlock);
           break;
         case BOOLEAN: {
           int[] intValues = transformFunction.transformToIntValuesSV(valueBlock);
-          int numValues = intValues.length;
-          Boolean[] booleanValues = new Boolean[numValues];
-          for (int j = 0; j < numValues; j++) {
-            booleanValues[j] = intValues[j] == 1;
+          Object[] values = getBoxedValueBuffer(i, numDocs);
+          for (int j = 0; j < numDocs; j++) {
+            values[j] = intValues[j] == 1;
           }
-          _nonLiteralValues[i] = booleanValues;
+          _nonLiteralValues[i] = values;
           break;
         }
         case TIMESTAMP: {
           long[] longValues = transformFunction.transformToLongValuesSV(valueBlock);
-          int numValues = longValues.length;
-          Timestamp[] timestampValues = new Timestamp[numValues];
-          for (int j = 0; j < numValues; j++) {
-            timestampValues[j] = new Timestamp(longValues[j]);
+          Object[] values = getBoxedValueBuffer(i, numDocs);
+          for (int j = 0; j < numDocs; j++) {
+            values[j] = new Timestamp(longValues[j]);
           }
-          _nonLiteralValues[i] = timestampValues;
+          _nonLiteralValues[i] = values;
           break;
         }
         case STRING:
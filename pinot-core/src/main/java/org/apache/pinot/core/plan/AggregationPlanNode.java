@@ -113,10 +113,11 @@ public class AggregationPlanNode implements PlanNode {
       return new AggregationOperator(_queryContext, aggregationInfo, numTotalDocs);
     }
 
-    boolean hasNullValues = _queryContext.isNullHandlingEnabled() && hasNullValues(aggregationFunctions);
+    boolean hasNullValues =
+        _queryContext.isNullHandlingEnabled() && hasNullValues(_indexSegment, _queryContext, aggregationFunctions);
     if (!hasNullValues) {
       // Priority 2: Check if non-scan based aggregation is feasible
-      if (filterOperator.isResultMatchingAll() && isFitForNonScanBasedPlan()) {
+      if (filterOperator.isResultMatchingAll() && isFitForNonScanBasedPlan(_indexSegment, _queryContext)) {
         DataSource[] dataSources = new DataSource[aggregationFunctions.length];
         for (int i = 0; i < aggregationFunctions.length; i++) {
           List<?> inputExpressions = aggregationFunctions[i].getInputExpressions();
@@ -140,6 +141,25 @@ public class AggregationPlanNode implements PlanNode {
     return new AggregationOperator(_queryContext, aggregationInfo, numTotalDocs);
   }
 
+  /**
+   * Returns {@code true} if the non-filtered aggregation-only query is solved with dictionary or column metadata
+   * without scanning the given segment, {@code false} otherwise. Queries with filter are not considered, and segments
+   * with queryable docs (e.g. upsert) are always scanned because the filter does not match all the docs.
+   */
+  public static boolean isSolvedWithoutScan(SegmentContext segmentContext, QueryContext queryContext) {
+    AggregationFunction[] aggregationFunctions = queryContext.getAggregationFunctions();
+    if (aggregationFunctions == null || queryContext.getGroupByExpressions() != null
+        || queryContext.hasFilteredAggregations() || queryContext.getFilter() != null
+        || segmentContext.getQueryableDocIdsSnapshot() != null) {
+      return false;
+    }
+    IndexSegment indexSegment = segmentContext.getIndexSegment();
+    if (queryContext.isNullHandlingEnabled() && hasNullValues(indexSegment, queryContext, aggregationFunctions)) {
+      return false;
+    }
+    return isFitForNonScanBasedPlan(indexSegment, queryContext);
+  }
+
   /**
    * Returns {@code true} if any of the aggregation functions have null values, {@code false} otherwise.
    *
@@ -147,12 +167,13 @@ public class AggregationPlanNode implements PlanNode {
    * functions is of function type. This is because we do not have a way to determine if the function will return null
    * values without actually evaluating it.
    */
-  private boolean hasNullValues(AggregationFunction[] aggregationFunctions) {
+  private static boolean hasNullValues(IndexSegment indexSegment, QueryContext queryContext,
+      AggregationFunction[] aggregationFunctions) {
     for (AggregationFunction<?, ?> aggregationFunction : aggregationFunctions) {
       for (ExpressionContext argument : aggregationFunction.getInputExpressions()) {
         switch (argument.getType()) {
           case IDENTIFIER:
-            DataSource dataSource = _indexSegment.getDataSource(argument.getIdentifier(), _queryContext.getSchema());
+            DataSource dataSource = indexSegment.getDataSource(argument.getIdentifier(), queryContext.getSchema());
             NullValueVectorReader nullValueVector = dataSource.getNullValueVector();
             if (nullValueVector != null && !nullValueVector.getNullBitmap().isEmpty()) {
               return true;
@@ -176,8 +197,8 @@ public class AggregationPlanNode implements PlanNode {
    * Returns {@code true} if the given aggregations can be solved with dictionary or column metadata, {@code false}
    * otherwise.
    */
-  private boolean isFitForNonScanBasedPlan() {
-    AggregationFunction[] aggregationFunctions = _queryContext.getAggregationFunctions();
+  private static boolean isFitForNonScanBasedPlan(IndexSegment indexSegment, QueryContext queryContext) {
+    AggregationFunction[] aggregationFunctions = queryContext.getAggregationFunctions();
     assert aggregationFunctions != null;
     for (AggregationFunction<?, ?> aggregationFunction : aggregationFunctions) {
       if (aggregationFunction.getType() == COUNT) {
@@ -187,7 +208,7 @@ public class AggregationPlanNode implements PlanNode {
       if (argument.getType() != ExpressionContext.Type.IDENTIFIER) {
         return false;
       }
-      DataSource dataSource = _indexSegment.getDataSource(argument.getIdentifier(), _queryContext.getSchema());
+      DataSource dataSource = indexSegment.getDataSource(argument.getIdentifier(), queryContext.getSchema());
       if (DICTIONARY_BASED_FUNCTIONS.contains(aggregationFunction.getType())) {
         if (dataSource.getDictionary() != null) {
           continue;
@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.plan;
+
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.core.operator.SegmentMorselOperator;
+import org.apache.pinot.core.operator.blocks.results.BaseResultsBlock;
+import org.apache.pinot.segment.spi.SegmentContext;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+
+/**
+ * Plan node for a doc id range (morsel) of a segment. The segment plan node is created with a segment context where
+ * the queryable doc ids are limited to the morsel, so that the filter only matches the docs within the morsel.
+ */
+public class SegmentMorselPlanNode implements PlanNode {
+  private final PlanNode _childPlanNode;
+  private final SegmentContext _segmentContext;
+  private final int _morselId;
+  private final int _startDocId;
+  private final int _endDocId;
+
+  public SegmentMorselPlanNode(PlanNode childPlanNode, SegmentContext segmentContext, int morselId, int startDocId,
+      int endDocId) {
+    _childPlanNode = childPlanNode;
+    _segmentContext = segmentContext;
+    _morselId = morselId;
+    _startDocId = startDocId;
+    _endDocId = endDocId;
+  }
+
+  /**
+   * Creates the segment context for the morsel covering doc ids from {@code startDocId} (inclusive) to
+   * {@code endDocId} (exclusive), intersected with the queryable doc ids of the given segment context if exist.
+   */
+  public static SegmentContext createMorselSegmentContext(SegmentContext segmentContext, int startDocId,
+      int endDocId) {
+    MutableRoaringBitmap morselDocIds = new MutableRoaringBitmap();
+    morselDocIds.add((long) startDocId, (long) endDocId);
+    MutableRoaringBitmap queryableDocIdsSnapshot = segmentContext.getQueryableDocIdsSnapshot();
+    if (queryableDocIdsSnapshot != null) {
+      morselDocIds.and(queryableDocIdsSnapshot);
+    }
+    SegmentContext morselSegmentContext = new SegmentContext(segmentContext.getIndexSegment());
+    morselSegmentContext.setQueryableDocIdsSnapshot(morselDocIds);
+    return morselSegmentContext;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public SegmentMorselOperator run() {
+    return new SegmentMorselOperator((Operator<BaseResultsBlock>) _childPlanNode.run(), _segmentContext, _morselId,
+        _startDocId, _endDocId);
+  }
+}
@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.plan;
+
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.core.operator.SegmentResultCacheOperator;
+import org.apache.pinot.core.operator.blocks.results.BaseResultsBlock;
+import org.apache.pinot.core.query.cache.CachedSegmentResult;
+import org.apache.pinot.core.query.cache.SegmentResultCache;
+import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.segment.spi.IndexSegment;
+
+
+/**
+ * A wrapper around the segment-level aggregation and group-by plan node backed by the {@link SegmentResultCache}.
+ * The cache is looked up when the plan is run, and the child plan node is not run when the segment result is cached,
+ * so that neither the filter nor the aggregation is planned for the segment.
+ */
+@SuppressWarnings("unchecked")
+public class SegmentResultCachePlanNode implements PlanNode {
+  private final PlanNode _childPlanNode;
+  private final IndexSegment _indexSegment;
+  private final QueryContext _queryContext;
+  private final SegmentResultCache _segmentResultCache;
+  private final String _cacheKey;
+
+  public SegmentResultCachePlanNode(PlanNode childPlanNode, IndexSegment indexSegment, QueryContext queryContext,
+      SegmentResultCache segmentResultCache, String cacheKey) {
+    _childPlanNode = childPlanNode;
+    _indexSegment = indexSegment;
+    _queryContext = queryContext;
+    _segmentResultCache = segmentResultCache;
+    _cacheKey = cacheKey;
+  }
+
+  @Override
+  public SegmentResultCacheOperator run() {
+    CachedSegmentResult cachedResult = _segmentResultCache.get(_cacheKey, _queryContext.getTableName());
+    if (cachedResult != null) {
+      return new SegmentResultCacheOperator(_indexSegment, _queryContext, _segmentResultCache, _cacheKey,
+          cachedResult);
+    }
+    return new SegmentResultCacheOperator(_indexSegment, _queryContext, _segmentResultCache, _cacheKey,
+        (Operator<BaseResultsBlock>) _childPlanNode.run());
+  }
+}
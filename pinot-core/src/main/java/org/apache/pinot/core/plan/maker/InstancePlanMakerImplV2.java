@@ -25,6 +25,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import javax.annotation.Nullable;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -42,16 +43,21 @@ import org.apache.pinot.core.plan.GroupByPlanNode;
 import org.apache.pinot.core.plan.InstanceResponsePlanNode;
 import org.apache.pinot.core.plan.Plan;
 import org.apache.pinot.core.plan.PlanNode;
+import org.apache.pinot.core.plan.SegmentMorselPlanNode;
+import org.apache.pinot.core.plan.SegmentResultCachePlanNode;
 import org.apache.pinot.core.plan.SelectionPlanNode;
 import org.apache.pinot.core.plan.StreamingInstanceResponsePlanNode;
 import org.apache.pinot.core.plan.StreamingSelectionPlanNode;
 import org.apache.pinot.core.query.aggregation.function.AggregationFunction;
+import org.apache.pinot.core.query.cache.SegmentResultCache;
 import org.apache.pinot.core.query.executor.ResultsBlockStreamer;
 import org.apache.pinot.core.query.prefetch.FetchPlanner;
 import org.apache.pinot.core.query.prefetch.FetchPlannerRegistry;
 import org.apache.pinot.core.query.request.context.QueryContext;
 import org.apache.pinot.core.query.request.context.utils.QueryContextUtils;
+import org.apache.pinot.core.util.QueryMultiThreadingUtils;
 import org.apache.pinot.segment.spi.FetchContext;
+import org.apache.pinot.segment.spi.ImmutableSegment;
 import org.apache.pinot.segment.spi.IndexSegment;
 import org.apache.pinot.segment.spi.SegmentContext;
 import org.apache.pinot.spi.env.PinotConfiguration;
@@ -115,6 +121,10 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
   private int _minSegmentGroupTrimSize = Server.DEFAULT_QUERY_EXECUTOR_MIN_SEGMENT_GROUP_TRIM_SIZE;
   private int _minServerGroupTrimSize = Server.DEFAULT_QUERY_EXECUTOR_MIN_SERVER_GROUP_TRIM_SIZE;
   private int _groupByTrimThreshold = Server.DEFAULT_QUERY_EXECUTOR_GROUPBY_TRIM_THRESHOLD;
+  // Cache of the segment level results for immutable segments, null when disabled
+  private SegmentResultCache _segmentResultCache;
+  // Minimum number of docs per morsel when splitting large segments, non-positive to disable
+  private int _morselMinDocs = Server.DEFAULT_QUERY_EXECUTOR_MORSEL_MIN_DOCS;
 
   @Override
   public void init(PinotConfiguration queryExecutorConfig) {
@@ -146,6 +156,33 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
             + "numGroupsLimit: {}, minSegmentGroupTrimSize: {}, minServerGroupTrimSize: {}, groupByTrimThreshold: {}",
         _maxExecutionThreads, _maxInitialResultHolderCapacity, _numGroupsLimit, _minSegmentGroupTrimSize,
         _minServerGroupTrimSize, _groupByTrimThreshold);
+    _morselMinDocs =
+        queryExecutorConfig.getProperty(Server.MORSEL_MIN_DOCS, Server.DEFAULT_QUERY_EXECUTOR_MORSEL_MIN_DOCS);
+    if (_morselMinDocs > 0) {
+      LOGGER.info("Enabled splitting large segments into morsels with at least {} docs", _morselMinDocs);
+    }
+    if (queryExecutorConfig.getProperty(Server.SEGMENT_RESULT_CACHE_ENABLED,
+        Server.DEFAULT_QUERY_EXECUTOR_SEGMENT_RESULT_CACHE_ENABLED)) {
+      long maxSizeBytes = queryExecutorConfig.getProperty(Server.SEGMENT_RESULT_CACHE_MAX_SIZE_BYTES,
+          Server.DEFAULT_QUERY_EXECUTOR_SEGMENT_RESULT_CACHE_MAX_SIZE_BYTES);
+      int maxNumGroups = queryExecutorConfig.getProperty(Server.SEGMENT_RESULT_CACHE_MAX_NUM_GROUPS,
+          Server.DEFAULT_QUERY_EXECUTOR_SEGMENT_RESULT_CACHE_MAX_NUM_GROUPS);
+      Preconditions.checkState(maxSizeBytes > 0,
+          "Invalid configuration: segment result cache max size bytes: %d must be positive", maxSizeBytes);
+      _segmentResultCache = new SegmentResultCache(maxSizeBytes, maxNumGroups);
+      LOGGER.info("Enabled segment result cache with maxSizeBytes: {}, maxNumGroups: {}", maxSizeBytes,
+          maxNumGroups);
+    }
+  }
+
+  @VisibleForTesting
+  public void setSegmentResultCache(@Nullable SegmentResultCache segmentResultCache) {
+    _segmentResultCache = segmentResultCache;
+  }
+
+  @VisibleForTesting
+  public void setMorselMinDocs(int morselMinDocs) {
+    _morselMinDocs = morselMinDocs;
   }
 
   @VisibleForTesting
@@ -193,13 +230,21 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
             _fetchPlanner.planFetchForProcessing(segmentContext.getIndexSegment(), queryContext);
         fetchContexts.add(fetchContext);
         planNodes.add(
-            new AcquireReleaseColumnsSegmentPlanNode(makeSegmentPlanNode(segmentContext, queryContext), segmentContext,
-                fetchContext));
+            new AcquireReleaseColumnsSegmentPlanNode(makeCachedSegmentPlanNode(segmentContext, queryContext),
+                segmentContext, fetchContext));
       }
     } else {
       fetchContexts = Collections.emptyList();
+      int morselMinDocs = getMorselMinDocs(queryContext);
+      int maxNumMorselsPerSegment = getMaxNumMorselsPerSegment(queryContext, numSegments, morselMinDocs);
       for (SegmentContext segmentContext : segmentContexts) {
-        planNodes.add(makeSegmentPlanNode(segmentContext, queryContext));
+        int numMorsels = maxNumMorselsPerSegment > 1 ? getNumMorsels(segmentContext, queryContext,
+            maxNumMorselsPerSegment, morselMinDocs) : 1;
+        if (numMorsels > 1) {
+          addMorselPlanNodes(planNodes, segmentContext, queryContext, numMorsels);
+        } else {
+          planNodes.add(makeCachedSegmentPlanNode(segmentContext, queryContext));
+        }
       }
     }
 
@@ -208,6 +253,80 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
         new InstanceResponsePlanNode(combinePlanNode, segmentContexts, fetchContexts, queryContext));
   }
 
+  /**
+   * Makes the segment plan node, and wraps it with the {@link SegmentResultCachePlanNode} when the segment result can
+   * be cached.
+   */
+  private PlanNode makeCachedSegmentPlanNode(SegmentContext segmentContext, QueryContext queryContext) {
+    PlanNode planNode = makeSegmentPlanNode(segmentContext, queryContext);
+    if (_segmentResultCache != null) {
+      // NOTE: Compute the cache key after making the segment plan node because the query context can be rewritten
+      //       with the segment level hints.
+      String cacheKey = _segmentResultCache.getCacheKey(segmentContext, queryContext);
+      if (cacheKey != null) {
+        return new SegmentResultCachePlanNode(planNode, segmentContext.getIndexSegment(), queryContext,
+            _segmentResultCache, cacheKey);
+      }
+    }
+    return planNode;
+  }
+
+  private int getMorselMinDocs(QueryContext queryContext) {
+    Integer morselMinDocs = QueryOptionsUtils.getMorselMinDocs(queryContext.getQueryOptions());
+    return morselMinDocs != null ? morselMinDocs : _morselMinDocs;
+  }
+
+  /**
+   * Returns the max number of morsels each segment can be split into. Segments are split only for aggregation queries
+   * (with or without group-by) when the query touches fewer segments than the execution threads, so that the idle
+   * threads can process the morsels of the large segments in parallel. The results of the morsels are merged by the
+   * combine operator the same way as the results from different segments.
+   */
+  private static int getMaxNumMorselsPerSegment(QueryContext queryContext, int numSegments, int morselMinDocs) {
+    if (morselMinDocs <= 0 || numSegments == 0 || !QueryContextUtils.isAggregationQuery(queryContext)) {
+      return 1;
+    }
+    int maxExecutionThreads = queryContext.getMaxExecutionThreads();
+    if (maxExecutionThreads <= 0) {
+      maxExecutionThreads = QueryMultiThreadingUtils.MAX_NUM_THREADS_PER_QUERY;
+    }
+    return maxExecutionThreads / numSegments;
+  }
+
+  /**
+   * Returns the number of morsels to split the segment into, where each morsel has at least {@code morselMinDocs} docs.
+   * Consuming segments, segments solved with star-tree index and segments solved without scanning (with dictionary or
+   * column metadata) are always processed as a whole.
+   */
+  @VisibleForTesting
+  static int getNumMorsels(SegmentContext segmentContext, QueryContext queryContext, int maxNumMorsels,
+      int morselMinDocs) {
+    IndexSegment indexSegment = segmentContext.getIndexSegment();
+    if (!(indexSegment instanceof ImmutableSegment) || (indexSegment.getStarTrees() != null
+        && !queryContext.isSkipStarTree())) {
+      return 1;
+    }
+    // Splitting adds a partial queryable docs to each morsel, which forces scanning
+    if (AggregationPlanNode.isSolvedWithoutScan(segmentContext, queryContext)) {
+      return 1;
+    }
+    return Math.max(Math.min(maxNumMorsels, indexSegment.getSegmentMetadata().getTotalDocs() / morselMinDocs), 1);
+  }
+
+  private void addMorselPlanNodes(List<PlanNode> planNodes, SegmentContext segmentContext, QueryContext queryContext,
+      int numMorsels) {
+    int numDocs = segmentContext.getIndexSegment().getSegmentMetadata().getTotalDocs();
+    for (int i = 0; i < numMorsels; i++) {
+      int startDocId = (int) ((long) numDocs * i / numMorsels);
+      int endDocId = (int) ((long) numDocs * (i + 1) / numMorsels);
+      SegmentContext morselSegmentContext =
+          SegmentMorselPlanNode.createMorselSegmentContext(segmentContext, startDocId, endDocId);
+      planNodes.add(
+          new SegmentMorselPlanNode(makeSegmentPlanNode(morselSegmentContext, queryContext), segmentContext, i,
+              startDocId, endDocId));
+    }
+  }
+
   private void applyQueryOptions(QueryContext queryContext) {
     Map<String, String> queryOptions = queryContext.getQueryOptions();
 
@@ -216,6 +335,8 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
 
     // Set skipStarTree
     queryContext.setSkipStarTree(QueryOptionsUtils.isSkipStarTree(queryOptions));
+    queryContext.setAllowStaleConsumingSegmentStarTree(
+        QueryOptionsUtils.isAllowStaleConsumingSegmentStarTree(queryOptions));
 
     // Set accurateGroupByWithoutOrderBy
     queryContext.setAccurateGroupByWithoutOrderBy(
@@ -85,11 +85,13 @@ public class SumAggregationFunction extends NullableSingleInputAggregationFuncti
         int[] values = blockValSet.getIntValuesSV();
 
         sum = foldNotNull(length, blockValSet, null, (acum, from, to) -> {
-          double innerSum = 0;
+          // Sum INT values with a long accumulator, which is exact for a block and can be vectorized by the JIT
+          // compiler, unlike the double addition which has to be performed in order
+          long innerSum = 0;
           for (int i = from; i < to; i++) {
             innerSum += values[i];
           }
-          return acum == null ? innerSum : acum + innerSum;
+          return acum == null ? (double) innerSum : acum + innerSum;
         });
 
         break;
@@ -0,0 +1,260 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.cache;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.pinot.common.CustomObject;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.core.data.table.IntermediateRecord;
+import org.apache.pinot.core.data.table.Key;
+import org.apache.pinot.core.data.table.Record;
+import org.apache.pinot.core.operator.ExecutionStatistics;
+import org.apache.pinot.core.operator.blocks.results.AggregationResultsBlock;
+import org.apache.pinot.core.operator.blocks.results.BaseResultsBlock;
+import org.apache.pinot.core.operator.blocks.results.GroupByResultsBlock;
+import org.apache.pinot.core.query.aggregation.function.AggregationFunction;
+import org.apache.pinot.core.query.aggregation.function.AggregationFunction.SerializedIntermediateResult;
+import org.apache.pinot.core.query.aggregation.groupby.AggregationGroupByResult;
+import org.apache.pinot.core.query.aggregation.groupby.GroupKeyGenerator;
+import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.spi.query.QueryThreadContext;
+import org.apache.pinot.spi.utils.ByteArray;
+
+
+/**
+ * Segment level aggregation or group-by result stored in the {@link SegmentResultCache}.
+ * <p>The combine operators merge the segment results in place, so the cached result never shares mutable objects with
+ * the results blocks. Immutable values (numbers, strings etc.) are shared, and mutable intermediate results (sketches,
+ * sets etc.) are stored in the serialized format, and deserialized into a new object for each query.
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class CachedSegmentResult {
+  // Rough estimation of the memory overhead of each cached object
+  private static final int OBJECT_OVERHEAD_BYTES = 16;
+  // Marker for values that cannot be cached
+  private static final Object NOT_CACHEABLE = new Object();
+
+  private final ExecutionStatistics _executionStatistics;
+  // Aggregation results
+  private final Object[] _aggregationResults;
+  // Group-by results, where each row contains the group keys followed by the aggregation results
+  private final DataSchema _dataSchema;
+  private final List<Object[]> _groupByRows;
+  private final boolean _groupsTrimmed;
+  private final boolean _numGroupsLimitReached;
+  private final boolean _numGroupsWarningLimitReached;
+  private final long _sizeInBytes;
+
+  private CachedSegmentResult(ExecutionStatistics executionStatistics, @Nullable Object[] aggregationResults,
+      @Nullable DataSchema dataSchema, @Nullable List<Object[]> groupByRows, boolean groupsTrimmed,
+      boolean numGroupsLimitReached, boolean numGroupsWarningLimitReached, long sizeInBytes) {
+    _executionStatistics = executionStatistics;
+    _aggregationResults = aggregationResults;
+    _dataSchema = dataSchema;
+    _groupByRows = groupByRows;
+    _groupsTrimmed = groupsTrimmed;
+    _numGroupsLimitReached = numGroupsLimitReached;
+    _numGroupsWarningLimitReached = numGroupsWarningLimitReached;
+    _sizeInBytes = sizeInBytes;
+  }
+
+  /**
+   * Returns the cached result for the given segment level aggregation results, or {@code null} if the results cannot
+   * be cached.
+   */
+  @Nullable
+  public static CachedSegmentResult fromAggregationResults(AggregationResultsBlock resultsBlock,
+      ExecutionStatistics executionStatistics) {
+    AggregationFunction[] aggregationFunctions = resultsBlock.getAggregationFunctions();
+    List<Object> results = resultsBlock.getResults();
+    int numResults = results.size();
+    Object[] aggregationResults = new Object[numResults];
+    long sizeInBytes = OBJECT_OVERHEAD_BYTES;
+    for (int i = 0; i < numResults; i++) {
+      Object cachedValue = toCachedValue(aggregationFunctions[i], results.get(i));
+      if (cachedValue == NOT_CACHEABLE) {
+        return null;
+      }
+      aggregationResults[i] = cachedValue;
+      sizeInBytes += getSizeInBytes(cachedValue);
+    }
+    return new CachedSegmentResult(executionStatistics, aggregationResults, null, null, false, false, false,
+        sizeInBytes);
+  }
+
+  /**
+   * Returns the cached result for the given segment level group-by results, or {@code null} if the results cannot be
+   * cached. The intermediate records should be the ones returned in the results block.
+   */
+  @Nullable
+  public static CachedSegmentResult fromGroupByResults(GroupByResultsBlock resultsBlock,
+      List<IntermediateRecord> intermediateRecords, QueryContext queryContext,
+      ExecutionStatistics executionStatistics) {
+    AggregationFunction[] aggregationFunctions = queryContext.getAggregationFunctions();
+    int numGroupByExpressions = queryContext.getGroupByExpressions().size();
+    int numColumns = numGroupByExpressions + aggregationFunctions.length;
+    List<Object[]> groupByRows = new ArrayList<>(intermediateRecords.size());
+    long sizeInBytes = OBJECT_OVERHEAD_BYTES;
+    for (IntermediateRecord intermediateRecord : intermediateRecords) {
+      Object[] values = intermediateRecord._record.getValues();
+      Object[] row = new Object[numColumns];
+      for (int i = 0; i < numGroupByExpressions; i++) {
+        Object value = values[i];
+        if (!isImmutable(value) && !(value instanceof ByteArray)) {
+          return null;
+        }
+        row[i] = value;
+        sizeInBytes += getSizeInBytes(value);
+      }
+      for (int i = numGroupByExpressions; i < numColumns; i++) {
+        Object cachedValue = toCachedValue(aggregationFunctions[i - numGroupByExpressions], values[i]);
+        if (cachedValue == NOT_CACHEABLE) {
+          return null;
+        }
+        row[i] = cachedValue;
+        sizeInBytes += getSizeInBytes(cachedValue);
+      }
+      groupByRows.add(row);
+      sizeInBytes += OBJECT_OVERHEAD_BYTES;
+    }
+    return new CachedSegmentResult(executionStatistics, null, resultsBlock.getDataSchema(), groupByRows,
+        resultsBlock.isGroupsTrimmed(), resultsBlock.isNumGroupsLimitReached(),
+        resultsBlock.isNumGroupsWarningLimitReached(), sizeInBytes);
+  }
+
+  /**
+   * Converts the segment level group-by results into intermediate records, and closes the group key generator.
+   */
+  public static List<IntermediateRecord> toIntermediateRecords(AggregationGroupByResult aggregationGroupByResult,
+      int numGroupByExpressions, int numAggregationFunctions) {
+    List<IntermediateRecord> intermediateRecords = new ArrayList<>(aggregationGroupByResult.getNumGroups());
+    int numColumns = numGroupByExpressions + numAggregationFunctions;
+    try {
+      Iterator<GroupKeyGenerator.GroupKey> groupKeyIterator = aggregationGroupByResult.getGroupKeyIterator();
+      int numRecords = 0;
+      while (groupKeyIterator.hasNext()) {
+        QueryThreadContext.checkTerminationAndSampleUsagePeriodically(numRecords++,
+            "CachedSegmentResult#toIntermediateRecords");
+        GroupKeyGenerator.GroupKey groupKey = groupKeyIterator.next();
+        Object[] keys = groupKey._keys;
+        Object[] values = Arrays.copyOf(keys, numColumns);
+        int groupId = groupKey._groupId;
+        for (int i = 0; i < numAggregationFunctions; i++) {
+          values[numGroupByExpressions + i] = aggregationGroupByResult.getResultForGroupId(i, groupId);
+        }
+        intermediateRecords.add(IntermediateRecord.create(new Key(keys), new Record(values)));
+      }
+    } finally {
+      aggregationGroupByResult.closeGroupKeyGenerator();
+    }
+    return intermediateRecords;
+  }
+
+  /**
+   * Returns a new results block for the cached result. The returned block does not share any mutable object with the
+   * cache, and can be merged in place by the combine operators.
+   */
+  public BaseResultsBlock toResultsBlock(QueryContext queryContext) {
+    AggregationFunction[] aggregationFunctions = queryContext.getAggregationFunctions();
+    if (_aggregationResults != null) {
+      int numResults = _aggregationResults.length;
+      List<Object> results = new ArrayList<>(numResults);
+      for (int i = 0; i < numResults; i++) {
+        results.add(fromCachedValue(aggregationFunctions[i], _aggregationResults[i]));
+      }
+      return new AggregationResultsBlock(aggregationFunctions, results, queryContext);
+    }
+
+    assert _groupByRows != null;
+    int numGroupByExpressions = queryContext.getGroupByExpressions().size();
+    int numColumns = numGroupByExpressions + aggregationFunctions.length;
+    List<IntermediateRecord> intermediateRecords = new ArrayList<>(_groupByRows.size());
+    for (Object[] row : _groupByRows) {
+      Object[] keys = Arrays.copyOf(row, numGroupByExpressions);
+      Object[] values = Arrays.copyOf(row, numColumns);
+      for (int i = numGroupByExpressions; i < numColumns; i++) {
+        values[i] = fromCachedValue(aggregationFunctions[i - numGroupByExpressions], row[i]);
+      }
+      intermediateRecords.add(IntermediateRecord.create(new Key(keys), new Record(values)));
+    }
+    GroupByResultsBlock resultsBlock = new GroupByResultsBlock(_dataSchema, intermediateRecords, queryContext);
+    resultsBlock.setGroupsTrimmed(_groupsTrimmed);
+    resultsBlock.setNumGroupsLimitReached(_numGroupsLimitReached);
+    resultsBlock.setNumGroupsWarningLimitReached(_numGroupsWarningLimitReached);
+    return resultsBlock;
+  }
+
+  public ExecutionStatistics getExecutionStatistics() {
+    return _executionStatistics;
+  }
+
+  public long getSizeInBytes() {
+    return _sizeInBytes;
+  }
+
+  private static Object toCachedValue(AggregationFunction aggregationFunction, @Nullable Object value) {
+    if (value == null || isImmutable(value)) {
+      return value;
+    }
+    if (aggregationFunction.getIntermediateResultColumnType() != ColumnDataType.OBJECT) {
+      return NOT_CACHEABLE;
+    }
+    try {
+      return aggregationFunction.serializeIntermediateResult(value);
+    } catch (UnsupportedOperationException e) {
+      return NOT_CACHEABLE;
+    }
+  }
+
+  @Nullable
+  private static Object fromCachedValue(AggregationFunction aggregationFunction, @Nullable Object cachedValue) {
+    if (cachedValue instanceof SerializedIntermediateResult) {
+      SerializedIntermediateResult serializedResult = (SerializedIntermediateResult) cachedValue;
+      return aggregationFunction.deserializeIntermediateResult(
+          new CustomObject(serializedResult.getType(), ByteBuffer.wrap(serializedResult.getBytes())));
+    }
+    return cachedValue;
+  }
+
+  private static boolean isImmutable(@Nullable Object value) {
+    return value == null || value instanceof Integer || value instanceof Long || value instanceof Float
+        || value instanceof Double || value instanceof BigDecimal || value instanceof String
+        || value instanceof Boolean;
+  }
+
+  private static long getSizeInBytes(@Nullable Object cachedValue) {
+    if (cachedValue instanceof SerializedIntermediateResult) {
+      return OBJECT_OVERHEAD_BYTES + ((SerializedIntermediateResult) cachedValue).getBytes().length;
+    }
+    if (cachedValue instanceof String) {
+      return OBJECT_OVERHEAD_BYTES + 2L * ((String) cachedValue).length();
+    }
+    if (cachedValue instanceof ByteArray) {
+      return OBJECT_OVERHEAD_BYTES + ((ByteArray) cachedValue).length();
+    }
+    return OBJECT_OVERHEAD_BYTES;
+  }
+}
@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+import org.apache.pinot.common.metrics.ServerMeter;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.common.utils.config.QueryOptionsUtils;
+import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.core.query.request.context.utils.QueryContextUtils;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.SegmentContext;
+import org.apache.pinot.spi.utils.CommonConstants.Broker.Request.QueryOptionKey;
+
+
+/**
+ * Server side cache of the segment level aggregation and group-by results for immutable segments.
+ * <p>The data of an immutable segment never changes until the segment is reloaded or replaced, so the segment level
+ * results can be reused across queries with the same fingerprint. The cache key contains the segment CRC, so the
+ * entries of the replaced segments are never hit again and are evicted by the size based eviction. Segments with
+ * valid doc ids (upsert and dedup tables) are not cached because their queryable docs can change without changing the
+ * segment CRC.
+ */
+public class SegmentResultCache {
+  // Query options that do not affect the segment level results
+  private static final Set<String> IGNORED_QUERY_OPTIONS =
+      Set.of(QueryOptionKey.TIMEOUT_MS, QueryOptionKey.EXTRA_PASSIVE_TIMEOUT_MS,
+          QueryOptionKey.MAX_SERVER_RESPONSE_SIZE_BYTES, QueryOptionKey.MAX_QUERY_RESPONSE_SIZE_BYTES,
+          QueryOptionKey.MAX_EXECUTION_THREADS, QueryOptionKey.CLIENT_QUERY_ID, QueryOptionKey.QUERY_HASH,
+          QueryOptionKey.USE_RESULT_CACHE);
+
+  private final Cache<String, CachedSegmentResult> _cache;
+  private final int _maxNumGroups;
+
+  public SegmentResultCache(long maxSizeBytes, int maxNumGroups) {
+    _cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxSizeBytes)
+        .<String, CachedSegmentResult>weigher(
+            (key, value) -> (int) Math.min(2L * key.length() + value.getSizeInBytes(), Integer.MAX_VALUE))
+        .build();
+    _maxNumGroups = maxNumGroups;
+  }
+
+  /**
+   * Returns the cache key for the given segment and query, or {@code null} if the segment results cannot be cached.
+   */
+  @Nullable
+  public String getCacheKey(SegmentContext segmentContext, QueryContext queryContext) {
+    IndexSegment indexSegment = segmentContext.getIndexSegment();
+    if (!(indexSegment instanceof ImmutableSegment) || indexSegment.getValidDocIds() != null
+        || segmentContext.getQueryableDocIdsSnapshot() != null) {
+      return null;
+    }
+    String crc = indexSegment.getSegmentMetadata().getCrc();
+    if (crc == null) {
+      return null;
+    }
+    String queryFingerprint = getQueryFingerprint(queryContext);
+    if (queryFingerprint == null) {
+      return null;
+    }
+    return queryFingerprint + "|segment=" + indexSegment.getSegmentName() + "|crc=" + crc;
+  }
+
+  /**
+   * Returns the canonical fingerprint of the query, or {@code null} if the query results cannot be cached. Only
+   * aggregation and group-by queries without subquery are cached.
+   */
+  @VisibleForTesting
+  @Nullable
+  static String getQueryFingerprint(QueryContext queryContext) {
+    if (!QueryContextUtils.isAggregationQuery(queryContext) || queryContext.isExplain()
+        || queryContext.getSubquery() != null || QueryOptionsUtils.isSkipResultCache(
+        queryContext.getQueryOptions())) {
+      return null;
+    }
+    // Sort the query options so that the fingerprint does not depend on the order of the options
+    Map<String, String> queryOptions = new TreeMap<>(queryContext.getQueryOptions());
+    queryOptions.keySet().removeAll(IGNORED_QUERY_OPTIONS);
+    StringBuilder stringBuilder = new StringBuilder("table=").append(queryContext.getTableName())
+        .append("|select=").append(queryContext.getSelectExpressions())
+        .append("|filter=").append(queryContext.getFilter())
+        .append("|groupBy=").append(queryContext.getGroupByExpressions())
+        .append("|having=").append(queryContext.getHavingFilter())
+        .append("|orderBy=").append(queryContext.getOrderByExpressions())
+        .append("|limit=").append(queryContext.getLimit())
+        .append("|offset=").append(queryContext.getOffset())
+        .append("|hints=").append(queryContext.getExpressionOverrideHints())
+        .append("|options=").append(queryOptions);
+    if (queryContext.getGroupByExpressions() != null) {
+      // Server configs that affect the segment level group-by results
+      stringBuilder.append("|numGroupsLimit=").append(queryContext.getNumGroupsLimit())
+          .append("|minSegmentGroupTrimSize=").append(queryContext.getMinSegmentGroupTrimSize());
+    }
+    return stringBuilder.toString();
+  }
+
+  /**
+   * Returns the cached segment result, or {@code null} if it is not cached.
+   */
+  @Nullable
+  public CachedSegmentResult get(String cacheKey, String tableNameWithType) {
+    CachedSegmentResult cachedResult = _cache.getIfPresent(cacheKey);
+    ServerMetrics.get().addMeteredTableValue(tableNameWithType,
+        cachedResult != null ? ServerMeter.SEGMENT_RESULT_CACHE_HITS : ServerMeter.SEGMENT_RESULT_CACHE_MISSES, 1);
+    return cachedResult;
+  }
+
+  public void put(String cacheKey, CachedSegmentResult cachedResult) {
+    _cache.put(cacheKey, cachedResult);
+  }
+
+  /**
+   * Returns the max number of groups of the cached segment level group-by results.
+   */
+  public int getMaxNumGroups() {
+    return _maxNumGroups;
+  }
+
+  public long getNumEntries() {
+    return _cache.size();
+  }
+
+  public void clear() {
+    _cache.invalidateAll();
+  }
+}
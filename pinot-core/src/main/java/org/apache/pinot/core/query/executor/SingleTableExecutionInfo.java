@@ -29,6 +29,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.apache.pinot.common.exception.TableNotFoundException;
+import org.apache.pinot.common.request.context.FilterContext;
 import org.apache.pinot.core.data.manager.InstanceDataManager;
 import org.apache.pinot.core.data.manager.realtime.RealtimeTableDataManager;
 import org.apache.pinot.core.query.pruner.SegmentPrunerService;
@@ -38,6 +39,7 @@ import org.apache.pinot.core.query.request.context.TimerContext;
 import org.apache.pinot.segment.local.data.manager.SegmentDataManager;
 import org.apache.pinot.segment.local.data.manager.TableDataManager;
 import org.apache.pinot.segment.local.upsert.TableUpsertMetadataManager;
+import org.apache.pinot.segment.local.warmup.SegmentWarmUpManager;
 import org.apache.pinot.segment.spi.ImmutableSegment;
 import org.apache.pinot.segment.spi.IndexSegment;
 import org.apache.pinot.segment.spi.MutableSegment;
@@ -270,6 +272,9 @@ public class SingleTableExecutionInfo implements TableExecutionInfo {
     int numTotalSegments = indexSegments.size();
     int numSelectedSegments = selectedSegments.size();
     LOGGER.debug("Matched {} segments after pruning", numSelectedSegments);
+    if (numSelectedSegments > 0) {
+      recordIndexAccesses(queryContext);
+    }
     List<SegmentContext> selectedSegmentContexts;
     if (providedSegmentContexts == null) {
       selectedSegmentContexts = getSegmentContexts(selectedSegments, queryContext.getQueryOptions());
@@ -280,4 +285,20 @@ public class SingleTableExecutionInfo implements TableExecutionInfo {
     return new SelectedSegmentsInfo(indexSegments, numTotalDocs, prunerStats, numTotalSegments, numSelectedSegments,
         selectedSegmentContexts);
   }
+
+  /**
+   * Records the indexes accessed by the query so that they can be warmed up for the segments loaded later.
+   */
+  private void recordIndexAccesses(QueryContext queryContext) {
+    SegmentWarmUpManager segmentWarmUpManager = _tableDataManager.getSegmentWarmUpManager();
+    if (segmentWarmUpManager == null) {
+      return;
+    }
+    Set<String> filterColumns = new HashSet<>();
+    FilterContext filter = queryContext.getFilter();
+    if (filter != null) {
+      filter.getColumns(filterColumns);
+    }
+    segmentWarmUpManager.recordQuery(queryContext.getColumns(), filterColumns);
+  }
 }
@@ -110,6 +110,8 @@ public class QueryContext {
   private boolean _skipUpsert;
   // Whether to skip star-tree index for the query
   private boolean _skipStarTree;
+  // Whether to use the star-tree snapshot of the consuming segments not covering the most recently indexed rows
+  private boolean _allowStaleConsumingSegmentStarTree;
   // Whether to skip reordering scan filters for the query
   private boolean _skipScanFilterReorder;
   // Maximum number of threads used to execute the query
@@ -393,6 +395,14 @@ public class QueryContext {
     _skipStarTree = skipStarTree;
   }
 
+  public boolean isAllowStaleConsumingSegmentStarTree() {
+    return _allowStaleConsumingSegmentStarTree;
+  }
+
+  public void setAllowStaleConsumingSegmentStarTree(boolean allowStaleConsumingSegmentStarTree) {
+    _allowStaleConsumingSegmentStarTree = allowStaleConsumingSegmentStarTree;
+  }
+
   public boolean isSkipScanFilterReorder() {
     return _skipScanFilterReorder;
   }
@@ -21,6 +21,7 @@ package org.apache.pinot.core.query.scheduler;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListenableFutureTask;
 import com.google.common.util.concurrent.MoreExecutors;
+import io.netty.buffer.ByteBuf;
 import java.util.List;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
@@ -87,7 +88,7 @@ public class BinaryWorkloadScheduler extends QueryScheduler {
   }
 
   @Override
-  public ListenableFuture<byte[]> submit(ServerQueryRequest queryRequest) {
+  public ListenableFuture<ByteBuf> submit(ServerQueryRequest queryRequest) {
     if (!_isRunning) {
       return shuttingDown(queryRequest);
     }
@@ -95,7 +96,7 @@ public class BinaryWorkloadScheduler extends QueryScheduler {
     queryRequest.getTimerContext().startNewPhaseTimer(ServerQueryPhase.SCHEDULER_WAIT);
     if (!QueryOptionsUtils.isSecondaryWorkload(queryRequest.getQueryContext().getQueryOptions())) {
       QueryExecutorService executorService = _resourceManager.getExecutorService(queryRequest, null);
-      ListenableFutureTask<byte[]> queryTask = createQueryFutureTask(queryRequest, executorService);
+      ListenableFutureTask<ByteBuf> queryTask = createQueryFutureTask(queryRequest, executorService);
       _resourceManager.getQueryRunners().submit(queryTask);
       return queryTask;
     }
@@ -154,7 +155,7 @@ public class BinaryWorkloadScheduler extends QueryScheduler {
             ServerQueryRequest queryRequest = request.getQueryRequest();
             SchedulerGroup schedulerGroup = request.getSchedulerGroup();
             QueryExecutorService executorService = _resourceManager.getExecutorService(queryRequest, schedulerGroup);
-            ListenableFutureTask<byte[]> queryFutureTask = createQueryFutureTask(queryRequest, executorService);
+            ListenableFutureTask<ByteBuf> queryFutureTask = createQueryFutureTask(queryRequest, executorService);
             queryFutureTask.addListener(new Runnable() {
               @Override
               public void run() {
@@ -212,7 +213,7 @@ public class BinaryWorkloadScheduler extends QueryScheduler {
   synchronized private void failAllPendingQueries() {
     List<SchedulerQueryContext> pending = _secondaryQueryQ.drain();
     for (SchedulerQueryContext queryContext : pending) {
-      ListenableFuture<byte[]> serverShuttingDown = shuttingDown(queryContext.getQueryRequest());
+      ListenableFuture<ByteBuf> serverShuttingDown = shuttingDown(queryContext.getQueryRequest());
       queryContext.setResultFuture(serverShuttingDown);
     }
   }
@@ -21,6 +21,7 @@ package org.apache.pinot.core.query.scheduler;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListenableFutureTask;
+import io.netty.buffer.ByteBuf;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.LongAccumulator;
@@ -86,7 +87,7 @@ public abstract class QueryScheduler {
    * @return Listenable future for query result representing serialized response. It is possible that the
    *    future may return immediately or be scheduled for execution at a later time.
    */
-  public abstract ListenableFuture<byte[]> submit(ServerQueryRequest queryRequest);
+  public abstract ListenableFuture<ByteBuf> submit(ServerQueryRequest queryRequest);
 
   /**
    * Query scheduler name for logging
@@ -117,7 +118,7 @@ public abstract class QueryScheduler {
    * @return Future task that can be scheduled for execution on an ExecutorService. Ideally, this future
    * should be executed on a different executor service than {@code executorService} to avoid deadlock.
    */
-  protected ListenableFutureTask<byte[]> createQueryFutureTask(ServerQueryRequest queryRequest,
+  protected ListenableFutureTask<ByteBuf> createQueryFutureTask(ServerQueryRequest queryRequest,
       ExecutorService executorService) {
     return ListenableFutureTask.create(() -> processQueryAndSerialize(queryRequest, executorService));
   }
@@ -129,7 +130,7 @@ public abstract class QueryScheduler {
    * @return serialized query response
    */
   @Nullable
-  protected byte[] processQueryAndSerialize(ServerQueryRequest queryRequest, ExecutorService executorService) {
+  protected ByteBuf processQueryAndSerialize(ServerQueryRequest queryRequest, ExecutorService executorService) {
     QueryExecutionContext executionContext = queryRequest.toExecutionContext(_instanceId);
     _latestQueryTime.accumulate(executionContext.getStartTimeMs());
     try (QueryThreadContext ignore = QueryThreadContext.open(executionContext, _threadAccountant)) {
@@ -153,7 +154,7 @@ public abstract class QueryScheduler {
       responseMetadata.put(MetadataKey.REQUEST_ID.getName(), Long.toString(requestId));
       responseMetadata.put(MetadataKey.QUERY_ID.getName(), queryId);
       responseMetadata.put(MetadataKey.WORKLOAD_NAME.getName(), workloadName);
-      byte[] responseBytes = serializeResponse(queryRequest, instanceResponse);
+      ByteBuf responseBytes = serializeResponse(queryRequest, instanceResponse);
 
       // Log the statistics
       if (_queryLogger != null) {
@@ -163,7 +164,7 @@ public abstract class QueryScheduler {
       // TODO: Perform this check sooner during the serialization of DataTable.
       Map<String, String> queryOptions = queryRequest.getQueryContext().getQueryOptions();
       if (responseBytes != null) {
-        int responseSizeBytes = responseBytes.length;
+        int responseSizeBytes = responseBytes.readableBytes();
         String tableNameWithType = queryRequest.getTableNameWithType();
         _serverMetrics.addMeteredTableValue(tableNameWithType, ServerMeter.QUERY_RESPONSE_SIZE, responseSizeBytes);
         Long maxResponseSizeBytes = QueryOptionsUtils.getMaxServerResponseSizeBytes(queryOptions);
@@ -194,16 +195,16 @@ public abstract class QueryScheduler {
    * @return serialized response bytes
    */
   @Nullable
-  private byte[] serializeResponse(ServerQueryRequest queryRequest, InstanceResponseBlock instanceResponse) {
+  private ByteBuf serializeResponse(ServerQueryRequest queryRequest, InstanceResponseBlock instanceResponse) {
     TimerContext timerContext = queryRequest.getTimerContext();
     TimerContext.Timer responseSerializationTimer =
         timerContext.startNewPhaseTimer(ServerQueryPhase.RESPONSE_SERIALIZATION);
     long requestId = queryRequest.getRequestId();
     String brokerId = queryRequest.getBrokerId();
 
-    byte[] responseBytes = null;
+    ByteBuf responseBytes = null;
     try {
-      responseBytes = instanceResponse.toDataTable().toBytes();
+      responseBytes = instanceResponse.toDataTable().toByteBuf();
     } catch (Exception e) {
       // First check terminate exception and use it as the response if exists. We want to return the termination reason
       // when query is explicitly terminated.
@@ -228,7 +229,7 @@ public abstract class QueryScheduler {
         errorResponse.addMetadata(MetadataKey.QUERY_ID.getName(), queryRequest.getCid());
         String workloadName = QueryOptionsUtils.getWorkloadName(queryRequest.getQueryContext().getQueryOptions());
         errorResponse.addMetadata(MetadataKey.WORKLOAD_NAME.getName(), workloadName);
-        responseBytes = errorResponse.toDataTable().toBytes();
+        responseBytes = errorResponse.toDataTable().toByteBuf();
       } catch (Exception e1) {
         _serverMetrics.addMeteredGlobalValue(ServerMeter.RESPONSE_SERIALIZATION_EXCEPTIONS, 1);
         LOGGER.error("Caught exception while constructing error response for requestId: {}, brokerId: {}",
@@ -247,7 +248,8 @@ public abstract class QueryScheduler {
    * Error response future in case of internal error where query response is not available. This can happen if the
    * query can not be executed.
    */
-  protected ListenableFuture<byte[]> immediateErrorResponse(ServerQueryRequest queryRequest, QueryErrorCode errorCode) {
+  protected ListenableFuture<ByteBuf> immediateErrorResponse(ServerQueryRequest queryRequest,
+      QueryErrorCode errorCode) {
     Map<String, String> queryOptions = queryRequest.getQueryContext().getQueryOptions();
     String workloadName = QueryOptionsUtils.getWorkloadName(queryOptions);
     InstanceResponseBlock instanceResponse = new InstanceResponseBlock();
@@ -258,11 +260,11 @@ public abstract class QueryScheduler {
     return Futures.immediateFuture(serializeResponse(queryRequest, instanceResponse));
   }
 
-  protected ListenableFuture<byte[]> shuttingDown(ServerQueryRequest queryRequest) {
+  protected ListenableFuture<ByteBuf> shuttingDown(ServerQueryRequest queryRequest) {
     return immediateErrorResponse(queryRequest, QueryErrorCode.SERVER_SHUTTING_DOWN);
   }
 
-  protected ListenableFuture<byte[]> outOfCapacity(ServerQueryRequest queryRequest) {
+  protected ListenableFuture<ByteBuf> outOfCapacity(ServerQueryRequest queryRequest) {
     return immediateErrorResponse(queryRequest, QueryErrorCode.SERVER_OUT_OF_CAPACITY);
   }
 }
@@ -20,6 +20,7 @@ package org.apache.pinot.core.query.scheduler;
 
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListenableFutureTask;
+import io.netty.buffer.ByteBuf;
 import java.util.concurrent.atomic.LongAccumulator;
 import org.apache.pinot.common.metrics.ServerMeter;
 import org.apache.pinot.common.metrics.ServerQueryPhase;
@@ -67,7 +68,7 @@ public class WorkloadScheduler extends QueryScheduler {
   }
 
   @Override
-  public ListenableFuture<byte[]> submit(ServerQueryRequest queryRequest) {
+  public ListenableFuture<ByteBuf> submit(ServerQueryRequest queryRequest) {
     if (!_isRunning) {
       return shuttingDown(queryRequest);
     }
@@ -90,7 +91,7 @@ public class WorkloadScheduler extends QueryScheduler {
     }
     queryRequest.getTimerContext().startNewPhaseTimer(ServerQueryPhase.SCHEDULER_WAIT);
     QueryExecutorService executorService = _resourceManager.getExecutorService(queryRequest, null);
-    ListenableFutureTask<byte[]> queryTask = createQueryFutureTask(queryRequest, executorService);
+    ListenableFutureTask<ByteBuf> queryTask = createQueryFutureTask(queryRequest, executorService);
     _resourceManager.getQueryRunners().submit(queryTask);
     return queryTask;
   }
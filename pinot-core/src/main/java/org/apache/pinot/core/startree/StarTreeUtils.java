@@ -40,6 +40,7 @@ import org.apache.pinot.core.query.aggregation.function.AggregationFunctionUtils
 import org.apache.pinot.core.query.request.context.QueryContext;
 import org.apache.pinot.core.startree.plan.StarTreeProjectPlanNode;
 import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.MutableSegment;
 import org.apache.pinot.segment.spi.datasource.DataSource;
 import org.apache.pinot.segment.spi.index.reader.Dictionary;
 import org.apache.pinot.segment.spi.index.startree.AggregationFunctionColumnPair;
@@ -361,8 +362,13 @@ public class StarTreeUtils {
   public static BaseProjectOperator<?> createStarTreeBasedProjectOperator(IndexSegment indexSegment,
       QueryContext queryContext, AggregationFunction[] aggregationFunctions, @Nullable FilterContext filter,
       List<Pair<Predicate, PredicateEvaluator>> predicateEvaluators) {
-    List<StarTreeV2> starTrees = indexSegment.getStarTrees();
-    if (starTrees == null || queryContext.isSkipStarTree()) {
+    if (queryContext.isSkipStarTree()) {
+      return null;
+    }
+    List<StarTreeV2> starTrees = indexSegment instanceof MutableSegment
+        ? ((MutableSegment) indexSegment).getStarTrees(queryContext.isAllowStaleConsumingSegmentStarTree())
+        : indexSegment.getStarTrees();
+    if (starTrees == null) {
       return null;
     }
 
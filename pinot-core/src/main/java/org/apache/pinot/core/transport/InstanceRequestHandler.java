@@ -25,7 +25,6 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
@@ -157,7 +156,7 @@ public class InstanceRequestHandler extends SimpleChannelInboundHandler<ByteBuf>
   void submitQuery(ServerQueryRequest queryRequest, ChannelHandlerContext ctx, long queryArrivalTimeMs) {
     QueryExecutionContext executionContext = queryRequest.toExecutionContext(_instanceName);
     try (QueryThreadContext ignore = QueryThreadContext.open(executionContext, _threadAccountant)) {
-      ListenableFuture<byte[]> future = _queryScheduler.submit(queryRequest);
+      ListenableFuture<ByteBuf> future = _queryScheduler.submit(queryRequest);
       if (_executionContexts != null) {
         String queryId = queryRequest.getQueryId();
         // Track the running query for cancellation.
@@ -171,11 +170,11 @@ public class InstanceRequestHandler extends SimpleChannelInboundHandler<ByteBuf>
     }
   }
 
-  private FutureCallback<byte[]> createCallback(ServerQueryRequest queryRequest, ChannelHandlerContext ctx,
+  private FutureCallback<ByteBuf> createCallback(ServerQueryRequest queryRequest, ChannelHandlerContext ctx,
       long queryArrivalTimeMs) {
     return new FutureCallback<>() {
       @Override
-      public void onSuccess(@Nullable byte[] responseBytes) {
+      public void onSuccess(@Nullable ByteBuf responseBytes) {
         if (_executionContexts != null) {
           String queryId = queryRequest.getQueryId();
           if (LOGGER.isDebugEnabled()) {
@@ -281,7 +280,7 @@ public class InstanceRequestHandler extends SimpleChannelInboundHandler<ByteBuf>
         dataTable.addException(QueryErrorCode.QUERY_EXECUTION.getId(),
             "Query execution error on: " + _instanceName + " " + e.getMessage());
       }
-      byte[] serializedDataTable = dataTable.toBytes();
+      ByteBuf serializedDataTable = dataTable.toByteBuf();
       sendResponse(ctx, requestId, tableNameWithType, queryArrivalTimeMs, serializedDataTable);
     } catch (Exception exception) {
       LOGGER.error("Exception while sending query processing error to Broker.", exception);
@@ -298,15 +297,17 @@ public class InstanceRequestHandler extends SimpleChannelInboundHandler<ByteBuf>
    * Send a response (either query results or exception) back to broker as response to the query request.
    */
   private void sendResponse(ChannelHandlerContext ctx, long requestId, String tableNameWithType,
-      long queryArrivalTimeMs, byte[] serializedDataTable) {
+      long queryArrivalTimeMs, ByteBuf serializedDataTable) {
     long sendResponseStartTimeMs = System.currentTimeMillis();
     int queryProcessingTimeMs = (int) (sendResponseStartTimeMs - queryArrivalTimeMs);
-    ctx.writeAndFlush(Unpooled.wrappedBuffer(serializedDataTable)).addListener(f -> {
+    // Read the size before writing as the buffer is consumed and released by the channel
+    int responseSizeBytes = serializedDataTable.readableBytes();
+    ctx.writeAndFlush(serializedDataTable).addListener(f -> {
       if (f.isSuccess()) {
         long sendResponseEndTimeMs = System.currentTimeMillis();
         int sendResponseLatencyMs = (int) (sendResponseEndTimeMs - sendResponseStartTimeMs);
         _serverMetrics.addMeteredGlobalValue(ServerMeter.NETTY_CONNECTION_RESPONSES_SENT, 1);
-        _serverMetrics.addMeteredGlobalValue(ServerMeter.NETTY_CONNECTION_BYTES_SENT, serializedDataTable.length);
+        _serverMetrics.addMeteredGlobalValue(ServerMeter.NETTY_CONNECTION_BYTES_SENT, responseSizeBytes);
         _serverMetrics.addTimedTableValue(tableNameWithType, ServerTimer.NETTY_CONNECTION_SEND_RESPONSE_LATENCY,
             sendResponseLatencyMs, TimeUnit.MILLISECONDS);
 
@@ -316,9 +317,9 @@ public class InstanceRequestHandler extends SimpleChannelInboundHandler<ByteBuf>
               "Slow query ({}): request handler processing time: {}, send response latency: {}, total time to handle "
                   + "request: {}", requestId, queryProcessingTimeMs, sendResponseLatencyMs, totalQueryTimeMs);
         }
-        if (serializedDataTable.length > LARGE_RESPONSE_SIZE_THRESHOLD_BYTES) {
+        if (responseSizeBytes > LARGE_RESPONSE_SIZE_THRESHOLD_BYTES) {
           LOGGER.warn("Large query ({}): response size in bytes: {}, table name {}", requestId,
-              serializedDataTable.length, tableNameWithType);
+              responseSizeBytes, tableNameWithType);
           _serverMetrics.addMeteredTableValue(tableNameWithType, ServerMeter.LARGE_QUERY_RESPONSES_SENT, 1);
         }
       } else {
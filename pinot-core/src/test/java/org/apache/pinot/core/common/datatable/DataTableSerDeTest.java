@@ -18,6 +18,9 @@
  */
 package org.apache.pinot.core.common.datatable;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.Arrays;
@@ -302,6 +305,70 @@ public class DataTableSerDeTest {
     Assert.assertNull(newDataTable.getMetadata().get(MetadataKey.RESPONSE_SER_MEM_ALLOCATED_BYTES.getName()));
   }
 
+  @Test(dataProvider = "versionProvider")
+  public void testSerializationMemoryCoversSerializedBytes(int dataTableVersion)
+      throws IOException {
+    DataTableBuilderFactory.setDataTableVersion(dataTableVersion);
+    DataSchema.ColumnDataType[] columnDataTypes = DataSchema.ColumnDataType.values();
+    int numColumns = columnDataTypes.length;
+    String[] columnNames = new String[numColumns];
+    for (int i = 0; i < numColumns; i++) {
+      columnNames[i] = columnDataTypes[i].name();
+    }
+
+    DataSchema dataSchema = new DataSchema(columnNames, columnDataTypes);
+    DataTableBuilder dataTableBuilder = DataTableBuilderFactory.getDataTableBuilder(dataSchema);
+    fillDataTableWithRandomData(dataTableBuilder, columnDataTypes, numColumns);
+
+    ThreadResourceUsageProvider.setThreadMemoryMeasurementEnabled(true);
+    try {
+      DataTable dataTable = dataTableBuilder.build();
+      byte[] bytes = dataTable.toBytes();
+      DataTable newDataTable = DataTableFactory.getDataTable(bytes);
+      // The serialization memory should cover the serialized bytes
+      Assert.assertTrue(
+          Long.parseLong(newDataTable.getMetadata().get(MetadataKey.RESPONSE_SER_MEM_ALLOCATED_BYTES.getName()))
+              >= bytes.length);
+    } finally {
+      ThreadResourceUsageProvider.setThreadMemoryMeasurementEnabled(false);
+    }
+  }
+
+  @Test(dataProvider = "versionProvider")
+  public void testToByteBuf(int dataTableVersion)
+      throws IOException {
+    DataTableBuilderFactory.setDataTableVersion(dataTableVersion);
+    DataSchema.ColumnDataType[] columnDataTypes = DataSchema.ColumnDataType.values();
+    int numColumns = columnDataTypes.length;
+    String[] columnNames = new String[numColumns];
+    for (int i = 0; i < numColumns; i++) {
+      columnNames[i] = columnDataTypes[i].name();
+    }
+
+    DataSchema dataSchema = new DataSchema(columnNames, columnDataTypes);
+    DataTableBuilder dataTableBuilder = DataTableBuilderFactory.getDataTableBuilder(dataSchema);
+    fillDataTableWithRandomData(dataTableBuilder, columnDataTypes, numColumns);
+
+    // Disable the measurements so that both serializations have the same metadata
+    ThreadResourceUsageProvider.setThreadCpuTimeMeasurementEnabled(false);
+    ThreadResourceUsageProvider.setThreadMemoryMeasurementEnabled(false);
+    DataTable dataTable = dataTableBuilder.build();
+    dataTable.addException(QueryErrorCode.QUERY_EXECUTION, "test");
+    dataTable.getMetadata().put(MetadataKey.NUM_DOCS_SCANNED.getName(), "10");
+    byte[] bytes = dataTable.toBytes();
+    ByteBuf byteBuf = dataTable.toByteBuf();
+    // The sections should be wrapped without being copied into a single array
+    Assert.assertTrue(byteBuf instanceof CompositeByteBuf);
+    Assert.assertEquals(ByteBufUtil.getBytes(byteBuf), bytes, ERROR_MESSAGE);
+
+    DataTable newDataTable = DataTableFactory.getDataTable(byteBuf.nioBuffer());
+    Assert.assertEquals(newDataTable.getDataSchema(), dataSchema, ERROR_MESSAGE);
+    Assert.assertEquals(newDataTable.getNumberOfRows(), NUM_ROWS, ERROR_MESSAGE);
+    Assert.assertEquals(newDataTable.getExceptions().get(QueryErrorCode.QUERY_EXECUTION.getId()), "test");
+    Assert.assertEquals(newDataTable.getMetadata().get(MetadataKey.NUM_DOCS_SCANNED.getName()), "10");
+    verifyDataIsSame(newDataTable, columnDataTypes, numColumns);
+  }
+
   private void fillDataTableWithRandomData(DataTableBuilder dataTableBuilder,
       DataSchema.ColumnDataType[] columnDataTypes, int numColumns)
       throws IOException {
@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.data.manager.realtime;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.pinot.core.data.manager.realtime.PipelinedStreamMessageProcessor.ProcessedStreamMessage;
+import org.apache.pinot.segment.local.segment.creator.TransformPipeline;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.recordtransformer.RecordTransformer;
+import org.apache.pinot.spi.stream.MessageBatch;
+import org.apache.pinot.spi.stream.StreamDataDecoder;
+import org.apache.pinot.spi.stream.StreamDataDecoderResult;
+import org.apache.pinot.spi.stream.StreamMessage;
+import org.apache.pinot.spi.stream.StreamMessageMetadata;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+
+public class PipelinedStreamMessageProcessorTest {
+  private static final String VALUE_COLUMN = "value";
+  private static final String DOUBLED_VALUE_COLUMN = "doubledValue";
+  private static final int DECODE_ERROR_VALUE = 42;
+  private static final int TRANSFORM_ERROR_VALUE = 13;
+
+  @Test
+  public void testProcessMessageBatches()
+      throws Exception {
+    int numThreads = 3;
+    List<StreamDataDecoder> decoders = new ArrayList<>(numThreads);
+    List<TransformPipeline> transformPipelines = new ArrayList<>(numThreads);
+    for (int i = 0; i < numThreads; i++) {
+      decoders.add(PipelinedStreamMessageProcessorTest::decode);
+      transformPipelines.add(new TransformPipeline("testTable_REALTIME", List.of(new DoubleValueTransformer())));
+    }
+    try (PipelinedStreamMessageProcessor processor = new PipelinedStreamMessageProcessor("testSegment", decoders,
+        transformPipelines)) {
+      assertEquals(processor.getNumWorkers(), numThreads);
+
+      // Fully processed batches, including batches smaller than the number of threads
+      for (int numMessages : new int[]{100, 1, 2, 0, 101}) {
+        MessageBatch<?> messageBatch = createMessageBatch(numMessages);
+        processor.submit(messageBatch);
+        for (int i = 0; i < numMessages; i++) {
+          verifyProcessedMessage(processor.getProcessedMessage(i), i);
+        }
+        processor.finish();
+      }
+
+      // Batch finished early, and the next batch should not be affected
+      processor.submit(createMessageBatch(1000));
+      for (int i = 0; i < 10; i++) {
+        verifyProcessedMessage(processor.getProcessedMessage(i), i);
+      }
+      processor.finish();
+      processor.submit(createMessageBatch(50));
+      for (int i = 0; i < 50; i++) {
+        verifyProcessedMessage(processor.getProcessedMessage(i), i);
+      }
+
+      // Batch submitted without finishing the previous one
+      processor.submit(createMessageBatch(20));
+      for (int i = 0; i < 20; i++) {
+        verifyProcessedMessage(processor.getProcessedMessage(i), i);
+      }
+      processor.finish();
+    }
+  }
+
+  private static void verifyProcessedMessage(ProcessedStreamMessage processedMessage, int value) {
+    assertNotNull(processedMessage);
+    StreamDataDecoderResult decodeResult = processedMessage.getDecodeResult();
+    if (value == DECODE_ERROR_VALUE) {
+      assertNotNull(decodeResult.getException());
+      assertNull(processedMessage.getTransformResult());
+      assertNull(processedMessage.getTransformException());
+      return;
+    }
+    assertNull(decodeResult.getException());
+    if (value == TRANSFORM_ERROR_VALUE) {
+      assertNull(processedMessage.getTransformResult());
+      assertNotNull(processedMessage.getTransformException());
+      return;
+    }
+    TransformPipeline.Result transformResult = processedMessage.getTransformResult();
+    assertNotNull(transformResult);
+    List<GenericRow> rows = transformResult.getTransformedRows();
+    assertEquals(rows.size(), 1);
+    assertEquals(rows.get(0).getValue(VALUE_COLUMN), value);
+    assertEquals(rows.get(0).getValue(DOUBLED_VALUE_COLUMN), value * 2);
+  }
+
+  private static MessageBatch<?> createMessageBatch(int numMessages) {
+    @SuppressWarnings("unchecked")
+    MessageBatch<Integer> messageBatch = mock(MessageBatch.class);
+    when(messageBatch.getMessageCount()).thenReturn(numMessages);
+    for (int i = 0; i < numMessages; i++) {
+      when(messageBatch.getStreamMessage(i)).thenReturn(
+          new StreamMessage<>(null, i, Integer.BYTES, mock(StreamMessageMetadata.class)));
+    }
+    return messageBatch;
+  }
+
+  private static StreamDataDecoderResult decode(StreamMessage message) {
+    int value = (Integer) message.getValue();
+    if (value == DECODE_ERROR_VALUE) {
+      return new StreamDataDecoderResult(null, new IllegalStateException("Failed to decode: " + value));
+    }
+    GenericRow row = new GenericRow();
+    row.putValue(VALUE_COLUMN, value);
+    return new StreamDataDecoderResult(row, null);
+  }
+
+  private static class DoubleValueTransformer implements RecordTransformer {
+    @Override
+    public void transform(GenericRow record) {
+      int value = (Integer) record.getValue(VALUE_COLUMN);
+      if (value == TRANSFORM_ERROR_VALUE) {
+        throw new IllegalStateException("Failed to transform: " + value);
+      }
+      record.putValue(DOUBLED_VALUE_COLUMN, value * 2);
+    }
+  }
+}
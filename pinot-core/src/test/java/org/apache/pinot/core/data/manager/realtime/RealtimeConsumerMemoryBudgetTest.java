@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.data.manager.realtime;
+
+import java.util.Map;
+import org.apache.pinot.common.utils.LLCSegmentName;
+import org.apache.pinot.segment.local.realtime.impl.RealtimeSegmentStatsHistory;
+import org.apache.pinot.spi.env.PinotConfiguration;
+import org.apache.pinot.spi.utils.CommonConstants;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+
+public class RealtimeConsumerMemoryBudgetTest {
+
+  @Test
+  public void testMaxRowCount() {
+    RealtimeSegmentStatsHistory statsHistory = mock(RealtimeSegmentStatsHistory.class);
+    when(statsHistory.getEstimatedMemoryBytesPerRow()).thenReturn(100L);
+    RealtimeConsumerMemoryBudget memoryBudget = new RealtimeConsumerMemoryBudget();
+
+    // No budget configured
+    memoryBudget.register("segment0");
+    assertEquals(memoryBudget.getMaxRowCount(1_000_000, statsHistory), 1_000_000);
+
+    // Budget shared by all the consuming segments
+    memoryBudget.init(new PinotConfiguration(
+        Map.of(CommonConstants.Server.CONFIG_OF_SERVER_CONSUMPTION_MEMORY_BUDGET_BYTES, "100000000")));
+    assertEquals(memoryBudget.getBudgetBytes(), 100_000_000L);
+    assertEquals(memoryBudget.getMaxRowCount(10_000_000, statsHistory), 1_000_000);
+    memoryBudget.register("segment1");
+    // Registering the same segment again should not change the result
+    memoryBudget.register("segment1");
+    assertEquals(memoryBudget.getNumConsumingSegments(), 2);
+    assertEquals(memoryBudget.getMaxRowCount(10_000_000, statsHistory), 500_000);
+
+    // Should not exceed the given row threshold
+    assertEquals(memoryBudget.getMaxRowCount(100_000, statsHistory), 100_000);
+
+    // Should not go below the min rows per segment
+    when(statsHistory.getEstimatedMemoryBytesPerRow()).thenReturn(1_000_000L);
+    assertEquals(memoryBudget.getMaxRowCount(10_000_000, statsHistory),
+        RealtimeConsumerMemoryBudget.MIN_ROWS_PER_SEGMENT);
+
+    // No prior statistics
+    when(statsHistory.getEstimatedMemoryBytesPerRow()).thenReturn(-1L);
+    assertEquals(memoryBudget.getMaxRowCount(10_000_000, statsHistory), 10_000_000);
+
+    when(statsHistory.getEstimatedMemoryBytesPerRow()).thenReturn(100L);
+    memoryBudget.unregister("segment0");
+    memoryBudget.unregister("segment1");
+    assertEquals(memoryBudget.getNumConsumingSegments(), 0);
+    assertEquals(memoryBudget.getMaxRowCount(10_000_000, statsHistory), 1_000_000);
+  }
+
+  @Test
+  public void testBudgetSharedByExpectedConsumingPartitions() {
+    RealtimeSegmentStatsHistory statsHistory = mock(RealtimeSegmentStatsHistory.class);
+    when(statsHistory.getEstimatedMemoryBytesPerRow()).thenReturn(100L);
+    RealtimeConsumerMemoryBudget memoryBudget = new RealtimeConsumerMemoryBudget();
+    memoryBudget.init(new PinotConfiguration(
+        Map.of(CommonConstants.Server.CONFIG_OF_SERVER_CONSUMPTION_MEMORY_BUDGET_BYTES, "100000000")));
+    String tableName = "myTable_REALTIME";
+    memoryBudget.setNumConsumingPartitions(tableName, 4);
+
+    // The segments registered first should not take more than their share of the budget
+    for (int partitionId = 0; partitionId < 4; partitionId++) {
+      String segmentName = new LLCSegmentName("myTable", partitionId, 0, 1_700_000_000_000L).getSegmentName();
+      memoryBudget.register(segmentName);
+      assertEquals(memoryBudget.getNumConsumingSegments(), partitionId + 1);
+      assertEquals(memoryBudget.getExpectedNumConsumingPartitions(), 4);
+      assertEquals(memoryBudget.getMaxRowCount(10_000_000, statsHistory), 250_000);
+    }
+
+    // The committing segment and the next consuming segment of the same partition should be counted once
+    memoryBudget.register(new LLCSegmentName("myTable", 0, 1, 1_700_000_100_000L).getSegmentName());
+    assertEquals(memoryBudget.getNumConsumingSegments(), 5);
+    assertEquals(memoryBudget.getExpectedNumConsumingPartitions(), 4);
+    assertEquals(memoryBudget.getMaxRowCount(10_000_000, statsHistory), 250_000);
+
+    // More partitions consuming than assigned in the ideal state
+    memoryBudget.register(new LLCSegmentName("myTable", 4, 0, 1_700_000_000_000L).getSegmentName());
+    assertEquals(memoryBudget.getExpectedNumConsumingPartitions(), 5);
+    assertEquals(memoryBudget.getMaxRowCount(10_000_000, statsHistory), 200_000);
+
+    // Partitions of multiple tables share the budget
+    memoryBudget.setNumConsumingPartitions("otherTable_REALTIME", 5);
+    memoryBudget.setNumConsumingPartitions(tableName, 5);
+    assertEquals(memoryBudget.getExpectedNumConsumingPartitions(), 10);
+    assertEquals(memoryBudget.getMaxRowCount(10_000_000, statsHistory), 100_000);
+
+    // Configured expected number of consuming partitions reserves the budget for the tables not loaded yet
+    memoryBudget.init(new PinotConfiguration(
+        Map.of(CommonConstants.Server.CONFIG_OF_SERVER_CONSUMPTION_MEMORY_BUDGET_BYTES, "100000000",
+            CommonConstants.Server.CONFIG_OF_SERVER_CONSUMPTION_MEMORY_BUDGET_EXPECTED_CONSUMING_PARTITIONS, "20")));
+    assertEquals(memoryBudget.getExpectedNumConsumingPartitions(), 20);
+    assertEquals(memoryBudget.getMaxRowCount(10_000_000, statsHistory), 50_000);
+
+    memoryBudget.removeTable("otherTable_REALTIME");
+    memoryBudget.init(new PinotConfiguration(
+        Map.of(CommonConstants.Server.CONFIG_OF_SERVER_CONSUMPTION_MEMORY_BUDGET_BYTES, "100000000")));
+    assertEquals(memoryBudget.getExpectedNumConsumingPartitions(), 5);
+    assertEquals(memoryBudget.getMaxRowCount(10_000_000, statsHistory), 200_000);
+  }
+}
@@ -0,0 +1,242 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.operator.filter.predicate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
+import java.util.stream.IntStream;
+import org.apache.pinot.common.request.context.ExpressionContext;
+import org.apache.pinot.common.request.context.predicate.EqPredicate;
+import org.apache.pinot.common.request.context.predicate.InPredicate;
+import org.apache.pinot.common.request.context.predicate.RangePredicate;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.testng.annotations.Test;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+
+/**
+ * Unit test for the batch applySV methods of the EQ, IN and RANGE predicate evaluators, which compact the docIds of
+ * the matching values into the prefix of the docIds array. Each evaluator is tested with mixed matches, all matches,
+ * no matches and the edge values of the data type, on the full batch and on a prefix of it.
+ */
+public class BatchApplySVPredicateEvaluatorTest {
+  private static final ExpressionContext COLUMN_EXPRESSION = ExpressionContext.forIdentifier("column");
+  private static final int DICT_LEN = 10;
+  private static final int NUM_VALUES = 1000;
+  private final Random _random = new Random();
+
+  @Test
+  public void testDictionaryBasedEvaluators() {
+    Dictionary dictionary = mock(Dictionary.class);
+    when(dictionary.length()).thenReturn(DICT_LEN);
+    when(dictionary.indexOf(anyString())).thenAnswer(invocation -> getDictId(
+        Integer.parseInt(invocation.getArgument(0))));
+    when(dictionary.indexOf(anyInt())).thenAnswer(invocation -> getDictId(invocation.getArgument(0)));
+
+    PredicateEvaluator eqEvaluator = EqualsPredicateEvaluatorFactory.newDictionaryBasedEvaluator(
+        new EqPredicate(COLUMN_EXPRESSION, "3"), dictionary, DataType.INT);
+    assertBatchApplySV(eqEvaluator, new int[]{3, 0, 2, 4, 9}, dictId -> dictId == 3);
+
+    PredicateEvaluator inEvaluator = InPredicateEvaluatorFactory.newDictionaryBasedEvaluator(
+        new InPredicate(COLUMN_EXPRESSION, List.of("1", "3", "8", "42")), dictionary, DataType.INT, null);
+    assertBatchApplySV(inEvaluator, new int[]{1, 3, 8, 0, 2, 9},
+        dictId -> dictId == 1 || dictId == 3 || dictId == 8);
+
+    Dictionary sortedDictionary = mock(Dictionary.class);
+    when(sortedDictionary.isSorted()).thenReturn(true);
+    when(sortedDictionary.length()).thenReturn(DICT_LEN);
+    when(sortedDictionary.insertionIndexOf("lower")).thenReturn(2);
+    when(sortedDictionary.insertionIndexOf("upper")).thenReturn(5);
+    PredicateEvaluator rangeEvaluator = RangePredicateEvaluatorFactory.newDictionaryBasedEvaluator(
+        new RangePredicate(COLUMN_EXPRESSION, true, "lower", true, "upper", DataType.STRING), sortedDictionary,
+        DataType.INT);
+    assertBatchApplySV(rangeEvaluator, new int[]{2, 5, 3, 1, 6, 0, 9}, dictId -> dictId >= 2 && dictId <= 5);
+  }
+
+  @Test
+  public void testIntRawValueBasedEvaluators() {
+    PredicateEvaluator eqEvaluator =
+        EqualsPredicateEvaluatorFactory.newRawValueBasedEvaluator(new EqPredicate(COLUMN_EXPRESSION, "42"),
+            DataType.INT);
+    assertBatchApplySV(eqEvaluator, new int[]{42, 41, 43, -42, 0, Integer.MIN_VALUE, Integer.MAX_VALUE},
+        value -> value == 42);
+
+    PredicateEvaluator inEvaluator = InPredicateEvaluatorFactory.newRawValueBasedEvaluator(
+        new InPredicate(COLUMN_EXPRESSION, List.of("1", "42", Integer.toString(Integer.MIN_VALUE))), DataType.INT);
+    assertBatchApplySV(inEvaluator, new int[]{1, 42, Integer.MIN_VALUE, 0, 2, -1, Integer.MAX_VALUE},
+        value -> value == 1 || value == 42 || value == Integer.MIN_VALUE);
+
+    PredicateEvaluator rangeEvaluator = RangePredicateEvaluatorFactory.newRawValueBasedEvaluator(
+        new RangePredicate(COLUMN_EXPRESSION, false, "10", true, "20", DataType.INT), DataType.INT);
+    assertBatchApplySV(rangeEvaluator, new int[]{11, 20, 15, 10, 21, Integer.MIN_VALUE, Integer.MAX_VALUE},
+        value -> value > 10 && value <= 20);
+
+    PredicateEvaluator unboundedRangeEvaluator = RangePredicateEvaluatorFactory.newRawValueBasedEvaluator(
+        new RangePredicate(COLUMN_EXPRESSION, true, RangePredicate.UNBOUNDED, false, "0", DataType.INT),
+        DataType.INT);
+    assertBatchApplySV(unboundedRangeEvaluator, new int[]{Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE},
+        value -> value < 0);
+  }
+
+  @Test
+  public void testLongRawValueBasedEvaluators() {
+    PredicateEvaluator eqEvaluator =
+        EqualsPredicateEvaluatorFactory.newRawValueBasedEvaluator(new EqPredicate(COLUMN_EXPRESSION, "42"),
+            DataType.LONG);
+    assertBatchApplySV(eqEvaluator, new long[]{42L, 41L, 43L, 42L + (1L << 32), Long.MIN_VALUE, Long.MAX_VALUE},
+        value -> value == 42L);
+
+    PredicateEvaluator inEvaluator = InPredicateEvaluatorFactory.newRawValueBasedEvaluator(
+        new InPredicate(COLUMN_EXPRESSION, List.of("42", Long.toString(Long.MAX_VALUE))), DataType.LONG);
+    assertBatchApplySV(inEvaluator, new long[]{42L, Long.MAX_VALUE, 0L, -42L, Long.MIN_VALUE},
+        value -> value == 42L || value == Long.MAX_VALUE);
+
+    PredicateEvaluator rangeEvaluator = RangePredicateEvaluatorFactory.newRawValueBasedEvaluator(
+        new RangePredicate(COLUMN_EXPRESSION, true, "-5", false, "5", DataType.LONG), DataType.LONG);
+    assertBatchApplySV(rangeEvaluator, new long[]{-5L, 4L, 0L, 5L, -6L, Long.MIN_VALUE, Long.MAX_VALUE},
+        value -> value >= -5L && value < 5L);
+  }
+
+  @Test
+  public void testFloatRawValueBasedEvaluators() {
+    PredicateEvaluator eqEvaluator =
+        EqualsPredicateEvaluatorFactory.newRawValueBasedEvaluator(new EqPredicate(COLUMN_EXPRESSION, "1.5"),
+            DataType.FLOAT);
+    assertBatchApplySV(eqEvaluator, new float[]{1.5f, -1.5f, Math.nextUp(1.5f), Float.NaN, Float.POSITIVE_INFINITY},
+        value -> value == 1.5);
+
+    PredicateEvaluator inEvaluator = InPredicateEvaluatorFactory.newRawValueBasedEvaluator(
+        new InPredicate(COLUMN_EXPRESSION, List.of("1.5", "-2.5")), DataType.FLOAT);
+    assertBatchApplySV(inEvaluator, new float[]{1.5f, -2.5f, 2.5f, Float.MIN_VALUE, Float.NEGATIVE_INFINITY},
+        value -> value == 1.5 || value == -2.5);
+
+    PredicateEvaluator rangeEvaluator = RangePredicateEvaluatorFactory.newRawValueBasedEvaluator(
+        new RangePredicate(COLUMN_EXPRESSION, false, "0", true, RangePredicate.UNBOUNDED, DataType.FLOAT),
+        DataType.FLOAT);
+    assertBatchApplySV(rangeEvaluator,
+        new float[]{Float.MIN_VALUE, 1.5f, Float.POSITIVE_INFINITY, 0f, -0f, -1.5f, Float.NaN},
+        value -> value > 0);
+  }
+
+  @Test
+  public void testDoubleRawValueBasedEvaluators() {
+    PredicateEvaluator eqEvaluator =
+        EqualsPredicateEvaluatorFactory.newRawValueBasedEvaluator(new EqPredicate(COLUMN_EXPRESSION, "1.5"),
+            DataType.DOUBLE);
+    assertBatchApplySV(eqEvaluator, new double[]{1.5, -1.5, Math.nextUp(1.5), Double.NaN, Double.POSITIVE_INFINITY},
+        value -> value == 1.5);
+
+    PredicateEvaluator inEvaluator = InPredicateEvaluatorFactory.newRawValueBasedEvaluator(
+        new InPredicate(COLUMN_EXPRESSION, List.of("1.5", "-2.5")), DataType.DOUBLE);
+    assertBatchApplySV(inEvaluator, new double[]{1.5, -2.5, 2.5, Double.MIN_VALUE, Double.NEGATIVE_INFINITY},
+        value -> value == 1.5 || value == -2.5);
+
+    PredicateEvaluator rangeEvaluator = RangePredicateEvaluatorFactory.newRawValueBasedEvaluator(
+        new RangePredicate(COLUMN_EXPRESSION, true, "-1", true, "1", DataType.DOUBLE), DataType.DOUBLE);
+    assertBatchApplySV(rangeEvaluator, new double[]{-1, 1, 0, Math.nextDown(-1.0), Math.nextUp(1.0), Double.NaN},
+        value -> value >= -1 && value <= 1);
+  }
+
+  private static int getDictId(int value) {
+    return value >= 0 && value < DICT_LEN ? value : -1;
+  }
+
+  /**
+   * Tests the evaluator on inputs built from the candidate values, where the first candidate matches and the last one
+   * does not: the candidates cycled, random candidates, only the first candidate and only the last candidate.
+   */
+  private void assertBatchApplySV(PredicateEvaluator evaluator, int[] candidates, IntPredicate expectedMatch) {
+    for (int[] indexes : getCandidateIndexes(candidates.length)) {
+      int[] values = Arrays.stream(indexes).map(i -> candidates[i]).toArray();
+      assertBatchApplySV(i -> expectedMatch.test(values[i]),
+          (limit, docIds) -> evaluator.applySV(limit, docIds, values));
+    }
+  }
+
+  private void assertBatchApplySV(PredicateEvaluator evaluator, long[] candidates, LongPredicate expectedMatch) {
+    for (int[] indexes : getCandidateIndexes(candidates.length)) {
+      long[] values = Arrays.stream(indexes).mapToLong(i -> candidates[i]).toArray();
+      assertBatchApplySV(i -> expectedMatch.test(values[i]),
+          (limit, docIds) -> evaluator.applySV(limit, docIds, values));
+    }
+  }
+
+  private void assertBatchApplySV(PredicateEvaluator evaluator, float[] candidates, DoublePredicate expectedMatch) {
+    for (int[] indexes : getCandidateIndexes(candidates.length)) {
+      float[] values = new float[NUM_VALUES];
+      for (int i = 0; i < NUM_VALUES; i++) {
+        values[i] = candidates[indexes[i]];
+      }
+      assertBatchApplySV(i -> expectedMatch.test(values[i]),
+          (limit, docIds) -> evaluator.applySV(limit, docIds, values));
+    }
+  }
+
+  private void assertBatchApplySV(PredicateEvaluator evaluator, double[] candidates, DoublePredicate expectedMatch) {
+    for (int[] indexes : getCandidateIndexes(candidates.length)) {
+      double[] values = Arrays.stream(indexes).mapToDouble(i -> candidates[i]).toArray();
+      assertBatchApplySV(i -> expectedMatch.test(values[i]),
+          (limit, docIds) -> evaluator.applySV(limit, docIds, values));
+    }
+  }
+
+  private int[][] getCandidateIndexes(int numCandidates) {
+    int[] cycled = new int[NUM_VALUES];
+    int[] random = new int[NUM_VALUES];
+    int[] allFirst = new int[NUM_VALUES];
+    int[] allLast = new int[NUM_VALUES];
+    for (int i = 0; i < NUM_VALUES; i++) {
+      cycled[i] = i % numCandidates;
+      random[i] = _random.nextInt(numCandidates);
+      allLast[i] = numCandidates - 1;
+    }
+    return new int[][]{cycled, random, allFirst, allLast};
+  }
+
+  /**
+   * Checks the batch result against the expected matches on the full batch, on a prefix of it and on an empty batch.
+   */
+  private static void assertBatchApplySV(IntPredicate expectedMatchAtIndex, BatchApplySV batchApplySV) {
+    for (int limit : new int[]{NUM_VALUES, NUM_VALUES / 2 + 1, 1, 0}) {
+      int[] docIds = IntStream.range(0, NUM_VALUES).map(i -> 2 * i + 1).toArray();
+      int[] expectedDocIds = IntStream.range(0, limit).filter(expectedMatchAtIndex).map(i -> 2 * i + 1).toArray();
+      int numMatches = batchApplySV.apply(limit, docIds);
+      assertEquals(numMatches, expectedDocIds.length);
+      assertEquals(Arrays.copyOf(docIds, numMatches), expectedDocIds);
+      // The docIds beyond the limit should not be modified
+      for (int i = limit; i < NUM_VALUES; i++) {
+        assertEquals(docIds[i], 2 * i + 1);
+      }
+    }
+  }
+
+  private interface BatchApplySV {
+    int apply(int limit, int[] docIds);
+  }
+}
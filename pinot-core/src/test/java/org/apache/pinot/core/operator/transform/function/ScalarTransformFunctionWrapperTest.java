@@ -73,6 +73,19 @@ public class ScalarTransformFunctionWrapperTest extends BaseTransformFunctionTes
     testTransformFunction(transformFunction, expectedValues);
   }
 
+  @Test
+  public void testLiteralOnlyTransformFunction() {
+    ExpressionContext expression = RequestContextUtils.getExpression("upper('abc')");
+    TransformFunction transformFunction = TransformFunctionFactory.get(expression, _dataSourceMap);
+    assertTrue(transformFunction instanceof ScalarTransformFunctionWrapper);
+    assertEquals(transformFunction.getName(), "upper");
+    String[] expectedValues = new String[NUM_ROWS];
+    Arrays.fill(expectedValues, "ABC");
+    testTransformFunction(transformFunction, expectedValues);
+    // Constant result should be reused across blocks
+    testTransformFunction(transformFunction, expectedValues);
+  }
+
   @Test
   public void testStringReverseTransformFunction() {
     ExpressionContext expression =
@@ -18,12 +18,24 @@
  */
 package org.apache.pinot.core.query.aggregation.function;
 
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.pinot.common.request.context.ExpressionContext;
+import org.apache.pinot.core.common.BlockValSet;
+import org.apache.pinot.core.query.aggregation.AggregationResultHolder;
 import org.apache.pinot.queries.FluentQueryTest;
 import org.apache.pinot.spi.data.FieldSpec;
 import org.apache.pinot.spi.data.Schema;
+import org.roaringbitmap.RoaringBitmap;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
 
 public class SumAggregationFunctionTest extends AbstractAggregationFunctionTest {
 
@@ -329,4 +341,59 @@ public class SumAggregationFunctionTest extends AbstractAggregationFunctionTest
         .whenQueryWithNullHandlingEnabled("select sum(mv1) from testTable group by mv2")
         .thenResultIs("DOUBLE", "3", "3");
   }
+
+  @Test
+  public void aggregateIntValuesWithLongAccumulator() {
+    // The values overflow an int accumulator, and the last value is outside of the aggregated length
+    int[] values = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, -1, Integer.MAX_VALUE,
+        Integer.MIN_VALUE, Integer.MAX_VALUE, 1, Integer.MAX_VALUE};
+    int length = values.length - 1;
+    long expectedSum = 0;
+    for (int i = 0; i < length; i++) {
+      expectedSum += values[i];
+    }
+
+    SumAggregationFunction function =
+        new SumAggregationFunction(List.of(ExpressionContext.forIdentifier("myField")), false);
+    AggregationResultHolder resultHolder = function.createAggregationResultHolder();
+    Map<ExpressionContext, BlockValSet> blockValSetMap = getIntBlockValSetMap(values, null);
+    function.aggregate(length, resultHolder, blockValSetMap);
+    assertEquals((double) function.extractAggregationResult(resultHolder), (double) expectedSum);
+    // Sum of the second block should be added to the sum of the first block
+    function.aggregate(length, resultHolder, blockValSetMap);
+    assertEquals((double) function.extractAggregationResult(resultHolder), 2.0 * expectedSum);
+    // Empty block should not change the sum
+    function.aggregate(0, resultHolder, blockValSetMap);
+    assertEquals((double) function.extractAggregationResult(resultHolder), 2.0 * expectedSum);
+  }
+
+  @Test
+  public void aggregateIntValuesWithLongAccumulatorAndNulls() {
+    int[] values = {Integer.MAX_VALUE, Integer.MAX_VALUE, 5, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE};
+    // Nulls split the block into multiple non-null ranges, including an empty range between the adjacent nulls
+    RoaringBitmap nullBitmap = RoaringBitmap.bitmapOf(2, 3, 5);
+    long expectedSum = (long) Integer.MAX_VALUE + Integer.MAX_VALUE + Integer.MIN_VALUE;
+
+    SumAggregationFunction function =
+        new SumAggregationFunction(List.of(ExpressionContext.forIdentifier("myField")), true);
+    AggregationResultHolder resultHolder = function.createAggregationResultHolder();
+    function.aggregate(values.length, resultHolder, getIntBlockValSetMap(values, nullBitmap));
+    assertEquals((double) function.extractAggregationResult(resultHolder), (double) expectedSum);
+
+    // All null block should not produce a sum
+    resultHolder = function.createAggregationResultHolder();
+    function.aggregate(values.length, resultHolder,
+        getIntBlockValSetMap(values, RoaringBitmap.bitmapOf(0, 1, 2, 3, 4, 5)));
+    assertNull(function.extractAggregationResult(resultHolder));
+  }
+
+  private static Map<ExpressionContext, BlockValSet> getIntBlockValSetMap(int[] values,
+      @Nullable RoaringBitmap nullBitmap) {
+    BlockValSet blockValSet = mock(BlockValSet.class);
+    when(blockValSet.isSingleValue()).thenReturn(true);
+    when(blockValSet.getValueType()).thenReturn(FieldSpec.DataType.INT);
+    when(blockValSet.getIntValuesSV()).thenReturn(values);
+    when(blockValSet.getNullBitmap()).thenReturn(nullBitmap);
+    return Map.of(ExpressionContext.forIdentifier("myField"), blockValSet);
+  }
 }
@@ -19,6 +19,7 @@
 package org.apache.pinot.core.query.scheduler;
 
 import com.google.common.util.concurrent.ListenableFuture;
+import io.netty.buffer.ByteBuf;
 import java.util.concurrent.atomic.LongAccumulator;
 import org.apache.pinot.core.query.executor.QueryExecutor;
 import org.apache.pinot.core.query.request.ServerQueryRequest;
@@ -81,7 +82,7 @@ public class QuerySchedulerFactoryTest {
     }
 
     @Override
-    public ListenableFuture<byte[]> submit(ServerQueryRequest queryRequest) {
+    public ListenableFuture<ByteBuf> submit(ServerQueryRequest queryRequest) {
       throw new UnsupportedOperationException();
     }
 
@@ -20,6 +20,7 @@ package org.apache.pinot.core.transport;
 
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListenableFutureTask;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.util.concurrent.Future;
@@ -149,9 +150,9 @@ public class InstanceRequestHandlerTest {
     return new QueryScheduler(config, "serverId", mock(QueryExecutor.class), ThreadAccountantUtils.getNoOpAccountant(),
         new LongAccumulator(Long::max, 0), resourceManager) {
       @Override
-      public ListenableFuture<byte[]> submit(ServerQueryRequest queryRequest) {
+      public ListenableFuture<ByteBuf> submit(ServerQueryRequest queryRequest) {
         // Create a FutureTask does nothing but waits to be cancelled and trigger callbacks.
-        ListenableFutureTask<byte[]> task = ListenableFutureTask.create(() -> {
+        ListenableFutureTask<ByteBuf> task = ListenableFutureTask.create(() -> {
           queryFinishLatch.await();
           return null;
         });
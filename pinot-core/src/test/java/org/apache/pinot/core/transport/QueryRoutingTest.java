@@ -19,6 +19,7 @@
 package org.apache.pinot.core.transport;
 
 import com.google.common.util.concurrent.Futures;
+import io.netty.buffer.Unpooled;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
@@ -110,7 +111,7 @@ public class QueryRoutingTest {
     QueryScheduler queryScheduler = mock(QueryScheduler.class);
     when(queryScheduler.submit(any())).thenAnswer(invocation -> {
       Thread.sleep(responseDelayMs);
-      return Futures.immediateFuture(responseBytes);
+      return Futures.immediateFuture(Unpooled.wrappedBuffer(responseBytes));
     });
     return queryScheduler;
   }
@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.queries;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.response.broker.BrokerResponseNative;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentLoader;
+import org.apache.pinot.segment.local.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import org.apache.pinot.segment.local.segment.readers.GenericRowRecordReader;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.creator.SegmentGeneratorConfig;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.utils.CommonConstants.Broker.Request.QueryOptionKey;
+import org.apache.pinot.spi.utils.ReadMode;
+import org.apache.pinot.spi.utils.builder.TableConfigBuilder;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+/**
+ * Queries test for splitting segments into morsels processed in parallel. The results with morsels should always match
+ * the results without morsels.
+ */
+public class MorselQueriesTest extends BaseQueriesTest {
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(), "MorselQueriesTest");
+  private static final String RAW_TABLE_NAME = "testTable";
+  private static final String SEGMENT_NAME = "testSegment";
+
+  private static final int NUM_RECORDS = 1000;
+  private static final int NUM_GROUPS = 10;
+  private static final String INT_COLUMN = "intColumn";
+  private static final String LONG_COLUMN = "longColumn";
+  private static final String STRING_COLUMN = "stringColumn";
+
+  private static final Schema SCHEMA = new Schema.SchemaBuilder().setSchemaName(RAW_TABLE_NAME)
+      .addSingleValueDimension(INT_COLUMN, DataType.INT)
+      .addMetric(LONG_COLUMN, DataType.LONG)
+      .addSingleValueDimension(STRING_COLUMN, DataType.STRING)
+      .build();
+  private static final TableConfig TABLE_CONFIG =
+      new TableConfigBuilder(TableType.OFFLINE).setTableName(RAW_TABLE_NAME).build();
+  // Split each of the 2 segments into 4 morsels
+  private static final Map<String, String> MORSEL_QUERY_OPTIONS =
+      Map.of(QueryOptionKey.MORSEL_MIN_DOCS, "100", QueryOptionKey.MAX_EXECUTION_THREADS, "8");
+
+  private IndexSegment _indexSegment;
+  private List<IndexSegment> _indexSegments;
+
+  @Override
+  protected String getFilter() {
+    return "";
+  }
+
+  @Override
+  protected IndexSegment getIndexSegment() {
+    return _indexSegment;
+  }
+
+  @Override
+  protected List<IndexSegment> getIndexSegments() {
+    return _indexSegments;
+  }
+
+  @BeforeClass
+  public void setUp()
+      throws Exception {
+    FileUtils.deleteQuietly(INDEX_DIR);
+
+    List<GenericRow> records = new ArrayList<>(NUM_RECORDS);
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      GenericRow record = new GenericRow();
+      record.putValue(INT_COLUMN, i);
+      record.putValue(LONG_COLUMN, (long) (NUM_RECORDS - i) * 3);
+      record.putValue(STRING_COLUMN, "group_" + i % NUM_GROUPS);
+      records.add(record);
+    }
+
+    SegmentGeneratorConfig segmentGeneratorConfig = new SegmentGeneratorConfig(TABLE_CONFIG, SCHEMA);
+    segmentGeneratorConfig.setTableName(RAW_TABLE_NAME);
+    segmentGeneratorConfig.setSegmentName(SEGMENT_NAME);
+    segmentGeneratorConfig.setOutDir(INDEX_DIR.getPath());
+
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(segmentGeneratorConfig, new GenericRowRecordReader(records));
+    driver.build();
+
+    ImmutableSegment immutableSegment = ImmutableSegmentLoader.load(new File(INDEX_DIR, SEGMENT_NAME), ReadMode.mmap);
+    _indexSegment = immutableSegment;
+    _indexSegments = Arrays.asList(immutableSegment, immutableSegment);
+  }
+
+  @Test
+  public void testAggregation() {
+    testQuery("SELECT COUNT(*), SUM(longColumn), AVG(intColumn), MIN(longColumn), DISTINCTCOUNT(stringColumn), "
+        + "DISTINCTCOUNTHLL(intColumn) FROM testTable WHERE longColumn > 1000");
+    // Only the first morsel of each segment is matched
+    testQuery("SELECT COUNT(*), SUM(longColumn) FROM testTable WHERE intColumn < 50");
+    testQuery("SELECT COUNT(*) FROM testTable WHERE intColumn > 5000");
+    testQuery("SELECT COUNT(*) FILTER(WHERE intColumn >= 300), SUM(longColumn) FILTER(WHERE longColumn < 600), "
+        + "MAX(intColumn) FROM testTable");
+  }
+
+  @Test
+  public void testNonScanBasedAggregation() {
+    // The aggregation is solved with column metadata, so the segments should not be split into morsels
+    String query = "SELECT MAX(intColumn), MIN(longColumn), COUNT(*) FROM testTable";
+    BrokerResponseNative expectedResponse = getBrokerResponse(query);
+    assertEquals(expectedResponse.getNumEntriesScannedPostFilter(), 0);
+    BrokerResponseNative actualResponse = getBrokerResponse(query, MORSEL_QUERY_OPTIONS);
+    validateResponse(actualResponse, expectedResponse);
+    assertEquals(actualResponse.getNumEntriesScannedPostFilter(), 0);
+  }
+
+  @Test
+  public void testGroupBy() {
+    testQuery("SELECT stringColumn, COUNT(*), SUM(longColumn), AVG(intColumn), DISTINCTCOUNT(intColumn) "
+        + "FROM testTable GROUP BY stringColumn ORDER BY stringColumn LIMIT 100");
+    testQuery("SELECT stringColumn, SUM(longColumn) FROM testTable WHERE longColumn > 1500 GROUP BY stringColumn "
+        + "ORDER BY SUM(longColumn) DESC LIMIT 5");
+    testQuery("SELECT intColumn % 7, MAX(longColumn) FROM testTable GROUP BY intColumn % 7 "
+        + "ORDER BY intColumn % 7 LIMIT 10");
+  }
+
+  @Test
+  public void testMorselDisabled() {
+    // Selection queries are not split
+    testQuery("SELECT intColumn, longColumn FROM testTable ORDER BY longColumn LIMIT 10");
+    // Too few docs to split
+    String query = "SELECT MAX(intColumn) FROM testTable";
+    BrokerResponseNative response = getBrokerResponse(query,
+        Map.of(QueryOptionKey.MORSEL_MIN_DOCS, Integer.toString(NUM_RECORDS), QueryOptionKey.MAX_EXECUTION_THREADS,
+            "8"));
+    assertEquals(response.getNumEntriesScannedPostFilter(), 0);
+    // Disabled with 0
+    response = getBrokerResponse(query,
+        Map.of(QueryOptionKey.MORSEL_MIN_DOCS, "0", QueryOptionKey.MAX_EXECUTION_THREADS, "8"));
+    assertEquals(response.getNumEntriesScannedPostFilter(), 0);
+  }
+
+  private void testQuery(String query) {
+    BrokerResponseNative expectedResponse = getBrokerResponse(query);
+    BrokerResponseNative actualResponse = getBrokerResponse(query, MORSEL_QUERY_OPTIONS);
+    validateResponse(actualResponse, expectedResponse);
+  }
+
+  private void validateResponse(BrokerResponseNative actual, BrokerResponseNative expected) {
+    assertTrue(actual.getExceptions().isEmpty(), actual.getExceptions().toString());
+    validateBeforeAfterQueryResults(expected.getResultTable().getRows(), actual.getResultTable().getRows());
+    assertEquals(actual.getNumDocsScanned(), expected.getNumDocsScanned());
+    assertEquals(actual.getTotalDocs(), expected.getTotalDocs());
+    assertEquals(actual.getNumSegmentsProcessed(), expected.getNumSegmentsProcessed());
+    assertEquals(actual.getNumSegmentsMatched(), expected.getNumSegmentsMatched());
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _indexSegment.destroy();
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+}
@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.queries;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.response.broker.BrokerResponseNative;
+import org.apache.pinot.core.plan.maker.InstancePlanMakerImplV2;
+import org.apache.pinot.core.query.cache.SegmentResultCache;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentLoader;
+import org.apache.pinot.segment.local.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import org.apache.pinot.segment.local.segment.readers.GenericRowRecordReader;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.creator.SegmentGeneratorConfig;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.utils.ReadMode;
+import org.apache.pinot.spi.utils.builder.TableConfigBuilder;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+
+/**
+ * Queries test for the segment result cache. The results with the cache enabled should always match the results
+ * without the cache, including the results served from the cache.
+ */
+public class SegmentResultCacheQueriesTest extends BaseQueriesTest {
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(), "SegmentResultCacheQueriesTest");
+  private static final String RAW_TABLE_NAME = "testTable";
+  private static final String SEGMENT_NAME = "testSegment";
+
+  private static final int NUM_RECORDS = 1000;
+  private static final int NUM_GROUPS = 10;
+  private static final String INT_COLUMN = "intColumn";
+  private static final String LONG_COLUMN = "longColumn";
+  private static final String STRING_COLUMN = "stringColumn";
+
+  private static final Schema SCHEMA = new Schema.SchemaBuilder().setSchemaName(RAW_TABLE_NAME)
+      .addSingleValueDimension(INT_COLUMN, DataType.INT)
+      .addMetric(LONG_COLUMN, DataType.LONG)
+      .addSingleValueDimension(STRING_COLUMN, DataType.STRING)
+      .build();
+  private static final TableConfig TABLE_CONFIG =
+      new TableConfigBuilder(TableType.OFFLINE).setTableName(RAW_TABLE_NAME).build();
+
+  private final InstancePlanMakerImplV2 _cachedPlanMaker = new InstancePlanMakerImplV2();
+  private SegmentResultCache _segmentResultCache;
+  private IndexSegment _indexSegment;
+  private List<IndexSegment> _indexSegments;
+
+  @Override
+  protected String getFilter() {
+    return "";
+  }
+
+  @Override
+  protected IndexSegment getIndexSegment() {
+    return _indexSegment;
+  }
+
+  @Override
+  protected List<IndexSegment> getIndexSegments() {
+    return _indexSegments;
+  }
+
+  @BeforeClass
+  public void setUp()
+      throws Exception {
+    FileUtils.deleteQuietly(INDEX_DIR);
+
+    List<GenericRow> records = new ArrayList<>(NUM_RECORDS);
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      GenericRow record = new GenericRow();
+      record.putValue(INT_COLUMN, i);
+      record.putValue(LONG_COLUMN, (long) i * 3);
+      record.putValue(STRING_COLUMN, "group_" + i % NUM_GROUPS);
+      records.add(record);
+    }
+
+    SegmentGeneratorConfig segmentGeneratorConfig = new SegmentGeneratorConfig(TABLE_CONFIG, SCHEMA);
+    segmentGeneratorConfig.setTableName(RAW_TABLE_NAME);
+    segmentGeneratorConfig.setSegmentName(SEGMENT_NAME);
+    segmentGeneratorConfig.setOutDir(INDEX_DIR.getPath());
+
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(segmentGeneratorConfig, new GenericRowRecordReader(records));
+    driver.build();
+
+    ImmutableSegment immutableSegment = ImmutableSegmentLoader.load(new File(INDEX_DIR, SEGMENT_NAME), ReadMode.mmap);
+    _indexSegment = immutableSegment;
+    _indexSegments = Arrays.asList(immutableSegment, immutableSegment);
+  }
+
+  @BeforeMethod
+  public void resetCache() {
+    _segmentResultCache = new SegmentResultCache(1024 * 1024, 100);
+    _cachedPlanMaker.setSegmentResultCache(_segmentResultCache);
+  }
+
+  @Test
+  public void testAggregation() {
+    String query = "SELECT COUNT(*), SUM(longColumn), AVG(intColumn), MAX(intColumn), DISTINCTCOUNT(stringColumn), "
+        + "DISTINCTCOUNTHLL(intColumn) FROM testTable WHERE intColumn > 100";
+    testQuery(query);
+  }
+
+  @Test
+  public void testGroupBy() {
+    testQuery("SELECT stringColumn, COUNT(*), SUM(longColumn), AVG(intColumn), DISTINCTCOUNT(intColumn) "
+        + "FROM testTable GROUP BY stringColumn ORDER BY stringColumn LIMIT 100");
+    testQuery("SELECT stringColumn, SUM(longColumn) FROM testTable GROUP BY stringColumn "
+        + "ORDER BY SUM(longColumn) DESC LIMIT 5");
+  }
+
+  @Test
+  public void testNonCacheableQueries() {
+    // Selection query
+    getBrokerResponse("SELECT intColumn FROM testTable LIMIT 10", _cachedPlanMaker);
+    assertEquals(_segmentResultCache.getNumEntries(), 0);
+
+    // Cache disabled by query option
+    getBrokerResponse("SET useResultCache = false; SELECT COUNT(*) FROM testTable", _cachedPlanMaker);
+    assertEquals(_segmentResultCache.getNumEntries(), 0);
+
+    // Too many groups
+    getBrokerResponse("SELECT intColumn, COUNT(*) FROM testTable GROUP BY intColumn LIMIT 2000", _cachedPlanMaker);
+    assertEquals(_segmentResultCache.getNumEntries(), 0);
+  }
+
+  @Test
+  public void testIgnoredQueryOptions() {
+    getBrokerResponse("SET timeoutMs = 10000; SELECT COUNT(*) FROM testTable", _cachedPlanMaker);
+    assertEquals(_segmentResultCache.getNumEntries(), 1);
+    getBrokerResponse("SET timeoutMs = 20000; SELECT COUNT(*) FROM testTable", _cachedPlanMaker);
+    assertEquals(_segmentResultCache.getNumEntries(), 1);
+    getBrokerResponse("SET enableNullHandling = true; SELECT COUNT(*) FROM testTable", _cachedPlanMaker);
+    assertEquals(_segmentResultCache.getNumEntries(), 2);
+  }
+
+  private void testQuery(String query) {
+    BrokerResponseNative expectedResponse = getBrokerResponse(query);
+    long numEntries = _segmentResultCache.getNumEntries();
+    // Both segments are the same, so only one entry should be cached
+    BrokerResponseNative firstResponse = getBrokerResponse(query, _cachedPlanMaker);
+    assertEquals(_segmentResultCache.getNumEntries(), numEntries + 1);
+    validateResponse(firstResponse, expectedResponse);
+    // Run the query multiple times to ensure the cached results are not modified when merging the results
+    for (int i = 0; i < 3; i++) {
+      validateResponse(getBrokerResponse(query, _cachedPlanMaker), expectedResponse);
+    }
+    assertEquals(_segmentResultCache.getNumEntries(), numEntries + 1);
+  }
+
+  private void validateResponse(BrokerResponseNative actual, BrokerResponseNative expected) {
+    assertEquals(actual.getExceptions().size(), 0);
+    validateBeforeAfterQueryResults(expected.getResultTable().getRows(), actual.getResultTable().getRows());
+    assertEquals(actual.getNumDocsScanned(), expected.getNumDocsScanned());
+    assertEquals(actual.getNumEntriesScannedInFilter(), expected.getNumEntriesScannedInFilter());
+    assertEquals(actual.getNumEntriesScannedPostFilter(), expected.getNumEntriesScannedPostFilter());
+    assertEquals(actual.getTotalDocs(), expected.getTotalDocs());
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _indexSegment.destroy();
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+}
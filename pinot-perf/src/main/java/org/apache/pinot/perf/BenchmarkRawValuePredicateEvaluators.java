@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.perf;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.pinot.common.request.context.ExpressionContext;
+import org.apache.pinot.common.request.context.predicate.EqPredicate;
+import org.apache.pinot.common.request.context.predicate.RangePredicate;
+import org.apache.pinot.core.operator.filter.predicate.EqualsPredicateEvaluatorFactory;
+import org.apache.pinot.core.operator.filter.predicate.PredicateEvaluator;
+import org.apache.pinot.core.operator.filter.predicate.RangePredicateEvaluatorFactory;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmark for the batch evaluation of the raw value based RANGE and EQ predicate evaluators, which is used by the
+ * scan based filtering on the columns without dictionary. The selectivity is the percentage of the values matching the
+ * predicate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class BenchmarkRawValuePredicateEvaluators {
+  private static final int NUM_VALUES = 10_000;
+  private static final ExpressionContext LHS = ExpressionContext.forIdentifier("col");
+
+  @Param({"1", "50", "99"})
+  private int _selectivity;
+
+  @Param("42")
+  private long _seed;
+
+  private int[] _intValues;
+  private long[] _longValues;
+  private double[] _doubleValues;
+  private int[] _eqValues;
+  private int[] _docIds;
+  private int[] _docIdBuffer;
+
+  private PredicateEvaluator _intRangeEvaluator;
+  private PredicateEvaluator _longRangeEvaluator;
+  private PredicateEvaluator _doubleRangeEvaluator;
+  private PredicateEvaluator _intEqEvaluator;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(_seed);
+    _intValues = new int[NUM_VALUES];
+    _longValues = new long[NUM_VALUES];
+    _doubleValues = new double[NUM_VALUES];
+    _docIds = new int[NUM_VALUES];
+    _docIdBuffer = new int[NUM_VALUES];
+    for (int i = 0; i < NUM_VALUES; i++) {
+      // Values are in [0, 100), where values in [0, selectivity) match the predicates
+      int value = random.nextInt(100);
+      _intValues[i] = value;
+      _longValues[i] = value;
+      _doubleValues[i] = value;
+      _docIds[i] = i;
+    }
+    String upperBound = Integer.toString(_selectivity);
+    _intRangeEvaluator = RangePredicateEvaluatorFactory.newRawValueBasedEvaluator(
+        new RangePredicate(LHS, true, "0", false, upperBound, DataType.INT), DataType.INT);
+    _longRangeEvaluator = RangePredicateEvaluatorFactory.newRawValueBasedEvaluator(
+        new RangePredicate(LHS, true, "0", false, upperBound, DataType.LONG), DataType.LONG);
+    _doubleRangeEvaluator = RangePredicateEvaluatorFactory.newRawValueBasedEvaluator(
+        new RangePredicate(LHS, true, "0", false, upperBound, DataType.DOUBLE), DataType.DOUBLE);
+    // Remap the values so that the EQ predicate has the same selectivity
+    _eqValues = new int[NUM_VALUES];
+    for (int i = 0; i < NUM_VALUES; i++) {
+      _eqValues[i] = _intValues[i] < _selectivity ? 0 : _intValues[i] + 1;
+    }
+    _intEqEvaluator = EqualsPredicateEvaluatorFactory.newRawValueBasedEvaluator(new EqPredicate(LHS, "0"),
+        DataType.INT);
+  }
+
+  private int[] resetDocIds() {
+    System.arraycopy(_docIds, 0, _docIdBuffer, 0, NUM_VALUES);
+    return _docIdBuffer;
+  }
+
+  @Benchmark
+  public int intRange() {
+    return _intRangeEvaluator.applySV(NUM_VALUES, resetDocIds(), _intValues);
+  }
+
+  @Benchmark
+  public int longRange() {
+    return _longRangeEvaluator.applySV(NUM_VALUES, resetDocIds(), _longValues);
+  }
+
+  @Benchmark
+  public int doubleRange() {
+    return _doubleRangeEvaluator.applySV(NUM_VALUES, resetDocIds(), _doubleValues);
+  }
+
+  @Benchmark
+  public int intEq() {
+    return _intEqEvaluator.applySV(NUM_VALUES, resetDocIds(), _eqValues);
+  }
+
+  public static void main(String[] args)
+      throws Exception {
+    ChainedOptionsBuilder opt =
+        new OptionsBuilder().include(BenchmarkRawValuePredicateEvaluators.class.getSimpleName());
+    new Runner(opt.build()).run();
+  }
+}
@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.perf;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.pinot.common.function.FunctionInfo;
+import org.apache.pinot.common.function.FunctionRegistry;
+import org.apache.pinot.common.request.context.ExpressionContext;
+import org.apache.pinot.common.request.context.LiteralContext;
+import org.apache.pinot.core.common.BlockValSet;
+import org.apache.pinot.core.operator.blocks.ValueBlock;
+import org.apache.pinot.core.operator.transform.TransformResultMetadata;
+import org.apache.pinot.core.operator.transform.function.BaseTransformFunction;
+import org.apache.pinot.core.operator.transform.function.LiteralTransformFunction;
+import org.apache.pinot.core.operator.transform.function.ScalarTransformFunctionWrapper;
+import org.apache.pinot.core.operator.transform.function.TransformFunction;
+import org.apache.pinot.core.plan.DocIdSetPlanNode;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmark for the block-at-a-time evaluation of scalar functions through {@link ScalarTransformFunctionWrapper}.
+ * <ul>
+ *   <li>toEpochHoursRounded: date bucketing on a LONG column with a literal argument</li>
+ *   <li>toEpochDays: date bucketing on a LONG column</li>
+ *   <li>toDateTime: date formatting on a LONG column with a literal pattern</li>
+ *   <li>upper: function with only literal arguments, where the result is evaluated once per query</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class BenchmarkScalarTransformFunction {
+  private static final int NUM_DOCS = DocIdSetPlanNode.MAX_DOC_PER_CALL;
+
+  @Param({"toEpochHoursRounded", "toEpochDays", "toDateTime", "upper"})
+  public String _scenario;
+
+  private TransformFunction _transformFunction;
+  private ValueBlock _valueBlock;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    FunctionRegistry.init();
+    Random random = new Random(42);
+    long[] timestamps = new long[NUM_DOCS];
+    for (int i = 0; i < NUM_DOCS; i++) {
+      timestamps[i] = 1_700_000_000_000L + random.nextInt(Integer.MAX_VALUE);
+    }
+    List<TransformFunction> arguments;
+    switch (_scenario) {
+      case "toEpochHoursRounded":
+        arguments = List.of(new LongColumnTransformFunction(timestamps), literal(DataType.LONG, 4L));
+        break;
+      case "toEpochDays":
+        arguments = List.of(new LongColumnTransformFunction(timestamps));
+        break;
+      case "toDateTime":
+        arguments = List.of(new LongColumnTransformFunction(timestamps), literal(DataType.STRING, "yyyy-MM-dd HH"));
+        break;
+      case "upper":
+        arguments = List.of(literal(DataType.STRING, "abc"));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown scenario: " + _scenario);
+    }
+    FunctionInfo functionInfo =
+        FunctionRegistry.lookupFunctionInfo(FunctionRegistry.canonicalize(_scenario), arguments.size());
+    _transformFunction = new ScalarTransformFunctionWrapper(functionInfo);
+    _transformFunction.init(arguments, null);
+    _valueBlock = new FixedSizeValueBlock(NUM_DOCS);
+  }
+
+  @Benchmark
+  public Object transform() {
+    switch (_transformFunction.getResultMetadata().getDataType().getStoredType()) {
+      case LONG:
+        return _transformFunction.transformToLongValuesSV(_valueBlock);
+      case DOUBLE:
+        return _transformFunction.transformToDoubleValuesSV(_valueBlock);
+      default:
+        return _transformFunction.transformToStringValuesSV(_valueBlock);
+    }
+  }
+
+  private static LiteralTransformFunction literal(DataType dataType, Object value) {
+    return new LiteralTransformFunction(new LiteralContext(dataType, value));
+  }
+
+  public static void main(String[] args)
+      throws Exception {
+    ChainedOptionsBuilder opt = new OptionsBuilder().include(BenchmarkScalarTransformFunction.class.getSimpleName());
+    new Runner(opt.build()).run();
+  }
+
+  /**
+   * Transform function that returns pre-generated LONG values, which simulates a raw LONG column.
+   */
+  private static class LongColumnTransformFunction extends BaseTransformFunction {
+    private final long[] _values;
+
+    LongColumnTransformFunction(long[] values) {
+      _values = values;
+    }
+
+    @Override
+    public String getName() {
+      return "longColumn";
+    }
+
+    @Override
+    public TransformResultMetadata getResultMetadata() {
+      return new TransformResultMetadata(DataType.LONG, true, false);
+    }
+
+    @Override
+    public long[] transformToLongValuesSV(ValueBlock valueBlock) {
+      return _values;
+    }
+  }
+
+  private static class FixedSizeValueBlock implements ValueBlock {
+    private final int _numDocs;
+
+    FixedSizeValueBlock(int numDocs) {
+      _numDocs = numDocs;
+    }
+
+    @Override
+    public int getNumDocs() {
+      return _numDocs;
+    }
+
+    @Override
+    public int[] getDocIds() {
+      return null;
+    }
+
+    @Override
+    public BlockValSet getBlockValueSet(ExpressionContext expression) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BlockValSet getBlockValueSet(String column) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BlockValSet getBlockValueSet(String[] paths) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -1066,6 +1066,19 @@ public class S3PinotFS extends BasePinotFS {
     }
   }
 
+  @Override
+  public InputStream open(URI uri, long offset, long length)
+      throws IOException {
+    if (length == 0) {
+      return InputStream.nullInputStream();
+    }
+    String path = sanitizePath(uri.getPath());
+    // NOTE: Both ends of the HTTP range are inclusive
+    GetObjectRequest getObjectRequest = GetObjectRequest.builder().bucket(uri.getHost()).key(path)
+        .range("bytes=" + offset + "-" + (offset + length - 1)).build();
+    return retryWithS3CredentialRefresh(() -> _s3Client.getObject(getObjectRequest));
+  }
+
   @Override
   public void close()
       throws IOException {
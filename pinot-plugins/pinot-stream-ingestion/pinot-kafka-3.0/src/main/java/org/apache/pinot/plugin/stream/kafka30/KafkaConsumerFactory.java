@@ -19,6 +19,8 @@
 package org.apache.pinot.plugin.stream.kafka30;
 
 import org.apache.pinot.plugin.stream.kafka.KafkaConfigBackwardCompatibleUtils;
+import org.apache.pinot.plugin.stream.kafka.KafkaPartitionLevelStreamConfig;
+import org.apache.pinot.plugin.stream.kafka.PrefetchingPartitionGroupConsumer;
 import org.apache.pinot.spi.stream.PartitionGroupConsumer;
 import org.apache.pinot.spi.stream.PartitionGroupConsumptionStatus;
 import org.apache.pinot.spi.stream.StreamConfig;
@@ -57,14 +59,20 @@ public class KafkaConsumerFactory extends StreamConsumerFactory {
   @Override
   public PartitionGroupConsumer createPartitionGroupConsumer(String clientId,
       PartitionGroupConsumptionStatus partitionGroupConsumptionStatus) {
-    return new KafkaPartitionLevelConsumer(clientId, _streamConfig,
-        partitionGroupConsumptionStatus.getStreamPartitionGroupId());
+    return maybeWrapWithPrefetching(new KafkaPartitionLevelConsumer(clientId, _streamConfig,
+        partitionGroupConsumptionStatus.getStreamPartitionGroupId()), clientId);
   }
 
   @Override
   public PartitionGroupConsumer createPartitionGroupConsumer(String clientId,
       PartitionGroupConsumptionStatus partitionGroupConsumptionStatus, RetryPolicy retryPolicy) {
-    return new KafkaPartitionLevelConsumer(clientId, _streamConfig,
-        partitionGroupConsumptionStatus.getStreamPartitionGroupId(), retryPolicy);
+    return maybeWrapWithPrefetching(new KafkaPartitionLevelConsumer(clientId, _streamConfig,
+        partitionGroupConsumptionStatus.getStreamPartitionGroupId(), retryPolicy), clientId);
+  }
+
+  private PartitionGroupConsumer maybeWrapWithPrefetching(PartitionGroupConsumer consumer, String clientId) {
+    int prefetchBufferSizeBytes = new KafkaPartitionLevelStreamConfig(_streamConfig).getKafkaPrefetchBufferSizeBytes();
+    return prefetchBufferSizeBytes > 0 ? new PrefetchingPartitionGroupConsumer(consumer, clientId,
+        prefetchBufferSizeBytes) : consumer;
   }
 }
@@ -40,6 +40,7 @@ import org.apache.kafka.common.utils.Bytes;
 import org.apache.pinot.plugin.stream.kafka.KafkaAdminClientManager;
 import org.apache.pinot.plugin.stream.kafka.KafkaPartitionLevelStreamConfig;
 import org.apache.pinot.plugin.stream.kafka.KafkaSSLUtils;
+import org.apache.pinot.plugin.stream.kafka.KafkaSharedConsumerManager;
 import org.apache.pinot.spi.stream.StreamConfig;
 import org.apache.pinot.spi.utils.retry.AttemptsExceededException;
 import org.apache.pinot.spi.utils.retry.RetriableOperationException;
@@ -62,7 +63,11 @@ public abstract class KafkaPartitionLevelConnectionHandler {
   protected final String _clientId;
   protected final int _partition;
   protected final String _topic;
+  // Null when the partition is consumed through a shared consumer
+  @Nullable
   protected final Consumer<Bytes, Bytes> _consumer;
+  @Nullable
+  protected final KafkaSharedConsumerManager.SharedConsumerReference _sharedConsumerRef;
   protected final TopicPartition _topicPartition;
   protected final Properties _consumerProp;
   protected volatile KafkaAdminClientManager.AdminClientReference _sharedAdminClientRef;
@@ -73,19 +78,35 @@ public abstract class KafkaPartitionLevelConnectionHandler {
 
   public KafkaPartitionLevelConnectionHandler(String clientId, StreamConfig streamConfig, int partition,
       @Nullable RetryPolicy retryPolicy) {
+    this(clientId, streamConfig, partition, retryPolicy, false);
+  }
+
+  /**
+   * @param allowSharedConsumer Whether the partition can be consumed through a shared consumer when it is enabled in
+   *                            the stream config. Only the consumers should allow it.
+   */
+  protected KafkaPartitionLevelConnectionHandler(String clientId, StreamConfig streamConfig, int partition,
+      @Nullable RetryPolicy retryPolicy, boolean allowSharedConsumer) {
     _config = new KafkaPartitionLevelStreamConfig(streamConfig);
     _clientId = clientId;
     _partition = partition;
     _topic = _config.getKafkaTopicName();
     _consumerProp = buildProperties(streamConfig);
     KafkaSSLUtils.initSSL(_consumerProp);
-    if (retryPolicy == null) {
-      _consumer = createConsumer(_consumerProp);
+    _topicPartition = new TopicPartition(_topic, _partition);
+    _sharedConsumerRef = allowSharedConsumer ? KafkaSharedConsumerManager.getInstance()
+        .tryRegister(_config, streamConfig.getTableNameWithType(), _clientId, _consumerProp, _topicPartition,
+            this::createConsumer) : null;
+    if (_sharedConsumerRef != null) {
+      _consumer = null;
     } else {
-      _consumer = createConsumer(_consumerProp, retryPolicy);
+      if (retryPolicy == null) {
+        _consumer = createConsumer(_consumerProp);
+      } else {
+        _consumer = createConsumer(_consumerProp, retryPolicy);
+      }
+      _consumer.assign(Collections.singletonList(_topicPartition));
     }
-    _topicPartition = new TopicPartition(_topic, _partition);
-    _consumer.assign(Collections.singletonList(_topicPartition));
   }
 
   private Properties buildProperties(StreamConfig streamConfig) {
@@ -219,7 +240,12 @@ public abstract class KafkaPartitionLevelConnectionHandler {
 
   public void close()
       throws IOException {
-    _consumer.close();
+    if (_consumer != null) {
+      _consumer.close();
+    }
+    if (_sharedConsumerRef != null) {
+      _sharedConsumerRef.close();
+    }
     if (_sharedAdminClientRef != null) {
       _sharedAdminClientRef.close();
       _sharedAdminClientRef = null;
@@ -18,16 +18,15 @@
  */
 package org.apache.pinot.plugin.stream.kafka30;
 
-import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.common.header.Header;
 import org.apache.kafka.common.header.Headers;
 import org.apache.kafka.common.utils.Bytes;
 import org.apache.pinot.plugin.stream.kafka.KafkaMessageBatch;
+import org.apache.pinot.plugin.stream.kafka.KafkaPartitionRecordFetcher;
 import org.apache.pinot.plugin.stream.kafka.KafkaStreamConfigProperties;
 import org.apache.pinot.plugin.stream.kafka.KafkaStreamMessageMetadata;
 import org.apache.pinot.spi.data.readers.GenericRow;
@@ -46,15 +45,17 @@ public class KafkaPartitionLevelConsumer extends KafkaPartitionLevelConnectionHa
     implements PartitionGroupConsumer {
   private static final Logger LOGGER = LoggerFactory.getLogger(KafkaPartitionLevelConsumer.class);
 
-  private long _lastFetchedOffset = -1;
+  private final KafkaPartitionRecordFetcher _recordFetcher;
 
   public KafkaPartitionLevelConsumer(String clientId, StreamConfig streamConfig, int partition) {
-    super(clientId, streamConfig, partition);
+    super(clientId, streamConfig, partition, null, true);
+    _recordFetcher = new KafkaPartitionRecordFetcher(_topicPartition, _consumer, _sharedConsumerRef);
   }
 
   public KafkaPartitionLevelConsumer(String clientId, StreamConfig streamConfig, int partition,
       RetryPolicy retryPolicy) {
-    super(clientId, streamConfig, partition, retryPolicy);
+    super(clientId, streamConfig, partition, retryPolicy, true);
+    _recordFetcher = new KafkaPartitionRecordFetcher(_topicPartition, _consumer, _sharedConsumerRef);
   }
 
   @Override
@@ -63,15 +64,7 @@ public class KafkaPartitionLevelConsumer extends KafkaPartitionLevelConnectionHa
     if (LOGGER.isDebugEnabled()) {
       LOGGER.debug("Polling partition: {}, startOffset: {}, timeout: {}ms", _topicPartition, startOffset, timeoutMs);
     }
-    if (_lastFetchedOffset < 0 || _lastFetchedOffset != startOffset - 1) {
-      if (LOGGER.isDebugEnabled()) {
-        LOGGER.debug("Seeking to offset: {}", startOffset);
-      }
-      _consumer.seek(_topicPartition, startOffset);
-    }
-
-    ConsumerRecords<Bytes, Bytes> consumerRecords = _consumer.poll(Duration.ofMillis(timeoutMs));
-    List<ConsumerRecord<Bytes, Bytes>> records = consumerRecords.records(_topicPartition);
+    List<ConsumerRecord<Bytes, Bytes>> records = _recordFetcher.fetchRecords(startOffset, timeoutMs);
     List<BytesStreamMessage> filteredRecords = new ArrayList<>(records.size());
     long firstOffset = -1;
     long offsetOfNextBatch = startOffset;
@@ -79,8 +72,7 @@ public class KafkaPartitionLevelConsumer extends KafkaPartitionLevelConnectionHa
     long batchSizeInBytes = 0;
     if (!records.isEmpty()) {
       firstOffset = records.get(0).offset();
-      _lastFetchedOffset = records.get(records.size() - 1).offset();
-      offsetOfNextBatch = _lastFetchedOffset + 1;
+      offsetOfNextBatch = records.get(records.size() - 1).offset() + 1;
       for (ConsumerRecord<Bytes, Bytes> record : records) {
         StreamMessageMetadata messageMetadata = extractMessageMetadata(record);
         Bytes message = record.value();
@@ -39,6 +39,8 @@ public class KafkaPartitionLevelStreamConfig {
   private final int _kafkaFetcherSizeBytes;
   private final int _kafkaFetcherMinBytes;
   private final String _kafkaIsolationLevel;
+  private final int _kafkaPrefetchBufferSizeBytes;
+  private final boolean _sharedConsumerEnabled;
   private final boolean _populateMetadata;
   private final Map<String, String> _streamConfigMap;
 
@@ -63,6 +65,10 @@ public class KafkaPartitionLevelStreamConfig {
         KafkaStreamConfigProperties.LowLevelConsumer.KAFKA_FETCHER_MIN_BYTES);
     String isolationLevelKey = KafkaStreamConfigProperties.constructStreamProperty(
         KafkaStreamConfigProperties.LowLevelConsumer.KAFKA_ISOLATION_LEVEL);
+    String prefetchBufferSizeKey = KafkaStreamConfigProperties.constructStreamProperty(
+        KafkaStreamConfigProperties.LowLevelConsumer.KAFKA_PREFETCH_BUFFER_SIZE_BYTES);
+    String sharedConsumerEnabledKey = KafkaStreamConfigProperties.constructStreamProperty(
+        KafkaStreamConfigProperties.LowLevelConsumer.KAFKA_SHARED_CONSUMER_ENABLED);
     _bootstrapHosts = _streamConfigMap.get(llcBrokerListKey);
     _kafkaBufferSize = getIntConfigWithDefault(_streamConfigMap, llcBufferKey,
         KafkaStreamConfigProperties.LowLevelConsumer.KAFKA_BUFFER_SIZE_DEFAULT);
@@ -71,6 +77,9 @@ public class KafkaPartitionLevelStreamConfig {
     _kafkaFetcherSizeBytes = getIntConfigWithDefault(_streamConfigMap, fetcherSizeKey, _kafkaBufferSize);
     _kafkaFetcherMinBytes = getIntConfigWithDefault(_streamConfigMap, fetcherMinBytesKey,
         KafkaStreamConfigProperties.LowLevelConsumer.KAFKA_FETCHER_MIN_BYTES_DEFAULT);
+    _kafkaPrefetchBufferSizeBytes = getIntConfigWithDefault(_streamConfigMap, prefetchBufferSizeKey,
+        KafkaStreamConfigProperties.LowLevelConsumer.KAFKA_PREFETCH_BUFFER_SIZE_BYTES_DEFAULT);
+    _sharedConsumerEnabled = Boolean.parseBoolean(_streamConfigMap.get(sharedConsumerEnabledKey));
 
     _kafkaIsolationLevel = _streamConfigMap.get(isolationLevelKey);
     if (_kafkaIsolationLevel != null) {
@@ -117,6 +126,14 @@ public class KafkaPartitionLevelStreamConfig {
     return _kafkaIsolationLevel;
   }
 
+  public int getKafkaPrefetchBufferSizeBytes() {
+    return _kafkaPrefetchBufferSizeBytes;
+  }
+
+  public boolean isSharedConsumerEnabled() {
+    return _sharedConsumerEnabled;
+  }
+
   public boolean isPopulateMetadata() {
     return _populateMetadata;
   }
@@ -146,8 +163,9 @@ public class KafkaPartitionLevelStreamConfig {
     return "KafkaLowLevelStreamConfig{" + "_kafkaTopicName='" + _kafkaTopicName + '\'' + ", _bootstrapHosts='"
         + _bootstrapHosts + '\'' + ", _kafkaBufferSize='" + _kafkaBufferSize + '\'' + ", _kafkaSocketTimeout='"
         + _kafkaSocketTimeout + '\'' + ", _kafkaFetcherSizeBytes='" + _kafkaFetcherSizeBytes + '\''
-        + ", _kafkaFetcherMinBytes='" + _kafkaFetcherMinBytes + '\'' + ", _populateMetadata='" + _populateMetadata
-        + '\'' + '}';
+        + ", _kafkaFetcherMinBytes='" + _kafkaFetcherMinBytes + '\'' + ", _kafkaPrefetchBufferSizeBytes='"
+        + _kafkaPrefetchBufferSizeBytes + '\'' + ", _sharedConsumerEnabled='" + _sharedConsumerEnabled + '\''
+        + ", _populateMetadata='" + _populateMetadata + '\'' + '}';
   }
 
   @Override
@@ -166,7 +184,9 @@ public class KafkaPartitionLevelStreamConfig {
         that._bootstrapHosts) && EqualityUtils.isEqual(_kafkaBufferSize, that._kafkaBufferSize)
         && EqualityUtils.isEqual(_kafkaSocketTimeout, that._kafkaSocketTimeout) && EqualityUtils.isEqual(
         _kafkaFetcherSizeBytes, that._kafkaFetcherSizeBytes) && EqualityUtils.isEqual(_kafkaFetcherMinBytes,
-        that._kafkaFetcherMinBytes) && EqualityUtils.isEqual(_populateMetadata, that._populateMetadata);
+        that._kafkaFetcherMinBytes) && EqualityUtils.isEqual(_kafkaPrefetchBufferSizeBytes,
+        that._kafkaPrefetchBufferSizeBytes) && EqualityUtils.isEqual(_sharedConsumerEnabled,
+        that._sharedConsumerEnabled) && EqualityUtils.isEqual(_populateMetadata, that._populateMetadata);
   }
 
   @Override
@@ -177,6 +197,8 @@ public class KafkaPartitionLevelStreamConfig {
     result = EqualityUtils.hashCodeOf(result, _kafkaSocketTimeout);
     result = EqualityUtils.hashCodeOf(result, _kafkaFetcherSizeBytes);
     result = EqualityUtils.hashCodeOf(result, _kafkaFetcherMinBytes);
+    result = EqualityUtils.hashCodeOf(result, _kafkaPrefetchBufferSizeBytes);
+    result = EqualityUtils.hashCodeOf(result, _sharedConsumerEnabled);
     result = EqualityUtils.hashCodeOf(result, _populateMetadata);
     return result;
   }
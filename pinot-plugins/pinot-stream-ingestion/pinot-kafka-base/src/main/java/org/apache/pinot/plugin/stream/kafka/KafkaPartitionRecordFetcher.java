@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.plugin.stream.kafka;
+
+import com.google.common.base.Preconditions;
+import java.time.Duration;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.utils.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Fetches the records of a single partition, either from a dedicated Kafka consumer assigned to the partition, or from
+ * a shared consumer managed by {@link KafkaSharedConsumerManager}. Shared by the partition level consumers of all the
+ * Kafka client versions.
+ *
+ * <p>Thread Safety: Not thread-safe, and should be accessed by the consuming thread of the partition only.
+ */
+public class KafkaPartitionRecordFetcher {
+  private static final Logger LOGGER = LoggerFactory.getLogger(KafkaPartitionRecordFetcher.class);
+
+  private final TopicPartition _topicPartition;
+  @Nullable
+  private final Consumer<Bytes, Bytes> _consumer;
+  @Nullable
+  private final KafkaSharedConsumerManager.SharedConsumerReference _sharedConsumerRef;
+
+  private long _lastFetchedOffset = -1;
+
+  /**
+   * @param topicPartition Partition to fetch
+   * @param consumer Dedicated consumer assigned to the partition, or null when the shared consumer is used
+   * @param sharedConsumerRef Reference to the shared consumer, or null when the dedicated consumer is used
+   */
+  public KafkaPartitionRecordFetcher(TopicPartition topicPartition, @Nullable Consumer<Bytes, Bytes> consumer,
+      @Nullable KafkaSharedConsumerManager.SharedConsumerReference sharedConsumerRef) {
+    Preconditions.checkArgument((consumer == null) != (sharedConsumerRef == null),
+        "Exactly one of the dedicated consumer and the shared consumer should be provided");
+    _topicPartition = topicPartition;
+    _consumer = consumer;
+    _sharedConsumerRef = sharedConsumerRef;
+  }
+
+  /**
+   * Fetches the records of the partition starting from the given offset within the given timeout. Returns an empty list
+   * if there is no record available before the timeout.
+   */
+  public List<ConsumerRecord<Bytes, Bytes>> fetchRecords(long startOffset, long timeoutMs) {
+    List<ConsumerRecord<Bytes, Bytes>> records;
+    if (_sharedConsumerRef != null) {
+      // The shared consumer tracks the position of the partition and seeks when needed
+      records = _sharedConsumerRef.fetchRecords(startOffset, timeoutMs);
+    } else {
+      assert _consumer != null;
+      if (_lastFetchedOffset < 0 || _lastFetchedOffset != startOffset - 1) {
+        if (LOGGER.isDebugEnabled()) {
+          LOGGER.debug("Seeking to offset: {}", startOffset);
+        }
+        _consumer.seek(_topicPartition, startOffset);
+      }
+      records = _consumer.poll(Duration.ofMillis(timeoutMs)).records(_topicPartition);
+    }
+    if (!records.isEmpty()) {
+      _lastFetchedOffset = records.get(records.size() - 1).offset();
+    }
+    return records;
+  }
+}
@@ -0,0 +1,581 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.plugin.stream.kafka;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.InvalidOffsetException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.RecordDeserializationException;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.utils.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A singleton manager that multiplexes the consumption of multiple partitions onto a shared Kafka consumer, instead of
+ * creating one Kafka consumer (with its own connections and fetch requests) per partition. This is useful when a
+ * server hosts a lot of low volume partitions, where most of the per-partition fetch requests come back empty.
+ *
+ * <p>A shared consumer is created per table and Kafka cluster, and is assigned all the partitions registered to it.
+ * Each poll on the shared consumer fetches records for all the assigned partitions, and the records are buffered per
+ * partition until they are fetched by the consumer of the partition. A partition is paused when too many records are
+ * buffered for it, and resumed after the records are fetched. A newly registered partition is paused until the
+ * consumer of the partition seeks it to the requested offset, so that it is never polled from the reset position.
+ *
+ * <p>A poll failure that is specific to some partitions (e.g. offset out of range, or a record that cannot be
+ * deserialized) is thrown only to the next fetch of the affected partitions, which are paused until they are seeked
+ * again, while the other partitions keep being polled. Other poll failures (e.g. a broker not available) are retried by
+ * the poller, and are thrown to the fetch of all the partitions only after {@link #MAX_CONSECUTIVE_POLL_FAILURES}
+ * consecutive failures.
+ *
+ * <p>Thread Safety: The shared consumer is polled by a dedicated poller thread, and the consuming thread of each
+ * partition only waits on the records buffered for its own partition. The consuming threads acquire the shared
+ * consumer only to seek their partition, which wakes up the ongoing poll. Each poll is capped at
+ * {@link #MAX_POLL_TIME_MS}, which bounds the delay to resume a paused partition after its records are fetched.
+ */
+public class KafkaSharedConsumerManager {
+  private static final Logger LOGGER = LoggerFactory.getLogger(KafkaSharedConsumerManager.class);
+
+  private static final KafkaSharedConsumerManager INSTANCE = new KafkaSharedConsumerManager();
+
+  @VisibleForTesting
+  static final long MAX_POLL_TIME_MS = 100L;
+  @VisibleForTesting
+  static final int MAX_BUFFERED_RECORDS_PER_PARTITION = 10_000;
+  @VisibleForTesting
+  static final int MAX_CONSECUTIVE_POLL_FAILURES = 10;
+
+  // Map from cache key to shared consumer
+  private final ConcurrentHashMap<String, SharedConsumer> _sharedConsumers = new ConcurrentHashMap<>();
+  private final AtomicInteger _sharedConsumerIdGenerator = new AtomicInteger();
+
+  @VisibleForTesting
+  KafkaSharedConsumerManager() {
+  }
+
+  public static KafkaSharedConsumerManager getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Registers the given partition to the shared consumer when it is enabled in the stream config. Returns {@code null}
+   * if the shared consumer is not enabled, or the partition is already registered, in which case the caller should use
+   * a dedicated consumer.
+   *
+   * @see #tryRegister(String, Properties, TopicPartition, Function)
+   */
+  @Nullable
+  public SharedConsumerReference tryRegister(KafkaPartitionLevelStreamConfig streamConfig, String tableNameWithType,
+      String clientId, Properties properties, TopicPartition topicPartition,
+      Function<Properties, Consumer<Bytes, Bytes>> consumerCreator) {
+    if (!streamConfig.isSharedConsumerEnabled()) {
+      return null;
+    }
+    SharedConsumerReference sharedConsumerRef =
+        tryRegister(tableNameWithType, properties, topicPartition, consumerCreator);
+    if (sharedConsumerRef == null) {
+      LOGGER.warn("Partition: {} is already registered to the shared consumer, using a dedicated consumer for: {}",
+          topicPartition, clientId);
+    }
+    return sharedConsumerRef;
+  }
+
+  /**
+   * Registers the given partition to the shared consumer for the table and Kafka cluster, and creates the shared
+   * consumer with the given function if it does not exist yet. Returns {@code null} if the partition is already
+   * registered to the shared consumer (e.g. by another consuming segment of the same partition), in which case the
+   * caller should use a dedicated consumer.
+   *
+   * @param tableNameWithType Table consuming the partition, where partitions are shared only within the same table
+   * @param properties Kafka consumer properties
+   * @param topicPartition Partition to consume
+   * @param consumerCreator Function to create the Kafka consumer from the properties
+   * @return SharedConsumerReference that should be closed when no longer needed, or null if the partition is already
+   *         registered
+   */
+  @Nullable
+  public SharedConsumerReference tryRegister(String tableNameWithType, Properties properties,
+      TopicPartition topicPartition, Function<Properties, Consumer<Bytes, Bytes>> consumerCreator) {
+    String cacheKey = createCacheKey(tableNameWithType, properties);
+    while (true) {
+      SharedConsumer sharedConsumer = _sharedConsumers.computeIfAbsent(cacheKey, k -> {
+        Properties sharedConsumerProperties = new Properties();
+        sharedConsumerProperties.putAll(properties);
+        String clientId = tableNameWithType + "-shared-" + _sharedConsumerIdGenerator.getAndIncrement();
+        sharedConsumerProperties.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId);
+        LOGGER.info("Creating new shared consumer: {} for bootstrap servers: {}", clientId,
+            properties.getProperty(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG));
+        return new SharedConsumer(consumerCreator.apply(sharedConsumerProperties), cacheKey, clientId);
+      });
+      synchronized (sharedConsumer) {
+        // The shared consumer might be closed after the last partition is unregistered, retry with a new one
+        if (sharedConsumer._closed) {
+          continue;
+        }
+        if (!sharedConsumer.register(topicPartition)) {
+          return null;
+        }
+        return new SharedConsumerReference(sharedConsumer, topicPartition);
+      }
+    }
+  }
+
+  /**
+   * Creates a cache key from the table and the properties that affect the records returned by the consumer.
+   */
+  private String createCacheKey(String tableNameWithType, Properties properties) {
+    StringBuilder keyBuilder = new StringBuilder();
+    keyBuilder.append("table=").append(tableNameWithType);
+    keyBuilder.append(";bootstrap.servers=")
+        .append(properties.getProperty(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, ""));
+    appendIfPresent(keyBuilder, properties, ConsumerConfig.ISOLATION_LEVEL_CONFIG);
+    appendIfPresent(keyBuilder, properties, "security.protocol");
+    appendIfPresent(keyBuilder, properties, "sasl.mechanism");
+    appendIfPresent(keyBuilder, properties, "sasl.jaas.config");
+    appendIfPresent(keyBuilder, properties, "ssl.keystore.location");
+    appendIfPresent(keyBuilder, properties, "ssl.truststore.location");
+    return keyBuilder.toString();
+  }
+
+  private void appendIfPresent(StringBuilder builder, Properties properties, String key) {
+    String value = properties.getProperty(key);
+    if (value != null) {
+      builder.append(";").append(key).append("=").append(value);
+    }
+  }
+
+  @VisibleForTesting
+  int getNumSharedConsumers() {
+    return _sharedConsumers.size();
+  }
+
+  private static class PartitionState {
+    final ArrayDeque<ConsumerRecord<Bytes, Bytes>> _records = new ArrayDeque<>();
+    // Signaled when records are buffered for the partition, or the poll fails
+    final Condition _recordsAvailable;
+    // Offset of the next record to be fetched, or -1 if the consumer has not been positioned yet (in which case the
+    // partition is paused)
+    long _nextOffset = -1;
+    // Whether the partition is paused in the consumer
+    boolean _paused;
+    // Exception thrown by the last poll for the partition, which is thrown to the next fetch of the partition
+    Exception _pollException;
+
+    PartitionState(Condition recordsAvailable) {
+      _recordsAvailable = recordsAvailable;
+    }
+  }
+
+  /**
+   * Kafka consumer is not thread-safe, so it is accessed only while holding the consumer lock. A dedicated poller
+   * thread keeps polling the consumer and buffers the records per partition, and the consuming threads only wait on the
+   * buffer of their own partition, so that a consuming thread never blocks on a poll for other partitions. Registering,
+   * unregistering and seeking a partition (which are rare) wake up the ongoing poll and acquire the consumer lock.
+   *
+   * <p>Lock order: registration monitor (this) -> consumer lock -> state lock. The state lock is only held for short
+   * operations on the buffered records, never during a poll.
+   */
+  private class SharedConsumer {
+    final Consumer<Bytes, Bytes> _consumer;
+    final String _cacheKey;
+    final String _clientId;
+    // Fair so that the poller cannot starve the threads waiting to seek or re-assign the partitions
+    final ReentrantLock _consumerLock = new ReentrantLock(true);
+    final ReentrantLock _stateLock = new ReentrantLock();
+    final Map<TopicPartition, PartitionState> _partitionStates = new HashMap<>();
+    final Thread _pollerThread;
+    volatile boolean _closed;
+
+    SharedConsumer(Consumer<Bytes, Bytes> consumer, String cacheKey, String clientId) {
+      _consumer = consumer;
+      _cacheKey = cacheKey;
+      _clientId = clientId;
+      // Started after the first partition is assigned because the consumer cannot be polled without assignment
+      _pollerThread = new Thread(this::pollLoop, clientId + "-poller");
+      _pollerThread.setDaemon(true);
+    }
+
+    synchronized boolean register(TopicPartition topicPartition) {
+      int numPartitions;
+      _stateLock.lock();
+      try {
+        if (_partitionStates.containsKey(topicPartition)) {
+          return false;
+        }
+        _partitionStates.put(topicPartition, new PartitionState(_stateLock.newCondition()));
+        numPartitions = _partitionStates.size();
+      } finally {
+        _stateLock.unlock();
+      }
+      reassign();
+      if (numPartitions == 1) {
+        _pollerThread.start();
+      }
+      LOGGER.info("Registered partition: {} to shared consumer: {}, num partitions: {}", topicPartition, _clientId,
+          numPartitions);
+      return true;
+    }
+
+    void unregister(TopicPartition topicPartition) {
+      synchronized (this) {
+        int numPartitions;
+        _stateLock.lock();
+        try {
+          if (_partitionStates.remove(topicPartition) == null) {
+            return;
+          }
+          numPartitions = _partitionStates.size();
+        } finally {
+          _stateLock.unlock();
+        }
+        LOGGER.info("Unregistered partition: {} from shared consumer: {}, num partitions: {}", topicPartition,
+            _clientId, numPartitions);
+        if (numPartitions > 0) {
+          reassign();
+          return;
+        }
+        _closed = true;
+        _sharedConsumers.remove(_cacheKey, this);
+      }
+      // The poller thread closes the consumer when it exits
+      _consumer.wakeup();
+      try {
+        _pollerThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private void reassign() {
+      _consumer.wakeup();
+      _consumerLock.lock();
+      try {
+        List<TopicPartition> topicPartitions;
+        List<TopicPartition> pausedPartitions = new ArrayList<>();
+        _stateLock.lock();
+        try {
+          topicPartitions = new ArrayList<>(_partitionStates.keySet());
+          for (Map.Entry<TopicPartition, PartitionState> entry : _partitionStates.entrySet()) {
+            PartitionState partitionState = entry.getValue();
+            // Keep the partitions not positioned yet paused so that they are not polled from the reset position
+            if (partitionState._paused || partitionState._nextOffset < 0) {
+              partitionState._paused = true;
+              pausedPartitions.add(entry.getKey());
+            }
+          }
+        } finally {
+          _stateLock.unlock();
+        }
+        _consumer.assign(topicPartitions);
+        _consumer.pause(pausedPartitions);
+      } finally {
+        _consumerLock.unlock();
+      }
+    }
+
+    List<ConsumerRecord<Bytes, Bytes>> fetchRecords(TopicPartition topicPartition, long startOffset, long deadlineMs) {
+      PartitionState partitionState;
+      boolean positioned;
+      _stateLock.lock();
+      try {
+        partitionState = _partitionStates.get(topicPartition);
+        if (partitionState == null) {
+          throw new IllegalStateException("Partition: " + topicPartition + " is not registered to shared consumer: "
+              + _clientId);
+        }
+        positioned = isPositioned(partitionState, startOffset);
+      } finally {
+        _stateLock.unlock();
+      }
+      if (!positioned) {
+        seek(topicPartition, partitionState, startOffset);
+      }
+      _stateLock.lock();
+      try {
+        while (partitionState._records.isEmpty()) {
+          Exception pollException = partitionState._pollException;
+          if (pollException != null) {
+            partitionState._pollException = null;
+            throw new RuntimeException("Caught exception while polling shared consumer: " + _clientId,
+                pollException);
+          }
+          long remainingTimeMs = deadlineMs - System.currentTimeMillis();
+          if (remainingTimeMs <= 0) {
+            return List.of();
+          }
+          try {
+            partitionState._recordsAvailable.await(remainingTimeMs, TimeUnit.MILLISECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+          }
+        }
+        List<ConsumerRecord<Bytes, Bytes>> records = new ArrayList<>(partitionState._records);
+        partitionState._records.clear();
+        partitionState._nextOffset = records.get(records.size() - 1).offset() + 1;
+        return records;
+      } finally {
+        _stateLock.unlock();
+      }
+    }
+
+    /**
+     * Returns whether the buffered records of the partition start from the given offset. Keeps the buffered records if
+     * they start from the requested offset (e.g. polled before the first fetch of the partition). Should be called
+     * while holding the state lock.
+     */
+    private boolean isPositioned(PartitionState partitionState, long startOffset) {
+      if (partitionState._nextOffset == startOffset) {
+        return true;
+      }
+      ConsumerRecord<Bytes, Bytes> firstRecord = partitionState._records.peekFirst();
+      if (firstRecord != null && firstRecord.offset() == startOffset) {
+        partitionState._nextOffset = startOffset;
+        return true;
+      }
+      return false;
+    }
+
+    private void seek(TopicPartition topicPartition, PartitionState partitionState, long startOffset) {
+      _consumer.wakeup();
+      _consumerLock.lock();
+      try {
+        _stateLock.lock();
+        try {
+          // Check again because the poller might have buffered the records from the requested offset
+          if (!isPositioned(partitionState, startOffset)) {
+            partitionState._records.clear();
+            _consumer.seek(topicPartition, startOffset);
+            partitionState._nextOffset = startOffset;
+            if (partitionState._paused) {
+              _consumer.resume(List.of(topicPartition));
+              partitionState._paused = false;
+            }
+          }
+        } finally {
+          _stateLock.unlock();
+        }
+      } finally {
+        _consumerLock.unlock();
+      }
+    }
+
+    private void pollLoop() {
+      try {
+        int numConsecutivePollFailures = 0;
+        while (!_closed) {
+          boolean pollFailed = false;
+          _consumerLock.lock();
+          try {
+            if (_closed) {
+              break;
+            }
+            resumeDrainedPartitions();
+            ConsumerRecords<Bytes, Bytes> consumerRecords = _consumer.poll(Duration.ofMillis(MAX_POLL_TIME_MS));
+            numConsecutivePollFailures = 0;
+            bufferRecords(consumerRecords);
+          } catch (WakeupException e) {
+            // Woken up to release the consumer lock, or to close the consumer
+          } catch (Exception e) {
+            Collection<TopicPartition> failedPartitions = getFailedPartitions(e);
+            if (failedPartitions != null) {
+              LOGGER.warn("Caught exception while polling partitions: {} of shared consumer: {}", failedPartitions,
+                  _clientId, e);
+              notifyPollException(failedPartitions, e);
+            } else {
+              pollFailed = true;
+              numConsecutivePollFailures++;
+              if (numConsecutivePollFailures < MAX_CONSECUTIVE_POLL_FAILURES) {
+                LOGGER.warn("Caught exception while polling shared consumer: {}, retrying", _clientId, e);
+              } else {
+                LOGGER.warn("Caught {} consecutive exceptions while polling shared consumer: {}",
+                    numConsecutivePollFailures, _clientId, e);
+                notifyPollException(e);
+                numConsecutivePollFailures = 0;
+              }
+            }
+          } finally {
+            _consumerLock.unlock();
+          }
+          if (pollFailed) {
+            // Back off to avoid a busy loop when the poll keeps failing
+            Thread.sleep(MAX_POLL_TIME_MS);
+          }
+        }
+      } catch (InterruptedException e) {
+        LOGGER.warn("Poller thread of shared consumer: {} is interrupted", _clientId);
+      } finally {
+        try {
+          _consumer.close();
+          LOGGER.info("Closed shared consumer: {}", _clientId);
+        } catch (Exception e) {
+          LOGGER.warn("Error closing shared consumer: {}", _clientId, e);
+        }
+      }
+    }
+
+    private void resumeDrainedPartitions() {
+      _stateLock.lock();
+      try {
+        for (Map.Entry<TopicPartition, PartitionState> entry : _partitionStates.entrySet()) {
+          PartitionState partitionState = entry.getValue();
+          if (partitionState._paused && partitionState._nextOffset >= 0
+              && partitionState._records.size() < MAX_BUFFERED_RECORDS_PER_PARTITION) {
+            _consumer.resume(List.of(entry.getKey()));
+            partitionState._paused = false;
+          }
+        }
+      } finally {
+        _stateLock.unlock();
+      }
+    }
+
+    private void bufferRecords(ConsumerRecords<Bytes, Bytes> consumerRecords) {
+      if (consumerRecords.isEmpty()) {
+        return;
+      }
+      _stateLock.lock();
+      try {
+        for (TopicPartition topicPartition : consumerRecords.partitions()) {
+          PartitionState partitionState = _partitionStates.get(topicPartition);
+          if (partitionState == null) {
+            continue;
+          }
+          partitionState._records.addAll(consumerRecords.records(topicPartition));
+          if (!partitionState._paused && partitionState._records.size() >= MAX_BUFFERED_RECORDS_PER_PARTITION) {
+            _consumer.pause(List.of(topicPartition));
+            partitionState._paused = true;
+          }
+          partitionState._recordsAvailable.signalAll();
+        }
+      } finally {
+        _stateLock.unlock();
+      }
+    }
+
+    /**
+     * Returns the partitions affected by the given poll exception, or {@code null} if the exception is not specific to
+     * some partitions.
+     */
+    @Nullable
+    private Collection<TopicPartition> getFailedPartitions(Exception e) {
+      if (e instanceof InvalidOffsetException) {
+        return ((InvalidOffsetException) e).partitions();
+      }
+      if (e instanceof RecordDeserializationException) {
+        return List.of(((RecordDeserializationException) e).topicPartition());
+      }
+      return null;
+    }
+
+    /**
+     * Notifies the poll exception to the given partitions, and pauses them until they are seeked again so that the
+     * other partitions can still be polled. The buffered records are dropped because the partitions are re-positioned
+     * by the next fetch. Should be called while holding the consumer lock.
+     */
+    private void notifyPollException(Collection<TopicPartition> failedPartitions, Exception e) {
+      List<TopicPartition> partitionsToPause = new ArrayList<>();
+      _stateLock.lock();
+      try {
+        for (TopicPartition topicPartition : failedPartitions) {
+          PartitionState partitionState = _partitionStates.get(topicPartition);
+          if (partitionState == null) {
+            continue;
+          }
+          partitionState._records.clear();
+          partitionState._nextOffset = -1;
+          if (!partitionState._paused) {
+            partitionState._paused = true;
+            partitionsToPause.add(topicPartition);
+          }
+          partitionState._pollException = e;
+          partitionState._recordsAvailable.signalAll();
+        }
+      } finally {
+        _stateLock.unlock();
+      }
+      _consumer.pause(partitionsToPause);
+    }
+
+    private void notifyPollException(Exception e) {
+      _stateLock.lock();
+      try {
+        for (PartitionState partitionState : _partitionStates.values()) {
+          partitionState._pollException = e;
+          partitionState._recordsAvailable.signalAll();
+        }
+      } finally {
+        _stateLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * A reference to a partition registered to a shared consumer, which unregisters the partition when closed.
+   */
+  public class SharedConsumerReference implements AutoCloseable {
+    private final SharedConsumer _sharedConsumer;
+    private final TopicPartition _topicPartition;
+    private volatile boolean _closed = false;
+
+    SharedConsumerReference(SharedConsumer sharedConsumer, TopicPartition topicPartition) {
+      _sharedConsumer = sharedConsumer;
+      _topicPartition = topicPartition;
+    }
+
+    /**
+     * Fetches the records of the partition starting from the given offset within the given timeout. Returns an empty
+     * list if there is no record available before the timeout.
+     */
+    public List<ConsumerRecord<Bytes, Bytes>> fetchRecords(long startOffset, long timeoutMs) {
+      if (_closed) {
+        throw new IllegalStateException("SharedConsumerReference has been closed");
+      }
+      return _sharedConsumer.fetchRecords(_topicPartition, startOffset, System.currentTimeMillis() + timeoutMs);
+    }
+
+    @Override
+    public void close() {
+      if (!_closed) {
+        _closed = true;
+        _sharedConsumer.unregister(_topicPartition);
+      }
+    }
+  }
+}
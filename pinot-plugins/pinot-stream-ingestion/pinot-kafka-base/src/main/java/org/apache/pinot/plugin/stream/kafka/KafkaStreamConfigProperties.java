@@ -65,6 +65,11 @@ public class KafkaStreamConfigProperties {
     public static final String KAFKA_ISOLATION_LEVEL = "kafka.isolation.level";
     public static final String KAFKA_ISOLATION_LEVEL_READ_COMMITTED = "read_committed";
     public static final String KAFKA_ISOLATION_LEVEL_READ_UNCOMMITTED = "read_uncommitted";
+    // Max bytes of the message batches prefetched ahead of the consuming thread, 0 (default) disables prefetching
+    public static final String KAFKA_PREFETCH_BUFFER_SIZE_BYTES = "kafka.prefetch.buffer.size.bytes";
+    public static final int KAFKA_PREFETCH_BUFFER_SIZE_BYTES_DEFAULT = 0;
+    // Whether to consume the partitions of the same table through a shared Kafka consumer
+    public static final String KAFKA_SHARED_CONSUMER_ENABLED = "kafka.shared.consumer.enabled";
   }
 
   public static final String KAFKA_CONSUMER_PROP_PREFIX = "kafka.consumer.prop";
@@ -0,0 +1,293 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.plugin.stream.kafka;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.pinot.spi.stream.LongMsgOffset;
+import org.apache.pinot.spi.stream.MessageBatch;
+import org.apache.pinot.spi.stream.PartitionGroupConsumer;
+import org.apache.pinot.spi.stream.StreamPartitionMsgOffset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * {@link PartitionGroupConsumer} that keeps fetching message batches from the wrapped consumer in a background thread,
+ * so that fetching from the stream overlaps with indexing in the consuming thread instead of adding up.
+ *
+ * <p>The prefetched batches are kept in a queue bounded by the total size of the batches in bytes (at least one batch
+ * is always allowed). When the queue is full, the fetcher waits for the consuming thread to take batches from the
+ * queue, so any throttling applied on the consuming thread (e.g. the consumption rate limiters) also throttles the
+ * fetcher.
+ *
+ * <p>Prefetching starts from the offset of the first fetch. When a fetch is requested from an offset other than the
+ * next offset of the prefetched batches (e.g. after the consumer is reset to an earlier offset), the prefetched batches
+ * are discarded and prefetching restarts from the requested offset. Exception thrown by the wrapped consumer is
+ * re-thrown to the consuming thread after all the batches fetched before it are returned.
+ *
+ * <p>{@link #fetchMessages(StreamPartitionMsgOffset, int)} is expected to be invoked by a single consuming thread.
+ */
+public class PrefetchingPartitionGroupConsumer implements PartitionGroupConsumer {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PrefetchingPartitionGroupConsumer.class);
+
+  private final PartitionGroupConsumer _consumer;
+  private final String _clientId;
+  private final long _maxBufferSizeInBytes;
+
+  private final ReentrantLock _lock = new ReentrantLock();
+  private final Condition _notEmpty = _lock.newCondition();
+  private final Condition _notFull = _lock.newCondition();
+  // Guarded by _lock
+  private final ArrayDeque<MessageBatch> _batches = new ArrayDeque<>();
+  private long _bufferSizeInBytes;
+  private Exception _fetchException;
+
+  // Accessed only by the consuming thread
+  private Fetcher _fetcher;
+  private StreamPartitionMsgOffset _nextOffset;
+
+  private volatile int _fetchTimeoutMs;
+
+  public PrefetchingPartitionGroupConsumer(PartitionGroupConsumer consumer, String clientId,
+      long maxBufferSizeInBytes) {
+    Preconditions.checkArgument(maxBufferSizeInBytes > 0, "Max buffer size must be positive, got: %s",
+        maxBufferSizeInBytes);
+    _consumer = consumer;
+    _clientId = clientId;
+    _maxBufferSizeInBytes = maxBufferSizeInBytes;
+  }
+
+  @Override
+  public void start(StreamPartitionMsgOffset startOffset) {
+    _consumer.start(startOffset);
+  }
+
+  @Override
+  public synchronized MessageBatch fetchMessages(StreamPartitionMsgOffset startOffset, int timeoutMs)
+      throws TimeoutException {
+    _fetchTimeoutMs = timeoutMs;
+    if (_fetcher == null || _nextOffset.compareTo(startOffset) != 0) {
+      if (_fetcher != null) {
+        LOGGER.info("Restarting prefetching for client: {} from offset: {}, expected offset: {}", _clientId,
+            startOffset, _nextOffset);
+      }
+      restartFetcher(startOffset);
+    }
+
+    long deadlineMs = System.currentTimeMillis() + timeoutMs;
+    MessageBatch batch;
+    Exception fetchException;
+    _lock.lock();
+    try {
+      while (_batches.isEmpty() && _fetchException == null) {
+        long remainingTimeMs = deadlineMs - System.currentTimeMillis();
+        if (remainingTimeMs <= 0) {
+          return createEmptyBatch(startOffset);
+        }
+        try {
+          _notEmpty.await(remainingTimeMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return createEmptyBatch(startOffset);
+        }
+      }
+      batch = _batches.poll();
+      if (batch != null) {
+        _bufferSizeInBytes -= getSizeInBytes(batch);
+        _notFull.signal();
+        _nextOffset = batch.getOffsetOfNextBatch();
+        return batch;
+      }
+      fetchException = _fetchException;
+    } finally {
+      _lock.unlock();
+    }
+
+    // The fetcher has stopped on the exception, and will be restarted on the next fetch
+    stopFetcher(false);
+    _fetcher = null;
+    if (fetchException instanceof TimeoutException) {
+      throw (TimeoutException) fetchException;
+    }
+    if (fetchException instanceof RuntimeException) {
+      throw (RuntimeException) fetchException;
+    }
+    throw new RuntimeException("Caught exception while prefetching messages for client: " + _clientId,
+        fetchException);
+  }
+
+  @Override
+  public StreamPartitionMsgOffset checkpoint(StreamPartitionMsgOffset lastOffset) {
+    return _consumer.checkpoint(lastOffset);
+  }
+
+  @Override
+  public void close()
+      throws IOException {
+    synchronized (this) {
+      stopFetcher(true);
+      _fetcher = null;
+    }
+    _consumer.close();
+  }
+
+  @VisibleForTesting
+  long getBufferSizeInBytes() {
+    _lock.lock();
+    try {
+      return _bufferSizeInBytes;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  private void restartFetcher(StreamPartitionMsgOffset startOffset) {
+    stopFetcher(false);
+    _lock.lock();
+    try {
+      _batches.clear();
+      _bufferSizeInBytes = 0;
+      _fetchException = null;
+    } finally {
+      _lock.unlock();
+    }
+    _nextOffset = startOffset;
+    _fetcher = new Fetcher(startOffset);
+    _fetcher.start();
+  }
+
+  /**
+   * Stops the fetcher and waits for it to finish. Without interrupting, the fetcher finishes after the ongoing fetch
+   * returns, which keeps the wrapped consumer in a consistent state for the next fetch.
+   */
+  private void stopFetcher(boolean interrupt) {
+    Fetcher fetcher = _fetcher;
+    if (fetcher == null) {
+      return;
+    }
+    fetcher._stopped = true;
+    _lock.lock();
+    try {
+      _notFull.signalAll();
+    } finally {
+      _lock.unlock();
+    }
+    if (interrupt) {
+      fetcher.interrupt();
+    }
+    try {
+      fetcher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOGGER.warn("Interrupted while waiting for the prefetching thread of client: {} to finish", _clientId);
+    }
+  }
+
+  private static long getSizeInBytes(MessageBatch batch) {
+    long sizeInBytes = batch.getSizeInBytes();
+    if (sizeInBytes > 0) {
+      return sizeInBytes;
+    }
+    // Fall back to the payload size when the serialized size is not available
+    sizeInBytes = 0;
+    int messageCount = batch.getMessageCount();
+    for (int i = 0; i < messageCount; i++) {
+      sizeInBytes += batch.getStreamMessage(i).getLength();
+    }
+    return sizeInBytes;
+  }
+
+  private static KafkaMessageBatch createEmptyBatch(StreamPartitionMsgOffset startOffset) {
+    return new KafkaMessageBatch(List.of(), 0, ((LongMsgOffset) startOffset).getOffset(), -1, null, false, 0);
+  }
+
+  private class Fetcher extends Thread {
+    volatile boolean _stopped;
+    StreamPartitionMsgOffset _offset;
+
+    Fetcher(StreamPartitionMsgOffset startOffset) {
+      super(_clientId + "-prefetcher");
+      setDaemon(true);
+      _offset = startOffset;
+    }
+
+    @Override
+    public void run() {
+      while (!_stopped) {
+        MessageBatch batch;
+        try {
+          batch = _consumer.fetchMessages(_offset, _fetchTimeoutMs);
+        } catch (Exception e) {
+          if (!_stopped) {
+            setFetchException(e);
+          }
+          return;
+        }
+        if (batch.getUnfilteredMessageCount() == 0 && !batch.hasDataLoss()
+            && batch.getOffsetOfNextBatch().compareTo(_offset) == 0) {
+          // Nothing fetched, keep fetching without queuing the empty batch
+          continue;
+        }
+        if (!enqueue(batch)) {
+          return;
+        }
+        _offset = batch.getOffsetOfNextBatch();
+      }
+    }
+
+    private boolean enqueue(MessageBatch batch) {
+      long sizeInBytes = getSizeInBytes(batch);
+      _lock.lock();
+      try {
+        while (!_stopped && !_batches.isEmpty() && _bufferSizeInBytes + sizeInBytes > _maxBufferSizeInBytes) {
+          _notFull.await();
+        }
+        if (_stopped) {
+          return false;
+        }
+        _batches.add(batch);
+        _bufferSizeInBytes += sizeInBytes;
+        _notEmpty.signal();
+        return true;
+      } catch (InterruptedException e) {
+        return false;
+      } finally {
+        _lock.unlock();
+      }
+    }
+
+    private void setFetchException(Exception e) {
+      _lock.lock();
+      try {
+        _fetchException = e;
+        _notEmpty.signal();
+      } finally {
+        _lock.unlock();
+      }
+    }
+  }
+}
@@ -0,0 +1,302 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.plugin.stream.kafka;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetOutOfRangeException;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.utils.Bytes;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+
+public class KafkaSharedConsumerManagerTest {
+  private static final String TABLE_NAME = "testTable_REALTIME";
+  private static final String TOPIC = "testTopic";
+  private static final TopicPartition PARTITION_0 = new TopicPartition(TOPIC, 0);
+  private static final TopicPartition PARTITION_1 = new TopicPartition(TOPIC, 1);
+
+  private static Properties getProperties() {
+    Properties properties = new Properties();
+    properties.setProperty(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+    return properties;
+  }
+
+  private static void addRecords(MockConsumer<Bytes, Bytes> consumer, TopicPartition topicPartition,
+      long startOffset, long endOffset) {
+    for (long offset = startOffset; offset < endOffset; offset++) {
+      consumer.addRecord(new ConsumerRecord<>(TOPIC, topicPartition.partition(), offset, null,
+          Bytes.wrap(new byte[]{(byte) offset})));
+    }
+  }
+
+  private static void waitForCondition(BooleanSupplier condition, String errorMessage)
+      throws InterruptedException {
+    long deadlineMs = System.currentTimeMillis() + 10_000L;
+    while (!condition.getAsBoolean()) {
+      if (System.currentTimeMillis() > deadlineMs) {
+        fail(errorMessage);
+      }
+      Thread.sleep(10L);
+    }
+  }
+
+  @Test
+  public void testSharedConsumer() {
+    KafkaSharedConsumerManager manager = new KafkaSharedConsumerManager();
+    MockConsumer<Bytes, Bytes> mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+    mockConsumer.updateBeginningOffsets(Map.of(PARTITION_0, 0L, PARTITION_1, 0L));
+    AtomicInteger numConsumersCreated = new AtomicInteger();
+
+    KafkaSharedConsumerManager.SharedConsumerReference ref0 =
+        manager.tryRegister(TABLE_NAME, getProperties(), PARTITION_0, properties -> {
+          numConsumersCreated.incrementAndGet();
+          return mockConsumer;
+        });
+    KafkaSharedConsumerManager.SharedConsumerReference ref1 =
+        manager.tryRegister(TABLE_NAME, getProperties(), PARTITION_1, properties -> {
+          numConsumersCreated.incrementAndGet();
+          return mockConsumer;
+        });
+    assertNotNull(ref0);
+    assertNotNull(ref1);
+    assertEquals(numConsumersCreated.get(), 1);
+    assertEquals(manager.getNumSharedConsumers(), 1);
+    assertEquals(mockConsumer.assignment(), Set.of(PARTITION_0, PARTITION_1));
+
+    // Same partition cannot be registered twice
+    assertNull(manager.tryRegister(TABLE_NAME, getProperties(), PARTITION_0, properties -> mockConsumer));
+
+    // One poll should fetch records for both partitions after they are positioned
+    assertTrue(ref0.fetchRecords(0, 100).isEmpty());
+    assertTrue(ref1.fetchRecords(0, 100).isEmpty());
+    addRecords(mockConsumer, PARTITION_0, 0, 5);
+    addRecords(mockConsumer, PARTITION_1, 0, 3);
+    List<ConsumerRecord<Bytes, Bytes>> records = ref0.fetchRecords(0, 1000);
+    assertEquals(records.size(), 5);
+    assertEquals(records.get(0).offset(), 0);
+    assertEquals(records.get(4).offset(), 4);
+    records = ref1.fetchRecords(0, 1000);
+    assertEquals(records.size(), 3);
+    assertEquals(records.get(0).offset(), 0);
+    assertEquals(records.get(2).offset(), 2);
+
+    // No more records
+    assertTrue(ref0.fetchRecords(5, 100).isEmpty());
+
+    // Rewind to an earlier offset
+    assertTrue(ref0.fetchRecords(2, 100).isEmpty());
+    addRecords(mockConsumer, PARTITION_0, 2, 5);
+    records = ref0.fetchRecords(2, 1000);
+    assertEquals(records.size(), 3);
+    assertEquals(records.get(0).offset(), 2);
+
+    // Consumer should be closed after all the partitions are unregistered
+    ref0.close();
+    assertEquals(mockConsumer.assignment(), Set.of(PARTITION_1));
+    assertEquals(manager.getNumSharedConsumers(), 1);
+    ref1.close();
+    assertTrue(mockConsumer.closed());
+    assertEquals(manager.getNumSharedConsumers(), 0);
+  }
+
+  @Test
+  public void testPauseAndResume()
+      throws InterruptedException {
+    KafkaSharedConsumerManager manager = new KafkaSharedConsumerManager();
+    MockConsumer<Bytes, Bytes> mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+    mockConsumer.updateBeginningOffsets(Map.of(PARTITION_0, 0L, PARTITION_1, 0L));
+    try (KafkaSharedConsumerManager.SharedConsumerReference ref0 = manager.tryRegister(TABLE_NAME, getProperties(),
+        PARTITION_0, properties -> mockConsumer);
+        KafkaSharedConsumerManager.SharedConsumerReference ref1 = manager.tryRegister(TABLE_NAME, getProperties(),
+            PARTITION_1, properties -> mockConsumer)) {
+      assertNotNull(ref0);
+      assertNotNull(ref1);
+      assertTrue(ref1.fetchRecords(0, 100).isEmpty());
+
+      // Partition 1 should be paused when too many records are buffered
+      int numRecords = KafkaSharedConsumerManager.MAX_BUFFERED_RECORDS_PER_PARTITION;
+      addRecords(mockConsumer, PARTITION_1, 0, numRecords);
+      assertTrue(ref0.fetchRecords(0, 100).isEmpty());
+      waitForCondition(() -> mockConsumer.paused().equals(Set.of(PARTITION_1)), "Partition 1 is not paused");
+
+      // Partition 1 should be resumed after the buffered records are fetched
+      assertEquals(ref1.fetchRecords(0, 1000).size(), numRecords);
+      waitForCondition(() -> mockConsumer.paused().isEmpty(), "Partition 1 is not resumed");
+    }
+    assertEquals(manager.getNumSharedConsumers(), 0);
+  }
+
+  @Test
+  public void testPauseUntilPositioned()
+      throws InterruptedException {
+    KafkaSharedConsumerManager manager = new KafkaSharedConsumerManager();
+    MockConsumer<Bytes, Bytes> mockConsumer = new MockConsumer<>(OffsetResetStrategy.LATEST);
+    mockConsumer.updateEndOffsets(Map.of(PARTITION_0, 5L, PARTITION_1, 5L));
+    try (KafkaSharedConsumerManager.SharedConsumerReference ref0 = manager.tryRegister(TABLE_NAME, getProperties(),
+        PARTITION_0, properties -> mockConsumer)) {
+      assertNotNull(ref0);
+      // New partition should not be polled from the reset position (latest) before it is positioned, otherwise the
+      // records before the reset position are skipped
+      assertEquals(mockConsumer.paused(), Set.of(PARTITION_0));
+      addRecords(mockConsumer, PARTITION_0, 0, 5);
+      Thread.sleep(KafkaSharedConsumerManager.MAX_POLL_TIME_MS);
+      List<ConsumerRecord<Bytes, Bytes>> records = ref0.fetchRecords(0, 1000);
+      assertEquals(records.size(), 5);
+      assertEquals(records.get(0).offset(), 0);
+      assertTrue(mockConsumer.paused().isEmpty());
+
+      // Partition registered later should be paused until positioned, while the positioned partition is not paused
+      try (KafkaSharedConsumerManager.SharedConsumerReference ref1 = manager.tryRegister(TABLE_NAME, getProperties(),
+          PARTITION_1, properties -> mockConsumer)) {
+        assertNotNull(ref1);
+        assertEquals(mockConsumer.paused(), Set.of(PARTITION_1));
+        addRecords(mockConsumer, PARTITION_1, 0, 5);
+        records = ref1.fetchRecords(2, 1000);
+        assertEquals(records.size(), 3);
+        assertEquals(records.get(0).offset(), 2);
+        waitForCondition(() -> mockConsumer.paused().isEmpty(), "Partition 1 is not resumed");
+      }
+    }
+    assertEquals(manager.getNumSharedConsumers(), 0);
+  }
+
+  @Test
+  public void testPartitionPollException()
+      throws InterruptedException {
+    KafkaSharedConsumerManager manager = new KafkaSharedConsumerManager();
+    MockConsumer<Bytes, Bytes> mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+    mockConsumer.updateBeginningOffsets(Map.of(PARTITION_0, 0L, PARTITION_1, 0L));
+    try (KafkaSharedConsumerManager.SharedConsumerReference ref0 = manager.tryRegister(TABLE_NAME, getProperties(),
+        PARTITION_0, properties -> mockConsumer);
+        KafkaSharedConsumerManager.SharedConsumerReference ref1 = manager.tryRegister(TABLE_NAME, getProperties(),
+            PARTITION_1, properties -> mockConsumer)) {
+      assertNotNull(ref0);
+      assertNotNull(ref1);
+      assertTrue(ref0.fetchRecords(0, 100).isEmpty());
+      assertTrue(ref1.fetchRecords(0, 100).isEmpty());
+
+      // Exception for partition 0 should only fail the fetch of partition 0, which is paused until positioned again
+      mockConsumer.setPollException(new OffsetOutOfRangeException(Map.of(PARTITION_0, 0L)));
+      waitForCondition(() -> mockConsumer.paused().equals(Set.of(PARTITION_0)), "Partition 0 is not paused");
+      addRecords(mockConsumer, PARTITION_1, 0, 3);
+      assertEquals(ref1.fetchRecords(0, 1000).size(), 3);
+      try {
+        ref0.fetchRecords(0, 1000);
+        fail("Fetch of partition 0 should fail");
+      } catch (RuntimeException e) {
+        assertTrue(e.getCause() instanceof OffsetOutOfRangeException);
+      }
+
+      // Partition 0 should be resumed after it is positioned again
+      addRecords(mockConsumer, PARTITION_0, 0, 2);
+      assertEquals(ref0.fetchRecords(0, 1000).size(), 2);
+      assertTrue(mockConsumer.paused().isEmpty());
+    }
+    assertEquals(manager.getNumSharedConsumers(), 0);
+  }
+
+  @Test
+  public void testTransientPollException() {
+    KafkaSharedConsumerManager manager = new KafkaSharedConsumerManager();
+    MockConsumer<Bytes, Bytes> mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+    mockConsumer.updateBeginningOffsets(Map.of(PARTITION_0, 0L));
+    try (KafkaSharedConsumerManager.SharedConsumerReference ref0 = manager.tryRegister(TABLE_NAME, getProperties(),
+        PARTITION_0, properties -> mockConsumer)) {
+      assertNotNull(ref0);
+      assertTrue(ref0.fetchRecords(0, 100).isEmpty());
+
+      // Exception not specific to partitions should be retried by the poller without failing the fetch
+      mockConsumer.setPollException(new KafkaException("Transient failure"));
+      addRecords(mockConsumer, PARTITION_0, 0, 3);
+      assertEquals(ref0.fetchRecords(0, 5000).size(), 3);
+    }
+    assertEquals(manager.getNumSharedConsumers(), 0);
+  }
+
+  @Test
+  public void testNoBlockingAcrossPartitions()
+      throws Exception {
+    KafkaSharedConsumerManager manager = new KafkaSharedConsumerManager();
+    MockConsumer<Bytes, Bytes> mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+    mockConsumer.updateBeginningOffsets(Map.of(PARTITION_0, 0L, PARTITION_1, 0L));
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    try (KafkaSharedConsumerManager.SharedConsumerReference ref0 = manager.tryRegister(TABLE_NAME, getProperties(),
+        PARTITION_0, properties -> mockConsumer);
+        KafkaSharedConsumerManager.SharedConsumerReference ref1 = manager.tryRegister(TABLE_NAME, getProperties(),
+            PARTITION_1, properties -> mockConsumer)) {
+      assertNotNull(ref0);
+      assertNotNull(ref1);
+
+      // A long fetch on partition 0 without records should not block the fetch on partition 1
+      Future<List<ConsumerRecord<Bytes, Bytes>>> future = executorService.submit(() -> ref0.fetchRecords(0, 10_000));
+      addRecords(mockConsumer, PARTITION_1, 0, 3);
+      long startTimeMs = System.currentTimeMillis();
+      assertEquals(ref1.fetchRecords(0, 10_000).size(), 3);
+      assertTrue(System.currentTimeMillis() - startTimeMs < 5_000);
+      assertFalse(future.isDone());
+
+      // The waiting fetch on partition 0 should return as soon as its records are polled
+      addRecords(mockConsumer, PARTITION_0, 0, 2);
+      assertEquals(future.get(5, TimeUnit.SECONDS).size(), 2);
+    } finally {
+      executorService.shutdownNow();
+    }
+    assertTrue(mockConsumer.closed());
+    assertEquals(manager.getNumSharedConsumers(), 0);
+  }
+
+  @Test
+  public void testDifferentTables() {
+    KafkaSharedConsumerManager manager = new KafkaSharedConsumerManager();
+    MockConsumer<Bytes, Bytes> mockConsumer0 = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+    MockConsumer<Bytes, Bytes> mockConsumer1 = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+    try (KafkaSharedConsumerManager.SharedConsumerReference ref0 = manager.tryRegister("table0_REALTIME",
+        getProperties(), PARTITION_0, properties -> mockConsumer0);
+        KafkaSharedConsumerManager.SharedConsumerReference ref1 = manager.tryRegister("table1_REALTIME",
+            getProperties(), PARTITION_0, properties -> mockConsumer1)) {
+      // The same partition consumed by different tables should use different consumers
+      assertNotNull(ref0);
+      assertNotNull(ref1);
+      assertEquals(manager.getNumSharedConsumers(), 2);
+    }
+    assertTrue(mockConsumer0.closed());
+    assertTrue(mockConsumer1.closed());
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.plugin.stream.kafka;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.pinot.spi.stream.BytesStreamMessage;
+import org.apache.pinot.spi.stream.LongMsgOffset;
+import org.apache.pinot.spi.stream.MessageBatch;
+import org.apache.pinot.spi.stream.PartitionGroupConsumer;
+import org.apache.pinot.spi.stream.StreamMessageMetadata;
+import org.apache.pinot.spi.stream.StreamPartitionMsgOffset;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+
+public class PrefetchingPartitionGroupConsumerTest {
+  private static final int NUM_MESSAGES = 100;
+  private static final int MESSAGES_PER_BATCH = 10;
+  private static final int MESSAGE_SIZE = 10;
+  private static final int TIMEOUT_MS = 1000;
+
+  @Test
+  public void testFetchMessages()
+      throws Exception {
+    FakeConsumer fakeConsumer = new FakeConsumer(-1);
+    // Buffer can hold 2 batches
+    try (PrefetchingPartitionGroupConsumer consumer = new PrefetchingPartitionGroupConsumer(fakeConsumer, "testClient",
+        2 * MESSAGES_PER_BATCH * MESSAGE_SIZE)) {
+      long offset = 0;
+      while (offset < NUM_MESSAGES) {
+        MessageBatch batch = consumer.fetchMessages(new LongMsgOffset(offset), TIMEOUT_MS);
+        assertEquals(batch.getMessageCount(), MESSAGES_PER_BATCH);
+        for (int i = 0; i < batch.getMessageCount(); i++) {
+          assertEquals(batch.getStreamMessage(i).getMetadata().getOffset(), new LongMsgOffset(offset + i));
+        }
+        offset = ((LongMsgOffset) batch.getOffsetOfNextBatch()).getOffset();
+        assertTrue(consumer.getBufferSizeInBytes() <= 2 * MESSAGES_PER_BATCH * MESSAGE_SIZE);
+      }
+
+      // No more messages, should return empty batch after timeout
+      MessageBatch batch = consumer.fetchMessages(new LongMsgOffset(offset), 100);
+      assertEquals(batch.getMessageCount(), 0);
+      assertEquals(batch.getOffsetOfNextBatch(), new LongMsgOffset(offset));
+
+      // Rewind to an earlier offset
+      batch = consumer.fetchMessages(new LongMsgOffset(55), TIMEOUT_MS);
+      assertEquals(batch.getMessageCount(), MESSAGES_PER_BATCH);
+      assertEquals(batch.getStreamMessage(0).getMetadata().getOffset(), new LongMsgOffset(55));
+      assertEquals(batch.getOffsetOfNextBatch(), new LongMsgOffset(65));
+    }
+    assertTrue(fakeConsumer._closed);
+  }
+
+  @Test
+  public void testBoundedBuffer()
+      throws Exception {
+    FakeConsumer fakeConsumer = new FakeConsumer(-1);
+    try (PrefetchingPartitionGroupConsumer consumer = new PrefetchingPartitionGroupConsumer(fakeConsumer, "testClient",
+        3 * MESSAGES_PER_BATCH * MESSAGE_SIZE)) {
+      consumer.fetchMessages(new LongMsgOffset(0), TIMEOUT_MS);
+      // The fetcher should stop fetching after the buffer is full
+      long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+      while (consumer.getBufferSizeInBytes() < 3 * MESSAGES_PER_BATCH * MESSAGE_SIZE
+          && System.currentTimeMillis() < deadlineMs) {
+        Thread.sleep(10);
+      }
+      Thread.sleep(100);
+      // 1 batch returned, 3 batches buffered and 1 batch waiting to be buffered
+      assertEquals(fakeConsumer._numFetches.get(), 5);
+      assertEquals(consumer.getBufferSizeInBytes(), 3 * MESSAGES_PER_BATCH * MESSAGE_SIZE);
+    }
+  }
+
+  @Test
+  public void testFetchException()
+      throws Exception {
+    // Fail the fetch from offset 30
+    FakeConsumer fakeConsumer = new FakeConsumer(30);
+    try (PrefetchingPartitionGroupConsumer consumer = new PrefetchingPartitionGroupConsumer(fakeConsumer, "testClient",
+        10 * MESSAGES_PER_BATCH * MESSAGE_SIZE)) {
+      // Batches fetched before the exception should be returned first
+      long offset = 0;
+      for (int i = 0; i < 3; i++) {
+        MessageBatch batch = consumer.fetchMessages(new LongMsgOffset(offset), TIMEOUT_MS);
+        assertEquals(batch.getMessageCount(), MESSAGES_PER_BATCH);
+        offset = ((LongMsgOffset) batch.getOffsetOfNextBatch()).getOffset();
+      }
+      long startOffset = offset;
+      expectThrows(TimeoutException.class, () -> consumer.fetchMessages(new LongMsgOffset(startOffset), TIMEOUT_MS));
+
+      // Should restart fetching on the next fetch
+      fakeConsumer._failAtOffset = -1;
+      MessageBatch batch = consumer.fetchMessages(new LongMsgOffset(startOffset), TIMEOUT_MS);
+      assertEquals(batch.getMessageCount(), MESSAGES_PER_BATCH);
+      assertEquals(batch.getStreamMessage(0).getMetadata().getOffset(), new LongMsgOffset(startOffset));
+    }
+  }
+
+  private static class FakeConsumer implements PartitionGroupConsumer {
+    final AtomicInteger _numFetches = new AtomicInteger();
+    volatile long _failAtOffset;
+    volatile boolean _closed;
+
+    FakeConsumer(long failAtOffset) {
+      _failAtOffset = failAtOffset;
+    }
+
+    @Override
+    public synchronized MessageBatch fetchMessages(StreamPartitionMsgOffset startMsgOffset, int timeoutMs)
+        throws TimeoutException {
+      _numFetches.incrementAndGet();
+      long startOffset = ((LongMsgOffset) startMsgOffset).getOffset();
+      if (startOffset == _failAtOffset) {
+        throw new TimeoutException("Failed to fetch from offset: " + startOffset);
+      }
+      long endOffset = Math.min(startOffset + MESSAGES_PER_BATCH, NUM_MESSAGES);
+      if (startOffset >= endOffset) {
+        try {
+          Thread.sleep(Math.min(timeoutMs, 10));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return new KafkaMessageBatch(List.of(), 0, startOffset, -1, null, false, 0);
+      }
+      List<BytesStreamMessage> messages = new ArrayList<>();
+      StreamMessageMetadata metadata = null;
+      for (long offset = startOffset; offset < endOffset; offset++) {
+        metadata = new StreamMessageMetadata.Builder().setOffset(new LongMsgOffset(offset),
+            new LongMsgOffset(offset + 1)).build();
+        messages.add(new BytesStreamMessage(null, new byte[MESSAGE_SIZE], metadata));
+      }
+      return new KafkaMessageBatch(messages, messages.size(), endOffset, startOffset, metadata, false,
+          (long) messages.size() * MESSAGE_SIZE);
+    }
+
+    @Override
+    public void close() {
+      _closed = true;
+    }
+  }
+}
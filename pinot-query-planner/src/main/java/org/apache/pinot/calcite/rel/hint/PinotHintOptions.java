@@ -59,6 +59,12 @@ public class PinotHintOptions {
     /** Throw an exception on reaching num_groups_limit instead of just setting a flag. */
     public static final String ERROR_ON_NUM_GROUPS_LIMIT = "error_on_num_groups_limit";
 
+    /**
+     * Spill the rows of the new groups to disk on reaching num_groups_limit, and aggregate them partition by partition
+     * afterward instead of dropping them.
+     */
+    public static final String SPILL_ON_NUM_GROUPS_LIMIT = "spill_on_num_groups_limit";
+
     /** Max number of keys produced by MSQE aggregation. */
     public static final String NUM_GROUPS_LIMIT = "num_groups_limit";
 
@@ -87,6 +93,9 @@ public class PinotHintOptions {
     public static final String DYNAMIC_BROADCAST_JOIN_STRATEGY = "dynamic_broadcast";
     // "lookup" can be used when the right table is a dimension table replicated to all workers
     public static final String LOOKUP_JOIN_STRATEGY = "lookup";
+    // "sort_merge" can be used for large equi-joins to stream both inputs sorted on the join keys instead of building a
+    // hash table for the right input
+    public static final String SORT_MERGE_JOIN_STRATEGY = "sort_merge";
 
     public static final String LEFT_DISTRIBUTION_TYPE = "left_distribution_type";
     public static final String RIGHT_DISTRIBUTION_TYPE = "right_distribution_type";
@@ -97,9 +106,11 @@ public class PinotHintOptions {
     public static final String MAX_ROWS_IN_JOIN = "max_rows_in_join";
 
     /**
-     * Mode when join overflow happens, supported values: THROW or BREAK.
+     * Mode when join overflow happens, supported values: THROW, BREAK or SPILL.
      *   THROW(default): Break right table build process, and throw exception, no JOIN with left table performed.
      *   BREAK: Break right table build process, continue to perform JOIN operation, results might be partial.
+     *   SPILL: Spill both tables to disk partitioned by the join keys, and perform JOIN operation partition by
+     *          partition. Only supported by the hash join, and other joins fall back to THROW.
      */
     public static final String JOIN_OVERFLOW_MODE = "join_overflow_mode";
 
@@ -113,6 +124,20 @@ public class PinotHintOptions {
      */
     public static final String APPEND_DISTINCT_TO_SEMI_JOIN_PROJECT = "append_distinct_to_semi_join_project";
 
+    /**
+     * Indicates that the join keys of the right input should be pushed to the leaf stage of the left input as a runtime
+     * filter, so that the left rows that cannot be matched are filtered out before being shipped to the join. Only
+     * applied to INNER, RIGHT and SEMI joins.
+     */
+    public static final String RUNTIME_FILTER = "runtime_filter";
+
+    /**
+     * Max number of distinct values of a join key to be pushed as an IN filter for the runtime filter. When there are
+     * more distinct values, a range filter on the min and max value is pushed instead.
+     */
+    public static final String RUNTIME_FILTER_MAX_IN_LIST_SIZE = "runtime_filter_max_in_list_size";
+    public static final int DEFAULT_RUNTIME_FILTER_MAX_IN_LIST_SIZE = 10_000;
+
     @Nullable
     public static Map<String, String> getJoinHintOptions(Join join) {
       return PinotHintStrategyTable.getHintOptions(join.getHints(), JOIN_HINT_OPTIONS);
@@ -128,6 +153,15 @@ public class PinotHintOptions {
       return LOOKUP_JOIN_STRATEGY.equalsIgnoreCase(getJoinStrategyHint(join));
     }
 
+    public static boolean useSortMergeJoinStrategy(Join join) {
+      return SORT_MERGE_JOIN_STRATEGY.equalsIgnoreCase(getJoinStrategyHint(join));
+    }
+
+    public static boolean useRuntimeFilter(Join join) {
+      return Boolean.parseBoolean(
+          PinotHintStrategyTable.getHintOption(join.getHints(), JOIN_HINT_OPTIONS, RUNTIME_FILTER));
+    }
+
     @Nullable
     public static DistributionType getLeftDistributionType(Map<String, String> joinHintOptions) {
       return DistributionType.fromHint(joinHintOptions.get(LEFT_DISTRIBUTION_TYPE));
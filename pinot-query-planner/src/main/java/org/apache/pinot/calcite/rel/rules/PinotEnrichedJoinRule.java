@@ -338,11 +338,12 @@ public class PinotEnrichedJoinRule {
   }
 
   /**
-   * Temporarily disable conversion of lookup join and non-equijoin to EnrichedJoin
+   * Temporarily disable conversion of lookup join, sort merge join and non-equijoin to EnrichedJoin
    */
   private static boolean canConvertJoin(LogicalJoin join) {
-    // Disable lookup join for now
-    if (PinotHintOptions.JoinHintOptions.useLookupJoinStrategy(join)) {
+    // Disable lookup join and sort merge join for now
+    if (PinotHintOptions.JoinHintOptions.useLookupJoinStrategy(join)
+        || PinotHintOptions.JoinHintOptions.useSortMergeJoinStrategy(join)) {
       return false;
     }
 
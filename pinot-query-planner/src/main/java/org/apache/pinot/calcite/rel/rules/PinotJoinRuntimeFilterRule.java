@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.calcite.rel.rules;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.RelDistributions;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Exchange;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.JoinInfo;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.hint.RelHint;
+import org.apache.calcite.rel.logical.LogicalAsofJoin;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.tools.RelBuilder;
+import org.apache.calcite.tools.RelBuilderFactory;
+import org.apache.pinot.calcite.rel.hint.PinotHintOptions;
+import org.apache.pinot.calcite.rel.logical.PinotLogicalExchange;
+import org.apache.pinot.calcite.rel.logical.PinotRelExchangeType;
+
+
+/**
+ * Special rule for Pinot, this rule pushes a runtime filter built from the join keys of the right input into the leaf
+ * stage of the left input, so that the left rows that cannot be matched by the join are filtered out by the leaf stage
+ * (leveraging the indexes) instead of being shipped to the join. It is applied to the joins with the
+ * {@code runtime_filter} join hint.
+ *
+ *                  ...                                          ...
+ *                   |                                            |
+ *             [ Inner Join ]                               [ Inner Join ]
+ *             /            \                               /            \
+ *        [xChange]      [xChange]                     [xChange]      [xChange]
+ *           /                \                           /                \
+ *     [Proj/Filter]     [Proj/Filter]            [Semi Join]         [Proj/Filter]
+ *          |                  |                  /         \               |
+ *     [Table Scan ]     [Table Scan ]    [Proj/Filter]  [xChange]     [Table Scan ]
+ *                                              |             \
+ *                                        [Table Scan ]   [Project (keys)]
+ *                                                               |
+ *                                                         [Proj/Filter]
+ *                                                               |
+ *                                                         [Table Scan ]
+ *
+ * <p>The inserted SEMI join uses the same dynamic broadcast mechanism as {@link PinotJoinToDynamicBroadcastRule}: the
+ * join keys of the right input are sent to the left leaf stage through a pipeline breaker, and attached to the leaf
+ * stage query as a filter. Because the original join still matches the rows, the runtime filter can be approximate:
+ * when there are too many distinct join keys, a range filter on the min and max join key is attached instead of the IN
+ * filter (see {@link PinotHintOptions.JoinHintOptions#RUNTIME_FILTER_MAX_IN_LIST_SIZE}).
+ *
+ * <p>This rewrite computes the right input twice (unless spools are enabled to share the stage), so it should only be
+ * used when the right input is much smaller than the left input, e.g. joining a fact table with a filtered dimension
+ * table.
+ *
+ * TODO: Automatically apply this rule based on the estimated cardinality of both inputs.
+ */
+public class PinotJoinRuntimeFilterRule extends RelOptRule {
+  public static final PinotJoinRuntimeFilterRule INSTANCE =
+      new PinotJoinRuntimeFilterRule(PinotRuleUtils.PINOT_REL_FACTORY);
+
+  public PinotJoinRuntimeFilterRule(RelBuilderFactory factory) {
+    super(operand(Join.class, any()), factory, null);
+  }
+
+  @Override
+  public boolean matches(RelOptRuleCall call) {
+    Join join = call.rel(0);
+    if (join instanceof LogicalAsofJoin || !PinotHintOptions.JoinHintOptions.useRuntimeFilter(join)) {
+      return false;
+    }
+
+    // Only apply this rule when the left rows that cannot be matched by the join are not needed
+    JoinRelType joinType = join.getJoinType();
+    if (joinType != JoinRelType.INNER && joinType != JoinRelType.RIGHT && joinType != JoinRelType.SEMI) {
+      return false;
+    }
+    if (join.analyzeCondition().leftKeys.isEmpty()) {
+      return false;
+    }
+
+    // Apply this rule if the runtime filter can be pushed to the left leaf stage, and is not already pushed
+    RelNode left = PinotRuleUtils.unboxRel(join.getLeft());
+    RelNode right = PinotRuleUtils.unboxRel(join.getRight());
+    if (!(left instanceof Exchange) || !(right instanceof Exchange)) {
+      return false;
+    }
+    RelNode leftInput = PinotRuleUtils.unboxRel(left.getInput(0));
+    return !hasRuntimeFilter(leftInput) && PinotRuleUtils.canPushDynamicBroadcastToLeaf(leftInput);
+  }
+
+  private static boolean hasRuntimeFilter(RelNode node) {
+    if (!(node instanceof Join)) {
+      return false;
+    }
+    RelNode right = PinotRuleUtils.unboxRel(((Join) node).getRight());
+    return right instanceof PinotLogicalExchange
+        && ((PinotLogicalExchange) right).getExchangeType() == PinotRelExchangeType.PIPELINE_BREAKER;
+  }
+
+  @Override
+  public void onMatch(RelOptRuleCall call) {
+    Join join = call.rel(0);
+    JoinInfo joinInfo = join.analyzeCondition();
+    Exchange left = (Exchange) PinotRuleUtils.unboxRel(join.getLeft());
+    Exchange right = (Exchange) PinotRuleUtils.unboxRel(join.getRight());
+    RelNode leftInput = left.getInput();
+
+    // Only send the join keys of the right input to the left leaf stage
+    RelBuilder relBuilder = call.builder();
+    RelNode rightKeys = relBuilder.push(right.getInput()).project(relBuilder.fields(joinInfo.rightKeys)).build();
+    PinotLogicalExchange filterExchange;
+    // TODO: Automatically figure out table colocation. In order to do that, distribution trait must be propagated
+    //       before applying this rule.
+    boolean colocatedByJoinKeys = Boolean.TRUE.equals(PinotHintOptions.JoinHintOptions.isColocatedByJoinKeys(join));
+    if (colocatedByJoinKeys) {
+      filterExchange =
+          PinotLogicalExchange.create(rightKeys, RelDistributions.SINGLETON, PinotRelExchangeType.PIPELINE_BREAKER,
+              true);
+    } else {
+      filterExchange = PinotLogicalExchange.create(rightKeys, RelDistributions.BROADCAST_DISTRIBUTED,
+          PinotRelExchangeType.PIPELINE_BREAKER, false);
+    }
+
+    int numKeys = joinInfo.rightKeys.size();
+    List<Integer> filterKeys = new ArrayList<>(numKeys);
+    for (int i = 0; i < numKeys; i++) {
+      filterKeys.add(i);
+    }
+    RexNode filterCondition = RelOptUtil.createEquiJoinCondition(leftInput, joinInfo.leftKeys, filterExchange,
+        filterKeys, join.getCluster().getRexBuilder());
+    Join filterJoin = (Join) join.copy(join.getTraitSet(), filterCondition, leftInput, filterExchange, JoinRelType.SEMI,
+        false).withHints(List.of(getRuntimeFilterHint(join)));
+
+    RelNode newLeft = left.copy(left.getTraitSet(), List.of(filterJoin));
+    call.transformTo(join.copy(join.getTraitSet(), List.of(newLeft, right)));
+  }
+
+  /**
+   * Returns the join hint for the inserted SEMI join, which marks it as a runtime filter so that the leaf stage can
+   * attach an approximate filter.
+   */
+  private static RelHint getRuntimeFilterHint(Join join) {
+    RelHint.Builder builder = RelHint.builder(PinotHintOptions.JOIN_HINT_OPTIONS)
+        .hintOption(PinotHintOptions.JoinHintOptions.RUNTIME_FILTER, "true");
+    Map<String, String> joinHintOptions = PinotHintOptions.JoinHintOptions.getJoinHintOptions(join);
+    if (joinHintOptions != null) {
+      String maxInListSize = joinHintOptions.get(PinotHintOptions.JoinHintOptions.RUNTIME_FILTER_MAX_IN_LIST_SIZE);
+      if (maxInListSize != null) {
+        builder.hintOption(PinotHintOptions.JoinHintOptions.RUNTIME_FILTER_MAX_IN_LIST_SIZE, maxInListSize);
+      }
+    }
+    return builder.build();
+  }
+}
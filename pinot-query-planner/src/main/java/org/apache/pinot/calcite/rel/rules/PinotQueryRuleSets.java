@@ -251,6 +251,8 @@ public class PinotQueryRuleSets {
 
         PinotSingleValueAggregateRemoveRule.INSTANCE,
         PinotJoinExchangeNodeInsertRule.INSTANCE,
+        // apply sort merge join rule after exchange is inserted
+        PinotSortMergeJoinRule.INSTANCE,
         PinotAggregateExchangeNodeInsertRule.SortProjectAggregate.INSTANCE,
         PinotAggregateExchangeNodeInsertRule.SortAggregate.INSTANCE,
         PinotAggregateExchangeNodeInsertRule.WithoutSort.INSTANCE,
@@ -260,6 +262,8 @@ public class PinotQueryRuleSets {
 
         // apply dynamic broadcast rule after exchange is inserted/
         PinotJoinToDynamicBroadcastRule.INSTANCE,
+        // push runtime filter for the joins not converted to dynamic broadcast
+        PinotJoinRuntimeFilterRule.INSTANCE,
 
         // remove exchanges when there's duplicates
         PinotExchangeEliminationRule.INSTANCE,
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.calcite.rel.rules;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelFieldCollation;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.JoinInfo;
+import org.apache.calcite.rel.logical.LogicalAsofJoin;
+import org.apache.calcite.tools.RelBuilderFactory;
+import org.apache.pinot.calcite.rel.hint.PinotHintOptions;
+import org.apache.pinot.calcite.rel.logical.PinotLogicalExchange;
+import org.apache.pinot.calcite.rel.logical.PinotLogicalSortExchange;
+
+
+/**
+ * Special rule for Pinot, this rule converts the equi-join with the {@code sort_merge} join strategy hint into a sort
+ * merge join, by replacing the hash distributed exchanges of both inputs with sort exchanges on the join keys. Each
+ * sender sorts its own rows, and the receiver merges the sorted streams from all the senders, so that both inputs
+ * arrive sorted on the join keys without being materialized on the receiver, and can be joined by streaming them at
+ * the same time without building a hash table for the right input.
+ * <p>This rule must be applied after the exchanges are inserted for the join. The join is planned as a sort merge join
+ * only when both inputs are sorted on the join keys (see {@link #isSortedOnJoinKeys}), so that the join falls back to
+ * hash join when this rule is not applied.
+ *
+ * TODO: Skip the sort on the sender side when the input is already sorted on the join keys (e.g. scan on the sorted
+ *       column of the table).
+ */
+public class PinotSortMergeJoinRule extends RelOptRule {
+  public static final PinotSortMergeJoinRule INSTANCE = new PinotSortMergeJoinRule(PinotRuleUtils.PINOT_REL_FACTORY);
+
+  public PinotSortMergeJoinRule(RelBuilderFactory factory) {
+    super(operand(Join.class, any()), factory, null);
+  }
+
+  @Override
+  public boolean matches(RelOptRuleCall call) {
+    Join join = call.rel(0);
+    if (join instanceof LogicalAsofJoin || !PinotHintOptions.JoinHintOptions.useSortMergeJoinStrategy(join)) {
+      return false;
+    }
+    JoinInfo joinInfo = join.analyzeCondition();
+    return !joinInfo.leftKeys.isEmpty() && isHashExchange(PinotRuleUtils.unboxRel(join.getLeft()))
+        && isHashExchange(PinotRuleUtils.unboxRel(join.getRight()));
+  }
+
+  private static boolean isHashExchange(RelNode node) {
+    return node instanceof PinotLogicalExchange
+        && ((PinotLogicalExchange) node).getDistribution().getType() == RelDistribution.Type.HASH_DISTRIBUTED;
+  }
+
+  @Override
+  public void onMatch(RelOptRuleCall call) {
+    Join join = call.rel(0);
+    JoinInfo joinInfo = join.analyzeCondition();
+    RelNode newLeft =
+        createSortExchange((PinotLogicalExchange) PinotRuleUtils.unboxRel(join.getLeft()), joinInfo.leftKeys);
+    RelNode newRight =
+        createSortExchange((PinotLogicalExchange) PinotRuleUtils.unboxRel(join.getRight()), joinInfo.rightKeys);
+    call.transformTo(join.copy(join.getTraitSet(), join.getCondition(), newLeft, newRight, join.getJoinType(),
+        join.isSemiJoinDone()));
+  }
+
+  private static PinotLogicalSortExchange createSortExchange(PinotLogicalExchange exchange, List<Integer> keys) {
+    // Sort on the sender side, and merge the sorted streams on the receiver side
+    return PinotLogicalSortExchange.create(exchange.getInput(), exchange.getDistribution(), exchange.getExchangeType(),
+        getCollation(keys), true, true);
+  }
+
+  private static RelCollation getCollation(List<Integer> keys) {
+    List<RelFieldCollation> fieldCollations = new ArrayList<>(keys.size());
+    for (int key : keys) {
+      fieldCollations.add(
+          new RelFieldCollation(key, RelFieldCollation.Direction.ASCENDING, RelFieldCollation.NullDirection.LAST));
+    }
+    return RelCollations.of(fieldCollations);
+  }
+
+  /**
+   * Returns whether the given join input is sorted on the given join keys in ascending order, which is required by the
+   * sort merge join.
+   */
+  public static boolean isSortedOnJoinKeys(RelNode input, List<Integer> keys) {
+    input = PinotRuleUtils.unboxRel(input);
+    if (!(input instanceof PinotLogicalSortExchange) || !((PinotLogicalSortExchange) input).isSortOnReceiver()) {
+      return false;
+    }
+    List<RelFieldCollation> fieldCollations = ((PinotLogicalSortExchange) input).getCollation().getFieldCollations();
+    int numKeys = keys.size();
+    if (fieldCollations.size() < numKeys) {
+      return false;
+    }
+    for (int i = 0; i < numKeys; i++) {
+      RelFieldCollation fieldCollation = fieldCollations.get(i);
+      if (fieldCollation.getFieldIndex() != keys.get(i)
+          || fieldCollation.getDirection() != RelFieldCollation.Direction.ASCENDING) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -65,6 +65,7 @@ import org.apache.pinot.calcite.rel.logical.PinotLogicalSortExchange;
 import org.apache.pinot.calcite.rel.logical.PinotLogicalTableScan;
 import org.apache.pinot.calcite.rel.logical.PinotRelExchangeType;
 import org.apache.pinot.calcite.rel.rules.PinotRuleUtils;
+import org.apache.pinot.calcite.rel.rules.PinotSortMergeJoinRule;
 import org.apache.pinot.common.metrics.BrokerMeter;
 import org.apache.pinot.common.metrics.BrokerMetrics;
 import org.apache.pinot.common.utils.DataSchema;
@@ -774,6 +775,11 @@ public final class RelToPlanNodeConverter {
       Preconditions.checkState(projectInput instanceof TableScan,
           "Right input for lookup join must be a Project over TableScan, got Project over: %s",
           projectInput.getClass().getSimpleName());
+    } else if (PinotHintOptions.JoinHintOptions.useSortMergeJoinStrategy(join) && !joinInfo.leftKeys.isEmpty()
+        && PinotSortMergeJoinRule.isSortedOnJoinKeys(join.getLeft(), joinInfo.leftKeys)
+        && PinotSortMergeJoinRule.isSortedOnJoinKeys(join.getRight(), joinInfo.rightKeys)) {
+      // Both inputs are sorted on the join keys by the PinotSortMergeJoinRule
+      joinStrategy = JoinNode.JoinStrategy.SORT_MERGE;
     } else {
       // TODO: Consider adding DYNAMIC_BROADCAST as a separate join strategy
       joinStrategy = JoinNode.JoinStrategy.HASH;
@@ -378,6 +378,8 @@ public class PlanNodeDeserializer {
         return JoinNode.JoinStrategy.LOOKUP;
       case AS_OF:
         return JoinNode.JoinStrategy.ASOF;
+      case SORT_MERGE:
+        return JoinNode.JoinStrategy.SORT_MERGE;
       default:
         throw new IllegalStateException("Unsupported JoinStrategy: " + joinStrategy);
     }
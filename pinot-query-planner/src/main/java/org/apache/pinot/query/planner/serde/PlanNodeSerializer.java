@@ -362,6 +362,8 @@ public class PlanNodeSerializer {
           return Plan.JoinStrategy.LOOKUP;
         case ASOF:
           return Plan.JoinStrategy.AS_OF;
+        case SORT_MERGE:
+          return Plan.JoinStrategy.SORT_MERGE;
         default:
           throw new IllegalStateException("Unsupported JoinStrategy: " + joinStrategy);
       }
@@ -28,6 +28,9 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.pinot.calcite.rel.hint.PinotHintOptions;
+import org.apache.pinot.calcite.rel.logical.PinotRelExchangeType;
 import org.apache.pinot.query.planner.PlannerUtils;
 import org.apache.pinot.query.planner.physical.DispatchablePlanFragment;
 import org.apache.pinot.query.planner.physical.DispatchableSubPlan;
@@ -293,6 +296,102 @@ public class QueryCompilationTest extends QueryEnvironmentTestBase {
     }
   }
 
+  @Test
+  public void testQueryAndAssertStageContentForSortMergeJoin() {
+    // Both inputs should be sorted on the join keys for sort merge join
+    JoinNode joinNode = getJoinNode(_queryEnvironment.planQuery(
+        "SELECT /*+ joinOptions(join_strategy='sort_merge') */ * FROM a JOIN b ON a.col1 = b.col2"));
+    assertEquals(joinNode.getJoinStrategy(), JoinNode.JoinStrategy.SORT_MERGE);
+    MailboxReceiveNode left = (MailboxReceiveNode) joinNode.getInputs().get(0);
+    MailboxReceiveNode right = (MailboxReceiveNode) joinNode.getInputs().get(1);
+    assertEquals(left.getDistributionType(), RelDistribution.Type.HASH_DISTRIBUTED);
+    assertEquals(right.getDistributionType(), RelDistribution.Type.HASH_DISTRIBUTED);
+    assertTrue(left.isSort());
+    assertTrue(right.isSort());
+    // Sorted on the sender side, and merged on the receiver side
+    assertTrue(left.isSortedOnSender());
+    assertTrue(right.isSortedOnSender());
+    assertTrue(left.getSender().isSort());
+    assertTrue(right.getSender().isSort());
+    assertEquals(left.getCollations().get(0).getFieldIndex(), (int) joinNode.getLeftKeys().get(0));
+    assertEquals(right.getCollations().get(0).getFieldIndex(), (int) joinNode.getRightKeys().get(0));
+
+    // Fall back to hash join for non-equi join
+    joinNode = getJoinNode(_queryEnvironment.planQuery(
+        "SELECT /*+ joinOptions(join_strategy='sort_merge') */ * FROM a JOIN b ON a.col3 > b.col3"));
+    assertEquals(joinNode.getJoinStrategy(), JoinNode.JoinStrategy.HASH);
+
+    // Hash join without the hint
+    joinNode = getJoinNode(_queryEnvironment.planQuery("SELECT * FROM a JOIN b ON a.col1 = b.col2"));
+    assertEquals(joinNode.getJoinStrategy(), JoinNode.JoinStrategy.HASH);
+    assertFalse(((MailboxReceiveNode) joinNode.getInputs().get(0)).isSort());
+  }
+
+  @Test
+  public void testQueryAndAssertStageContentForRuntimeFilter() {
+    // Runtime filter should be pushed to the leaf stage of the left input as a SEMI join with pipeline breaker
+    DispatchableSubPlan dispatchableSubPlan = _queryEnvironment.planQuery(
+        "SELECT /*+ joinOptions(runtime_filter='true') */ * FROM a JOIN b ON a.col1 = b.col2 WHERE b.col3 > 0");
+    JoinNode filterJoinNode = null;
+    int numJoinNodes = 0;
+    for (DispatchablePlanFragment stagePlan : dispatchableSubPlan.getQueryStages()) {
+      List<JoinNode> joinNodes = new ArrayList<>();
+      collectJoinNodes(stagePlan.getPlanFragment().getFragmentRoot(), joinNodes);
+      numJoinNodes += joinNodes.size();
+      for (JoinNode joinNode : joinNodes) {
+        if (joinNode.getJoinType() == JoinRelType.SEMI) {
+          // Runtime filter should be in the leaf stage
+          assertNotNull(stagePlan.getTableName());
+          filterJoinNode = joinNode;
+        } else {
+          assertEquals(joinNode.getJoinType(), JoinRelType.INNER);
+        }
+      }
+    }
+    assertEquals(numJoinNodes, 2);
+    assertNotNull(filterJoinNode);
+    assertEquals(filterJoinNode.getNodeHint().getHintOptions().get(PinotHintOptions.JOIN_HINT_OPTIONS)
+        .get(PinotHintOptions.JoinHintOptions.RUNTIME_FILTER), "true");
+    MailboxReceiveNode filterInput = (MailboxReceiveNode) filterJoinNode.getInputs().get(1);
+    assertEquals(filterInput.getExchangeType(), PinotRelExchangeType.PIPELINE_BREAKER);
+    assertEquals(filterInput.getDistributionType(), RelDistribution.Type.BROADCAST_DISTRIBUTED);
+    // Only the join key is sent from the right input
+    assertEquals(filterInput.getDataSchema().size(), 1);
+
+    // Runtime filter should not be applied to LEFT join
+    dispatchableSubPlan = _queryEnvironment.planQuery(
+        "SELECT /*+ joinOptions(runtime_filter='true') */ * FROM a LEFT JOIN b ON a.col1 = b.col2");
+    numJoinNodes = 0;
+    for (DispatchablePlanFragment stagePlan : dispatchableSubPlan.getQueryStages()) {
+      List<JoinNode> joinNodes = new ArrayList<>();
+      collectJoinNodes(stagePlan.getPlanFragment().getFragmentRoot(), joinNodes);
+      numJoinNodes += joinNodes.size();
+    }
+    assertEquals(numJoinNodes, 1);
+  }
+
+  private static void collectJoinNodes(PlanNode node, List<JoinNode> joinNodes) {
+    if (node instanceof JoinNode) {
+      joinNodes.add((JoinNode) node);
+    }
+    for (PlanNode input : node.getInputs()) {
+      collectJoinNodes(input, joinNodes);
+    }
+  }
+
+  private static JoinNode getJoinNode(DispatchableSubPlan dispatchableSubPlan) {
+    for (DispatchablePlanFragment stagePlan : dispatchableSubPlan.getQueryStages()) {
+      PlanNode node = stagePlan.getPlanFragment().getFragmentRoot();
+      while (node != null) {
+        if (node instanceof JoinNode) {
+          return (JoinNode) node;
+        }
+        node = node.getInputs().isEmpty() ? null : node.getInputs().get(0);
+      }
+    }
+    throw new AssertionError("Failed to find join node");
+  }
+
   @Test
   public void testQueryProjectFilterPushDownForJoin() {
     String query = "SELECT a.col1, a.ts, b.col2, b.col3 FROM a JOIN b ON a.col1 = b.col2 "
@@ -277,7 +277,8 @@ public class InStageStatsTreeBuilder implements PlanNodeVisitor<ObjectNode, InSt
 
   @Override
   public ObjectNode visitJoin(JoinNode node, Context context) {
-    if (node.getJoinStrategy() == JoinNode.JoinStrategy.HASH) {
+    if (node.getJoinStrategy() == JoinNode.JoinStrategy.HASH
+        || node.getJoinStrategy() == JoinNode.JoinStrategy.SORT_MERGE) {
       return recursiveCase(node, MultiStageOperator.Type.HASH_JOIN, context);
     } else {
       assert node.getJoinStrategy() == JoinNode.JoinStrategy.LOOKUP;
@@ -139,6 +139,8 @@ public class QueryRunner {
   @Nullable
   private WindowOverFlowMode _windowOverflowMode;
   @Nullable
+  private String _spillDir;
+  @Nullable
   private PhysicalTimeSeriesServerPlanVisitor _timeSeriesPhysicalPlanVisitor;
   private BooleanSupplier _sendStats;
   private BooleanSupplier _keepPipelineBreakerStats;
@@ -197,6 +199,8 @@ public class QueryRunner {
     String windowOverflowModeStr = serverConf.getProperty(MultiStageQueryRunner.KEY_OF_WINDOW_OVERFLOW_MODE);
     _windowOverflowMode = windowOverflowModeStr != null ? WindowOverFlowMode.valueOf(windowOverflowModeStr) : null;
 
+    _spillDir = serverConf.getProperty(MultiStageQueryRunner.KEY_OF_SPILL_DIR);
+
     ExecutorService baseExecutorService =
         ExecutorServiceUtils.create(serverConf, Server.MULTISTAGE_EXECUTOR_CONFIG_PREFIX, "query-runner-on-" + port,
             Server.DEFAULT_MULTISTAGE_EXECUTOR_TYPE);
@@ -469,6 +473,12 @@ public class QueryRunner {
     if (_numGroupsWarningLimit != null) {
       opChainMetadata.put(QueryOptionKey.NUM_GROUPS_WARNING_LIMIT, Integer.toString(_numGroupsWarningLimit));
     }
+    // The spill directory is always from the server config so that the query cannot write to an arbitrary directory
+    if (_spillDir != null) {
+      opChainMetadata.put(QueryOptionKey.MSE_SPILL_DIR, _spillDir);
+    } else {
+      opChainMetadata.remove(QueryOptionKey.MSE_SPILL_DIR);
+    }
     // 4. add all overrides from config if anything is still empty.
     Integer numGroupsLimit = QueryOptionsUtils.getNumGroupsLimit(opChainMetadata);
     if (numGroupsLimit == null) {
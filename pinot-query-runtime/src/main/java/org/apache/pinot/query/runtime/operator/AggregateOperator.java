@@ -26,6 +26,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 import javax.annotation.Nullable;
 import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.pinot.calcite.rel.hint.PinotHintOptions;
@@ -36,6 +37,7 @@ import org.apache.pinot.common.request.context.FunctionContext;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.common.utils.config.QueryOptionsUtils;
 import org.apache.pinot.core.common.BlockValSet;
+import org.apache.pinot.core.data.table.Key;
 import org.apache.pinot.core.operator.docvalsets.DataBlockValSet;
 import org.apache.pinot.core.operator.docvalsets.FilteredDataBlockValSet;
 import org.apache.pinot.core.operator.docvalsets.FilteredRowBasedBlockValSet;
@@ -51,7 +53,9 @@ import org.apache.pinot.query.planner.plannode.AggregateNode;
 import org.apache.pinot.query.planner.plannode.PlanNode;
 import org.apache.pinot.query.runtime.blocks.MseBlock;
 import org.apache.pinot.query.runtime.blocks.RowHeapDataBlock;
+import org.apache.pinot.query.runtime.operator.groupby.GroupIdGenerator;
 import org.apache.pinot.query.runtime.operator.utils.SortUtils;
+import org.apache.pinot.query.runtime.operator.utils.SpilledRowPartitions;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
 import org.apache.pinot.spi.exception.QueryErrorCode;
 import org.apache.pinot.spi.utils.CommonConstants.Server;
@@ -64,6 +68,10 @@ import org.slf4j.LoggerFactory;
  * AggregateOperator is used to aggregate values over a (potentially empty) set of group by keys in V2/MSQE.
  * Output data will be in the format of [group by key, aggregate result1, ... aggregate resultN]
  * When the list of aggregation calls is empty, this class is used to calculate distinct result based on group by keys.
+ * <p>When spilling is enabled for the group by, the rows of the new groups after reaching the number of groups limit
+ * are spilled to disk partitioned by the hash of the group keys, instead of being dropped. After the groups in memory
+ * are returned, each spilled partition is aggregated separately, so that only the groups of one partition are kept in
+ * memory at a time.
  */
 public class AggregateOperator extends MultiStageOperator {
   private static final Logger LOGGER = LoggerFactory.getLogger(AggregateOperator.class);
@@ -78,6 +86,10 @@ public class AggregateOperator extends MultiStageOperator {
   private MultistageAggregationExecutor _aggregationExecutor;
   @Nullable
   private MultistageGroupByExecutor _groupByExecutor;
+  @Nullable
+  private final Supplier<MultistageGroupByExecutor> _groupByExecutorSupplier;
+  @Nullable
+  private final int[] _groupKeyIds;
 
   @Nullable
   private MseBlock.Eos _eosBlock;
@@ -94,6 +106,18 @@ public class AggregateOperator extends MultiStageOperator {
   @Nullable
   private final Comparator<Object[]> _comparator;
 
+  // spilling - related members
+  private final boolean _spillOnNumGroupsLimit;
+  @Nullable
+  private SpilledRowPartitions _spilledRows;
+  private int _spillPartitionId = -1;
+  // Total number of groups across the in memory groups and the spilled partitions
+  private long _numGroups;
+  // Rows kept to be sorted and trimmed across the spilled partitions
+  @Nullable
+  private List<Object[]> _spilledResultRows;
+  private int _numSpilledResultRowsEmitted;
+
   public AggregateOperator(OpChainExecutionContext context, MultiStageOperator input, AggregateNode node) {
     super(context);
     _input = input;
@@ -143,11 +167,22 @@ public class AggregateOperator extends MultiStageOperator {
       _aggregationExecutor =
           new MultistageAggregationExecutor(_aggFunctions, filterArgIds, maxFilterArgId, aggType, _resultSchema);
       _groupByExecutor = null;
+      _groupByExecutorSupplier = null;
+      _groupKeyIds = null;
+      _spillOnNumGroupsLimit = false;
     } else {
-      _groupByExecutor =
-          new MultistageGroupByExecutor(getGroupKeyIds(groupKeys), _aggFunctions, filterArgIds, maxFilterArgId, aggType,
+      int[] groupKeyIds = getGroupKeyIds(groupKeys);
+      _groupByExecutorSupplier =
+          () -> new MultistageGroupByExecutor(groupKeyIds, _aggFunctions, filterArgIds, maxFilterArgId, aggType,
               leafReturnFinalResult, _resultSchema, context.getOpChainMetadata(), node.getNodeHint());
+      _groupByExecutor = _groupByExecutorSupplier.get();
+      _groupKeyIds = groupKeyIds;
       _aggregationExecutor = null;
+      // Intermediate results cannot be spilled without the aggregation functions of the input, and groups with only
+      // filtered out rows cannot be skipped when splitting the rows by the group ids
+      _spillOnNumGroupsLimit = getSpillOnNumGroupsLimit(node.getNodeHint(), context.getOpChainMetadata())
+          && !aggType.isInputIntermediateFormat()
+          && !QueryOptionsUtils.isFilteredAggregationsSkipEmptyGroups(context.getOpChainMetadata());
     }
   }
 
@@ -165,6 +200,11 @@ public class AggregateOperator extends MultiStageOperator {
     return option != null ? Boolean.parseBoolean(option) : QueryOptionsUtils.getErrorOnNumGroupsLimit(opChainMetadata);
   }
 
+  private static boolean getSpillOnNumGroupsLimit(PlanNode.NodeHint nodeHint, Map<String, String> opChainMetadata) {
+    String option = getOption(nodeHint, PinotHintOptions.AggregateOptions.SPILL_ON_NUM_GROUPS_LIMIT);
+    return option != null ? Boolean.parseBoolean(option) : QueryOptionsUtils.isSpillOnNumGroupsLimit(opChainMetadata);
+  }
+
   @Nullable
   private static String getOption(PlanNode.NodeHint nodeHint, String key) {
     Map<String, String> options = nodeHint.getHintOptions().get(PinotHintOptions.AGGREGATE_HINT_OPTIONS);
@@ -202,7 +242,7 @@ public class AggregateOperator extends MultiStageOperator {
   @Override
   protected MseBlock getNextBlock() {
     if (_eosBlock != null) {
-      return _eosBlock;
+      return _spilledRows != null ? produceSpilledAggregatedBlock() : _eosBlock;
     }
     MseBlock.Eos finalBlock = _aggregationExecutor != null ? consumeAggregation() : consumeGroupBy();
     _eosBlock = finalBlock;
@@ -210,6 +250,12 @@ public class AggregateOperator extends MultiStageOperator {
     if (finalBlock.isError()) {
       return finalBlock;
     }
+    if (_spilledRows != null) {
+      _spilledRows.finish();
+      _statMap.merge(StatKey.SPILLED_ROWS, _spilledRows.getNumRows());
+      _statMap.merge(StatKey.SPILLED_BYTES, _spilledRows.getNumSpilledBytes());
+      return produceSpilledAggregatedBlock();
+    }
     MseBlock mseBlock = produceAggregatedBlock();
     _aggregationExecutor = null;
     _groupByExecutor = null;
@@ -221,41 +267,132 @@ public class AggregateOperator extends MultiStageOperator {
       return new RowHeapDataBlock(_aggregationExecutor.getResult(), _resultSchema, _aggFunctions);
     } else {
       assert _groupByExecutor != null;
-      List<Object[]> rows;
-      if (_comparator != null) {
-        rows = _groupByExecutor.getResult(_comparator, _groupTrimSize);
-      } else {
-        rows = _groupByExecutor.getResult(_groupTrimSize);
+      List<Object[]> rows = getGroupByResult(_groupByExecutor, !_spillOnNumGroupsLimit);
+      return rows.isEmpty() ? _eosBlock : new RowHeapDataBlock(rows, _resultSchema, _aggFunctions);
+    }
+  }
+
+  /**
+   * Returns the (trimmed) group by result of the given executor, and checks the number of groups limits.
+   *
+   * @param checkNumGroupsLimit whether the groups might be dropped after reaching the number of groups limit
+   */
+  private List<Object[]> getGroupByResult(MultistageGroupByExecutor groupByExecutor, boolean checkNumGroupsLimit) {
+    List<Object[]> rows;
+    if (_comparator != null) {
+      rows = groupByExecutor.getResult(_comparator, _groupTrimSize);
+    } else {
+      rows = groupByExecutor.getResult(_groupTrimSize);
+    }
+
+    // Record stat before we check for limit so we can propagate to query response
+    _numGroups += groupByExecutor.getNumGroups();
+    _statMap.merge(StatKey.NUM_GROUPS, _numGroups);
+
+    if (!rows.isEmpty()) {
+      if (groupByExecutor.getRowsProcessed() > _groupTrimSize) {
+        _statMap.merge(StatKey.GROUPS_TRIMMED, true);
       }
 
-      // Record stat before we check for limit so we can propagate to query response
-      _statMap.merge(StatKey.NUM_GROUPS, _groupByExecutor.getNumGroups());
+      if (checkNumGroupsLimit && groupByExecutor.isNumGroupsLimitReached()) {
+        if (_errorOnNumGroupsLimit) {
+          throw QueryErrorCode.SERVER_RESOURCE_LIMIT_EXCEEDED.asException(
+              "NUM_GROUPS_LIMIT has been reached at: " + _operatorId);
+        } else {
+          _statMap.merge(StatKey.NUM_GROUPS_LIMIT_REACHED, true);
+          _input.earlyTerminate();
+        }
+      }
+      if (_numGroups >= groupByExecutor.getNumGroupsWarningLimit()) {
+        LOGGER.warn("numGroups reached warning limit: {} (actual: {})", groupByExecutor.getNumGroupsWarningLimit(),
+            _numGroups);
+        _statMap.merge(StatKey.NUM_GROUPS_WARNING_LIMIT_REACHED, true);
+      }
+    }
+    return rows;
+  }
 
-      if (rows.isEmpty()) {
-        return _eosBlock;
-      } else {
-        MseBlock dataBlock = new RowHeapDataBlock(rows, _resultSchema, _aggFunctions);
-        if (_groupByExecutor.getRowsProcessed() > _groupTrimSize) {
+  /**
+   * Returns the next block of the group by result after spilling the rows, where the groups in memory are returned
+   * first, followed by the groups of each spilled partition. When the groups are trimmed with ordering, the rows of
+   * all the partitions are sorted and trimmed before being returned.
+   */
+  private MseBlock produceSpilledAggregatedBlock() {
+    assert _spilledRows != null;
+    while (true) {
+      if (_groupByExecutor == null) {
+        int numPartitions = _spilledRows.getNumPartitions();
+        if (_numSpilledResultRowsEmitted == _groupTrimSize && _spillPartitionId + 1 < numPartitions) {
+          // Groups are trimmed without ordering, and enough groups are returned
           _statMap.merge(StatKey.GROUPS_TRIMMED, true);
+          _spillPartitionId = numPartitions - 1;
         }
-
-        if (_groupByExecutor.isNumGroupsLimitReached()) {
-          if (_errorOnNumGroupsLimit) {
-            throw QueryErrorCode.SERVER_RESOURCE_LIMIT_EXCEEDED.asException(
-                "NUM_GROUPS_LIMIT has been reached at: " + _operatorId);
-          } else {
-            _statMap.merge(StatKey.NUM_GROUPS_LIMIT_REACHED, true);
-            _input.earlyTerminate();
+        if (++_spillPartitionId == numPartitions) {
+          _spilledRows.close();
+          _spilledRows = null;
+          if (_spilledResultRows != null && !_spilledResultRows.isEmpty()) {
+            List<Object[]> rows = trimSpilledResultRows(_spilledResultRows);
+            _spilledResultRows = null;
+            return new RowHeapDataBlock(rows, _resultSchema, _aggFunctions);
           }
+          return _eosBlock;
         }
-        if (_groupByExecutor.getNumGroups() >= _groupByExecutor.getNumGroupsWarningLimit()) {
-          LOGGER.warn("numGroups reached warning limit: {} (actual: {})",
-              _groupByExecutor.getNumGroupsWarningLimit(), _groupByExecutor.getNumGroups());
-          _statMap.merge(StatKey.NUM_GROUPS_WARNING_LIMIT_REACHED, true);
+        assert _groupByExecutorSupplier != null;
+        MultistageGroupByExecutor groupByExecutor = _groupByExecutorSupplier.get();
+        DataSchema dataSchema = _spilledRows.getDataSchema();
+        List<Object[]> spilledRows;
+        while ((spilledRows = _spilledRows.readNextBlock(_spillPartitionId)) != null) {
+          groupByExecutor.processBlock(new RowHeapDataBlock(spilledRows, dataSchema));
+          checkTerminationAndSampleUsage();
+        }
+        _groupByExecutor = groupByExecutor;
+      }
+      // Groups might be dropped only when aggregating the spilled partitions
+      List<Object[]> rows = getGroupByResult(_groupByExecutor, _spillPartitionId >= 0);
+      _groupByExecutor = null;
+      if (rows.isEmpty()) {
+        continue;
+      }
+      if (_groupTrimSize == Integer.MAX_VALUE) {
+        return new RowHeapDataBlock(rows, _resultSchema, _aggFunctions);
+      }
+      if (_comparator != null) {
+        // Keep the top rows across the partitions to be sorted and trimmed at the end
+        if (_spilledResultRows == null) {
+          _spilledResultRows = new ArrayList<>(rows);
+        } else {
+          _spilledResultRows.addAll(rows);
+          if (_spilledResultRows.size() > 2 * _groupTrimSize) {
+            _spilledResultRows = trimSpilledResultRows(_spilledResultRows);
+          }
         }
-        return dataBlock;
+        continue;
       }
+      // Groups are trimmed without ordering, so only the first groups are returned
+      int numRowsToEmit = Math.min(rows.size(), _groupTrimSize - _numSpilledResultRowsEmitted);
+      _numSpilledResultRowsEmitted += numRowsToEmit;
+      return new RowHeapDataBlock(rows.subList(0, numRowsToEmit), _resultSchema, _aggFunctions);
+    }
+  }
+
+  private List<Object[]> trimSpilledResultRows(List<Object[]> rows) {
+    assert _comparator != null;
+    // The comparator is reversed for the priority queue
+    rows.sort(_comparator.reversed());
+    if (rows.size() <= _groupTrimSize) {
+      return rows;
+    }
+    _statMap.merge(StatKey.GROUPS_TRIMMED, true);
+    return new ArrayList<>(rows.subList(0, _groupTrimSize));
+  }
+
+  @Override
+  public void close() {
+    if (_spilledRows != null) {
+      _spilledRows.close();
+      _spilledRows = null;
     }
+    super.close();
   }
 
   @Override
@@ -272,13 +409,63 @@ public class AggregateOperator extends MultiStageOperator {
     assert _groupByExecutor != null;
     MseBlock block = _input.nextBlock();
     while (block.isData()) {
-      _groupByExecutor.processBlock((MseBlock.Data) block);
+      MseBlock.Data dataBlock = (MseBlock.Data) block;
+      if (_spillOnNumGroupsLimit
+          && _groupByExecutor.getNumGroups() + dataBlock.getNumRows() > _groupByExecutor.getNumGroupsLimit()) {
+        // The block might contain groups beyond the number of groups limit
+        processGroupByWithSpill(dataBlock);
+      } else {
+        _groupByExecutor.processBlock(dataBlock);
+      }
       checkTerminationAndSampleUsage();
       block = _input.nextBlock();
     }
     return (MseBlock.Eos) block;
   }
 
+  /**
+   * Aggregates the rows of the groups in memory (new groups are added until reaching the number of groups limit), and
+   * spills the rows of the other groups to disk.
+   */
+  private void processGroupByWithSpill(MseBlock.Data block) {
+    assert _groupByExecutor != null && _groupKeyIds != null;
+    List<Object[]> rows = block.asRowHeap().getRows();
+    int[] groupIds = _groupByExecutor.getGroupIds(rows);
+    int numRows = rows.size();
+    List<Object[]> inMemoryRows = new ArrayList<>(numRows);
+    for (int i = 0; i < numRows; i++) {
+      Object[] row = rows.get(i);
+      if (groupIds[i] != GroupIdGenerator.INVALID_ID) {
+        inMemoryRows.add(row);
+        continue;
+      }
+      if (_spilledRows == null) {
+        Map<String, String> opChainMetadata = _context.getOpChainMetadata();
+        _spilledRows = new SpilledRowPartitions(SpilledRowPartitions.getSpillDir(opChainMetadata),
+            block.getDataSchema(), SpilledRowPartitions.getNumPartitions(opChainMetadata));
+        LOGGER.info("Spilling rows of aggregate operator: {} into {} partitions after reaching number of groups "
+            + "limit: {}", _operatorId, _spilledRows.getNumPartitions(), _groupByExecutor.getNumGroupsLimit());
+      }
+      _spilledRows.addRow(getGroupKey(row), row);
+    }
+    if (!inMemoryRows.isEmpty()) {
+      _groupByExecutor.processBlock(new RowHeapDataBlock(inMemoryRows, block.getDataSchema()));
+    }
+  }
+
+  private Object getGroupKey(Object[] row) {
+    assert _groupKeyIds != null;
+    int numKeys = _groupKeyIds.length;
+    if (numKeys == 1) {
+      return row[_groupKeyIds[0]];
+    }
+    Object[] values = new Object[numKeys];
+    for (int i = 0; i < numKeys; i++) {
+      values[i] = row[_groupKeyIds[i]];
+    }
+    return new Key(values);
+  }
+
   /**
    * Consumes the input blocks as an aggregation
    *
@@ -488,7 +675,15 @@ public class AggregateOperator extends MultiStageOperator {
     /**
      * Time spent on GC while this operator or its children in the same stage were running.
      */
-    GC_TIME_MS(StatMap.Type.LONG);
+    GC_TIME_MS(StatMap.Type.LONG),
+    /**
+     * Number of rows spilled to disk after reaching the number of groups limit.
+     */
+    SPILLED_ROWS(StatMap.Type.LONG),
+    /**
+     * Number of bytes spilled to disk after reaching the number of groups limit.
+     */
+    SPILLED_BYTES(StatMap.Type.LONG);
 
     private final StatMap.Type _type;
 
@@ -48,9 +48,10 @@ import org.slf4j.LoggerFactory;
 
 /**
  * The {@code BaseJoinOperator} implements the basic join algorithm.
- * <p>This algorithm assumes that the right table has to fit in memory since we are not supporting any spilling. It
- * reads the complete right table and materialize the data in memory. Then for each of the left table row, it looks up
- * for the corresponding row(s) from the right table, applies the non-equi evaluators and creates a joint row.
+ * <p>This algorithm assumes that the right table has to fit in memory unless spilling is supported by the join operator
+ * and enabled with the {@link JoinOverFlowMode#SPILL} overflow mode. It reads the complete right table and materialize
+ * the data in memory. Then for each of the left table row, it looks up for the corresponding row(s) from the right
+ * table, applies the non-equi evaluators and creates a joint row.
  * <p>For each of the data block received from the left table, it generates a joint data block. The output is in the
  * format of [left_row, right_row].
  */
@@ -78,9 +79,11 @@ public abstract class BaseJoinOperator extends MultiStageOperator {
    */
   protected final int _maxRowsInJoin;
   /**
-   * Mode when join overflow happens, supported values: THROW or BREAK.
+   * Mode when join overflow happens, supported values: THROW, BREAK or SPILL.
    *   THROW(default): Break right table build process, and throw exception, no JOIN with left table performed.
    *   BREAK: Break right table build process, continue to perform JOIN operation, results might be partial.
+   *   SPILL: Spill the right table to disk if supported by the join operator (see {@link #spillRightTable}), otherwise
+   *          same as THROW.
    */
   protected final JoinOverFlowMode _joinOverflowMode;
 
@@ -211,7 +214,14 @@ public abstract class BaseJoinOperator extends MultiStageOperator {
       List<Object[]> rows = ((MseBlock.Data) rightBlock).asRowHeap().getRows();
       // Row based overflow check.
       if (rows.size() + numRows > _maxRowsInJoin) {
-        if (_joinOverflowMode == JoinOverFlowMode.THROW) {
+        if (_joinOverflowMode == JoinOverFlowMode.SPILL) {
+          MseBlock.Eos spilledEosBlock = spillRightTable((MseBlock.Data) rightBlock);
+          if (spilledEosBlock != null) {
+            rightBlock = spilledEosBlock;
+            break;
+          }
+        }
+        if (_joinOverflowMode != JoinOverFlowMode.BREAK) {
           // Record stat before we throw so it propagates to query response
           _statMap.merge(StatKey.MAX_ROWS_IN_JOIN, numRows + rows.size());
           throwForJoinRowLimitExceeded(
@@ -245,6 +255,18 @@ public abstract class BaseJoinOperator extends MultiStageOperator {
     LOGGER.trace("Finished building right table for join operator");
   }
 
+  /**
+   * Spills the right table to disk when the number of rows limit is reached in {@link JoinOverFlowMode#SPILL} mode. The
+   * rows already added to the right table, the rows of the given block, and the rows of the remaining blocks from the
+   * right input should all be spilled.
+   * <p>Returns the end of stream block of the right input, or {@code null} if spilling is not supported by the join
+   * operator, in which case the overflow is handled the same way as {@link JoinOverFlowMode#THROW}.
+   */
+  @Nullable
+  protected MseBlock.Eos spillRightTable(MseBlock.Data rightBlock) {
+    return null;
+  }
+
   protected abstract void addRowsToRightTable(List<Object[]> rows);
 
   protected abstract void finishBuildingRightTable();
@@ -345,7 +367,8 @@ public abstract class BaseJoinOperator extends MultiStageOperator {
    */
   protected boolean isMaxRowsLimitReached(int numJoinedRows) {
     if (numJoinedRows == _maxRowsInJoin) {
-      if (_joinOverflowMode == JoinOverFlowMode.THROW) {
+      // Joined rows cannot be spilled, so SPILL mode is handled the same way as THROW
+      if (_joinOverflowMode != JoinOverFlowMode.BREAK) {
         _statMap.merge(StatKey.MAX_ROWS_IN_JOIN, numJoinedRows);
         throwForJoinRowLimitExceeded(
             "Cannot process join, reached number of rows limit: " + _maxRowsInJoin);
@@ -374,7 +397,9 @@ public abstract class BaseJoinOperator extends MultiStageOperator {
             + JoinOverFlowMode.BREAK.name() + "' either via:\n"
             + "  - The query option '" + QueryOptionKey.JOIN_OVERFLOW_MODE + "'\n"
             + "  - The hint '" + JoinHintOptions.JOIN_OVERFLOW_MODE + "' in the '"
-            + PinotHintOptions.JOIN_HINT_OPTIONS + "'\n");
+            + PinotHintOptions.JOIN_HINT_OPTIONS + "'\n"
+            + "Hash join can also spill the tables to disk when the join overflow mode is set to '"
+            + JoinOverFlowMode.SPILL.name() + "'\n");
   }
 
   public enum StatKey implements StatMap.Key {
@@ -412,7 +437,15 @@ public abstract class BaseJoinOperator extends MultiStageOperator {
     /**
      * Time spent on GC while this operator or its children in the same stage were running.
      */
-    GC_TIME_MS(StatMap.Type.LONG);
+    GC_TIME_MS(StatMap.Type.LONG),
+    /**
+     * Number of rows (from both tables) spilled to disk in SPILL overflow mode.
+     */
+    SPILLED_ROWS(StatMap.Type.LONG),
+    /**
+     * Number of bytes spilled to disk in SPILL overflow mode.
+     */
+    SPILLED_BYTES(StatMap.Type.LONG);
 
     private final StatMap.Type _type;
 
@@ -72,10 +72,10 @@ public abstract class BaseMailboxReceiveOperator extends MultiStageOperator {
       int numMailboxes = _mailboxIds.size();
       List<ReadMailboxAsyncStream> asyncStreams = new ArrayList<>(numMailboxes);
       _receivingStats = new ArrayList<>(numMailboxes);
-      for (String mailboxId : _mailboxIds) {
-        ReceivingMailbox receivingMailbox = _mailboxService.getReceivingMailbox(mailboxId);
+      for (int i = 0; i < numMailboxes; i++) {
+        ReceivingMailbox receivingMailbox = _mailboxService.getReceivingMailbox(_mailboxIds.get(i));
         receivingMailbox.registerReceiveOperatorThreadContext(QueryThreadContext.getIfAvailable());
-        ReadMailboxAsyncStream asyncStream = new ReadMailboxAsyncStream(receivingMailbox, this);
+        ReadMailboxAsyncStream asyncStream = new ReadMailboxAsyncStream(receivingMailbox, i, this);
         asyncStreams.add(asyncStream);
         _receivingStats.add(asyncStream._mailbox.getStatMap());
       }
@@ -127,6 +127,14 @@ public abstract class BaseMailboxReceiveOperator extends MultiStageOperator {
     return new StatMap<>(_statMap);
   }
 
+  /**
+   * Called when a block is read from the mailbox with the given index in {@link #_mailboxIds}, before the block is
+   * returned by {@link #_multiConsumer}. Successful EOS blocks are also passed here, but not returned by the consumer
+   * until all the mailboxes are finished. This method is called by the thread reading from {@link #_multiConsumer}.
+   */
+  protected void onMailboxBlock(int mailboxIndex, MseBlock block) {
+  }
+
   protected void onEos() {
     for (StatMap<ReceivingMailbox.StatKey> receivingStats : _receivingStats) {
       addReceivingStats(receivingStats);
@@ -161,10 +169,12 @@ public abstract class BaseMailboxReceiveOperator extends MultiStageOperator {
 
   private static class ReadMailboxAsyncStream implements AsyncStream<ReceivingMailbox.MseBlockWithStats> {
     final ReceivingMailbox _mailbox;
+    final int _mailboxIndex;
     final BaseMailboxReceiveOperator _operator;
 
-    ReadMailboxAsyncStream(ReceivingMailbox mailbox, BaseMailboxReceiveOperator operator) {
+    ReadMailboxAsyncStream(ReceivingMailbox mailbox, int mailboxIndex, BaseMailboxReceiveOperator operator) {
       _mailbox = mailbox;
+      _mailboxIndex = mailboxIndex;
       _operator = operator;
     }
 
@@ -180,6 +190,7 @@ public abstract class BaseMailboxReceiveOperator extends MultiStageOperator {
 
       if (blockWithStats != null) {
         MseBlock block = blockWithStats.getBlock();
+        _operator.onMailboxBlock(_mailboxIndex, block);
 
         // TODO: Check if we should also release mailbox on not successful EOS.
         if (block.isSuccess()) {
@@ -76,6 +76,13 @@ public class EnrichedHashJoinOperator extends HashJoinOperator {
     return EXPLAIN_NAME;
   }
 
+  /// Spilling is not supported because the offset and limit are applied across all the left blocks
+  @Nullable
+  @Override
+  protected MseBlock.Eos spillRightTable(MseBlock.Data rightBlock) {
+    return null;
+  }
+
   /// Filter, project on a joined row view
   private void filterProjectLimit(List<Object> rowView, List<Object[]> rows) {
     Object[] row = null;
@@ -32,17 +32,23 @@ import org.apache.pinot.query.planner.partitioning.KeySelector;
 import org.apache.pinot.query.planner.partitioning.KeySelectorFactory;
 import org.apache.pinot.query.planner.plannode.JoinNode;
 import org.apache.pinot.query.runtime.blocks.MseBlock;
+import org.apache.pinot.query.runtime.blocks.RowHeapDataBlock;
 import org.apache.pinot.query.runtime.operator.join.DoubleLookupTable;
 import org.apache.pinot.query.runtime.operator.join.FloatLookupTable;
 import org.apache.pinot.query.runtime.operator.join.IntLookupTable;
 import org.apache.pinot.query.runtime.operator.join.LongLookupTable;
 import org.apache.pinot.query.runtime.operator.join.LookupTable;
 import org.apache.pinot.query.runtime.operator.join.ObjectLookupTable;
+import org.apache.pinot.query.runtime.operator.utils.SpilledRowPartitions;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
+import org.apache.pinot.spi.utils.CommonConstants.Broker.Request.QueryOptionKey;
 
 
 /**
  * This {@code HashJoinOperator} join algorithm with join keys. Right table is materialized into a hash table.
+ * <p>In {@code SPILL} overflow mode, when the right table cannot fit in memory, both tables are spilled to disk
+ * partitioned by the hash of the join keys, and the join is performed partition by partition (grace hash join), where
+ * only the right rows of one partition are materialized into the hash table at a time.
  */
 // TODO: Support memory size based resource limit.
 @SuppressWarnings("unchecked")
@@ -51,6 +57,7 @@ public class HashJoinOperator extends BaseJoinOperator {
   private static final String ADD_ROWS_TO_RIGHT_TABLE_SCOPE = "HashJoinOperator#addRowsToRightTable";
   private static final String BUILD_JOINED_ROWS_SCOPE = "HashJoinOperator#buildJoinedRows";
   private static final String BUILD_NON_MATCH_RIGHT_ROWS_SCOPE = "HashJoinOperator#buildNonMatchRightRows";
+  private static final String SPILL_ROWS_SCOPE = "HashJoinOperator#spillRows";
 
   // Placeholder for BitSet in _matchedRightRows when all keys are unique in the right table.
   protected static final BitSet BIT_SET_PLACEHOLDER = new BitSet(0);
@@ -68,11 +75,27 @@ public class HashJoinOperator extends BaseJoinOperator {
   @Nullable
   private List<Object[]> _nullKeyRightRows;
 
+  private final List<Integer> _leftKeys;
+  private final DataSchema _leftSchema;
+  // Spilled rows in SPILL overflow mode, where the join is performed partition by partition
+  @Nullable
+  private SpilledRowPartitions _spilledRightRows;
+  @Nullable
+  private SpilledRowPartitions _spilledLeftRows;
+  @Nullable
+  private MseBlock.Eos _leftEosBlock;
+  private int _spillPartitionId = -1;
+  // Running count of the spilled rows, used to periodically check termination while spilling
+  private int _numRowsSpilled;
+  private boolean _spillPartitionLoaded;
+
   public HashJoinOperator(OpChainExecutionContext context, MultiStageOperator leftInput, DataSchema leftSchema,
       MultiStageOperator rightInput, JoinNode node) {
     super(context, leftInput, leftSchema, rightInput, node);
     List<Integer> leftKeys = node.getLeftKeys();
     Preconditions.checkState(!leftKeys.isEmpty(), "Hash join operator requires join keys");
+    _leftKeys = leftKeys;
+    _leftSchema = leftSchema;
     _leftKeySelector = KeySelectorFactory.getKeySelector(leftKeys);
     _rightKeySelector = KeySelectorFactory.getKeySelector(node.getRightKeys());
     _rightTable = createLookupTable(leftKeys, leftSchema);
@@ -87,6 +110,8 @@ public class HashJoinOperator extends BaseJoinOperator {
     super(context, leftInput, leftSchema, rightInput, node, nonEquiEvaluationSchema);
     List<Integer> leftKeys = node.getLeftKeys();
     Preconditions.checkState(!leftKeys.isEmpty(), "Hash join operator requires join keys");
+    _leftKeys = leftKeys;
+    _leftSchema = leftSchema;
     _leftKeySelector = KeySelectorFactory.getKeySelector(leftKeys);
     _rightKeySelector = KeySelectorFactory.getKeySelector(node.getRightKeys());
     _rightTable = createLookupTable(leftKeys, leftSchema);
@@ -154,17 +179,186 @@ public class HashJoinOperator extends BaseJoinOperator {
     return false;
   }
 
-  @Override
-  protected void finishBuildingRightTable() {
-    assert _rightTable != null : "Right table should not be null when finishing building";
-    _rightTable.finish();
-  }
-
   @Override
   protected void onEosProduced() {
     _rightTable = null;
     _matchedRightRows = null;
     _nullKeyRightRows = null;
+    closeSpilledRows();
+  }
+
+  @Override
+  public void close() {
+    closeSpilledRows();
+    super.close();
+  }
+
+  private void closeSpilledRows() {
+    if (_spilledRightRows != null) {
+      _spilledRightRows.close();
+      _spilledRightRows = null;
+    }
+    if (_spilledLeftRows != null) {
+      _spilledLeftRows.close();
+      _spilledLeftRows = null;
+    }
+  }
+
+  @Nullable
+  @Override
+  protected MseBlock.Eos spillRightTable(MseBlock.Data rightBlock) {
+    assert _rightTable != null : "Right table should not be null when spilling right table";
+    Map<String, String> opChainMetadata = _context.getOpChainMetadata();
+    SpilledRowPartitions spilledRightRows =
+        new SpilledRowPartitions(SpilledRowPartitions.getSpillDir(opChainMetadata), rightBlock.getDataSchema(),
+            SpilledRowPartitions.getNumPartitions(opChainMetadata));
+    _spilledRightRows = spilledRightRows;
+    LOGGER.info("Spilling right table of join operator: {} into {} partitions after reaching number of rows limit: {}",
+        _operatorId, spilledRightRows.getNumPartitions(), _maxRowsInJoin);
+
+    // Move the rows already added to the right table into the spilled partitions
+    for (Map.Entry<Object, Object> entry : _rightTable.entrySet()) {
+      Object value = entry.getValue();
+      if (value instanceof Object[]) {
+        spillRow(spilledRightRows, _rightKeySelector, (Object[]) value);
+      } else {
+        for (Object[] row : (List<Object[]>) value) {
+          spillRow(spilledRightRows, _rightKeySelector, row);
+        }
+      }
+    }
+    if (_nullKeyRightRows != null) {
+      for (Object[] row : _nullKeyRightRows) {
+        spillRow(spilledRightRows, _rightKeySelector, row);
+      }
+      _nullKeyRightRows = new ArrayList<>();
+    }
+    _rightTable = null;
+
+    // Spill the remaining blocks from the right input
+    MseBlock block = rightBlock;
+    while (block.isData()) {
+      for (Object[] row : ((MseBlock.Data) block).asRowHeap().getRows()) {
+        spillRow(spilledRightRows, _rightKeySelector, row);
+      }
+      checkTerminationAndSampleUsage();
+      block = _rightInput.nextBlock();
+    }
+    spilledRightRows.finish();
+    _statMap.merge(StatKey.SPILLED_ROWS, spilledRightRows.getNumRows());
+    _statMap.merge(StatKey.SPILLED_BYTES, spilledRightRows.getNumSpilledBytes());
+    return (MseBlock.Eos) block;
+  }
+
+  private void spillRow(SpilledRowPartitions spilledRows, KeySelector<?> keySelector, Object[] row) {
+    Object key = keySelector.getKey(row);
+    // Rows with null keys are always put into the same partition to be handled the same way as the in memory join
+    spilledRows.addRow(isNullKey(key) ? null : key, row);
+    checkTerminationAndSampleUsagePeriodically(_numRowsSpilled++, SPILL_ROWS_SCOPE);
+  }
+
+  @Override
+  protected void finishBuildingRightTable() {
+    if (_spilledRightRows == null) {
+      assert _rightTable != null : "Right table should not be null when finishing building";
+      _rightTable.finish();
+    }
+  }
+
+  @Override
+  protected MseBlock buildJoinedDataBlock() {
+    if (_spilledRightRows == null) {
+      return super.buildJoinedDataBlock();
+    }
+    if (_leftEosBlock == null) {
+      MseBlock.Eos leftEosBlock = spillLeftTable();
+      if (leftEosBlock.isError()) {
+        return leftEosBlock;
+      }
+      _leftEosBlock = leftEosBlock;
+    }
+    // Join the spilled rows partition by partition
+    while (true) {
+      if (_spillPartitionLoaded) {
+        List<Object[]> leftRows = _spilledLeftRows != null ? _spilledLeftRows.readNextBlock(_spillPartitionId) : null;
+        if (leftRows != null) {
+          List<Object[]> rows = buildJoinedRows(new RowHeapDataBlock(leftRows, _leftSchema));
+          checkTerminationAndSampleUsage();
+          if (!rows.isEmpty()) {
+            return new RowHeapDataBlock(rows, _resultSchema);
+          }
+          continue;
+        }
+        _spillPartitionLoaded = false;
+        if (needUnmatchedRightRows()) {
+          List<Object[]> rows = buildNonMatchRightRows();
+          if (!rows.isEmpty()) {
+            return new RowHeapDataBlock(rows, _resultSchema);
+          }
+        }
+      }
+      if (++_spillPartitionId == _spilledRightRows.getNumPartitions()) {
+        return _leftEosBlock;
+      }
+      loadSpilledRightTable(_spillPartitionId);
+    }
+  }
+
+  /**
+   * Spills all the blocks from the left input, and returns the end of stream block of the left input.
+   */
+  private MseBlock.Eos spillLeftTable() {
+    assert _spilledRightRows != null;
+    MseBlock block = _leftInput.nextBlock();
+    while (block.isData()) {
+      MseBlock.Data dataBlock = (MseBlock.Data) block;
+      if (_spilledLeftRows == null) {
+        _spilledLeftRows =
+            new SpilledRowPartitions(SpilledRowPartitions.getSpillDir(_context.getOpChainMetadata()),
+                dataBlock.getDataSchema(), _spilledRightRows.getNumPartitions());
+      }
+      for (Object[] row : dataBlock.asRowHeap().getRows()) {
+        spillRow(_spilledLeftRows, _leftKeySelector, row);
+      }
+      checkTerminationAndSampleUsage();
+      block = _leftInput.nextBlock();
+    }
+    if (_spilledLeftRows != null) {
+      _spilledLeftRows.finish();
+      _statMap.merge(StatKey.SPILLED_ROWS, _spilledLeftRows.getNumRows());
+      _statMap.merge(StatKey.SPILLED_BYTES, _spilledLeftRows.getNumSpilledBytes());
+    }
+    return (MseBlock.Eos) block;
+  }
+
+  /**
+   * Builds the right table with the spilled right rows of the given partition.
+   */
+  private void loadSpilledRightTable(int partitionId) {
+    assert _spilledRightRows != null;
+    long startTime = System.currentTimeMillis();
+    long numRows = _spilledRightRows.getNumRows(partitionId);
+    if (numRows > _maxRowsInJoin) {
+      _statMap.merge(StatKey.MAX_ROWS_IN_JOIN, numRows);
+      throwForJoinRowLimitExceeded(
+          "Cannot build in memory hash table for spilled partition " + partitionId + " of join operator, reached "
+              + "number of rows limit: " + _maxRowsInJoin + ". Consider increasing the number of spill partitions via "
+              + "the query option '" + QueryOptionKey.NUM_SPILL_PARTITIONS + "'");
+    }
+    _rightTable = createLookupTable(_leftKeys, _leftSchema);
+    _matchedRightRows = needUnmatchedRightRows() ? new HashMap<>() : null;
+    if (_nullKeyRightRows != null) {
+      _nullKeyRightRows = new ArrayList<>();
+    }
+    List<Object[]> rows;
+    while ((rows = _spilledRightRows.readNextBlock(partitionId)) != null) {
+      addRowsToRightTable(rows);
+      checkTerminationAndSampleUsage();
+    }
+    _rightTable.finish();
+    _spillPartitionLoaded = true;
+    _statMap.merge(StatKey.MAX_ROWS_IN_JOIN, numRows);
+    _statMap.merge(StatKey.TIME_BUILDING_HASH_TABLE_MS, System.currentTimeMillis() - startTime);
   }
 
   @Override
@@ -24,11 +24,16 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelFieldCollation;
+import org.apache.commons.collections4.CollectionUtils;
 import org.apache.pinot.common.datatable.StatMap;
 import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.query.mailbox.MailboxService;
 import org.apache.pinot.query.mailbox.SendingMailbox;
 import org.apache.pinot.query.planner.physical.MailboxIdUtils;
@@ -38,8 +43,12 @@ import org.apache.pinot.query.routing.RoutingInfo;
 import org.apache.pinot.query.runtime.blocks.BlockSplitter;
 import org.apache.pinot.query.runtime.blocks.ErrorMseBlock;
 import org.apache.pinot.query.runtime.blocks.MseBlock;
+import org.apache.pinot.query.runtime.blocks.RowHeapDataBlock;
 import org.apache.pinot.query.runtime.blocks.SuccessMseBlock;
 import org.apache.pinot.query.runtime.operator.exchange.BlockExchange;
+import org.apache.pinot.query.runtime.operator.utils.SortUtils;
+import org.apache.pinot.query.runtime.operator.utils.SpilledRowPartitions;
+import org.apache.pinot.query.runtime.operator.utils.SpillingRowSorter;
 import org.apache.pinot.query.runtime.plan.MultiStageQueryStats;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
 import org.apache.pinot.segment.spi.memory.DataBuffer;
@@ -52,8 +61,10 @@ import org.slf4j.LoggerFactory;
 
 /**
  * This {@code MailboxSendOperator} is created to send {@link MseBlock}s to the receiving end.
- *
- * TODO: Add support to sort the data prior to sending if sorting is enabled
+ * <p>When sorting on the sender side is enabled, all the rows are sorted before sending, so that the rows in each
+ * mailbox arrive in order and can be merged on the receiving end. The rows are sorted with bounded memory, where the
+ * sorted runs are spilled to the local disk when there are more rows than
+ * {@link SpillingRowSorter#getMaxRowsInMemory}, and merged when sending.
  */
 public class MailboxSendOperator extends MultiStageOperator {
   public static final EnumSet<RelDistribution.Type> SUPPORTED_EXCHANGE_TYPES =
@@ -62,14 +73,21 @@ public class MailboxSendOperator extends MultiStageOperator {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(MailboxSendOperator.class);
   private static final String EXPLAIN_NAME = "MAILBOX_SEND";
+  private static final int MAX_ROWS_PER_SORTED_BLOCK = 10_000;
 
   private final MultiStageOperator _input;
   private final BlockExchange _exchange;
   private final StatMap<StatKey> _statMap = new StatMap<>(StatKey.class);
+  // Not null when sorting on the sender side
+  @Nullable
+  private final SortUtils.SortComparator _sortComparator;
+
+  // Created on the first data block when sorting on the sender side
+  private SpillingRowSorter _rowSorter;
 
-  // TODO: Support sort on sender
   public MailboxSendOperator(OpChainExecutionContext context, MultiStageOperator input, MailboxSendNode node) {
-    this(context, input, statMap -> getBlockExchange(context, node, statMap));
+    this(context, input, statMap -> getBlockExchange(context, node, statMap), node.isSort() ? node.getCollations()
+        : null);
     _statMap.merge(StatKey.STAGE, context.getStageId());
     _statMap.merge(StatKey.PARALLELISM, 1);
   }
@@ -77,9 +95,17 @@ public class MailboxSendOperator extends MultiStageOperator {
   @VisibleForTesting
   MailboxSendOperator(OpChainExecutionContext context, MultiStageOperator input,
       Function<StatMap<StatKey>, BlockExchange> exchangeFactory) {
+    this(context, input, exchangeFactory, null);
+  }
+
+  @VisibleForTesting
+  MailboxSendOperator(OpChainExecutionContext context, MultiStageOperator input,
+      Function<StatMap<StatKey>, BlockExchange> exchangeFactory, @Nullable List<RelFieldCollation> sortCollations) {
     super(context);
     _input = input;
     _exchange = exchangeFactory.apply(_statMap);
+    _sortComparator =
+        CollectionUtils.isNotEmpty(sortCollations) ? new SortUtils.SortComparator(sortCollations, false) : null;
   }
 
   /**
@@ -211,9 +237,22 @@ public class MailboxSendOperator extends MultiStageOperator {
     try {
       MseBlock block = _input.nextBlock();
       if (block.isEos()) {
+        if (_rowSorter != null && block.isSuccess()) {
+          sendSortedRows();
+        }
         sendEos((MseBlock.Eos) block);
       } else {
-        sendMseBlock(((MseBlock.Data) block));
+        MseBlock.Data dataBlock = (MseBlock.Data) block;
+        if (_sortComparator != null) {
+          if (_rowSorter == null) {
+            Map<String, String> opChainMetadata = _context.getOpChainMetadata();
+            _rowSorter = new SpillingRowSorter(SpilledRowPartitions.getSpillDir(opChainMetadata),
+                dataBlock.getDataSchema(), _sortComparator, SpillingRowSorter.getMaxRowsInMemory(opChainMetadata));
+          }
+          _rowSorter.addRows(dataBlock.asRowHeap().getRows());
+        } else {
+          sendMseBlock(dataBlock);
+        }
         checkTerminationAndSampleUsage();
       }
       return block;
@@ -251,6 +290,32 @@ public class MailboxSendOperator extends MultiStageOperator {
     return _context.getPassiveDeadlineMs();
   }
 
+  /**
+   * Sorts and sends all the rows. The exchange keeps the order of the rows sent to each mailbox.
+   */
+  private void sendSortedRows() {
+    _rowSorter.finish();
+    if (_rowSorter.getNumSpilledRuns() > 0) {
+      LOGGER.debug("Merging {} sorted runs with {} spilled rows on opChain: {}", _rowSorter.getNumSpilledRuns(),
+          _rowSorter.getNumSpilledRows(), _context.getId());
+    }
+    DataSchema dataSchema = _rowSorter.getDataSchema();
+    List<Object[]> rows;
+    while ((rows = _rowSorter.nextBlock(MAX_ROWS_PER_SORTED_BLOCK)) != null) {
+      sendMseBlock(new RowHeapDataBlock(rows, dataSchema));
+    }
+  }
+
+  @VisibleForTesting
+  int getNumSortedRowsInMemory() {
+    return _rowSorter != null ? _rowSorter.getNumRowsInMemory() : 0;
+  }
+
+  @VisibleForTesting
+  long getNumSortedRowsSpilled() {
+    return _rowSorter != null ? _rowSorter.getNumSpilledRows() : 0;
+  }
+
   private void sendEos(MseBlock.Eos eosBlockWithoutStats) {
     MultiStageQueryStats stats = null;
     List<DataBuffer> serializedStats;
@@ -299,6 +364,9 @@ public class MailboxSendOperator extends MultiStageOperator {
   public void close() {
     super.close();
     _exchange.close();
+    if (_rowSorter != null) {
+      _rowSorter.close();
+    }
   }
 
   @Override
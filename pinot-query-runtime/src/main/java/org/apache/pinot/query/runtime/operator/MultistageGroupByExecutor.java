@@ -297,6 +297,15 @@ public class MultistageGroupByExecutor {
     }
   }
 
+  /**
+   * Returns the group id for each row, where new groups are generated until the number of groups limit is reached, and
+   * {@link GroupIdGenerator#INVALID_ID} is returned for the rows of the groups not generated. The rows are not
+   * aggregated.
+   */
+  public int[] getGroupIds(List<Object[]> rows) {
+    return generateGroupByKeys(rows);
+  }
+
   public int getNumGroups() {
     return _groupIdGenerator.getNumGroups();
   }
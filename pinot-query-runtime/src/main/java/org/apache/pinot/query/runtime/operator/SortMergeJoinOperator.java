@@ -0,0 +1,409 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.query.planner.plannode.JoinNode;
+import org.apache.pinot.query.runtime.blocks.MseBlock;
+import org.apache.pinot.query.runtime.blocks.RowHeapDataBlock;
+import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
+import org.apache.pinot.spi.utils.CommonConstants.MultiStageQueryRunner.JoinOverFlowMode;
+
+
+/**
+ * The {@code SortMergeJoinOperator} joins 2 inputs that are both sorted on the join keys in ascending order (e.g. from
+ * the {@link SortedMailboxReceiveOperator}), by streaming both inputs at the same time instead of materializing the
+ * right input in a hash table. Only the rows from the right input with the same join keys (the current key group) are
+ * buffered in memory, so the memory usage is bounded by the size of the blocks and the largest key group instead of
+ * the size of the right input.
+ * <p>Rows with null join keys never match. The inputs are validated to be sorted while being consumed, and an
+ * exception is thrown if they are not.
+ * <p>The number of rows limit applies to the size of the key group, and to the number of joined rows in each output
+ * block. {@link JoinOverFlowMode#SPILL} is handled the same way as {@link JoinOverFlowMode#THROW}.
+ */
+public class SortMergeJoinOperator extends BaseJoinOperator {
+  private static final String EXPLAIN_NAME = "SORT_MERGE_JOIN";
+  private static final String BUILD_JOINED_ROWS_SCOPE = "SortMergeJoinOperator#buildJoinedRows";
+
+  private final int[] _leftKeyIds;
+  private final int[] _rightKeyIds;
+
+  // Current block from the right input, and the index of the next row to be processed
+  private List<Object[]> _rightRows = List.of();
+  private int _rightRowId;
+  private boolean _rightInputFinished;
+  @Nullable
+  private MseBlock.Eos _rightErrorBlock;
+
+  // Rows from the right input with the same join keys, and whether each of them is matched (only tracked for RIGHT and
+  // FULL join)
+  private final List<Object[]> _rightGroupRows = new ArrayList<>();
+  @Nullable
+  private final BitSet _matchedRightGroupRows;
+
+  @Nullable
+  private MseBlock.Eos _leftEosBlock;
+
+  // Last rows (with non-null join keys) from both inputs to validate that the inputs are sorted
+  @Nullable
+  private Object[] _lastLeftRow;
+  @Nullable
+  private Object[] _lastRightRow;
+
+  public SortMergeJoinOperator(OpChainExecutionContext context, MultiStageOperator leftInput, DataSchema leftSchema,
+      MultiStageOperator rightInput, JoinNode node) {
+    super(context, leftInput, leftSchema, rightInput, node);
+    List<Integer> leftKeys = node.getLeftKeys();
+    List<Integer> rightKeys = node.getRightKeys();
+    Preconditions.checkState(!leftKeys.isEmpty() && leftKeys.size() == rightKeys.size(),
+        "Sort merge join requires the same number of non-empty join keys on both sides, got left: %s, right: %s",
+        leftKeys, rightKeys);
+    Preconditions.checkState(_joinType != JoinRelType.ASOF && _joinType != JoinRelType.LEFT_ASOF,
+        "Unsupported join type: %s for sort merge join", _joinType);
+    _leftKeyIds = leftKeys.stream().mapToInt(Integer::intValue).toArray();
+    _rightKeyIds = rightKeys.stream().mapToInt(Integer::intValue).toArray();
+    _matchedRightGroupRows = needUnmatchedRightRows() ? new BitSet() : null;
+  }
+
+  @Override
+  public String toExplainString() {
+    return EXPLAIN_NAME;
+  }
+
+  @Override
+  protected void buildRightTable() {
+    // The right input is streamed along with the left input instead of being materialized
+    _isRightTableBuilt = true;
+  }
+
+  @Override
+  protected void addRowsToRightTable(List<Object[]> rows) {
+    throw new UnsupportedOperationException("Sort merge join does not build the right table");
+  }
+
+  @Override
+  protected void finishBuildingRightTable() {
+    throw new UnsupportedOperationException("Sort merge join does not build the right table");
+  }
+
+  @Override
+  protected void onEosProduced() {
+    _rightRows = List.of();
+    _rightGroupRows.clear();
+  }
+
+  @Override
+  protected MseBlock buildJoinedDataBlock() {
+    while (true) {
+      if (_eos != null) {
+        return _eos;
+      }
+      if (_leftEosBlock == null) {
+        if (_rightInputFinished && _rightGroupRows.isEmpty() && !needUnmatchedLeftRows()
+            && _joinType != JoinRelType.ANTI) {
+          // None of the remaining left rows can be matched or emitted
+          earlyTerminateLeftInput();
+          continue;
+        }
+        MseBlock leftBlock = _leftInput.nextBlock();
+        if (leftBlock.isData()) {
+          List<Object[]> rows = buildJoinedRows((MseBlock.Data) leftBlock);
+          if (_rightErrorBlock != null) {
+            return _rightErrorBlock;
+          }
+          checkTerminationAndSampleUsage();
+          if (!rows.isEmpty()) {
+            return new RowHeapDataBlock(rows, _resultSchema);
+          }
+          continue;
+        }
+        MseBlock.Eos leftEosBlock = (MseBlock.Eos) leftBlock;
+        if (leftEosBlock.isError()) {
+          return leftEosBlock;
+        }
+        _leftEosBlock = leftEosBlock;
+      }
+      // The left input is finished, emit the remaining right rows as unmatched rows block by block if needed
+      if (!needUnmatchedRightRows()) {
+        earlyTerminateRightInput();
+        return _rightErrorBlock != null ? _rightErrorBlock : _leftEosBlock;
+      }
+      List<Object[]> rows = buildNonMatchRightRows();
+      if (_rightErrorBlock != null) {
+        return _rightErrorBlock;
+      }
+      if (!rows.isEmpty()) {
+        return new RowHeapDataBlock(rows, _resultSchema);
+      }
+      if (_rightInputFinished) {
+        return _leftEosBlock;
+      }
+    }
+  }
+
+  @Override
+  protected List<Object[]> buildJoinedRows(MseBlock.Data leftBlock) {
+    List<Object[]> leftRows = leftBlock.asRowHeap().getRows();
+    List<Object[]> rows = new ArrayList<>(leftRows.size());
+    for (Object[] leftRow : leftRows) {
+      if (hasNullKey(leftRow, _leftKeyIds)) {
+        // Rows with null join keys cannot be matched
+        handleUnmatchedLeftRow(leftRow, rows);
+        continue;
+      }
+      if (_lastLeftRow != null && compareKeys(_lastLeftRow, _leftKeyIds, leftRow, _leftKeyIds) > 0) {
+        throw new IllegalStateException("Left input of sort merge join is not sorted on the join keys");
+      }
+      _lastLeftRow = leftRow;
+      seekRightGroup(leftRow, rows);
+      if (_rightErrorBlock != null) {
+        return rows;
+      }
+      if (_rightGroupRows.isEmpty() || compareKeys(leftRow, _leftKeyIds, _rightGroupRows.get(0), _rightKeyIds) != 0) {
+        handleUnmatchedLeftRow(leftRow, rows);
+      } else if (joinWithRightGroup(leftRow, rows)) {
+        // Reached the number of rows limit in BREAK mode
+        earlyTerminateRightInput();
+        return rows;
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Returns the unmatched rows of the current key group, and the rows of the next block from the right input. Should be
+   * called after the left input is finished, where all the remaining right rows are unmatched.
+   */
+  @Override
+  protected List<Object[]> buildNonMatchRightRows() {
+    List<Object[]> rows = new ArrayList<>();
+    finishRightGroup(rows);
+    if (peekRightRow() != null) {
+      while (_rightRowId < _rightRows.size()) {
+        rows.add(joinRow(null, consumeRightRow()));
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Moves the right input to the key group of the given left row. The right rows with smaller join keys are skipped
+   * (and emitted as unmatched rows if needed), and the right rows with the same join keys are buffered as the current
+   * key group. The right input is not moved if the current key group has the same or larger join keys.
+   */
+  private void seekRightGroup(Object[] leftRow, List<Object[]> rows) {
+    if (!_rightGroupRows.isEmpty()) {
+      if (compareKeys(leftRow, _leftKeyIds, _rightGroupRows.get(0), _rightKeyIds) <= 0) {
+        return;
+      }
+      finishRightGroup(rows);
+    }
+    Object[] rightRow;
+    while ((rightRow = peekRightRow()) != null) {
+      if (!hasNullKey(rightRow, _rightKeyIds)) {
+        int result = compareKeys(leftRow, _leftKeyIds, rightRow, _rightKeyIds);
+        if (result < 0) {
+          return;
+        }
+        if (result == 0) {
+          buildRightGroup();
+          return;
+        }
+      }
+      // Right row is unmatched because either the join keys are smaller than the left row, or contain null
+      consumeRightRow();
+      if (needUnmatchedRightRows()) {
+        checkTerminationAndSampleUsagePeriodically(rows.size(), BUILD_JOINED_ROWS_SCOPE);
+        rows.add(joinRow(null, rightRow));
+      }
+    }
+  }
+
+  /**
+   * Buffers all the consecutive right rows with the same join keys as the next right row.
+   */
+  private void buildRightGroup() {
+    Object[] firstRow = consumeRightRow();
+    _rightGroupRows.add(firstRow);
+    Object[] rightRow;
+    while ((rightRow = peekRightRow()) != null && !hasNullKey(rightRow, _rightKeyIds)
+        && compareKeys(firstRow, _rightKeyIds, rightRow, _rightKeyIds) == 0) {
+      consumeRightRow();
+      int numRows = _rightGroupRows.size();
+      if (numRows == _maxRowsInJoin) {
+        if (_joinOverflowMode != JoinOverFlowMode.BREAK) {
+          _statMap.merge(StatKey.MAX_ROWS_IN_JOIN, numRows + 1);
+          throwForJoinRowLimitExceeded(
+              "Cannot buffer rows with the same join keys for sort merge join, reached number of rows limit: "
+                  + _maxRowsInJoin);
+        }
+        // Skip the remaining rows with the same join keys
+        _statMap.merge(StatKey.MAX_ROWS_IN_JOIN_REACHED, true);
+        continue;
+      }
+      _rightGroupRows.add(rightRow);
+      checkTerminationAndSampleUsagePeriodically(numRows, BUILD_JOINED_ROWS_SCOPE);
+    }
+    _statMap.merge(StatKey.MAX_ROWS_IN_JOIN, _rightGroupRows.size());
+  }
+
+  /**
+   * Emits the unmatched rows of the current key group if needed, and clears the key group.
+   */
+  private void finishRightGroup(List<Object[]> rows) {
+    if (_matchedRightGroupRows != null) {
+      int numRows = _rightGroupRows.size();
+      for (int i = 0; i < numRows; i++) {
+        if (!_matchedRightGroupRows.get(i)) {
+          rows.add(joinRow(null, _rightGroupRows.get(i)));
+        }
+      }
+      _matchedRightGroupRows.clear();
+    }
+    _rightGroupRows.clear();
+  }
+
+  /**
+   * Joins the left row with the rows of the current key group, which have the same join keys as the left row.
+   *
+   * @return {@code true} if the number of rows limit is reached in BREAK mode, {@code false} otherwise.
+   */
+  private boolean joinWithRightGroup(Object[] leftRow, List<Object[]> rows) {
+    int numRightRows = _rightGroupRows.size();
+    if (_joinType == JoinRelType.SEMI || _joinType == JoinRelType.ANTI) {
+      boolean matched = false;
+      for (int i = 0; i < numRightRows && !matched; i++) {
+        matched = matchNonEquiConditions(joinRowView(leftRow, _rightGroupRows.get(i)));
+      }
+      if (matched == (_joinType == JoinRelType.SEMI)) {
+        rows.add(leftRow);
+      }
+      return false;
+    }
+    boolean matched = false;
+    for (int i = 0; i < numRightRows; i++) {
+      List<Object> resultRowView = joinRowView(leftRow, _rightGroupRows.get(i));
+      if (matchNonEquiConditions(resultRowView)) {
+        if (isMaxRowsLimitReached(rows.size())) {
+          return true;
+        }
+        checkTerminationAndSampleUsagePeriodically(rows.size(), BUILD_JOINED_ROWS_SCOPE);
+        rows.add(resultRowView.toArray());
+        matched = true;
+        if (_matchedRightGroupRows != null) {
+          _matchedRightGroupRows.set(i);
+        }
+      }
+    }
+    if (!matched && needUnmatchedLeftRows()) {
+      rows.add(joinRow(leftRow, null));
+    }
+    return false;
+  }
+
+  private void handleUnmatchedLeftRow(Object[] leftRow, List<Object[]> rows) {
+    if (_joinType == JoinRelType.ANTI) {
+      rows.add(leftRow);
+    } else if (needUnmatchedLeftRows()) {
+      rows.add(joinRow(leftRow, null));
+    }
+  }
+
+  /**
+   * Returns the next row from the right input without consuming it, or {@code null} if the right input is finished.
+   */
+  @Nullable
+  private Object[] peekRightRow() {
+    while (_rightRowId == _rightRows.size()) {
+      if (_rightInputFinished) {
+        return null;
+      }
+      MseBlock rightBlock = _rightInput.nextBlock();
+      if (rightBlock.isData()) {
+        _rightRows = ((MseBlock.Data) rightBlock).asRowHeap().getRows();
+      } else {
+        onRightInputFinished((MseBlock.Eos) rightBlock);
+      }
+      _rightRowId = 0;
+    }
+    return _rightRows.get(_rightRowId);
+  }
+
+  /**
+   * Consumes the next row from the right input. Should be called after {@link #peekRightRow()} returns a row.
+   */
+  private Object[] consumeRightRow() {
+    Object[] rightRow = _rightRows.get(_rightRowId++);
+    if (!hasNullKey(rightRow, _rightKeyIds)) {
+      if (_lastRightRow != null && compareKeys(_lastRightRow, _rightKeyIds, rightRow, _rightKeyIds) > 0) {
+        throw new IllegalStateException("Right input of sort merge join is not sorted on the join keys");
+      }
+      _lastRightRow = rightRow;
+    }
+    return rightRow;
+  }
+
+  private void earlyTerminateRightInput() {
+    if (_rightInputFinished) {
+      return;
+    }
+    _rightInput.earlyTerminate();
+    MseBlock rightBlock = _rightInput.nextBlock();
+    while (rightBlock.isData()) {
+      rightBlock = _rightInput.nextBlock();
+    }
+    onRightInputFinished((MseBlock.Eos) rightBlock);
+  }
+
+  private void onRightInputFinished(MseBlock.Eos rightEosBlock) {
+    _rightInputFinished = true;
+    _rightRows = List.of();
+    _rightRowId = 0;
+    if (rightEosBlock.isError()) {
+      _rightErrorBlock = rightEosBlock;
+    }
+  }
+
+  private static boolean hasNullKey(Object[] row, int[] keyIds) {
+    for (int keyId : keyIds) {
+      if (row[keyId] == null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static int compareKeys(Object[] row1, int[] keyIds1, Object[] row2, int[] keyIds2) {
+    int numKeys = keyIds1.length;
+    for (int i = 0; i < numKeys; i++) {
+      int result = ((Comparable) row1[keyIds1[i]]).compareTo(row2[keyIds2[i]]);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return 0;
+  }
+}
@@ -18,9 +18,13 @@
  */
 package org.apache.pinot.query.runtime.operator;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.pinot.common.utils.DataSchema;
@@ -29,6 +33,9 @@ import org.apache.pinot.query.planner.plannode.MailboxReceiveNode;
 import org.apache.pinot.query.runtime.blocks.MseBlock;
 import org.apache.pinot.query.runtime.blocks.RowHeapDataBlock;
 import org.apache.pinot.query.runtime.operator.utils.SortUtils;
+import org.apache.pinot.query.runtime.operator.utils.SpillableRowQueue;
+import org.apache.pinot.query.runtime.operator.utils.SpilledRowPartitions;
+import org.apache.pinot.query.runtime.operator.utils.SpillingRowSorter;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,27 +44,62 @@ import org.slf4j.LoggerFactory;
 /**
  * This {@code SortedMailboxReceiveOperator} receives data from a {@link ReceivingMailbox} and serve it out from the
  * {@link #nextBlock()} API in a sorted manner.
- *
- *  TODO: Once sorting on the {@code MailboxSendOperator} is available, modify this to use a k-way merge instead of
- *        resorting via the PriorityQueue.
+ * <p>When the data is sorted on the sender side, the rows in each mailbox are already sorted, and are merged with a
+ * k-way merge as they arrive. Only the rows received but not merged yet are buffered, which are the rows received from
+ * the other mailboxes while waiting for the slowest one. The buffered rows of each mailbox are kept in a
+ * {@link SpillableRowQueue}, which spills to the local disk when there are more rows than
+ * {@link SpillingRowSorter#getMaxRowsInMemory}, so that the memory is bounded even when the mailboxes are skewed. All
+ * the mailboxes keep being read while waiting, so that the senders are never blocked by the merge. Otherwise, all the
+ * received rows are collected and sorted after all the mailboxes are finished.
  */
 public class SortedMailboxReceiveOperator extends BaseMailboxReceiveOperator {
   private static final Logger LOGGER = LoggerFactory.getLogger(SortedMailboxReceiveOperator.class);
 
   private static final String EXPLAIN_NAME = "SORTED_MAILBOX_RECEIVE";
+  private static final int MAX_ROWS_PER_MERGED_BLOCK = 10_000;
 
   private final DataSchema _dataSchema;
   private final List<RelFieldCollation> _collations;
   private final List<Object[]> _rows = new ArrayList<>();
 
+  // Fields to merge the rows sorted on the sender side, only used when _sortedOnSender is true
+  private final boolean _sortedOnSender;
+  private final SpillableRowQueue[] _mailboxRows;
+  private final boolean[] _mailboxFinished;
+  // Indexes of the mailboxes with buffered rows, ordered by the first buffered row
+  private final PriorityQueue<Integer> _mergeQueue;
+  // Number of the mailboxes not finished yet without buffered rows, where rows can be merged only when it is 0
+  private int _numPendingMailboxes;
+  private int _maxNumRowsInMemoryPerMailbox;
+
   private MseBlock _eosBlock;
 
-  // TODO: Support merge sort when sender side sort is supported.
   public SortedMailboxReceiveOperator(OpChainExecutionContext context, MailboxReceiveNode node) {
     super(context, node);
     Preconditions.checkState(!CollectionUtils.isEmpty(node.getCollations()), "Field collations must be set");
     _dataSchema = node.getDataSchema();
     _collations = node.getCollations();
+    _sortedOnSender = node.isSortedOnSender();
+    if (_sortedOnSender) {
+      int numMailboxes = _mailboxIds.size();
+      Map<String, String> opChainMetadata = context.getOpChainMetadata();
+      File spillDir = SpilledRowPartitions.getSpillDir(opChainMetadata);
+      int maxRowsInMemory = SpillingRowSorter.getMaxRowsInMemory(opChainMetadata);
+      int numRowsPerSpilledBlock = Math.min(maxRowsInMemory, SpillableRowQueue.DEFAULT_NUM_ROWS_PER_SPILLED_BLOCK);
+      _mailboxRows = new SpillableRowQueue[numMailboxes];
+      for (int i = 0; i < numMailboxes; i++) {
+        _mailboxRows[i] = new SpillableRowQueue(spillDir, _dataSchema, maxRowsInMemory, numRowsPerSpilledBlock);
+      }
+      _mailboxFinished = new boolean[numMailboxes];
+      SortUtils.SortComparator comparator = new SortUtils.SortComparator(_collations, false);
+      _mergeQueue = new PriorityQueue<>(Math.max(numMailboxes, 1),
+          (i1, i2) -> comparator.compare(_mailboxRows[i1].peek(), _mailboxRows[i2].peek()));
+      _numPendingMailboxes = numMailboxes;
+    } else {
+      _mailboxRows = null;
+      _mailboxFinished = null;
+      _mergeQueue = null;
+    }
   }
 
   @Override
@@ -72,6 +114,9 @@ public class SortedMailboxReceiveOperator extends BaseMailboxReceiveOperator {
 
   @Override
   protected MseBlock getNextBlock() {
+    if (_sortedOnSender) {
+      return getNextMergedBlock();
+    }
     if (_eosBlock != null) {
       return _eosBlock;
     }
@@ -100,10 +145,101 @@ public class SortedMailboxReceiveOperator extends BaseMailboxReceiveOperator {
     }
   }
 
+  private MseBlock getNextMergedBlock() {
+    while (true) {
+      if (_eosBlock != null && _eosBlock.isError()) {
+        return _eosBlock;
+      }
+      List<Object[]> rows = mergeBufferedRows();
+      if (!rows.isEmpty()) {
+        return new RowHeapDataBlock(rows, _dataSchema);
+      }
+      if (_eosBlock != null) {
+        return _eosBlock;
+      }
+      // The data blocks are buffered in onMailboxBlock(), and the EOS is returned after all the mailboxes are finished
+      MseBlock block = _multiConsumer.readMseBlockBlocking();
+      if (block.isEos()) {
+        onEos();
+        _eosBlock = block;
+      }
+    }
+  }
+
+  /**
+   * Merges the buffered rows as long as every mailbox not finished yet has rows buffered.
+   */
+  private List<Object[]> mergeBufferedRows() {
+    List<Object[]> rows = new ArrayList<>();
+    while (_numPendingMailboxes == 0 && !_mergeQueue.isEmpty() && rows.size() < MAX_ROWS_PER_MERGED_BLOCK) {
+      int mailboxIndex = _mergeQueue.poll();
+      SpillableRowQueue mailboxRows = _mailboxRows[mailboxIndex];
+      rows.add(mailboxRows.poll());
+      _maxNumRowsInMemoryPerMailbox = Math.max(_maxNumRowsInMemoryPerMailbox, mailboxRows.getNumRowsInMemory());
+      if (!mailboxRows.isEmpty()) {
+        _mergeQueue.add(mailboxIndex);
+      } else if (!_mailboxFinished[mailboxIndex]) {
+        _numPendingMailboxes++;
+      }
+    }
+    return rows;
+  }
+
+  @Override
+  protected void onMailboxBlock(int mailboxIndex, MseBlock block) {
+    if (!_sortedOnSender) {
+      return;
+    }
+    if (block.isData()) {
+      List<Object[]> rows = ((MseBlock.Data) block).asRowHeap().getRows();
+      if (rows.isEmpty()) {
+        return;
+      }
+      SpillableRowQueue mailboxRows = _mailboxRows[mailboxIndex];
+      boolean wasEmpty = mailboxRows.isEmpty();
+      mailboxRows.addAll(rows);
+      _maxNumRowsInMemoryPerMailbox = Math.max(_maxNumRowsInMemoryPerMailbox, mailboxRows.getNumRowsInMemory());
+      if (wasEmpty) {
+        _mergeQueue.add(mailboxIndex);
+        _numPendingMailboxes--;
+      }
+    } else if (block.isSuccess()) {
+      _mailboxFinished[mailboxIndex] = true;
+      if (_mailboxRows[mailboxIndex].isEmpty()) {
+        _numPendingMailboxes--;
+      }
+    }
+  }
+
+  /**
+   * Returns the max number of buffered rows held in memory for a mailbox since the operator is created.
+   */
+  @VisibleForTesting
+  int getMaxNumRowsInMemoryPerMailbox() {
+    return _maxNumRowsInMemoryPerMailbox;
+  }
+
+  @VisibleForTesting
+  long getNumSpilledRows() {
+    long numSpilledRows = 0;
+    if (_mailboxRows != null) {
+      for (SpillableRowQueue mailboxRows : _mailboxRows) {
+        numSpilledRows += mailboxRows.getNumSpilledRows();
+      }
+    }
+    return numSpilledRows;
+  }
+
   @Override
   public void close() {
     super.close();
     _rows.clear();
+    if (_sortedOnSender) {
+      _mergeQueue.clear();
+      for (SpillableRowQueue mailboxRows : _mailboxRows) {
+        mailboxRows.close();
+      }
+    }
   }
 
   @Override
@@ -28,6 +28,7 @@ import org.apache.pinot.query.runtime.operator.HashJoinOperator;
 import org.apache.pinot.query.runtime.operator.LookupJoinOperator;
 import org.apache.pinot.query.runtime.operator.MultiStageOperator;
 import org.apache.pinot.query.runtime.operator.NonEquiJoinOperator;
+import org.apache.pinot.query.runtime.operator.SortMergeJoinOperator;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
 
 
@@ -52,6 +53,8 @@ public class DefaultJoinOperatorFactory implements JoinOperatorFactory {
         return new LookupJoinOperator(context, leftOperator, leftSchema, rightOperator, joinNode);
       case ASOF:
         return new AsofJoinOperator(context, leftOperator, leftSchema, rightOperator, joinNode);
+      case SORT_MERGE:
+        return new SortMergeJoinOperator(context, leftOperator, leftSchema, rightOperator, joinNode);
       default:
         throw new IllegalStateException("Unsupported JoinStrategy: " + joinStrategy);
     }
@@ -74,6 +77,8 @@ public class DefaultJoinOperatorFactory implements JoinOperatorFactory {
         throw new UnsupportedOperationException("LookupJoin yet to be supported for EnrichedJoin");
       case ASOF:
         throw new UnsupportedOperationException("AsOfJoin yet to be supported for EnrichedJoin");
+      case SORT_MERGE:
+        throw new UnsupportedOperationException("SortMergeJoin yet to be supported for EnrichedJoin");
       default:
         throw new IllegalStateException("Unsupported JoinStrategy for EnrichedJoin: " + joinStrategy);
     }
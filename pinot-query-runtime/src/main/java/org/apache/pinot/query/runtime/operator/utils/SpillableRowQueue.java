@@ -0,0 +1,246 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.utils;
+
+import com.google.common.base.Preconditions;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.datablock.DataBlock;
+import org.apache.pinot.common.datablock.DataBlockUtils;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.datablock.DataBlockBuilder;
+import org.apache.pinot.core.util.DataBlockExtractUtils;
+
+
+/**
+ * FIFO queue of rows which keeps a bounded number of rows in memory, and spills the other rows to a file on the local
+ * disk as serialized data blocks. Rows can be added while the queue is being polled (e.g. to buffer the rows received
+ * from a mailbox), and are always polled in the order they are added.
+ * <p>At most {@code maxRowsInMemory} rows are added to the head of the queue in memory. Once the limit is reached, the
+ * following rows are appended to the spill file in blocks of {@code numRowsPerSpilledBlock} rows, and read back one
+ * block at a time after the rows in memory are polled. So the number of rows in memory is bounded by
+ * {@code max(maxRowsInMemory, numRowsPerSpilledBlock) + numRowsPerSpilledBlock}.
+ * <p>The spill file is created on the first spill, and deleted when {@link #close()} is called.
+ * <p>This class is not thread-safe.
+ */
+public class SpillableRowQueue implements Closeable {
+  public static final int DEFAULT_NUM_ROWS_PER_SPILLED_BLOCK = 1000;
+
+  private final File _spillDir;
+  private final DataSchema _dataSchema;
+  private final int _maxRowsInMemory;
+  private final int _numRowsPerSpilledBlock;
+  // Head of the queue
+  private final ArrayDeque<Object[]> _rows = new ArrayDeque<>();
+  // Tail of the queue not written to the spill file yet, which follows the rows in the spill file
+  private List<Object[]> _rowsToSpill = new ArrayList<>();
+
+  private File _spillFile;
+  private FileChannel _fileChannel;
+  // Rows in [_readPosition, _writePosition) of the spill file are not polled yet
+  private long _readPosition;
+  private long _writePosition;
+  private int _size;
+  private long _numSpilledRows;
+
+  public SpillableRowQueue(File spillDir, DataSchema dataSchema, int maxRowsInMemory, int numRowsPerSpilledBlock) {
+    Preconditions.checkArgument(maxRowsInMemory >= 0, "Max rows in memory must be non-negative, got: %s",
+        maxRowsInMemory);
+    Preconditions.checkArgument(numRowsPerSpilledBlock > 0,
+        "Number of rows per spilled block must be positive, got: %s", numRowsPerSpilledBlock);
+    _spillDir = spillDir;
+    _dataSchema = dataSchema;
+    _maxRowsInMemory = maxRowsInMemory;
+    _numRowsPerSpilledBlock = numRowsPerSpilledBlock;
+  }
+
+  public void add(Object[] row) {
+    if (_rowsToSpill.isEmpty() && _readPosition == _writePosition && _rows.size() < _maxRowsInMemory) {
+      _rows.addLast(row);
+    } else {
+      _rowsToSpill.add(row);
+      if (_rowsToSpill.size() == _numRowsPerSpilledBlock) {
+        spill();
+      }
+    }
+    _size++;
+  }
+
+  public void addAll(List<Object[]> rows) {
+    for (Object[] row : rows) {
+      add(row);
+    }
+  }
+
+  /**
+   * Returns the first row of the queue without removing it, or {@code null} if the queue is empty.
+   */
+  @Nullable
+  public Object[] peek() {
+    if (_rows.isEmpty()) {
+      loadRows();
+    }
+    return _rows.peekFirst();
+  }
+
+  /**
+   * Removes and returns the first row of the queue, or {@code null} if the queue is empty.
+   */
+  @Nullable
+  public Object[] poll() {
+    if (_rows.isEmpty()) {
+      loadRows();
+    }
+    Object[] row = _rows.pollFirst();
+    if (row != null) {
+      _size--;
+    }
+    return row;
+  }
+
+  public boolean isEmpty() {
+    return _size == 0;
+  }
+
+  public int size() {
+    return _size;
+  }
+
+  /**
+   * Returns the number of rows held in memory, including the rows waiting to be written to the spill file.
+   */
+  public int getNumRowsInMemory() {
+    return _rows.size() + _rowsToSpill.size();
+  }
+
+  /**
+   * Returns the total number of rows written to the spill file.
+   */
+  public long getNumSpilledRows() {
+    return _numSpilledRows;
+  }
+
+  /**
+   * Returns the total number of bytes written to the spill file.
+   */
+  public long getNumSpilledBytes() {
+    return _writePosition;
+  }
+
+  /**
+   * Writes the rows following the rows in memory to the spill file, so that only the rows at the head of the queue are
+   * kept in memory.
+   */
+  public void spill() {
+    if (_rowsToSpill.isEmpty()) {
+      return;
+    }
+    try {
+      if (_fileChannel == null) {
+        Files.createDirectories(_spillDir.toPath());
+        _spillFile = Files.createTempFile(_spillDir.toPath(), "queue_", ".spill").toFile();
+        _fileChannel = FileChannel.open(_spillFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+      }
+      List<ByteBuffer> buffers = DataBlockUtils.serialize(DataBlockBuilder.buildFromRows(_rowsToSpill, _dataSchema));
+      int size = 0;
+      for (ByteBuffer buffer : buffers) {
+        size += buffer.remaining();
+      }
+      ByteBuffer[] sizeAndBuffers = new ByteBuffer[buffers.size() + 1];
+      sizeAndBuffers[0] = ByteBuffer.allocate(Integer.BYTES).putInt(0, size);
+      for (int i = 0; i < buffers.size(); i++) {
+        sizeAndBuffers[i + 1] = buffers.get(i);
+      }
+      // Writes always append to the end of the file, and reads are positional
+      long numBytesToWrite = Integer.BYTES + (long) size;
+      long numBytesWritten = 0;
+      while (numBytesWritten < numBytesToWrite) {
+        numBytesWritten += _fileChannel.write(sizeAndBuffers);
+      }
+      _writePosition += numBytesToWrite;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to spill rows to: " + _spillDir, e);
+    }
+    _numSpilledRows += _rowsToSpill.size();
+    // NOTE: Do not clear the list because the rows might still be referenced by the data block
+    _rowsToSpill = new ArrayList<>();
+  }
+
+  /**
+   * Loads the next rows into memory when all the rows in memory are polled: the next block from the spill file if any,
+   * otherwise the rows not written to the spill file yet.
+   */
+  private void loadRows() {
+    if (_readPosition < _writePosition) {
+      try {
+        ByteBuffer sizeBuffer = ByteBuffer.allocate(Integer.BYTES);
+        readFully(sizeBuffer, _readPosition);
+        ByteBuffer dataBuffer = ByteBuffer.allocate(sizeBuffer.getInt(0));
+        readFully(dataBuffer, _readPosition + Integer.BYTES);
+        dataBuffer.flip();
+        DataBlock dataBlock = DataBlockUtils.readFrom(dataBuffer);
+        _rows.addAll(DataBlockExtractUtils.extractRows(dataBlock));
+        _readPosition += Integer.BYTES + dataBuffer.limit();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to read spilled rows from: " + _spillFile, e);
+      }
+    } else if (!_rowsToSpill.isEmpty()) {
+      _rows.addAll(_rowsToSpill);
+      _rowsToSpill = new ArrayList<>();
+    }
+  }
+
+  private void readFully(ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int numBytesRead = _fileChannel.read(buffer, position + buffer.position());
+      if (numBytesRead < 0) {
+        throw new EOFException("Unexpected end of spill file: " + _spillFile);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    _rows.clear();
+    _rowsToSpill = new ArrayList<>();
+    _size = 0;
+    if (_fileChannel != null) {
+      try {
+        _fileChannel.close();
+      } catch (IOException e) {
+        // Ignore
+      }
+      _fileChannel = null;
+      FileUtils.deleteQuietly(_spillFile);
+    }
+  }
+}
@@ -0,0 +1,296 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.utils;
+
+import com.google.common.base.Preconditions;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.datablock.DataBlock;
+import org.apache.pinot.common.datablock.DataBlockUtils;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.config.QueryOptionsUtils;
+import org.apache.pinot.core.common.datablock.DataBlockBuilder;
+import org.apache.pinot.core.util.DataBlockExtractUtils;
+import org.apache.pinot.spi.utils.CommonConstants.Broker.Request.QueryOptionKey;
+
+
+/**
+ * Rows spilled to the local disk, partitioned by the hash of a key, so that the rows of each partition can be processed
+ * separately when all the rows cannot fit in memory (e.g. grace hash join, partitioned hash aggregation).
+ * <p>The rows are buffered in memory for each partition, and appended to the partition file as serialized data blocks
+ * when the buffer is full. After {@link #finish()} is called, the rows of each partition can be read back block by
+ * block. All the files are deleted when {@link #close()} is called.
+ * <p>This class is not thread-safe.
+ */
+@SuppressWarnings("unchecked")
+public class SpilledRowPartitions implements Closeable {
+  public static final int DEFAULT_NUM_PARTITIONS = 16;
+  private static final String DEFAULT_SPILL_DIR_NAME = "pinot-mse-spill";
+  private static final int MAX_BUFFERED_ROWS_PER_PARTITION = 1000;
+
+  private final File _dir;
+  private final DataSchema _dataSchema;
+  private final int _numPartitions;
+  private final List<Object[]>[] _bufferedRows;
+  private final FileChannel[] _fileChannels;
+  private final long[] _numRows;
+  private long _numSpilledBytes;
+  private boolean _finished;
+
+  /**
+   * Creates the spilled row partitions under a new temporary directory within the given spill directory.
+   */
+  public SpilledRowPartitions(File spillDir, DataSchema dataSchema, int numPartitions) {
+    Preconditions.checkArgument(numPartitions > 0, "Number of spill partitions must be positive, got: %s",
+        numPartitions);
+    try {
+      Files.createDirectories(spillDir.toPath());
+      _dir = Files.createTempDirectory(spillDir.toPath(), "spill_").toFile();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to create spill directory under: " + spillDir, e);
+    }
+    _dataSchema = dataSchema;
+    _numPartitions = numPartitions;
+    _bufferedRows = new List[numPartitions];
+    _fileChannels = new FileChannel[numPartitions];
+    _numRows = new long[numPartitions];
+  }
+
+  /**
+   * Returns the spill directory for the op chain. The spill directory is configured on the server, and cannot be set
+   * via the query options.
+   */
+  public static File getSpillDir(Map<String, String> opChainMetadata) {
+    String spillDir = opChainMetadata.get(QueryOptionKey.MSE_SPILL_DIR);
+    return spillDir != null ? new File(spillDir) : new File(FileUtils.getTempDirectory(), DEFAULT_SPILL_DIR_NAME);
+  }
+
+  public static int getNumPartitions(Map<String, String> opChainMetadata) {
+    Integer numPartitions = QueryOptionsUtils.getNumSpillPartitions(opChainMetadata);
+    return numPartitions != null ? numPartitions : DEFAULT_NUM_PARTITIONS;
+  }
+
+  public DataSchema getDataSchema() {
+    return _dataSchema;
+  }
+
+  public int getNumPartitions() {
+    return _numPartitions;
+  }
+
+  /**
+   * Returns the partition id for the given key. Null key is always put into the first partition.
+   * <p>The hash code is mixed before taking the modulo so that the partitions are not correlated with the hash
+   * partitioning of the data exchange, which also uses the hash code of the key.
+   */
+  public int getPartitionId(@Nullable Object key) {
+    if (key == null) {
+      return 0;
+    }
+    int hash = key.hashCode();
+    // Finalization mix of MurmurHash3
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return (hash & Integer.MAX_VALUE) % _numPartitions;
+  }
+
+  /**
+   * Adds a row into the partition of the given key.
+   */
+  public void addRow(@Nullable Object key, Object[] row) {
+    addRow(getPartitionId(key), row);
+  }
+
+  /**
+   * Adds a row into the given partition.
+   */
+  public void addRow(int partitionId, Object[] row) {
+    Preconditions.checkState(!_finished, "Cannot add rows after the spilled rows are finished");
+    List<Object[]> bufferedRows = _bufferedRows[partitionId];
+    if (bufferedRows == null) {
+      bufferedRows = new ArrayList<>(MAX_BUFFERED_ROWS_PER_PARTITION);
+      _bufferedRows[partitionId] = bufferedRows;
+    }
+    bufferedRows.add(row);
+    _numRows[partitionId]++;
+    if (bufferedRows.size() == MAX_BUFFERED_ROWS_PER_PARTITION) {
+      flush(partitionId);
+    }
+  }
+
+  /**
+   * Flushes the buffered rows of all the partitions. Should be called after all the rows are added, and before reading
+   * the rows.
+   */
+  public void finish() {
+    if (_finished) {
+      return;
+    }
+    for (int i = 0; i < _numPartitions; i++) {
+      flush(i);
+      FileChannel fileChannel = _fileChannels[i];
+      if (fileChannel != null) {
+        try {
+          fileChannel.position(0);
+        } catch (IOException e) {
+          throw new UncheckedIOException("Failed to rewind spill file for partition: " + i, e);
+        }
+      }
+    }
+    _finished = true;
+  }
+
+  private void flush(int partitionId) {
+    List<Object[]> bufferedRows = _bufferedRows[partitionId];
+    if (bufferedRows == null || bufferedRows.isEmpty()) {
+      return;
+    }
+    try {
+      FileChannel fileChannel = _fileChannels[partitionId];
+      if (fileChannel == null) {
+        fileChannel = FileChannel.open(new File(_dir, "partition_" + partitionId).toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        _fileChannels[partitionId] = fileChannel;
+      }
+      List<ByteBuffer> buffers = DataBlockUtils.serialize(DataBlockBuilder.buildFromRows(bufferedRows, _dataSchema));
+      int size = 0;
+      for (ByteBuffer buffer : buffers) {
+        size += buffer.remaining();
+      }
+      ByteBuffer[] sizeAndBuffers = new ByteBuffer[buffers.size() + 1];
+      sizeAndBuffers[0] = ByteBuffer.allocate(Integer.BYTES).putInt(0, size);
+      for (int i = 0; i < buffers.size(); i++) {
+        sizeAndBuffers[i + 1] = buffers.get(i);
+      }
+      long numBytesToWrite = Integer.BYTES + (long) size;
+      long numBytesWritten = 0;
+      while (numBytesWritten < numBytesToWrite) {
+        numBytesWritten += fileChannel.write(sizeAndBuffers);
+      }
+      _numSpilledBytes += numBytesToWrite;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to spill rows for partition: " + partitionId, e);
+    }
+    bufferedRows.clear();
+  }
+
+  /**
+   * Reads the next block of rows for the given partition, or returns {@code null} when all the rows of the partition
+   * are read.
+   */
+  @Nullable
+  public List<Object[]> readNextBlock(int partitionId) {
+    Preconditions.checkState(_finished, "Cannot read rows before the spilled rows are finished");
+    FileChannel fileChannel = _fileChannels[partitionId];
+    if (fileChannel == null) {
+      return null;
+    }
+    try {
+      ByteBuffer sizeBuffer = ByteBuffer.allocate(Integer.BYTES);
+      if (!readFully(fileChannel, sizeBuffer)) {
+        fileChannel.close();
+        _fileChannels[partitionId] = null;
+        return null;
+      }
+      ByteBuffer dataBuffer = ByteBuffer.allocate(sizeBuffer.getInt(0));
+      if (!readFully(fileChannel, dataBuffer)) {
+        throw new EOFException("Unexpected end of spill file for partition: " + partitionId);
+      }
+      dataBuffer.flip();
+      DataBlock dataBlock = DataBlockUtils.readFrom(dataBuffer);
+      return DataBlockExtractUtils.extractRows(dataBlock);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read spilled rows for partition: " + partitionId, e);
+    }
+  }
+
+  /**
+   * Reads into the buffer until it is full. Returns {@code false} if the end of the file is reached before reading any
+   * byte.
+   */
+  private static boolean readFully(FileChannel fileChannel, ByteBuffer buffer)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      if (fileChannel.read(buffer) < 0) {
+        if (buffer.position() == 0) {
+          return false;
+        }
+        throw new EOFException("Unexpected end of spill file");
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of rows in the given partition.
+   */
+  public long getNumRows(int partitionId) {
+    return _numRows[partitionId];
+  }
+
+  /**
+   * Returns the total number of rows spilled.
+   */
+  public long getNumRows() {
+    long numRows = 0;
+    for (long numPartitionRows : _numRows) {
+      numRows += numPartitionRows;
+    }
+    return numRows;
+  }
+
+  /**
+   * Returns the total number of bytes written to the disk.
+   */
+  public long getNumSpilledBytes() {
+    return _numSpilledBytes;
+  }
+
+  @Override
+  public void close() {
+    for (int i = 0; i < _numPartitions; i++) {
+      FileChannel fileChannel = _fileChannels[i];
+      if (fileChannel != null) {
+        try {
+          fileChannel.close();
+        } catch (IOException e) {
+          // Ignore
+        }
+        _fileChannels[i] = null;
+      }
+      _bufferedRows[i] = null;
+    }
+    FileUtils.deleteQuietly(_dir);
+  }
+}
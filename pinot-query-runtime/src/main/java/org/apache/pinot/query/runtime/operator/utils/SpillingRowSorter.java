@@ -0,0 +1,187 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.utils;
+
+import com.google.common.base.Preconditions;
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import javax.annotation.Nullable;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.config.QueryOptionsUtils;
+
+
+/**
+ * Sorts rows with bounded memory (external merge sort): the rows are buffered in memory up to a limit, then sorted and
+ * spilled to the local disk as a sorted run. After {@link #finish()} is called, the sorted rows are returned block by
+ * block by merging the spilled runs and the rows still in memory.
+ * <p>When no run is spilled, the rows are sorted in memory and returned as a single block.
+ * <p>This class is not thread-safe.
+ */
+public class SpillingRowSorter implements Closeable {
+  public static final int DEFAULT_MAX_ROWS_IN_MEMORY = 100_000;
+
+  private final File _spillDir;
+  private final DataSchema _dataSchema;
+  private final Comparator<Object[]> _comparator;
+  private final int _maxRowsInMemory;
+  private final List<SpillableRowQueue> _spilledRuns = new ArrayList<>();
+
+  private List<Object[]> _rows = new ArrayList<>();
+  // Runs with rows left ordered by the first row, only set after finish() when some runs are spilled
+  private PriorityQueue<SpillableRowQueue> _mergeQueue;
+  private boolean _finished;
+
+  public SpillingRowSorter(File spillDir, DataSchema dataSchema, Comparator<Object[]> comparator,
+      int maxRowsInMemory) {
+    Preconditions.checkArgument(maxRowsInMemory > 0, "Max rows in memory must be positive, got: %s", maxRowsInMemory);
+    _spillDir = spillDir;
+    _dataSchema = dataSchema;
+    _comparator = comparator;
+    _maxRowsInMemory = maxRowsInMemory;
+  }
+
+  /**
+   * Returns the max number of rows buffered in memory by each sender of a sorted exchange, and for each mailbox on the
+   * receiver of a sorted exchange, before spilling to the disk.
+   */
+  public static int getMaxRowsInMemory(Map<String, String> opChainMetadata) {
+    Integer maxRowsInMemory = QueryOptionsUtils.getMaxRowsInSortedExchange(opChainMetadata);
+    return maxRowsInMemory != null ? maxRowsInMemory : DEFAULT_MAX_ROWS_IN_MEMORY;
+  }
+
+  public DataSchema getDataSchema() {
+    return _dataSchema;
+  }
+
+  public void addRows(List<Object[]> rows) {
+    Preconditions.checkState(!_finished, "Cannot add rows after the sorter is finished");
+    for (Object[] row : rows) {
+      _rows.add(row);
+      if (_rows.size() == _maxRowsInMemory) {
+        spillRun();
+      }
+    }
+  }
+
+  private void spillRun() {
+    _rows.sort(_comparator);
+    SpillableRowQueue run = new SpillableRowQueue(_spillDir, _dataSchema, 0,
+        Math.min(_maxRowsInMemory, SpillableRowQueue.DEFAULT_NUM_ROWS_PER_SPILLED_BLOCK));
+    _spilledRuns.add(run);
+    run.addAll(_rows);
+    run.spill();
+    _rows = new ArrayList<>();
+  }
+
+  /**
+   * Sorts the rows in memory, and prepares to merge them with the spilled runs. Should be called after all the rows are
+   * added, and before reading the sorted rows.
+   */
+  public void finish() {
+    if (_finished) {
+      return;
+    }
+    _rows.sort(_comparator);
+    if (!_spilledRuns.isEmpty()) {
+      _mergeQueue = new PriorityQueue<>(_spilledRuns.size() + 1, (r1, r2) -> _comparator.compare(r1.peek(), r2.peek()));
+      for (SpillableRowQueue run : _spilledRuns) {
+        _mergeQueue.add(run);
+      }
+      if (!_rows.isEmpty()) {
+        SpillableRowQueue run = new SpillableRowQueue(_spillDir, _dataSchema, Integer.MAX_VALUE,
+            SpillableRowQueue.DEFAULT_NUM_ROWS_PER_SPILLED_BLOCK);
+        run.addAll(_rows);
+        _spilledRuns.add(run);
+        _mergeQueue.add(run);
+      }
+      _rows = null;
+    }
+    _finished = true;
+  }
+
+  /**
+   * Returns the next block of sorted rows with at most the given number of rows when some runs are spilled, or
+   * {@code null} when all the rows are returned.
+   */
+  @Nullable
+  public List<Object[]> nextBlock(int maxRowsPerBlock) {
+    Preconditions.checkState(_finished, "Cannot read rows before the sorter is finished");
+    if (_mergeQueue == null) {
+      List<Object[]> rows = _rows;
+      _rows = null;
+      return rows != null && !rows.isEmpty() ? rows : null;
+    }
+    if (_mergeQueue.isEmpty()) {
+      return null;
+    }
+    List<Object[]> rows = new ArrayList<>(Math.min(maxRowsPerBlock, _maxRowsInMemory));
+    while (rows.size() < maxRowsPerBlock && !_mergeQueue.isEmpty()) {
+      SpillableRowQueue run = _mergeQueue.poll();
+      rows.add(run.poll());
+      if (!run.isEmpty()) {
+        _mergeQueue.add(run);
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Returns the number of rows held in memory.
+   */
+  public int getNumRowsInMemory() {
+    int numRowsInMemory = _rows != null ? _rows.size() : 0;
+    for (SpillableRowQueue run : _spilledRuns) {
+      numRowsInMemory += run.getNumRowsInMemory();
+    }
+    return numRowsInMemory;
+  }
+
+  public int getNumSpilledRuns() {
+    int numSpilledRuns = 0;
+    for (SpillableRowQueue run : _spilledRuns) {
+      if (run.getNumSpilledRows() > 0) {
+        numSpilledRuns++;
+      }
+    }
+    return numSpilledRuns;
+  }
+
+  public long getNumSpilledRows() {
+    long numSpilledRows = 0;
+    for (SpillableRowQueue run : _spilledRuns) {
+      numSpilledRows += run.getNumSpilledRows();
+    }
+    return numSpilledRows;
+  }
+
+  @Override
+  public void close() {
+    for (SpillableRowQueue run : _spilledRuns) {
+      run.close();
+    }
+    _spilledRuns.clear();
+    _rows = null;
+    _mergeQueue = null;
+  }
+}
@@ -23,13 +23,16 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.function.BiConsumer;
 import javax.annotation.Nullable;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.pinot.calcite.rel.hint.PinotHintOptions;
 import org.apache.pinot.common.metrics.ServerMetrics;
 import org.apache.pinot.common.request.BrokerRequest;
 import org.apache.pinot.common.request.Expression;
@@ -309,6 +312,25 @@ public class ServerPlanRequestUtils {
     }
   }
 
+  /**
+   * Attaches the filter built from the right input of the join to the given PinotQuery. The runtime filter (marked by
+   * the join hint) can be approximate because the rows are still matched by the join after the leaf stage, while the
+   * dynamic filter for the SEMI join replaces the join and must be exact.
+   */
+  static void attachJoinFilter(PinotQuery pinotQuery, PlanNode.NodeHint nodeHint, List<Integer> leftKeys,
+      List<Integer> rightKeys, List<Object[]> dataContainer, DataSchema dataSchema) {
+    Map<String, String> joinHintOptions = nodeHint.getHintOptions().get(PinotHintOptions.JOIN_HINT_OPTIONS);
+    if (joinHintOptions != null && Boolean.parseBoolean(
+        joinHintOptions.get(PinotHintOptions.JoinHintOptions.RUNTIME_FILTER))) {
+      String maxInListSize = joinHintOptions.get(PinotHintOptions.JoinHintOptions.RUNTIME_FILTER_MAX_IN_LIST_SIZE);
+      attachRuntimeFilter(pinotQuery, leftKeys, rightKeys, dataContainer, dataSchema,
+          maxInListSize != null ? Integer.parseInt(maxInListSize)
+              : PinotHintOptions.JoinHintOptions.DEFAULT_RUNTIME_FILTER_MAX_IN_LIST_SIZE);
+    } else {
+      attachDynamicFilter(pinotQuery, leftKeys, rightKeys, dataContainer, dataSchema);
+    }
+  }
+
   /**
    * attach the dynamic filter to the given PinotQuery.
    */
@@ -339,6 +361,96 @@ public class ServerPlanRequestUtils {
     }
   }
 
+  /**
+   * Attaches the runtime filter to the given PinotQuery. For each join key, the distinct non-null values from the right
+   * input are attached as an IN filter, or as a range filter on the min and max value when there are more than
+   * {@code maxInListSize} distinct values. The IN and range filters can leverage the indexes (e.g. inverted, sorted,
+   * range index) and the segment pruning on the left table.
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  static void attachRuntimeFilter(PinotQuery pinotQuery, List<Integer> leftKeys, List<Integer> rightKeys,
+      List<Object[]> dataContainer, DataSchema dataSchema, int maxInListSize) {
+    List<Expression> expressions = new ArrayList<>();
+    for (int i = 0; i < leftKeys.size(); i++) {
+      Expression leftExpr = pinotQuery.getSelectList().get(leftKeys.get(i));
+      int rightIdx = rightKeys.get(i);
+      FieldSpec.DataType storedType = dataSchema.getColumnDataType(rightIdx).getStoredType().toDataType();
+      Set<Object> values = new HashSet<>();
+      Comparable minValue = null;
+      Comparable maxValue = null;
+      for (Object[] row : dataContainer) {
+        Comparable value = (Comparable) row[rightIdx];
+        // Null key cannot be matched by the equi-join
+        if (value == null) {
+          continue;
+        }
+        if (minValue == null || value.compareTo(minValue) < 0) {
+          minValue = value;
+        }
+        if (maxValue == null || value.compareTo(maxValue) > 0) {
+          maxValue = value;
+        }
+        if (values.size() <= maxInListSize) {
+          values.add(value);
+        }
+      }
+      if (minValue == null) {
+        // put a constant false expression
+        expressions.add(RequestUtils.getLiteralExpression(false));
+      } else if (values.size() <= maxInListSize) {
+        List<Comparable> sortedValues = new ArrayList(values);
+        sortedValues.sort(null);
+        List<Expression> operands = new ArrayList<>(sortedValues.size() + 1);
+        operands.add(leftExpr);
+        for (Comparable value : sortedValues) {
+          operands.add(getStoredValueLiteral(storedType, value));
+        }
+        expressions.add(RequestUtils.getFunctionExpression(FilterKind.IN.name(), operands));
+      } else if (storedType != FieldSpec.DataType.BYTES) {
+        expressions.add(RequestUtils.getFunctionExpression(FilterKind.BETWEEN.name(), leftExpr,
+            getStoredValueLiteral(storedType, minValue), getStoredValueLiteral(storedType, maxValue)));
+      }
+      // Skip the filter for BYTES key with too many values because range filter is not supported on BYTES
+    }
+    if (expressions.isEmpty()) {
+      return;
+    }
+    Expression filterExpression = pinotQuery.getFilterExpression();
+    if (filterExpression != null) {
+      expressions.add(filterExpression);
+    }
+    if (expressions.size() > 1) {
+      pinotQuery.setFilterExpression(RequestUtils.getFunctionExpression(FilterKind.AND.name(), expressions));
+    } else {
+      pinotQuery.setFilterExpression(expressions.get(0));
+    }
+  }
+
+  /**
+   * Returns the literal for a value of the given stored type, using the same conversion as the dynamic filter IN
+   * operands (e.g. BOOLEAN as INT, TIMESTAMP as LONG, BYTES as byte[]).
+   */
+  private static Expression getStoredValueLiteral(FieldSpec.DataType storedType, Object value) {
+    switch (storedType) {
+      case INT:
+        return RequestUtils.getLiteralExpression((int) value);
+      case LONG:
+        return RequestUtils.getLiteralExpression((long) value);
+      case FLOAT:
+        return RequestUtils.getLiteralExpression((float) value);
+      case DOUBLE:
+        return RequestUtils.getLiteralExpression((double) value);
+      case STRING:
+        return RequestUtils.getLiteralExpression((String) value);
+      case BIG_DECIMAL:
+        return RequestUtils.getLiteralExpression((BigDecimal) value);
+      case BYTES:
+        return RequestUtils.getLiteralExpression(((ByteArray) value).getBytes());
+      default:
+        throw new IllegalStateException("Illegal SV data type for IN filter: " + storedType);
+    }
+  }
+
   private static List<Expression> computeInOperands(List<Object[]> dataContainer, DataSchema dataSchema, int colIdx) {
     final DataSchema.ColumnDataType columnDataType = dataSchema.getColumnDataType(colIdx);
     final FieldSpec.DataType storedType = columnDataType.getStoredType().toDataType();
@@ -412,7 +524,7 @@ public class ServerPlanRequestUtils {
         }
         Arrays.sort(arrBytes);
         for (int rowIdx = 0; rowIdx < numRows; rowIdx++) {
-          expressions.add(RequestUtils.getLiteralExpression(arrBytes[rowIdx].getBytes()));
+          expressions.add(getStoredValueLiteral(storedType, arrBytes[rowIdx]));
         }
         break;
       default:
@@ -168,8 +168,8 @@ public class ServerPlanRequestVisitor implements PlanNodeVisitor<Void, ServerPla
           }
         }
         // TODO: we should keep query stats here as well
-        ServerPlanRequestUtils.attachDynamicFilter(context.getPinotQuery(), node.getLeftKeys(), node.getRightKeys(),
-            resultDataContainer, dataSchema);
+        ServerPlanRequestUtils.attachJoinFilter(context.getPinotQuery(), node.getNodeHint(), node.getLeftKeys(),
+            node.getRightKeys(), resultDataContainer, dataSchema);
       }
     } else {
       // For lookup join, visit the right child and set it as the leaf boundary.
@@ -207,8 +207,8 @@ public class ServerPlanRequestVisitor implements PlanNodeVisitor<Void, ServerPla
           }
         }
         // TODO: we should keep query stats here as well
-        ServerPlanRequestUtils.attachDynamicFilter(context.getPinotQuery(), node.getLeftKeys(), node.getRightKeys(),
-            resultDataContainer, dataSchema);
+        ServerPlanRequestUtils.attachJoinFilter(context.getPinotQuery(), node.getNodeHint(), node.getLeftKeys(),
+            node.getRightKeys(), resultDataContainer, dataSchema);
 
         PinotQuery pinotQuery = context.getPinotQuery();
         for (EnrichedJoinNode.FilterProjectRex rex : node.getFilterProjectRexes()) {
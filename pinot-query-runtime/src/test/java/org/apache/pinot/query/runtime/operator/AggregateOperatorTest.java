@@ -56,6 +56,7 @@ import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.openMocks;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 
@@ -322,6 +323,51 @@ public class AggregateOperatorTest {
         "Num groups should equal the limit since only one group was accepted");
   }
 
+  @Test
+  public void shouldSpillGroupsWhenGroupLimitExceeded() {
+    // Given:
+    List<RexExpression.FunctionCall> aggCalls = List.of(getSum(new RexExpression.InputRef(1)));
+    List<Integer> filterArgs = List.of(-1);
+    List<Integer> groupKeys = List.of(0);
+    PlanNode.NodeHint nodeHint = new PlanNode.NodeHint(Map.of(PinotHintOptions.AGGREGATE_HINT_OPTIONS,
+        Map.of(PinotHintOptions.AggregateOptions.NUM_GROUPS_LIMIT, "2",
+            PinotHintOptions.AggregateOptions.SPILL_ON_NUM_GROUPS_LIMIT, "true")));
+    DataSchema inSchema = new DataSchema(new String[]{"group", "arg"}, new ColumnDataType[]{INT, DOUBLE});
+
+    _input = new BlockListMultiStageOperator.Builder(inSchema)
+        .addRow(2, 1.0)
+        .addRow(3, 2.0)
+        .finishBlock()
+        .addRow(3, 3.0)
+        .addRow(4, 4.0)
+        .addRow(5, 5.0)
+        .addRow(2, 5.0)
+        .buildWithEos();
+    DataSchema resultSchema = new DataSchema(new String[]{"group", "sum"}, new ColumnDataType[]{INT, DOUBLE});
+    AggregateOperator operator = getOperator(resultSchema, aggCalls, filterArgs, groupKeys, nodeHint, Map.of());
+
+    // When:
+    Map<Integer, Double> results = new HashMap<>();
+    MseBlock block = operator.nextBlock();
+    while (block.isData()) {
+      for (Object[] row : ((MseBlock.Data) block).asRowHeap().getRows()) {
+        assertNull(results.put((Integer) row[0], (Double) row[1]), "Each group should only be returned once");
+      }
+      block = operator.nextBlock();
+    }
+
+    // Then:
+    assertTrue(block.isSuccess(), "Last block should be a successful EOS");
+    assertEquals(results, Map.of(2, 6.0, 3, 5.0, 4, 4.0, 5, 5.0));
+    MultiStageQueryStats stats = operator.calculateStats();
+    StatMap<AggregateOperator.StatKey> statMap = OperatorTestUtil.getStatMap(AggregateOperator.StatKey.class, stats);
+    assertFalse(statMap.getBoolean(AggregateOperator.StatKey.NUM_GROUPS_LIMIT_REACHED),
+        "num groups limit should not be reached when spilling");
+    assertEquals(statMap.getLong(AggregateOperator.StatKey.SPILLED_ROWS), 2,
+        "Rows of the groups beyond the limit should be spilled");
+    assertEquals(statMap.getLong(AggregateOperator.StatKey.NUM_GROUPS), 4, "Num groups should include spilled groups");
+  }
+
   @Test
   public void testDefaultGroupTrimSize() {
     OpChainExecutionContext context = OperatorTestUtil.getTracingContext();
@@ -18,8 +18,11 @@
  */
 package org.apache.pinot.query.runtime.operator;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.apache.calcite.rel.core.JoinRelType;
 import org.apache.pinot.calcite.rel.hint.PinotHintOptions;
 import org.apache.pinot.common.datatable.StatMap;
@@ -386,6 +389,96 @@ public class HashJoinOperatorTest {
         "Max rows in join should equal the truncated right table size");
   }
 
+  @Test
+  public void shouldSpillWhenHitDataRowsLimitOnRightInputWithSpillMode() {
+    _leftInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(1, "Aa")
+        .addRow(2, "BB")
+        .finishBlock()
+        .addRow(4, "CC")
+        .buildWithEos();
+    _rightInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(2, "Aa")
+        .addRow(2, "BB")
+        .addRow(3, "BB")
+        .buildWithEos();
+    DataSchema resultSchema = new DataSchema(new String[]{"int_col1", "string_col1", "int_co2", "string_col2"},
+        new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.STRING, ColumnDataType.INT, ColumnDataType.STRING});
+    PlanNode.NodeHint nodeHint = new PlanNode.NodeHint(Map.of(PinotHintOptions.JOIN_HINT_OPTIONS,
+        Map.of(PinotHintOptions.JoinHintOptions.JOIN_OVERFLOW_MODE, "SPILL",
+            PinotHintOptions.JoinHintOptions.MAX_ROWS_IN_JOIN, "2")));
+
+    HashJoinOperator operator =
+        getOperator(resultSchema, JoinRelType.INNER, List.of(0), List.of(0), List.of(), nodeHint);
+    assertEquals(getAllRows(operator), Set.of(List.of(2, "BB", 2, "Aa"), List.of(2, "BB", 2, "BB")));
+    StatMap<HashJoinOperator.StatKey> statMap =
+        OperatorTestUtil.getStatMap(HashJoinOperator.StatKey.class, operator.calculateStats());
+    assertEquals(statMap.getLong(HashJoinOperator.StatKey.SPILLED_ROWS), 6, "All rows should be spilled");
+    assertTrue(statMap.getLong(HashJoinOperator.StatKey.SPILLED_BYTES) > 0, "Spilled bytes should be recorded");
+    assertFalse(statMap.getBoolean(HashJoinOperator.StatKey.MAX_ROWS_IN_JOIN_REACHED),
+        "Max rows in join should not be reached when spilling");
+
+    _leftInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(1, "Aa")
+        .addRow(2, "BB")
+        .finishBlock()
+        .addRow(4, "CC")
+        .buildWithEos();
+    _rightInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(2, "Aa")
+        .addRow(2, "BB")
+        .addRow(3, "BB")
+        .buildWithEos();
+    operator = getOperator(resultSchema, JoinRelType.FULL, List.of(0), List.of(0), List.of(), nodeHint);
+    Set<List<Object>> expectedRows = new HashSet<>();
+    expectedRows.add(Arrays.asList(1, "Aa", null, null));
+    expectedRows.add(Arrays.asList(2, "BB", 2, "Aa"));
+    expectedRows.add(Arrays.asList(2, "BB", 2, "BB"));
+    expectedRows.add(Arrays.asList(4, "CC", null, null));
+    expectedRows.add(Arrays.asList(null, null, 3, "BB"));
+    assertEquals(getAllRows(operator), expectedRows);
+  }
+
+  @Test
+  public void shouldSpillSemiAndAntiJoinWhenHitDataRowsLimitOnRightInputWithSpillMode() {
+    DataSchema resultSchema = new DataSchema(new String[]{"foo", "bar"},
+        new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.STRING});
+    PlanNode.NodeHint nodeHint = new PlanNode.NodeHint(Map.of(PinotHintOptions.JOIN_HINT_OPTIONS,
+        Map.of(PinotHintOptions.JoinHintOptions.JOIN_OVERFLOW_MODE, "SPILL",
+            PinotHintOptions.JoinHintOptions.MAX_ROWS_IN_JOIN, "2")));
+    for (JoinRelType joinType : List.of(JoinRelType.SEMI, JoinRelType.ANTI)) {
+      _leftInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+          .addRow(1, "Aa")
+          .addRow(2, "BB")
+          .addRow(4, "CC")
+          .buildWithEos();
+      _rightInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+          .addRow(2, "Aa")
+          .addRow(2, "BB")
+          .addRow(3, "BB")
+          .buildWithEos();
+      HashJoinOperator operator = getOperator(resultSchema, joinType, List.of(0), List.of(0), List.of(), nodeHint);
+      if (joinType == JoinRelType.SEMI) {
+        assertEquals(getAllRows(operator), Set.of(List.of(2, "BB")));
+      } else {
+        assertEquals(getAllRows(operator), Set.of(List.of(1, "Aa"), List.of(4, "CC")));
+      }
+    }
+  }
+
+  private static Set<List<Object>> getAllRows(MultiStageOperator operator) {
+    Set<List<Object>> rows = new HashSet<>();
+    MseBlock block = operator.nextBlock();
+    while (block.isData()) {
+      for (Object[] row : ((MseBlock.Data) block).asRowHeap().getRows()) {
+        rows.add(Arrays.asList(row));
+      }
+      block = operator.nextBlock();
+    }
+    assertTrue(block.isSuccess(), "Last block should be a successful EOS");
+    return rows;
+  }
+
   @Test
   public void shouldPropagateLeftInputJoinLimitError() {
     _leftInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
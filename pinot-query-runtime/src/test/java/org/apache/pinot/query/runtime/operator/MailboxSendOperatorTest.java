@@ -18,8 +18,12 @@
  */
 package org.apache.pinot.query.runtime.operator;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import javax.annotation.Nullable;
+import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
 import org.apache.pinot.query.mailbox.MailboxService;
@@ -32,6 +36,7 @@ import org.apache.pinot.query.runtime.operator.exchange.BlockExchange;
 import org.apache.pinot.query.runtime.plan.MultiStageQueryStats;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
 import org.apache.pinot.spi.query.QueryExecutionContext;
+import org.apache.pinot.spi.utils.CommonConstants.Broker.Request.QueryOptionKey;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.testng.annotations.AfterMethod;
@@ -42,6 +47,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.openMocks;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
@@ -171,13 +177,70 @@ public class MailboxSendOperatorTest {
     verify(_input).earlyTerminate();
   }
 
+  @Test
+  public void shouldSortRowsWithBoundedMemory()
+      throws Exception {
+    // Given:
+    int maxRowsInMemory = 100;
+    int numBlocks = 50;
+    int numRowsPerBlock = 100;
+    DataSchema dataSchema = new DataSchema(new String[]{"intCol"}, new ColumnDataType[]{ColumnDataType.INT});
+    Random random = new Random(42);
+    List<MseBlock> inputBlocks = new ArrayList<>();
+    for (int i = 0; i < numBlocks; i++) {
+      Object[][] rows = new Object[numRowsPerBlock][];
+      for (int j = 0; j < numRowsPerBlock; j++) {
+        rows[j] = new Object[]{random.nextInt(1000)};
+      }
+      inputBlocks.add(OperatorTestUtil.block(dataSchema, rows));
+    }
+    inputBlocks.add(SuccessMseBlock.INSTANCE);
+    when(_input.nextBlock()).thenReturn(inputBlocks.get(0),
+        inputBlocks.subList(1, inputBlocks.size()).toArray(new MseBlock[0]));
+
+    // When:
+    MailboxSendOperator mailboxSendOperator =
+        getOperator(Map.of(QueryOptionKey.MAX_ROWS_IN_SORTED_EXCHANGE, Integer.toString(maxRowsInMemory)),
+            List.of(new RelFieldCollation(0)));
+    for (int i = 0; i < numBlocks; i++) {
+      assertTrue(mailboxSendOperator.nextBlock().isData());
+      // Then:
+      assertTrue(mailboxSendOperator.getNumSortedRowsInMemory() <= maxRowsInMemory,
+          "expected rows in memory to be bounded while buffering the input");
+    }
+    verify(_exchange, never()).send(any());
+    assertTrue(mailboxSendOperator.nextBlock().isSuccess());
+
+    // Then:
+    assertTrue(mailboxSendOperator.getNumSortedRowsSpilled() > 0, "expected sorted runs to be spilled");
+    ArgumentCaptor<MseBlock.Data> dataCaptor = ArgumentCaptor.forClass(MseBlock.Data.class);
+    verify(_exchange, atLeastOnce()).send(dataCaptor.capture());
+    List<Object[]> sentRows = new ArrayList<>();
+    for (MseBlock.Data block : dataCaptor.getAllValues()) {
+      sentRows.addAll(block.asRowHeap().getRows());
+    }
+    assertEquals(sentRows.size(), numBlocks * numRowsPerBlock);
+    for (int i = 1; i < sentRows.size(); i++) {
+      assertTrue((int) sentRows.get(i - 1)[0] <= (int) sentRows.get(i)[0], "expected rows to be sent in order");
+    }
+    ArgumentCaptor<MseBlock.Eos> eosCaptor = ArgumentCaptor.forClass(MseBlock.Eos.class);
+    verify(_exchange).send(eosCaptor.capture(), anyList());
+    assertTrue(eosCaptor.getValue().isSuccess(), "expected to send EOS block to exchange");
+    mailboxSendOperator.close();
+  }
+
   private MailboxSendOperator getOperator() {
+    return getOperator(Map.of(), null);
+  }
+
+  private MailboxSendOperator getOperator(Map<String, String> opChainMetadata,
+      @Nullable List<RelFieldCollation> sortCollations) {
     WorkerMetadata workerMetadata = new WorkerMetadata(0, Map.of(), Map.of());
     StageMetadata stageMetadata = new StageMetadata(SENDER_STAGE_ID, List.of(workerMetadata), Map.of());
     OpChainExecutionContext context =
-        OpChainExecutionContext.fromQueryContext(_mailboxService, Map.of(), stageMetadata, workerMetadata, null, true,
-            true, QueryExecutionContext.forMseTest());
-    return new MailboxSendOperator(context, _input, statMap -> _exchange);
+        OpChainExecutionContext.fromQueryContext(_mailboxService, opChainMetadata, stageMetadata, workerMetadata, null,
+            true, true, QueryExecutionContext.forMseTest());
+    return new MailboxSendOperator(context, _input, statMap -> _exchange, sortCollations);
   }
 
   private static MseBlock.Data getDummyDataBlock() {
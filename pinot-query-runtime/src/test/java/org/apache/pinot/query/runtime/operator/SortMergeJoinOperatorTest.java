@@ -0,0 +1,275 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.pinot.calcite.rel.hint.PinotHintOptions;
+import org.apache.pinot.common.datatable.StatMap;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.query.planner.logical.RexExpression;
+import org.apache.pinot.query.planner.plannode.JoinNode;
+import org.apache.pinot.query.planner.plannode.PlanNode;
+import org.apache.pinot.query.runtime.blocks.ErrorMseBlock;
+import org.apache.pinot.query.runtime.blocks.MseBlock;
+import org.apache.pinot.spi.exception.QueryErrorCode;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+public class SortMergeJoinOperatorTest {
+  private static final DataSchema DEFAULT_CHILD_SCHEMA = new DataSchema(new String[]{"int_col", "string_col"},
+      new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.STRING});
+  private static final DataSchema JOIN_RESULT_SCHEMA =
+      new DataSchema(new String[]{"int_col1", "string_col1", "int_col2", "string_col2"},
+          new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.STRING, ColumnDataType.INT, ColumnDataType.STRING});
+
+  private MultiStageOperator _leftInput;
+  private MultiStageOperator _rightInput;
+
+  @Test
+  public void shouldHandleInnerJoin() {
+    _leftInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(1, "Aa")
+        .addRow(2, "BB")
+        .addRow(2, "CC")
+        .addRow(4, "DD")
+        .buildWithEos();
+    _rightInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(2, "Aa")
+        .addRow(2, "BB")
+        .addRow(3, "BB")
+        .addRow(4, "EE")
+        .buildWithEos();
+    SortMergeJoinOperator operator = getOperator(JoinRelType.INNER, List.of(), PlanNode.NodeHint.EMPTY);
+    List<Object[]> resultRows = ((MseBlock.Data) operator.nextBlock()).asRowHeap().getRows();
+    assertEquals(resultRows.size(), 5);
+    assertEquals(resultRows.get(0), new Object[]{2, "BB", 2, "Aa"});
+    assertEquals(resultRows.get(1), new Object[]{2, "BB", 2, "BB"});
+    assertEquals(resultRows.get(2), new Object[]{2, "CC", 2, "Aa"});
+    assertEquals(resultRows.get(3), new Object[]{2, "CC", 2, "BB"});
+    assertEquals(resultRows.get(4), new Object[]{4, "DD", 4, "EE"});
+    assertTrue(operator.nextBlock().isSuccess());
+    StatMap<BaseJoinOperator.StatKey> statMap =
+        OperatorTestUtil.getStatMap(BaseJoinOperator.StatKey.class, operator.calculateStats());
+    assertEquals(statMap.getLong(BaseJoinOperator.StatKey.MAX_ROWS_IN_JOIN), 2,
+        "Max rows in join should equal the size of the largest key group");
+  }
+
+  @Test
+  public void shouldHandleKeyGroupAcrossBlocks() {
+    _leftInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(2, "BB")
+        .finishBlock()
+        .addRow(2, "CC")
+        .addRow(3, "DD")
+        .buildWithEos();
+    _rightInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(1, "Aa")
+        .addRow(2, "Aa")
+        .finishBlock()
+        .addRow(2, "BB")
+        .finishBlock()
+        .addRow(3, "CC")
+        .buildWithEos();
+    SortMergeJoinOperator operator = getOperator(JoinRelType.INNER, List.of(), PlanNode.NodeHint.EMPTY);
+    List<Object[]> resultRows = getAllRows(operator);
+    assertEquals(resultRows.size(), 5);
+    assertEquals(resultRows.get(0), new Object[]{2, "BB", 2, "Aa"});
+    assertEquals(resultRows.get(1), new Object[]{2, "BB", 2, "BB"});
+    assertEquals(resultRows.get(2), new Object[]{2, "CC", 2, "Aa"});
+    assertEquals(resultRows.get(3), new Object[]{2, "CC", 2, "BB"});
+    assertEquals(resultRows.get(4), new Object[]{3, "DD", 3, "CC"});
+  }
+
+  @Test
+  public void shouldHandleFullJoin() {
+    _leftInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(1, "Aa")
+        .addRow(2, "BB")
+        .addRow(4, "CC")
+        .buildWithEos();
+    _rightInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(2, "Aa")
+        .addRow(2, "BB")
+        .addRow(3, "BB")
+        .addRow(5, "DD")
+        .buildWithEos();
+    SortMergeJoinOperator operator = getOperator(JoinRelType.FULL, List.of(), PlanNode.NodeHint.EMPTY);
+    List<Object[]> resultRows1 = ((MseBlock.Data) operator.nextBlock()).asRowHeap().getRows();
+    assertEquals(resultRows1.size(), 5);
+    assertEquals(resultRows1.get(0), new Object[]{1, "Aa", null, null});
+    assertEquals(resultRows1.get(1), new Object[]{2, "BB", 2, "Aa"});
+    assertEquals(resultRows1.get(2), new Object[]{2, "BB", 2, "BB"});
+    assertEquals(resultRows1.get(3), new Object[]{null, null, 3, "BB"});
+    assertEquals(resultRows1.get(4), new Object[]{4, "CC", null, null});
+    // Remaining right rows after the left input is finished
+    List<Object[]> resultRows2 = ((MseBlock.Data) operator.nextBlock()).asRowHeap().getRows();
+    assertEquals(resultRows2.size(), 1);
+    assertEquals(resultRows2.get(0), new Object[]{null, null, 5, "DD"});
+    assertTrue(operator.nextBlock().isSuccess());
+  }
+
+  @Test
+  public void shouldHandleLeftAndRightJoinWithNulls() {
+    // Null keys are sorted last
+    for (JoinRelType joinType : List.of(JoinRelType.LEFT, JoinRelType.RIGHT)) {
+      _leftInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+          .addRow(1, "Aa")
+          .addRow(null, "BB")
+          .buildWithEos();
+      _rightInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+          .addRow(1, "CC")
+          .addRow(null, "DD")
+          .buildWithEos();
+      SortMergeJoinOperator operator = getOperator(joinType, List.of(), PlanNode.NodeHint.EMPTY);
+      List<Object[]> resultRows = getAllRows(operator);
+      assertEquals(resultRows.size(), 2);
+      assertEquals(resultRows.get(0), new Object[]{1, "Aa", 1, "CC"});
+      if (joinType == JoinRelType.LEFT) {
+        assertEquals(resultRows.get(1), new Object[]{null, "BB", null, null});
+      } else {
+        assertEquals(resultRows.get(1), new Object[]{null, null, null, "DD"});
+      }
+    }
+  }
+
+  @Test
+  public void shouldHandleSemiAndAntiJoin() {
+    for (JoinRelType joinType : List.of(JoinRelType.SEMI, JoinRelType.ANTI)) {
+      _leftInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+          .addRow(1, "Aa")
+          .addRow(2, "BB")
+          .addRow(4, "CC")
+          .addRow(null, "DD")
+          .buildWithEos();
+      _rightInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+          .addRow(2, "Aa")
+          .addRow(2, "BB")
+          .addRow(3, "BB")
+          .buildWithEos();
+      SortMergeJoinOperator operator = new SortMergeJoinOperator(OperatorTestUtil.getTracingContext(), _leftInput,
+          DEFAULT_CHILD_SCHEMA, _rightInput,
+          new JoinNode(-1, DEFAULT_CHILD_SCHEMA, PlanNode.NodeHint.EMPTY, List.of(), joinType, List.of(0), List.of(0),
+              List.of(), JoinNode.JoinStrategy.SORT_MERGE));
+      List<Object[]> resultRows = getAllRows(operator);
+      if (joinType == JoinRelType.SEMI) {
+        assertEquals(resultRows.size(), 1);
+        assertEquals(resultRows.get(0), new Object[]{2, "BB"});
+      } else {
+        assertEquals(resultRows.size(), 3);
+        assertEquals(resultRows.get(0), new Object[]{1, "Aa"});
+        assertEquals(resultRows.get(1), new Object[]{4, "CC"});
+        assertEquals(resultRows.get(2), new Object[]{null, "DD"});
+      }
+    }
+  }
+
+  @Test
+  public void shouldHandleNonEquiConditions() {
+    _leftInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(1, "Aa")
+        .addRow(2, "BB")
+        .buildWithEos();
+    _rightInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(1, "Aa")
+        .addRow(2, "Aa")
+        .buildWithEos();
+    List<RexExpression> nonEquiConditions = List.of(new RexExpression.FunctionCall(ColumnDataType.BOOLEAN,
+        SqlKind.NOT_EQUALS.name(), List.of(new RexExpression.InputRef(1), new RexExpression.InputRef(3))));
+    SortMergeJoinOperator operator = getOperator(JoinRelType.LEFT, nonEquiConditions, PlanNode.NodeHint.EMPTY);
+    List<Object[]> resultRows = getAllRows(operator);
+    assertEquals(resultRows.size(), 2);
+    assertEquals(resultRows.get(0), new Object[]{1, "Aa", null, null});
+    assertEquals(resultRows.get(1), new Object[]{2, "BB", 2, "Aa"});
+  }
+
+  @Test
+  public void shouldThrowOnUnsortedInput() {
+    _leftInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(2, "Aa")
+        .addRow(1, "BB")
+        .buildWithEos();
+    _rightInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(1, "Aa")
+        .buildWithEos();
+    SortMergeJoinOperator operator = getOperator(JoinRelType.INNER, List.of(), PlanNode.NodeHint.EMPTY);
+    MseBlock block = operator.nextBlock();
+    assertTrue(block.isError());
+    assertTrue(((ErrorMseBlock) block).getErrorMessages().get(QueryErrorCode.UNKNOWN).contains("not sorted"));
+  }
+
+  @Test
+  public void shouldPropagateRightInputError() {
+    _leftInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(1, "BB")
+        .buildWithEos();
+    _rightInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .buildWithError(ErrorMseBlock.fromException(new Exception("testSortMergeJoinRightError")));
+    SortMergeJoinOperator operator = getOperator(JoinRelType.INNER, List.of(), PlanNode.NodeHint.EMPTY);
+    MseBlock block = operator.nextBlock();
+    assertTrue(block.isError());
+    assertTrue(((ErrorMseBlock) block).getErrorMessages()
+        .get(QueryErrorCode.UNKNOWN).contains("testSortMergeJoinRightError"));
+  }
+
+  @Test
+  public void shouldPropagateKeyGroupLimitError() {
+    _leftInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(2, "Aa")
+        .buildWithEos();
+    _rightInput = new BlockListMultiStageOperator.Builder(DEFAULT_CHILD_SCHEMA)
+        .addRow(1, "Aa")
+        .addRow(2, "Aa")
+        .addRow(2, "BB")
+        .addRow(3, "BB")
+        .buildWithEos();
+    PlanNode.NodeHint nodeHint = new PlanNode.NodeHint(Map.of(PinotHintOptions.JOIN_HINT_OPTIONS,
+        Map.of(PinotHintOptions.JoinHintOptions.MAX_ROWS_IN_JOIN, "1")));
+    SortMergeJoinOperator operator = getOperator(JoinRelType.INNER, List.of(), nodeHint);
+    MseBlock block = operator.nextBlock();
+    assertTrue(block.isError());
+    assertTrue(((ErrorMseBlock) block).getErrorMessages().get(QueryErrorCode.SERVER_RESOURCE_LIMIT_EXCEEDED)
+        .contains("reached number of rows limit"));
+  }
+
+  private static List<Object[]> getAllRows(MultiStageOperator operator) {
+    List<Object[]> rows = new ArrayList<>();
+    MseBlock block = operator.nextBlock();
+    while (block.isData()) {
+      rows.addAll(((MseBlock.Data) block).asRowHeap().getRows());
+      block = operator.nextBlock();
+    }
+    assertTrue(block.isSuccess(), "Last block should be a successful EOS");
+    return rows;
+  }
+
+  private SortMergeJoinOperator getOperator(JoinRelType joinType, List<RexExpression> nonEquiConditions,
+      PlanNode.NodeHint nodeHint) {
+    return new SortMergeJoinOperator(OperatorTestUtil.getTracingContext(), _leftInput, DEFAULT_CHILD_SCHEMA,
+        _rightInput, new JoinNode(-1, JOIN_RESULT_SCHEMA, nodeHint, List.of(), joinType, List.of(0), List.of(0),
+        nonEquiConditions, JoinNode.JoinStrategy.SORT_MERGE));
+  }
+}
@@ -18,6 +18,7 @@
  */
 package org.apache.pinot.query.runtime.operator;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -41,6 +42,7 @@ import org.apache.pinot.query.runtime.blocks.ErrorMseBlock;
 import org.apache.pinot.query.runtime.blocks.MseBlock;
 import org.apache.pinot.query.runtime.plan.OpChainExecutionContext;
 import org.apache.pinot.spi.exception.QueryErrorCode;
+import org.apache.pinot.spi.utils.CommonConstants.Broker.Request.QueryOptionKey;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.testng.annotations.AfterMethod;
@@ -252,14 +254,104 @@ public class SortedMailboxReceiveOperatorTest {
     }
   }
 
+  @Test
+  public void shouldMergeMailboxesSortedOnSender() {
+    when(_mailboxService.getReceivingMailbox(eq(MAILBOX_ID_1))).thenReturn(_mailbox1);
+    Object[] row1 = new Object[]{1, 1};
+    Object[] row2 = new Object[]{3, 3};
+    when(_mailbox1.poll()).thenReturn(
+        OperatorTestUtil.blockWithStats(DATA_SCHEMA, row1),
+        OperatorTestUtil.blockWithStats(DATA_SCHEMA, row2),
+        OperatorTestUtil.eosWithEmptyStats());
+    when(_mailboxService.getReceivingMailbox(eq(MAILBOX_ID_2))).thenReturn(_mailbox2);
+    Object[] row3 = new Object[]{-1, 95};
+    Object[] row4 = new Object[]{2, 4};
+    Object[] row5 = new Object[]{4, 2};
+    when(_mailbox2.poll()).thenReturn(
+        OperatorTestUtil.blockWithStats(DATA_SCHEMA, row3),
+        OperatorTestUtil.blockWithStats(DATA_SCHEMA, row4, row5),
+        OperatorTestUtil.eosWithEmptyStats());
+    try (SortedMailboxReceiveOperator operator = getOperator(_stageMetadataBoth, RelDistribution.Type.HASH_DISTRIBUTED,
+        DATA_SCHEMA, FIELD_COLLATIONS, Long.MAX_VALUE, true)) {
+      // Rows should be merged and returned as they arrive, instead of in a single block after all the mailboxes finish
+      List<Object[]> resultRows = new ArrayList<>();
+      int numDataBlocks = 0;
+      MseBlock block = operator.nextBlock();
+      while (block.isData()) {
+        resultRows.addAll(((MseBlock.Data) block).asRowHeap().getRows());
+        numDataBlocks++;
+        block = operator.nextBlock();
+      }
+      assertTrue(block.isSuccess());
+      assertEquals(resultRows, List.of(row3, row1, row4, row2, row5));
+      assertTrue(numDataBlocks > 1);
+    }
+  }
+
+  @Test
+  public void shouldSpillRowsBufferedWhileWaitingForSlowMailbox() {
+    // Mailbox 1 keeps sending rows while mailbox 2 has no data, so the rows of mailbox 1 are buffered until mailbox 2
+    // sends its next row
+    int maxRowsInMemory = 2;
+    when(_mailboxService.getReceivingMailbox(eq(MAILBOX_ID_1))).thenReturn(_mailbox1);
+    List<ReceivingMailbox.MseBlockWithStats> mailbox1Blocks = new ArrayList<>();
+    List<Object[]> expectedRows = new ArrayList<>();
+    expectedRows.add(new Object[]{5, 5});
+    for (int i = 10; i < 30; i++) {
+      Object[] row = new Object[]{i, i};
+      mailbox1Blocks.add(OperatorTestUtil.blockWithStats(DATA_SCHEMA, row));
+      expectedRows.add(row);
+    }
+    expectedRows.add(new Object[]{100, 100});
+    mailbox1Blocks.add(OperatorTestUtil.eosWithEmptyStats());
+    when(_mailbox1.poll()).thenReturn(mailbox1Blocks.get(0),
+        mailbox1Blocks.subList(1, mailbox1Blocks.size()).toArray(new ReceivingMailbox.MseBlockWithStats[0]));
+    when(_mailboxService.getReceivingMailbox(eq(MAILBOX_ID_2))).thenReturn(_mailbox2);
+    ReceivingMailbox.MseBlockWithStats[] mailbox2Blocks = new ReceivingMailbox.MseBlockWithStats[22];
+    mailbox2Blocks[19] = OperatorTestUtil.blockWithStats(DATA_SCHEMA, expectedRows.get(expectedRows.size() - 1));
+    mailbox2Blocks[20] = OperatorTestUtil.eosWithEmptyStats();
+    mailbox2Blocks[21] = OperatorTestUtil.eosWithEmptyStats();
+    when(_mailbox2.poll()).thenReturn(OperatorTestUtil.blockWithStats(DATA_SCHEMA, expectedRows.get(0)),
+        mailbox2Blocks);
+    try (SortedMailboxReceiveOperator operator = getOperator(_stageMetadataBoth, RelDistribution.Type.HASH_DISTRIBUTED,
+        DATA_SCHEMA, FIELD_COLLATIONS, System.currentTimeMillis() + 10_000L, true,
+        Map.of(QueryOptionKey.MAX_ROWS_IN_SORTED_EXCHANGE, Integer.toString(maxRowsInMemory)))) {
+      List<Object[]> resultRows = new ArrayList<>();
+      MseBlock block = operator.nextBlock();
+      while (block.isData()) {
+        resultRows.addAll(((MseBlock.Data) block).asRowHeap().getRows());
+        block = operator.nextBlock();
+      }
+      assertTrue(block.isSuccess());
+      assertEquals(resultRows, expectedRows);
+      assertTrue(operator.getNumSpilledRows() > 0);
+      // At most 1 block of rows is loaded from the spill file on top of the rows kept in memory
+      assertTrue(operator.getMaxNumRowsInMemoryPerMailbox() <= 2 * maxRowsInMemory);
+    }
+  }
+
   private SortedMailboxReceiveOperator getOperator(StageMetadata stageMetadata, RelDistribution.Type distributionType,
       DataSchema resultSchema, List<RelFieldCollation> collations, long deadlineMs) {
-    OpChainExecutionContext context = OperatorTestUtil.getOpChainContext(_mailboxService, deadlineMs, stageMetadata);
+    return getOperator(stageMetadata, distributionType, resultSchema, collations, deadlineMs, false);
+  }
+
+  private SortedMailboxReceiveOperator getOperator(StageMetadata stageMetadata, RelDistribution.Type distributionType,
+      DataSchema resultSchema, List<RelFieldCollation> collations, long deadlineMs, boolean sortedOnSender) {
+    return getOperator(stageMetadata, distributionType, resultSchema, collations, deadlineMs, sortedOnSender,
+        Map.of());
+  }
+
+  private SortedMailboxReceiveOperator getOperator(StageMetadata stageMetadata, RelDistribution.Type distributionType,
+      DataSchema resultSchema, List<RelFieldCollation> collations, long deadlineMs, boolean sortedOnSender,
+      Map<String, String> opChainMetadata) {
+    OpChainExecutionContext context =
+        OperatorTestUtil.getOpChainContext(_mailboxService, deadlineMs, stageMetadata, opChainMetadata);
     MailboxReceiveNode node = mock(MailboxReceiveNode.class);
     when(node.getDistributionType()).thenReturn(distributionType);
     when(node.getSenderStageId()).thenReturn(1);
     when(node.getDataSchema()).thenReturn(resultSchema);
     when(node.getCollations()).thenReturn(collations);
+    when(node.isSortedOnSender()).thenReturn(sortedOnSender);
     return new SortedMailboxReceiveOperator(context, node);
   }
 
@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.plan.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.pinot.calcite.rel.hint.PinotHintOptions;
+import org.apache.pinot.common.request.Expression;
+import org.apache.pinot.common.request.Function;
+import org.apache.pinot.common.request.PinotQuery;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.common.utils.request.RequestUtils;
+import org.apache.pinot.query.planner.plannode.PlanNode;
+import org.apache.pinot.spi.utils.ByteArray;
+import org.apache.pinot.sql.FilterKind;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+
+public class ServerPlanRequestUtilsTest {
+  private static final DataSchema RIGHT_SCHEMA =
+      new DataSchema(new String[]{"key"}, new ColumnDataType[]{ColumnDataType.INT});
+
+  private static PinotQuery getPinotQuery() {
+    PinotQuery pinotQuery = new PinotQuery();
+    pinotQuery.setSelectList(new ArrayList<>(List.of(RequestUtils.getIdentifierExpression("col1"))));
+    return pinotQuery;
+  }
+
+  private static PlanNode.NodeHint getRuntimeFilterHint(int maxInListSize) {
+    return new PlanNode.NodeHint(Map.of(PinotHintOptions.JOIN_HINT_OPTIONS,
+        Map.of(PinotHintOptions.JoinHintOptions.RUNTIME_FILTER, "true",
+            PinotHintOptions.JoinHintOptions.RUNTIME_FILTER_MAX_IN_LIST_SIZE, Integer.toString(maxInListSize))));
+  }
+
+  @Test
+  public void testRuntimeFilterWithInList() {
+    PinotQuery pinotQuery = getPinotQuery();
+    List<Object[]> rows = List.of(new Object[]{3}, new Object[]{1}, new Object[]{3}, new Object[]{null});
+    ServerPlanRequestUtils.attachJoinFilter(pinotQuery, getRuntimeFilterHint(2), List.of(0), List.of(0), rows,
+        RIGHT_SCHEMA);
+    // Values should be deduplicated and sorted, and null should be skipped
+    Function function = pinotQuery.getFilterExpression().getFunctionCall();
+    assertEquals(function.getOperator(), FilterKind.IN.name());
+    List<Expression> operands = function.getOperands();
+    assertEquals(operands.size(), 3);
+    assertEquals(operands.get(0), RequestUtils.getIdentifierExpression("col1"));
+    assertEquals(operands.get(1), RequestUtils.getLiteralExpression(1));
+    assertEquals(operands.get(2), RequestUtils.getLiteralExpression(3));
+  }
+
+  @Test
+  public void testRuntimeFilterWithRange() {
+    PinotQuery pinotQuery = getPinotQuery();
+    Expression existingFilter = RequestUtils.getFunctionExpression(FilterKind.EQUALS.name(),
+        RequestUtils.getIdentifierExpression("col2"), RequestUtils.getLiteralExpression("foo"));
+    pinotQuery.setFilterExpression(existingFilter);
+    List<Object[]> rows = List.of(new Object[]{5}, new Object[]{2}, new Object[]{9});
+    ServerPlanRequestUtils.attachJoinFilter(pinotQuery, getRuntimeFilterHint(2), List.of(0), List.of(0), rows,
+        RIGHT_SCHEMA);
+    // Range filter on the min and max value should be attached when there are too many distinct values
+    Function function = pinotQuery.getFilterExpression().getFunctionCall();
+    assertEquals(function.getOperator(), FilterKind.AND.name());
+    Function rangeFunction = function.getOperands().get(0).getFunctionCall();
+    assertEquals(rangeFunction.getOperator(), FilterKind.BETWEEN.name());
+    assertEquals(rangeFunction.getOperands().get(1), RequestUtils.getLiteralExpression(2));
+    assertEquals(rangeFunction.getOperands().get(2), RequestUtils.getLiteralExpression(9));
+    assertEquals(function.getOperands().get(1), existingFilter);
+  }
+
+  @Test
+  public void testRuntimeFilterWithoutValues() {
+    PinotQuery pinotQuery = getPinotQuery();
+    List<Object[]> rows = new ArrayList<>();
+    rows.add(new Object[]{null});
+    ServerPlanRequestUtils.attachJoinFilter(pinotQuery, getRuntimeFilterHint(2), List.of(0), List.of(0), rows,
+        RIGHT_SCHEMA);
+    // No left row can be matched
+    assertFalse(pinotQuery.getFilterExpression().getLiteral().getBoolValue());
+  }
+
+  @Test
+  public void testRuntimeFilterUsesStoredTypeLiterals() {
+    PinotQuery pinotQuery = getPinotQuery();
+    pinotQuery.getSelectList().add(RequestUtils.getIdentifierExpression("col2"));
+    pinotQuery.getSelectList().add(RequestUtils.getIdentifierExpression("col3"));
+    DataSchema rightSchema = new DataSchema(new String[]{"boolKey", "timestampKey", "bytesKey"},
+        new ColumnDataType[]{ColumnDataType.BOOLEAN, ColumnDataType.TIMESTAMP, ColumnDataType.BYTES});
+    // Values in the rows are in the stored type, e.g. BOOLEAN as int, TIMESTAMP as long and BYTES as ByteArray
+    List<Object[]> rows = List.of(new Object[]{1, 1000L, new ByteArray(new byte[]{1})},
+        new Object[]{0, 2000L, new ByteArray(new byte[]{2})}, new Object[]{1, 3000L, new ByteArray(new byte[]{3})});
+    ServerPlanRequestUtils.attachJoinFilter(pinotQuery, getRuntimeFilterHint(2), List.of(0, 1, 2), List.of(0, 1, 2),
+        rows, rightSchema);
+    List<Expression> filters = pinotQuery.getFilterExpression().getFunctionCall().getOperands();
+    // Only 2 distinct BOOLEAN values, so IN filter should be attached
+    Function boolFilter = filters.get(0).getFunctionCall();
+    assertEquals(boolFilter.getOperator(), FilterKind.IN.name());
+    assertEquals(boolFilter.getOperands().get(1), RequestUtils.getLiteralExpression(0));
+    assertEquals(boolFilter.getOperands().get(2), RequestUtils.getLiteralExpression(1));
+    // Too many distinct TIMESTAMP values, so range filter on LONG literals should be attached
+    Function timestampFilter = filters.get(1).getFunctionCall();
+    assertEquals(timestampFilter.getOperator(), FilterKind.BETWEEN.name());
+    assertEquals(timestampFilter.getOperands().get(1), RequestUtils.getLiteralExpression(1000L));
+    assertEquals(timestampFilter.getOperands().get(2), RequestUtils.getLiteralExpression(3000L));
+    // Range filter is not supported on BYTES, so the BYTES key should be skipped
+    assertEquals(filters.size(), 2);
+  }
+
+  @Test
+  public void testRuntimeFilterWithBytesInList() {
+    PinotQuery pinotQuery = getPinotQuery();
+    DataSchema rightSchema = new DataSchema(new String[]{"key"}, new ColumnDataType[]{ColumnDataType.BYTES});
+    List<Object[]> rows =
+        List.of(new Object[]{new ByteArray(new byte[]{2})}, new Object[]{new ByteArray(new byte[]{1})});
+    ServerPlanRequestUtils.attachJoinFilter(pinotQuery, getRuntimeFilterHint(2), List.of(0), List.of(0), rows,
+        rightSchema);
+    Function function = pinotQuery.getFilterExpression().getFunctionCall();
+    assertEquals(function.getOperator(), FilterKind.IN.name());
+    assertEquals(function.getOperands().get(1), RequestUtils.getLiteralExpression(new byte[]{1}));
+    assertEquals(function.getOperands().get(2), RequestUtils.getLiteralExpression(new byte[]{2}));
+  }
+}
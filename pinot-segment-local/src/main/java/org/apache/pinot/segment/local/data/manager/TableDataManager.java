@@ -38,6 +38,7 @@ import org.apache.pinot.segment.local.utils.SegmentLocks;
 import org.apache.pinot.segment.local.utils.SegmentOperationsThrottlerSet;
 import org.apache.pinot.segment.local.utils.SegmentReloadSemaphore;
 import org.apache.pinot.segment.local.utils.ServerReloadJobStatusCache;
+import org.apache.pinot.segment.local.warmup.SegmentWarmUpManager;
 import org.apache.pinot.segment.spi.ImmutableSegment;
 import org.apache.pinot.segment.spi.IndexSegment;
 import org.apache.pinot.segment.spi.SegmentContext;
@@ -376,6 +377,14 @@ public interface TableDataManager {
     return null;
   }
 
+  /**
+   * Returns the segment warm-up manager if segment warm-up is enabled, null otherwise.
+   */
+  @Nullable
+  default SegmentWarmUpManager getSegmentWarmUpManager() {
+    return null;
+  }
+
   /**
    * Returns a mapping of partition id to primary key count. Supports both upsert and dedup enabled tables.
    */
@@ -0,0 +1,439 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.dedup;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+import org.apache.pinot.segment.local.upsert.OffHeapPrimaryKeyIndex;
+import org.apache.pinot.segment.local.utils.HashUtils;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.apache.pinot.spi.config.table.HashFunction;
+import org.apache.pinot.spi.data.readers.PrimaryKey;
+import org.apache.pinot.spi.utils.ByteArray;
+
+
+/**
+ * Implementation of {@link PartitionDedupMetadataManager} that keeps the primary keys off-heap in an
+ * {@link OffHeapPrimaryKeyIndex}, so that the number of primary keys within the dedup window is not bounded by the
+ * Java heap. Each primary key takes a fixed 32-byte slot holding the 128-bit hash of the key, the id of the segment
+ * and the dedup time, instead of a key object and a {@code Pair} on the heap.
+ *
+ * <p>Primary keys are identified by their 128-bit hash (the configured hash function when it produces 16 bytes,
+ * otherwise MURMUR3 128-bit of the key bytes), so hash collisions are treated as duplicates. The probability is
+ * negligible (below 1e-18 for 1 billion keys).
+ *
+ * <p>When metadata TTL is enabled, the primary keys are also appended to off-heap logs bucketed by the dedup time.
+ * Expiring the primary keys only needs to go over the logs of the buckets fully out of the TTL, instead of scanning the
+ * whole index. A primary key whose dedup time was updated after being appended to a bucket is kept when the bucket
+ * expires, and will be checked again with the bucket of its latest dedup time.
+ *
+ * <p>All the operations are performed while holding the lock of the index.
+ */
+class OffHeapPartitionDedupMetadataManager extends BasePartitionDedupMetadataManager {
+  public static final String INITIAL_CAPACITY_KEY = "offHeapIndexInitialCapacity";
+  public static final int DEFAULT_INITIAL_CAPACITY = 1 << 16;
+  public static final String TIME_BUCKET_SIZE_KEY = "offHeapTimeBucketSize";
+  public static final int DEFAULT_NUM_TIME_BUCKETS_PER_TTL = 16;
+
+  // NOTE: Segment id 0 is reserved for empty slot in the index. Dedup does not track doc id.
+  private static final int DOC_ID = 0;
+
+  private final OffHeapPrimaryKeyIndex _primaryKeyIndex;
+  private final Reference2IntOpenHashMap<IndexSegment> _segmentToIdMap = new Reference2IntOpenHashMap<>();
+  private final Int2ObjectOpenHashMap<IndexSegment> _idToSegmentMap = new Int2ObjectOpenHashMap<>();
+  private int _nextSegmentId = OffHeapPrimaryKeyIndex.EMPTY_SEGMENT_ID + 1;
+
+  // Only used when metadata TTL is enabled
+  private final double _timeBucketSize;
+  private final TreeMap<Long, KeyLog> _timeBuckets = new TreeMap<>();
+
+  protected OffHeapPartitionDedupMetadataManager(String tableNameWithType, int partitionId,
+      DedupContext dedupContext) {
+    super(tableNameWithType, partitionId, dedupContext);
+    int initialCapacity = DEFAULT_INITIAL_CAPACITY;
+    double timeBucketSize = _metadataTTL / DEFAULT_NUM_TIME_BUCKETS_PER_TTL;
+    Map<String, String> metadataManagerConfigs = dedupContext.getMetadataManagerConfigs();
+    if (metadataManagerConfigs != null) {
+      if (metadataManagerConfigs.containsKey(INITIAL_CAPACITY_KEY)) {
+        initialCapacity = Integer.parseInt(metadataManagerConfigs.get(INITIAL_CAPACITY_KEY));
+      }
+      if (metadataManagerConfigs.containsKey(TIME_BUCKET_SIZE_KEY)) {
+        timeBucketSize = Double.parseDouble(metadataManagerConfigs.get(TIME_BUCKET_SIZE_KEY));
+      }
+    }
+    if (_metadataTTL > 0) {
+      Preconditions.checkArgument(timeBucketSize > 0, "Invalid time bucket size: %s for table: %s", timeBucketSize,
+          tableNameWithType);
+    }
+    _timeBucketSize = timeBucketSize;
+    _segmentToIdMap.defaultReturnValue(OffHeapPrimaryKeyIndex.EMPTY_SEGMENT_ID);
+    _primaryKeyIndex = new OffHeapPrimaryKeyIndex(initialCapacity,
+        "DedupPrimaryKeyIndex: " + tableNameWithType + "_" + partitionId);
+  }
+
+  @Override
+  protected void doPreloadSegment(ImmutableSegment segment, Iterator<DedupRecordInfo> dedupRecordInfoIterator) {
+    while (dedupRecordInfoIterator.hasNext()) {
+      DedupRecordInfo dedupRecordInfo = dedupRecordInfoIterator.next();
+      byte[] keyHash = getKeyHash(dedupRecordInfo.getPrimaryKey());
+      double dedupTime = dedupRecordInfo.getDedupTime();
+      synchronized (_primaryKeyIndex) {
+        int slot = _primaryKeyIndex.find(keyHash);
+        if (slot < 0) {
+          insert(keyHash, segment, dedupTime);
+        } else {
+          setLocation(slot, segment, dedupTime);
+        }
+      }
+    }
+  }
+
+  @Override
+  protected void doAddOrReplaceSegment(@Nullable IndexSegment oldSegment, IndexSegment newSegment,
+      Iterator<DedupRecordInfo> dedupRecordInfoIteratorOfNewSegment) {
+    String segmentName = newSegment.getSegmentName();
+    while (dedupRecordInfoIteratorOfNewSegment.hasNext()) {
+      DedupRecordInfo dedupRecordInfo = dedupRecordInfoIteratorOfNewSegment.next();
+      byte[] keyHash = getKeyHash(dedupRecordInfo.getPrimaryKey());
+      double dedupTime = dedupRecordInfo.getDedupTime();
+      synchronized (_primaryKeyIndex) {
+        int slot = _primaryKeyIndex.find(keyHash);
+        if (slot < 0) {
+          insert(keyHash, newSegment, dedupTime);
+          continue;
+        }
+        double currentDedupTime = getDedupTime(slot);
+        // Stale metadata is treated as not existing when checking for deduplicates.
+        if (isOutOfMetadataTTL(currentDedupTime)) {
+          setLocation(slot, newSegment, dedupTime);
+          continue;
+        }
+        IndexSegment currentSegment = _idToSegmentMap.get(_primaryKeyIndex.getSegmentId(slot));
+        // when oldSegment is null, it means we are adding a new segment
+        // when oldSegment is not null, it means we are replacing an existing segment
+        if (oldSegment == null) {
+          _logger.warn("When adding a new segment: record in segment: {} with primary key: {} and dedup time: {} "
+                  + "already exists in segment: {} with dedup time: {}", segmentName, dedupRecordInfo.getPrimaryKey(),
+              dedupTime, getSegmentName(currentSegment), currentDedupTime);
+        } else if (currentSegment != oldSegment) {
+          _logger.warn("When replacing a segment: record in segment: {} with primary key: {} and dedup time: {} "
+                  + "exists in segment: {} with dedup time: {} (but not the segment: {} to replace)", segmentName,
+              dedupRecordInfo.getPrimaryKey(), dedupTime, getSegmentName(currentSegment), currentDedupTime,
+              oldSegment.getSegmentName());
+        }
+        // When dedup time is the same, we always keep the latest segment
+        // This will handle segment replacement case correctly - a typical case is when a mutable segment is
+        // replaced by an immutable segment
+        if (currentDedupTime <= dedupTime) {
+          setLocation(slot, newSegment, dedupTime);
+        }
+      }
+    }
+    if (oldSegment != null) {
+      // Release the reference to the replaced segment. The primary keys still pointing to its segment id are kept for
+      // deduplication, but are no longer removed when removing the old segment.
+      synchronized (_primaryKeyIndex) {
+        unregisterSegment(oldSegment);
+      }
+    }
+  }
+
+  @Override
+  protected void doRemoveSegment(IndexSegment segment, Iterator<DedupRecordInfo> dedupRecordInfoIterator) {
+    int segmentId;
+    synchronized (_primaryKeyIndex) {
+      segmentId = _segmentToIdMap.getInt(segment);
+    }
+    if (segmentId == OffHeapPrimaryKeyIndex.EMPTY_SEGMENT_ID) {
+      return;
+    }
+    while (dedupRecordInfoIterator.hasNext()) {
+      byte[] keyHash = getKeyHash(dedupRecordInfoIterator.next().getPrimaryKey());
+      synchronized (_primaryKeyIndex) {
+        int slot = _primaryKeyIndex.find(keyHash);
+        // do not need to compare dedup time because we are removing the segment
+        if (slot >= 0 && _primaryKeyIndex.getSegmentId(slot) == segmentId) {
+          _primaryKeyIndex.remove(slot);
+        }
+      }
+    }
+    synchronized (_primaryKeyIndex) {
+      unregisterSegment(segment);
+    }
+  }
+
+  @Override
+  protected void doRemoveExpiredPrimaryKeys() {
+    double smallestTimeToKeep = _largestSeenTime.get() - _metadataTTL;
+    int numExpiredBuckets = 0;
+    int numRemovedKeys = 0;
+    synchronized (_primaryKeyIndex) {
+      Iterator<Map.Entry<Long, KeyLog>> iterator = _timeBuckets.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<Long, KeyLog> entry = iterator.next();
+        // Only expire the buckets where all the dedup times are out of the TTL
+        if ((entry.getKey() + 1) * _timeBucketSize > smallestTimeToKeep) {
+          break;
+        }
+        KeyLog keyLog = entry.getValue();
+        int numKeys = keyLog.size();
+        for (int i = 0; i < numKeys; i++) {
+          int slot = _primaryKeyIndex.find(keyLog.getKeyHigh(i), keyLog.getKeyLow(i));
+          if (slot >= 0 && getDedupTime(slot) < smallestTimeToKeep) {
+            _primaryKeyIndex.remove(slot);
+            numRemovedKeys++;
+          }
+        }
+        closeKeyLog(keyLog);
+        iterator.remove();
+        numExpiredBuckets++;
+      }
+    }
+    _logger.info("Removed {} expired primary keys from {} time buckets", numRemovedKeys, numExpiredBuckets);
+    updatePrimaryKeyGauge();
+  }
+
+  @Override
+  public boolean checkRecordPresentOrUpdate(DedupRecordInfo dedupRecordInfo, IndexSegment indexSegment) {
+    if (!startOperation()) {
+      _logger.info("Skip adding record to {} because metadata manager is already stopped",
+          indexSegment.getSegmentName());
+      return true;
+    }
+    try {
+      double dedupTime = dedupRecordInfo.getDedupTime();
+      if (_metadataTTL > 0) {
+        _largestSeenTime.getAndUpdate(time -> Math.max(time, dedupTime));
+      }
+      byte[] keyHash = getKeyHash(dedupRecordInfo.getPrimaryKey());
+      synchronized (_primaryKeyIndex) {
+        int slot = _primaryKeyIndex.find(keyHash);
+        if (slot < 0) {
+          insert(keyHash, indexSegment, dedupTime);
+        } else if (isOutOfMetadataTTL(getDedupTime(slot))) {
+          // The dedup metadata out of TTL is cleaned up when starting the next consuming segment, so it's possible
+          // when ingesting records into current segment, some dedup metadata is already becoming stale. The stale
+          // metadata is treated as not existing when checking for deduplicates.
+          setLocation(slot, indexSegment, dedupTime);
+        } else {
+          return true;
+        }
+      }
+      updatePrimaryKeyGauge();
+      return false;
+    } finally {
+      finishOperation();
+    }
+  }
+
+  @Override
+  public long getNumPrimaryKeys() {
+    synchronized (_primaryKeyIndex) {
+      return _primaryKeyIndex.size();
+    }
+  }
+
+  @VisibleForTesting
+  int getNumTimeBuckets() {
+    synchronized (_primaryKeyIndex) {
+      return _timeBuckets.size();
+    }
+  }
+
+  @VisibleForTesting
+  int getNumTrackedSegments() {
+    synchronized (_primaryKeyIndex) {
+      return _segmentToIdMap.size();
+    }
+  }
+
+  @VisibleForTesting
+  @Nullable
+  IndexSegment getSegment(PrimaryKey primaryKey) {
+    byte[] keyHash = getKeyHash(primaryKey);
+    synchronized (_primaryKeyIndex) {
+      int slot = _primaryKeyIndex.find(keyHash);
+      return slot >= 0 ? _idToSegmentMap.get(_primaryKeyIndex.getSegmentId(slot)) : null;
+    }
+  }
+
+  @VisibleForTesting
+  double getDedupTime(PrimaryKey primaryKey) {
+    byte[] keyHash = getKeyHash(primaryKey);
+    synchronized (_primaryKeyIndex) {
+      int slot = _primaryKeyIndex.find(keyHash);
+      return slot >= 0 ? getDedupTime(slot) : Double.NaN;
+    }
+  }
+
+  @Override
+  protected void doClose()
+      throws IOException {
+    synchronized (_primaryKeyIndex) {
+      _primaryKeyIndex.close();
+      for (KeyLog keyLog : _timeBuckets.values()) {
+        closeKeyLog(keyLog);
+      }
+      _timeBuckets.clear();
+      _segmentToIdMap.clear();
+      _idToSegmentMap.clear();
+    }
+  }
+
+  private void insert(byte[] keyHash, IndexSegment segment, double dedupTime) {
+    int slot = _primaryKeyIndex.insert(keyHash, getOrRegisterSegmentId(segment), DOC_ID,
+        Double.doubleToLongBits(dedupTime));
+    appendToTimeBucket(slot, dedupTime);
+  }
+
+  private void setLocation(int slot, IndexSegment segment, double dedupTime) {
+    double currentDedupTime = getDedupTime(slot);
+    _primaryKeyIndex.set(slot, getOrRegisterSegmentId(segment), DOC_ID, Double.doubleToLongBits(dedupTime));
+    if (_metadataTTL > 0 && getTimeBucket(currentDedupTime) != getTimeBucket(dedupTime)) {
+      appendToTimeBucket(slot, dedupTime);
+    }
+  }
+
+  private void appendToTimeBucket(int slot, double dedupTime) {
+    if (_metadataTTL <= 0) {
+      return;
+    }
+    long timeBucket = getTimeBucket(dedupTime);
+    KeyLog keyLog = _timeBuckets.get(timeBucket);
+    if (keyLog == null) {
+      keyLog = new KeyLog("DedupTimeBucket: " + _tableNameWithType + "_" + _partitionId + "_" + timeBucket);
+      _timeBuckets.put(timeBucket, keyLog);
+    }
+    keyLog.append(_primaryKeyIndex.getKeyHigh(slot), _primaryKeyIndex.getKeyLow(slot));
+  }
+
+  private long getTimeBucket(double dedupTime) {
+    return (long) Math.floor(dedupTime / _timeBucketSize);
+  }
+
+  private double getDedupTime(int slot) {
+    return Double.longBitsToDouble(_primaryKeyIndex.getComparisonValue(slot));
+  }
+
+  private int getOrRegisterSegmentId(IndexSegment segment) {
+    int segmentId = _segmentToIdMap.getInt(segment);
+    if (segmentId == OffHeapPrimaryKeyIndex.EMPTY_SEGMENT_ID) {
+      segmentId = _nextSegmentId++;
+      _segmentToIdMap.put(segment, segmentId);
+      _idToSegmentMap.put(segmentId, segment);
+    }
+    return segmentId;
+  }
+
+  private void unregisterSegment(IndexSegment segment) {
+    int segmentId = _segmentToIdMap.removeInt(segment);
+    if (segmentId != OffHeapPrimaryKeyIndex.EMPTY_SEGMENT_ID) {
+      _idToSegmentMap.remove(segmentId);
+    }
+  }
+
+  private void closeKeyLog(KeyLog keyLog) {
+    try {
+      keyLog.close();
+    } catch (IOException e) {
+      _logger.warn("Caught exception while closing the key log: {}", keyLog._description, e);
+    }
+  }
+
+  private static String getSegmentName(@Nullable IndexSegment segment) {
+    return segment != null ? segment.getSegmentName() : "<unknown>";
+  }
+
+  private byte[] getKeyHash(PrimaryKey primaryKey) {
+    byte[] bytes;
+    if (_hashFunction == HashFunction.NONE) {
+      bytes = primaryKey.asBytes();
+    } else {
+      bytes = ((ByteArray) HashUtils.hashPrimaryKey(primaryKey, _hashFunction)).getBytes();
+      if (bytes.length == OffHeapPrimaryKeyIndex.KEY_HASH_SIZE) {
+        return bytes;
+      }
+    }
+    return HashUtils.hashMurmur3(bytes);
+  }
+
+  /**
+   * Append-only off-heap log of primary key hashes, stored in fixed size chunks.
+   */
+  private static class KeyLog implements Closeable {
+    private static final int ENTRY_SIZE = OffHeapPrimaryKeyIndex.KEY_HASH_SIZE;
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_NUM_ENTRIES = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_NUM_ENTRIES - 1;
+
+    private final String _description;
+    private final List<PinotDataBuffer> _chunks = new ArrayList<>();
+    private int _size;
+
+    KeyLog(String description) {
+      _description = description;
+    }
+
+    void append(long keyHigh, long keyLow) {
+      int chunkOffset = _size & CHUNK_MASK;
+      if (chunkOffset == 0) {
+        _chunks.add(PinotDataBuffer.allocateDirect((long) CHUNK_NUM_ENTRIES * ENTRY_SIZE, PinotDataBuffer.NATIVE_ORDER,
+            _description));
+      }
+      PinotDataBuffer chunk = _chunks.get(_chunks.size() - 1);
+      long offset = (long) chunkOffset * ENTRY_SIZE;
+      chunk.putLong(offset, keyHigh);
+      chunk.putLong(offset + Long.BYTES, keyLow);
+      _size++;
+    }
+
+    int size() {
+      return _size;
+    }
+
+    long getKeyHigh(int index) {
+      return _chunks.get(index >>> CHUNK_SHIFT).getLong((long) (index & CHUNK_MASK) * ENTRY_SIZE);
+    }
+
+    long getKeyLow(int index) {
+      return _chunks.get(index >>> CHUNK_SHIFT).getLong((long) (index & CHUNK_MASK) * ENTRY_SIZE + Long.BYTES);
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+      for (PinotDataBuffer chunk : _chunks) {
+        chunk.close();
+      }
+      _chunks.clear();
+    }
+  }
+}
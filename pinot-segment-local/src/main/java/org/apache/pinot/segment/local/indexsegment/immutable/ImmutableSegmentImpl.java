@@ -235,6 +235,10 @@ public class ImmutableSegmentImpl implements ImmutableSegment {
     return _segmentDirectory.getTier();
   }
 
+  public SegmentDirectory getSegmentDirectory() {
+    return _segmentDirectory;
+  }
+
   @Override
   public String getSegmentName() {
     return _segmentMetadata.getName();
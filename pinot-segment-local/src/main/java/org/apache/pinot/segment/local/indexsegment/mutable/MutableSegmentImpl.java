@@ -60,9 +60,11 @@ import org.apache.pinot.segment.local.realtime.impl.RealtimeSegmentStatsHistory;
 import org.apache.pinot.segment.local.realtime.impl.dictionary.BaseOffHeapMutableDictionary;
 import org.apache.pinot.segment.local.realtime.impl.dictionary.SameValueMutableDictionary;
 import org.apache.pinot.segment.local.realtime.impl.forward.FixedByteMVMutableForwardIndex;
+import org.apache.pinot.segment.local.realtime.impl.forward.FixedByteSVMutableForwardIndex;
 import org.apache.pinot.segment.local.realtime.impl.forward.SameValueMutableForwardIndex;
 import org.apache.pinot.segment.local.realtime.impl.invertedindex.MultiColumnRealtimeLuceneTextIndex;
 import org.apache.pinot.segment.local.realtime.impl.nullvalue.MutableNullValueVector;
+import org.apache.pinot.segment.local.realtime.impl.startree.MutableStarTreeIndex;
 import org.apache.pinot.segment.local.segment.index.datasource.MutableDataSource;
 import org.apache.pinot.segment.local.segment.index.dictionary.DictionaryIndexType;
 import org.apache.pinot.segment.local.segment.index.map.MutableMapDataSource;
@@ -70,6 +72,7 @@ import org.apache.pinot.segment.local.segment.readers.PinotSegmentColumnReader;
 import org.apache.pinot.segment.local.segment.readers.PinotSegmentRecordReader;
 import org.apache.pinot.segment.local.segment.virtualcolumn.VirtualColumnContext;
 import org.apache.pinot.segment.local.segment.virtualcolumn.VirtualColumnProviderFactory;
+import org.apache.pinot.segment.local.startree.v2.builder.StarTreeV2BuilderConfig;
 import org.apache.pinot.segment.local.upsert.ComparisonColumns;
 import org.apache.pinot.segment.local.upsert.PartitionUpsertMetadataManager;
 import org.apache.pinot.segment.local.upsert.RecordInfo;
@@ -105,6 +108,7 @@ import org.apache.pinot.spi.config.table.ColumnPartitionConfig;
 import org.apache.pinot.spi.config.table.IndexConfig;
 import org.apache.pinot.spi.config.table.MultiColumnTextIndexConfig;
 import org.apache.pinot.spi.config.table.SegmentPartitionConfig;
+import org.apache.pinot.spi.config.table.StarTreeIndexConfig;
 import org.apache.pinot.spi.config.table.UpsertConfig;
 import org.apache.pinot.spi.config.table.ingestion.AggregationConfig;
 import org.apache.pinot.spi.data.ComplexFieldSpec;
@@ -138,6 +142,7 @@ public class MutableSegmentImpl implements MutableSegment {
   private static final int EXPECTED_COMPRESSION = 1000;
   private static final int MIN_ROWS_TO_INDEX = 1000_000; // Min size of recordIdMap for updatable metrics.
   private static final int MIN_RECORD_ID_MAP_CACHE_SIZE = 10000; // Min overflow map size for updatable metrics.
+  private static final int DEFAULT_AVG_NUM_MULTI_VALUES = 2;
 
   private final Logger _logger;
   private final long _startTimeMillis = System.currentTimeMillis();
@@ -197,6 +202,9 @@ public class MutableSegmentImpl implements MutableSegment {
   private final MultiColumnRealtimeLuceneTextIndex _multiColumnTextIndex;
   private final Object2IntOpenHashMap _multiColumnPos;
   private final List<Object> _multiColumnValues;
+
+  // Star-trees maintained for the consuming segment, null if not enabled
+  private final List<MutableStarTreeIndex> _starTreeIndexes;
   private final MultiColumnTextMetadata _multiColumnTextMetadata;
 
   public MutableSegmentImpl(RealtimeSegmentConfig config, @Nullable ServerMetrics serverMetrics) {
@@ -297,6 +305,10 @@ public class MutableSegmentImpl implements MutableSegment {
         Sets.newHashSet(StandardIndexes.dictionary(), // dictionary implements other contract
             StandardIndexes.nullValueVector()); // null value vector implements other contract
 
+    // Used to size the multi-value forward indexes when there is no prior statistics for the column
+    int avgNumMultiValues =
+        config.getAvgNumMultiValues() > 0 ? config.getAvgNumMultiValues() : DEFAULT_AVG_NUM_MULTI_VALUES;
+
     // Initialize for each column
     for (FieldSpec fieldSpec : _physicalFieldSpecs) {
       String column = fieldSpec.getName();
@@ -325,7 +337,7 @@ public class MutableSegmentImpl implements MutableSegment {
               .withSegmentName(_segmentName)
               .withEstimatedCardinality(_statsHistory.getEstimatedCardinality(column))
               .withEstimatedColSize(_statsHistory.getEstimatedAvgColSize(column))
-              .withAvgNumMultiValues(_statsHistory.getEstimatedAvgColSize(column))
+              .withAvgNumMultiValues(_statsHistory.getEstimatedAvgNumMultiValues(column, avgNumMultiValues))
               .withConsumerDir(_consumerDir)
               .withFixedLengthBytes(fixedByteSize).build();
 
@@ -482,6 +494,71 @@ public class MutableSegmentImpl implements MutableSegment {
       _multiColumnValues = null;
       _multiColumnTextMetadata = null;
     }
+
+    _starTreeIndexes = createStarTreeIndexes(config.getStarTreeIndexConfigs(), config.getStarTreeRefreshIntervalMs());
+  }
+
+  /**
+   * Creates the star-trees to be maintained for the consuming segment. Star-tree is not supported when the documents
+   * can be invalidated (upsert) or merged (metrics aggregation), and each star-tree requires all the dimensions to be
+   * dictionary-encoded single-value columns, and all the aggregated columns to be single-value columns.
+   */
+  @Nullable
+  private List<MutableStarTreeIndex> createStarTreeIndexes(@Nullable List<StarTreeIndexConfig> starTreeIndexConfigs,
+      long refreshIntervalMs) {
+    if (CollectionUtils.isEmpty(starTreeIndexConfigs)) {
+      return null;
+    }
+    if (isUpsertEnabled() || isAggregateMetricsEnabled()) {
+      _logger.warn("Star-tree is not supported on consuming segment with upsert or metrics aggregation enabled");
+      return null;
+    }
+    List<StarTreeV2BuilderConfig> builderConfigs = new ArrayList<>();
+    for (StarTreeIndexConfig starTreeIndexConfig : starTreeIndexConfigs) {
+      StarTreeV2BuilderConfig builderConfig = StarTreeV2BuilderConfig.fromIndexConfig(starTreeIndexConfig);
+      if (!builderConfigs.contains(builderConfig)) {
+        builderConfigs.add(builderConfig);
+      }
+    }
+    List<MutableStarTreeIndex> starTreeIndexes = new ArrayList<>(builderConfigs.size());
+    for (StarTreeV2BuilderConfig builderConfig : builderConfigs) {
+      List<String> dimensions = builderConfig.getDimensionsSplitOrder();
+      int numDimensions = dimensions.size();
+      FieldSpec[] dimensionFieldSpecs = new FieldSpec[numDimensions];
+      MutableDictionary[] dictionaries = new MutableDictionary[numDimensions];
+      String unsupportedColumn = null;
+      for (int i = 0; i < numDimensions; i++) {
+        String dimension = dimensions.get(i);
+        IndexContainer indexContainer = _indexContainerMap.get(dimension);
+        if (indexContainer == null || !indexContainer._fieldSpec.isSingleValueField()
+            || indexContainer._dictionary == null) {
+          unsupportedColumn = dimension;
+          break;
+        }
+        dimensionFieldSpecs[i] = indexContainer._fieldSpec;
+        dictionaries[i] = indexContainer._dictionary;
+      }
+      MutableStarTreeIndex starTreeIndex = null;
+      if (unsupportedColumn == null) {
+        starTreeIndex = new MutableStarTreeIndex(builderConfig, dimensionFieldSpecs, dictionaries, refreshIntervalMs);
+        for (String metricColumn : starTreeIndex.getMetricColumns()) {
+          if (metricColumn != null) {
+            IndexContainer indexContainer = _indexContainerMap.get(metricColumn);
+            if (indexContainer == null || !indexContainer._fieldSpec.isSingleValueField()) {
+              unsupportedColumn = metricColumn;
+              break;
+            }
+          }
+        }
+      }
+      if (unsupportedColumn == null) {
+        starTreeIndexes.add(starTreeIndex);
+      } else {
+        _logger.warn("Skipping star-tree: {} on consuming segment because of unsupported column: {}", builderConfig,
+            unsupportedColumn);
+      }
+    }
+    return !starTreeIndexes.isEmpty() ? starTreeIndexes : null;
   }
 
   private static Map<String, Pair<String, ValueAggregator>> getMetricsAggregators(RealtimeSegmentConfig segmentConfig) {
@@ -702,6 +779,13 @@ public class MutableSegmentImpl implements MutableSegment {
         canTakeMore = true;
       }
       _numDocsIndexed = numDocsIndexed;
+
+      // NOTE: Star-trees are not created when metrics aggregation is enabled, so the row is always a new row here.
+      //       Add the row to the star-trees after it becomes queryable so that the star-trees never contain rows not
+      //       visible to the queries.
+      if (_starTreeIndexes != null) {
+        addToStarTrees(row);
+      }
     }
 
     // Update last indexed time and latest ingestion time
@@ -713,6 +797,111 @@ public class MutableSegmentImpl implements MutableSegment {
     return canTakeMore;
   }
 
+  /**
+   * Returns whether the given number of rows can be indexed as a batch with {@link #indexBatch(List,
+   * StreamMessageMetadata)}. Batch indexing is not supported when each row needs to be handled separately, i.e. for
+   * upsert, dedup, metrics aggregation and multi-column text index, or when the batch does not fit into the segment.
+   */
+  public boolean canIndexBatch(int numRows) {
+    return !isUpsertEnabled() && !isDedupEnabled() && !isAggregateMetricsEnabled() && _multiColumnValues == null
+        && _numDocsIndexed + numRows <= _capacity;
+  }
+
+  /**
+   * Indexes a batch of rows column by column, i.e. the dictionary and indexes of a column are updated for all the rows
+   * before moving to the next column. This gives better cache locality than indexing the rows one by one for batches
+   * decoded from a single message (e.g. Arrow record batch). The rows become queryable after the whole batch is
+   * indexed.
+   *
+   * <p>The rows are validated and the dictionary ids are generated for all the columns before updating any index, so
+   * that no index is modified if any row cannot be indexed, and the caller can fall back to indexing the rows one by
+   * one. Must be called only when {@link #canIndexBatch(int)} returns {@code true}.
+   *
+   * @return Whether the segment can take more rows
+   */
+  public boolean indexBatch(List<GenericRow> rows, @Nullable StreamMessageMetadata metadata)
+      throws IOException {
+    int numRows = rows.size();
+    int numDocsIndexed = _numDocsIndexed;
+    Preconditions.checkState(canIndexBatch(numRows), "Cannot index %s rows as a batch", numRows);
+
+    // NOTE: We must do this before we index a single column to avoid partially indexing the batch
+    for (GenericRow row : rows) {
+      validateLengthOfMVColumns(row);
+    }
+
+    // Update dictionary first
+    int numColumns = _indexContainerMap.size();
+    int[][] svDictIds = new int[numColumns][];
+    int[][][] mvDictIds = new int[numColumns][][];
+    // Dictionary ids of the single-value columns, used to add the rows to the star-trees
+    Map<String, int[]> svDictIdsMap = _starTreeIndexes != null ? new HashMap<>() : null;
+    int columnIndex = 0;
+    for (Map.Entry<String, IndexContainer> entry : _indexContainerMap.entrySet()) {
+      String column = entry.getKey();
+      IndexContainer indexContainer = entry.getValue();
+      MutableDictionary dictionary = indexContainer._dictionary;
+      if (dictionary != null) {
+        boolean isSingleValue = indexContainer._fieldSpec.isSingleValueField();
+        if (isSingleValue) {
+          svDictIds[columnIndex] = new int[numRows];
+        } else {
+          mvDictIds[columnIndex] = new int[numRows][];
+        }
+        for (int i = 0; i < numRows; i++) {
+          Object value = rows.get(i).getValue(column);
+          if (value == null) {
+            recordIndexingError("DICTIONARY");
+          } else if (isSingleValue) {
+            svDictIds[columnIndex][i] = dictionary.index(value);
+          } else {
+            mvDictIds[columnIndex][i] = dictionary.index((Object[]) value);
+          }
+        }
+        // Update min/max value from dictionary
+        indexContainer._minValue = dictionary.getMinVal();
+        indexContainer._maxValue = dictionary.getMaxVal();
+        updateIndexCapacityThresholdBreached(dictionary, column);
+        if (svDictIdsMap != null && isSingleValue) {
+          svDictIdsMap.put(column, svDictIds[columnIndex]);
+        }
+      }
+      columnIndex++;
+    }
+
+    // Update indexes
+    columnIndex = 0;
+    for (Map.Entry<String, IndexContainer> entry : _indexContainerMap.entrySet()) {
+      String column = entry.getKey();
+      IndexContainer indexContainer = entry.getValue();
+      int[] columnSVDictIds = svDictIds[columnIndex];
+      int[][] columnMVDictIds = mvDictIds[columnIndex];
+      for (int i = 0; i < numRows; i++) {
+        int dictId = columnSVDictIds != null ? columnSVDictIds[i] : -1;
+        int[] dictIds = columnMVDictIds != null ? columnMVDictIds[i] : null;
+        addNewValue(numDocsIndexed + i, rows.get(i), column, indexContainer, dictId, dictIds);
+      }
+      columnIndex++;
+    }
+
+    // Update number of documents indexed at last to make the latest rows queryable
+    numDocsIndexed += numRows;
+    _numDocsIndexed = numDocsIndexed;
+
+    // NOTE: Same as index(), add the rows to the star-trees in the doc id order after they become queryable.
+    if (_starTreeIndexes != null) {
+      addToStarTrees(rows, svDictIdsMap);
+    }
+
+    // Update last indexed time and latest ingestion time
+    _lastIndexedTimeMs = System.currentTimeMillis();
+    if (metadata != null) {
+      updateIngestionTimestamp(metadata.getRecordIngestionTimeMs());
+    }
+
+    return numDocsIndexed < _capacity;
+  }
+
   /**
    * Updates ingestion timestamp metadata. This is a public function to allow
    * external components to update the ingestion timestamp metadata without indexing a row.
@@ -834,166 +1023,204 @@ public class MutableSegmentImpl implements MutableSegment {
     }
   }
 
+  private void addToStarTrees(GenericRow row) {
+    for (MutableStarTreeIndex starTreeIndex : _starTreeIndexes) {
+      List<String> dimensions = starTreeIndex.getDimensionsSplitOrder();
+      int numDimensions = dimensions.size();
+      int[] dictIds = new int[numDimensions];
+      for (int i = 0; i < numDimensions; i++) {
+        dictIds[i] = _indexContainerMap.get(dimensions.get(i))._dictId;
+      }
+      starTreeIndex.index(dictIds, row);
+    }
+  }
+
+  private void addToStarTrees(List<GenericRow> rows, Map<String, int[]> svDictIdsMap) {
+    int numRows = rows.size();
+    for (MutableStarTreeIndex starTreeIndex : _starTreeIndexes) {
+      List<String> dimensions = starTreeIndex.getDimensionsSplitOrder();
+      int numDimensions = dimensions.size();
+      int[][] dimensionDictIds = new int[numDimensions][];
+      for (int i = 0; i < numDimensions; i++) {
+        dimensionDictIds[i] = svDictIdsMap.get(dimensions.get(i));
+      }
+      for (int rowId = 0; rowId < numRows; rowId++) {
+        int[] dictIds = new int[numDimensions];
+        for (int i = 0; i < numDimensions; i++) {
+          dictIds[i] = dimensionDictIds[i][rowId];
+        }
+        starTreeIndex.index(dictIds, rows.get(rowId));
+      }
+    }
+  }
+
   private void addNewRow(int docId, GenericRow row) {
     for (Map.Entry<String, IndexContainer> entry : _indexContainerMap.entrySet()) {
       String column = entry.getKey();
       IndexContainer indexContainer = entry.getValue();
+      addNewValue(docId, row, column, indexContainer, indexContainer._dictId, indexContainer._dictIds);
+    }
 
-      // Handle ingestion aggregation
-      ValueAggregator valueAggregator = indexContainer._valueAggregator;
-      if (valueAggregator != null) {
-        String sourceColumn = indexContainer._sourceColumn;
-        // NOTE: value can be null if the column is not specified in the schema.
-        Object value = row.getValue(sourceColumn);
-        // Handle COUNT(*)
-        if (value == null && sourceColumn.equals(AggregationFunctionColumnPair.STAR)) {
-          assert valueAggregator.getAggregationType() == AggregationFunctionType.COUNT;
-          value = 1;
-        }
+    if (_multiColumnValues != null) {
+      _multiColumnTextIndex.add(_multiColumnValues);
+      Collections.fill(_multiColumnValues, null);
+    }
+  }
 
-        // Update numValues info
-        indexContainer._valuesInfo.updateSVNumValues();
-
-        MutableIndex forwardIndex = indexContainer._mutableIndexes.get(StandardIndexes.forward());
-        FieldSpec fieldSpec = indexContainer._fieldSpec;
-
-        DataType dataType = fieldSpec.getDataType();
-        value = valueAggregator.getInitialAggregatedValue(value);
-        // BIG_DECIMAL is actually stored as byte[] and hence can be supported here.
-        switch (dataType.getStoredType()) {
-          case INT:
-            forwardIndex.add(((Number) value).intValue(), -1, docId);
-            break;
-          case LONG:
-            forwardIndex.add(((Number) value).longValue(), -1, docId);
-            break;
-          case FLOAT:
-            forwardIndex.add(((Number) value).floatValue(), -1, docId);
-            break;
-          case DOUBLE:
-            forwardIndex.add(((Number) value).doubleValue(), -1, docId);
-            break;
-          case BIG_DECIMAL:
-          case BYTES:
-            forwardIndex.add(valueAggregator.serializeAggregatedValue(value), -1, docId);
-            break;
-          default:
-            throw new UnsupportedOperationException(
-                "Unsupported data type: " + dataType + " for aggregation: " + column);
-        }
-        continue;
-      }
+  /**
+   * Adds the value of the given column in the row to the indexes of the column. The dictionary id(s) should be
+   * generated with the dictionary before calling this method.
+   */
+  private void addNewValue(int docId, GenericRow row, String column, IndexContainer indexContainer, int dictId,
+      @Nullable int[] dictIds) {
 
-      // Update the null value vector even if a null value is somehow produced
-      if (indexContainer._nullValueVector != null && row.isNullValue(column)) {
-        indexContainer._nullValueVector.setNull(docId);
+    // Handle ingestion aggregation
+    ValueAggregator valueAggregator = indexContainer._valueAggregator;
+    if (valueAggregator != null) {
+      String sourceColumn = indexContainer._sourceColumn;
+      // NOTE: value can be null if the column is not specified in the schema.
+      Object value = row.getValue(sourceColumn);
+      // Handle COUNT(*)
+      if (value == null && sourceColumn.equals(AggregationFunctionColumnPair.STAR)) {
+        assert valueAggregator.getAggregationType() == AggregationFunctionType.COUNT;
+        value = 1;
       }
 
-      Object value = row.getValue(column);
-      if (value == null) {
-        // the value should not be null unless something is broken upstream but this will lead to inappropriate reuse
-        // of the dictionary id if this somehow happens. An NPE here can corrupt indexes leading to incorrect query
-        // results, hence the extra care. A metric will already have been emitted when trying to update the dictionary.
-        continue;
-      }
+      // Update numValues info
+      indexContainer._valuesInfo.updateSVNumValues();
 
+      MutableIndex forwardIndex = indexContainer._mutableIndexes.get(StandardIndexes.forward());
       FieldSpec fieldSpec = indexContainer._fieldSpec;
+
       DataType dataType = fieldSpec.getDataType();
+      value = valueAggregator.getInitialAggregatedValue(value);
+      // BIG_DECIMAL is actually stored as byte[] and hence can be supported here.
+      switch (dataType.getStoredType()) {
+        case INT:
+          forwardIndex.add(((Number) value).intValue(), -1, docId);
+          break;
+        case LONG:
+          forwardIndex.add(((Number) value).longValue(), -1, docId);
+          break;
+        case FLOAT:
+          forwardIndex.add(((Number) value).floatValue(), -1, docId);
+          break;
+        case DOUBLE:
+          forwardIndex.add(((Number) value).doubleValue(), -1, docId);
+          break;
+        case BIG_DECIMAL:
+        case BYTES:
+          forwardIndex.add(valueAggregator.serializeAggregatedValue(value), -1, docId);
+          break;
+        default:
+          throw new UnsupportedOperationException(
+              "Unsupported data type: " + dataType + " for aggregation: " + column);
+      }
+      return;
+    }
 
-      if (fieldSpec.isSingleValueField()) {
-        // Check partitions
-        if (column.equals(_partitionColumn)) {
-          String stringValue = dataType.toString(value);
-          int partition = _partitionFunction.getPartition(stringValue);
-          if (partition != _mainPartitionId) {
-            if (indexContainer._partitions.add(partition)) {
-              // for every partition other than mainPartitionId, log a warning once
-              _logger.warn("Found new partition: {} from partition column: {}, value: {}", partition, column,
-                  stringValue);
-            }
-            // always emit a metric when a partition other than mainPartitionId is detected
-            if (_serverMetrics != null) {
-              _serverMetrics.addMeteredTableValue(_realtimeTableName, ServerMeter.REALTIME_PARTITION_MISMATCH, 1);
-            }
+    // Update the null value vector even if a null value is somehow produced
+    if (indexContainer._nullValueVector != null && row.isNullValue(column)) {
+      indexContainer._nullValueVector.setNull(docId);
+    }
+
+    Object value = row.getValue(column);
+    if (value == null) {
+      // the value should not be null unless something is broken upstream but this will lead to inappropriate reuse
+      // of the dictionary id if this somehow happens. An NPE here can corrupt indexes leading to incorrect query
+      // results, hence the extra care. A metric will already have been emitted when trying to update the dictionary.
+      return;
+    }
+
+    FieldSpec fieldSpec = indexContainer._fieldSpec;
+    DataType dataType = fieldSpec.getDataType();
+
+    if (fieldSpec.isSingleValueField()) {
+      // Check partitions
+      if (column.equals(_partitionColumn)) {
+        String stringValue = dataType.toString(value);
+        int partition = _partitionFunction.getPartition(stringValue);
+        if (partition != _mainPartitionId) {
+          if (indexContainer._partitions.add(partition)) {
+            // for every partition other than mainPartitionId, log a warning once
+            _logger.warn("Found new partition: {} from partition column: {}, value: {}", partition, column,
+                stringValue);
+          }
+          // always emit a metric when a partition other than mainPartitionId is detected
+          if (_serverMetrics != null) {
+            _serverMetrics.addMeteredTableValue(_realtimeTableName, ServerMeter.REALTIME_PARTITION_MISMATCH, 1);
           }
         }
+      }
 
-        // Update numValues info
-        indexContainer._valuesInfo.updateSVNumValues();
-
-        // Update indexes
-        int dictId = indexContainer._dictId;
-        for (Map.Entry<IndexType, MutableIndex> indexEntry : indexContainer._mutableIndexes.entrySet()) {
-          try {
-            MutableIndex mutableIndex = indexEntry.getValue();
-            mutableIndex.add(value, dictId, docId);
-            updateIndexCapacityThresholdBreached(mutableIndex, indexEntry.getKey(), column);
-          } catch (Exception e) {
-            recordIndexingError(indexEntry.getKey(), e);
-          }
+      // Update numValues info
+      indexContainer._valuesInfo.updateSVNumValues();
+
+      // Update indexes
+      for (Map.Entry<IndexType, MutableIndex> indexEntry : indexContainer._mutableIndexes.entrySet()) {
+        try {
+          MutableIndex mutableIndex = indexEntry.getValue();
+          mutableIndex.add(value, dictId, docId);
+          updateIndexCapacityThresholdBreached(mutableIndex, indexEntry.getKey(), column);
+        } catch (Exception e) {
+          recordIndexingError(indexEntry.getKey(), e);
         }
+      }
 
-        if (dictId < 0) {
-          // Update min/max value from raw value
-          // NOTE: Skip updating min/max value for aggregated metrics because the value will change over time.
-          if (!isAggregateMetricsEnabled() || fieldSpec.getFieldType() != FieldSpec.FieldType.METRIC) {
-            Comparable comparable;
-            if (dataType == BYTES) {
-              comparable = new ByteArray((byte[]) value);
-            } else if (dataType == MAP) {
-              comparable = new ByteArray(MapUtils.serializeMap((Map) value));
-            } else {
-              comparable = (Comparable) value;
-            }
-            if (indexContainer._minValue == null) {
+      if (dictId < 0) {
+        // Update min/max value from raw value
+        // NOTE: Skip updating min/max value for aggregated metrics because the value will change over time.
+        if (!isAggregateMetricsEnabled() || fieldSpec.getFieldType() != FieldSpec.FieldType.METRIC) {
+          Comparable comparable;
+          if (dataType == BYTES) {
+            comparable = new ByteArray((byte[]) value);
+          } else if (dataType == MAP) {
+            comparable = new ByteArray(MapUtils.serializeMap((Map) value));
+          } else {
+            comparable = (Comparable) value;
+          }
+          if (indexContainer._minValue == null) {
+            indexContainer._minValue = comparable;
+            indexContainer._maxValue = comparable;
+          } else {
+            if (comparable.compareTo(indexContainer._minValue) < 0) {
               indexContainer._minValue = comparable;
+            }
+            if (comparable.compareTo(indexContainer._maxValue) > 0) {
               indexContainer._maxValue = comparable;
-            } else {
-              if (comparable.compareTo(indexContainer._minValue) < 0) {
-                indexContainer._minValue = comparable;
-              }
-              if (comparable.compareTo(indexContainer._maxValue) > 0) {
-                indexContainer._maxValue = comparable;
-              }
             }
           }
         }
+      }
 
-        if (_multiColumnValues != null) {
-          int pos = _multiColumnPos.getInt(column);
-          if (pos > -1) {
-            _multiColumnValues.set(pos, value);
-          }
+      if (_multiColumnValues != null) {
+        int pos = _multiColumnPos.getInt(column);
+        if (pos > -1) {
+          _multiColumnValues.set(pos, value);
         }
-      } else {
-        // Multi-value column
-
-        int[] dictIds = indexContainer._dictIds;
-        indexContainer._valuesInfo.updateVarByteMVMaxRowLengthInBytes(value, dataType.getStoredType());
-        Object[] values = (Object[]) value;
-        for (Map.Entry<IndexType, MutableIndex> indexEntry : indexContainer._mutableIndexes.entrySet()) {
-          try {
-            MutableIndex mutableIndex = indexEntry.getValue();
-            mutableIndex.add(values, dictIds, docId);
-            updateIndexCapacityThresholdBreached(mutableIndex, indexEntry.getKey(), column);
-          } catch (Exception e) {
-            recordIndexingError(indexEntry.getKey(), e);
-          }
-        }
-        indexContainer._valuesInfo.updateMVNumValues(values.length);
+      }
+    } else {
+      // Multi-value column
 
-        if (_multiColumnValues != null) {
-          int pos = _multiColumnPos.getInt(column);
-          if (pos > -1) {
-            _multiColumnValues.set(pos, value);
-          }
+      indexContainer._valuesInfo.updateVarByteMVMaxRowLengthInBytes(value, dataType.getStoredType());
+      Object[] values = (Object[]) value;
+      for (Map.Entry<IndexType, MutableIndex> indexEntry : indexContainer._mutableIndexes.entrySet()) {
+        try {
+          MutableIndex mutableIndex = indexEntry.getValue();
+          mutableIndex.add(values, dictIds, docId);
+          updateIndexCapacityThresholdBreached(mutableIndex, indexEntry.getKey(), column);
+        } catch (Exception e) {
+          recordIndexingError(indexEntry.getKey(), e);
         }
       }
-    }
+      indexContainer._valuesInfo.updateMVNumValues(values.length);
 
-    if (_multiColumnValues != null) {
-      _multiColumnTextIndex.add(_multiColumnValues);
-      Collections.fill(_multiColumnValues, null);
+      if (_multiColumnValues != null) {
+        int pos = _multiColumnPos.getInt(column);
+        if (pos > -1) {
+          _multiColumnValues.set(pos, value);
+        }
+      }
     }
   }
 
@@ -1205,7 +1432,23 @@ public class MutableSegmentImpl implements MutableSegment {
   @Nullable
   @Override
   public List<StarTreeV2> getStarTrees() {
-    return null;
+    return getStarTrees(false);
+  }
+
+  @Nullable
+  @Override
+  public List<StarTreeV2> getStarTrees(boolean allowStale) {
+    if (_starTreeIndexes == null) {
+      return null;
+    }
+    List<StarTreeV2> starTrees = new ArrayList<>(_starTreeIndexes.size());
+    for (MutableStarTreeIndex starTreeIndex : _starTreeIndexes) {
+      StarTreeV2 starTree = starTreeIndex.getStarTree(allowStale);
+      if (starTree != null) {
+        starTrees.add(starTree);
+      }
+    }
+    return !starTrees.isEmpty() ? starTrees : null;
   }
 
   @Nullable
@@ -1290,8 +1533,11 @@ public class MutableSegmentImpl implements MutableSegment {
       if (_numDocsIndexed > 0) {
         int numSeconds = (int) ((System.currentTimeMillis() - _startTimeMillis) / 1000);
         long totalMemBytes = _memoryManager.getTotalAllocatedBytes();
-        _logger.info("Segment used {} bytes of memory for {} rows consumed in {} seconds", totalMemBytes,
-            _numDocsIndexed, numSeconds);
+        // Record the memory used by the indexed rows instead of the allocated memory, so that the memory per row is not
+        // inflated by the fixed-width forward index buffers pre-allocated for the whole capacity of the segment
+        long usedMemBytes = getUsedMemBytes(totalMemBytes);
+        _logger.info("Segment allocated {} bytes and used {} bytes of memory for {} rows consumed in {} seconds",
+            totalMemBytes, usedMemBytes, _numDocsIndexed, numSeconds);
 
         RealtimeSegmentStatsHistory.SegmentStats segmentStats = new RealtimeSegmentStatsHistory.SegmentStats();
         for (Map.Entry<String, IndexContainer> entry : _indexContainerMap.entrySet()) {
@@ -1302,12 +1548,16 @@ public class MutableSegmentImpl implements MutableSegment {
             RealtimeSegmentStatsHistory.ColumnStats columnStats = new RealtimeSegmentStatsHistory.ColumnStats();
             columnStats.setCardinality(dictionary.length());
             columnStats.setAvgColumnSize(dictionary.getAvgValueSize());
+            if (!entry.getValue()._fieldSpec.isSingleValueField()) {
+              int numValues = entry.getValue()._valuesInfo._numValues;
+              columnStats.setAvgNumMultiValues(Math.max((numValues + _numDocsIndexed - 1) / _numDocsIndexed, 1));
+            }
             segmentStats.setColumnStats(column, columnStats);
           }
         }
         segmentStats.setNumRowsConsumed(_numDocsIndexed);
         segmentStats.setNumRowsIndexed(_numDocsIndexed);
-        segmentStats.setMemUsedBytes(totalMemBytes);
+        segmentStats.setMemUsedBytes(usedMemBytes);
         segmentStats.setNumSeconds(numSeconds);
         _statsHistory.addSegmentStats(segmentStats);
       }
@@ -1343,6 +1593,21 @@ public class MutableSegmentImpl implements MutableSegment {
     }
   }
 
+  /**
+   * Returns the memory used by the indexed rows, which excludes the unused part of the fixed-width forward index
+   * buffers allocated upfront for the capacity of the segment.
+   */
+  private long getUsedMemBytes(long totalMemBytes) {
+    long unusedMemBytes = 0;
+    for (IndexContainer indexContainer : _indexContainerMap.values()) {
+      MutableIndex forwardIndex = indexContainer._mutableIndexes.get(StandardIndexes.forward());
+      if (forwardIndex instanceof FixedByteSVMutableForwardIndex) {
+        unusedMemBytes += ((FixedByteSVMutableForwardIndex) forwardIndex).getNumUnusedBytes(_numDocsIndexed);
+      }
+    }
+    return Math.max(totalMemBytes - unusedMemBytes, 0);
+  }
+
   /// Returns the docIds to use for iteration when the data is sorted by the given column.
   /// Called only by realtime record reader.
   ///
@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.loader;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.pinot.common.utils.URIUtils;
+import org.apache.pinot.segment.local.segment.index.loader.IndexLoadingConfig;
+import org.apache.pinot.segment.local.segment.store.IndexBufferCache;
+import org.apache.pinot.segment.local.segment.store.LazyRemoteSegmentDirectory;
+import org.apache.pinot.segment.local.segment.store.SegmentArchive;
+import org.apache.pinot.segment.local.segment.store.SegmentLocalFSDirectory;
+import org.apache.pinot.segment.spi.V1Constants;
+import org.apache.pinot.segment.spi.loader.SegmentDirectoryLoader;
+import org.apache.pinot.segment.spi.loader.SegmentDirectoryLoaderContext;
+import org.apache.pinot.segment.spi.loader.SegmentLoader;
+import org.apache.pinot.segment.spi.store.SegmentDirectory;
+import org.apache.pinot.segment.spi.store.SegmentDirectoryPaths;
+import org.apache.pinot.spi.env.PinotConfiguration;
+import org.apache.pinot.spi.filesystem.PinotFS;
+import org.apache.pinot.spi.filesystem.PinotFSFactory;
+import org.apache.pinot.spi.utils.DataSizeUtils;
+import org.apache.pinot.spi.utils.ReadMode;
+import org.apache.pinot.spi.utils.builder.TableNameBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Implementation of {@link SegmentDirectoryLoader} that serves the segments directly from the remote segment store
+ * with {@link LazyRemoteSegmentDirectory}, so that the segments can be loaded without downloading and untarring the
+ * whole segment, and only the index buffers accessed by the queries are fetched.
+ *
+ * <p>The segments are looked up under {@code <lazy.remote.dir>/<rawTableName>/}, either as a {@link SegmentArchive}
+ * named {@code <segmentName>.sar}, or as a directory named {@code <segmentName>} in the untarred v3 layout. The
+ * loader falls back to {@link SegmentLocalFSDirectory} when the complete segment exists locally (e.g. after being
+ * preprocessed), or when the segment does not exist in the remote directory, in which case the server downloads the
+ * segment as usual.
+ *
+ * <p>The loader is configured with the instance configs under
+ * {@link IndexLoadingConfig#SEGMENT_DIRECTORY_CONFIG_PREFIX}, e.g.
+ * {@code pinot.server.instance.segment.directory.loader=lazyRemote} and
+ * {@code pinot.server.instance.segment.directory.lazy.remote.dir=s3://bucket/untarred}.
+ */
+@SegmentLoader(name = "lazyRemote")
+public class LazyRemoteSegmentDirectoryLoader implements SegmentDirectoryLoader {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LazyRemoteSegmentDirectoryLoader.class);
+
+  public static final String REMOTE_DIR_KEY = "lazy.remote.dir";
+  // Local directory for the index buffer cache, default to a directory next to the table data dirs
+  public static final String CACHE_DIR_KEY = "lazy.cache.dir";
+  public static final String DEFAULT_CACHE_DIR_NAME = "indexBufferCache";
+  public static final String CACHE_MAX_SIZE_KEY = "lazy.cache.max.size";
+  public static final String DEFAULT_CACHE_MAX_SIZE = "100G";
+
+  // The cache is shared by all the segments on the server, and is created with the configs of the first segment
+  private static volatile IndexBufferCache _cache;
+
+  @Override
+  public SegmentDirectory load(URI indexDir, SegmentDirectoryLoaderContext segmentLoaderContext)
+      throws Exception {
+    PinotConfiguration segmentDirectoryConfigs = segmentLoaderContext.getSegmentDirectoryConfigs();
+    File directory = new File(indexDir);
+    if (isCompleteLocally(directory)) {
+      return new SegmentLocalFSDirectory(directory, segmentLoaderContext,
+          ReadMode.valueOf(segmentDirectoryConfigs.getProperty(IndexLoadingConfig.READ_MODE_KEY)));
+    }
+    String remoteDir = segmentDirectoryConfigs.getProperty(REMOTE_DIR_KEY);
+    if (StringUtils.isEmpty(remoteDir)) {
+      LOGGER.warn("No remote dir configured, falling back to local segment directory for segment: {}",
+          segmentLoaderContext.getSegmentName());
+      return loadLocal(directory, segmentLoaderContext);
+    }
+    String segmentName = segmentLoaderContext.getSegmentName();
+    String rawTableName = TableNameBuilder.extractRawTableName(segmentLoaderContext.getTableConfig().getTableName());
+    URI remoteSegmentArchive =
+        URIUtils.getUri(remoteDir, rawTableName, URIUtils.encode(segmentName + SegmentArchive.FILE_EXTENSION));
+    PinotFS pinotFS = PinotFSFactory.create(remoteSegmentArchive.getScheme());
+    if (pinotFS.exists(remoteSegmentArchive)) {
+      return new LazyRemoteSegmentDirectory(directory, remoteSegmentArchive,
+          getOrCreateCache(segmentDirectoryConfigs, segmentLoaderContext));
+    }
+    URI remoteSegmentDir = URIUtils.getUri(remoteDir, rawTableName, URIUtils.encode(segmentName));
+    URI remoteMetadataFile = URIUtils.getUri(remoteSegmentDir.toString(), SegmentDirectoryPaths.V3_SUBDIRECTORY_NAME,
+        V1Constants.MetadataKeys.METADATA_FILE_NAME);
+    if (pinotFS.exists(remoteMetadataFile)) {
+      return new LazyRemoteSegmentDirectory(directory, remoteSegmentDir,
+          getOrCreateCache(segmentDirectoryConfigs, segmentLoaderContext));
+    }
+    LOGGER.info("Segment: {} does not exist in remote dir: {}, falling back to local segment directory", segmentName,
+        remoteDir);
+    return loadLocal(directory, segmentLoaderContext);
+  }
+
+  private static boolean isCompleteLocally(File indexDir) {
+    return new File(new File(indexDir, SegmentDirectoryPaths.V3_SUBDIRECTORY_NAME), V1Constants.INDEX_FILE_NAME)
+        .exists();
+  }
+
+  private static SegmentDirectory loadLocal(File indexDir, SegmentDirectoryLoaderContext segmentLoaderContext)
+      throws Exception {
+    if (!indexDir.exists()) {
+      return new SegmentLocalFSDirectory(indexDir);
+    }
+    return new SegmentLocalFSDirectory(indexDir, segmentLoaderContext, ReadMode.valueOf(
+        segmentLoaderContext.getSegmentDirectoryConfigs().getProperty(IndexLoadingConfig.READ_MODE_KEY)));
+  }
+
+  @VisibleForTesting
+  static IndexBufferCache getOrCreateCache(PinotConfiguration segmentDirectoryConfigs,
+      SegmentDirectoryLoaderContext segmentLoaderContext)
+      throws IOException {
+    IndexBufferCache cache = _cache;
+    if (cache != null) {
+      return cache;
+    }
+    synchronized (LazyRemoteSegmentDirectoryLoader.class) {
+      if (_cache == null) {
+        String cacheDir = segmentDirectoryConfigs.getProperty(CACHE_DIR_KEY);
+        File cacheDirFile = StringUtils.isNotEmpty(cacheDir) ? new File(cacheDir)
+            : new File(new File(segmentLoaderContext.getTableDataDir()).getParentFile(), DEFAULT_CACHE_DIR_NAME);
+        long maxSizeBytes =
+            DataSizeUtils.toBytes(segmentDirectoryConfigs.getProperty(CACHE_MAX_SIZE_KEY, DEFAULT_CACHE_MAX_SIZE));
+        _cache = new IndexBufferCache(cacheDirFile, maxSizeBytes);
+      }
+      return _cache;
+    }
+  }
+
+  @Override
+  public void delete(SegmentDirectoryLoaderContext segmentLoaderContext)
+      throws Exception {
+    // Only the local copy is deleted. The cached index buffers are evicted from the cache over time.
+    File indexDir = new File(segmentLoaderContext.getTableDataDir(), segmentLoaderContext.getSegmentName());
+    if (indexDir.exists()) {
+      FileUtils.deleteQuietly(indexDir);
+      LOGGER.info("Deleted segment directory {}", indexDir);
+    }
+  }
+}
@@ -36,7 +36,9 @@ import org.apache.pinot.segment.spi.index.StandardIndexes;
 import org.apache.pinot.segment.spi.memory.PinotDataBufferMemoryManager;
 import org.apache.pinot.segment.spi.partition.PartitionFunction;
 import org.apache.pinot.spi.config.table.IndexConfig;
+import org.apache.pinot.spi.config.table.IndexingConfig;
 import org.apache.pinot.spi.config.table.MultiColumnTextIndexConfig;
+import org.apache.pinot.spi.config.table.StarTreeIndexConfig;
 import org.apache.pinot.spi.config.table.TableConfig;
 import org.apache.pinot.spi.config.table.ingestion.AggregationConfig;
 import org.apache.pinot.spi.data.Schema;
@@ -71,6 +73,9 @@ public class RealtimeSegmentConfig {
   private final String _consumerDir;
   @Nullable
   private final MultiColumnTextIndexConfig _multiColIndexConfig;
+  @Nullable
+  private final List<StarTreeIndexConfig> _starTreeIndexConfigs;
+  private final long _starTreeRefreshIntervalMs;
 
   // TODO: Clean up this constructor. Most of these things can be extracted from tableConfig.
 
@@ -99,7 +104,8 @@ public class RealtimeSegmentConfig {
       @Nullable PartitionUpsertMetadataManager partitionUpsertMetadataManager,
       @Nullable PartitionDedupMetadataManager partitionDedupMetadataManager,
       String consumerDir,
-      @Nullable MultiColumnTextIndexConfig textIndexConfig) {
+      @Nullable MultiColumnTextIndexConfig textIndexConfig,
+      @Nullable List<StarTreeIndexConfig> starTreeIndexConfigs, long starTreeRefreshIntervalMs) {
     _tableNameWithType = tableNameWithType;
     _segmentName = segmentName;
     _streamName = streamName;
@@ -122,6 +128,8 @@ public class RealtimeSegmentConfig {
     _partitionDedupMetadataManager = partitionDedupMetadataManager;
     _consumerDir = consumerDir;
     _multiColIndexConfig = textIndexConfig;
+    _starTreeIndexConfigs = starTreeIndexConfigs;
+    _starTreeRefreshIntervalMs = starTreeRefreshIntervalMs;
   }
 
   public String getTableNameWithType() {
@@ -217,6 +225,22 @@ public class RealtimeSegmentConfig {
     return _multiColIndexConfig;
   }
 
+  /**
+   * Returns the configs of the star-trees to be maintained for the consuming segment, or {@code null} if star-tree is
+   * not enabled for the consuming segment.
+   */
+  @Nullable
+  public List<StarTreeIndexConfig> getStarTreeIndexConfigs() {
+    return _starTreeIndexConfigs;
+  }
+
+  /**
+   * Returns the min interval to rebuild the star-tree snapshots of the consuming segment when more rows are indexed.
+   */
+  public long getStarTreeRefreshIntervalMs() {
+    return _starTreeRefreshIntervalMs;
+  }
+
   public static class Builder {
     private String _tableNameWithType;
     private String _segmentName;
@@ -244,6 +268,8 @@ public class RealtimeSegmentConfig {
     private PartitionDedupMetadataManager _partitionDedupMetadataManager;
     private String _consumerDir;
     private MultiColumnTextIndexConfig _textIndexConfig;
+    private List<StarTreeIndexConfig> _starTreeIndexConfigs;
+    private long _starTreeRefreshIntervalMs = IndexingConfig.DEFAULT_CONSUMING_SEGMENT_STAR_TREE_REFRESH_INTERVAL_MS;
 
     public Builder() {
       _indexConfigByCol = new HashMap<>();
@@ -383,6 +409,16 @@ public class RealtimeSegmentConfig {
       return this;
     }
 
+    public Builder setStarTreeIndexConfigs(List<StarTreeIndexConfig> starTreeIndexConfigs) {
+      _starTreeIndexConfigs = starTreeIndexConfigs;
+      return this;
+    }
+
+    public Builder setStarTreeRefreshIntervalMs(long starTreeRefreshIntervalMs) {
+      _starTreeRefreshIntervalMs = starTreeRefreshIntervalMs;
+      return this;
+    }
+
     /**
      * Whether null handling is enabled by default. This value is only used if
      * {@link Schema#isEnableColumnBasedNullHandling()} is false.
@@ -426,7 +462,8 @@ public class RealtimeSegmentConfig {
           _capacity, _avgNumMultiValues, Collections.unmodifiableMap(indexConfigByCol), _segmentZKMetadata, _offHeap,
           _memoryManager, _statsHistory, _partitionColumn, _partitionFunction, _partitionId, _aggregateMetrics,
           _ingestionAggregationConfigs, _defaultNullHandlingEnabled, _partitionUpsertMetadataManager,
-          _partitionDedupMetadataManager, _consumerDir, _textIndexConfig);
+          _partitionDedupMetadataManager, _consumerDir, _textIndexConfig, _starTreeIndexConfigs,
+          _starTreeRefreshIntervalMs);
     }
   }
 }
@@ -157,10 +157,12 @@ public class RealtimeSegmentStatsHistory implements Serializable {
   }
 
   public static class ColumnStats implements Serializable {
-    private static final long serialVersionUID = 1L;  // Change this if a new field is added to this class
+    // Change this if a field is removed or changes type. Newly added fields are read as 0 from the existing history.
+    private static final long serialVersionUID = 1L;
 
     private int _avgColumnSize;     // Used only for string columns when building dictionary
     private int _cardinality;       // Used for all dictionary columns
+    private int _avgNumMultiValues; // Used only for multi-value columns when building forward index
 
     public int getCardinality() {
       return _cardinality;
@@ -178,9 +180,18 @@ public class RealtimeSegmentStatsHistory implements Serializable {
       _avgColumnSize = avgColumnSize;
     }
 
+    public int getAvgNumMultiValues() {
+      return _avgNumMultiValues;
+    }
+
+    public void setAvgNumMultiValues(int avgNumMultiValues) {
+      _avgNumMultiValues = avgNumMultiValues;
+    }
+
     @Override
     public String toString() {
-      return "cardinality=" + getCardinality() + ",avgSize=" + getAvgColumnSize();
+      return "cardinality=" + getCardinality() + ",avgSize=" + getAvgColumnSize() + ",avgNumMultiValues="
+          + getAvgNumMultiValues();
     }
   }
 
@@ -329,6 +340,54 @@ public class RealtimeSegmentStatsHistory implements Serializable {
     return DEFAULT_EST_AVG_COL_SIZE;
   }
 
+  /**
+   * Estimate the average number of values per row of a multi-value column based on the past segments of the table.
+   * Returns the given default value when there is no prior statistics for the column.
+   *
+   * @param columnName
+   * @param defaultValue
+   * @return estimated average number of values per row
+   */
+  public synchronized int getEstimatedAvgNumMultiValues(String columnName, int defaultValue) {
+    int numEntriesToScan = getNumEntriesToScan();
+    long totalNumMultiValues = 0;
+    int numValidValues = 0;
+    for (int i = 0; i < numEntriesToScan; i++) {
+      SegmentStats segmentStats = getSegmentStatsAt(i);
+      ColumnStats columnStats = segmentStats.getColumnStats(columnName);
+      // NOTE: Stats recorded before this field was added have value 0
+      if (columnStats != null && columnStats.getAvgNumMultiValues() > 0) {
+        totalNumMultiValues += columnStats.getAvgNumMultiValues();
+        numValidValues++;
+      }
+    }
+    if (numValidValues > 0) {
+      return (int) ((totalNumMultiValues + numValidValues - 1) / numValidValues);
+    }
+    return defaultValue;
+  }
+
+  /**
+   * Estimate the memory used per indexed row based on the past segments of the table, or -1 if there is no prior
+   * statistics.
+   */
+  public synchronized long getEstimatedMemoryBytesPerRow() {
+    int numEntriesToScan = getNumEntriesToScan();
+    long totalMemUsedBytes = 0;
+    long totalNumRowsIndexed = 0;
+    for (int i = 0; i < numEntriesToScan; i++) {
+      SegmentStats segmentStats = getSegmentStatsAt(i);
+      if (segmentStats.getMemUsedBytes() > 0 && segmentStats.getNumRowsIndexed() > 0) {
+        totalMemUsedBytes += segmentStats.getMemUsedBytes();
+        totalNumRowsIndexed += segmentStats.getNumRowsIndexed();
+      }
+    }
+    if (totalNumRowsIndexed > 0) {
+      return Math.max(totalMemUsedBytes / totalNumRowsIndexed, 1);
+    }
+    return -1;
+  }
+
   public synchronized int getEstimatedRowsToIndex() {
     int numEntriesToScan = getNumEntriesToScan();
     if (numEntriesToScan == 0) {
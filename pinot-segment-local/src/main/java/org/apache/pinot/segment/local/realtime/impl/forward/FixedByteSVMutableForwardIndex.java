@@ -117,6 +117,13 @@ public class FixedByteSVMutableForwardIndex implements MutableForwardIndex {
     return _valueSizeInBytes;
   }
 
+  /**
+   * Returns the number of bytes allocated for the rows beyond the given number of rows, which are not used.
+   */
+  public long getNumUnusedBytes(int numRows) {
+    return Math.max((long) _capacityInRows - numRows, 0) * _valueSizeInBytes;
+  }
+
   @Override
   public int getDictId(int docId) {
     int bufferId = getBufferId(docId);
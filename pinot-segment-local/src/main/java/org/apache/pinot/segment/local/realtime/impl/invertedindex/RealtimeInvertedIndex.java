@@ -31,11 +31,20 @@ import org.roaringbitmap.buffer.MutableRoaringBitmap;
  * <p>This class is thread-safe for single writer multiple readers.
  */
 public class RealtimeInvertedIndex implements MutableInvertedIndex {
-  private final List<ThreadSafeMutableRoaringBitmap> _bitmaps = new ArrayList<>();
+  private final List<ThreadSafeMutableRoaringBitmap> _bitmaps;
   private final ReentrantReadWriteLock.ReadLock _readLock;
   private final ReentrantReadWriteLock.WriteLock _writeLock;
 
   public RealtimeInvertedIndex() {
+    this(10);
+  }
+
+  /**
+   * Creates the inverted index with the bitmap list pre-sized to the estimated cardinality, so that the list does not
+   * need to be grown while consuming.
+   */
+  public RealtimeInvertedIndex(int estimatedCardinality) {
+    _bitmaps = new ArrayList<>(estimatedCardinality);
     ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
     _readLock = readWriteLock.readLock();
     _writeLock = readWriteLock.writeLock();
@@ -0,0 +1,677 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.realtime.impl.startree;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.apache.pinot.common.request.context.ExpressionContext;
+import org.apache.pinot.segment.local.aggregator.ValueAggregator;
+import org.apache.pinot.segment.local.aggregator.ValueAggregatorFactory;
+import org.apache.pinot.segment.local.startree.OnHeapStarTree;
+import org.apache.pinot.segment.local.startree.StarTreeBuilderUtils;
+import org.apache.pinot.segment.local.startree.StarTreeBuilderUtils.TreeNode;
+import org.apache.pinot.segment.local.startree.v2.builder.StarTreeV2BuilderConfig;
+import org.apache.pinot.segment.local.startree.v2.store.StarTreeDataSource;
+import org.apache.pinot.segment.spi.AggregationFunctionType;
+import org.apache.pinot.segment.spi.datasource.DataSource;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
+import org.apache.pinot.segment.spi.index.reader.ForwardIndexReader;
+import org.apache.pinot.segment.spi.index.reader.ForwardIndexReaderContext;
+import org.apache.pinot.segment.spi.index.startree.AggregationFunctionColumnPair;
+import org.apache.pinot.segment.spi.index.startree.AggregationSpec;
+import org.apache.pinot.segment.spi.index.startree.StarTree;
+import org.apache.pinot.segment.spi.index.startree.StarTreeNode;
+import org.apache.pinot.segment.spi.index.startree.StarTreeV2;
+import org.apache.pinot.segment.spi.index.startree.StarTreeV2Constants;
+import org.apache.pinot.segment.spi.index.startree.StarTreeV2Metadata;
+import org.apache.pinot.spi.data.FieldSpec;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.MetricFieldSpec;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.utils.FixedIntArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The {@code MutableStarTreeIndex} maintains a star-tree for the consuming segment with the same
+ * {@link StarTreeV2BuilderConfig} as the star-trees built for the committed segments.
+ * <p>The rows are pre-aggregated on the fly into one record per unique combination of the dimension dictionary ids
+ * (the dictionary ids of the mutable dictionaries never change once assigned). When queried, an on-heap
+ * {@link StarTreeV2} snapshot is built from the pre-aggregated records with the same algorithm as the
+ * {@code OnHeapSingleTreeBuilder}. The cost of building the snapshot is proportional to the number of unique
+ * dimension combinations instead of the number of rows.
+ * <p>The snapshot is built in the background instead of on the query thread. When more rows are indexed after the
+ * snapshot is built, a new snapshot is scheduled if the refresh interval has elapsed since the last one was built, so
+ * that the snapshot is not rebuilt for almost every query under continuous ingestion. A snapshot missing the most
+ * recently indexed rows is only returned when the caller allows a stale snapshot, otherwise the consuming segment
+ * should be scanned.
+ * <p>The pre-aggregation is stopped when it does not reduce the number of records by at least
+ * {@link #MIN_REDUCTION_FACTOR}, in which case scanning the consuming segment is cheaper than building the snapshot.
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class MutableStarTreeIndex {
+  private static final Logger LOGGER = LoggerFactory.getLogger(MutableStarTreeIndex.class);
+
+  // Shared by all the consuming segments to build the snapshots in the background
+  private static final ExecutorService SNAPSHOT_BUILDER_EXECUTOR = Executors.newFixedThreadPool(
+      Math.max(Runtime.getRuntime().availableProcessors() / 4, 1),
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("consuming-star-tree-snapshot-builder-%d").build());
+
+  // Check the reduction of the pre-aggregation every time this number of rows are indexed
+  static final int REDUCTION_CHECK_INTERVAL = 10_000;
+  static final int MIN_REDUCTION_FACTOR = 2;
+
+  private final StarTreeV2BuilderConfig _builderConfig;
+  private final List<String> _dimensionsSplitOrder;
+  private final int _numDimensions;
+  private final FieldSpec[] _dimensionFieldSpecs;
+  private final Dictionary[] _dictionaries;
+  private final Set<Integer> _skipStarNodeCreationForDimensions;
+  private final int _maxLeafRecords;
+
+  private final int _numMetrics;
+  // Name of the function-column pairs
+  private final String[] _metrics;
+  // Column in the function-column pairs, null for COUNT aggregation function
+  private final String[] _metricColumns;
+  private final ValueAggregator[] _valueAggregators;
+
+  // Pre-aggregated metrics keyed by the dimension dictionary ids, guarded by this
+  private final Map<FixedIntArray, Object[]> _records = new HashMap<>();
+  private volatile int _numRowsIndexed;
+  private volatile boolean _disabled;
+
+  private final long _refreshIntervalMs;
+  private final Executor _snapshotBuilderExecutor;
+  // Only build one snapshot at a time
+  private final AtomicBoolean _snapshotBuildScheduled = new AtomicBoolean();
+  private volatile Snapshot _snapshot;
+
+  /**
+   * Constructor for the mutable star-tree index.
+   *
+   * @param builderConfig Star-tree builder config
+   * @param dimensionFieldSpecs Field specs of the dimensions in the split order
+   * @param dictionaries Mutable dictionaries of the dimensions in the split order
+   * @param refreshIntervalMs Min interval to rebuild the snapshot when more rows are indexed, 0 to always rebuild
+   */
+  public MutableStarTreeIndex(StarTreeV2BuilderConfig builderConfig, FieldSpec[] dimensionFieldSpecs,
+      Dictionary[] dictionaries, long refreshIntervalMs) {
+    this(builderConfig, dimensionFieldSpecs, dictionaries, refreshIntervalMs, SNAPSHOT_BUILDER_EXECUTOR);
+  }
+
+  @VisibleForTesting
+  MutableStarTreeIndex(StarTreeV2BuilderConfig builderConfig, FieldSpec[] dimensionFieldSpecs,
+      Dictionary[] dictionaries, long refreshIntervalMs, Executor snapshotBuilderExecutor) {
+    _builderConfig = builderConfig;
+    _dimensionsSplitOrder = builderConfig.getDimensionsSplitOrder();
+    _numDimensions = _dimensionsSplitOrder.size();
+    Preconditions.checkArgument(dimensionFieldSpecs.length == _numDimensions && dictionaries.length == _numDimensions,
+        "Field specs and dictionaries must match the dimensions split order: %s", _dimensionsSplitOrder);
+    _dimensionFieldSpecs = dimensionFieldSpecs;
+    _dictionaries = dictionaries;
+    _skipStarNodeCreationForDimensions = new HashSet<>();
+    Set<String> skipStarNodeCreationForDimensions = builderConfig.getSkipStarNodeCreationForDimensions();
+    for (int i = 0; i < _numDimensions; i++) {
+      if (skipStarNodeCreationForDimensions.contains(_dimensionsSplitOrder.get(i))) {
+        _skipStarNodeCreationForDimensions.add(i);
+      }
+    }
+    _maxLeafRecords = builderConfig.getMaxLeafRecords();
+    _refreshIntervalMs = refreshIntervalMs;
+    _snapshotBuilderExecutor = snapshotBuilderExecutor;
+
+    Map<AggregationFunctionColumnPair, AggregationSpec> aggregationSpecs = builderConfig.getAggregationSpecs();
+    _numMetrics = aggregationSpecs.size();
+    _metrics = new String[_numMetrics];
+    _metricColumns = new String[_numMetrics];
+    _valueAggregators = new ValueAggregator[_numMetrics];
+    int index = 0;
+    for (Map.Entry<AggregationFunctionColumnPair, AggregationSpec> entry : aggregationSpecs.entrySet()) {
+      AggregationFunctionColumnPair functionColumnPair = entry.getKey();
+      _metrics[index] = functionColumnPair.toColumnName();
+      List<ExpressionContext> arguments = StarTreeBuilderUtils.expressionContextFromFunctionParameters(
+          functionColumnPair.getFunctionType(), entry.getValue().getFunctionParameters());
+      _valueAggregators[index] =
+          ValueAggregatorFactory.getValueAggregator(functionColumnPair.getFunctionType(), arguments);
+      // Ignore the column for COUNT aggregation function
+      if (_valueAggregators[index].getAggregationType() != AggregationFunctionType.COUNT) {
+        _metricColumns[index] = functionColumnPair.getColumn();
+      }
+      index++;
+    }
+  }
+
+  public List<String> getDimensionsSplitOrder() {
+    return _dimensionsSplitOrder;
+  }
+
+  /**
+   * Returns the columns (excluding the dimensions) read from the rows, null for COUNT aggregation function.
+   */
+  public String[] getMetricColumns() {
+    return _metricColumns;
+  }
+
+  public boolean isDisabled() {
+    return _disabled;
+  }
+
+  public int getNumRecords() {
+    synchronized (this) {
+      return _records.size();
+    }
+  }
+
+  /**
+   * Pre-aggregates a row into the star-tree.
+   *
+   * @param dictIds Dictionary ids of the dimensions in the split order, must not be modified after the call
+   * @param row Row to read the metric columns from
+   */
+  public synchronized void index(int[] dictIds, GenericRow row) {
+    if (_disabled) {
+      return;
+    }
+    FixedIntArray key = new FixedIntArray(dictIds);
+    Object[] metrics = _records.get(key);
+    if (metrics == null) {
+      metrics = new Object[_numMetrics];
+      for (int i = 0; i < _numMetrics; i++) {
+        String metricColumn = _metricColumns[i];
+        if (metricColumn != null) {
+          metrics[i] = _valueAggregators[i].getInitialAggregatedValue(row.getValue(metricColumn));
+        } else {
+          metrics[i] = 1L;
+        }
+      }
+      _records.put(key, metrics);
+    } else {
+      for (int i = 0; i < _numMetrics; i++) {
+        String metricColumn = _metricColumns[i];
+        if (metricColumn != null) {
+          metrics[i] = _valueAggregators[i].applyRawValue(metrics[i], row.getValue(metricColumn));
+        } else {
+          metrics[i] = ((long) metrics[i]) + 1;
+        }
+      }
+    }
+    int numRowsIndexed = _numRowsIndexed + 1;
+    _numRowsIndexed = numRowsIndexed;
+    if (numRowsIndexed % REDUCTION_CHECK_INTERVAL == 0
+        && (long) _records.size() * MIN_REDUCTION_FACTOR > numRowsIndexed) {
+      _disabled = true;
+      _records.clear();
+      _snapshot = null;
+    }
+  }
+
+  /**
+   * Returns a star-tree snapshot covering all the rows indexed so far, or {@code null} if the star-tree is disabled, or
+   * no such snapshot is built yet.
+   */
+  @Nullable
+  public StarTreeV2 getStarTree() {
+    return getStarTree(false);
+  }
+
+  /**
+   * Returns a star-tree snapshot, or {@code null} if the star-tree is disabled or no snapshot is built yet. Schedules a
+   * new snapshot to be built in the background when more rows are indexed since the current one was built.
+   *
+   * @param allowStale Whether to return a snapshot that does not cover the most recently indexed rows
+   */
+  @Nullable
+  public StarTreeV2 getStarTree(boolean allowStale) {
+    if (_disabled) {
+      return null;
+    }
+    int numRowsIndexed = _numRowsIndexed;
+    Snapshot snapshot = _snapshot;
+    if (snapshot != null && snapshot._numRowsIndexed >= numRowsIndexed) {
+      return snapshot;
+    }
+    if (snapshot == null || System.currentTimeMillis() - snapshot._buildTimeMs >= _refreshIntervalMs) {
+      scheduleSnapshotBuild();
+      // The snapshot might be built already
+      snapshot = _snapshot;
+      if (snapshot != null && snapshot._numRowsIndexed >= numRowsIndexed) {
+        return snapshot;
+      }
+    }
+    return allowStale ? snapshot : null;
+  }
+
+  private void scheduleSnapshotBuild() {
+    if (!_snapshotBuildScheduled.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      _snapshotBuilderExecutor.execute(() -> {
+        try {
+          Snapshot snapshot = buildSnapshot();
+          if (snapshot != null) {
+            _snapshot = snapshot;
+          }
+        } catch (Exception e) {
+          LOGGER.error("Caught exception while building star-tree snapshot for dimensions: {}", _dimensionsSplitOrder,
+              e);
+        } finally {
+          _snapshotBuildScheduled.set(false);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      _snapshotBuildScheduled.set(false);
+      LOGGER.warn("Failed to schedule star-tree snapshot build for dimensions: {}", _dimensionsSplitOrder, e);
+    }
+  }
+
+  @Nullable
+  private Snapshot buildSnapshot() {
+    int numRowsIndexed;
+    long buildTimeMs;
+    Record[] records;
+    synchronized (this) {
+      if (_disabled || _records.isEmpty()) {
+        return null;
+      }
+      numRowsIndexed = _numRowsIndexed;
+      buildTimeMs = System.currentTimeMillis();
+      records = new Record[_records.size()];
+      int index = 0;
+      for (Map.Entry<FixedIntArray, Object[]> entry : _records.entrySet()) {
+        Object[] metrics = entry.getValue();
+        Object[] clonedMetrics = new Object[_numMetrics];
+        for (int i = 0; i < _numMetrics; i++) {
+          clonedMetrics[i] = _valueAggregators[i].cloneAggregatedValue(metrics[i]);
+        }
+        records[index++] = new Record(entry.getKey().elements(), clonedMetrics);
+      }
+    }
+    return new SnapshotBuilder(records).build(numRowsIndexed, buildTimeMs);
+  }
+
+  /**
+   * The {@code Record} class represents a pre-aggregated record with dimension dictionary Ids and aggregated values.
+   */
+  private static class Record {
+    final int[] _dimensions;
+    final Object[] _metrics;
+
+    Record(int[] dimensions, Object[] metrics) {
+      _dimensions = dimensions;
+      _metrics = metrics;
+    }
+  }
+
+  /**
+   * Builds the star-tree from the pre-aggregated records, which are unique on the dimensions. Follows the algorithm
+   * of the {@code BaseSingleTreeBuilder}.
+   */
+  private class SnapshotBuilder {
+    final List<Record> _starTreeRecords;
+    final TreeNode _rootNode = new TreeNode();
+
+    SnapshotBuilder(Record[] records) {
+      Arrays.sort(records, (o1, o2) -> compareDimensions(o1, o2, 0));
+      _starTreeRecords = new ArrayList<>(Arrays.asList(records));
+    }
+
+    Snapshot build(int numRowsIndexed, long buildTimeMs) {
+      constructStarTree(_rootNode, 0, _starTreeRecords.size());
+      createAggregatedDocs(_rootNode);
+
+      int numDocs = _starTreeRecords.size();
+      Map<String, DataSource> dataSourceMap = new HashMap<>();
+      for (int i = 0; i < _numDimensions; i++) {
+        int[] dictIds = new int[numDocs];
+        for (int docId = 0; docId < numDocs; docId++) {
+          dictIds[docId] = _starTreeRecords.get(docId)._dimensions[i];
+        }
+        dataSourceMap.put(_dimensionsSplitOrder.get(i),
+            new StarTreeDataSource(_dimensionFieldSpecs[i], numDocs, new DictIdForwardIndex(dictIds),
+                _dictionaries[i]));
+      }
+      for (int i = 0; i < _numMetrics; i++) {
+        ValueAggregator valueAggregator = _valueAggregators[i];
+        DataType valueType = valueAggregator.getAggregatedValueType();
+        Object[] values = new Object[numDocs];
+        for (int docId = 0; docId < numDocs; docId++) {
+          Object value = _starTreeRecords.get(docId)._metrics[i];
+          values[docId] = valueType == DataType.BYTES ? valueAggregator.serializeAggregatedValue(value) : value;
+        }
+        String metric = _metrics[i];
+        dataSourceMap.put(metric,
+            new StarTreeDataSource(new MetricFieldSpec(metric, valueType), numDocs,
+                new AggregatedValueForwardIndex(valueType, values), null));
+      }
+
+      PropertiesConfiguration metadataProperties = new PropertiesConfiguration();
+      _builderConfig.writeMetadata(metadataProperties, numDocs);
+      return new Snapshot(new OnHeapStarTree(_rootNode, _dimensionsSplitOrder),
+          new StarTreeV2Metadata(metadataProperties), dataSourceMap, numRowsIndexed, buildTimeMs);
+    }
+
+    void constructStarTree(TreeNode node, int startDocId, int endDocId) {
+      int childDimensionId = node._dimensionId + 1;
+      if (childDimensionId == _numDimensions) {
+        return;
+      }
+
+      // Construct all non-star children nodes
+      node._childDimensionId = childDimensionId;
+      Map<Integer, TreeNode> children = constructNonStarNodes(startDocId, endDocId, childDimensionId);
+      node._children = children;
+
+      // Construct star-node if required
+      if (!_skipStarNodeCreationForDimensions.contains(childDimensionId) && children.size() > 1) {
+        children.put(StarTreeNode.ALL, constructStarNode(startDocId, endDocId, childDimensionId));
+      }
+
+      // Further split on child nodes if required
+      for (TreeNode child : children.values()) {
+        if (child._endDocId - child._startDocId > _maxLeafRecords) {
+          constructStarTree(child, child._startDocId, child._endDocId);
+        }
+      }
+    }
+
+    Map<Integer, TreeNode> constructNonStarNodes(int startDocId, int endDocId, int dimensionId) {
+      Map<Integer, TreeNode> nodes = new HashMap<>();
+      int nodeStartDocId = startDocId;
+      int nodeDimensionValue = _starTreeRecords.get(startDocId)._dimensions[dimensionId];
+      for (int i = startDocId + 1; i < endDocId; i++) {
+        int dimensionValue = _starTreeRecords.get(i)._dimensions[dimensionId];
+        if (dimensionValue != nodeDimensionValue) {
+          nodes.put(nodeDimensionValue, newNode(dimensionId, nodeDimensionValue, nodeStartDocId, i));
+          nodeStartDocId = i;
+          nodeDimensionValue = dimensionValue;
+        }
+      }
+      nodes.put(nodeDimensionValue, newNode(dimensionId, nodeDimensionValue, nodeStartDocId, endDocId));
+      return nodes;
+    }
+
+    TreeNode constructStarNode(int startDocId, int endDocId, int dimensionId) {
+      int numDocs = endDocId - startDocId;
+      Record[] records = _starTreeRecords.subList(startDocId, endDocId).toArray(new Record[numDocs]);
+      Arrays.sort(records, (o1, o2) -> compareDimensions(o1, o2, dimensionId + 1));
+      int starNodeStartDocId = _starTreeRecords.size();
+      Record aggregatedRecord = null;
+      for (Record record : records) {
+        if (aggregatedRecord != null && compareDimensions(aggregatedRecord, record, dimensionId + 1) == 0) {
+          mergeRecord(aggregatedRecord, record);
+        } else {
+          if (aggregatedRecord != null) {
+            _starTreeRecords.add(aggregatedRecord);
+          }
+          aggregatedRecord = copyRecord(record);
+          aggregatedRecord._dimensions[dimensionId] = StarTreeV2Constants.STAR_IN_FORWARD_INDEX;
+        }
+      }
+      _starTreeRecords.add(aggregatedRecord);
+      return newNode(dimensionId, StarTreeNode.ALL, starNodeStartDocId, _starTreeRecords.size());
+    }
+
+    Record createAggregatedDocs(TreeNode node) {
+      Record aggregatedRecord = null;
+      if (node._children == null) {
+        // For leaf node
+
+        if (node._startDocId == node._endDocId - 1) {
+          // If it has only one document, use it as the aggregated document
+          aggregatedRecord = _starTreeRecords.get(node._startDocId);
+          node._aggregatedDocId = node._startDocId;
+        } else {
+          // If it has multiple documents, aggregate all of them
+          aggregatedRecord = copyRecord(_starTreeRecords.get(node._startDocId));
+          for (int i = node._startDocId + 1; i < node._endDocId; i++) {
+            mergeRecord(aggregatedRecord, _starTreeRecords.get(i));
+          }
+          appendAggregatedDoc(node, aggregatedRecord);
+        }
+      } else {
+        // For non-leaf node
+
+        TreeNode starNode = node._children.get(StarTreeNode.ALL);
+        if (starNode != null) {
+          // If it has star child, use the star child aggregated document directly
+          for (TreeNode child : node._children.values()) {
+            if (child == starNode) {
+              aggregatedRecord = createAggregatedDocs(child);
+              node._aggregatedDocId = child._aggregatedDocId;
+            } else {
+              createAggregatedDocs(child);
+            }
+          }
+        } else {
+          // If no star child exists, aggregate all aggregated documents from non-star children
+          for (TreeNode child : node._children.values()) {
+            Record childAggregatedRecord = createAggregatedDocs(child);
+            if (aggregatedRecord == null) {
+              aggregatedRecord = copyRecord(childAggregatedRecord);
+            } else {
+              mergeRecord(aggregatedRecord, childAggregatedRecord);
+            }
+          }
+          appendAggregatedDoc(node, aggregatedRecord);
+        }
+      }
+      return aggregatedRecord;
+    }
+
+    void appendAggregatedDoc(TreeNode node, Record aggregatedRecord) {
+      for (int i = node._dimensionId + 1; i < _numDimensions; i++) {
+        aggregatedRecord._dimensions[i] = StarTreeV2Constants.STAR_IN_FORWARD_INDEX;
+      }
+      node._aggregatedDocId = _starTreeRecords.size();
+      _starTreeRecords.add(aggregatedRecord);
+    }
+
+    TreeNode newNode(int dimensionId, int dimensionValue, int startDocId, int endDocId) {
+      TreeNode node = new TreeNode();
+      node._dimensionId = dimensionId;
+      node._dimensionValue = dimensionValue;
+      node._startDocId = startDocId;
+      node._endDocId = endDocId;
+      return node;
+    }
+
+    Record copyRecord(Record record) {
+      Object[] metrics = new Object[_numMetrics];
+      for (int i = 0; i < _numMetrics; i++) {
+        metrics[i] = _valueAggregators[i].cloneAggregatedValue(record._metrics[i]);
+      }
+      return new Record(Arrays.copyOf(record._dimensions, _numDimensions), metrics);
+    }
+
+    void mergeRecord(Record aggregatedRecord, Record record) {
+      for (int i = 0; i < _numMetrics; i++) {
+        aggregatedRecord._metrics[i] =
+            _valueAggregators[i].applyAggregatedValue(aggregatedRecord._metrics[i], record._metrics[i]);
+      }
+    }
+
+    int compareDimensions(Record o1, Record o2, int fromDimensionId) {
+      for (int i = fromDimensionId; i < _numDimensions; i++) {
+        if (o1._dimensions[i] != o2._dimensions[i]) {
+          return Integer.compare(o1._dimensions[i], o2._dimensions[i]);
+        }
+      }
+      return 0;
+    }
+  }
+
+  /**
+   * Immutable star-tree snapshot of the pre-aggregated records.
+   */
+  private static class Snapshot implements StarTreeV2 {
+    final StarTree _starTree;
+    final StarTreeV2Metadata _metadata;
+    final Map<String, DataSource> _dataSourceMap;
+    final int _numRowsIndexed;
+    final long _buildTimeMs;
+
+    Snapshot(StarTree starTree, StarTreeV2Metadata metadata, Map<String, DataSource> dataSourceMap,
+        int numRowsIndexed, long buildTimeMs) {
+      _starTree = starTree;
+      _metadata = metadata;
+      _dataSourceMap = dataSourceMap;
+      _numRowsIndexed = numRowsIndexed;
+      _buildTimeMs = buildTimeMs;
+    }
+
+    @Override
+    public StarTree getStarTree() {
+      return _starTree;
+    }
+
+    @Override
+    public StarTreeV2Metadata getMetadata() {
+      return _metadata;
+    }
+
+    @Override
+    public DataSource getDataSource(String columnName) {
+      return _dataSourceMap.get(columnName);
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+      // All the indexes are on-heap, and the dictionaries are managed by the consuming segment
+    }
+  }
+
+  /**
+   * On-heap forward index for the dimension dictionary ids of the star-tree records.
+   */
+  private static class DictIdForwardIndex implements ForwardIndexReader<ForwardIndexReaderContext> {
+    private final int[] _dictIds;
+
+    DictIdForwardIndex(int[] dictIds) {
+      _dictIds = dictIds;
+    }
+
+    @Override
+    public boolean isDictionaryEncoded() {
+      return true;
+    }
+
+    @Override
+    public boolean isSingleValue() {
+      return true;
+    }
+
+    @Override
+    public DataType getStoredType() {
+      return DataType.INT;
+    }
+
+    @Override
+    public int getDictId(int docId, ForwardIndexReaderContext context) {
+      return _dictIds[docId];
+    }
+
+    @Override
+    public void readDictIds(int[] docIds, int length, int[] dictIdBuffer, ForwardIndexReaderContext context) {
+      for (int i = 0; i < length; i++) {
+        dictIdBuffer[i] = _dictIds[docIds[i]];
+      }
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  /**
+   * On-heap forward index for the aggregated values of the star-tree records. Values of BYTES type are serialized.
+   */
+  private static class AggregatedValueForwardIndex implements ForwardIndexReader<ForwardIndexReaderContext> {
+    private final DataType _storedType;
+    private final Object[] _values;
+
+    AggregatedValueForwardIndex(DataType storedType, Object[] values) {
+      _storedType = storedType;
+      _values = values;
+    }
+
+    @Override
+    public boolean isDictionaryEncoded() {
+      return false;
+    }
+
+    @Override
+    public boolean isSingleValue() {
+      return true;
+    }
+
+    @Override
+    public DataType getStoredType() {
+      return _storedType;
+    }
+
+    @Override
+    public int getInt(int docId, ForwardIndexReaderContext context) {
+      return ((Number) _values[docId]).intValue();
+    }
+
+    @Override
+    public long getLong(int docId, ForwardIndexReaderContext context) {
+      return ((Number) _values[docId]).longValue();
+    }
+
+    @Override
+    public float getFloat(int docId, ForwardIndexReaderContext context) {
+      return ((Number) _values[docId]).floatValue();
+    }
+
+    @Override
+    public double getDouble(int docId, ForwardIndexReaderContext context) {
+      return ((Number) _values[docId]).doubleValue();
+    }
+
+    @Override
+    public byte[] getBytes(int docId, ForwardIndexReaderContext context) {
+      return (byte[]) _values[docId];
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -811,12 +811,12 @@ public abstract class BaseSegmentCreator implements SegmentCreator {
   }
 
   /**
-   * Writes the individual column index files to disk.
+   * Writes the individual column index files to disk. Columns are sealed in parallel when multiple index creation
+   * threads are configured.
    */
   private void flushColIndexes() throws Exception {
-    for (ColumnIndexCreators colIndexes : _colIndexes.values()) {
-      colIndexes.seal();
-    }
+    ColumnTaskExecutor.execute(_colIndexes.keySet(), _config.getNumIndexCreationThreads(),
+        column -> _colIndexes.get(column).seal());
     writeMetadata();
   }
 
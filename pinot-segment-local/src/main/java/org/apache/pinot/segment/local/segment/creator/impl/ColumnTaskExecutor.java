@@ -0,0 +1,80 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.creator.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * Runs a per-column task of the segment creation for all the columns, in parallel when multiple threads are configured
+ * via {@link org.apache.pinot.segment.spi.creator.SegmentGeneratorConfig#getNumIndexCreationThreads()}. The task for
+ * different columns must not share mutable state.
+ */
+class ColumnTaskExecutor {
+  private ColumnTaskExecutor() {
+  }
+
+  interface ColumnTask {
+    void run(String column)
+        throws Exception;
+  }
+
+  static void execute(Collection<String> columns, int numThreads, ColumnTask task)
+      throws Exception {
+    numThreads = Math.min(numThreads, columns.size());
+    if (numThreads <= 1) {
+      for (String column : columns) {
+        task.run(column);
+      }
+      return;
+    }
+
+    ExecutorService executorService = Executors.newFixedThreadPool(numThreads,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("segment-index-creation-%d").build());
+    try {
+      List<Future<?>> futures = new ArrayList<>(columns.size());
+      for (String column : columns) {
+        futures.add(executorService.submit(() -> {
+          task.run(column);
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof Exception) {
+            throw (Exception) cause;
+          }
+          throw new RuntimeException("Caught error while creating the column indexes", cause);
+        }
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+}
@@ -19,9 +19,11 @@
 package org.apache.pinot.segment.local.segment.creator.impl;
 
 import com.fasterxml.jackson.core.JsonParseException;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Maps;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -36,6 +38,7 @@ import org.apache.pinot.segment.spi.creator.SegmentGeneratorConfig;
 import org.apache.pinot.segment.spi.index.IndexCreator;
 import org.apache.pinot.segment.spi.index.creator.SegmentIndexCreationInfo;
 import org.apache.pinot.segment.spi.index.mutable.ThreadSafeMutableRoaringBitmap;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
 import org.apache.pinot.spi.config.instance.InstanceType;
 import org.apache.pinot.spi.data.FieldSpec;
 import org.apache.pinot.spi.data.FieldSpec.FieldType;
@@ -143,12 +146,13 @@ public class SegmentColumnarIndexCreator extends BaseSegmentCreator {
     try (PinotSegmentColumnReader colReader = new PinotSegmentColumnReader(segment, columnName)) {
       FieldSpec fieldSpec = _schema.getFieldSpecFor(columnName);
       ColumnIndexCreators colIndexes = _colIndexes.get(columnName);
+      ColumnValueIndexer columnValueIndexer = getColumnValueIndexer(colReader, columnName, fieldSpec, colIndexes);
       if (sortedDocIds != null) {
         int onDiskDocId = 0;
         for (int docId : sortedDocIds) {
           // If validDodIds are provided, only index column if it's a valid doc
           if (validDocIds == null || validDocIds.contains(docId)) {
-            indexColumnValue(colReader, columnName, fieldSpec, colIndexes, docId, onDiskDocId);
+            columnValueIndexer.index(docId, onDiskDocId);
             onDiskDocId++;
           }
         }
@@ -157,7 +161,7 @@ public class SegmentColumnarIndexCreator extends BaseSegmentCreator {
         for (int docId = 0; docId < numDocs; docId++) {
           // If validDodIds are provided, only index column if it's a valid doc
           if (validDocIds == null || validDocIds.contains(docId)) {
-            indexColumnValue(colReader, columnName, fieldSpec, colIndexes, docId, onDiskDocId);
+            columnValueIndexer.index(docId, onDiskDocId);
             onDiskDocId++;
           }
         }
@@ -213,6 +217,152 @@ public class SegmentColumnarIndexCreator extends BaseSegmentCreator {
     }
   }
 
+  /**
+   * Returns the indexer to index the values of a column from an existing segment.
+   * <ul>
+   *   <li>
+   *     For dictionary-encoded single-value column, the primitive value is read from the source dictionary and the
+   *     new dictionary id is looked up only once per source dictionary id (see {@link DictIdRemapper}).
+   *   </li>
+   *   <li>
+   *     For raw fixed-width single-value column, the primitive values are read from the forward index.
+   *   </li>
+   * </ul>
+   * The values are passed to the index creators through the primitive add methods, without boxing. Other columns are
+   * indexed value by value.
+   */
+  private ColumnValueIndexer getColumnValueIndexer(PinotSegmentColumnReader colReader, String columnName,
+      FieldSpec fieldSpec, ColumnIndexCreators colIndexes) {
+    if (fieldSpec.isSingleValueField()) {
+      List<IndexCreator> creatorsByIndex = colIndexes.getIndexCreators();
+      NullValueVectorCreator nullVec = colIndexes.getNullValueVectorCreator();
+      SegmentDictionaryCreator dictionaryCreator = colIndexes.getDictionaryCreator();
+      Dictionary dictionary = colReader.getDictionary();
+      if (dictionary != null) {
+        DictIdRemapper dictIdRemapper = new DictIdRemapper(dictionary, dictionaryCreator);
+        switch (dictionary.getValueType()) {
+          case INT:
+            return (sourceDocId, onDiskDocPos) -> {
+              int sourceDictId = colReader.getDictId(sourceDocId);
+              int value = dictionary.getIntValue(sourceDictId);
+              int dictId = dictIdRemapper.getDictId(sourceDictId);
+              for (IndexCreator creator : creatorsByIndex) {
+                creator.addInt(value, dictId);
+              }
+              setNullIfNeeded(colReader, nullVec, sourceDocId, onDiskDocPos);
+            };
+          case LONG:
+            return (sourceDocId, onDiskDocPos) -> {
+              int sourceDictId = colReader.getDictId(sourceDocId);
+              long value = dictionary.getLongValue(sourceDictId);
+              int dictId = dictIdRemapper.getDictId(sourceDictId);
+              for (IndexCreator creator : creatorsByIndex) {
+                creator.addLong(value, dictId);
+              }
+              setNullIfNeeded(colReader, nullVec, sourceDocId, onDiskDocPos);
+            };
+          case FLOAT:
+            return (sourceDocId, onDiskDocPos) -> {
+              int sourceDictId = colReader.getDictId(sourceDocId);
+              float value = dictionary.getFloatValue(sourceDictId);
+              int dictId = dictIdRemapper.getDictId(sourceDictId);
+              for (IndexCreator creator : creatorsByIndex) {
+                creator.addFloat(value, dictId);
+              }
+              setNullIfNeeded(colReader, nullVec, sourceDocId, onDiskDocPos);
+            };
+          case DOUBLE:
+            return (sourceDocId, onDiskDocPos) -> {
+              int sourceDictId = colReader.getDictId(sourceDocId);
+              double value = dictionary.getDoubleValue(sourceDictId);
+              int dictId = dictIdRemapper.getDictId(sourceDictId);
+              for (IndexCreator creator : creatorsByIndex) {
+                creator.addDouble(value, dictId);
+              }
+              setNullIfNeeded(colReader, nullVec, sourceDocId, onDiskDocPos);
+            };
+          case STRING:
+            return (sourceDocId, onDiskDocPos) -> {
+              int sourceDictId = colReader.getDictId(sourceDocId);
+              String value = dictionary.getStringValue(sourceDictId);
+              int dictId = dictIdRemapper.getDictId(sourceDictId);
+              for (IndexCreator creator : creatorsByIndex) {
+                creator.addString(value, dictId);
+              }
+              setNullIfNeeded(colReader, nullVec, sourceDocId, onDiskDocPos);
+            };
+          case BYTES:
+            return (sourceDocId, onDiskDocPos) -> {
+              int sourceDictId = colReader.getDictId(sourceDocId);
+              byte[] value = dictionary.getBytesValue(sourceDictId);
+              int dictId = dictIdRemapper.getDictId(sourceDictId);
+              for (IndexCreator creator : creatorsByIndex) {
+                creator.addBytes(value, dictId);
+              }
+              setNullIfNeeded(colReader, nullVec, sourceDocId, onDiskDocPos);
+            };
+          default:
+            return (sourceDocId, onDiskDocPos) -> {
+              int sourceDictId = colReader.getDictId(sourceDocId);
+              Object value = dictionary.get(sourceDictId);
+              int dictId = dictIdRemapper.getDictId(sourceDictId);
+              for (IndexCreator creator : creatorsByIndex) {
+                creator.add(value, dictId);
+              }
+              setNullIfNeeded(colReader, nullVec, sourceDocId, onDiskDocPos);
+            };
+        }
+      }
+      if (dictionaryCreator == null) {
+        switch (colReader.getStoredType()) {
+          case INT:
+            return (sourceDocId, onDiskDocPos) -> {
+              int value = colReader.getInt(sourceDocId);
+              for (IndexCreator creator : creatorsByIndex) {
+                creator.addInt(value, -1);
+              }
+              setNullIfNeeded(colReader, nullVec, sourceDocId, onDiskDocPos);
+            };
+          case LONG:
+            return (sourceDocId, onDiskDocPos) -> {
+              long value = colReader.getLong(sourceDocId);
+              for (IndexCreator creator : creatorsByIndex) {
+                creator.addLong(value, -1);
+              }
+              setNullIfNeeded(colReader, nullVec, sourceDocId, onDiskDocPos);
+            };
+          case FLOAT:
+            return (sourceDocId, onDiskDocPos) -> {
+              float value = colReader.getFloat(sourceDocId);
+              for (IndexCreator creator : creatorsByIndex) {
+                creator.addFloat(value, -1);
+              }
+              setNullIfNeeded(colReader, nullVec, sourceDocId, onDiskDocPos);
+            };
+          case DOUBLE:
+            return (sourceDocId, onDiskDocPos) -> {
+              double value = colReader.getDouble(sourceDocId);
+              for (IndexCreator creator : creatorsByIndex) {
+                creator.addDouble(value, -1);
+              }
+              setNullIfNeeded(colReader, nullVec, sourceDocId, onDiskDocPos);
+            };
+          default:
+            break;
+        }
+      }
+    }
+    return (sourceDocId, onDiskDocPos) -> indexColumnValue(colReader, columnName, fieldSpec, colIndexes, sourceDocId,
+        onDiskDocPos);
+  }
+
+  private static void setNullIfNeeded(PinotSegmentColumnReader colReader, @Nullable NullValueVectorCreator nullVec,
+      int sourceDocId, int onDiskDocPos) {
+    if (nullVec != null && colReader.isNull(sourceDocId)) {
+      nullVec.setNull(onDiskDocPos);
+    }
+  }
+
   private void indexColumnValue(PinotSegmentColumnReader colReader,
       String columnName, FieldSpec fieldSpec,
       ColumnIndexCreators colIndexes, int sourceDocId, int onDiskDocPos)
@@ -255,4 +405,47 @@ public class SegmentColumnarIndexCreator extends BaseSegmentCreator {
       creator.add(values, dictId);
     }
   }
+
+  /**
+   * Maps the dictionary ids of the source segment to the dictionary ids of the new segment. The mapping is filled
+   * lazily, so that the value is looked up in the new dictionary only once per source dictionary id. Returns -1 when
+   * the column is not dictionary-encoded in the new segment.
+   */
+  @VisibleForTesting
+  static final class DictIdRemapper {
+    private static final int UNRESOLVED_DICT_ID = Integer.MIN_VALUE;
+
+    private final Dictionary _sourceDictionary;
+    private final SegmentDictionaryCreator _dictionaryCreator;
+    private final int[] _dictIds;
+
+    DictIdRemapper(Dictionary sourceDictionary, @Nullable SegmentDictionaryCreator dictionaryCreator) {
+      _sourceDictionary = sourceDictionary;
+      _dictionaryCreator = dictionaryCreator;
+      if (dictionaryCreator != null) {
+        _dictIds = new int[sourceDictionary.length()];
+        Arrays.fill(_dictIds, UNRESOLVED_DICT_ID);
+      } else {
+        _dictIds = null;
+      }
+    }
+
+    int getDictId(int sourceDictId) {
+      if (_dictIds == null) {
+        return -1;
+      }
+      int dictId = _dictIds[sourceDictId];
+      if (dictId == UNRESOLVED_DICT_ID) {
+        dictId = _dictionaryCreator.indexOfSV(_sourceDictionary.get(sourceDictId));
+        _dictIds[sourceDictId] = dictId;
+      }
+      return dictId;
+    }
+  }
+
+  @FunctionalInterface
+  private interface ColumnValueIndexer {
+    void index(int sourceDocId, int onDiskDocPos)
+        throws IOException;
+  }
 }
@@ -433,11 +433,10 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
       // Build the indexes
       LOGGER.info("Start building Index by column");
 
+      // Columns are indexed independently, in parallel when multiple index creation threads are configured
       TreeSet<String> columns = _dataSchema.getPhysicalColumnNames();
-
-      for (String col : columns) {
-        _indexCreator.indexColumn(col, sortedDocIds, indexSegment, validDocIds);
-      }
+      ColumnTaskExecutor.execute(columns, _config.getNumIndexCreationThreads(),
+          column -> _indexCreator.indexColumn(column, sortedDocIds, indexSegment, validDocIds));
     } catch (Exception e) {
       _indexCreator.close();
       throw e;
@@ -621,16 +620,17 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
 
       TreeSet<String> columns = _dataSchema.getPhysicalColumnNames();
       for (String columnName : columns) {
-        LOGGER.debug("Indexing column: {}", columnName);
-        ColumnReader columnReader = columnReaders.get(columnName);
-        if (columnReader == null) {
+        if (!columnReaders.containsKey(columnName)) {
           throw new IllegalStateException("No column reader found for column: " + columnName);
         }
-
-        // Index each column independently using true column-major approach
-        // This is similar to how buildByColumn works but uses ColumnReader instead of IndexSegment
-        _indexCreator.indexColumn(columnName, columnReader);
       }
+      // Index each column independently using true column-major approach, in parallel when multiple index creation
+      // threads are configured
+      // This is similar to how buildByColumn works but uses ColumnReader instead of IndexSegment
+      ColumnTaskExecutor.execute(columns, _config.getNumIndexCreationThreads(), columnName -> {
+        LOGGER.debug("Indexing column: {}", columnName);
+        _indexCreator.indexColumn(columnName, columnReaders.get(columnName));
+      });
 
       _totalIndexTimeNs = System.nanoTime() - indexStartTime;
 
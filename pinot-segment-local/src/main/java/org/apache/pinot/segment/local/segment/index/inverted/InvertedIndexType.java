@@ -210,6 +210,6 @@ public class InvertedIndexType
     if (!context.hasDictionary()) {
       return null;
     }
-    return new RealtimeInvertedIndex();
+    return new RealtimeInvertedIndex(Math.min(context.getEstimatedCardinality(), context.getCapacity()));
   }
 }
@@ -53,6 +53,8 @@ import org.apache.pinot.spi.utils.TimestampIndexUtils;
 public class IndexLoadingConfig {
   private static final int DEFAULT_REALTIME_AVG_MULTI_VALUE_COUNT = 2;
   public static final String READ_MODE_KEY = "readMode";
+  // Instance configs under this prefix are passed to the segment directory loader, e.g. to configure the loader
+  public static final String SEGMENT_DIRECTORY_CONFIG_PREFIX = "segment.directory";
 
   private final InstanceDataManagerConfig _instanceDataManagerConfig;
   private final TableConfig _tableConfig;
@@ -75,6 +77,7 @@ public class IndexLoadingConfig {
   private int _realtimeAvgMultiValueCount = DEFAULT_REALTIME_AVG_MULTI_VALUE_COUNT;
   private String _segmentStoreURI;
   private String _segmentDirectoryLoader;
+  private Map<String, Object> _instanceSegmentDirectoryConfigs = Map.of();
   private Map<String, Map<String, String>> _instanceTierConfigs;
 
   // Initialized by table config and schema
@@ -165,6 +168,10 @@ public class IndexLoadingConfig {
     }
     _segmentStoreURI = _instanceDataManagerConfig.getSegmentStoreUri();
     _segmentDirectoryLoader = _instanceDataManagerConfig.getSegmentDirectoryLoader();
+    PinotConfiguration instanceConfig = _instanceDataManagerConfig.getConfig();
+    if (instanceConfig != null) {
+      _instanceSegmentDirectoryConfigs = instanceConfig.subset(SEGMENT_DIRECTORY_CONFIG_PREFIX).toMap();
+    }
 
     Map<String, Map<String, String>> tierConfigs = _instanceDataManagerConfig.getTierConfigs();
     _instanceTierConfigs = tierConfigs != null ? tierConfigs : Map.of();
@@ -316,7 +323,7 @@ public class IndexLoadingConfig {
   }
 
   public PinotConfiguration getSegmentDirectoryConfigs() {
-    Map<String, Object> props = new HashMap<>();
+    Map<String, Object> props = new HashMap<>(_instanceSegmentDirectoryConfigs);
     props.put(READ_MODE_KEY, _readMode);
     return new PinotConfiguration(props);
   }
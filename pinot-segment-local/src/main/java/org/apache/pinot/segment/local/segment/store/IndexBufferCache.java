@@ -0,0 +1,226 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.store;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import java.io.File;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Bounded local-disk LRU cache of index buffers fetched from a remote segment store, used by
+ * {@link LazyRemoteSegmentDirectory}.
+ *
+ * <p>Each cached buffer is kept in its own file under the cache directory, named after the URL-encoded cache key. A
+ * buffer is memory mapped while it is acquired, and unmapped when its last reference is released. Only the buffers
+ * without reference can be evicted, so the cache might temporarily exceed the max size when the acquired buffers do
+ * not fit. The cached files are kept across restarts, and are added back to the cache in the order of their last
+ * modified time.
+ */
+@ThreadSafe
+public class IndexBufferCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(IndexBufferCache.class);
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+  /**
+   * Fetches the content of a buffer into the given local file.
+   */
+  public interface Fetcher {
+    void fetch(File destFile)
+        throws Exception;
+  }
+
+  private final File _cacheDir;
+  private final long _maxSizeBytes;
+  // Access ordered so that the iteration starts from the least recently used entry
+  private final LinkedHashMap<String, Entry> _entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long _sizeBytes;
+  private long _numFetches;
+
+  public IndexBufferCache(File cacheDir, long maxSizeBytes)
+      throws IOException {
+    Preconditions.checkArgument(maxSizeBytes > 0, "Invalid max size: %s for index buffer cache", maxSizeBytes);
+    _cacheDir = cacheDir;
+    _maxSizeBytes = maxSizeBytes;
+    FileUtils.forceMkdir(cacheDir);
+    File[] files = cacheDir.listFiles();
+    if (files != null) {
+      Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+      for (File file : files) {
+        String fileName = file.getName();
+        if (!file.isFile() || fileName.endsWith(TEMP_FILE_SUFFIX)) {
+          FileUtils.deleteQuietly(file);
+          continue;
+        }
+        Entry entry = new Entry(file);
+        entry._sizeBytes = file.length();
+        _entries.put(URLDecoder.decode(fileName, StandardCharsets.UTF_8), entry);
+        _sizeBytes += entry._sizeBytes;
+      }
+    }
+    evict();
+    LOGGER.info("Initialized index buffer cache in: {} with {} buffers of {} bytes, max size: {} bytes", cacheDir,
+        _entries.size(), _sizeBytes, maxSizeBytes);
+  }
+
+  /**
+   * Returns the buffer for the given key, fetching it with the given fetcher if it is not cached. The returned buffer
+   * is read-only and in big-endian order, and stays valid until {@link #release(String)} is called with the same key.
+   */
+  public PinotDataBuffer acquire(String key, Fetcher fetcher)
+      throws IOException {
+    Entry entry;
+    synchronized (this) {
+      entry = _entries.computeIfAbsent(key, k -> new Entry(new File(_cacheDir, getFileName(k))));
+      entry._refCount++;
+    }
+    try {
+      synchronized (entry) {
+        if (entry._buffer == null) {
+          if (entry._sizeBytes < 0) {
+            fetch(key, entry, fetcher);
+          }
+          entry._buffer = PinotDataBuffer.mapReadOnlyBigEndianFile(entry._file);
+        }
+        return entry._buffer;
+      }
+    } catch (Exception e) {
+      release(key);
+      throw new IOException("Failed to acquire buffer: " + key + " from index buffer cache", e);
+    }
+  }
+
+  private void fetch(String key, Entry entry, Fetcher fetcher)
+      throws Exception {
+    File tempFile = new File(_cacheDir, entry._file.getName() + TEMP_FILE_SUFFIX);
+    try {
+      fetcher.fetch(tempFile);
+      FileUtils.deleteQuietly(entry._file);
+      FileUtils.moveFile(tempFile, entry._file);
+    } finally {
+      FileUtils.deleteQuietly(tempFile);
+    }
+    long sizeBytes = entry._file.length();
+    synchronized (this) {
+      entry._sizeBytes = sizeBytes;
+      _sizeBytes += sizeBytes;
+      _numFetches++;
+      evict();
+    }
+    LOGGER.debug("Fetched buffer: {} of {} bytes into index buffer cache", key, sizeBytes);
+  }
+
+  /**
+   * Releases a reference acquired with {@link #acquire(String, Fetcher)}. The buffer is unmapped when there is no
+   * reference left, but the file is kept in the cache until it gets evicted.
+   */
+  public synchronized void release(String key) {
+    Entry entry = _entries.get(key);
+    Preconditions.checkState(entry != null && entry._refCount > 0, "Buffer: %s is not acquired", key);
+    if (--entry._refCount == 0) {
+      if (entry._buffer != null) {
+        try {
+          entry._buffer.close();
+        } catch (IOException e) {
+          LOGGER.warn("Caught exception while closing buffer: {} in index buffer cache", key, e);
+        }
+        entry._buffer = null;
+      }
+      if (entry._sizeBytes < 0) {
+        // Fetch failed, nothing to keep
+        _entries.remove(key);
+      }
+      evict();
+    }
+  }
+
+  private void evict() {
+    if (_sizeBytes <= _maxSizeBytes) {
+      return;
+    }
+    Iterator<Map.Entry<String, Entry>> iterator = _entries.entrySet().iterator();
+    while (_sizeBytes > _maxSizeBytes && iterator.hasNext()) {
+      Map.Entry<String, Entry> mapEntry = iterator.next();
+      Entry entry = mapEntry.getValue();
+      if (entry._refCount == 0 && entry._sizeBytes >= 0) {
+        iterator.remove();
+        FileUtils.deleteQuietly(entry._file);
+        _sizeBytes -= entry._sizeBytes;
+        LOGGER.debug("Evicted buffer: {} of {} bytes from index buffer cache", mapEntry.getKey(), entry._sizeBytes);
+      }
+    }
+  }
+
+  public File getCacheDir() {
+    return _cacheDir;
+  }
+
+  public long getMaxSizeBytes() {
+    return _maxSizeBytes;
+  }
+
+  public synchronized long getSizeBytes() {
+    return _sizeBytes;
+  }
+
+  public synchronized int getNumBuffers() {
+    return _entries.size();
+  }
+
+  @VisibleForTesting
+  synchronized long getNumFetches() {
+    return _numFetches;
+  }
+
+  @VisibleForTesting
+  synchronized boolean contains(String key) {
+    // Use containsKey() instead of get() to not affect the access order
+    return _entries.containsKey(key);
+  }
+
+  private static String getFileName(String key) {
+    return URLEncoder.encode(key, StandardCharsets.UTF_8);
+  }
+
+  private static class Entry {
+    final File _file;
+    // -1 when the buffer is not fetched yet
+    long _sizeBytes = -1;
+    int _refCount;
+    PinotDataBuffer _buffer;
+
+    Entry(File file) {
+      _file = file;
+    }
+  }
+}
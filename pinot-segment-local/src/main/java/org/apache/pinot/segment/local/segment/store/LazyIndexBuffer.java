@@ -0,0 +1,235 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.store;
+
+import com.google.common.base.Preconditions;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+
+
+/**
+ * Read-only {@link PinotDataBuffer} whose content is fetched into the {@link IndexBufferCache} on the first access,
+ * so that the index buffers never read by the queries are never fetched from the remote segment store.
+ *
+ * <p>Views of this buffer are also lazy, so that the index readers slicing the buffer on construction do not trigger
+ * the fetch. The fetched buffer is released back to the cache when the root buffer is closed.
+ */
+class LazyIndexBuffer extends PinotDataBuffer {
+  private final IndexBufferCache _cache;
+  private final String _key;
+  private final IndexBufferCache.Fetcher _fetcher;
+  // Null for the root buffer
+  private final LazyIndexBuffer _root;
+  private final long _start;
+  private final long _size;
+  private final ByteOrder _order;
+  private volatile PinotDataBuffer _buffer;
+  private boolean _acquired;
+
+  LazyIndexBuffer(IndexBufferCache cache, String key, IndexBufferCache.Fetcher fetcher, long size) {
+    super(true);
+    _cache = cache;
+    _key = key;
+    _fetcher = fetcher;
+    _root = null;
+    _start = 0;
+    _size = size;
+    _order = ByteOrder.BIG_ENDIAN;
+  }
+
+  private LazyIndexBuffer(LazyIndexBuffer root, long start, long size, ByteOrder order) {
+    super(false);
+    _cache = root._cache;
+    _key = root._key;
+    _fetcher = null;
+    _root = root;
+    _start = start;
+    _size = size;
+    _order = order;
+  }
+
+  /**
+   * Returns whether the content is already fetched and mapped.
+   */
+  boolean isFetched() {
+    return _buffer != null;
+  }
+
+  private PinotDataBuffer getBuffer() {
+    PinotDataBuffer buffer = _buffer;
+    if (buffer != null) {
+      return buffer;
+    }
+    synchronized (this) {
+      if (_buffer == null) {
+        if (_root == null) {
+          Preconditions.checkState(isCloseable(), "Buffer: %s is already closed", _key);
+          PinotDataBuffer fetchedBuffer;
+          try {
+            fetchedBuffer = _cache.acquire(_key, _fetcher);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+          _acquired = true;
+          Preconditions.checkState(fetchedBuffer.size() == _size, "Fetched buffer: %s has size: %s, expected: %s",
+              _key, fetchedBuffer.size(), _size);
+          _buffer = fetchedBuffer.view(0, _size, _order);
+        } else {
+          _buffer = _root.getBuffer().view(_start, _start + _size, _order);
+        }
+      }
+      return _buffer;
+    }
+  }
+
+  @Override
+  public byte getByte(long offset) {
+    return getBuffer().getByte(offset);
+  }
+
+  @Override
+  public void putByte(long offset, byte value) {
+    throw new UnsupportedOperationException("Cannot write to lazy index buffer: " + _key);
+  }
+
+  @Override
+  public char getChar(long offset) {
+    return getBuffer().getChar(offset);
+  }
+
+  @Override
+  public void putChar(long offset, char value) {
+    throw new UnsupportedOperationException("Cannot write to lazy index buffer: " + _key);
+  }
+
+  @Override
+  public short getShort(long offset) {
+    return getBuffer().getShort(offset);
+  }
+
+  @Override
+  public void putShort(long offset, short value) {
+    throw new UnsupportedOperationException("Cannot write to lazy index buffer: " + _key);
+  }
+
+  @Override
+  public int getInt(long offset) {
+    return getBuffer().getInt(offset);
+  }
+
+  @Override
+  public void putInt(long offset, int value) {
+    throw new UnsupportedOperationException("Cannot write to lazy index buffer: " + _key);
+  }
+
+  @Override
+  public long getLong(long offset) {
+    return getBuffer().getLong(offset);
+  }
+
+  @Override
+  public void putLong(long offset, long value) {
+    throw new UnsupportedOperationException("Cannot write to lazy index buffer: " + _key);
+  }
+
+  @Override
+  public float getFloat(long offset) {
+    return getBuffer().getFloat(offset);
+  }
+
+  @Override
+  public void putFloat(long offset, float value) {
+    throw new UnsupportedOperationException("Cannot write to lazy index buffer: " + _key);
+  }
+
+  @Override
+  public double getDouble(long offset) {
+    return getBuffer().getDouble(offset);
+  }
+
+  @Override
+  public void putDouble(long offset, double value) {
+    throw new UnsupportedOperationException("Cannot write to lazy index buffer: " + _key);
+  }
+
+  @Override
+  public void copyTo(long offset, byte[] buffer, int destOffset, int size) {
+    getBuffer().copyTo(offset, buffer, destOffset, size);
+  }
+
+  @Override
+  public void readFrom(long offset, byte[] buffer, int srcOffset, int size) {
+    throw new UnsupportedOperationException("Cannot write to lazy index buffer: " + _key);
+  }
+
+  @Override
+  public void readFrom(long offset, ByteBuffer buffer) {
+    throw new UnsupportedOperationException("Cannot write to lazy index buffer: " + _key);
+  }
+
+  @Override
+  public void readFrom(long offset, File file, long srcOffset, long size) {
+    throw new UnsupportedOperationException("Cannot write to lazy index buffer: " + _key);
+  }
+
+  @Override
+  public long size() {
+    return _size;
+  }
+
+  @Override
+  public ByteOrder order() {
+    return _order;
+  }
+
+  @Override
+  public PinotDataBuffer view(long start, long end, ByteOrder byteOrder) {
+    Preconditions.checkArgument(start >= 0 && start <= end && end <= _size,
+        "Invalid view range [%s, %s) for buffer of size: %s", start, end, _size);
+    LazyIndexBuffer root = _root != null ? _root : this;
+    return new LazyIndexBuffer(root, _start + start, end - start, byteOrder);
+  }
+
+  @Override
+  public ByteBuffer toDirectByteBuffer(long offset, int size, ByteOrder byteOrder) {
+    return getBuffer().toDirectByteBuffer(offset, size, byteOrder);
+  }
+
+  @Override
+  public void flush() {
+  }
+
+  @Override
+  public synchronized void release() {
+    if (_acquired) {
+      _buffer = null;
+      _acquired = false;
+      _cache.release(_key);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "LazyIndexBuffer{key=" + _key + ", start=" + _start + ", size=" + _size + ", fetched=" + isFetched() + "}";
+  }
+}
@@ -0,0 +1,396 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.store;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.pinot.common.utils.URIUtils;
+import org.apache.pinot.segment.spi.V1Constants;
+import org.apache.pinot.segment.spi.compression.ChunkCompressionType;
+import org.apache.pinot.segment.spi.index.IndexType;
+import org.apache.pinot.segment.spi.index.metadata.SegmentMetadataImpl;
+import org.apache.pinot.segment.spi.index.startree.StarTreeV2Constants;
+import org.apache.pinot.segment.spi.memory.EmptyIndexBuffer;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.apache.pinot.segment.spi.store.ColumnIndexUtils;
+import org.apache.pinot.segment.spi.store.SegmentDirectory;
+import org.apache.pinot.segment.spi.store.SegmentDirectoryPaths;
+import org.apache.pinot.spi.env.CommonsConfigurationUtils;
+import org.apache.pinot.spi.filesystem.PinotFS;
+import org.apache.pinot.spi.filesystem.PinotFSFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Read-only {@link SegmentDirectory} that serves a v3 segment directly from a remote segment store, fetching the
+ * index buffers per (column, index type) on demand.
+ *
+ * <p>The remote segment can be either a directory holding the untarred segment, i.e. the files under the {@code v3}
+ * sub-directory, or a {@link SegmentArchive} file. Only the segment metadata (and the index map for the untarred
+ * segment) are downloaded into the local index directory when the segment directory is created. Each index buffer is
+ * fetched on its first access with a ranged read of the remote {@code columns.psf} file or archive, and kept in the
+ * shared {@link IndexBufferCache}.
+ *
+ * <p>Star-tree, text and vector indexes, which are not kept in {@code columns.psf}, are not served from this segment
+ * directory. Use {@link #copyTo(File)} to download the complete segment when it needs to be preprocessed.
+ */
+public class LazyRemoteSegmentDirectory extends SegmentDirectory {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LazyRemoteSegmentDirectory.class);
+  private static final List<String> METADATA_FILE_NAMES =
+      List.of(V1Constants.MetadataKeys.METADATA_FILE_NAME, V1Constants.SEGMENT_CREATION_META);
+  private static final List<String> OPTIONAL_FILE_NAMES =
+      List.of(StarTreeV2Constants.INDEX_FILE_NAME, StarTreeV2Constants.INDEX_MAP_FILE_NAME);
+
+  private final File _indexDir;
+  private final File _segmentDirectory;
+  private final URI _remoteSegmentUri;
+  private final boolean _isArchive;
+  private final PinotFS _pinotFS;
+  private final IndexBufferCache _cache;
+  private final String _cacheKeyPrefix;
+  // For the untarred segment, the offset of the entry is the offset after the magic marker in the remote index file
+  private final Map<IndexKey, SegmentArchive.Entry> _indexEntries = new HashMap<>();
+  private final Map<IndexKey, PinotDataBuffer> _buffers = new ConcurrentHashMap<>();
+  private SegmentMetadataImpl _segmentMetadata;
+  private String _tier;
+
+  /**
+   * @param indexDir local index directory to keep the segment metadata
+   * @param remoteSegmentUri remote directory of the untarred segment, or remote segment archive file (with
+   *                         {@link SegmentArchive#FILE_EXTENSION})
+   * @param cache cache for the fetched index buffers
+   */
+  public LazyRemoteSegmentDirectory(File indexDir, URI remoteSegmentUri, IndexBufferCache cache)
+      throws IOException, ConfigurationException {
+    _indexDir = indexDir;
+    _segmentDirectory = new File(indexDir, SegmentDirectoryPaths.V3_SUBDIRECTORY_NAME);
+    _remoteSegmentUri = remoteSegmentUri;
+    _isArchive = remoteSegmentUri.getPath().endsWith(SegmentArchive.FILE_EXTENSION);
+    _pinotFS = PinotFSFactory.create(remoteSegmentUri.getScheme());
+    _cache = cache;
+    FileUtils.forceMkdir(_segmentDirectory);
+    if (_isArchive) {
+      loadArchive();
+    } else {
+      downloadFiles(_segmentDirectory, METADATA_FILE_NAMES, false);
+      downloadFiles(_segmentDirectory, List.of(V1Constants.INDEX_MAP_FILE_NAME), false);
+      loadMap();
+    }
+    _segmentMetadata = new SegmentMetadataImpl(indexDir);
+    // Include the CRC in the cache key so that the buffers of a refreshed segment are never mixed up
+    _cacheKeyPrefix =
+        _segmentMetadata.getTableName() + "/" + _segmentMetadata.getName() + "/" + _segmentMetadata.getCrc() + "/";
+    LOGGER.info("Created lazy remote segment directory for segment: {} from: {} with {} index buffers",
+        _segmentMetadata.getName(), remoteSegmentUri, _indexEntries.size());
+  }
+
+  private URI getRemoteFileUri(String fileName) {
+    return URIUtils.getUri(_remoteSegmentUri.toString(), SegmentDirectoryPaths.V3_SUBDIRECTORY_NAME, fileName);
+  }
+
+  private void downloadFiles(File destDir, List<String> fileNames, boolean optional)
+      throws IOException {
+    FileUtils.forceMkdir(destDir);
+    for (String fileName : fileNames) {
+      URI fileUri = getRemoteFileUri(fileName);
+      File destFile = new File(destDir, fileName);
+      try {
+        if (optional && !_pinotFS.exists(fileUri)) {
+          continue;
+        }
+        _pinotFS.copyToLocalFile(fileUri, destFile);
+      } catch (IOException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IOException("Failed to download: " + fileUri + " to: " + destFile, e);
+      }
+    }
+  }
+
+  private byte[] readRemoteFile(URI fileUri, long offset, int length)
+      throws IOException {
+    try (InputStream inputStream = _pinotFS.open(fileUri, offset, length)) {
+      return IOUtils.readFully(inputStream, length);
+    }
+  }
+
+  private void loadArchive()
+      throws IOException {
+    long archiveLength = _pinotFS.length(_remoteSegmentUri);
+    long[] footerOffsetAndLength = SegmentArchive.parseTrailer(
+        readRemoteFile(_remoteSegmentUri, archiveLength - SegmentArchive.TRAILER_SIZE, SegmentArchive.TRAILER_SIZE));
+    List<SegmentArchive.Entry> entries = SegmentArchive.parseFooter(
+        readRemoteFile(_remoteSegmentUri, footerOffsetAndLength[0], (int) footerOffsetAndLength[1]));
+    for (SegmentArchive.Entry entry : entries) {
+      if (entry.isIndex()) {
+        IndexKey indexKey;
+        try {
+          indexKey = IndexKey.fromIndexName(entry.getColumn(), entry.getName());
+        } catch (IllegalArgumentException e) {
+          LOGGER.warn("Skipping unknown index type: {} for column: {} in segment: {}", entry.getName(),
+              entry.getColumn(), _remoteSegmentUri);
+          continue;
+        }
+        _indexEntries.put(indexKey, entry);
+      } else if (METADATA_FILE_NAMES.contains(entry.getName())) {
+        try (InputStream inputStream = _pinotFS.open(_remoteSegmentUri, entry.getOffset(), entry.getLength());
+            OutputStream outputStream = new BufferedOutputStream(
+                Files.newOutputStream(SegmentArchive.getEntryFile(_segmentDirectory, entry.getName()).toPath()))) {
+          SegmentArchive.readEntry(entry, inputStream, outputStream);
+        }
+      }
+    }
+  }
+
+  private void loadMap()
+      throws ConfigurationException {
+    File mapFile = new File(_segmentDirectory, V1Constants.INDEX_MAP_FILE_NAME);
+    PropertiesConfiguration mapConfig = CommonsConfigurationUtils.fromFile(mapFile);
+    Map<IndexKey, IndexEntry> columnEntries = new HashMap<>();
+    for (String key : CommonsConfigurationUtils.getKeys(mapConfig)) {
+      String[] parsedKeys = ColumnIndexUtils.parseIndexMapKeys(key, _segmentDirectory.getPath());
+      IndexKey indexKey;
+      try {
+        indexKey = IndexKey.fromIndexName(parsedKeys[0], parsedKeys[1]);
+      } catch (IllegalArgumentException e) {
+        LOGGER.warn("Skipping unknown index type: {} for column: {} in segment: {}", parsedKeys[1], parsedKeys[0],
+            _segmentDirectory);
+        continue;
+      }
+      IndexEntry entry = columnEntries.computeIfAbsent(indexKey, IndexEntry::new);
+      if (parsedKeys[2].equals(ColumnIndexUtils.MAP_KEY_NAME_START_OFFSET)) {
+        entry._startOffset = mapConfig.getLong(key);
+      } else if (parsedKeys[2].equals(ColumnIndexUtils.MAP_KEY_NAME_SIZE)) {
+        entry._size = mapConfig.getLong(key);
+      } else {
+        throw new ConfigurationException("Invalid map file key: " + key + ", segmentDirectory: " + _segmentDirectory);
+      }
+    }
+    for (IndexEntry entry : columnEntries.values()) {
+      if (entry._size < 0 || entry._startOffset < 0) {
+        throw new ConfigurationException("Invalid map entry: " + entry + ", segment: " + _segmentDirectory);
+      }
+      long size = Math.max(entry._size - SingleFileIndexDirectory.MAGIC_MARKER_SIZE_BYTES, 0);
+      _indexEntries.put(entry._key, new SegmentArchive.Entry(entry._key._name, entry._key._type.getId(),
+          ChunkCompressionType.PASS_THROUGH, entry._startOffset + SingleFileIndexDirectory.MAGIC_MARKER_SIZE_BYTES,
+          size, size));
+    }
+  }
+
+  private PinotDataBuffer getBuffer(String column, IndexType<?, ?, ?> type) {
+    IndexKey key = new IndexKey(column, type);
+    SegmentArchive.Entry entry = _indexEntries.get(key);
+    if (entry == null) {
+      throw new RuntimeException(
+          "Could not find index for column: " + column + ", type: " + type + ", segment: " + _segmentDirectory);
+    }
+    return _buffers.computeIfAbsent(key, k -> createBuffer(k, entry));
+  }
+
+  private PinotDataBuffer createBuffer(IndexKey key, SegmentArchive.Entry entry) {
+    long size = entry.getUncompressedLength();
+    if (size == 0) {
+      return new EmptyIndexBuffer(new Properties(), _segmentMetadata.getName(), _segmentMetadata.getTableName());
+    }
+    return new LazyIndexBuffer(_cache, _cacheKeyPrefix + key, destFile -> fetchIndex(entry, destFile), size);
+  }
+
+  /**
+   * Fetches the index buffer into the given file with a ranged read of the remote index file or archive, and
+   * decompresses it if needed.
+   */
+  private void fetchIndex(SegmentArchive.Entry entry, File destFile)
+      throws IOException {
+    URI fileUri;
+    long offset;
+    long length;
+    if (_isArchive) {
+      fileUri = _remoteSegmentUri;
+      offset = entry.getOffset();
+      length = entry.getLength();
+    } else {
+      fileUri = getRemoteFileUri(V1Constants.INDEX_FILE_NAME);
+      offset = entry.getOffset() - SingleFileIndexDirectory.MAGIC_MARKER_SIZE_BYTES;
+      length = entry.getLength() + SingleFileIndexDirectory.MAGIC_MARKER_SIZE_BYTES;
+    }
+    try (InputStream inputStream = _pinotFS.open(fileUri, offset, length);
+        OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(destFile.toPath()))) {
+      if (!_isArchive) {
+        long marker = new DataInputStream(inputStream).readLong();
+        if (marker != SingleFileIndexDirectory.MAGIC_MARKER) {
+          throw new IOException("Missing magic marker for index: " + entry + " in remote index file: " + fileUri
+              + ", possibly corrupted");
+        }
+      }
+      SegmentArchive.readEntry(entry, inputStream, outputStream);
+    }
+    LOGGER.debug("Fetched index: {} of {} bytes for segment: {}", entry, entry.getLength(),
+        _segmentMetadata.getName());
+  }
+
+  @Override
+  public URI getIndexDir() {
+    return _indexDir.toURI();
+  }
+
+  public URI getRemoteSegmentUri() {
+    return _remoteSegmentUri;
+  }
+
+  @Override
+  public SegmentMetadataImpl getSegmentMetadata() {
+    return _segmentMetadata;
+  }
+
+  @Override
+  public void reloadMetadata()
+      throws Exception {
+    _segmentMetadata = new SegmentMetadataImpl(_indexDir);
+  }
+
+  @Override
+  public Path getPath() {
+    return _segmentDirectory.toPath();
+  }
+
+  /**
+   * Returns the size of the segment as if it were stored locally, i.e. including the index buffers not fetched yet.
+   */
+  @Override
+  public long getDiskSizeBytes() {
+    long size = FileUtils.sizeOfDirectory(_segmentDirectory);
+    for (SegmentArchive.Entry entry : _indexEntries.values()) {
+      size += entry.getUncompressedLength();
+    }
+    return size;
+  }
+
+  @Override
+  public Set<String> getColumnsWithIndex(IndexType<?, ?, ?> type) {
+    Set<String> columns = new HashSet<>();
+    for (IndexKey indexKey : _indexEntries.keySet()) {
+      if (indexKey._type == type) {
+        columns.add(indexKey._name);
+      }
+    }
+    return columns;
+  }
+
+  /**
+   * Downloads the complete segment from the remote segment store.
+   */
+  @Override
+  public void copyTo(File dest)
+      throws Exception {
+    if (_isArchive) {
+      File archiveFile = new File(dest.getParentFile(), dest.getName() + SegmentArchive.FILE_EXTENSION);
+      try {
+        _pinotFS.copyToLocalFile(_remoteSegmentUri, archiveFile);
+        SegmentArchive.extract(archiveFile, dest);
+      } finally {
+        FileUtils.deleteQuietly(archiveFile);
+      }
+    } else {
+      File destSegmentDirectory = new File(dest, SegmentDirectoryPaths.V3_SUBDIRECTORY_NAME);
+      downloadFiles(destSegmentDirectory, METADATA_FILE_NAMES, false);
+      downloadFiles(destSegmentDirectory, List.of(V1Constants.INDEX_MAP_FILE_NAME, V1Constants.INDEX_FILE_NAME),
+          false);
+      downloadFiles(destSegmentDirectory, OPTIONAL_FILE_NAMES, true);
+    }
+    LOGGER.info("Copied segment: {} from: {} to: {}", _segmentMetadata.getName(), _remoteSegmentUri, dest);
+  }
+
+  @Nullable
+  @Override
+  public String getTier() {
+    return _tier;
+  }
+
+  @Override
+  public void setTier(@Nullable String tier) {
+    _tier = tier;
+  }
+
+  @Override
+  public Reader createReader() {
+    return new Reader();
+  }
+
+  @Override
+  public Writer createWriter() {
+    throw new UnsupportedOperationException(
+        "Cannot write to lazy remote segment directory for segment: " + _segmentMetadata.getName());
+  }
+
+  @Override
+  public String toString() {
+    return _remoteSegmentUri.toString();
+  }
+
+  @Override
+  public void close()
+      throws IOException {
+    for (PinotDataBuffer buffer : _buffers.values()) {
+      buffer.close();
+    }
+    _buffers.clear();
+  }
+
+  public class Reader extends SegmentDirectory.Reader {
+
+    @Override
+    public PinotDataBuffer getIndexFor(String column, IndexType<?, ?, ?> type) {
+      return getBuffer(column, type);
+    }
+
+    @Override
+    public boolean hasIndexFor(String column, IndexType<?, ?, ?> type) {
+      return _indexEntries.containsKey(new IndexKey(column, type));
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String toString() {
+      return _remoteSegmentUri.toString();
+    }
+  }
+}
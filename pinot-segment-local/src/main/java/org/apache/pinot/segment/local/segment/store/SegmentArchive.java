@@ -0,0 +1,507 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.store;
+
+import com.google.common.base.Preconditions;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.pinot.segment.local.io.compression.ChunkCompressorFactory;
+import org.apache.pinot.segment.spi.V1Constants;
+import org.apache.pinot.segment.spi.compression.ChunkCompressionType;
+import org.apache.pinot.segment.spi.compression.ChunkCompressor;
+import org.apache.pinot.segment.spi.compression.ChunkDecompressor;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.apache.pinot.segment.spi.store.ColumnIndexUtils;
+import org.apache.pinot.segment.spi.store.SegmentDirectoryPaths;
+import org.apache.pinot.spi.env.CommonsConfigurationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Seekable single-file packaging of a v3 segment, as an alternative to the gzip-compressed segment tarball. Any part
+ * of the archive can be read without decompressing the whole stream, so that a remote reader can fetch a single index
+ * with a ranged read.
+ *
+ * <p>File layout (big-endian):
+ * <pre>
+ *   [magic (8 bytes)][version (4 bytes)]
+ *   [entry] ... each entry starting at a multiple of {@link #ALIGNMENT}
+ *   [footer]
+ *   [footer offset (8 bytes)][footer length (4 bytes)][version (4 bytes)][magic (8 bytes)]
+ * </pre>
+ * There are 2 kinds of entries: one per (column, index type) from {@code columns.psf} (without the magic marker), and
+ * one per other file of the segment directory (e.g. {@code metadata.properties}, star-tree or text index files). Each
+ * entry is compressed on its own with a {@link ChunkCompressionType}, and is stored uncompressed when the compression
+ * does not save space. The footer lists for each entry: column (empty for file entries), index type id or relative file
+ * path, compression type, offset, length and uncompressed length.
+ */
+public class SegmentArchive {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentArchive.class);
+
+  public static final String FILE_EXTENSION = ".sar";
+  // "PINOTSAR"
+  public static final long MAGIC = 0x50494E4F54534152L;
+  public static final int VERSION = 1;
+  public static final int HEADER_SIZE = 12;
+  public static final int TRAILER_SIZE = 24;
+  // Align the entries to the page size so that the ranged reads of the entries start at page boundaries
+  public static final int ALIGNMENT = 4096;
+
+  // The compressors work on a single ByteBuffer, so larger entries are always stored uncompressed
+  private static final long MAX_COMPRESSIBLE_SIZE = 1L << 30;
+  private static final Set<ChunkCompressionType> SUPPORTED_COMPRESSION_TYPES =
+      Set.of(ChunkCompressionType.PASS_THROUGH, ChunkCompressionType.SNAPPY, ChunkCompressionType.ZSTANDARD,
+          ChunkCompressionType.LZ4, ChunkCompressionType.LZ4_LENGTH_PREFIXED, ChunkCompressionType.GZIP);
+
+  private SegmentArchive() {
+  }
+
+  /**
+   * Entry of the archive, either an index or a file.
+   */
+  public static class Entry {
+    private final String _column;
+    private final String _name;
+    private final ChunkCompressionType _compressionType;
+    private final long _offset;
+    private final long _length;
+    private final long _uncompressedLength;
+
+    public Entry(@Nullable String column, String name, ChunkCompressionType compressionType, long offset, long length,
+        long uncompressedLength) {
+      _column = column;
+      _name = name;
+      _compressionType = compressionType;
+      _offset = offset;
+      _length = length;
+      _uncompressedLength = uncompressedLength;
+    }
+
+    public boolean isIndex() {
+      return _column != null;
+    }
+
+    /**
+     * Returns the column of the index entry, or {@code null} for the file entry.
+     */
+    @Nullable
+    public String getColumn() {
+      return _column;
+    }
+
+    /**
+     * Returns the index type id of the index entry, or the path relative to the segment directory of the file entry.
+     */
+    public String getName() {
+      return _name;
+    }
+
+    public ChunkCompressionType getCompressionType() {
+      return _compressionType;
+    }
+
+    public long getOffset() {
+      return _offset;
+    }
+
+    public long getLength() {
+      return _length;
+    }
+
+    public long getUncompressedLength() {
+      return _uncompressedLength;
+    }
+
+    @Override
+    public String toString() {
+      return (_column != null ? _column + "." + _name : _name) + " : [" + _offset + "," + (_offset + _length) + "), "
+          + _compressionType;
+    }
+  }
+
+  /**
+   * Creates an archive for the given segment, with all the entries compressed with the given compression type.
+   */
+  public static void create(File indexDir, File archiveFile, ChunkCompressionType compressionType)
+      throws IOException, ConfigurationException {
+    create(indexDir, archiveFile, compressionType, Collections.emptyMap());
+  }
+
+  /**
+   * Creates an archive for the given segment, which must be in v3 format.
+   *
+   * @param indexDir segment index directory
+   * @param archiveFile archive file to create
+   * @param defaultCompressionType compression type for the files and indexes without override
+   * @param indexCompressionTypes compression type override keyed by index type id, e.g. to keep the forward indexes
+   *                              uncompressed so that they are extracted without decompression
+   */
+  public static void create(File indexDir, File archiveFile, ChunkCompressionType defaultCompressionType,
+      Map<String, ChunkCompressionType> indexCompressionTypes)
+      throws IOException, ConfigurationException {
+    checkCompressionType(defaultCompressionType);
+    indexCompressionTypes.values().forEach(SegmentArchive::checkCompressionType);
+    File segmentDirectory = SegmentDirectoryPaths.findSegmentDirectory(indexDir);
+    File indexFile = new File(segmentDirectory, V1Constants.INDEX_FILE_NAME);
+    Preconditions.checkArgument(SegmentDirectoryPaths.isV3Directory(segmentDirectory) && indexFile.exists(),
+        "Segment: %s is not in v3 format", indexDir);
+
+    List<Entry> entries = new ArrayList<>();
+    try (FileChannel archiveChannel = new RandomAccessFile(archiveFile, "rw").getChannel()) {
+      archiveChannel.truncate(0);
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putLong(MAGIC).putInt(VERSION).flip();
+      writeFully(archiveChannel, header);
+
+      // Indexes in the order of the index file
+      try (FileChannel indexChannel = new RandomAccessFile(indexFile, "r").getChannel()) {
+        for (String[] index : readIndexMap(segmentDirectory)) {
+          String column = index[0];
+          String indexName = index[1];
+          long startOffset = Long.parseLong(index[2]);
+          long size = Long.parseLong(index[3]);
+          long contentOffset = startOffset;
+          long contentSize = size;
+          if (size > 0) {
+            ByteBuffer marker = ByteBuffer.allocate(SingleFileIndexDirectory.MAGIC_MARKER_SIZE_BYTES);
+            indexChannel.read(marker, startOffset);
+            Preconditions.checkState(marker.getLong(0) == SingleFileIndexDirectory.MAGIC_MARKER,
+                "Missing magic marker for index: %s.%s in index file: %s", column, indexName, indexFile);
+            contentOffset += SingleFileIndexDirectory.MAGIC_MARKER_SIZE_BYTES;
+            contentSize -= SingleFileIndexDirectory.MAGIC_MARKER_SIZE_BYTES;
+          }
+          entries.add(writeEntry(column, indexName, indexChannel, contentOffset, contentSize,
+              indexCompressionTypes.getOrDefault(indexName, defaultCompressionType), archiveChannel));
+        }
+      }
+
+      // Other files in the order of the relative path
+      List<String> fileNames = new ArrayList<>();
+      for (File file : FileUtils.listFiles(segmentDirectory, null, true)) {
+        String fileName = segmentDirectory.toPath().relativize(file.toPath()).toString().replace(File.separatorChar,
+            '/');
+        if (!fileName.equals(V1Constants.INDEX_FILE_NAME) && !fileName.equals(V1Constants.INDEX_MAP_FILE_NAME)) {
+          fileNames.add(fileName);
+        }
+      }
+      Collections.sort(fileNames);
+      for (String fileName : fileNames) {
+        try (FileChannel fileChannel = new RandomAccessFile(new File(segmentDirectory, fileName), "r").getChannel()) {
+          entries.add(writeEntry(null, fileName, fileChannel, 0, fileChannel.size(), defaultCompressionType,
+              archiveChannel));
+        }
+      }
+
+      // Footer and trailer
+      byte[] footer = serializeFooter(entries);
+      long footerOffset = archiveChannel.position();
+      writeFully(archiveChannel, ByteBuffer.wrap(footer));
+      ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+      trailer.putLong(footerOffset).putInt(footer.length).putInt(VERSION).putLong(MAGIC).flip();
+      writeFully(archiveChannel, trailer);
+    }
+    LOGGER.info("Created segment archive: {} of {} bytes with {} entries from: {}", archiveFile, archiveFile.length(),
+        entries.size(), indexDir);
+  }
+
+  private static void checkCompressionType(ChunkCompressionType compressionType) {
+    Preconditions.checkArgument(SUPPORTED_COMPRESSION_TYPES.contains(compressionType),
+        "Unsupported compression type: %s for segment archive", compressionType);
+  }
+
+  /**
+   * Returns the [column, index name, start offset, size] of the indexes in the index map, ordered by start offset.
+   */
+  private static List<String[]> readIndexMap(File segmentDirectory)
+      throws ConfigurationException {
+    PropertiesConfiguration mapConfig =
+        CommonsConfigurationUtils.fromFile(new File(segmentDirectory, V1Constants.INDEX_MAP_FILE_NAME));
+    Map<String, String[]> indexMap = new HashMap<>();
+    for (String key : CommonsConfigurationUtils.getKeys(mapConfig)) {
+      String[] parsedKeys = ColumnIndexUtils.parseIndexMapKeys(key, segmentDirectory.getPath());
+      String[] index = indexMap.computeIfAbsent(parsedKeys[0] + ColumnIndexUtils.MAP_KEY_SEPARATOR + parsedKeys[1],
+          k -> new String[]{parsedKeys[0], parsedKeys[1], null, null});
+      if (parsedKeys[2].equals(ColumnIndexUtils.MAP_KEY_NAME_START_OFFSET)) {
+        index[2] = mapConfig.getString(key);
+      } else if (parsedKeys[2].equals(ColumnIndexUtils.MAP_KEY_NAME_SIZE)) {
+        index[3] = mapConfig.getString(key);
+      } else {
+        throw new ConfigurationException("Invalid map file key: " + key + ", segmentDirectory: " + segmentDirectory);
+      }
+    }
+    List<String[]> indexes = new ArrayList<>(indexMap.values());
+    for (String[] index : indexes) {
+      if (index[2] == null || index[3] == null) {
+        throw new ConfigurationException(
+            "Invalid map entry for key: " + index[0] + "." + index[1] + ", segment: " + segmentDirectory);
+      }
+    }
+    indexes.sort(Comparator.comparingLong(index -> Long.parseLong(index[2])));
+    return indexes;
+  }
+
+  private static Entry writeEntry(@Nullable String column, String name, FileChannel srcChannel, long srcOffset,
+      long size, ChunkCompressionType compressionType, FileChannel archiveChannel)
+      throws IOException {
+    long position = archiveChannel.position();
+    long offset = (position + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    if (offset > position) {
+      writeFully(archiveChannel, ByteBuffer.allocate((int) (offset - position)));
+    }
+    if (compressionType != ChunkCompressionType.PASS_THROUGH && size > 0 && size <= MAX_COMPRESSIBLE_SIZE) {
+      ChunkCompressor compressor = ChunkCompressorFactory.getCompressor(compressionType);
+      ByteBuffer uncompressed = srcChannel.map(FileChannel.MapMode.READ_ONLY, srcOffset, size);
+      int maxCompressedSize = compressor.maxCompressedSize((int) size);
+      try (PinotDataBuffer compressedBuffer = PinotDataBuffer.allocateDirect(maxCompressedSize, ByteOrder.BIG_ENDIAN,
+          "SegmentArchive: " + name)) {
+        ByteBuffer compressed = compressedBuffer.toDirectByteBuffer(0, maxCompressedSize);
+        int compressedSize = compressor.compress(uncompressed, compressed);
+        if (compressedSize < size) {
+          writeFully(archiveChannel, compressed);
+          return new Entry(column, name, compressor.compressionType(), offset, compressedSize, size);
+        }
+      }
+    }
+    long transferred = 0;
+    while (transferred < size) {
+      transferred += srcChannel.transferTo(srcOffset + transferred, size - transferred, archiveChannel);
+    }
+    return new Entry(column, name, ChunkCompressionType.PASS_THROUGH, offset, size, size);
+  }
+
+  private static void writeFully(WritableByteChannel channel, ByteBuffer buffer)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static byte[] serializeFooter(List<Entry> entries)
+      throws IOException {
+    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    try (DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream)) {
+      dataOutputStream.writeInt(entries.size());
+      for (Entry entry : entries) {
+        writeString(dataOutputStream, entry._column != null ? entry._column : "");
+        dataOutputStream.writeBoolean(entry.isIndex());
+        writeString(dataOutputStream, entry._name);
+        dataOutputStream.writeInt(entry._compressionType.getValue());
+        dataOutputStream.writeLong(entry._offset);
+        dataOutputStream.writeLong(entry._length);
+        dataOutputStream.writeLong(entry._uncompressedLength);
+      }
+    }
+    return byteArrayOutputStream.toByteArray();
+  }
+
+  private static void writeString(DataOutputStream dataOutputStream, String value)
+      throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    dataOutputStream.writeInt(bytes.length);
+    dataOutputStream.write(bytes);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Parses the trailer (the last {@link #TRAILER_SIZE} bytes of the archive), and returns the footer offset and length.
+   */
+  public static long[] parseTrailer(byte[] trailer) {
+    Preconditions.checkArgument(trailer.length == TRAILER_SIZE, "Invalid trailer size: %s", trailer.length);
+    ByteBuffer buffer = ByteBuffer.wrap(trailer);
+    long footerOffset = buffer.getLong();
+    int footerLength = buffer.getInt();
+    int version = buffer.getInt();
+    Preconditions.checkState(buffer.getLong() == MAGIC, "Not a segment archive");
+    Preconditions.checkState(version == VERSION, "Unsupported segment archive version: %s", version);
+    return new long[]{footerOffset, footerLength};
+  }
+
+  /**
+   * Parses the footer into the entries of the archive.
+   */
+  public static List<Entry> parseFooter(byte[] footer) {
+    ByteBuffer buffer = ByteBuffer.wrap(footer);
+    int numEntries = buffer.getInt();
+    List<Entry> entries = new ArrayList<>(numEntries);
+    for (int i = 0; i < numEntries; i++) {
+      String column = readString(buffer);
+      boolean isIndex = buffer.get() != 0;
+      String name = readString(buffer);
+      ChunkCompressionType compressionType = ChunkCompressionType.valueOf(buffer.getInt());
+      entries.add(new Entry(isIndex ? column : null, name, compressionType, buffer.getLong(), buffer.getLong(),
+          buffer.getLong()));
+    }
+    return entries;
+  }
+
+  /**
+   * Reads the entries of a local archive.
+   */
+  public static List<Entry> readEntries(File archiveFile)
+      throws IOException {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(archiveFile, "r")) {
+      byte[] trailer = new byte[TRAILER_SIZE];
+      randomAccessFile.seek(randomAccessFile.length() - TRAILER_SIZE);
+      randomAccessFile.readFully(trailer);
+      long[] footerOffsetAndLength = parseTrailer(trailer);
+      byte[] footer = new byte[(int) footerOffsetAndLength[1]];
+      randomAccessFile.seek(footerOffsetAndLength[0]);
+      randomAccessFile.readFully(footer);
+      return parseFooter(footer);
+    }
+  }
+
+  /**
+   * Reads an entry from the given input stream positioned at the start of the entry, and writes the uncompressed
+   * content to the given output stream.
+   */
+  public static void readEntry(Entry entry, InputStream inputStream, OutputStream outputStream)
+      throws IOException {
+    if (entry._compressionType == ChunkCompressionType.PASS_THROUGH) {
+      long copied = IOUtils.copyLarge(inputStream, outputStream, 0, entry._length);
+      Preconditions.checkState(copied == entry._length, "Read %s bytes for entry: %s, expected: %s", copied, entry,
+          entry._length);
+      return;
+    }
+    int length = (int) entry._length;
+    int uncompressedLength = (int) entry._uncompressedLength;
+    try (PinotDataBuffer compressedBuffer = PinotDataBuffer.allocateDirect(length, ByteOrder.BIG_ENDIAN,
+        "SegmentArchive: " + entry._name);
+        PinotDataBuffer uncompressedBuffer = PinotDataBuffer.allocateDirect(uncompressedLength, ByteOrder.BIG_ENDIAN,
+            "SegmentArchive: " + entry._name)) {
+      ByteBuffer compressed = compressedBuffer.toDirectByteBuffer(0, length);
+      byte[] bytes = new byte[(int) Math.min(length, 1 << 20)];
+      while (compressed.hasRemaining()) {
+        int numBytes = inputStream.read(bytes, 0, Math.min(bytes.length, compressed.remaining()));
+        if (numBytes < 0) {
+          throw new IOException("Unexpected end of stream while reading entry: " + entry);
+        }
+        compressed.put(bytes, 0, numBytes);
+      }
+      compressed.flip();
+      ByteBuffer uncompressed = uncompressedBuffer.toDirectByteBuffer(0, uncompressedLength);
+      ChunkDecompressor decompressor = ChunkCompressorFactory.getDecompressor(entry._compressionType);
+      int decompressedSize = decompressor.decompress(compressed, uncompressed);
+      Preconditions.checkState(decompressedSize == uncompressedLength,
+          "Decompressed %s bytes for entry: %s, expected: %s", decompressedSize, entry, uncompressedLength);
+      writeFully(Channels.newChannel(outputStream), uncompressed);
+    }
+  }
+
+  /**
+   * Returns the file of the given file entry within the given segment directory.
+   * <p>For security reason, the file must reside in the segment directory.
+   */
+  public static File getEntryFile(File segmentDirectory, String entryName)
+      throws IOException {
+    String segmentDirectoryCanonicalPath = segmentDirectory.getCanonicalPath();
+    // Prevent partial path traversal
+    if (!segmentDirectoryCanonicalPath.endsWith(File.separator)) {
+      segmentDirectoryCanonicalPath += File.separator;
+    }
+    File file = new File(segmentDirectory, entryName);
+    if (!file.getCanonicalPath().startsWith(segmentDirectoryCanonicalPath)) {
+      throw new IOException(
+          String.format("Trying to extract entry: %s outside of the segment directory: %s", entryName,
+              segmentDirectory));
+    }
+    return file;
+  }
+
+  /**
+   * Extracts a local archive into the given index directory, in v3 format.
+   */
+  public static void extract(File archiveFile, File indexDir)
+      throws IOException {
+    List<Entry> entries = readEntries(archiveFile);
+    File segmentDirectory = new File(indexDir, SegmentDirectoryPaths.V3_SUBDIRECTORY_NAME);
+    FileUtils.forceMkdir(segmentDirectory);
+    List<String[]> indexMapEntries = new ArrayList<>();
+    try (FileChannel archiveChannel = new RandomAccessFile(archiveFile, "r").getChannel();
+        DataOutputStream indexOutputStream = new DataOutputStream(new BufferedOutputStream(
+            Files.newOutputStream(new File(segmentDirectory, V1Constants.INDEX_FILE_NAME).toPath())))) {
+      long indexFileOffset = 0;
+      for (Entry entry : entries) {
+        InputStream inputStream = Channels.newInputStream(archiveChannel.position(entry._offset));
+        if (entry.isIndex()) {
+          long size = 0;
+          if (entry._uncompressedLength > 0) {
+            indexOutputStream.writeLong(SingleFileIndexDirectory.MAGIC_MARKER);
+            readEntry(entry, inputStream, indexOutputStream);
+            size = entry._uncompressedLength + SingleFileIndexDirectory.MAGIC_MARKER_SIZE_BYTES;
+          }
+          indexMapEntries.add(new String[]{entry._column, entry._name, Long.toString(indexFileOffset),
+              Long.toString(size)});
+          indexFileOffset += size;
+        } else {
+          File file = getEntryFile(segmentDirectory, entry._name);
+          FileUtils.forceMkdirParent(file);
+          try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(file.toPath()))) {
+            readEntry(entry, inputStream, outputStream);
+          }
+        }
+      }
+    }
+    try (PrintWriter writer = new PrintWriter(new BufferedWriter(
+        new FileWriter(new File(segmentDirectory, V1Constants.INDEX_MAP_FILE_NAME))))) {
+      PropertiesConfiguration.PropertiesWriter propertiesWriter =
+          CommonsConfigurationUtils.getPropertiesWriterFromWriter(writer);
+      for (String[] index : indexMapEntries) {
+        propertiesWriter.writeProperty(SingleFileIndexDirectory.getKey(index[0], index[1], true), index[2]);
+        propertiesWriter.writeProperty(SingleFileIndexDirectory.getKey(index[0], index[1], false), index[3]);
+      }
+      propertiesWriter.flush();
+    }
+    LOGGER.info("Extracted segment archive: {} with {} entries into: {}", archiveFile, entries.size(), indexDir);
+  }
+}
@@ -73,8 +73,8 @@ import org.slf4j.LoggerFactory;
 class SingleFileIndexDirectory extends ColumnIndexDirectory {
   private static final Logger LOGGER = LoggerFactory.getLogger(SingleFileIndexDirectory.class);
 
-  private static final long MAGIC_MARKER = 0xdeadbeefdeafbeadL;
-  private static final int MAGIC_MARKER_SIZE_BYTES = 8;
+  static final long MAGIC_MARKER = 0xdeadbeefdeafbeadL;
+  static final int MAGIC_MARKER_SIZE_BYTES = 8;
 
   // Max size of buffer we want to allocate
   // ByteBuffer limits the size to 2GB - (some platform dependent size)
@@ -530,7 +530,7 @@ class SingleFileIndexDirectory extends ColumnIndexDirectory {
     return retained;
   }
 
-  private static String getKey(String column, String indexName, boolean isStartOffset) {
+  static String getKey(String column, String indexName, boolean isStartOffset) {
     return column + ColumnIndexUtils.MAP_KEY_SEPARATOR + indexName + ColumnIndexUtils.MAP_KEY_SEPARATOR
         + (isStartOffset ? "startOffset" : "size");
   }
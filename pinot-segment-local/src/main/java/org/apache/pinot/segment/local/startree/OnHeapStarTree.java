@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.startree;
+
+import com.google.common.base.MoreObjects;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.apache.pinot.segment.local.startree.StarTreeBuilderUtils.TreeNode;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
+import org.apache.pinot.segment.spi.index.startree.StarTree;
+import org.apache.pinot.segment.spi.index.startree.StarTreeNode;
+
+
+/**
+ * The {@code OnHeapStarTree} class is a star-tree backed by the {@link TreeNode}s generated during the star-tree
+ * construction, without serializing them into a buffer. It is used for the star-trees of the consuming segments which
+ * are rebuilt in memory.
+ */
+public class OnHeapStarTree implements StarTree {
+  private final OnHeapStarTreeNode _root;
+  private final List<String> _dimensionNames;
+
+  public OnHeapStarTree(TreeNode rootNode, List<String> dimensionNames) {
+    _root = new OnHeapStarTreeNode(rootNode);
+    _dimensionNames = dimensionNames;
+  }
+
+  @Override
+  public StarTreeNode getRoot() {
+    return _root;
+  }
+
+  @Override
+  public List<String> getDimensionNames() {
+    return _dimensionNames;
+  }
+
+  @Override
+  public void printTree(Map<String, Dictionary> dictionaryMap) {
+    printTreeHelper(dictionaryMap, _root, 0);
+  }
+
+  /**
+   * Helper method to print the tree.
+   */
+  private void printTreeHelper(Map<String, Dictionary> dictionaryMap, OnHeapStarTreeNode node, int level) {
+    StringBuilder stringBuilder = new StringBuilder();
+    for (int i = 0; i < level; i++) {
+      stringBuilder.append("  ");
+    }
+    String dimensionName = "ALL";
+    int dimensionId = node.getDimensionId();
+    if (dimensionId != StarTreeNode.ALL) {
+      dimensionName = _dimensionNames.get(dimensionId);
+    }
+    String dimensionValueString = "ALL";
+    int dimensionValue = node.getDimensionValue();
+    if (dimensionValue != StarTreeNode.ALL) {
+      dimensionValueString = dictionaryMap.get(dimensionName).get(dimensionValue).toString();
+    }
+
+    // For leaf node, child dimension id is -1
+    String childDimensionName = "null";
+    int childDimensionId = node.getChildDimensionId();
+    if (childDimensionId != -1) {
+      childDimensionName = _dimensionNames.get(childDimensionId);
+    }
+
+    String formattedOutput = MoreObjects.toStringHelper(node).add("level", level).add("dimensionName", dimensionName)
+        .add("dimensionValue", dimensionValueString).add("childDimensionName", childDimensionName)
+        .add("startDocId", node.getStartDocId()).add("endDocId", node.getEndDocId())
+        .add("aggregatedDocId", node.getAggregatedDocId()).add("numChildren", node.getNumChildren()).toString();
+    stringBuilder.append(formattedOutput);
+    System.out.println(stringBuilder.toString());
+
+    if (!node.isLeaf()) {
+      Iterator<OnHeapStarTreeNode> childrenIterator = node.getChildrenIterator();
+      while (childrenIterator.hasNext()) {
+        printTreeHelper(dictionaryMap, childrenIterator.next(), level + 1);
+      }
+    }
+  }
+
+  /**
+   * Star-tree node backed by a {@link TreeNode}. The star-node (if exists) is included in the children.
+   */
+  public static class OnHeapStarTreeNode implements StarTreeNode {
+    private final TreeNode _node;
+
+    public OnHeapStarTreeNode(TreeNode node) {
+      _node = node;
+    }
+
+    @Override
+    public int getDimensionId() {
+      return _node._dimensionId;
+    }
+
+    @Override
+    public int getDimensionValue() {
+      return _node._dimensionValue;
+    }
+
+    @Override
+    public int getChildDimensionId() {
+      return _node._childDimensionId;
+    }
+
+    @Override
+    public int getStartDocId() {
+      return _node._startDocId;
+    }
+
+    @Override
+    public int getEndDocId() {
+      return _node._endDocId;
+    }
+
+    @Override
+    public int getAggregatedDocId() {
+      return _node._aggregatedDocId;
+    }
+
+    @Override
+    public int getNumChildren() {
+      return _node._children != null ? _node._children.size() : 0;
+    }
+
+    @Override
+    public boolean isLeaf() {
+      return _node._children == null;
+    }
+
+    @Override
+    public StarTreeNode getChildForDimensionValue(int dimensionValue) {
+      if (_node._children == null) {
+        return null;
+      }
+      TreeNode child = _node._children.get(dimensionValue);
+      return child != null ? new OnHeapStarTreeNode(child) : null;
+    }
+
+    @Override
+    public Iterator<OnHeapStarTreeNode> getChildrenIterator() {
+      Iterator<TreeNode> iterator = _node._children.values().iterator();
+      return new Iterator<OnHeapStarTreeNode>() {
+        @Override
+        public boolean hasNext() {
+          return iterator.hasNext();
+        }
+
+        @Override
+        public OnHeapStarTreeNode next() {
+          return new OnHeapStarTreeNode(iterator.next());
+        }
+      };
+    }
+  }
+}
@@ -47,6 +47,7 @@ import org.apache.pinot.segment.spi.index.creator.ForwardIndexCreator;
 import org.apache.pinot.segment.spi.index.startree.AggregationFunctionColumnPair;
 import org.apache.pinot.segment.spi.index.startree.AggregationSpec;
 import org.apache.pinot.segment.spi.index.startree.StarTreeNode;
+import org.apache.pinot.segment.spi.index.startree.StarTreeV2;
 import org.apache.pinot.segment.spi.index.startree.StarTreeV2Constants;
 import org.apache.pinot.spi.data.FieldSpec.DataType;
 import org.slf4j.Logger;
@@ -67,6 +68,8 @@ abstract class BaseSingleTreeBuilder implements SingleTreeBuilder {
   final File _outputDir;
   final ImmutableSegment _segment;
   final Configuration _metadataProperties;
+  // Existing star-tree to derive the star-tree from, null when building from the segment records
+  final StarTreeV2 _sourceStarTree;
 
   final int _numDimensions;
   final String[] _dimensionsSplitOrder;
@@ -111,10 +114,28 @@ abstract class BaseSingleTreeBuilder implements SingleTreeBuilder {
    */
   BaseSingleTreeBuilder(StarTreeV2BuilderConfig builderConfig, File outputDir, ImmutableSegment segment,
       Configuration metadataProperties) {
+    this(builderConfig, outputDir, segment, metadataProperties, null);
+  }
+
+  /**
+   * Constructor for the base single star-tree builder.
+   * <p>When a source star-tree is provided, the star-tree is derived from the aggregated segment records of the source
+   * star-tree instead of the raw segment records. The source star-tree must contain all the dimensions and
+   * function-column pairs of the star-tree to build (see {@link StarTreeIndexSeparator#findSourceStarTree}).
+   *
+   * @param builderConfig Builder config
+   * @param outputDir Directory to store the index files
+   * @param segment Index segment
+   * @param metadataProperties Segment metadata properties
+   * @param sourceStarTree Existing star-tree to derive the star-tree from, or {@code null} to build from the segment
+   */
+  BaseSingleTreeBuilder(StarTreeV2BuilderConfig builderConfig, File outputDir, ImmutableSegment segment,
+      Configuration metadataProperties, @Nullable StarTreeV2 sourceStarTree) {
     _builderConfig = builderConfig;
     _outputDir = outputDir;
     _segment = segment;
     _metadataProperties = metadataProperties;
+    _sourceStarTree = sourceStarTree;
 
     List<String> dimensionsSplitOrder = builderConfig.getDimensionsSplitOrder();
     _numDimensions = dimensionsSplitOrder.size();
@@ -128,7 +149,13 @@ abstract class BaseSingleTreeBuilder implements SingleTreeBuilder {
       if (skipStarNodeCreationForDimensions.contains(dimension)) {
         _skipStarNodeCreationForDimensions.add(i);
       }
-      _dimensionReaders[i] = new PinotSegmentColumnReader(segment, dimension);
+      if (sourceStarTree != null) {
+        _dimensionReaders[i] =
+            new PinotSegmentColumnReader(sourceStarTree.getDataSource(dimension).getForwardIndex(),
+                segment.getDictionary(dimension), null, 0);
+      } else {
+        _dimensionReaders[i] = new PinotSegmentColumnReader(segment, dimension);
+      }
       Preconditions.checkState(_dimensionReaders[i].hasDictionary(),
           "Dimension: " + dimension + " does not have dictionary");
     }
@@ -150,8 +177,13 @@ abstract class BaseSingleTreeBuilder implements SingleTreeBuilder {
       _valueAggregators[index] =
           ValueAggregatorFactory.getValueAggregator(functionColumnPair.getFunctionType(), arguments);
       _aggregationSpecs[index] = aggregationSpec;
-      // Ignore the column for COUNT aggregation function
-      if (_valueAggregators[index].getAggregationType() != AggregationFunctionType.COUNT) {
+      if (sourceStarTree != null) {
+        // Read the aggregated values (including COUNT) from the source star-tree
+        _metricReaders[index] =
+            new PinotSegmentColumnReader(sourceStarTree.getDataSource(_metrics[index]).getForwardIndex(), null, null,
+                0);
+      } else if (_valueAggregators[index].getAggregationType() != AggregationFunctionType.COUNT) {
+        // Ignore the column for COUNT aggregation function
         String column = functionColumnPair.getColumn();
         _metricReaders[index] = new PinotSegmentColumnReader(segment, column);
       }
@@ -259,6 +291,9 @@ abstract class BaseSingleTreeBuilder implements SingleTreeBuilder {
    * @return Merged record
    */
   Record mergeSegmentRecord(@Nullable Record aggregatedRecord, Record segmentRecord) {
+    if (_sourceStarTree != null) {
+      return mergeSourceStarTreeRecord(aggregatedRecord, segmentRecord);
+    }
     if (aggregatedRecord == null) {
       int[] dimensions = Arrays.copyOf(segmentRecord._dimensions, _numDimensions);
       Object[] metrics = new Object[_numMetrics];
@@ -286,6 +321,43 @@ abstract class BaseSingleTreeBuilder implements SingleTreeBuilder {
     }
   }
 
+  /**
+   * Merges a record read from the source star-tree into the aggregated record.
+   * <p>The values of the source star-tree are already aggregated, where the BYTES values are serialized. The serialized
+   * values are applied as raw values so that the value aggregator can keep track of the max aggregated value size.
+   *
+   * @param aggregatedRecord Aggregated record
+   * @param sourceRecord Source star-tree record
+   * @return Merged record
+   */
+  private Record mergeSourceStarTreeRecord(@Nullable Record aggregatedRecord, Record sourceRecord) {
+    if (aggregatedRecord == null) {
+      int[] dimensions = Arrays.copyOf(sourceRecord._dimensions, _numDimensions);
+      Object[] metrics = new Object[_numMetrics];
+      for (int i = 0; i < _numMetrics; i++) {
+        ValueAggregator valueAggregator = _valueAggregators[i];
+        Object value = sourceRecord._metrics[i];
+        if (valueAggregator.getAggregatedValueType() == BYTES) {
+          metrics[i] = valueAggregator.getInitialAggregatedValue(value);
+        } else {
+          metrics[i] = value;
+        }
+      }
+      return new Record(dimensions, metrics);
+    } else {
+      for (int i = 0; i < _numMetrics; i++) {
+        ValueAggregator valueAggregator = _valueAggregators[i];
+        Object value = sourceRecord._metrics[i];
+        if (valueAggregator.getAggregatedValueType() == BYTES) {
+          aggregatedRecord._metrics[i] = valueAggregator.applyRawValue(aggregatedRecord._metrics[i], value);
+        } else {
+          aggregatedRecord._metrics[i] = valueAggregator.applyAggregatedValue(aggregatedRecord._metrics[i], value);
+        }
+      }
+      return aggregatedRecord;
+    }
+  }
+
   /**
    * Merges a star-tree record (aggregated) into the aggregated record.
    * <p>Will create a new aggregated record if the current one is {@code null}.
@@ -317,7 +389,14 @@ abstract class BaseSingleTreeBuilder implements SingleTreeBuilder {
     long startTime = System.currentTimeMillis();
     LOGGER.info("Starting building star-tree with config: {}", _builderConfig);
 
-    int numSegmentRecords = _segment.getSegmentMetadata().getTotalDocs();
+    int numSegmentRecords;
+    if (_sourceStarTree != null) {
+      numSegmentRecords = getNumSourceStarTreeSegmentRecords();
+      LOGGER.info("Deriving star-tree from existing star-tree with config: {}",
+          StarTreeV2BuilderConfig.fromMetadata(_sourceStarTree.getMetadata()));
+    } else {
+      numSegmentRecords = _segment.getSegmentMetadata().getTotalDocs();
+    }
     Iterator<Record> recordIterator = sortAndAggregateSegmentRecords(numSegmentRecords);
     while (recordIterator.hasNext()) {
       appendToStarTree(recordIterator.next());
@@ -342,6 +421,22 @@ abstract class BaseSingleTreeBuilder implements SingleTreeBuilder {
     LOGGER.info("Finished building star-tree in {}ms", System.currentTimeMillis() - startTime);
   }
 
+  /**
+   * Returns the number of aggregated segment records in the source star-tree, which are the first records in the
+   * star-tree, and are covered by the non-star children of the root node.
+   */
+  private int getNumSourceStarTreeSegmentRecords() {
+    int numRecords = 0;
+    Iterator<? extends StarTreeNode> childrenIterator = _sourceStarTree.getStarTree().getRoot().getChildrenIterator();
+    while (childrenIterator.hasNext()) {
+      StarTreeNode child = childrenIterator.next();
+      if (child.getDimensionValue() != StarTreeNode.ALL) {
+        numRecords = Math.max(numRecords, child.getEndDocId());
+      }
+    }
+    return numRecords;
+  }
+
   private void appendToStarTree(Record record)
       throws IOException {
     appendRecord(record);
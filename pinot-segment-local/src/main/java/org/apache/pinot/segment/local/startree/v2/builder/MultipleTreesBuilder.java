@@ -18,6 +18,7 @@
  */
 package org.apache.pinot.segment.local.startree.v2.builder;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import java.io.Closeable;
 import java.io.File;
@@ -41,6 +42,7 @@ import org.apache.pinot.segment.local.startree.v2.store.StarTreeIndexMapUtils.In
 import org.apache.pinot.segment.spi.ImmutableSegment;
 import org.apache.pinot.segment.spi.V1Constants;
 import org.apache.pinot.segment.spi.index.metadata.SegmentMetadataImpl;
+import org.apache.pinot.segment.spi.index.startree.StarTreeV2;
 import org.apache.pinot.segment.spi.index.startree.StarTreeV2Constants;
 import org.apache.pinot.segment.spi.index.startree.StarTreeV2Constants.MetadataKey;
 import org.apache.pinot.segment.spi.index.startree.StarTreeV2Metadata;
@@ -72,6 +74,7 @@ public class MultipleTreesBuilder implements Closeable {
   private File _separatorTempDir;
   private Configuration _existingStarTreeMetadata;
   private boolean _starTreeCreationFailed;
+  private int _numDerivedStarTrees;
 
   public enum BuildMode {
     ON_HEAP, OFF_HEAP
@@ -182,6 +185,7 @@ public class MultipleTreesBuilder implements Closeable {
     long startTime = System.currentTimeMillis();
     int numStarTrees = _builderConfigs.size();
     int reusedStarTrees = 0;
+    int derivedStarTrees = 0;
     LOGGER.info("Starting building {} star-trees with configs: {} using {} builder", numStarTrees, _builderConfigs,
         _buildMode);
 
@@ -203,9 +207,21 @@ public class MultipleTreesBuilder implements Closeable {
             LOGGER.info("Reused existing star-tree: {}", builderConfig.toString());
             reusedStarTrees++;
           } else {
+            // Derive from an existing star-tree with more dimensions/metrics if possible, which is usually much smaller
+            // than the segment
+            StarTreeV2 sourceStarTree =
+                _separator != null ? _separator.loadSourceStarTree(builderConfig, _segment) : null;
             try (SingleTreeBuilder singleTreeBuilder = getSingleTreeBuilder(builderConfig, starTreeIndexDir, _segment,
-                metadataProperties, _buildMode)) {
+                metadataProperties, _buildMode, sourceStarTree)) {
               singleTreeBuilder.build();
+            } finally {
+              if (sourceStarTree != null) {
+                sourceStarTree.close();
+              }
+            }
+            if (sourceStarTree != null) {
+              LOGGER.info("Derived star-tree: {} from existing star-tree", builderConfig);
+              derivedStarTrees++;
             }
           }
           indexMaps.add(indexCombiner.combine(builderConfig, starTreeIndexDir));
@@ -233,8 +249,17 @@ public class MultipleTreesBuilder implements Closeable {
       FileUtils.forceDelete(starTreeIndexDir);
     }
 
-    LOGGER.info("Finished building {} star-trees ({} reused) in {}ms", numStarTrees, reusedStarTrees,
-        System.currentTimeMillis() - startTime);
+    _numDerivedStarTrees = derivedStarTrees;
+    LOGGER.info("Finished building {} star-trees ({} reused, {} derived) in {}ms", numStarTrees, reusedStarTrees,
+        derivedStarTrees, System.currentTimeMillis() - startTime);
+  }
+
+  /**
+   * Returns the number of star-trees derived from the existing star-trees in the last build.
+   */
+  @VisibleForTesting
+  int getNumDerivedStarTrees() {
+    return _numDerivedStarTrees;
   }
 
   /**
@@ -256,18 +281,22 @@ public class MultipleTreesBuilder implements Closeable {
   }
 
   private static SingleTreeBuilder getSingleTreeBuilder(StarTreeV2BuilderConfig builderConfig, File outputDir,
-      ImmutableSegment segment, Configuration metadataProperties, BuildMode buildMode)
+      ImmutableSegment segment, Configuration metadataProperties, BuildMode buildMode,
+      @Nullable StarTreeV2 sourceStarTree)
       throws FileNotFoundException {
     if (buildMode == BuildMode.ON_HEAP) {
-      return new OnHeapSingleTreeBuilder(builderConfig, outputDir, segment, metadataProperties);
+      return new OnHeapSingleTreeBuilder(builderConfig, outputDir, segment, metadataProperties, sourceStarTree);
     } else {
-      return new OffHeapSingleTreeBuilder(builderConfig, outputDir, segment, metadataProperties);
+      return new OffHeapSingleTreeBuilder(builderConfig, outputDir, segment, metadataProperties, sourceStarTree);
     }
   }
 
   @Override
   public void close()
       throws IOException {
+    if (_separator != null) {
+      _separator.close();
+    }
     if (_separatorTempDir != null) {
       if (_starTreeCreationFailed) {
         try {
@@ -29,9 +29,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import javax.annotation.Nullable;
 import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.io.FileUtils;
 import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.index.startree.StarTreeV2;
 import org.apache.pinot.segment.spi.index.startree.StarTreeV2Constants;
 import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
 
@@ -65,7 +67,23 @@ public class OffHeapSingleTreeBuilder extends BaseSingleTreeBuilder {
   public OffHeapSingleTreeBuilder(StarTreeV2BuilderConfig builderConfig, File outputDir, ImmutableSegment segment,
       Configuration metadataProperties)
       throws FileNotFoundException {
-    super(builderConfig, outputDir, segment, metadataProperties);
+    this(builderConfig, outputDir, segment, metadataProperties, null);
+  }
+
+  /**
+   * Constructor for the off-heap single star-tree builder that derives the star-tree from an existing star-tree.
+   *
+   * @param builderConfig Builder config
+   * @param outputDir Directory to store the index files
+   * @param segment Index segment
+   * @param metadataProperties Segment metadata properties
+   * @param sourceStarTree Existing star-tree to derive the star-tree from, or {@code null} to build from the segment
+   * @throws FileNotFoundException
+   */
+  public OffHeapSingleTreeBuilder(StarTreeV2BuilderConfig builderConfig, File outputDir, ImmutableSegment segment,
+      Configuration metadataProperties, @Nullable StarTreeV2 sourceStarTree)
+      throws FileNotFoundException {
+    super(builderConfig, outputDir, segment, metadataProperties, sourceStarTree);
     _segmentRecordFile = new File(_outputDir, SEGMENT_RECORD_FILE_NAME);
     Preconditions
         .checkState(!_segmentRecordFile.exists(), "Segment record file: " + _segmentRecordFile + " already exists");
@@ -23,8 +23,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import javax.annotation.Nullable;
 import org.apache.commons.configuration2.Configuration;
 import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.index.startree.StarTreeV2;
 import org.apache.pinot.segment.spi.index.startree.StarTreeV2Constants;
 
 
@@ -44,7 +46,21 @@ public class OnHeapSingleTreeBuilder extends BaseSingleTreeBuilder {
    */
   public OnHeapSingleTreeBuilder(StarTreeV2BuilderConfig builderConfig, File outputDir, ImmutableSegment segment,
       Configuration metadataProperties) {
-    super(builderConfig, outputDir, segment, metadataProperties);
+    this(builderConfig, outputDir, segment, metadataProperties, null);
+  }
+
+  /**
+   * Constructor for the on-heap single star-tree builder that derives the star-tree from an existing star-tree.
+   *
+   * @param builderConfig Builder config
+   * @param outputDir Directory to store the index files
+   * @param segment Index segment
+   * @param metadataProperties Segment metadata properties
+   * @param sourceStarTree Existing star-tree to derive the star-tree from, or {@code null} to build from the segment
+   */
+  public OnHeapSingleTreeBuilder(StarTreeV2BuilderConfig builderConfig, File outputDir, ImmutableSegment segment,
+      Configuration metadataProperties, @Nullable StarTreeV2 sourceStarTree) {
+    super(builderConfig, outputDir, segment, metadataProperties, sourceStarTree);
   }
 
   @Override
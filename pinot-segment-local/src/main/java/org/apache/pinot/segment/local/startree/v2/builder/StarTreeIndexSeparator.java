@@ -25,17 +25,26 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import javax.annotation.Nullable;
 import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.apache.commons.io.FileUtils;
 import org.apache.pinot.segment.local.startree.v2.store.StarTreeIndexMapUtils;
+import org.apache.pinot.segment.local.startree.v2.store.StarTreeLoaderUtils;
+import org.apache.pinot.segment.spi.ImmutableSegment;
 import org.apache.pinot.segment.spi.V1Constants;
 import org.apache.pinot.segment.spi.index.startree.AggregationFunctionColumnPair;
+import org.apache.pinot.segment.spi.index.startree.AggregationSpec;
+import org.apache.pinot.segment.spi.index.startree.StarTreeV2;
 import org.apache.pinot.segment.spi.index.startree.StarTreeV2Constants;
 import org.apache.pinot.segment.spi.index.startree.StarTreeV2Metadata;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,7 +58,11 @@ public class StarTreeIndexSeparator implements Closeable {
   private final List<Map<StarTreeIndexMapUtils.IndexKey, StarTreeIndexMapUtils.IndexValue>> _indexMapList;
   private final List<StarTreeV2BuilderConfig> _builderConfigList;
   private final List<Integer> _numDocsList;
+  private final List<StarTreeV2Metadata> _starTreeMetadataList;
+  private final File _indexFile;
   private final FileChannel _indexFileChannel;
+  // Lazily mapped when deriving a new star-tree from an existing one
+  private PinotDataBuffer _indexDataBuffer;
 
   public StarTreeIndexSeparator(File indexMapFile, File indexFile, List<StarTreeV2Metadata> starTreeMetadataList)
       throws IOException {
@@ -74,6 +87,8 @@ public class StarTreeIndexSeparator implements Closeable {
       }
       LOGGER.debug(logExistingStarTrees.toString());
     }
+    _starTreeMetadataList = starTreeMetadataList;
+    _indexFile = indexFile;
     _indexFileChannel = new RandomAccessFile(indexFile, "r").getChannel();
   }
 
@@ -121,6 +136,76 @@ public class StarTreeIndexSeparator implements Closeable {
     }
   }
 
+  /**
+   * Loads an existing star-tree that the star-tree represented by the builderConfig can be derived from, i.e. the
+   * existing star-tree contains all the dimensions and function-column pairs (with the same function parameters) of the
+   * builderConfig. When there are multiple such star-trees, picks the one with the least documents.
+   * <p>The returned star-tree should be closed after use, and is valid until the separator is closed.
+   *
+   * @param builderConfig {@link StarTreeV2BuilderConfig} of the star-tree to derive
+   * @param segment Index segment providing the dictionaries for the dimensions
+   * @return Existing star-tree to derive from, or {@code null} if there is no such star-tree
+   * @throws IOException
+   */
+  @Nullable
+  public StarTreeV2 loadSourceStarTree(StarTreeV2BuilderConfig builderConfig, ImmutableSegment segment)
+      throws IOException {
+    int sourceTreeIndex = -1;
+    int numStarTrees = _builderConfigList.size();
+    for (int i = 0; i < numStarTrees; i++) {
+      if (canDerive(_builderConfigList.get(i), builderConfig) && (sourceTreeIndex == -1
+          || _numDocsList.get(i) < _numDocsList.get(sourceTreeIndex))) {
+        sourceTreeIndex = i;
+      }
+    }
+    if (sourceTreeIndex == -1) {
+      return null;
+    }
+    LOGGER.info("Loading existing star-tree: {} to derive star-tree for config: {}",
+        _builderConfigList.get(sourceTreeIndex), builderConfig);
+    if (_indexDataBuffer == null) {
+      _indexDataBuffer = PinotDataBuffer.mapFile(_indexFile, true, 0, _indexFile.length(), ByteOrder.LITTLE_ENDIAN,
+          "Existing star-tree data buffer from: " + _indexFile);
+    }
+    Map<StarTreeIndexMapUtils.IndexKey, StarTreeIndexMapUtils.IndexValue> indexMap = _indexMapList.get(sourceTreeIndex);
+    PinotDataBuffer starTreeBuffer = null;
+    Map<String, PinotDataBuffer> forwardIndexBuffers = new HashMap<>();
+    for (Map.Entry<StarTreeIndexMapUtils.IndexKey, StarTreeIndexMapUtils.IndexValue> entry : indexMap.entrySet()) {
+      StarTreeIndexMapUtils.IndexKey key = entry.getKey();
+      StarTreeIndexMapUtils.IndexValue value = entry.getValue();
+      switch (key._indexType) {
+        case STAR_TREE:
+          starTreeBuffer = _indexDataBuffer.view(value._offset, value._offset + value._size, ByteOrder.LITTLE_ENDIAN);
+          break;
+        case FORWARD_INDEX:
+          forwardIndexBuffers.put(key._column,
+              _indexDataBuffer.view(value._offset, value._offset + value._size, ByteOrder.BIG_ENDIAN));
+          break;
+        default:
+      }
+    }
+    return StarTreeLoaderUtils.loadStarTreeV2(starTreeBuffer, forwardIndexBuffers,
+        _starTreeMetadataList.get(sourceTreeIndex), segment.getSegmentMetadata(), segment::getDictionary);
+  }
+
+  /**
+   * Returns {@code true} if the target star-tree can be derived from the source star-tree (but not identical).
+   */
+  private static boolean canDerive(StarTreeV2BuilderConfig source, StarTreeV2BuilderConfig target) {
+    if (source.equals(target) || !source.getDimensionsSplitOrder().containsAll(target.getDimensionsSplitOrder())) {
+      return false;
+    }
+    Map<AggregationFunctionColumnPair, AggregationSpec> sourceAggregationSpecs = source.getAggregationSpecs();
+    for (Map.Entry<AggregationFunctionColumnPair, AggregationSpec> entry : target.getAggregationSpecs().entrySet()) {
+      AggregationSpec sourceAggregationSpec = sourceAggregationSpecs.get(entry.getKey());
+      if (sourceAggregationSpec == null || !Objects.equals(sourceAggregationSpec.getFunctionParameters(),
+          entry.getValue().getFunctionParameters())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private void writeIndexToFile(File destFile, StarTreeIndexMapUtils.IndexValue value)
       throws IOException {
     try (FileChannel dest = new RandomAccessFile(destFile, "rw").getChannel()) {
@@ -132,6 +217,9 @@ public class StarTreeIndexSeparator implements Closeable {
   @Override
   public void close()
       throws IOException {
+    if (_indexDataBuffer != null) {
+      _indexDataBuffer.close();
+    }
     _indexFileChannel.close();
   }
 }
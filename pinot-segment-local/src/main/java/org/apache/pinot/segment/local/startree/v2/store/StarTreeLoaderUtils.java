@@ -23,15 +23,18 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import org.apache.pinot.segment.local.aggregator.ValueAggregatorFactory;
 import org.apache.pinot.segment.local.segment.index.forward.ForwardIndexReaderFactory;
 import org.apache.pinot.segment.local.segment.index.readers.forward.FixedBitSVForwardIndexReaderV2;
 import org.apache.pinot.segment.local.startree.OffHeapStarTree;
 import org.apache.pinot.segment.spi.ColumnMetadata;
+import org.apache.pinot.segment.spi.SegmentMetadata;
 import org.apache.pinot.segment.spi.datasource.DataSource;
 import org.apache.pinot.segment.spi.index.StandardIndexes;
 import org.apache.pinot.segment.spi.index.column.ColumnIndexContainer;
 import org.apache.pinot.segment.spi.index.metadata.SegmentMetadataImpl;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
 import org.apache.pinot.segment.spi.index.reader.ForwardIndexReader;
 import org.apache.pinot.segment.spi.index.startree.AggregationFunctionColumnPair;
 import org.apache.pinot.segment.spi.index.startree.StarTree;
@@ -60,61 +63,81 @@ public class StarTreeLoaderUtils {
     List<StarTreeV2> starTrees = new ArrayList<>(numStarTrees);
     for (int i = 0; i < numStarTrees; i++) {
       SegmentDirectory.Reader indexReader = segmentReader.getStarTreeIndexReader(i);
-      // Load star-tree index
-      StarTree starTree = new OffHeapStarTree(indexReader.getIndexFor(String.valueOf(i), StandardIndexes.inverted()));
-
       StarTreeV2Metadata starTreeMetadata = starTreeMetadataList.get(i);
-      int numDocs = starTreeMetadata.getNumDocs();
-      Map<String, DataSource> dataSourceMap = new HashMap<>();
-
-      // Load dimension forward indexes
+      Map<String, PinotDataBuffer> forwardIndexBuffers = new HashMap<>();
       for (String dimension : starTreeMetadata.getDimensionsSplitOrder()) {
-        PinotDataBuffer forwardIndexDataBuffer = indexReader.getIndexFor(dimension, StandardIndexes.forward());
-        ColumnMetadata columnMetadata = segmentMetadata.getColumnMetadataFor(dimension);
-        FixedBitSVForwardIndexReaderV2 forwardIndex =
-            new FixedBitSVForwardIndexReaderV2(forwardIndexDataBuffer, numDocs, columnMetadata.getBitsPerElement());
-        dataSourceMap.put(dimension, new StarTreeDataSource(columnMetadata.getFieldSpec(), numDocs, forwardIndex,
-            indexContainerMap.get(dimension).getIndex(StandardIndexes.dictionary())));
+        forwardIndexBuffers.put(dimension, indexReader.getIndexFor(dimension, StandardIndexes.forward()));
       }
-
-      // Load metric (function-column pair) forward indexes
       for (AggregationFunctionColumnPair functionColumnPair : starTreeMetadata.getFunctionColumnPairs()) {
         String metric = functionColumnPair.toColumnName();
-        PinotDataBuffer forwardIndexDataBuffer = indexReader.getIndexFor(metric, StandardIndexes.forward());
-        DataType dataType = ValueAggregatorFactory.getAggregatedValueType(functionColumnPair.getFunctionType());
-        FieldSpec fieldSpec = new MetricFieldSpec(metric, dataType);
-        ForwardIndexReader<?> forwardIndex = ForwardIndexReaderFactory.getInstance()
-            .createRawIndexReader(forwardIndexDataBuffer, dataType.getStoredType(), true);
-        dataSourceMap.put(metric, new StarTreeDataSource(fieldSpec, numDocs, forwardIndex, null));
+        forwardIndexBuffers.put(metric, indexReader.getIndexFor(metric, StandardIndexes.forward()));
       }
+      starTrees.add(loadStarTreeV2(indexReader.getIndexFor(String.valueOf(i), StandardIndexes.inverted()),
+          forwardIndexBuffers, starTreeMetadata, segmentMetadata,
+          dimension -> indexContainerMap.get(dimension).getIndex(StandardIndexes.dictionary())));
+    }
+    return starTrees;
+  }
 
-      starTrees.add(new StarTreeV2() {
-        @Override
-        public StarTree getStarTree() {
-          return starTree;
-        }
+  /**
+   * Loads a single star-tree from the buffers of the star-tree index and the forward indexes (keyed by the dimension or
+   * the function-column pair column name).
+   */
+  public static StarTreeV2 loadStarTreeV2(PinotDataBuffer starTreeBuffer,
+      Map<String, PinotDataBuffer> forwardIndexBuffers, StarTreeV2Metadata starTreeMetadata,
+      SegmentMetadata segmentMetadata, Function<String, Dictionary> dictionaryProvider) {
+    // Load star-tree index
+    StarTree starTree = new OffHeapStarTree(starTreeBuffer);
 
-        @Override
-        public StarTreeV2Metadata getMetadata() {
-          return starTreeMetadata;
-        }
+    int numDocs = starTreeMetadata.getNumDocs();
+    Map<String, DataSource> dataSourceMap = new HashMap<>();
 
-        @Override
-        public DataSource getDataSource(String columnName) {
-          return dataSourceMap.get(columnName);
-        }
+    // Load dimension forward indexes
+    for (String dimension : starTreeMetadata.getDimensionsSplitOrder()) {
+      PinotDataBuffer forwardIndexDataBuffer = forwardIndexBuffers.get(dimension);
+      ColumnMetadata columnMetadata = segmentMetadata.getColumnMetadataFor(dimension);
+      FixedBitSVForwardIndexReaderV2 forwardIndex =
+          new FixedBitSVForwardIndexReaderV2(forwardIndexDataBuffer, numDocs, columnMetadata.getBitsPerElement());
+      dataSourceMap.put(dimension, new StarTreeDataSource(columnMetadata.getFieldSpec(), numDocs, forwardIndex,
+          dictionaryProvider.apply(dimension)));
+    }
 
-        @Override
-        public void close()
-            throws IOException {
-          // NOTE: Close the indexes managed by the star-tree (dictionary is managed inside the ColumnIndexContainer).
-          for (DataSource dataSource : dataSourceMap.values()) {
-            // Forward index cannot be null here
-            dataSource.getForwardIndex().close();
-          }
-        }
-      });
+    // Load metric (function-column pair) forward indexes
+    for (AggregationFunctionColumnPair functionColumnPair : starTreeMetadata.getFunctionColumnPairs()) {
+      String metric = functionColumnPair.toColumnName();
+      PinotDataBuffer forwardIndexDataBuffer = forwardIndexBuffers.get(metric);
+      DataType dataType = ValueAggregatorFactory.getAggregatedValueType(functionColumnPair.getFunctionType());
+      FieldSpec fieldSpec = new MetricFieldSpec(metric, dataType);
+      ForwardIndexReader<?> forwardIndex = ForwardIndexReaderFactory.getInstance()
+          .createRawIndexReader(forwardIndexDataBuffer, dataType.getStoredType(), true);
+      dataSourceMap.put(metric, new StarTreeDataSource(fieldSpec, numDocs, forwardIndex, null));
     }
-    return starTrees;
+
+    return new StarTreeV2() {
+      @Override
+      public StarTree getStarTree() {
+        return starTree;
+      }
+
+      @Override
+      public StarTreeV2Metadata getMetadata() {
+        return starTreeMetadata;
+      }
+
+      @Override
+      public DataSource getDataSource(String columnName) {
+        return dataSourceMap.get(columnName);
+      }
+
+      @Override
+      public void close()
+          throws IOException {
+        // NOTE: Close the indexes managed by the star-tree (dictionary is managed inside the ColumnIndexContainer).
+        for (DataSource dataSource : dataSourceMap.values()) {
+          // Forward index cannot be null here
+          dataSource.getForwardIndex().close();
+        }
+      }
+    };
   }
 }
@@ -0,0 +1,879 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.upsert;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.commons.io.FileUtils;
+import org.apache.helix.HelixManager;
+import org.apache.pinot.common.metrics.ServerMeter;
+import org.apache.pinot.segment.local.data.manager.TableDataManager;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentImpl;
+import org.apache.pinot.segment.local.segment.index.loader.IndexLoadingConfig;
+import org.apache.pinot.segment.local.segment.readers.PrimaryKeyReader;
+import org.apache.pinot.segment.local.utils.HashUtils;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.MutableSegment;
+import org.apache.pinot.segment.spi.V1Constants;
+import org.apache.pinot.segment.spi.index.mutable.ThreadSafeMutableRoaringBitmap;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.apache.pinot.spi.config.table.HashFunction;
+import org.apache.pinot.spi.data.FieldSpec;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.data.readers.PrimaryKey;
+import org.apache.pinot.spi.utils.ByteArray;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+
+/**
+ * Implementation of {@link PartitionUpsertMetadataManager} that is backed by an {@link OffHeapPrimaryKeyIndex}, which
+ * keeps the primary key to record location mapping in off-heap memory to reduce the heap usage and GC pressure for
+ * tables with a large number of primary keys.
+ *
+ * <p>Each primary key is stored as a 128-bit hash, and the record location is packed as (segment id, doc id, comparison
+ * value), where segment id is assigned by this manager and reference counted by the number of keys pointing to the
+ * segment. Because the comparison value is packed as a long, only a single numeric (INT, LONG, FLOAT, DOUBLE)
+ * comparison column is supported.
+ *
+ * <p>The previous record locations are not tracked, so this manager cannot be used for the tables that can have
+ * inconsistent metadata during consumption (see {@link UpsertContext#isTableTypeInconsistentDuringConsumption()}).
+ * {@link OffHeapTableUpsertMetadataManager} falls back to {@link ConcurrentMapPartitionUpsertMetadataManager} for such
+ * tables.
+ *
+ * <p>When {@link #CHECKPOINT_ENABLED_KEY} is set in the metadata manager configs (requires snapshot), a checkpoint of
+ * the primary key index for the immutable segments is persisted along with the validDocIds snapshots. When preloading
+ * the segments after server restart, the checkpoint is memory mapped and loaded back into the index, and the segments
+ * in the checkpoint are added without reading their primary key and comparison columns. The keys of the consuming
+ * segment are not checkpointed because they are re-ingested from the stream after restart.
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+@ThreadSafe
+public class OffHeapPartitionUpsertMetadataManager extends BasePartitionUpsertMetadataManager {
+  public static final String INITIAL_CAPACITY_KEY = "offHeapIndexInitialCapacity";
+  public static final int DEFAULT_INITIAL_CAPACITY = 1 << 16;
+  public static final String CHECKPOINT_ENABLED_KEY = "offHeapIndexCheckpointEnabled";
+
+  static final String CHECKPOINT_FILE_PREFIX = "upsert.pk.index.checkpoint.partition.";
+  private static final int CHECKPOINT_VERSION = 1;
+  // Key hash (16 bytes), segment id (4 bytes), doc id (4 bytes), comparison value (8 bytes)
+  private static final int CHECKPOINT_ENTRY_SIZE = 32;
+
+  private final DataType _comparisonValueType;
+  private final boolean _integralComparisonValue;
+
+  // All the accesses to the index and the segment registry are guarded by the index lock
+  private final OffHeapPrimaryKeyIndex _primaryKeyIndex;
+  private final Map<IndexSegment, SegmentEntry> _segmentToEntryMap = new IdentityHashMap<>();
+  private final Int2ObjectOpenHashMap<SegmentEntry> _segmentIdToEntryMap = new Int2ObjectOpenHashMap<>();
+  private int _nextSegmentId = OffHeapPrimaryKeyIndex.EMPTY_SEGMENT_ID + 1;
+
+  private final boolean _checkpointEnabled;
+  // Segments in the loaded checkpoint, only set while preloading the segments (guarded by the index lock)
+  private Map<String, RestoredSegment> _restoredSegmentMap;
+
+  public OffHeapPartitionUpsertMetadataManager(String tableNameWithType, int partitionId, UpsertContext context) {
+    super(tableNameWithType, partitionId, context);
+    Preconditions.checkState(isSupported(context), "Off-heap upsert metadata is not supported for table: %s",
+        tableNameWithType);
+    _comparisonValueType = getComparisonValueType(context);
+    _integralComparisonValue = _comparisonValueType == DataType.INT || _comparisonValueType == DataType.LONG;
+    int initialCapacity = DEFAULT_INITIAL_CAPACITY;
+    boolean checkpointEnabled = false;
+    Map<String, String> metadataManagerConfigs = context.getMetadataManagerConfigs();
+    if (metadataManagerConfigs != null) {
+      if (metadataManagerConfigs.containsKey(INITIAL_CAPACITY_KEY)) {
+        initialCapacity = Integer.parseInt(metadataManagerConfigs.get(INITIAL_CAPACITY_KEY));
+      }
+      checkpointEnabled = Boolean.parseBoolean(metadataManagerConfigs.get(CHECKPOINT_ENABLED_KEY));
+    }
+    _primaryKeyIndex = new OffHeapPrimaryKeyIndex(initialCapacity,
+        "OffHeapPrimaryKeyIndex for table: " + tableNameWithType + ", partition: " + partitionId);
+    _checkpointEnabled = checkpointEnabled && _enableSnapshot && _tableIndexDir != null;
+    if (!_checkpointEnabled && _tableIndexDir != null) {
+      // Remove the stale checkpoint so that it won't be loaded after the checkpoint is re-enabled
+      FileUtils.deleteQuietly(getCheckpointFile());
+    }
+  }
+
+  /**
+   * Returns whether the off-heap upsert metadata can be used for the given upsert context.
+   */
+  public static boolean isSupported(UpsertContext context) {
+    return !context.isTableTypeInconsistentDuringConsumption() && !context.isEnableDeletedKeysCompactionConsistency()
+        && context.getComparisonColumns().size() == 1 && getComparisonValueType(context) != null;
+  }
+
+  @Nullable
+  private static DataType getComparisonValueType(UpsertContext context) {
+    FieldSpec fieldSpec = context.getSchema().getFieldSpecFor(context.getComparisonColumns().get(0));
+    if (fieldSpec == null || !fieldSpec.isSingleValueField()) {
+      return null;
+    }
+    DataType storedType = fieldSpec.getDataType().getStoredType();
+    switch (storedType) {
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+        return storedType;
+      default:
+        return null;
+    }
+  }
+
+  @Override
+  protected long getNumPrimaryKeys() {
+    synchronized (_primaryKeyIndex) {
+      return _primaryKeyIndex.size();
+    }
+  }
+
+  @VisibleForTesting
+  int getNumTrackedSegmentIds() {
+    synchronized (_primaryKeyIndex) {
+      return _segmentIdToEntryMap.size();
+    }
+  }
+
+  @Override
+  protected void doPreloadSegments(TableDataManager tableDataManager, IndexLoadingConfig indexLoadingConfig,
+      HelixManager helixManager, ExecutorService segmentPreloadExecutor)
+      throws Exception {
+    if (_checkpointEnabled) {
+      loadCheckpoint();
+    }
+    try {
+      super.doPreloadSegments(tableDataManager, indexLoadingConfig, helixManager, segmentPreloadExecutor);
+    } finally {
+      if (_checkpointEnabled) {
+        finishCheckpointRestore();
+      }
+    }
+  }
+
+  @Override
+  void doPreloadSegment(ImmutableSegmentImpl segment, @Nullable ThreadSafeMutableRoaringBitmap validDocIds,
+      @Nullable ThreadSafeMutableRoaringBitmap queryableDocIds, Iterator<RecordInfo> recordInfoIterator) {
+    if (validDocIds == null) {
+      validDocIds = new ThreadSafeMutableRoaringBitmap();
+    }
+    if (queryableDocIds == null && _deleteRecordColumn != null) {
+      queryableDocIds = new ThreadSafeMutableRoaringBitmap();
+    }
+    if (!restoreSegmentFromCheckpoint(segment, validDocIds, queryableDocIds)) {
+      addSegmentWithoutUpsert(segment, validDocIds, queryableDocIds, recordInfoIterator);
+    }
+  }
+
+  @Override
+  protected void doAddOrReplaceSegment(ImmutableSegmentImpl segment, ThreadSafeMutableRoaringBitmap validDocIds,
+      @Nullable ThreadSafeMutableRoaringBitmap queryableDocIds, Iterator<RecordInfo> recordInfoIterator,
+      @Nullable IndexSegment oldSegment, @Nullable MutableRoaringBitmap validDocIdsForOldSegment) {
+    String segmentName = segment.getSegmentName();
+    segment.enableUpsert(this, validDocIds, queryableDocIds);
+
+    int numKeysInWrongSegment = 0;
+    while (recordInfoIterator.hasNext()) {
+      RecordInfo recordInfo = recordInfoIterator.next();
+      byte[] keyHash = getKeyHash(recordInfo.getPrimaryKey());
+      int newDocId = recordInfo.getDocId();
+      Comparable newComparisonValue = recordInfo.getComparisonValue();
+      synchronized (_primaryKeyIndex) {
+        int slot = _primaryKeyIndex.find(keyHash);
+        if (slot < 0) {
+          // New primary key
+          addDocId(segment, validDocIds, queryableDocIds, newDocId, recordInfo);
+          insert(keyHash, segment, newDocId, newComparisonValue);
+          continue;
+        }
+
+        // Existing primary key
+        IndexSegment currentSegment = getSegment(slot);
+        int currentDocId = _primaryKeyIndex.getDocId(slot);
+        int comparisonResult = compare(newComparisonValue, _primaryKeyIndex.getComparisonValue(slot));
+
+        // The current record is in the same segment
+        // Update the record location when there is a tie to keep the newer record. Note that the record info iterator
+        // will return records with incremental doc ids.
+        if (currentSegment == segment) {
+          if (comparisonResult >= 0) {
+            replaceDocId(segment, validDocIds, queryableDocIds, currentDocId, newDocId, recordInfo);
+            setRecordLocation(slot, segment, newDocId, newComparisonValue);
+          }
+          continue;
+        }
+
+        // The current record is in an old segment being replaced
+        // This could happen when committing a consuming segment, or reloading a completed segment. In this case, we
+        // want to update the record location when there is a tie because the record locations should point to the new
+        // added segment instead of the old segment being replaced. Also, do not update the valid doc ids for the old
+        // segment because it has not been replaced yet. We pass in an optional valid doc ids snapshot for the old
+        // segment, which can be updated and used to track the docs not replaced yet.
+        if (currentSegment == oldSegment) {
+          if (comparisonResult >= 0) {
+            if (validDocIdsForOldSegment == null && oldSegment.getValidDocIds() != null) {
+              // Update the old segment's bitmap in place if a copy of the bitmap was not provided.
+              replaceDocId(segment, validDocIds, queryableDocIds, oldSegment, currentDocId, newDocId, recordInfo);
+            } else {
+              addDocId(segment, validDocIds, queryableDocIds, newDocId, recordInfo);
+              if (validDocIdsForOldSegment != null) {
+                validDocIdsForOldSegment.remove(currentDocId);
+              }
+            }
+            setRecordLocation(slot, segment, newDocId, newComparisonValue);
+          }
+          continue;
+        }
+
+        // This should not happen because the previously replaced segment should have all keys removed. We still
+        // handle it here, and also track the number of keys not properly replaced previously.
+        String currentSegmentName = currentSegment.getSegmentName();
+        if (currentSegmentName.equals(segmentName)) {
+          numKeysInWrongSegment++;
+          if (comparisonResult >= 0) {
+            addDocId(segment, validDocIds, queryableDocIds, newDocId, recordInfo);
+            setRecordLocation(slot, segment, newDocId, newComparisonValue);
+          }
+          continue;
+        }
+
+        // The current record is in a different segment
+        // Update the record location when getting a newer comparison value, or the value is the same as the current
+        // value, but the segment has a larger sequence number (the segment is newer than the current segment).
+        if (comparisonResult > 0 || (comparisonResult == 0 && shouldReplaceOnComparisonTie(segmentName,
+            currentSegmentName, getAuthoritativeUpdateOrCreationTime(segment),
+            getAuthoritativeUpdateOrCreationTime(currentSegment)))) {
+          replaceDocId(segment, validDocIds, queryableDocIds, currentSegment, currentDocId, newDocId, recordInfo);
+          setRecordLocation(slot, segment, newDocId, newComparisonValue);
+        }
+      }
+    }
+    if (numKeysInWrongSegment > 0) {
+      _logger.warn("Found {} primary keys in the wrong segment when adding segment: {}", numKeysInWrongSegment,
+          segmentName);
+      _serverMetrics.addMeteredTableValue(_tableNameWithType, ServerMeter.UPSERT_KEYS_IN_WRONG_SEGMENT,
+          numKeysInWrongSegment);
+    }
+  }
+
+  @Override
+  protected void addSegmentWithoutUpsert(ImmutableSegmentImpl segment, ThreadSafeMutableRoaringBitmap validDocIds,
+      @Nullable ThreadSafeMutableRoaringBitmap queryableDocIds, Iterator<RecordInfo> recordInfoIterator) {
+    segment.enableUpsert(this, validDocIds, queryableDocIds);
+    while (recordInfoIterator.hasNext()) {
+      RecordInfo recordInfo = recordInfoIterator.next();
+      byte[] keyHash = getKeyHash(recordInfo.getPrimaryKey());
+      int newDocId = recordInfo.getDocId();
+      Comparable newComparisonValue = recordInfo.getComparisonValue();
+      addDocId(segment, validDocIds, queryableDocIds, newDocId, recordInfo);
+      synchronized (_primaryKeyIndex) {
+        int slot = _primaryKeyIndex.find(keyHash);
+        if (slot < 0) {
+          insert(keyHash, segment, newDocId, newComparisonValue);
+        } else {
+          setRecordLocation(slot, segment, newDocId, newComparisonValue);
+        }
+      }
+    }
+  }
+
+  @Override
+  protected void removeSegment(IndexSegment segment, Iterator<PrimaryKey> primaryKeyIterator) {
+    while (primaryKeyIterator.hasNext()) {
+      byte[] keyHash = getKeyHash(primaryKeyIterator.next());
+      synchronized (_primaryKeyIndex) {
+        int slot = _primaryKeyIndex.find(keyHash);
+        if (slot >= 0 && getSegment(slot) == segment) {
+          remove(slot);
+        }
+      }
+    }
+  }
+
+  @Override
+  protected void revertAndRemoveSegment(IndexSegment segment,
+      Iterator<Map.Entry<Integer, PrimaryKey>> primaryKeyIterator) {
+    // Previous record locations are not tracked because this manager is not used for the tables that can have
+    // inconsistent metadata during consumption, so simply remove the keys
+    while (primaryKeyIterator.hasNext()) {
+      byte[] keyHash = getKeyHash(primaryKeyIterator.next().getValue());
+      synchronized (_primaryKeyIndex) {
+        int slot = _primaryKeyIndex.find(keyHash);
+        if (slot >= 0 && getSegment(slot) == segment) {
+          remove(slot);
+        }
+      }
+    }
+  }
+
+  @Override
+  protected void removeSegment(IndexSegment segment, MutableRoaringBitmap validDocIds) {
+    try (PrimaryKeyReader primaryKeyReader = new PrimaryKeyReader(segment, _primaryKeyColumns)) {
+      if (shouldRevertMetadataOnInconsistency(segment)) {
+        revertAndRemoveSegment(segment, UpsertUtils.getRecordIterator(primaryKeyReader, validDocIds));
+      } else {
+        removeSegment(segment, UpsertUtils.getPrimaryKeyIterator(primaryKeyReader, validDocIds));
+      }
+    } catch (Exception e) {
+      throw new RuntimeException(
+          String.format("Caught exception while removing segment: %s, table: %s, message: %s", segment.getSegmentName(),
+              _tableNameWithType, e.getMessage()), e);
+    }
+  }
+
+  @Override
+  public void doRemoveExpiredPrimaryKeys() {
+    int numMetadataTTLKeysRemoved = 0;
+    int numDeletedTTLKeysRemoved = 0;
+    int numTotalKeysMarkForDeletion = 0;
+    int numDeletedKeysWithinTTLWindow = 0;
+    double largestSeenComparisonValue = _largestSeenComparisonValue.get();
+    double metadataTTLKeysThreshold =
+        _metadataTTL > 0 ? largestSeenComparisonValue - _metadataTTL : Double.NEGATIVE_INFINITY;
+    double deletedKeysThreshold =
+        _deletedKeysTTL > 0 ? largestSeenComparisonValue - _deletedKeysTTL : Double.NEGATIVE_INFINITY;
+    synchronized (_primaryKeyIndex) {
+      int numSlots = _primaryKeyIndex.capacity();
+      int slot = _primaryKeyIndex.getIterationStartSlot();
+      int numSlotsVisited = 0;
+      while (numSlotsVisited < numSlots) {
+        if (_primaryKeyIndex.isOccupied(slot)) {
+          double comparisonValue = toDouble(_primaryKeyIndex.getComparisonValue(slot));
+          if (_metadataTTL > 0 && comparisonValue < metadataTTLKeysThreshold) {
+            remove(slot);
+            numMetadataTTLKeysRemoved++;
+            // The following entries in the same cluster might be shifted into this slot, so re-check the same slot
+            continue;
+          } else if (_deletedKeysTTL > 0) {
+            IndexSegment segment = getSegment(slot);
+            int docId = _primaryKeyIndex.getDocId(slot);
+            ThreadSafeMutableRoaringBitmap currentQueryableDocIds = segment.getQueryableDocIds();
+            // if key not part of queryable doc id, it means it is deleted
+            if (currentQueryableDocIds != null && !currentQueryableDocIds.contains(docId)) {
+              numTotalKeysMarkForDeletion++;
+              if (comparisonValue >= deletedKeysThreshold) {
+                // If key is within the TTL window, do not remove it from the primary key index
+                numDeletedKeysWithinTTLWindow++;
+              } else {
+                // delete key from primary key index
+                remove(slot);
+                removeDocId(segment, docId);
+                numDeletedTTLKeysRemoved++;
+                continue;
+              }
+            }
+          }
+        }
+        slot = _primaryKeyIndex.nextSlot(slot);
+        numSlotsVisited++;
+      }
+    }
+
+    // Update metrics
+    updatePrimaryKeyGauge();
+    if (numMetadataTTLKeysRemoved > 0) {
+      _logger.info("Deleted {} primary keys based on metadataTTL", numMetadataTTLKeysRemoved);
+      _serverMetrics.addMeteredTableValue(_tableNameWithType, ServerMeter.METADATA_TTL_PRIMARY_KEYS_REMOVED,
+          numMetadataTTLKeysRemoved);
+    }
+    if (numDeletedTTLKeysRemoved > 0) {
+      _logger.info("Deleted {} primary keys based on deletedKeysTTL", numDeletedTTLKeysRemoved);
+      _serverMetrics.addMeteredTableValue(_tableNameWithType, ServerMeter.DELETED_KEYS_TTL_PRIMARY_KEYS_REMOVED,
+          numDeletedTTLKeysRemoved);
+    }
+    if (numTotalKeysMarkForDeletion > 0) {
+      _serverMetrics.addMeteredTableValue(_tableNameWithType, ServerMeter.TOTAL_KEYS_MARKED_FOR_DELETION,
+          numTotalKeysMarkForDeletion);
+    }
+    if (numDeletedKeysWithinTTLWindow > 0) {
+      _serverMetrics.addMeteredTableValue(_tableNameWithType, ServerMeter.DELETED_KEYS_WITHIN_TTL_WINDOW,
+          numDeletedKeysWithinTTLWindow);
+    }
+  }
+
+  @Override
+  protected int getPrevKeyToRecordLocationSize() {
+    // Previous record locations are not tracked
+    return 0;
+  }
+
+  @Override
+  protected void clearPrevKeyToRecordLocation() {
+  }
+
+  @Override
+  protected boolean doAddRecord(MutableSegment segment, RecordInfo recordInfo) {
+    ThreadSafeMutableRoaringBitmap validDocIds = Objects.requireNonNull(segment.getValidDocIds());
+    ThreadSafeMutableRoaringBitmap queryableDocIds = segment.getQueryableDocIds();
+    int newDocId = recordInfo.getDocId();
+    Comparable newComparisonValue = recordInfo.getComparisonValue();
+
+    // When TTL is enabled, update largestSeenComparisonValue when adding new record
+    if (isTTLEnabled()) {
+      double comparisonValue = ((Number) newComparisonValue).doubleValue();
+      _largestSeenComparisonValue.getAndUpdate(v -> Math.max(v, comparisonValue));
+    }
+    byte[] keyHash = getKeyHash(recordInfo.getPrimaryKey());
+    boolean isOutOfOrderRecord = false;
+    synchronized (_primaryKeyIndex) {
+      int slot = _primaryKeyIndex.find(keyHash);
+      if (slot >= 0) {
+        // Existing primary key
+        long currentComparisonValue = _primaryKeyIndex.getComparisonValue(slot);
+        // Update the record location when the new comparison value is greater than or equal to the current value.
+        // Update the record location when there is a tie to keep the newer record.
+        if (compare(newComparisonValue, currentComparisonValue) >= 0) {
+          IndexSegment currentSegment = getSegment(slot);
+          int currentDocId = _primaryKeyIndex.getDocId(slot);
+          if (segment == currentSegment) {
+            replaceDocId(segment, validDocIds, queryableDocIds, currentDocId, newDocId, recordInfo);
+          } else {
+            replaceDocId(segment, validDocIds, queryableDocIds, currentSegment, currentDocId, newDocId, recordInfo);
+          }
+          setRecordLocation(slot, segment, newDocId, newComparisonValue);
+        } else {
+          // Out-of-order record
+          handleOutOfOrderEvent(decode(currentComparisonValue), newComparisonValue);
+          isOutOfOrderRecord = true;
+        }
+      } else {
+        // New primary key
+        addDocId(segment, validDocIds, queryableDocIds, newDocId, recordInfo);
+        insert(keyHash, segment, newDocId, newComparisonValue);
+      }
+    }
+
+    updatePrimaryKeyGauge();
+    return !isOutOfOrderRecord;
+  }
+
+  @Override
+  protected GenericRow doUpdateRecord(GenericRow record, RecordInfo recordInfo) {
+    // Partial upsert tables are inconsistent during consumption, which is not supported (see isSupported())
+    throw new IllegalStateException("Partial upsert is not supported by the off-heap upsert metadata manager");
+  }
+
+  @Override
+  protected void doTakeSnapshot() {
+    super.doTakeSnapshot();
+    if (_checkpointEnabled) {
+      writeCheckpoint();
+    }
+  }
+
+  @Override
+  protected void doClose()
+      throws IOException {
+    synchronized (_primaryKeyIndex) {
+      _primaryKeyIndex.close();
+      _segmentToEntryMap.clear();
+      _segmentIdToEntryMap.clear();
+    }
+  }
+
+  @VisibleForTesting
+  File getCheckpointFile() {
+    return new File(_tableIndexDir, CHECKPOINT_FILE_PREFIX + _partitionId);
+  }
+
+  private static String getCrc(IndexSegment segment) {
+    String crc = segment.getSegmentMetadata().getCrc();
+    return crc != null ? crc : "";
+  }
+
+  /**
+   * Persists the primary key index for the immutable segments into the checkpoint file. The checkpoint is only written
+   * when the validDocIds snapshots of all the immutable segments are up-to-date, otherwise the stale checkpoint is
+   * removed.
+   */
+  private void writeCheckpoint() {
+    File checkpointFile = getCheckpointFile();
+    for (IndexSegment segment : _updatedSegmentsSinceLastSnapshot) {
+      if (segment instanceof ImmutableSegmentImpl) {
+        _logger.warn("Skip writing primary key index checkpoint because segment: {} is not snapshotted",
+            segment.getSegmentName());
+        FileUtils.deleteQuietly(checkpointFile);
+        return;
+      }
+    }
+    long startTimeMs = System.currentTimeMillis();
+    File tempFile = new File(checkpointFile.getPath() + ".tmp");
+    int numEntries = 0;
+    try {
+      synchronized (_primaryKeyIndex) {
+        List<SegmentEntry> segmentEntries = new ArrayList<>();
+        IntOpenHashSet segmentIds = new IntOpenHashSet();
+        for (SegmentEntry segmentEntry : _segmentIdToEntryMap.values()) {
+          if (segmentEntry._segment instanceof ImmutableSegmentImpl) {
+            segmentEntries.add(segmentEntry);
+            segmentIds.add(segmentEntry._segmentId);
+            numEntries += segmentEntry._numKeys;
+          }
+        }
+        try (DataOutputStream outputStream = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+          outputStream.writeInt(CHECKPOINT_VERSION);
+          outputStream.writeInt(_nextSegmentId);
+          outputStream.writeInt(segmentEntries.size());
+          for (SegmentEntry segmentEntry : segmentEntries) {
+            outputStream.writeInt(segmentEntry._segmentId);
+            writeString(outputStream, segmentEntry._segment.getSegmentName());
+            writeString(outputStream, getCrc(segmentEntry._segment));
+          }
+          outputStream.writeInt(numEntries);
+          int numSlots = _primaryKeyIndex.capacity();
+          for (int slot = 0; slot < numSlots; slot++) {
+            if (_primaryKeyIndex.isOccupied(slot) && segmentIds.contains(_primaryKeyIndex.getSegmentId(slot))) {
+              outputStream.writeLong(_primaryKeyIndex.getKeyHigh(slot));
+              outputStream.writeLong(_primaryKeyIndex.getKeyLow(slot));
+              outputStream.writeInt(_primaryKeyIndex.getSegmentId(slot));
+              outputStream.writeInt(_primaryKeyIndex.getDocId(slot));
+              outputStream.writeLong(_primaryKeyIndex.getComparisonValue(slot));
+            }
+          }
+        }
+      }
+      Files.move(tempFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      _logger.info("Wrote primary key index checkpoint with {} primary keys in {}ms", numEntries,
+          System.currentTimeMillis() - startTimeMs);
+    } catch (Exception e) {
+      _logger.warn("Caught exception while writing primary key index checkpoint, removing it", e);
+      FileUtils.deleteQuietly(tempFile);
+      FileUtils.deleteQuietly(checkpointFile);
+    }
+  }
+
+  private static void writeString(DataOutputStream outputStream, String value)
+      throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    outputStream.writeInt(bytes.length);
+    outputStream.write(bytes);
+  }
+
+  /**
+   * Loads the checkpoint (if exists) into the primary key index by memory mapping the checkpoint file. The keys are
+   * assigned to placeholder segment entries, which are bound to the segments when they are preloaded.
+   */
+  @VisibleForTesting
+  void loadCheckpoint() {
+    File checkpointFile = getCheckpointFile();
+    if (!checkpointFile.exists()) {
+      _logger.info("No primary key index checkpoint to load");
+      return;
+    }
+    long startTimeMs = System.currentTimeMillis();
+    synchronized (_primaryKeyIndex) {
+      try (PinotDataBuffer buffer = PinotDataBuffer.mapReadOnlyBigEndianFile(checkpointFile)) {
+        long offset = 0;
+        int version = buffer.getInt(offset);
+        Preconditions.checkState(version == CHECKPOINT_VERSION, "Unsupported checkpoint version: %s", version);
+        int nextSegmentId = buffer.getInt(offset + Integer.BYTES);
+        int numSegments = buffer.getInt(offset + 2 * Integer.BYTES);
+        offset += 3 * Integer.BYTES;
+        Map<String, RestoredSegment> restoredSegmentMap = new HashMap<>();
+        for (int i = 0; i < numSegments; i++) {
+          int segmentId = buffer.getInt(offset);
+          offset += Integer.BYTES;
+          byte[] segmentNameBytes = new byte[buffer.getInt(offset)];
+          buffer.copyTo(offset + Integer.BYTES, segmentNameBytes);
+          offset += Integer.BYTES + segmentNameBytes.length;
+          byte[] crcBytes = new byte[buffer.getInt(offset)];
+          buffer.copyTo(offset + Integer.BYTES, crcBytes);
+          offset += Integer.BYTES + crcBytes.length;
+          restoredSegmentMap.put(new String(segmentNameBytes, StandardCharsets.UTF_8),
+              new RestoredSegment(segmentId, new String(crcBytes, StandardCharsets.UTF_8)));
+        }
+        int numEntries = buffer.getInt(offset);
+        offset += Integer.BYTES;
+        Preconditions.checkState(buffer.size() == offset + (long) numEntries * CHECKPOINT_ENTRY_SIZE,
+            "Checkpoint file size: %s does not match the number of entries: %s", buffer.size(), numEntries);
+
+        Int2IntOpenHashMap segmentIdToNumKeysMap = new Int2IntOpenHashMap();
+        for (RestoredSegment restoredSegment : restoredSegmentMap.values()) {
+          segmentIdToNumKeysMap.put(restoredSegment._segmentId, 0);
+        }
+        _primaryKeyIndex.ensureCapacity(numEntries);
+        for (int i = 0; i < numEntries; i++) {
+          int segmentId = buffer.getInt(offset + 16);
+          Preconditions.checkState(segmentIdToNumKeysMap.containsKey(segmentId), "Unknown segment id: %s", segmentId);
+          segmentIdToNumKeysMap.addTo(segmentId, 1);
+          _primaryKeyIndex.insert(buffer.getLong(offset), buffer.getLong(offset + 8), segmentId,
+              buffer.getInt(offset + 20), buffer.getLong(offset + 24));
+          offset += CHECKPOINT_ENTRY_SIZE;
+        }
+        for (Int2IntOpenHashMap.Entry entry : segmentIdToNumKeysMap.int2IntEntrySet()) {
+          if (entry.getIntValue() > 0) {
+            SegmentEntry segmentEntry = new SegmentEntry(entry.getIntKey(), null);
+            segmentEntry._numKeys = entry.getIntValue();
+            _segmentIdToEntryMap.put(entry.getIntKey(), segmentEntry);
+          }
+        }
+        _nextSegmentId = nextSegmentId;
+        _restoredSegmentMap = restoredSegmentMap;
+        _logger.info("Loaded primary key index checkpoint with {} primary keys from {} segments in {}ms", numEntries,
+            numSegments, System.currentTimeMillis() - startTimeMs);
+      } catch (Exception e) {
+        _logger.warn("Caught exception while loading primary key index checkpoint, skipping", e);
+        _primaryKeyIndex.clear();
+        _segmentIdToEntryMap.clear();
+      }
+    }
+  }
+
+  /**
+   * Binds the segment to the keys loaded from the checkpoint. Returns {@code false} if the segment is not in the
+   * checkpoint, or has been changed after the checkpoint was taken, in which case the segment should be preloaded by
+   * reading the primary keys.
+   */
+  private boolean restoreSegmentFromCheckpoint(ImmutableSegmentImpl segment,
+      ThreadSafeMutableRoaringBitmap validDocIds, @Nullable ThreadSafeMutableRoaringBitmap queryableDocIds) {
+    String segmentName = segment.getSegmentName();
+    synchronized (_primaryKeyIndex) {
+      if (_restoredSegmentMap == null) {
+        return false;
+      }
+      RestoredSegment restoredSegment = _restoredSegmentMap.get(segmentName);
+      if (restoredSegment == null || restoredSegment._validDocIds != null || !restoredSegment._crc.equals(
+          getCrc(segment))) {
+        return false;
+      }
+      MutableRoaringBitmap queryableDocIdsSnapshot = null;
+      if (queryableDocIds != null) {
+        queryableDocIdsSnapshot = segment.loadDocIdsFromSnapshot(V1Constants.QUERYABLE_DOC_IDS_SNAPSHOT_FILE_NAME);
+        if (queryableDocIdsSnapshot == null) {
+          return false;
+        }
+      }
+      // The valid doc ids are filled after all the segments are preloaded
+      restoredSegment._validDocIds = validDocIds;
+      restoredSegment._queryableDocIds = queryableDocIds;
+      restoredSegment._queryableDocIdsSnapshot = queryableDocIdsSnapshot;
+      SegmentEntry segmentEntry = _segmentIdToEntryMap.get(restoredSegment._segmentId);
+      if (segmentEntry != null) {
+        segmentEntry._segment = segment;
+        _segmentToEntryMap.put(segment, segmentEntry);
+      }
+    }
+    segment.enableUpsert(this, validDocIds, queryableDocIds);
+    _logger.info("Restored segment: {} from primary key index checkpoint", segmentName);
+    return true;
+  }
+
+  /**
+   * Removes the keys of the segments not preloaded, and fills the valid doc ids of the segments restored from the
+   * checkpoint based on the primary key index.
+   */
+  @VisibleForTesting
+  void finishCheckpointRestore() {
+    synchronized (_primaryKeyIndex) {
+      Map<String, RestoredSegment> restoredSegmentMap = _restoredSegmentMap;
+      if (restoredSegmentMap == null) {
+        return;
+      }
+      _restoredSegmentMap = null;
+      Int2ObjectOpenHashMap<RestoredSegment> segmentIdToRestoredSegmentMap = new Int2ObjectOpenHashMap<>();
+      for (RestoredSegment restoredSegment : restoredSegmentMap.values()) {
+        if (restoredSegment._validDocIds != null) {
+          segmentIdToRestoredSegmentMap.put(restoredSegment._segmentId, restoredSegment);
+        }
+      }
+      int numKeysRemoved = 0;
+      int numSlots = _primaryKeyIndex.capacity();
+      int slot = _primaryKeyIndex.getIterationStartSlot();
+      int numSlotsVisited = 0;
+      while (numSlotsVisited < numSlots) {
+        if (_primaryKeyIndex.isOccupied(slot)) {
+          int segmentId = _primaryKeyIndex.getSegmentId(slot);
+          if (_segmentIdToEntryMap.get(segmentId)._segment == null) {
+            remove(slot);
+            numKeysRemoved++;
+            // The following entries in the same cluster might be shifted into this slot, so re-check the same slot
+            continue;
+          }
+          RestoredSegment restoredSegment = segmentIdToRestoredSegmentMap.get(segmentId);
+          if (restoredSegment != null) {
+            int docId = _primaryKeyIndex.getDocId(slot);
+            restoredSegment._validDocIds.add(docId);
+            if (restoredSegment._queryableDocIds != null && restoredSegment._queryableDocIdsSnapshot.contains(docId)) {
+              restoredSegment._queryableDocIds.add(docId);
+            }
+          }
+        }
+        slot = _primaryKeyIndex.nextSlot(slot);
+        numSlotsVisited++;
+      }
+      _logger.info("Restored {} segments from primary key index checkpoint, removed {} primary keys from the segments "
+          + "not preloaded", segmentIdToRestoredSegmentMap.size(), numKeysRemoved);
+    }
+  }
+
+  /**
+   * Returns the 128-bit hash of the primary key. The hash generated by the configured hash function is used when it is
+   * 128-bit, otherwise the primary key (or its hash) is hashed again with MURMUR3.
+   */
+  private byte[] getKeyHash(PrimaryKey primaryKey) {
+    byte[] bytes;
+    if (_hashFunction == HashFunction.NONE) {
+      bytes = primaryKey.asBytes();
+    } else {
+      bytes = ((ByteArray) HashUtils.hashPrimaryKey(primaryKey, _hashFunction)).getBytes();
+      if (bytes.length == OffHeapPrimaryKeyIndex.KEY_HASH_SIZE) {
+        return bytes;
+      }
+    }
+    return HashUtils.hashMurmur3(bytes);
+  }
+
+  private long encode(Comparable comparisonValue) {
+    Number number = (Number) comparisonValue;
+    return _integralComparisonValue ? number.longValue() : Double.doubleToLongBits(number.doubleValue());
+  }
+
+  private Comparable decode(long encodedValue) {
+    switch (_comparisonValueType) {
+      case INT:
+        return (int) encodedValue;
+      case LONG:
+        return encodedValue;
+      case FLOAT:
+        return (float) Double.longBitsToDouble(encodedValue);
+      case DOUBLE:
+        return Double.longBitsToDouble(encodedValue);
+      default:
+        throw new IllegalStateException("Unsupported comparison value type: " + _comparisonValueType);
+    }
+  }
+
+  private double toDouble(long encodedValue) {
+    return _integralComparisonValue ? encodedValue : Double.longBitsToDouble(encodedValue);
+  }
+
+  /**
+   * Compares the new comparison value with the encoded current comparison value, with the same semantic as
+   * {@link Comparable#compareTo(Object)} on the values.
+   */
+  private int compare(Comparable newComparisonValue, long currentEncodedValue) {
+    Number number = (Number) newComparisonValue;
+    return _integralComparisonValue ? Long.compare(number.longValue(), currentEncodedValue)
+        : Double.compare(number.doubleValue(), Double.longBitsToDouble(currentEncodedValue));
+  }
+
+  // The following methods must be invoked while holding the index lock
+
+  private IndexSegment getSegment(int slot) {
+    return _segmentIdToEntryMap.get(_primaryKeyIndex.getSegmentId(slot))._segment;
+  }
+
+  private void insert(byte[] keyHash, IndexSegment segment, int docId, Comparable comparisonValue) {
+    _primaryKeyIndex.insert(keyHash, acquireSegmentId(segment), docId, encode(comparisonValue));
+  }
+
+  private void setRecordLocation(int slot, IndexSegment segment, int docId, Comparable comparisonValue) {
+    int currentSegmentId = _primaryKeyIndex.getSegmentId(slot);
+    int segmentId;
+    if (_segmentIdToEntryMap.get(currentSegmentId)._segment == segment) {
+      segmentId = currentSegmentId;
+    } else {
+      segmentId = acquireSegmentId(segment);
+      releaseSegmentId(currentSegmentId);
+    }
+    _primaryKeyIndex.set(slot, segmentId, docId, encode(comparisonValue));
+  }
+
+  private void remove(int slot) {
+    releaseSegmentId(_primaryKeyIndex.getSegmentId(slot));
+    _primaryKeyIndex.remove(slot);
+  }
+
+  /**
+   * Returns the id of the segment, and increments the number of keys referencing it. The segment id is assigned when
+   * the first key references the segment, and is never reused to avoid resolving to a wrong segment.
+   */
+  private int acquireSegmentId(IndexSegment segment) {
+    SegmentEntry segmentEntry = _segmentToEntryMap.get(segment);
+    if (segmentEntry == null) {
+      int segmentId = _nextSegmentId++;
+      Preconditions.checkState(segmentId > OffHeapPrimaryKeyIndex.EMPTY_SEGMENT_ID, "Segment id overflow");
+      segmentEntry = new SegmentEntry(segmentId, segment);
+      _segmentToEntryMap.put(segment, segmentEntry);
+      _segmentIdToEntryMap.put(segmentId, segmentEntry);
+    }
+    segmentEntry._numKeys++;
+    return segmentEntry._segmentId;
+  }
+
+  /**
+   * Decrements the number of keys referencing the segment, and releases the segment when it is not referenced.
+   */
+  private void releaseSegmentId(int segmentId) {
+    SegmentEntry segmentEntry = _segmentIdToEntryMap.get(segmentId);
+    if (--segmentEntry._numKeys == 0) {
+      _segmentIdToEntryMap.remove(segmentId);
+      _segmentToEntryMap.remove(segmentEntry._segment);
+    }
+  }
+
+  private static class SegmentEntry {
+    final int _segmentId;
+    // Null for the segment loaded from the checkpoint but not preloaded yet
+    IndexSegment _segment;
+    int _numKeys;
+
+    SegmentEntry(int segmentId, @Nullable IndexSegment segment) {
+      _segmentId = segmentId;
+      _segment = segment;
+    }
+  }
+
+  private static class RestoredSegment {
+    final int _segmentId;
+    final String _crc;
+    ThreadSafeMutableRoaringBitmap _validDocIds;
+    ThreadSafeMutableRoaringBitmap _queryableDocIds;
+    MutableRoaringBitmap _queryableDocIdsSnapshot;
+
+    RestoredSegment(int segmentId, String crc) {
+      _segmentId = segmentId;
+      _crc = crc;
+    }
+  }
+}
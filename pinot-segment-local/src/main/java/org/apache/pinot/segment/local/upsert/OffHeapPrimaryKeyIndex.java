@@ -0,0 +1,286 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.upsert;
+
+import com.google.common.base.Preconditions;
+import java.io.Closeable;
+import java.io.IOException;
+import javax.annotation.concurrent.NotThreadSafe;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+
+
+/**
+ * Off-heap open-addressing hash table from 128-bit primary key hashes to the packed record locations, used by
+ * {@link OffHeapPartitionUpsertMetadataManager} to keep the upsert metadata out of the Java heap.
+ *
+ * <p>Each slot takes 32 bytes in a {@link PinotDataBuffer}:
+ * <ul>
+ *   <li>16 bytes: primary key hash</li>
+ *   <li>4 bytes: segment id (0 for empty slot)</li>
+ *   <li>4 bytes: doc id</li>
+ *   <li>8 bytes: comparison value encoded as long</li>
+ * </ul>
+ * Collisions are resolved with linear probing, and removals use backward shift deletion so that no tombstone is
+ * needed. The table is doubled when the load factor exceeds {@link #MAX_LOAD_FACTOR}.
+ */
+@NotThreadSafe
+public class OffHeapPrimaryKeyIndex implements Closeable {
+  public static final int KEY_HASH_SIZE = 16;
+  public static final int EMPTY_SEGMENT_ID = 0;
+
+  static final int SLOT_SIZE = 32;
+  static final double MAX_LOAD_FACTOR = 0.7;
+  private static final int MAX_CAPACITY = 1 << 30;
+
+  private static final int KEY_HIGH_OFFSET = 0;
+  private static final int KEY_LOW_OFFSET = 8;
+  private static final int SEGMENT_ID_OFFSET = 16;
+  private static final int DOC_ID_OFFSET = 20;
+  private static final int COMPARISON_VALUE_OFFSET = 24;
+
+  private final String _description;
+  private PinotDataBuffer _buffer;
+  private int _capacity;
+  private int _mask;
+  private int _maxSize;
+  private int _size;
+
+  public OffHeapPrimaryKeyIndex(int initialCapacity, String description) {
+    Preconditions.checkArgument(initialCapacity > 0 && initialCapacity <= MAX_CAPACITY,
+        "Invalid initial capacity: %s", initialCapacity);
+    _description = description;
+    allocate(Integer.highestOneBit(initialCapacity - 1 > 0 ? initialCapacity - 1 : 1) << 1);
+  }
+
+  private void allocate(int capacity) {
+    _buffer = PinotDataBuffer.allocateDirect((long) capacity * SLOT_SIZE, PinotDataBuffer.NATIVE_ORDER, _description);
+    _capacity = capacity;
+    _mask = capacity - 1;
+    _maxSize = (int) (capacity * MAX_LOAD_FACTOR);
+  }
+
+  public int size() {
+    return _size;
+  }
+
+  public int capacity() {
+    return _capacity;
+  }
+
+  /**
+   * Returns the slot of the given primary key hash, or -1 if it does not exist.
+   */
+  public int find(byte[] keyHash) {
+    return find(getLong(keyHash, 0), getLong(keyHash, 8));
+  }
+
+  /**
+   * Same as {@link #find(byte[])}, but takes the primary key hash as high and low 64 bits.
+   */
+  public int find(long high, long low) {
+    int slot = getHomeSlot(high, low);
+    while (isOccupied(slot)) {
+      if (getKeyHigh(slot) == high && getKeyLow(slot) == low) {
+        return slot;
+      }
+      slot = (slot + 1) & _mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Inserts the given primary key hash, which must not already exist, and returns its slot. The slots returned
+   * previously are invalidated if the table is resized.
+   */
+  public int insert(byte[] keyHash, int segmentId, int docId, long comparisonValue) {
+    return insert(getLong(keyHash, 0), getLong(keyHash, 8), segmentId, docId, comparisonValue);
+  }
+
+  /**
+   * Same as {@link #insert(byte[], int, int, long)}, but takes the primary key hash as high and low 64 bits.
+   */
+  public int insert(long keyHigh, long keyLow, int segmentId, int docId, long comparisonValue) {
+    if (_size >= _maxSize) {
+      resize(_capacity << 1);
+    }
+    return doInsert(keyHigh, keyLow, segmentId, docId, comparisonValue);
+  }
+
+  /**
+   * Grows the table if needed so that the given number of entries can be held without resizing.
+   */
+  public void ensureCapacity(int expectedSize) {
+    int capacity = _capacity;
+    while (expectedSize > (int) (capacity * MAX_LOAD_FACTOR) && capacity < MAX_CAPACITY) {
+      capacity <<= 1;
+    }
+    if (capacity > _capacity) {
+      resize(capacity);
+    }
+  }
+
+  private int doInsert(long high, long low, int segmentId, int docId, long comparisonValue) {
+    int slot = getHomeSlot(high, low);
+    while (isOccupied(slot)) {
+      slot = (slot + 1) & _mask;
+    }
+    long offset = (long) slot * SLOT_SIZE;
+    _buffer.putLong(offset + KEY_HIGH_OFFSET, high);
+    _buffer.putLong(offset + KEY_LOW_OFFSET, low);
+    set(slot, segmentId, docId, comparisonValue);
+    _size++;
+    return slot;
+  }
+
+  /**
+   * Updates the record location of an occupied slot.
+   */
+  public void set(int slot, int segmentId, int docId, long comparisonValue) {
+    assert segmentId != EMPTY_SEGMENT_ID;
+    long offset = (long) slot * SLOT_SIZE;
+    _buffer.putInt(offset + SEGMENT_ID_OFFSET, segmentId);
+    _buffer.putInt(offset + DOC_ID_OFFSET, docId);
+    _buffer.putLong(offset + COMPARISON_VALUE_OFFSET, comparisonValue);
+  }
+
+  /**
+   * Removes the entry in the given slot. The entries after the slot within the same cluster might be shifted back,
+   * so the caller iterating the slots should re-check the same slot after the removal.
+   */
+  public void remove(int slot) {
+    int hole = slot;
+    int next = (slot + 1) & _mask;
+    while (isOccupied(next)) {
+      int home = getHomeSlot(getKeyHigh(next), getKeyLow(next));
+      // Move the entry into the hole if the hole is between its home slot and the current slot (cyclically)
+      if (((next - home) & _mask) >= ((next - hole) & _mask)) {
+        copySlot(next, hole);
+        hole = next;
+      }
+      next = (next + 1) & _mask;
+    }
+    _buffer.putInt((long) hole * SLOT_SIZE + SEGMENT_ID_OFFSET, EMPTY_SEGMENT_ID);
+    _size--;
+  }
+
+  /**
+   * Removes all the entries.
+   */
+  public void clear() {
+    for (int slot = 0; slot < _capacity; slot++) {
+      _buffer.putInt((long) slot * SLOT_SIZE + SEGMENT_ID_OFFSET, EMPTY_SEGMENT_ID);
+    }
+    _size = 0;
+  }
+
+  /**
+   * Returns the slot to start the iteration from, such that no cluster wraps around the end of the iteration. With
+   * this start slot, removing the current entry during the iteration never moves an unvisited entry before the
+   * current slot, or a visited entry after the current slot.
+   */
+  public int getIterationStartSlot() {
+    for (int slot = 0; slot < _capacity; slot++) {
+      if (!isOccupied(slot)) {
+        return (slot + 1) & _mask;
+      }
+    }
+    // Should not happen because the load factor is always less than 1
+    throw new IllegalStateException("No empty slot in the primary key index");
+  }
+
+  public int nextSlot(int slot) {
+    return (slot + 1) & _mask;
+  }
+
+  public boolean isOccupied(int slot) {
+    return getSegmentId(slot) != EMPTY_SEGMENT_ID;
+  }
+
+  public int getSegmentId(int slot) {
+    return _buffer.getInt((long) slot * SLOT_SIZE + SEGMENT_ID_OFFSET);
+  }
+
+  public int getDocId(int slot) {
+    return _buffer.getInt((long) slot * SLOT_SIZE + DOC_ID_OFFSET);
+  }
+
+  public long getComparisonValue(int slot) {
+    return _buffer.getLong((long) slot * SLOT_SIZE + COMPARISON_VALUE_OFFSET);
+  }
+
+  public long getKeyHigh(int slot) {
+    return _buffer.getLong((long) slot * SLOT_SIZE + KEY_HIGH_OFFSET);
+  }
+
+  public long getKeyLow(int slot) {
+    return _buffer.getLong((long) slot * SLOT_SIZE + KEY_LOW_OFFSET);
+  }
+
+  private int getHomeSlot(long high, long low) {
+    // The key is already a hash, so only fold the bits
+    long hash = high ^ low;
+    return (int) (hash ^ (hash >>> 32)) & _mask;
+  }
+
+  private void copySlot(int from, int to) {
+    long fromOffset = (long) from * SLOT_SIZE;
+    long toOffset = (long) to * SLOT_SIZE;
+    _buffer.putLong(toOffset + KEY_HIGH_OFFSET, _buffer.getLong(fromOffset + KEY_HIGH_OFFSET));
+    _buffer.putLong(toOffset + KEY_LOW_OFFSET, _buffer.getLong(fromOffset + KEY_LOW_OFFSET));
+    _buffer.putInt(toOffset + SEGMENT_ID_OFFSET, _buffer.getInt(fromOffset + SEGMENT_ID_OFFSET));
+    _buffer.putInt(toOffset + DOC_ID_OFFSET, _buffer.getInt(fromOffset + DOC_ID_OFFSET));
+    _buffer.putLong(toOffset + COMPARISON_VALUE_OFFSET, _buffer.getLong(fromOffset + COMPARISON_VALUE_OFFSET));
+  }
+
+  private void resize(int newCapacity) {
+    Preconditions.checkState(_capacity < MAX_CAPACITY, "Primary key index: %s exceeds the max capacity: %s",
+        _description, MAX_CAPACITY);
+    PinotDataBuffer oldBuffer = _buffer;
+    int oldCapacity = _capacity;
+    allocate(newCapacity);
+    _size = 0;
+    for (int slot = 0; slot < oldCapacity; slot++) {
+      long offset = (long) slot * SLOT_SIZE;
+      int segmentId = oldBuffer.getInt(offset + SEGMENT_ID_OFFSET);
+      if (segmentId != EMPTY_SEGMENT_ID) {
+        doInsert(oldBuffer.getLong(offset + KEY_HIGH_OFFSET), oldBuffer.getLong(offset + KEY_LOW_OFFSET), segmentId,
+            oldBuffer.getInt(offset + DOC_ID_OFFSET), oldBuffer.getLong(offset + COMPARISON_VALUE_OFFSET));
+      }
+    }
+    try {
+      oldBuffer.close();
+    } catch (IOException e) {
+      throw new RuntimeException("Caught exception while closing the buffer of primary key index: " + _description, e);
+    }
+  }
+
+  private static long getLong(byte[] bytes, int offset) {
+    long value = 0;
+    for (int i = offset; i < offset + 8; i++) {
+      value = (value << 8) | (bytes[i] & 0xFF);
+    }
+    return value;
+  }
+
+  @Override
+  public void close()
+      throws IOException {
+    _buffer.close();
+  }
+}
@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.upsert;
+
+import javax.annotation.concurrent.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Implementation of {@link TableUpsertMetadataManager} that keeps the primary key to record location mapping off-heap
+ * with {@link OffHeapPartitionUpsertMetadataManager}. It can be enabled by setting the {@code metadataManagerClass} in
+ * the {@code UpsertConfig} to this class.
+ *
+ * <p>It falls back to the on-heap {@link ConcurrentMapPartitionUpsertMetadataManager} when the table is not supported
+ * by the off-heap metadata manager, e.g. with multiple or non-numeric comparison columns, or with partial upsert (see
+ * {@link OffHeapPartitionUpsertMetadataManager#isSupported(UpsertContext)}).
+ */
+@ThreadSafe
+public class OffHeapTableUpsertMetadataManager extends ConcurrentMapTableUpsertMetadataManager {
+  private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapTableUpsertMetadataManager.class);
+
+  private boolean _offHeapSupported;
+
+  @Override
+  protected void initCustomVariables() {
+    super.initCustomVariables();
+    _offHeapSupported = OffHeapPartitionUpsertMetadataManager.isSupported(_context);
+    if (!_offHeapSupported) {
+      LOGGER.warn("Off-heap upsert metadata is not supported for table: {} with upsert context: {}, falling back to "
+          + "on-heap upsert metadata", _tableNameWithType, _context);
+    }
+  }
+
+  @Override
+  protected BasePartitionUpsertMetadataManager createPartitionManager(int partitionId) {
+    return _offHeapSupported ? new OffHeapPartitionUpsertMetadataManager(_tableNameWithType, partitionId, _context)
+        : super.createPartitionManager(partitionId);
+  }
+}
@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.warmup;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.pinot.spi.utils.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Tracks how often the queries access the indexes of each column of a table, so that the hottest index buffers can be
+ * warmed up when a segment is loaded. Each access adds 1 to the score of the (column, index) pair, and the score
+ * decays exponentially with the configured half-life so that the profile follows the recent query pattern.
+ *
+ * <p>The profile is kept per table instead of per segment because after a restart or a rebalance, the segments loaded
+ * on a server are often not the ones it served before, while the query pattern of the table stays the same.
+ */
+@ThreadSafe
+public class IndexAccessProfile {
+  private static final Logger LOGGER = LoggerFactory.getLogger(IndexAccessProfile.class);
+
+  /**
+   * Index id recorded when all the indexes of the column might be accessed, e.g. for the columns in the filter.
+   */
+  public static final String ALL_INDEXES = "*";
+
+  private final long _halfLifeMs;
+  private final Map<Pair<String, String>, DecayingScore> _scores = new ConcurrentHashMap<>();
+
+  public IndexAccessProfile(long halfLifeMs) {
+    _halfLifeMs = halfLifeMs;
+  }
+
+  public void recordAccess(String column, String indexId) {
+    recordAccess(column, indexId, System.currentTimeMillis());
+  }
+
+  @VisibleForTesting
+  void recordAccess(String column, String indexId, long timeMs) {
+    _scores.computeIfAbsent(Pair.of(column, indexId), k -> new DecayingScore()).add(1, timeMs, _halfLifeMs);
+  }
+
+  /**
+   * Returns the indexes with score no less than the given min score, in descending order of the score.
+   */
+  public List<Entry> getHotIndexes(double minScore) {
+    return getHotIndexes(minScore, System.currentTimeMillis());
+  }
+
+  @VisibleForTesting
+  List<Entry> getHotIndexes(double minScore, long timeMs) {
+    List<Entry> hotIndexes = new ArrayList<>();
+    for (Map.Entry<Pair<String, String>, DecayingScore> entry : _scores.entrySet()) {
+      double score = entry.getValue().get(timeMs, _halfLifeMs);
+      if (score >= minScore) {
+        Pair<String, String> key = entry.getKey();
+        hotIndexes.add(new Entry(key.getLeft(), key.getRight(), score, timeMs));
+      }
+    }
+    hotIndexes.sort(Comparator.comparingDouble(Entry::getScore).reversed());
+    return hotIndexes;
+  }
+
+  public int size() {
+    return _scores.size();
+  }
+
+  /**
+   * Persists the profile into the given file, which can be loaded with {@link #load(File, long)} after restart.
+   */
+  public void persist(File file)
+      throws IOException {
+    File tempFile = new File(file.getPath() + ".tmp");
+    FileUtils.writeByteArrayToFile(tempFile, JsonUtils.objectToBytes(getHotIndexes(0)));
+    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Loads the profile persisted in the given file, or returns an empty profile if the file does not exist or cannot be
+   * read.
+   */
+  public static IndexAccessProfile load(File file, long halfLifeMs) {
+    IndexAccessProfile profile = new IndexAccessProfile(halfLifeMs);
+    if (file.exists()) {
+      try {
+        for (Entry entry : JsonUtils.fileToList(file, Entry.class)) {
+          profile._scores.put(Pair.of(entry.getColumn(), entry.getIndex()),
+              new DecayingScore(entry.getScore(), entry.getTimeMs()));
+        }
+      } catch (Exception e) {
+        LOGGER.warn("Caught exception while loading index access profile from: {}, starting with empty profile", file,
+            e);
+      }
+    }
+    return profile;
+  }
+
+  /**
+   * Score of an index at the given time.
+   */
+  public static class Entry {
+    private final String _column;
+    private final String _index;
+    private final double _score;
+    private final long _timeMs;
+
+    @JsonCreator
+    public Entry(@JsonProperty("column") String column, @JsonProperty("index") String index,
+        @JsonProperty("score") double score, @JsonProperty("timeMs") long timeMs) {
+      _column = column;
+      _index = index;
+      _score = score;
+      _timeMs = timeMs;
+    }
+
+    @JsonProperty
+    public String getColumn() {
+      return _column;
+    }
+
+    /**
+     * Returns the index type id, or {@link #ALL_INDEXES}.
+     */
+    @JsonProperty
+    public String getIndex() {
+      return _index;
+    }
+
+    @JsonProperty
+    public double getScore() {
+      return _score;
+    }
+
+    @JsonProperty
+    public long getTimeMs() {
+      return _timeMs;
+    }
+
+    @Override
+    public String toString() {
+      return _column + "." + _index + ":" + _score;
+    }
+  }
+
+  private static class DecayingScore {
+    double _score;
+    long _timeMs;
+
+    DecayingScore() {
+    }
+
+    DecayingScore(double score, long timeMs) {
+      _score = score;
+      _timeMs = timeMs;
+    }
+
+    synchronized void add(double value, long timeMs, long halfLifeMs) {
+      if (timeMs > _timeMs) {
+        _score = decay(_score, timeMs - _timeMs, halfLifeMs);
+        _timeMs = timeMs;
+      }
+      _score += value;
+    }
+
+    synchronized double get(long timeMs, long halfLifeMs) {
+      return timeMs > _timeMs ? decay(_score, timeMs - _timeMs, halfLifeMs) : _score;
+    }
+
+    static double decay(double score, long elapsedMs, long halfLifeMs) {
+      return score * Math.pow(0.5, (double) elapsedMs / halfLifeMs);
+    }
+  }
+}
@@ -0,0 +1,336 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.warmup;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.pinot.common.metrics.ServerGauge;
+import org.apache.pinot.common.metrics.ServerMeter;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.segment.local.data.manager.SegmentDataManager;
+import org.apache.pinot.segment.local.data.manager.TableDataManager;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentImpl;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.index.IndexService;
+import org.apache.pinot.segment.spi.index.IndexType;
+import org.apache.pinot.segment.spi.index.StandardIndexes;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.apache.pinot.segment.spi.store.SegmentDirectory;
+import org.apache.pinot.spi.env.PinotConfiguration;
+import org.apache.pinot.spi.utils.DataSizeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Warms up the page cache for the memory mapped index buffers of the segments loaded for a table, so that the first
+ * queries after a restart or a rebalance do not pay for the major page faults.
+ *
+ * <p>The queries record the indexes they access into the {@link IndexAccessProfile} of the table, which is persisted
+ * under the table data directory periodically and on shutdown. When a segment is added, the index buffers of the hot
+ * columns are advised with madvise(WILLNEED), or read page by page when not supported, in descending order of the
+ * access score. The total size warmed up across all the tables of the server is capped so that warming up does not
+ * evict the pages of the hot buffers with the less valuable ones.
+ *
+ * <p>The configs are under the instance data manager config with prefix {@value #CONFIG_PREFIX}:
+ * <ul>
+ *   <li>{@code enabled}: whether to warm up the segments, false by default</li>
+ *   <li>{@code max.size}: max total size of the warmed up buffers of the server (e.g. '32G')</li>
+ *   <li>{@code num.threads}: number of threads warming up the segments of the server, applied when the thread pool is
+ *   created for the first table with segment warm-up enabled</li>
+ *   <li>{@code half.life.ms}: half-life of the index access score</li>
+ *   <li>{@code min.score}: min index access score for the index to be warmed up</li>
+ *   <li>{@code persist.interval.ms}: min interval to persist the index access profile</li>
+ * </ul>
+ */
+@ThreadSafe
+public class SegmentWarmUpManager {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentWarmUpManager.class);
+
+  public static final String CONFIG_PREFIX = "segment.warmup";
+  public static final String ENABLED_KEY = "enabled";
+  public static final String MAX_SIZE_KEY = "max.size";
+  public static final String NUM_THREADS_KEY = "num.threads";
+  public static final String HALF_LIFE_MS_KEY = "half.life.ms";
+  public static final String MIN_SCORE_KEY = "min.score";
+  public static final String PERSIST_INTERVAL_MS_KEY = "persist.interval.ms";
+  public static final String DEFAULT_MAX_SIZE = "32G";
+  public static final int DEFAULT_NUM_THREADS = 1;
+  public static final long DEFAULT_HALF_LIFE_MS = 3600_000L;
+  public static final double DEFAULT_MIN_SCORE = 1.0;
+  public static final long DEFAULT_PERSIST_INTERVAL_MS = 300_000L;
+  public static final String PROFILE_FILE_NAME = "index_access_profile.json";
+
+  private static final int PAGE_SIZE_BYTES = 4096;
+  // Indexes accessed when projecting a column
+  private static final String[] PROJECTION_INDEXES =
+      {StandardIndexes.FORWARD_ID, StandardIndexes.DICTIONARY_ID, StandardIndexes.NULL_VALUE_VECTOR_ID};
+
+  // Shared by all the tables of the server
+  private static final AtomicLong WARMED_UP_BYTES = new AtomicLong();
+  private static ExecutorService _executorService;
+  private static int _numThreads;
+
+  private final String _tableNameWithType;
+  private final File _profileFile;
+  private final IndexAccessProfile _profile;
+  private final long _maxSizeBytes;
+  private final double _minScore;
+  private final long _persistIntervalMs;
+  private final ServerMetrics _serverMetrics;
+  private final ExecutorService _warmUpExecutor;
+  // Size of the warmed up buffers of each segment, which is returned to the budget when the segment is closed
+  private final Map<IndexSegment, Long> _warmedUpBytesMap = new ConcurrentHashMap<>();
+  private final AtomicInteger _numPendingSegments = new AtomicInteger();
+  private final AtomicBoolean _persisting = new AtomicBoolean();
+  private volatile long _lastPersistTimeMs;
+
+  @VisibleForTesting
+  SegmentWarmUpManager(String tableNameWithType, File tableDataDir, PinotConfiguration config,
+      ServerMetrics serverMetrics, ExecutorService warmUpExecutor) {
+    _tableNameWithType = tableNameWithType;
+    _profileFile = new File(tableDataDir, PROFILE_FILE_NAME);
+    _profile = IndexAccessProfile.load(_profileFile, config.getProperty(HALF_LIFE_MS_KEY, DEFAULT_HALF_LIFE_MS));
+    _maxSizeBytes = DataSizeUtils.toBytes(config.getProperty(MAX_SIZE_KEY, DEFAULT_MAX_SIZE));
+    _minScore = config.getProperty(MIN_SCORE_KEY, DEFAULT_MIN_SCORE);
+    _persistIntervalMs = config.getProperty(PERSIST_INTERVAL_MS_KEY, DEFAULT_PERSIST_INTERVAL_MS);
+    _serverMetrics = serverMetrics;
+    _warmUpExecutor = warmUpExecutor;
+    _lastPersistTimeMs = System.currentTimeMillis();
+    LOGGER.info("Initialized segment warm-up for table: {} with {} indexes in the access profile, maxSize: {}, "
+        + "minScore: {}", tableNameWithType, _profile.size(), _maxSizeBytes, _minScore);
+  }
+
+  /**
+   * Returns the segment warm-up manager for the table, or {@code null} if segment warm-up is not enabled.
+   *
+   * @param config Segment warm-up config, i.e. the instance data manager config with prefix {@value #CONFIG_PREFIX}
+   */
+  @Nullable
+  public static SegmentWarmUpManager create(String tableNameWithType, File tableDataDir, PinotConfiguration config,
+      ServerMetrics serverMetrics) {
+    if (!config.getProperty(ENABLED_KEY, false)) {
+      return null;
+    }
+    return new SegmentWarmUpManager(tableNameWithType, tableDataDir, config, serverMetrics,
+        getOrCreateExecutorService(config.getProperty(NUM_THREADS_KEY, DEFAULT_NUM_THREADS)));
+  }
+
+  /**
+   * Returns the thread pool shared by all the tables of the server, which is created on the first call. Because
+   * {@code num.threads} is a server level config, the same value is expected for all the tables, and a different value
+   * in the later calls is ignored until the server is restarted.
+   */
+  private static synchronized ExecutorService getOrCreateExecutorService(int numThreads) {
+    if (_executorService != null) {
+      if (numThreads != _numThreads) {
+        LOGGER.warn("Ignoring segment warm-up num.threads: {}, the thread pool is already created with {} threads",
+            numThreads, _numThreads);
+      }
+    } else {
+      LOGGER.info("Creating segment warm-up thread pool with {} threads", numThreads);
+      _numThreads = numThreads;
+      AtomicInteger threadId = new AtomicInteger();
+      ThreadFactory threadFactory = runnable -> {
+        Thread thread = new Thread(runnable, "segment-warm-up-" + threadId.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      };
+      _executorService = Executors.newFixedThreadPool(numThreads, threadFactory);
+    }
+    return _executorService;
+  }
+
+  public IndexAccessProfile getProfile() {
+    return _profile;
+  }
+
+  /**
+   * Records the indexes accessed by a query: all the indexes of the filter columns, and the projection indexes of the
+   * other columns.
+   */
+  public void recordQuery(Set<String> columns, Set<String> filterColumns) {
+    for (String column : columns) {
+      if (filterColumns.contains(column)) {
+        _profile.recordAccess(column, IndexAccessProfile.ALL_INDEXES);
+      } else {
+        for (String indexId : PROJECTION_INDEXES) {
+          _profile.recordAccess(column, indexId);
+        }
+      }
+    }
+    long currentTimeMs = System.currentTimeMillis();
+    if (currentTimeMs - _lastPersistTimeMs >= _persistIntervalMs && _persisting.compareAndSet(false, true)) {
+      _lastPersistTimeMs = currentTimeMs;
+      _warmUpExecutor.submit(() -> {
+        try {
+          persist();
+        } finally {
+          _persisting.set(false);
+        }
+      });
+    }
+  }
+
+  /**
+   * Warms up the given segment asynchronously. The segment is acquired from the table data manager during the warm-up,
+   * and is skipped if it is already replaced or removed.
+   */
+  public void warmUpAsync(TableDataManager tableDataManager, ImmutableSegment segment) {
+    _serverMetrics.setValueOfTableGauge(_tableNameWithType, ServerGauge.SEGMENT_WARM_UP_PENDING_COUNT,
+        _numPendingSegments.incrementAndGet());
+    _warmUpExecutor.submit(() -> {
+      String segmentName = segment.getSegmentName();
+      try {
+        SegmentDataManager segmentDataManager = tableDataManager.acquireSegment(segmentName);
+        if (segmentDataManager == null) {
+          return;
+        }
+        try {
+          if (segmentDataManager.getSegment() == segment) {
+            warmUp(segment);
+          }
+        } finally {
+          tableDataManager.releaseSegment(segmentDataManager);
+        }
+      } catch (Exception e) {
+        LOGGER.warn("Caught exception while warming up segment: {} of table: {}", segmentName, _tableNameWithType, e);
+      } finally {
+        _serverMetrics.setValueOfTableGauge(_tableNameWithType, ServerGauge.SEGMENT_WARM_UP_PENDING_COUNT,
+            _numPendingSegments.decrementAndGet());
+      }
+    });
+  }
+
+  /**
+   * Warms up the hot index buffers of the given segment, and returns the size warmed up.
+   */
+  @VisibleForTesting
+  long warmUp(ImmutableSegment segment)
+      throws Exception {
+    if (!(segment instanceof ImmutableSegmentImpl)) {
+      return 0;
+    }
+    List<IndexAccessProfile.Entry> hotIndexes = _profile.getHotIndexes(_minScore);
+    if (hotIndexes.isEmpty()) {
+      return 0;
+    }
+    long startTimeMs = System.currentTimeMillis();
+    long warmedUpBytes = 0;
+    Set<String> columns = segment.getPhysicalColumnNames();
+    SegmentDirectory segmentDirectory = ((ImmutableSegmentImpl) segment).getSegmentDirectory();
+    try (SegmentDirectory.Reader reader = segmentDirectory.createReader()) {
+      if (reader == null) {
+        // The segment directory is being modified
+        return 0;
+      }
+      for (IndexAccessProfile.Entry hotIndex : hotIndexes) {
+        String column = hotIndex.getColumn();
+        if (!columns.contains(column)) {
+          continue;
+        }
+        if (IndexAccessProfile.ALL_INDEXES.equals(hotIndex.getIndex())) {
+          for (IndexType<?, ?, ?> indexType : IndexService.getInstance().getAllIndexes()) {
+            warmedUpBytes += warmUp(reader, column, indexType);
+          }
+        } else {
+          Optional<IndexType<?, ?, ?>> indexType = IndexService.getInstance().getOptional(hotIndex.getIndex());
+          if (indexType.isPresent()) {
+            warmedUpBytes += warmUp(reader, column, indexType.get());
+          }
+        }
+      }
+    } finally {
+      if (warmedUpBytes > 0) {
+        _warmedUpBytesMap.merge(segment, warmedUpBytes, Long::sum);
+        _serverMetrics.addMeteredTableValue(_tableNameWithType, ServerMeter.SEGMENT_WARM_UP_BYTES, warmedUpBytes);
+      }
+    }
+    _serverMetrics.addMeteredTableValue(_tableNameWithType, ServerMeter.SEGMENTS_WARMED_UP, 1);
+    LOGGER.info("Warmed up {} bytes of index buffers for segment: {} of table: {} in {}ms", warmedUpBytes,
+        segment.getSegmentName(), _tableNameWithType, System.currentTimeMillis() - startTimeMs);
+    return warmedUpBytes;
+  }
+
+  private long warmUp(SegmentDirectory.Reader reader, String column, IndexType<?, ?, ?> indexType)
+      throws Exception {
+    // Text and vector indexes are stored in their own directories instead of the index buffers, and are not mapped
+    // through the segment directory
+    if (indexType == StandardIndexes.text() || indexType == StandardIndexes.vector()
+        || !reader.hasIndexFor(column, indexType)) {
+      return 0;
+    }
+    PinotDataBuffer buffer = reader.getIndexFor(column, indexType);
+    long size = buffer.size();
+    if (size == 0) {
+      return 0;
+    }
+    if (WARMED_UP_BYTES.addAndGet(size) > _maxSizeBytes) {
+      // Skip the buffer when exceeding the budget, but keep trying the smaller ones
+      WARMED_UP_BYTES.addAndGet(-size);
+      return 0;
+    }
+    if (!buffer.adviseWillNeed(0, size)) {
+      for (long offset = 0; offset < size; offset += PAGE_SIZE_BYTES) {
+        buffer.getByte(offset);
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns the size of the warmed up buffers of the closed segment to the budget.
+   */
+  public void onSegmentClosed(IndexSegment segment) {
+    Long warmedUpBytes = _warmedUpBytesMap.remove(segment);
+    if (warmedUpBytes != null) {
+      WARMED_UP_BYTES.addAndGet(-warmedUpBytes);
+    }
+  }
+
+  /**
+   * Persists the index access profile so that it can be used to warm up the segments after restart.
+   */
+  public void persist() {
+    try {
+      _profile.persist(_profileFile);
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while persisting index access profile for table: {}", _tableNameWithType, e);
+    }
+  }
+
+  @VisibleForTesting
+  static long getWarmedUpBytes() {
+    return WARMED_UP_BYTES.get();
+  }
+}
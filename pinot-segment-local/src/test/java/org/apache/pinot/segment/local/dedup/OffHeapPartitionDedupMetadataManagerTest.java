@@ -0,0 +1,240 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.dedup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.local.data.manager.TableDataManager;
+import org.apache.pinot.segment.local.segment.readers.PinotSegmentColumnReader;
+import org.apache.pinot.segment.local.segment.readers.PrimaryKeyReader;
+import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.MutableSegment;
+import org.apache.pinot.spi.config.table.HashFunction;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.PrimaryKey;
+import org.mockito.Mockito;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+
+public class OffHeapPartitionDedupMetadataManagerTest {
+  private static final File TEMP_DIR =
+      new File(FileUtils.getTempDirectory(), OffHeapPartitionDedupMetadataManagerTest.class.getSimpleName());
+  private static final int METADATA_TTL = 10000;
+  private static final String DEDUP_TIME_COLUMN_NAME = "dedupTimeColumn";
+  private DedupContext.Builder _dedupContextBuilder;
+
+  @BeforeMethod
+  public void setUpContextBuilder()
+      throws IOException {
+    FileUtils.forceMkdir(TEMP_DIR);
+    TableDataManager tableDataManager = mock(TableDataManager.class);
+    when(tableDataManager.getTableDataDir()).thenReturn(TEMP_DIR);
+    _dedupContextBuilder = new DedupContext.Builder()
+        .setTableConfig(mock(TableConfig.class))
+        .setSchema(mock(Schema.class))
+        .setTableDataManager(tableDataManager)
+        .setPrimaryKeyColumns(List.of("primaryKeyColumn"))
+        .setMetadataTTL(METADATA_TTL)
+        .setDedupTimeColumn(DEDUP_TIME_COLUMN_NAME);
+  }
+
+  @AfterMethod
+  public void cleanup() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @Test
+  public void testAddReplaceAndRemoveSegments()
+      throws IOException {
+    verifyAddReplaceAndRemoveSegments(HashFunction.NONE);
+    verifyAddReplaceAndRemoveSegments(HashFunction.MD5);
+    verifyAddReplaceAndRemoveSegments(HashFunction.MURMUR3);
+  }
+
+  private void verifyAddReplaceAndRemoveSegments(HashFunction hashFunction)
+      throws IOException {
+    _dedupContextBuilder.setHashFunction(hashFunction).setMetadataTTL(0);
+    OffHeapPartitionDedupMetadataManager metadataManager =
+        new OffHeapPartitionDedupMetadataManager(DedupTestUtils.REALTIME_TABLE_NAME, 0, _dedupContextBuilder.build());
+
+    DedupUtils.DedupRecordInfoReader dedupRecordInfoReader1 = generateDedupRecordInfoReader(10, 0);
+    IndexSegment segment1 = DedupTestUtils.mockSegment(1, 10);
+    metadataManager.doAddOrReplaceSegment(null, segment1,
+        DedupUtils.getDedupRecordInfoIterator(dedupRecordInfoReader1, 10));
+    DedupUtils.DedupRecordInfoReader dedupRecordInfoReader2 = generateDedupRecordInfoReader(10, 5);
+    IndexSegment segment2 = DedupTestUtils.mockSegment(2, 10);
+    metadataManager.doAddOrReplaceSegment(null, segment2,
+        DedupUtils.getDedupRecordInfoIterator(dedupRecordInfoReader2, 10));
+    assertEquals(metadataManager.getNumPrimaryKeys(), 15);
+    // Keys 5-9 exist in both segments with the same dedup time, and the latest added segment is kept
+    verifyInMemoryState(metadataManager, 0, 5, segment1);
+    verifyInMemoryState(metadataManager, 5, 10, segment2);
+    // No time bucket without TTL
+    assertEquals(metadataManager.getNumTimeBuckets(), 0);
+
+    // Replace segment2 with segment3
+    IndexSegment segment3 = DedupTestUtils.mockSegment(2, 10);
+    metadataManager.doAddOrReplaceSegment(segment2, segment3,
+        DedupUtils.getDedupRecordInfoIterator(dedupRecordInfoReader2, 10));
+    assertEquals(metadataManager.getNumPrimaryKeys(), 15);
+    verifyInMemoryState(metadataManager, 0, 5, segment1);
+    verifyInMemoryState(metadataManager, 5, 10, segment3);
+    assertEquals(metadataManager.getNumTrackedSegments(), 2);
+
+    // Removing segment1 should only remove the keys pointing to it
+    metadataManager.doRemoveSegment(segment1, DedupUtils.getDedupRecordInfoIterator(dedupRecordInfoReader1, 10));
+    assertEquals(metadataManager.getNumPrimaryKeys(), 10);
+    for (int i = 0; i < 5; i++) {
+      assertNull(metadataManager.getSegment(DedupTestUtils.getPrimaryKey(i)));
+    }
+    verifyInMemoryState(metadataManager, 5, 10, segment3);
+    assertEquals(metadataManager.getNumTrackedSegments(), 1);
+
+    metadataManager.doRemoveSegment(segment3, DedupUtils.getDedupRecordInfoIterator(dedupRecordInfoReader2, 10));
+    assertEquals(metadataManager.getNumPrimaryKeys(), 0);
+    assertEquals(metadataManager.getNumTrackedSegments(), 0);
+
+    metadataManager.stop();
+    metadataManager.close();
+  }
+
+  @Test
+  public void testRemoveExpiredPrimaryKeys()
+      throws IOException {
+    verifyRemoveExpiredPrimaryKeys(HashFunction.NONE);
+    verifyRemoveExpiredPrimaryKeys(HashFunction.MD5);
+    verifyRemoveExpiredPrimaryKeys(HashFunction.MURMUR3);
+  }
+
+  private void verifyRemoveExpiredPrimaryKeys(HashFunction hashFunction)
+      throws IOException {
+    _dedupContextBuilder.setHashFunction(hashFunction);
+    OffHeapPartitionDedupMetadataManager metadataManager =
+        new OffHeapPartitionDedupMetadataManager(DedupTestUtils.REALTIME_TABLE_NAME, 0, _dedupContextBuilder.build());
+
+    DedupUtils.DedupRecordInfoReader dedupRecordInfoReader1 = generateDedupRecordInfoReader(10, 0);
+    IndexSegment segment1 = DedupTestUtils.mockSegment(1, 10);
+    metadataManager.doAddOrReplaceSegment(null, segment1,
+        DedupUtils.getDedupRecordInfoIterator(dedupRecordInfoReader1, 10));
+    DedupUtils.DedupRecordInfoReader dedupRecordInfoReader2 = generateDedupRecordInfoReader(10, 10);
+    IndexSegment segment2 = DedupTestUtils.mockSegment(2, 10);
+    metadataManager.doAddOrReplaceSegment(null, segment2,
+        DedupUtils.getDedupRecordInfoIterator(dedupRecordInfoReader2, 10));
+    assertEquals(metadataManager.getNumPrimaryKeys(), 20);
+    // Default time bucket size is 10000 / 16 = 625, so each dedup time is in its own bucket
+    assertEquals(metadataManager.getNumTimeBuckets(), 20);
+
+    metadataManager._largestSeenTime.set(19000);
+    metadataManager.removeExpiredPrimaryKeys();
+    assertEquals(metadataManager.getNumPrimaryKeys(), 11);
+    // Bucket [8750, 9375) is not fully out of TTL (9000) yet
+    assertEquals(metadataManager.getNumTimeBuckets(), 11);
+    for (int i = 0; i < 9; i++) {
+      assertNull(metadataManager.getSegment(DedupTestUtils.getPrimaryKey(i)));
+    }
+    verifyInMemoryState(metadataManager, 9, 1, segment1);
+    verifyInMemoryState(metadataManager, 10, 10, segment2);
+
+    // Key out of TTL is treated as not existing, and its dedup time is updated
+    MutableSegment mutableSegment = mock(MutableSegment.class);
+    PrimaryKey primaryKey = DedupTestUtils.getPrimaryKey(9);
+    assertFalse(metadataManager.checkRecordPresentOrUpdate(new DedupRecordInfo(primaryKey, 20000), mutableSegment));
+    assertTrue(metadataManager.checkRecordPresentOrUpdate(new DedupRecordInfo(primaryKey, 20000), mutableSegment));
+    assertSame(metadataManager.getSegment(primaryKey), mutableSegment);
+    assertEquals(metadataManager.getDedupTime(primaryKey), 20000.0);
+    assertEquals(metadataManager._largestSeenTime.get(), 20000.0);
+
+    // The updated key should not be removed when its original time bucket expires
+    metadataManager._largestSeenTime.set(25000);
+    metadataManager.removeExpiredPrimaryKeys();
+    assertEquals(metadataManager.getNumPrimaryKeys(), 6);
+    assertEquals(metadataManager.getDedupTime(primaryKey), 20000.0);
+    verifyInMemoryState(metadataManager, 15, 5, segment2);
+
+    metadataManager.stop();
+    metadataManager.close();
+  }
+
+  @Test
+  public void testAddingSegmentWithDuplicatedPrimaryKeys()
+      throws IOException {
+    _dedupContextBuilder.setHashFunction(HashFunction.NONE);
+    OffHeapPartitionDedupMetadataManager metadataManager =
+        new OffHeapPartitionDedupMetadataManager(DedupTestUtils.REALTIME_TABLE_NAME, 0, _dedupContextBuilder.build());
+
+    PrimaryKey primaryKey = DedupTestUtils.getPrimaryKey(0);
+    PrimaryKeyReader primaryKeyReader = Mockito.mock(PrimaryKeyReader.class);
+    for (int i = 0; i < 3; i++) {
+      Mockito.when(primaryKeyReader.getPrimaryKey(i)).thenReturn(primaryKey);
+    }
+    PinotSegmentColumnReader dedupTimeColumnReader = Mockito.mock(PinotSegmentColumnReader.class);
+    Mockito.when(dedupTimeColumnReader.getValue(0)).thenReturn(1000.0);
+    Mockito.when(dedupTimeColumnReader.getValue(1)).thenReturn(15000.0);
+    Mockito.when(dedupTimeColumnReader.getValue(2)).thenReturn(25000.0);
+    DedupUtils.DedupRecordInfoReader dedupRecordInfoReader =
+        new DedupUtils.DedupRecordInfoReader(primaryKeyReader, dedupTimeColumnReader);
+    metadataManager._largestSeenTime.set(20000);
+
+    IndexSegment segment = DedupTestUtils.mockSegment(1, 3);
+    Iterator<DedupRecordInfo> dedupRecordInfoIterator = DedupUtils.getDedupRecordInfoIterator(dedupRecordInfoReader, 3);
+    metadataManager.doAddOrReplaceSegment(null, segment, dedupRecordInfoIterator);
+    assertEquals(metadataManager.getNumPrimaryKeys(), 1);
+    assertSame(metadataManager.getSegment(primaryKey), segment);
+    assertEquals(metadataManager.getDedupTime(primaryKey), 25000.0);
+
+    metadataManager.stop();
+    metadataManager.close();
+  }
+
+  private static void verifyInMemoryState(OffHeapPartitionDedupMetadataManager metadataManager,
+      int startPrimaryKeyValue, int recordCount, IndexSegment segment) {
+    for (int i = startPrimaryKeyValue; i < startPrimaryKeyValue + recordCount; i++) {
+      PrimaryKey primaryKey = DedupTestUtils.getPrimaryKey(i);
+      assertSame(metadataManager.getSegment(primaryKey), segment);
+      assertEquals(metadataManager.getDedupTime(primaryKey), i * 1000.0);
+    }
+  }
+
+  private static DedupUtils.DedupRecordInfoReader generateDedupRecordInfoReader(int numberOfDocs,
+      int startPrimaryKeyValue) {
+    PrimaryKeyReader primaryKeyReader = Mockito.mock(PrimaryKeyReader.class);
+    PinotSegmentColumnReader dedupTimeColumnReader = Mockito.mock(PinotSegmentColumnReader.class);
+    for (int i = 0; i < numberOfDocs; i++) {
+      int primaryKeyValue = startPrimaryKeyValue + i;
+      Mockito.when(primaryKeyReader.getPrimaryKey(i)).thenReturn(DedupTestUtils.getPrimaryKey(primaryKeyValue));
+      double time = primaryKeyValue * 1000;
+      Mockito.when(dedupTimeColumnReader.getValue(i)).thenReturn(time);
+    }
+    return new DedupUtils.DedupRecordInfoReader(primaryKeyReader, dedupTimeColumnReader);
+  }
+}
@@ -21,6 +21,10 @@ package org.apache.pinot.segment.local.indexsegment.mutable;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import org.apache.commons.io.FileUtils;
 import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentLoader;
 import org.apache.pinot.segment.local.segment.creator.SegmentTestUtils;
@@ -35,7 +39,10 @@ import org.apache.pinot.segment.spi.datasource.DataSourceMetadata;
 import org.apache.pinot.segment.spi.index.reader.Dictionary;
 import org.apache.pinot.segment.spi.index.reader.ForwardIndexReader;
 import org.apache.pinot.segment.spi.index.reader.ForwardIndexReaderContext;
+import org.apache.pinot.segment.spi.index.startree.StarTreeNode;
+import org.apache.pinot.segment.spi.index.startree.StarTreeV2;
 import org.apache.pinot.spi.config.instance.InstanceType;
+import org.apache.pinot.spi.config.table.StarTreeIndexConfig;
 import org.apache.pinot.spi.data.FieldSpec;
 import org.apache.pinot.spi.data.Schema;
 import org.apache.pinot.spi.data.readers.FileFormat;
@@ -45,6 +52,7 @@ import org.apache.pinot.spi.data.readers.RecordReaderFactory;
 import org.apache.pinot.spi.stream.StreamMessageMetadata;
 import org.apache.pinot.spi.utils.CommonConstants;
 import org.apache.pinot.spi.utils.ReadMode;
+import org.apache.pinot.util.TestUtils;
 import org.testng.Assert;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
@@ -203,6 +211,128 @@ public class MutableSegmentImplTest {
     }
   }
 
+  @Test
+  public void testIndexBatch()
+      throws Exception {
+    URL resourceUrl = MutableSegmentImplTest.class.getClassLoader().getResource(AVRO_FILE);
+    Assert.assertNotNull(resourceUrl);
+    File avroFile = new File(resourceUrl.getFile());
+    MutableSegmentImpl batchSegment = MutableSegmentImplTestUtils.createMutableSegmentImpl(_schema);
+    try (RecordReader recordReader = RecordReaderFactory.getRecordReader(FileFormat.AVRO, avroFile,
+        _schema.getColumnNames(), null)) {
+      int batchSize = 100;
+      List<GenericRow> rows = new ArrayList<>(batchSize);
+      while (recordReader.hasNext()) {
+        rows.add(recordReader.next());
+        if (rows.size() == batchSize || !recordReader.hasNext()) {
+          Assert.assertTrue(batchSegment.canIndexBatch(rows.size()));
+          Assert.assertTrue(batchSegment.indexBatch(rows, null));
+          rows.clear();
+        }
+      }
+      Assert.assertFalse(batchSegment.canIndexBatch(100000));
+
+      int numDocs = _mutableSegmentImpl.getNumDocsIndexed();
+      assertEquals(batchSegment.getNumDocsIndexed(), numDocs);
+      GenericRow expectedRow = new GenericRow();
+      GenericRow actualRow = new GenericRow();
+      for (int docId = 0; docId < numDocs; docId++) {
+        expectedRow.clear();
+        actualRow.clear();
+        _mutableSegmentImpl.getRecord(docId, expectedRow);
+        batchSegment.getRecord(docId, actualRow);
+        for (FieldSpec fieldSpec : _schema.getAllFieldSpecs()) {
+          String column = fieldSpec.getName();
+          if (fieldSpec.isSingleValueField()) {
+            assertEquals(actualRow.getValue(column), expectedRow.getValue(column));
+          } else {
+            assertEquals((Object[]) actualRow.getValue(column), (Object[]) expectedRow.getValue(column));
+          }
+        }
+      }
+      for (FieldSpec fieldSpec : _schema.getAllFieldSpecs()) {
+        String column = fieldSpec.getName();
+        DataSourceMetadata actualMetadata = batchSegment.getDataSource(column).getDataSourceMetadata();
+        DataSourceMetadata expectedMetadata = _mutableSegmentImpl.getDataSource(column).getDataSourceMetadata();
+        assertEquals(actualMetadata.getMinValue(), expectedMetadata.getMinValue());
+        assertEquals(actualMetadata.getMaxValue(), expectedMetadata.getMaxValue());
+      }
+    } finally {
+      batchSegment.destroy();
+    }
+  }
+
+  @Test
+  public void testIndexBatchWithStarTree()
+      throws Exception {
+    Schema schema = new Schema.SchemaBuilder().setSchemaName("testTable")
+        .addSingleValueDimension("d1", FieldSpec.DataType.STRING)
+        .addSingleValueDimension("d2", FieldSpec.DataType.STRING)
+        .addMetric("m", FieldSpec.DataType.LONG)
+        .build();
+    StarTreeIndexConfig starTreeIndexConfig =
+        new StarTreeIndexConfig(List.of("d1", "d2"), null, List.of("SUM__m", "COUNT__*"), null, 1);
+    MutableSegmentImpl segment =
+        MutableSegmentImplTestUtils.createMutableSegmentImpl(schema, List.of(starTreeIndexConfig));
+    try {
+      // Index the first rows one by one, then the remaining rows as batches
+      int numRows = 1000;
+      int batchSize = 7;
+      List<GenericRow> rows = new ArrayList<>(batchSize);
+      for (int i = 0; i < numRows; i++) {
+        GenericRow row = new GenericRow();
+        row.putValue("d1", "d1_" + (i % 5));
+        row.putValue("d2", "d2_" + (i % 7));
+        row.putValue("m", (long) i);
+        if (i < 10) {
+          segment.index(row, null);
+          continue;
+        }
+        rows.add(row);
+        if (rows.size() == batchSize || i == numRows - 1) {
+          Assert.assertTrue(segment.canIndexBatch(rows.size()));
+          segment.indexBatch(rows, null);
+          rows = new ArrayList<>(batchSize);
+        }
+      }
+      assertEquals(segment.getNumDocsIndexed(), numRows);
+
+      // Compute the expected results by scanning the segment
+      Map<String, Double> expectedSums = new HashMap<>();
+      Map<String, Long> expectedCounts = new HashMap<>();
+      GenericRow reuse = new GenericRow();
+      for (int docId = 0; docId < numRows; docId++) {
+        reuse.clear();
+        segment.getRecord(docId, reuse);
+        String d1 = (String) reuse.getValue("d1");
+        expectedSums.merge(d1, ((Number) reuse.getValue("m")).doubleValue(), Double::sum);
+        expectedCounts.merge(d1, 1L, Long::sum);
+      }
+
+      // The star-tree snapshot is built in the background
+      TestUtils.waitForCondition(aVoid -> segment.getStarTrees() != null, 10_000L,
+          "Failed to build the star-tree snapshot");
+      List<StarTreeV2> starTrees = segment.getStarTrees();
+      Assert.assertNotNull(starTrees);
+      assertEquals(starTrees.size(), 1);
+      StarTreeV2 starTree = starTrees.get(0);
+      ForwardIndexReader sumReader = starTree.getDataSource("sum__m").getForwardIndex();
+      ForwardIndexReader countReader = starTree.getDataSource("count__*").getForwardIndex();
+      StarTreeNode root = starTree.getStarTree().getRoot();
+      assertEquals(countReader.getLong(root.getAggregatedDocId(), null), (long) numRows);
+      assertEquals(sumReader.getDouble(root.getAggregatedDocId(), null), (numRows - 1) * numRows / 2.0);
+      Dictionary d1Dictionary = segment.getDataSource("d1").getDictionary();
+      for (Map.Entry<String, Double> entry : expectedSums.entrySet()) {
+        StarTreeNode node = root.getChildForDimensionValue(d1Dictionary.indexOf(entry.getKey()));
+        Assert.assertNotNull(node);
+        assertEquals(sumReader.getDouble(node.getAggregatedDocId(), null), entry.getValue());
+        assertEquals(countReader.getLong(node.getAggregatedDocId(), null), expectedCounts.get(entry.getKey()));
+      }
+    } finally {
+      segment.destroy();
+    }
+  }
+
   @Test
   public void testUpdateIngestionTimestampWithoutIndexing() {
     // Create a fresh mutable segment with no indexed rows
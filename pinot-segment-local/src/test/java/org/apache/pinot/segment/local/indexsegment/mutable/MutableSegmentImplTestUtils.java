@@ -36,6 +36,7 @@ import org.apache.pinot.segment.spi.index.DictionaryIndexConfig;
 import org.apache.pinot.segment.spi.index.StandardIndexes;
 import org.apache.pinot.spi.config.table.IndexConfig;
 import org.apache.pinot.spi.config.table.JsonIndexConfig;
+import org.apache.pinot.spi.config.table.StarTreeIndexConfig;
 import org.apache.pinot.spi.config.table.ingestion.AggregationConfig;
 import org.apache.pinot.spi.data.Schema;
 
@@ -107,6 +108,24 @@ public class MutableSegmentImplTestUtils {
       @Nullable List<AggregationConfig> aggregationConfigs, boolean nullHandlingEnabled,
       @Nullable String timeColumnName, @Nullable PartitionUpsertMetadataManager partitionUpsertMetadataManager,
       @Nullable PartitionDedupMetadataManager partitionDedupMetadataManager, @Nullable ServerMetrics serverMetrics) {
+    return createMutableSegmentImpl(schema, noDictionaryColumns, varLengthDictionaryColumns, invertedIndexColumns,
+        jsonIndexConfigs, aggregateMetrics, aggregationConfigs, nullHandlingEnabled, timeColumnName,
+        partitionUpsertMetadataManager, partitionDedupMetadataManager, serverMetrics, null);
+  }
+
+  public static MutableSegmentImpl createMutableSegmentImpl(Schema schema,
+      List<StarTreeIndexConfig> starTreeIndexConfigs) {
+    return createMutableSegmentImpl(schema, Set.of(), Set.of(), Set.of(), Map.of(), false, null, false, null, null,
+        null, null, starTreeIndexConfigs);
+  }
+
+  public static MutableSegmentImpl createMutableSegmentImpl(Schema schema, Set<String> noDictionaryColumns,
+      Set<String> varLengthDictionaryColumns, Set<String> invertedIndexColumns,
+      Map<String, JsonIndexConfig> jsonIndexConfigs, boolean aggregateMetrics,
+      @Nullable List<AggregationConfig> aggregationConfigs, boolean nullHandlingEnabled,
+      @Nullable String timeColumnName, @Nullable PartitionUpsertMetadataManager partitionUpsertMetadataManager,
+      @Nullable PartitionDedupMetadataManager partitionDedupMetadataManager, @Nullable ServerMetrics serverMetrics,
+      @Nullable List<StarTreeIndexConfig> starTreeIndexConfigs) {
 
     RealtimeSegmentStatsHistory statsHistory = mock(RealtimeSegmentStatsHistory.class);
     when(statsHistory.getEstimatedCardinality(anyString())).thenReturn(200);
@@ -133,6 +152,7 @@ public class MutableSegmentImplTestUtils {
         .setDefaultNullHandlingEnabled(nullHandlingEnabled)
         .setPartitionUpsertMetadataManager(partitionUpsertMetadataManager)
         .setPartitionDedupMetadataManager(partitionDedupMetadataManager)
+        .setStarTreeIndexConfigs(starTreeIndexConfigs)
         .setConsumerDir(TEMP_DIR.getAbsolutePath() + "/" + UUID.randomUUID() + "/consumerDir");
 
     for (Map.Entry<String, JsonIndexConfig> entry : jsonIndexConfigs.entrySet()) {
@@ -57,6 +57,7 @@ import org.apache.pinot.segment.spi.index.StandardIndexes;
 import org.apache.pinot.segment.spi.index.TextIndexConfig;
 import org.apache.pinot.segment.spi.index.column.ColumnIndexContainer;
 import org.apache.pinot.segment.spi.index.metadata.SegmentMetadataImpl;
+import org.apache.pinot.segment.spi.index.reader.NullValueVectorReader;
 import org.apache.pinot.segment.spi.index.reader.TextIndexReader;
 import org.apache.pinot.segment.spi.partition.PartitionFunction;
 import org.apache.pinot.segment.spi.partition.PartitionFunctionFactory;
@@ -201,10 +202,15 @@ public class RealtimeSegmentConverterTest implements PinotBuffersAfterMethodChec
     }
   }
 
-  @Test
-  public void test10RecordsIndexedRowMajorSegmentBuilder()
+  @DataProvider
+  public static Object[][] numIndexCreationThreadsParams() {
+    return new Object[][]{{1}, {4}};
+  }
+
+  @Test(dataProvider = "numIndexCreationThreadsParams")
+  public void test10RecordsIndexedRowMajorSegmentBuilder(int numIndexCreationThreads)
       throws Exception {
-    File tmpDir = new File(TMP_DIR, "tmp_" + System.currentTimeMillis());
+    File tmpDir = new File(TMP_DIR, "tmp_" + numIndexCreationThreads + "_" + System.currentTimeMillis());
     TableConfig tableConfig =
         new TableConfigBuilder(TableType.REALTIME).setTableName("testTable")
             .setTimeColumnName(DATE_TIME_COLUMN)
@@ -216,6 +222,7 @@ public class RealtimeSegmentConverterTest implements PinotBuffersAfterMethodChec
             .setOnHeapDictionaryColumns(Lists.newArrayList(LONG_COLUMN3))
             .setColumnMajorSegmentBuilderEnabled(false)
             .build();
+    tableConfig.getIndexingConfig().setNumIndexCreationThreads(numIndexCreationThreads);
     Schema schema = new Schema.SchemaBuilder()
         .addSingleValueDimension(STRING_COLUMN1, FieldSpec.DataType.STRING)
         .addSingleValueDimension(STRING_COLUMN2, FieldSpec.DataType.STRING)
@@ -353,10 +360,10 @@ public class RealtimeSegmentConverterTest implements PinotBuffersAfterMethodChec
     }
   }
 
-  @Test
-  public void test10RecordsIndexedColumnMajorSegmentBuilder()
+  @Test(dataProvider = "numIndexCreationThreadsParams")
+  public void test10RecordsIndexedColumnMajorSegmentBuilder(int numIndexCreationThreads)
       throws Exception {
-    File tmpDir = new File(TMP_DIR, "tmp_" + System.currentTimeMillis());
+    File tmpDir = new File(TMP_DIR, "tmp_" + numIndexCreationThreads + "_" + System.currentTimeMillis());
     TableConfig tableConfig =
         new TableConfigBuilder(TableType.REALTIME).setTableName("testTable")
             .setTimeColumnName(DATE_TIME_COLUMN)
@@ -368,6 +375,7 @@ public class RealtimeSegmentConverterTest implements PinotBuffersAfterMethodChec
             .setOnHeapDictionaryColumns(Lists.newArrayList(LONG_COLUMN3))
             .setColumnMajorSegmentBuilderEnabled(true)
             .build();
+    tableConfig.getIndexingConfig().setNumIndexCreationThreads(numIndexCreationThreads);
     Schema schema = new Schema.SchemaBuilder()
         .addSingleValueDimension(STRING_COLUMN1, FieldSpec.DataType.STRING)
         .addSingleValueDimension(STRING_COLUMN2, FieldSpec.DataType.STRING)
@@ -1214,6 +1222,112 @@ public class RealtimeSegmentConverterTest implements PinotBuffersAfterMethodChec
     }
   }
 
+  /// Verifies that the column-major segment builder copies the single-value columns from the mutable segment, both
+  /// through the dictionary id remapping for the dictionary-encoded columns and through the primitive values for the
+  /// raw columns, with repeated values, null values and docs reordered by the sorted column.
+  @Test(dataProvider = "sortedColumnParams")
+  public void testColumnMajorSegmentBuilderCopiesValues(FieldSpec.DataType dataType, boolean dictionaryEncoded)
+      throws Exception {
+    File tmpDir =
+        new File(TMP_DIR, "tmp_column_major_" + dataType + "_" + dictionaryEncoded + "_" + System.nanoTime());
+    String valueColumn = "value_col";
+
+    TableConfig tableConfig = new TableConfigBuilder(TableType.REALTIME)
+        .setTableName("testTable")
+        .setTimeColumnName(DATE_TIME_COLUMN)
+        .setSortedColumn(LONG_COLUMN1)
+        .setNoDictionaryColumns(dictionaryEncoded ? List.of() : List.of(valueColumn))
+        .setColumnMajorSegmentBuilderEnabled(true)
+        .build();
+    Schema schema = new Schema.SchemaBuilder()
+        .setEnableColumnBasedNullHandling(true)
+        .addSingleValueDimension(valueColumn, dataType)
+        .addSingleValueDimension(LONG_COLUMN1, FieldSpec.DataType.LONG)
+        .addDateTime(DATE_TIME_COLUMN, FieldSpec.DataType.LONG, "1:MILLISECONDS:EPOCH", "1:MILLISECONDS")
+        .build();
+
+    String tableNameWithType = tableConfig.getTableName();
+    String segmentName = "testTable__0__0__123456";
+
+    RealtimeSegmentConfig.Builder configBuilder = new RealtimeSegmentConfig.Builder(tableConfig, schema)
+        .setTableNameWithType(tableNameWithType)
+        .setSegmentName(segmentName)
+        .setStreamName(tableNameWithType)
+        .setSchema(schema)
+        .setTimeColumnName(DATE_TIME_COLUMN)
+        .setCapacity(1000)
+        .setSegmentZKMetadata(getSegmentZKMetadata(segmentName))
+        .setOffHeap(true)
+        .setMemoryManager(new DirectMemoryManager(segmentName))
+        .setStatsHistory(RealtimeSegmentStatsHistory.deserializeFrom(new File(tmpDir, "stats")))
+        .setConsumerDir(new File(tmpDir, "consumerDir").getAbsolutePath());
+
+    MutableSegmentImpl mutableSegment = new MutableSegmentImpl(configBuilder.build(), null);
+    try {
+      // Insert rows in reverse order of the sorted column, so that the docs are reordered in the converted segment.
+      // The value column repeats 4 distinct values, so that multiple docs share the same dictionary id, and every 5th
+      // value is null.
+      int numRows = 20;
+      int numDistinctValues = 4;
+      Object defaultNullValue = schema.getFieldSpecFor(valueColumn).getDefaultNullValue();
+      for (int i = numRows - 1; i >= 0; i--) {
+        GenericRow row = new GenericRow();
+        if (i % 5 == 0) {
+          row.putDefaultNullValue(valueColumn, defaultNullValue);
+        } else {
+          row.putValue(valueColumn, sortedValue(dataType, i % numDistinctValues, numDistinctValues));
+        }
+        row.putValue(LONG_COLUMN1, (long) i);
+        row.putValue(DATE_TIME_COLUMN, 1697814309L + i);
+        mutableSegment.index(row, null);
+      }
+
+      File outputDir = new File(tmpDir, "outputDir");
+      SegmentZKPropsConfig segmentZKPropsConfig = new SegmentZKPropsConfig();
+      segmentZKPropsConfig.setStartOffset("1");
+      segmentZKPropsConfig.setEndOffset("100");
+      RealtimeSegmentConverter converter =
+          new RealtimeSegmentConverter(mutableSegment, segmentZKPropsConfig, outputDir.getAbsolutePath(), schema,
+              tableNameWithType, tableConfig, segmentName, false);
+      converter.build(SegmentVersion.v3, null);
+
+      File indexDir = new File(outputDir, segmentName);
+      SegmentMetadataImpl segmentMetadata = new SegmentMetadataImpl(indexDir);
+      assertEquals(segmentMetadata.getColumnMetadataFor(valueColumn).hasDictionary(), dictionaryEncoded);
+
+      SegmentLocalFSDirectory segmentDir = new SegmentLocalFSDirectory(indexDir, segmentMetadata, ReadMode.mmap);
+      SegmentDirectory.Reader segmentReader = segmentDir.createReader();
+      Map<String, ColumnIndexContainer> indexContainerMap = new HashMap<>();
+      IndexLoadingConfig indexLoadingConfig = new IndexLoadingConfig(null, tableConfig);
+      for (Map.Entry<String, ColumnMetadata> entry : segmentMetadata.getColumnMetadataMap().entrySet()) {
+        indexContainerMap.put(entry.getKey(),
+            new PhysicalColumnIndexContainer(segmentReader, entry.getValue(), indexLoadingConfig));
+      }
+      ImmutableSegmentImpl immutableSegment =
+          new ImmutableSegmentImpl(segmentDir, segmentMetadata, indexContainerMap, null);
+      try {
+        NullValueVectorReader nullValueVector = immutableSegment.getDataSource(valueColumn).getNullValueVector();
+        assertNotNull(nullValueVector);
+        FieldSpec.DataType storedType = dataType.getStoredType();
+        // Docs are sorted by the sorted column, so doc i holds the row inserted with index i
+        for (int docId = 0; docId < numRows; docId++) {
+          assertEquals(immutableSegment.getValue(docId, LONG_COLUMN1), (long) docId);
+          // Values are read in the stored type, e.g. BOOLEAN as int
+          Object expectedValue = docId % 5 == 0 ? defaultNullValue
+              : sortedValue(dataType, docId % numDistinctValues, numDistinctValues);
+          assertEquals(compareValues(storedType, immutableSegment.getValue(docId, valueColumn), expectedValue), 0,
+              "Value mismatch at docId=" + docId + " (dataType=" + dataType + ", dictionaryEncoded="
+                  + dictionaryEncoded + ")");
+          assertEquals(nullValueVector.isNull(docId), docId % 5 == 0);
+        }
+      } finally {
+        immutableSegment.destroy();
+      }
+    } finally {
+      mutableSegment.destroy();
+    }
+  }
+
   /// Returns the i-th ascending value for the given data type, out of numRows total rows.
   private static Object sortedValue(FieldSpec.DataType dataType, int i, int numRows) {
     switch (dataType) {
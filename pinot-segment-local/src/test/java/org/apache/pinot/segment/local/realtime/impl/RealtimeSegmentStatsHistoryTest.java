@@ -245,6 +245,7 @@ public class RealtimeSegmentStatsHistoryTest {
     columnStats = segmentStats.getColumnStats("v1col2");
     Assert.assertEquals(columnStats.getCardinality(), 300);
     Assert.assertEquals(columnStats.getAvgColumnSize(), 400);
+    Assert.assertEquals(columnStats.getAvgNumMultiValues(), 0); // Input file does not have this field.
 
     Assert.assertEquals(segmentStats.getNumRowsConsumed(), 500);
     Assert.assertEquals(segmentStats.getNumRowsIndexed(), 0); // Input file does not have this field.
@@ -275,6 +276,42 @@ public class RealtimeSegmentStatsHistoryTest {
     Assert.assertEquals(history.getLatestSegmentMemoryConsumed(), expectedMemUsed);
   }
 
+  @Test
+  public void testEstimatedAvgNumMultiValuesAndMemoryPerRow()
+      throws IOException, ClassNotFoundException {
+    final String tmpDir = System.getProperty("java.io.tmpdir");
+    File serializedFile = new File(tmpDir, STATS_FILE_NAME);
+    serializedFile.deleteOnExit();
+    FileUtils.deleteQuietly(serializedFile);
+    String mvColumn = "mvCol";
+    String svColumn = "svCol";
+
+    RealtimeSegmentStatsHistory history = RealtimeSegmentStatsHistory.deserializeFrom(serializedFile);
+    Assert.assertEquals(history.getEstimatedAvgNumMultiValues(mvColumn, 2), 2);
+    Assert.assertEquals(history.getEstimatedMemoryBytesPerRow(), -1);
+
+    int[] avgNumMultiValues = {3, 6};
+    long[] memUsedBytes = {1000, 3000};
+    int[] numRowsIndexed = {10, 10};
+    for (int i = 0; i < 2; i++) {
+      RealtimeSegmentStatsHistory.SegmentStats segmentStats = new RealtimeSegmentStatsHistory.SegmentStats();
+      segmentStats.setMemUsedBytes(memUsedBytes[i]);
+      segmentStats.setNumRowsIndexed(numRowsIndexed[i]);
+      RealtimeSegmentStatsHistory.ColumnStats mvColumnStats = new RealtimeSegmentStatsHistory.ColumnStats();
+      mvColumnStats.setAvgNumMultiValues(avgNumMultiValues[i]);
+      segmentStats.setColumnStats(mvColumn, mvColumnStats);
+      segmentStats.setColumnStats(svColumn, new RealtimeSegmentStatsHistory.ColumnStats());
+      history.addSegmentStats(segmentStats);
+    }
+
+    history = RealtimeSegmentStatsHistory.deserializeFrom(serializedFile);
+    // Average is rounded up
+    Assert.assertEquals(history.getEstimatedAvgNumMultiValues(mvColumn, 2), 5);
+    // Columns without multi-value stats should use the default value
+    Assert.assertEquals(history.getEstimatedAvgNumMultiValues(svColumn, 2), 2);
+    Assert.assertEquals(history.getEstimatedMemoryBytesPerRow(), 200);
+  }
+
   private static class StatsUpdater implements Runnable {
     private final RealtimeSegmentStatsHistory _statsHistory;
     private final int _numIterations;
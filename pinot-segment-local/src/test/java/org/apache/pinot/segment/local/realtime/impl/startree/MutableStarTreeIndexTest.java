@@ -0,0 +1,237 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.realtime.impl.startree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.apache.pinot.segment.local.realtime.impl.dictionary.StringOnHeapMutableDictionary;
+import org.apache.pinot.segment.local.startree.v2.builder.StarTreeV2BuilderConfig;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
+import org.apache.pinot.segment.spi.index.reader.ForwardIndexReader;
+import org.apache.pinot.segment.spi.index.startree.StarTreeNode;
+import org.apache.pinot.segment.spi.index.startree.StarTreeV2;
+import org.apache.pinot.spi.config.table.StarTreeIndexConfig;
+import org.apache.pinot.spi.data.DimensionFieldSpec;
+import org.apache.pinot.spi.data.FieldSpec;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+
+public class MutableStarTreeIndexTest {
+  private static final String D1 = "d1";
+  private static final String D2 = "d2";
+  private static final String METRIC = "m";
+  private static final String SUM_METRIC = "sum__m";
+  private static final String COUNT_METRIC = "count__*";
+  private static final String[] D1_VALUES = {"a", "b"};
+  private static final String[] D2_VALUES = {"x", "y", "z"};
+
+  private StringOnHeapMutableDictionary[] _dictionaries;
+  private MutableStarTreeIndex _starTreeIndex;
+
+  @BeforeMethod
+  public void setUp() {
+    _dictionaries = new StringOnHeapMutableDictionary[]{
+        new StringOnHeapMutableDictionary(), new StringOnHeapMutableDictionary()
+    };
+    _starTreeIndex = createStarTreeIndex(0);
+  }
+
+  private MutableStarTreeIndex createStarTreeIndex(long refreshIntervalMs) {
+    // Build the snapshots on the calling thread to make the tests deterministic
+    return createStarTreeIndex(refreshIntervalMs, Runnable::run);
+  }
+
+  private MutableStarTreeIndex createStarTreeIndex(long refreshIntervalMs, Executor snapshotBuilderExecutor) {
+    StarTreeIndexConfig indexConfig =
+        new StarTreeIndexConfig(List.of(D1, D2), null, List.of("SUM__m", "COUNT__*"), null, 1);
+    return new MutableStarTreeIndex(StarTreeV2BuilderConfig.fromIndexConfig(indexConfig), new FieldSpec[]{
+        new DimensionFieldSpec(D1, DataType.STRING, true), new DimensionFieldSpec(D2, DataType.STRING, true)
+    }, _dictionaries, refreshIntervalMs, snapshotBuilderExecutor);
+  }
+
+  private void index(String d1, String d2, double metric) {
+    GenericRow row = new GenericRow();
+    row.putValue(D1, d1);
+    row.putValue(D2, d2);
+    row.putValue(METRIC, metric);
+    _starTreeIndex.index(new int[]{_dictionaries[0].index(d1), _dictionaries[1].index(d2)}, row);
+  }
+
+  @Test
+  public void testStarTree() {
+    assertNull(_starTreeIndex.getStarTree());
+
+    // Index 2 rows for each combination, with metric value equal to (d1 index * 10 + d2 index)
+    double expectedSum = 0;
+    for (int round = 0; round < 2; round++) {
+      for (int i = 0; i < D1_VALUES.length; i++) {
+        for (int j = 0; j < D2_VALUES.length; j++) {
+          index(D1_VALUES[i], D2_VALUES[j], i * 10 + j);
+          expectedSum += i * 10 + j;
+        }
+      }
+    }
+    assertEquals(_starTreeIndex.getNumRecords(), 6);
+
+    StarTreeV2 starTree = _starTreeIndex.getStarTree();
+    assertNotNull(starTree);
+    assertSame(_starTreeIndex.getStarTree(), starTree);
+    assertEquals(starTree.getMetadata().getDimensionsSplitOrder(), List.of(D1, D2));
+    assertEquals(starTree.getStarTree().getDimensionNames(), List.of(D1, D2));
+    ForwardIndexReader sumReader = starTree.getDataSource(SUM_METRIC).getForwardIndex();
+    ForwardIndexReader countReader = starTree.getDataSource(COUNT_METRIC).getForwardIndex();
+    ForwardIndexReader d2Reader = starTree.getDataSource(D2).getForwardIndex();
+    assertEquals(starTree.getDataSource(SUM_METRIC).getDataSourceMetadata().getNumDocs(),
+        starTree.getMetadata().getNumDocs());
+
+    // Root aggregates all the rows
+    StarTreeNode root = starTree.getStarTree().getRoot();
+    assertEquals(sumReader.getDouble(root.getAggregatedDocId(), null), expectedSum);
+    assertEquals(countReader.getLong(root.getAggregatedDocId(), null), 12L);
+
+    // Non-star child on d1 aggregates the rows with the value
+    StarTreeNode bNode = root.getChildForDimensionValue(_dictionaries[0].indexOf("b"));
+    assertNotNull(bNode);
+    assertEquals(sumReader.getDouble(bNode.getAggregatedDocId(), null), 2 * (10 + 11 + 12.0));
+    assertEquals(countReader.getLong(bNode.getAggregatedDocId(), null), 6L);
+
+    // Star child on d1 aggregates the rows on d2
+    StarTreeNode starNode = root.getChildForDimensionValue(StarTreeNode.ALL);
+    assertNotNull(starNode);
+    assertEquals(root.getNumChildren(), 3);
+    int yDictId = _dictionaries[1].indexOf("y");
+    StarTreeNode yNode = starNode.getChildForDimensionValue(yDictId);
+    assertNotNull(yNode);
+    assertTrue(yNode.isLeaf());
+    assertEquals(yNode.getEndDocId() - yNode.getStartDocId(), 1);
+    assertEquals(d2Reader.getDictId(yNode.getStartDocId(), null), yDictId);
+    assertEquals(sumReader.getDouble(yNode.getAggregatedDocId(), null), 2 * (1 + 11.0));
+    assertEquals(countReader.getLong(yNode.getAggregatedDocId(), null), 4L);
+
+    // New rows should trigger a new snapshot, and should not modify the existing one
+    index("c", "x", 100);
+    StarTreeV2 newStarTree = _starTreeIndex.getStarTree();
+    assertNotSame(newStarTree, starTree);
+    assertEquals(sumReader.getDouble(root.getAggregatedDocId(), null), expectedSum);
+    StarTreeNode newRoot = newStarTree.getStarTree().getRoot();
+    assertEquals(newStarTree.getDataSource(SUM_METRIC).getForwardIndex().getDouble(newRoot.getAggregatedDocId(), null),
+        expectedSum + 100);
+    assertEquals(newRoot.getNumChildren(), 4);
+  }
+
+  @Test
+  public void testSnapshotRefreshInterval() {
+    // Snapshot should be reused within the refresh interval even when new rows are indexed
+    _starTreeIndex = createStarTreeIndex(Long.MAX_VALUE);
+    index("a", "x", 1);
+    StarTreeV2 starTree = _starTreeIndex.getStarTree();
+    assertNotNull(starTree);
+    index("b", "y", 2);
+    // Stale snapshot should only be returned when allowed
+    assertNull(_starTreeIndex.getStarTree());
+    assertSame(_starTreeIndex.getStarTree(true), starTree);
+    StarTreeNode root = starTree.getStarTree().getRoot();
+    assertEquals(starTree.getDataSource(COUNT_METRIC).getForwardIndex().getLong(root.getAggregatedDocId(), null), 1L);
+
+    // Snapshot should be rebuilt on new rows once the refresh interval elapses
+    _starTreeIndex = createStarTreeIndex(0);
+    index("a", "x", 1);
+    starTree = _starTreeIndex.getStarTree();
+    assertNotNull(starTree);
+    assertSame(_starTreeIndex.getStarTree(), starTree);
+    index("b", "y", 2);
+    StarTreeV2 newStarTree = _starTreeIndex.getStarTree();
+    assertNotSame(newStarTree, starTree);
+    root = newStarTree.getStarTree().getRoot();
+    assertEquals(newStarTree.getDataSource(COUNT_METRIC).getForwardIndex().getLong(root.getAggregatedDocId(), null),
+        2L);
+  }
+
+  @Test
+  public void testBackgroundSnapshotBuild() {
+    List<Runnable> tasks = new ArrayList<>();
+    _starTreeIndex = createStarTreeIndex(0, tasks::add);
+    index("a", "x", 1);
+
+    // Snapshot should be built in the background instead of on the query thread, and only scheduled once
+    assertNull(_starTreeIndex.getStarTree());
+    assertNull(_starTreeIndex.getStarTree(true));
+    assertEquals(tasks.size(), 1);
+    tasks.remove(0).run();
+    StarTreeV2 starTree = _starTreeIndex.getStarTree();
+    assertNotNull(starTree);
+    assertTrue(tasks.isEmpty());
+
+    // Stale snapshot should be used until the new one is built when allowed
+    index("b", "y", 2);
+    assertNull(_starTreeIndex.getStarTree());
+    assertSame(_starTreeIndex.getStarTree(true), starTree);
+    assertEquals(tasks.size(), 1);
+    tasks.remove(0).run();
+    StarTreeV2 newStarTree = _starTreeIndex.getStarTree();
+    assertNotNull(newStarTree);
+    assertNotSame(newStarTree, starTree);
+    StarTreeNode root = newStarTree.getStarTree().getRoot();
+    assertEquals(newStarTree.getDataSource(COUNT_METRIC).getForwardIndex().getLong(root.getAggregatedDocId(), null),
+        2L);
+  }
+
+  @Test
+  public void testDisabledWithoutEnoughReduction() {
+    // Every row has a unique combination of dimensions
+    for (int i = 0; i < MutableStarTreeIndex.REDUCTION_CHECK_INTERVAL - 1; i++) {
+      index(Integer.toString(i), "x", i);
+    }
+    assertFalse(_starTreeIndex.isDisabled());
+    assertNotNull(_starTreeIndex.getStarTree());
+    index("last", "x", 0);
+    assertTrue(_starTreeIndex.isDisabled());
+    assertNull(_starTreeIndex.getStarTree());
+    assertEquals(_starTreeIndex.getNumRecords(), 0);
+  }
+
+  @Test
+  public void testSkipStarNodeCreation() {
+    StarTreeIndexConfig indexConfig =
+        new StarTreeIndexConfig(List.of(D1, D2), List.of(D1), List.of("SUM__m"), null, 1);
+    _starTreeIndex = new MutableStarTreeIndex(StarTreeV2BuilderConfig.fromIndexConfig(indexConfig), new FieldSpec[]{
+        new DimensionFieldSpec(D1, DataType.STRING, true), new DimensionFieldSpec(D2, DataType.STRING, true)
+    }, new Dictionary[]{_dictionaries[0], _dictionaries[1]}, 0, Runnable::run);
+    index("a", "x", 1);
+    index("b", "x", 2);
+    StarTreeV2 starTree = _starTreeIndex.getStarTree();
+    assertNotNull(starTree);
+    StarTreeNode root = starTree.getStarTree().getRoot();
+    assertNull(root.getChildForDimensionValue(StarTreeNode.ALL));
+    assertEquals(root.getNumChildren(), 2);
+    assertEquals(starTree.getDataSource(SUM_METRIC).getForwardIndex().getDouble(root.getAggregatedDocId(), null), 3.0);
+  }
+}
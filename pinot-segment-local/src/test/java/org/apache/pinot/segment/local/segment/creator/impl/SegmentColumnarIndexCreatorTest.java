@@ -30,6 +30,7 @@ import org.apache.pinot.segment.spi.IndexSegment;
 import org.apache.pinot.segment.spi.SegmentMetadata;
 import org.apache.pinot.segment.spi.V1Constants.MetadataKeys.Column;
 import org.apache.pinot.segment.spi.creator.SegmentGeneratorConfig;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
 import org.apache.pinot.spi.config.table.TableConfig;
 import org.apache.pinot.spi.config.table.TableType;
 import org.apache.pinot.spi.data.FieldSpec.DataType;
@@ -42,6 +43,13 @@ import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
@@ -95,6 +103,38 @@ public class SegmentColumnarIndexCreatorTest implements PinotBuffersAfterClassCh
     assertEquals(withTZ, withoutTZ);
   }
 
+  @Test
+  public void testDictIdRemapper() {
+    Dictionary sourceDictionary = mock(Dictionary.class);
+    when(sourceDictionary.length()).thenReturn(3);
+    when(sourceDictionary.get(anyInt())).thenAnswer(invocation -> "value" + invocation.getArgument(0));
+    SegmentDictionaryCreator dictionaryCreator = mock(SegmentDictionaryCreator.class);
+    // The new dictionary is sorted in the reverse order of the source dictionary
+    when(dictionaryCreator.indexOfSV((Object) "value0")).thenReturn(2);
+    when(dictionaryCreator.indexOfSV((Object) "value1")).thenReturn(1);
+    when(dictionaryCreator.indexOfSV((Object) "value2")).thenReturn(0);
+
+    SegmentColumnarIndexCreator.DictIdRemapper dictIdRemapper =
+        new SegmentColumnarIndexCreator.DictIdRemapper(sourceDictionary, dictionaryCreator);
+    int[] sourceDictIds = {1, 0, 1, 1, 2, 0, 2};
+    int[] expectedDictIds = {1, 2, 1, 1, 0, 2, 0};
+    for (int i = 0; i < sourceDictIds.length; i++) {
+      assertEquals(dictIdRemapper.getDictId(sourceDictIds[i]), expectedDictIds[i]);
+    }
+    // Each source dictionary id should be resolved only once
+    verify(sourceDictionary, times(3)).get(anyInt());
+    verify(dictionaryCreator, times(3)).indexOfSV((Object) any());
+
+    // Without dictionary in the new segment, the dictionary ids should be -1 without looking up the values
+    Dictionary rawSourceDictionary = mock(Dictionary.class);
+    when(rawSourceDictionary.length()).thenReturn(3);
+    dictIdRemapper = new SegmentColumnarIndexCreator.DictIdRemapper(rawSourceDictionary, null);
+    for (int sourceDictId : sourceDictIds) {
+      assertEquals(dictIdRemapper.getDictId(sourceDictId), -1);
+    }
+    verify(rawSourceDictionary, never()).get(anyInt());
+  }
+
   private static long getStartTimeInSegmentMetadata(String testDateTimeFormat, String testDateTime)
       throws Exception {
     String timeColumn = "foo";
@@ -117,6 +117,25 @@ public class FixedByteSVMutableForwardIndexTest implements PinotBuffersAfterClas
     readerWriter.close();
   }
 
+  @Test
+  public void testNumUnusedBytes()
+      throws IOException {
+    try (FixedByteSVMutableForwardIndex readerWriter = new FixedByteSVMutableForwardIndex(false, DataType.LONG, 100,
+        _memoryManager, "NumUnusedBytes")) {
+      // The first chunk is allocated upfront
+      Assert.assertEquals(readerWriter.getNumUnusedBytes(0), 100 * Long.BYTES);
+      for (int i = 0; i < 30; i++) {
+        readerWriter.setLong(i, i);
+      }
+      Assert.assertEquals(readerWriter.getNumUnusedBytes(30), 70 * Long.BYTES);
+
+      // Writing beyond the capacity allocates another chunk
+      readerWriter.setLong(150, 150);
+      Assert.assertEquals(readerWriter.getNumUnusedBytes(151), 49 * Long.BYTES);
+      Assert.assertEquals(readerWriter.getNumUnusedBytes(300), 0);
+    }
+  }
+
   @Test
   public void testBytes()
       throws IOException {
@@ -0,0 +1,231 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentLoader;
+import org.apache.pinot.segment.local.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import org.apache.pinot.segment.local.segment.index.loader.IndexLoadingConfig;
+import org.apache.pinot.segment.local.segment.readers.GenericRowRecordReader;
+import org.apache.pinot.segment.local.segment.readers.PinotSegmentColumnReader;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.compression.ChunkCompressionType;
+import org.apache.pinot.segment.spi.creator.SegmentGeneratorConfig;
+import org.apache.pinot.segment.spi.index.StandardIndexes;
+import org.apache.pinot.segment.spi.memory.PinotDataBuffer;
+import org.apache.pinot.segment.spi.store.SegmentDirectory;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.utils.builder.TableConfigBuilder;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+
+public class LazyRemoteSegmentDirectoryTest {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "LazyRemoteSegmentDirectoryTest");
+  private static final File REMOTE_DIR = new File(TEMP_DIR, "remote");
+  private static final File LOCAL_DIR = new File(TEMP_DIR, "local");
+  private static final File CACHE_DIR = new File(TEMP_DIR, "cache");
+  private static final String RAW_TABLE_NAME = "testTable";
+  private static final String SEGMENT_NAME = "testSegment";
+  private static final int NUM_ROWS = 1000;
+
+  private TableConfig _tableConfig;
+  private Schema _schema;
+
+  @BeforeClass
+  public void setUp()
+      throws Exception {
+    FileUtils.deleteQuietly(TEMP_DIR);
+    _schema = new Schema.SchemaBuilder().setSchemaName(RAW_TABLE_NAME)
+        .addSingleValueDimension("d", DataType.STRING)
+        .addMetric("m", DataType.LONG)
+        .build();
+    _tableConfig = new TableConfigBuilder(TableType.OFFLINE).setTableName(RAW_TABLE_NAME).build();
+    List<GenericRow> rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      GenericRow row = new GenericRow();
+      row.putValue("d", "v" + (i % 10));
+      row.putValue("m", (long) i);
+      rows.add(row);
+    }
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(_tableConfig, _schema);
+    config.setOutDir(REMOTE_DIR.getAbsolutePath());
+    config.setSegmentName(SEGMENT_NAME);
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new GenericRowRecordReader(rows));
+    driver.build();
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @Test
+  public void testFetchOnDemand()
+      throws Exception {
+    IndexBufferCache cache = new IndexBufferCache(CACHE_DIR, 1024 * 1024);
+    File indexDir = new File(LOCAL_DIR, SEGMENT_NAME);
+    try (LazyRemoteSegmentDirectory segmentDirectory = new LazyRemoteSegmentDirectory(indexDir,
+        new File(REMOTE_DIR, SEGMENT_NAME).toURI(), cache)) {
+      assertEquals(segmentDirectory.getSegmentMetadata().getName(), SEGMENT_NAME);
+      assertEquals(segmentDirectory.getSegmentMetadata().getTotalDocs(), NUM_ROWS);
+      assertTrue(segmentDirectory.getColumnsWithIndex(StandardIndexes.forward()).contains("m"));
+      assertFalse(new File(segmentDirectory.getPath().toFile(), "columns.psf").exists());
+
+      try (SegmentDirectory.Reader reader = segmentDirectory.createReader()) {
+        assertTrue(reader.hasIndexFor("d", StandardIndexes.dictionary()));
+        assertFalse(reader.hasIndexFor("m", StandardIndexes.inverted()));
+        PinotDataBuffer buffer = reader.getIndexFor("m", StandardIndexes.forward());
+        PinotDataBuffer view = buffer.view(8, buffer.size());
+        assertEquals(cache.getNumFetches(), 0);
+
+        // Only the accessed buffer should be fetched
+        view.getByte(0);
+        assertEquals(cache.getNumFetches(), 1);
+        assertEquals(cache.getSizeBytes(), buffer.size());
+        assertEquals(view.getLong(0), buffer.getLong(8));
+        assertEquals(cache.getNumFetches(), 1);
+        expectThrows(UnsupportedOperationException.class, () -> buffer.putInt(0, 1));
+        expectThrows(RuntimeException.class, () -> reader.getIndexFor("m", StandardIndexes.inverted()));
+      }
+    }
+
+    // The buffer should be served from the cache for a new segment directory on the same cache
+    try (LazyRemoteSegmentDirectory segmentDirectory = new LazyRemoteSegmentDirectory(indexDir,
+        new File(REMOTE_DIR, SEGMENT_NAME).toURI(), cache);
+        SegmentDirectory.Reader reader = segmentDirectory.createReader()) {
+      reader.getIndexFor("m", StandardIndexes.forward()).getByte(0);
+      assertEquals(cache.getNumFetches(), 1);
+    }
+  }
+
+  @Test
+  public void testLoadSegment()
+      throws Exception {
+    testLoadSegment(new File(REMOTE_DIR, SEGMENT_NAME), "loadSegment");
+  }
+
+  @Test
+  public void testLoadSegmentFromArchive()
+      throws Exception {
+    File archiveFile = new File(TEMP_DIR, SEGMENT_NAME + SegmentArchive.FILE_EXTENSION);
+    SegmentArchive.create(new File(REMOTE_DIR, SEGMENT_NAME), archiveFile, ChunkCompressionType.LZ4);
+    testLoadSegment(archiveFile, "loadSegmentFromArchive");
+
+    // Download the complete segment from the archive
+    File destDir = new File(LOCAL_DIR, "copyToFromArchive");
+    try (LazyRemoteSegmentDirectory segmentDirectory = new LazyRemoteSegmentDirectory(destDir, archiveFile.toURI(),
+        new IndexBufferCache(new File(TEMP_DIR, "copyToFromArchiveCache"), 1024 * 1024))) {
+      segmentDirectory.copyTo(destDir);
+    }
+    assertEquals(Files.readAllBytes(new File(new File(destDir, "v3"), "columns.psf").toPath()),
+        Files.readAllBytes(new File(new File(new File(REMOTE_DIR, SEGMENT_NAME), "v3"), "columns.psf").toPath()));
+  }
+
+  private void testLoadSegment(File remoteSegment, String name)
+      throws Exception {
+    IndexBufferCache cache = new IndexBufferCache(new File(TEMP_DIR, name + "Cache"), 1024 * 1024);
+    IndexLoadingConfig indexLoadingConfig = new IndexLoadingConfig(_tableConfig, _schema);
+    ImmutableSegment expectedSegment = ImmutableSegmentLoader.load(new File(REMOTE_DIR, SEGMENT_NAME),
+        indexLoadingConfig);
+    ImmutableSegment segment = ImmutableSegmentLoader.load(
+        new LazyRemoteSegmentDirectory(new File(LOCAL_DIR, name), remoteSegment.toURI(), cache), indexLoadingConfig);
+    try {
+      for (String column : List.of("d", "m")) {
+        try (PinotSegmentColumnReader expectedReader = new PinotSegmentColumnReader(expectedSegment, column);
+            PinotSegmentColumnReader reader = new PinotSegmentColumnReader(segment, column)) {
+          for (int docId = 0; docId < NUM_ROWS; docId++) {
+            assertEquals(reader.getValue(docId), expectedReader.getValue(docId));
+          }
+        }
+      }
+    } finally {
+      expectedSegment.destroy();
+      segment.destroy();
+    }
+  }
+
+  @Test
+  public void testCopyTo()
+      throws Exception {
+    IndexBufferCache cache = new IndexBufferCache(new File(TEMP_DIR, "copyToCache"), 1024 * 1024);
+    File destDir = new File(LOCAL_DIR, "copyTo");
+    try (LazyRemoteSegmentDirectory segmentDirectory = new LazyRemoteSegmentDirectory(destDir,
+        new File(REMOTE_DIR, SEGMENT_NAME).toURI(), cache)) {
+      segmentDirectory.copyTo(destDir);
+    }
+    File[] remoteFiles = new File(new File(REMOTE_DIR, SEGMENT_NAME), "v3").listFiles();
+    for (File remoteFile : remoteFiles) {
+      assertEquals(Files.readAllBytes(new File(new File(destDir, "v3"), remoteFile.getName()).toPath()),
+          Files.readAllBytes(remoteFile.toPath()));
+    }
+  }
+
+  @Test
+  public void testCacheEviction()
+      throws IOException {
+    File cacheDir = new File(TEMP_DIR, "evictionCache");
+    IndexBufferCache cache = new IndexBufferCache(cacheDir, 100);
+    IndexBufferCache.Fetcher fetcher = destFile -> FileUtils.writeByteArrayToFile(destFile, new byte[40]);
+    cache.acquire("a", fetcher);
+    cache.acquire("b", fetcher);
+    cache.acquire("c", fetcher);
+    // Acquired buffers cannot be evicted
+    assertEquals(cache.getSizeBytes(), 120);
+    cache.release("a");
+    assertFalse(cache.contains("a"));
+    assertEquals(cache.getSizeBytes(), 80);
+
+    // Released buffers are kept until evicted, in LRU order
+    cache.release("b");
+    cache.release("c");
+    cache.acquire("b", fetcher);
+    cache.release("b");
+    cache.acquire("d", fetcher);
+    cache.release("d");
+    assertFalse(cache.contains("c"));
+    assertTrue(cache.contains("b"));
+    assertTrue(cache.contains("d"));
+    assertEquals(cache.getNumFetches(), 4);
+
+    // Cached files should be kept across restarts
+    cache = new IndexBufferCache(cacheDir, 100);
+    assertEquals(cache.getNumBuffers(), 2);
+    assertEquals(cache.getSizeBytes(), 80);
+    cache.acquire("d", fetcher);
+    cache.release("d");
+    assertEquals(cache.getNumFetches(), 0);
+  }
+}
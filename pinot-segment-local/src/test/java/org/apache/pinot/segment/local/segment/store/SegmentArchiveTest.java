@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.segment.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentLoader;
+import org.apache.pinot.segment.local.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import org.apache.pinot.segment.local.segment.readers.GenericRowRecordReader;
+import org.apache.pinot.segment.local.segment.readers.PinotSegmentColumnReader;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.V1Constants;
+import org.apache.pinot.segment.spi.compression.ChunkCompressionType;
+import org.apache.pinot.segment.spi.creator.SegmentGeneratorConfig;
+import org.apache.pinot.segment.spi.index.StandardIndexes;
+import org.apache.pinot.segment.spi.store.SegmentDirectoryPaths;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.utils.ReadMode;
+import org.apache.pinot.spi.utils.builder.TableConfigBuilder;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+
+public class SegmentArchiveTest {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "SegmentArchiveTest");
+  private static final String RAW_TABLE_NAME = "testTable";
+  private static final String SEGMENT_NAME = "testSegment";
+  private static final File INDEX_DIR = new File(TEMP_DIR, SEGMENT_NAME);
+  private static final int NUM_ROWS = 1000;
+
+  @BeforeClass
+  public void setUp()
+      throws Exception {
+    FileUtils.deleteQuietly(TEMP_DIR);
+    Schema schema = new Schema.SchemaBuilder().setSchemaName(RAW_TABLE_NAME)
+        .addSingleValueDimension("d", DataType.STRING)
+        .addMetric("m", DataType.LONG)
+        .build();
+    TableConfig tableConfig = new TableConfigBuilder(TableType.OFFLINE).setTableName(RAW_TABLE_NAME).build();
+    List<GenericRow> rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      GenericRow row = new GenericRow();
+      row.putValue("d", "v" + (i % 10));
+      row.putValue("m", (long) i);
+      rows.add(row);
+    }
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(tableConfig, schema);
+    config.setOutDir(TEMP_DIR.getAbsolutePath());
+    config.setSegmentName(SEGMENT_NAME);
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new GenericRowRecordReader(rows));
+    driver.build();
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @Test
+  public void testCreateAndExtract()
+      throws Exception {
+    File archiveFile = new File(TEMP_DIR, SEGMENT_NAME + SegmentArchive.FILE_EXTENSION);
+    SegmentArchive.create(INDEX_DIR, archiveFile, ChunkCompressionType.ZSTANDARD,
+        Map.of(StandardIndexes.forward().getId(), ChunkCompressionType.PASS_THROUGH));
+
+    List<SegmentArchive.Entry> entries = SegmentArchive.readEntries(archiveFile);
+    boolean hasMetadataFile = false;
+    for (SegmentArchive.Entry entry : entries) {
+      assertEquals(entry.getOffset() % SegmentArchive.ALIGNMENT, 0);
+      if (entry.isIndex()) {
+        if (entry.getName().equals(StandardIndexes.forward().getId())) {
+          assertEquals(entry.getCompressionType(), ChunkCompressionType.PASS_THROUGH);
+        }
+      } else {
+        assertNull(entry.getColumn());
+        hasMetadataFile |= entry.getName().equals(V1Constants.MetadataKeys.METADATA_FILE_NAME);
+      }
+      assertTrue(entry.getLength() <= entry.getUncompressedLength());
+    }
+    assertTrue(hasMetadataFile);
+
+    File extractedDir = new File(TEMP_DIR, "extracted");
+    SegmentArchive.extract(archiveFile, extractedDir);
+    ImmutableSegment expectedSegment = ImmutableSegmentLoader.load(INDEX_DIR, ReadMode.mmap);
+    ImmutableSegment segment = ImmutableSegmentLoader.load(extractedDir, ReadMode.mmap);
+    try {
+      assertEquals(segment.getSegmentMetadata().getCrc(), expectedSegment.getSegmentMetadata().getCrc());
+      for (String column : List.of("d", "m")) {
+        try (PinotSegmentColumnReader expectedReader = new PinotSegmentColumnReader(expectedSegment, column);
+            PinotSegmentColumnReader reader = new PinotSegmentColumnReader(segment, column)) {
+          for (int docId = 0; docId < NUM_ROWS; docId++) {
+            assertEquals(reader.getValue(docId), expectedReader.getValue(docId));
+          }
+        }
+      }
+    } finally {
+      expectedSegment.destroy();
+      segment.destroy();
+    }
+  }
+
+  @Test
+  public void testExtractEntryOutsideSegmentDirectory()
+      throws Exception {
+    File indexDir = new File(TEMP_DIR, "traversal");
+    FileUtils.copyDirectory(INDEX_DIR, indexDir);
+    // Use a file name with the same length as the malicious one, so that it can be replaced in place in the footer
+    String fileName = "zzzzzzz";
+    String maliciousFileName = "../evil";
+    FileUtils.writeStringToFile(new File(new File(indexDir, SegmentDirectoryPaths.V3_SUBDIRECTORY_NAME), fileName),
+        "content", StandardCharsets.UTF_8);
+    File archiveFile = new File(TEMP_DIR, "traversal" + SegmentArchive.FILE_EXTENSION);
+    SegmentArchive.create(indexDir, archiveFile, ChunkCompressionType.PASS_THROUGH);
+
+    byte[] archiveBytes = FileUtils.readFileToByteArray(archiveFile);
+    String archiveString = new String(archiveBytes, StandardCharsets.ISO_8859_1);
+    int nameIndex = archiveString.lastIndexOf(fileName);
+    assertTrue(nameIndex > 0);
+    byte[] maliciousBytes = maliciousFileName.getBytes(StandardCharsets.ISO_8859_1);
+    System.arraycopy(maliciousBytes, 0, archiveBytes, nameIndex, maliciousBytes.length);
+    FileUtils.writeByteArrayToFile(archiveFile, archiveBytes);
+
+    File extractedDir = new File(TEMP_DIR, "traversalExtracted");
+    expectThrows(IOException.class, () -> SegmentArchive.extract(archiveFile, extractedDir));
+    assertFalse(new File(extractedDir, "evil").exists());
+  }
+}
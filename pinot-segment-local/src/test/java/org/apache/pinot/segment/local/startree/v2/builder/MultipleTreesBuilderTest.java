@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.startree.v2.builder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentLoader;
+import org.apache.pinot.segment.local.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import org.apache.pinot.segment.local.segment.readers.GenericRowRecordReader;
+import org.apache.pinot.segment.local.segment.readers.PinotSegmentColumnReader;
+import org.apache.pinot.segment.local.utils.CustomSerDeUtils;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.creator.SegmentGeneratorConfig;
+import org.apache.pinot.segment.spi.index.metadata.SegmentMetadataImpl;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
+import org.apache.pinot.segment.spi.index.startree.StarTreeNode;
+import org.apache.pinot.segment.spi.index.startree.StarTreeV2;
+import org.apache.pinot.segment.spi.index.startree.StarTreeV2Constants;
+import org.apache.pinot.segment.spi.store.SegmentDirectoryPaths;
+import org.apache.pinot.spi.config.table.StarTreeIndexConfig;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.utils.ReadMode;
+import org.apache.pinot.spi.utils.builder.TableConfigBuilder;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+public class MultipleTreesBuilderTest {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "MultipleTreesBuilderTest");
+  private static final String RAW_TABLE_NAME = "testTable";
+  private static final String SEGMENT_NAME = "testSegment";
+  private static final File INDEX_DIR = new File(TEMP_DIR, SEGMENT_NAME);
+  private static final String[] D1_VALUES = {"a", "b", "c"};
+  private static final String[] D2_VALUES = {"x", "y", "z", "w"};
+  private static final int NUM_ROWS = 100;
+
+  private static final StarTreeV2BuilderConfig FINE_BUILDER_CONFIG = StarTreeV2BuilderConfig.fromIndexConfig(
+      new StarTreeIndexConfig(List.of("d1", "d2"), null,
+          List.of("count__*", "sum__m", "max__m", "distinctCountHLL__d2"), null, 1));
+  // DISTINCTCOUNTHLL has BYTES aggregated values, which are applied as raw values when derived from the source tree
+  private static final StarTreeV2BuilderConfig COARSE_BUILDER_CONFIG = StarTreeV2BuilderConfig.fromIndexConfig(
+      new StarTreeIndexConfig(List.of("d1"), null, List.of("count__*", "sum__m", "distinctCountHLL__d2"), null, 1));
+
+  @BeforeClass
+  public void setUp()
+      throws Exception {
+    FileUtils.deleteQuietly(TEMP_DIR);
+    Schema schema = new Schema.SchemaBuilder().setSchemaName(RAW_TABLE_NAME)
+        .addSingleValueDimension("d1", DataType.STRING)
+        .addSingleValueDimension("d2", DataType.STRING)
+        .addMetric("m", DataType.LONG)
+        .build();
+    TableConfig tableConfig = new TableConfigBuilder(TableType.OFFLINE).setTableName(RAW_TABLE_NAME).build();
+    List<GenericRow> rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      GenericRow row = new GenericRow();
+      row.putValue("d1", D1_VALUES[i % D1_VALUES.length]);
+      row.putValue("d2", D2_VALUES[i % D2_VALUES.length]);
+      row.putValue("m", (long) i);
+      rows.add(row);
+    }
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(tableConfig, schema);
+    config.setOutDir(TEMP_DIR.getAbsolutePath());
+    config.setSegmentName(SEGMENT_NAME);
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new GenericRowRecordReader(rows));
+    driver.build();
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @Test
+  public void testDeriveStarTree()
+      throws Exception {
+    try (MultipleTreesBuilder builder = new MultipleTreesBuilder(List.of(FINE_BUILDER_CONFIG), INDEX_DIR,
+        MultipleTreesBuilder.BuildMode.ON_HEAP)) {
+      builder.build();
+    }
+
+    // Only the star-trees with subset of dimensions and function-column pairs can be derived
+    File segmentDirectory = SegmentDirectoryPaths.findSegmentDirectory(INDEX_DIR);
+    ImmutableSegment segment = ImmutableSegmentLoader.load(INDEX_DIR, ReadMode.mmap);
+    try (StarTreeIndexSeparator separator = new StarTreeIndexSeparator(
+        new File(segmentDirectory, StarTreeV2Constants.INDEX_MAP_FILE_NAME),
+        new File(segmentDirectory, StarTreeV2Constants.INDEX_FILE_NAME),
+        new SegmentMetadataImpl(INDEX_DIR).getStarTreeV2MetadataList())) {
+      try (StarTreeV2 sourceStarTree = separator.loadSourceStarTree(COARSE_BUILDER_CONFIG, segment)) {
+        assertNotNull(sourceStarTree);
+        assertEquals(sourceStarTree.getMetadata().getDimensionsSplitOrder(), List.of("d1", "d2"));
+        // Source tree should have fewer records than the segment to benefit from the derivation
+        assertTrue(sourceStarTree.getMetadata().getNumDocs() < NUM_ROWS);
+      }
+      assertNull(separator.loadSourceStarTree(FINE_BUILDER_CONFIG, segment));
+      assertNull(separator.loadSourceStarTree(StarTreeV2BuilderConfig.fromIndexConfig(
+          new StarTreeIndexConfig(List.of("d1"), null, List.of("min__m"), null, 1)), segment));
+      assertNull(separator.loadSourceStarTree(StarTreeV2BuilderConfig.fromIndexConfig(
+          new StarTreeIndexConfig(List.of("d1", "m"), null, List.of("sum__m"), null, 1)), segment));
+    } finally {
+      segment.destroy();
+    }
+
+    // Add the coarse star-tree, which should be derived from the fine one
+    try (MultipleTreesBuilder builder = new MultipleTreesBuilder(List.of(FINE_BUILDER_CONFIG, COARSE_BUILDER_CONFIG),
+        INDEX_DIR, MultipleTreesBuilder.BuildMode.OFF_HEAP)) {
+      builder.build();
+      assertEquals(builder.getNumDerivedStarTrees(), 1);
+    }
+
+    Map<String, Long> expectedCounts = new HashMap<>();
+    Map<String, Double> expectedSums = new HashMap<>();
+    Map<String, Set<String>> expectedD2Values = new HashMap<>();
+    for (int i = 0; i < NUM_ROWS; i++) {
+      String d1 = D1_VALUES[i % D1_VALUES.length];
+      expectedCounts.merge(d1, 1L, Long::sum);
+      expectedSums.merge(d1, (double) i, Double::sum);
+      expectedD2Values.computeIfAbsent(d1, k -> new HashSet<>()).add(D2_VALUES[i % D2_VALUES.length]);
+    }
+
+    segment = ImmutableSegmentLoader.load(INDEX_DIR, ReadMode.mmap);
+    try {
+      List<StarTreeV2> starTrees = segment.getStarTrees();
+      assertEquals(starTrees.size(), 2);
+      StarTreeV2 starTree = starTrees.get(1);
+      assertEquals(starTree.getMetadata().getDimensionsSplitOrder(), List.of("d1"));
+      Dictionary dictionary = segment.getDictionary("d1");
+      try (PinotSegmentColumnReader countReader = new PinotSegmentColumnReader(
+          starTree.getDataSource("count__*").getForwardIndex(), null, null, 0);
+          PinotSegmentColumnReader sumReader = new PinotSegmentColumnReader(
+              starTree.getDataSource("sum__m").getForwardIndex(), null, null, 0);
+          PinotSegmentColumnReader hllReader = new PinotSegmentColumnReader(
+              starTree.getDataSource("distinctCountHLL__d2").getForwardIndex(), null, null, 0)) {
+        int numChildren = 0;
+        Iterator<? extends StarTreeNode> childrenIterator = starTree.getStarTree().getRoot().getChildrenIterator();
+        while (childrenIterator.hasNext()) {
+          StarTreeNode child = childrenIterator.next();
+          int aggregatedDocId = child.getAggregatedDocId();
+          if (child.getDimensionValue() == StarTreeNode.ALL) {
+            assertEquals(countReader.getValue(aggregatedDocId), (long) NUM_ROWS);
+            assertEquals(sumReader.getValue(aggregatedDocId), (double) (NUM_ROWS * (NUM_ROWS - 1) / 2));
+            assertEquals(getCardinality(hllReader, aggregatedDocId), D2_VALUES.length);
+          } else {
+            String d1 = dictionary.getStringValue(child.getDimensionValue());
+            assertEquals(countReader.getValue(aggregatedDocId), expectedCounts.get(d1));
+            assertEquals(sumReader.getValue(aggregatedDocId), expectedSums.get(d1));
+            assertEquals(getCardinality(hllReader, aggregatedDocId), expectedD2Values.get(d1).size());
+            numChildren++;
+          }
+        }
+        assertEquals(numChildren, D1_VALUES.length);
+      }
+    } finally {
+      segment.destroy();
+    }
+  }
+
+  private static long getCardinality(PinotSegmentColumnReader hllReader, int docId) {
+    return CustomSerDeUtils.HYPER_LOG_LOG_SER_DE.deserialize((byte[]) hllReader.getValue(docId)).cardinality();
+  }
+}
@@ -0,0 +1,285 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.upsert;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.common.utils.LLCSegmentName;
+import org.apache.pinot.segment.local.data.manager.TableDataManager;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentImpl;
+import org.apache.pinot.segment.spi.MutableSegment;
+import org.apache.pinot.segment.spi.index.metadata.SegmentMetadataImpl;
+import org.apache.pinot.segment.spi.index.mutable.ThreadSafeMutableRoaringBitmap;
+import org.apache.pinot.spi.config.table.HashFunction;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.PrimaryKey;
+import org.apache.pinot.spi.utils.builder.TableNameBuilder;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+
+public class OffHeapPartitionUpsertMetadataManagerTest {
+  private static final String RAW_TABLE_NAME = "testTable";
+  private static final String REALTIME_TABLE_NAME = TableNameBuilder.REALTIME.tableNameWithType(RAW_TABLE_NAME);
+  private static final List<String> PRIMARY_KEY_COLUMNS = Collections.singletonList("pk");
+  private static final List<String> COMPARISON_COLUMNS = Collections.singletonList("timeCol");
+  private static final File INDEX_DIR =
+      new File(FileUtils.getTempDirectory(), "OffHeapPartitionUpsertMetadataManagerTest");
+  private static final Schema SCHEMA = new Schema.SchemaBuilder()
+      .addSingleValueDimension(PRIMARY_KEY_COLUMNS.get(0), DataType.INT)
+      .addSingleValueDimension("stringCol", DataType.STRING)
+      .addMetric(COMPARISON_COLUMNS.get(0), DataType.LONG)
+      .setPrimaryKeyColumns(PRIMARY_KEY_COLUMNS)
+      .build();
+
+  private UpsertContext.Builder _contextBuilder;
+
+  @BeforeClass
+  public void setUp()
+      throws IOException {
+    FileUtils.forceMkdir(INDEX_DIR);
+    ServerMetrics.register(mock(ServerMetrics.class));
+  }
+
+  @BeforeMethod
+  public void setUpContextBuilder()
+      throws IOException {
+    FileUtils.cleanDirectory(INDEX_DIR);
+    TableDataManager tableDataManager = mock(TableDataManager.class);
+    when(tableDataManager.getTableDataDir()).thenReturn(INDEX_DIR);
+    _contextBuilder = new UpsertContext.Builder()
+        .setTableConfig(mock(TableConfig.class))
+        .setSchema(SCHEMA)
+        .setTableDataManager(tableDataManager)
+        .setPrimaryKeyColumns(PRIMARY_KEY_COLUMNS)
+        .setComparisonColumns(COMPARISON_COLUMNS);
+  }
+
+  @AfterClass
+  public void tearDown()
+      throws IOException {
+    FileUtils.forceDelete(INDEX_DIR);
+  }
+
+  private static MutableSegment mockMutableSegment(int sequenceNumber, ThreadSafeMutableRoaringBitmap validDocIds) {
+    MutableSegment segment = mock(MutableSegment.class);
+    when(segment.getSegmentName()).thenReturn(
+        new LLCSegmentName(RAW_TABLE_NAME, 0, sequenceNumber, System.currentTimeMillis()).toString());
+    when(segment.getValidDocIds()).thenReturn(validDocIds);
+    return segment;
+  }
+
+  private static ImmutableSegmentImpl mockImmutableSegment(int sequenceNumber, String crc,
+      ThreadSafeMutableRoaringBitmap validDocIds) {
+    ImmutableSegmentImpl segment = mock(ImmutableSegmentImpl.class);
+    when(segment.getSegmentName()).thenReturn(
+        new LLCSegmentName(RAW_TABLE_NAME, 0, sequenceNumber, 0L).toString());
+    when(segment.getValidDocIds()).thenReturn(validDocIds);
+    SegmentMetadataImpl segmentMetadata = mock(SegmentMetadataImpl.class);
+    when(segmentMetadata.getCrc()).thenReturn(crc);
+    when(segment.getSegmentMetadata()).thenReturn(segmentMetadata);
+    return segment;
+  }
+
+  private static Iterator<RecordInfo> getRecordInfoIterator(int[] primaryKeys, long[] timestamps) {
+    List<RecordInfo> recordInfoList = new ArrayList<>();
+    for (int i = 0; i < primaryKeys.length; i++) {
+      recordInfoList.add(getRecordInfo(primaryKeys[i], i, timestamps[i]));
+    }
+    return recordInfoList.iterator();
+  }
+
+  private static RecordInfo getRecordInfo(int key, int docId, long comparisonValue) {
+    return new RecordInfo(new PrimaryKey(new Object[]{key}), docId, comparisonValue, false);
+  }
+
+  @Test
+  public void testIsSupported() {
+    assertTrue(OffHeapPartitionUpsertMetadataManager.isSupported(_contextBuilder.build()));
+    assertFalse(OffHeapPartitionUpsertMetadataManager.isSupported(
+        _contextBuilder.setComparisonColumns(List.of("stringCol")).build()));
+    assertFalse(OffHeapPartitionUpsertMetadataManager.isSupported(
+        _contextBuilder.setComparisonColumns(List.of(COMPARISON_COLUMNS.get(0), PRIMARY_KEY_COLUMNS.get(0))).build()));
+    assertFalse(OffHeapPartitionUpsertMetadataManager.isSupported(
+        _contextBuilder.setComparisonColumns(COMPARISON_COLUMNS).setDropOutOfOrderRecord(true).build()));
+  }
+
+  @Test
+  public void testAddRecord()
+      throws IOException {
+    verifyAddRecord(HashFunction.NONE);
+    verifyAddRecord(HashFunction.MURMUR3);
+    verifyAddRecord(HashFunction.XXHASH);
+  }
+
+  private void verifyAddRecord(HashFunction hashFunction)
+      throws IOException {
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager =
+        new OffHeapPartitionUpsertMetadataManager(REALTIME_TABLE_NAME, 0,
+            _contextBuilder.setHashFunction(hashFunction).build());
+
+    // segment1: 0 -> {0, 100}, 1 -> {1, 120}, 2 -> {2, 100}
+    ThreadSafeMutableRoaringBitmap validDocIds1 = new ThreadSafeMutableRoaringBitmap();
+    MutableSegment segment1 = mockMutableSegment(1, validDocIds1);
+    assertTrue(upsertMetadataManager.addRecord(segment1, getRecordInfo(0, 0, 100)));
+    assertTrue(upsertMetadataManager.addRecord(segment1, getRecordInfo(1, 1, 120)));
+    assertTrue(upsertMetadataManager.addRecord(segment1, getRecordInfo(2, 2, 100)));
+    assertEquals(upsertMetadataManager.getNumPrimaryKeys(), 3);
+    assertEquals(upsertMetadataManager.getNumTrackedSegmentIds(), 1);
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{0, 1, 2});
+
+    // Same segment, newer record
+    // segment1: 0 -> {3, 110}, 1 -> {1, 120}, 2 -> {2, 100}
+    assertTrue(upsertMetadataManager.addRecord(segment1, getRecordInfo(0, 3, 110)));
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{1, 2, 3});
+
+    // Out-of-order record should be rejected
+    assertFalse(upsertMetadataManager.addRecord(segment1, getRecordInfo(1, 4, 110)));
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{1, 2, 3});
+
+    // segment1: 1 -> {1, 120}
+    // segment2: 0 -> {0, 110}, 2 -> {1, 100}, 3 -> {2, 100}
+    ThreadSafeMutableRoaringBitmap validDocIds2 = new ThreadSafeMutableRoaringBitmap();
+    MutableSegment segment2 = mockMutableSegment(2, validDocIds2);
+    assertTrue(upsertMetadataManager.addRecord(segment2, getRecordInfo(0, 0, 110)));
+    assertTrue(upsertMetadataManager.addRecord(segment2, getRecordInfo(2, 1, 100)));
+    assertTrue(upsertMetadataManager.addRecord(segment2, getRecordInfo(3, 2, 100)));
+    assertEquals(upsertMetadataManager.getNumPrimaryKeys(), 4);
+    assertEquals(upsertMetadataManager.getNumTrackedSegmentIds(), 2);
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{1});
+    assertEquals(validDocIds2.getMutableRoaringBitmap().toArray(), new int[]{0, 1, 2});
+
+    // segment1 should be released after all the keys are moved to segment2
+    // segment2: 0 -> {0, 110}, 1 -> {3, 130}, 2 -> {1, 100}, 3 -> {2, 100}
+    assertTrue(upsertMetadataManager.addRecord(segment2, getRecordInfo(1, 3, 130)));
+    assertEquals(upsertMetadataManager.getNumPrimaryKeys(), 4);
+    assertEquals(upsertMetadataManager.getNumTrackedSegmentIds(), 1);
+    assertTrue(validDocIds1.getMutableRoaringBitmap().isEmpty());
+    assertEquals(validDocIds2.getMutableRoaringBitmap().toArray(), new int[]{0, 1, 2, 3});
+
+    upsertMetadataManager.stop();
+    upsertMetadataManager.close();
+  }
+
+  @Test
+  public void testRemoveExpiredPrimaryKeys()
+      throws IOException {
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager =
+        new OffHeapPartitionUpsertMetadataManager(REALTIME_TABLE_NAME, 0,
+            _contextBuilder.setEnableSnapshot(true).setMetadataTTL(30).build());
+    ThreadSafeMutableRoaringBitmap validDocIds = new ThreadSafeMutableRoaringBitmap();
+    MutableSegment segment = mockMutableSegment(1, validDocIds);
+    int numKeys = 1000;
+    for (int i = 0; i < numKeys; i++) {
+      upsertMetadataManager.addRecord(segment, getRecordInfo(i, i, i));
+    }
+    assertEquals(upsertMetadataManager.getNumPrimaryKeys(), numKeys);
+
+    // Keys with comparison value less than (999 - 30) should be removed
+    upsertMetadataManager.removeExpiredPrimaryKeys();
+    assertEquals(upsertMetadataManager.getNumPrimaryKeys(), 31);
+
+    // Removed key should be added as a new key even with smaller comparison value
+    assertTrue(upsertMetadataManager.addRecord(segment, getRecordInfo(0, numKeys, -1)));
+    // Remaining key should reject the out-of-order record
+    assertFalse(upsertMetadataManager.addRecord(segment, getRecordInfo(numKeys - 1, numKeys + 1, -1)));
+    assertEquals(upsertMetadataManager.getNumPrimaryKeys(), 32);
+
+    upsertMetadataManager.stop();
+    upsertMetadataManager.close();
+  }
+
+  @Test
+  public void testCheckpoint()
+      throws IOException {
+    UpsertContext upsertContext = _contextBuilder.setEnableSnapshot(true)
+        .setMetadataManagerConfigs(Map.of(OffHeapPartitionUpsertMetadataManager.CHECKPOINT_ENABLED_KEY, "true"))
+        .build();
+    OffHeapPartitionUpsertMetadataManager upsertMetadataManager =
+        new OffHeapPartitionUpsertMetadataManager(REALTIME_TABLE_NAME, 0, upsertContext);
+
+    // segment1: 0 -> {0, 100}, 1 -> {1, 100}
+    // segment2: 2 -> {0, 120}, 3 -> {1, 120}
+    // segment3: 4 -> {0, 120}
+    // segment4 (consuming): 5 -> {0, 150}
+    ThreadSafeMutableRoaringBitmap validDocIds1 = new ThreadSafeMutableRoaringBitmap();
+    upsertMetadataManager.addSegment(mockImmutableSegment(1, "crc1", validDocIds1), validDocIds1, null,
+        getRecordInfoIterator(new int[]{0, 1, 2}, new long[]{100, 100, 100}));
+    ThreadSafeMutableRoaringBitmap validDocIds2 = new ThreadSafeMutableRoaringBitmap();
+    upsertMetadataManager.addSegment(mockImmutableSegment(2, "crc2", validDocIds2), validDocIds2, null,
+        getRecordInfoIterator(new int[]{2, 3}, new long[]{120, 120}));
+    ThreadSafeMutableRoaringBitmap validDocIds3 = new ThreadSafeMutableRoaringBitmap();
+    upsertMetadataManager.addSegment(mockImmutableSegment(3, "crc3", validDocIds3), validDocIds3, null,
+        getRecordInfoIterator(new int[]{4}, new long[]{120}));
+    MutableSegment segment4 = mockMutableSegment(4, new ThreadSafeMutableRoaringBitmap());
+    upsertMetadataManager.addRecord(segment4, getRecordInfo(5, 0, 150));
+    assertEquals(validDocIds1.getMutableRoaringBitmap().toArray(), new int[]{0, 1});
+    assertEquals(upsertMetadataManager.getNumPrimaryKeys(), 6);
+
+    upsertMetadataManager.takeSnapshot();
+    assertTrue(upsertMetadataManager.getCheckpointFile().exists());
+    upsertMetadataManager.stop();
+    upsertMetadataManager.close();
+
+    // Restore segment1 from the checkpoint, preload segment2 with changed crc by reading the records, and skip segment3
+    upsertMetadataManager = new OffHeapPartitionUpsertMetadataManager(REALTIME_TABLE_NAME, 0, upsertContext);
+    upsertMetadataManager.loadCheckpoint();
+    assertEquals(upsertMetadataManager.getNumPrimaryKeys(), 5);
+    ThreadSafeMutableRoaringBitmap restoredValidDocIds1 = new ThreadSafeMutableRoaringBitmap();
+    upsertMetadataManager.doPreloadSegment(mockImmutableSegment(1, "crc1", restoredValidDocIds1),
+        restoredValidDocIds1, null, Collections.emptyIterator());
+    ThreadSafeMutableRoaringBitmap restoredValidDocIds2 = new ThreadSafeMutableRoaringBitmap();
+    upsertMetadataManager.doPreloadSegment(mockImmutableSegment(2, "newCrc2", restoredValidDocIds2),
+        restoredValidDocIds2, null, getRecordInfoIterator(new int[]{2, 3, 6}, new long[]{120, 120, 120}));
+    upsertMetadataManager.finishCheckpointRestore();
+
+    // segment1: 0 -> {0, 100}, 1 -> {1, 100}
+    // segment2: 2 -> {0, 120}, 3 -> {1, 120}, 6 -> {2, 120}
+    assertEquals(restoredValidDocIds1.getMutableRoaringBitmap().toArray(), new int[]{0, 1});
+    assertEquals(restoredValidDocIds2.getMutableRoaringBitmap().toArray(), new int[]{0, 1, 2});
+    assertEquals(upsertMetadataManager.getNumPrimaryKeys(), 5);
+    assertEquals(upsertMetadataManager.getNumTrackedSegmentIds(), 2);
+
+    // Restored key should reject the out-of-order record
+    MutableSegment segment5 = mockMutableSegment(5, new ThreadSafeMutableRoaringBitmap());
+    assertFalse(upsertMetadataManager.addRecord(segment5, getRecordInfo(0, 0, 90)));
+    assertTrue(upsertMetadataManager.addRecord(segment5, getRecordInfo(1, 1, 110)));
+    assertEquals(restoredValidDocIds1.getMutableRoaringBitmap().toArray(), new int[]{0});
+
+    upsertMetadataManager.stop();
+    upsertMetadataManager.close();
+  }
+}
@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.upsert;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.apache.pinot.segment.local.utils.HashUtils;
+import org.apache.pinot.spi.utils.ByteArray;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+
+public class OffHeapPrimaryKeyIndexTest {
+  private static final int NUM_KEYS = 10_000;
+
+  private static byte[] getKeyHash(int key) {
+    return HashUtils.hashMurmur3(Integer.toString(key).getBytes());
+  }
+
+  @Test
+  public void testInsertFindAndRemove()
+      throws IOException {
+    Random random = new Random();
+    // Use small initial capacity to test resizing
+    try (OffHeapPrimaryKeyIndex index = new OffHeapPrimaryKeyIndex(4, "testInsertFindAndRemove")) {
+      Map<ByteArray, long[]> expected = new HashMap<>();
+      for (int i = 0; i < NUM_KEYS; i++) {
+        byte[] keyHash = getKeyHash(random.nextInt(NUM_KEYS));
+        int segmentId = random.nextInt(100) + 1;
+        int docId = random.nextInt();
+        long comparisonValue = random.nextLong();
+        int slot = index.find(keyHash);
+        if (slot < 0) {
+          index.insert(keyHash, segmentId, docId, comparisonValue);
+        } else {
+          index.set(slot, segmentId, docId, comparisonValue);
+        }
+        expected.put(new ByteArray(keyHash), new long[]{segmentId, docId, comparisonValue});
+
+        // Randomly remove a key
+        if (random.nextInt(4) == 0) {
+          byte[] keyHashToRemove = getKeyHash(random.nextInt(NUM_KEYS));
+          int slotToRemove = index.find(keyHashToRemove);
+          if (slotToRemove >= 0) {
+            index.remove(slotToRemove);
+            assertTrue(expected.remove(new ByteArray(keyHashToRemove)) != null);
+          } else {
+            assertFalse(expected.containsKey(new ByteArray(keyHashToRemove)));
+          }
+        }
+      }
+      assertEquals(index.size(), expected.size());
+      assertTrue(index.size() <= index.capacity() * OffHeapPrimaryKeyIndex.MAX_LOAD_FACTOR);
+      for (Map.Entry<ByteArray, long[]> entry : expected.entrySet()) {
+        int slot = index.find(entry.getKey().getBytes());
+        assertTrue(slot >= 0);
+        long[] location = entry.getValue();
+        assertEquals(index.getSegmentId(slot), location[0]);
+        assertEquals(index.getDocId(slot), location[1]);
+        assertEquals(index.getComparisonValue(slot), location[2]);
+      }
+    }
+  }
+
+  @Test
+  public void testRemoveDuringIteration()
+      throws IOException {
+    try (OffHeapPrimaryKeyIndex index = new OffHeapPrimaryKeyIndex(16, "testRemoveDuringIteration")) {
+      List<byte[]> keyHashes = new ArrayList<>(NUM_KEYS);
+      for (int i = 0; i < NUM_KEYS; i++) {
+        byte[] keyHash = getKeyHash(i);
+        keyHashes.add(keyHash);
+        index.insert(keyHash, 1, i, i);
+      }
+
+      // Remove all the entries with odd comparison value, and verify each entry is visited exactly once
+      int[] numVisits = new int[NUM_KEYS];
+      int numSlots = index.capacity();
+      int slot = index.getIterationStartSlot();
+      int numSlotsVisited = 0;
+      while (numSlotsVisited < numSlots) {
+        if (index.isOccupied(slot)) {
+          int value = (int) index.getComparisonValue(slot);
+          numVisits[value]++;
+          if (value % 2 == 1) {
+            index.remove(slot);
+            continue;
+          }
+        }
+        slot = index.nextSlot(slot);
+        numSlotsVisited++;
+      }
+      for (int i = 0; i < NUM_KEYS; i++) {
+        assertEquals(numVisits[i], 1);
+      }
+      assertEquals(index.size(), NUM_KEYS / 2);
+      for (int i = 0; i < NUM_KEYS; i++) {
+        int foundSlot = index.find(keyHashes.get(i));
+        if (i % 2 == 0) {
+          assertTrue(foundSlot >= 0);
+          assertEquals(index.getDocId(foundSlot), i);
+        } else {
+          assertEquals(foundSlot, -1);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.segment.spi.index.StandardIndexes;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+public class IndexAccessProfileTest {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "IndexAccessProfileTest");
+  private static final long HALF_LIFE_MS = 1000L;
+
+  @BeforeClass
+  public void setUp()
+      throws IOException {
+    FileUtils.deleteDirectory(TEMP_DIR);
+    FileUtils.forceMkdir(TEMP_DIR);
+  }
+
+  @AfterClass
+  public void tearDown()
+      throws IOException {
+    FileUtils.deleteDirectory(TEMP_DIR);
+  }
+
+  @Test
+  public void testDecay() {
+    IndexAccessProfile profile = new IndexAccessProfile(HALF_LIFE_MS);
+    // Column 'a' is accessed 4 times 2 half-lives ago, column 'b' twice now, column 'c' once 1 half-life ago
+    for (int i = 0; i < 4; i++) {
+      profile.recordAccess("a", StandardIndexes.FORWARD_ID, 0L);
+    }
+    profile.recordAccess("b", IndexAccessProfile.ALL_INDEXES, 2000L);
+    profile.recordAccess("b", IndexAccessProfile.ALL_INDEXES, 2000L);
+    profile.recordAccess("c", StandardIndexes.DICTIONARY_ID, 1000L);
+    assertEquals(profile.size(), 3);
+
+    List<IndexAccessProfile.Entry> hotIndexes = profile.getHotIndexes(0, 2000L);
+    assertEquals(hotIndexes.size(), 3);
+    assertEquals(hotIndexes.get(0).getColumn(), "b");
+    assertEquals(hotIndexes.get(0).getIndex(), IndexAccessProfile.ALL_INDEXES);
+    assertEquals(hotIndexes.get(0).getScore(), 2.0);
+    assertEquals(hotIndexes.get(1).getColumn(), "a");
+    assertEquals(hotIndexes.get(1).getScore(), 1.0, 1e-9);
+    assertEquals(hotIndexes.get(2).getColumn(), "c");
+
+    // The new accesses are added on top of the decayed score
+    profile.recordAccess("a", StandardIndexes.FORWARD_ID, 2000L);
+    profile.recordAccess("a", StandardIndexes.FORWARD_ID, 2000L);
+    hotIndexes = profile.getHotIndexes(0, 2000L);
+    assertEquals(hotIndexes.get(0).getColumn(), "a");
+    assertEquals(hotIndexes.get(0).getScore(), 3.0, 1e-9);
+
+    // Filter by min score
+    hotIndexes = profile.getHotIndexes(1.5, 3000L);
+    assertEquals(hotIndexes.size(), 1);
+    assertEquals(hotIndexes.get(0).getColumn(), "a");
+    assertEquals(hotIndexes.get(0).getScore(), 1.5, 1e-9);
+  }
+
+  @Test
+  public void testPersistAndLoad()
+      throws IOException {
+    File file = new File(TEMP_DIR, "profile.json");
+    IndexAccessProfile profile = new IndexAccessProfile(HALF_LIFE_MS);
+    long currentTimeMs = System.currentTimeMillis();
+    profile.recordAccess("a", StandardIndexes.FORWARD_ID, currentTimeMs);
+    profile.recordAccess("b", IndexAccessProfile.ALL_INDEXES, currentTimeMs);
+    profile.recordAccess("b", IndexAccessProfile.ALL_INDEXES, currentTimeMs);
+    profile.persist(file);
+    assertTrue(file.exists());
+
+    IndexAccessProfile loadedProfile = IndexAccessProfile.load(file, HALF_LIFE_MS);
+    assertEquals(loadedProfile.size(), 2);
+    List<IndexAccessProfile.Entry> expected = profile.getHotIndexes(0, currentTimeMs + 500L);
+    List<IndexAccessProfile.Entry> actual = loadedProfile.getHotIndexes(0, currentTimeMs + 500L);
+    assertEquals(actual.size(), expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(actual.get(i).getColumn(), expected.get(i).getColumn());
+      assertEquals(actual.get(i).getIndex(), expected.get(i).getIndex());
+      assertEquals(actual.get(i).getScore(), expected.get(i).getScore(), 1e-9);
+    }
+
+    // Should start with empty profile for missing or corrupted file
+    assertEquals(IndexAccessProfile.load(new File(TEMP_DIR, "missing.json"), HALF_LIFE_MS).size(), 0);
+    FileUtils.writeStringToFile(file, "not json", "UTF-8");
+    assertEquals(IndexAccessProfile.load(file, HALF_LIFE_MS).size(), 0);
+  }
+}
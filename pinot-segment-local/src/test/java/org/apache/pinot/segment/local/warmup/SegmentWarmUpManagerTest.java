@@ -0,0 +1,245 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.segment.local.warmup;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.metrics.ServerMetrics;
+import org.apache.pinot.segment.local.data.manager.SegmentDataManager;
+import org.apache.pinot.segment.local.data.manager.TableDataManager;
+import org.apache.pinot.segment.local.indexsegment.immutable.ImmutableSegmentLoader;
+import org.apache.pinot.segment.local.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import org.apache.pinot.segment.local.segment.readers.GenericRowRecordReader;
+import org.apache.pinot.segment.spi.ImmutableSegment;
+import org.apache.pinot.segment.spi.creator.SegmentGeneratorConfig;
+import org.apache.pinot.spi.config.table.FieldConfig;
+import org.apache.pinot.spi.config.table.TableConfig;
+import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.apache.pinot.spi.data.Schema;
+import org.apache.pinot.spi.data.readers.GenericRow;
+import org.apache.pinot.spi.env.PinotConfiguration;
+import org.apache.pinot.spi.utils.ReadMode;
+import org.apache.pinot.spi.utils.builder.TableConfigBuilder;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+
+public class SegmentWarmUpManagerTest {
+  private static final File TEMP_DIR = new File(FileUtils.getTempDirectory(), "SegmentWarmUpManagerTest");
+  private static final String RAW_TABLE_NAME = "testTable";
+  private static final String TABLE_NAME_WITH_TYPE = RAW_TABLE_NAME + "_OFFLINE";
+  private static final File TABLE_DATA_DIR = new File(TEMP_DIR, TABLE_NAME_WITH_TYPE);
+  private static final String SEGMENT_NAME = "testSegment";
+  private static final File INDEX_DIR = new File(TABLE_DATA_DIR, SEGMENT_NAME);
+  private static final int NUM_ROWS = 10_000;
+
+  @BeforeClass
+  public void setUp()
+      throws Exception {
+    FileUtils.deleteQuietly(TEMP_DIR);
+    Schema schema = new Schema.SchemaBuilder().setSchemaName(RAW_TABLE_NAME)
+        .addSingleValueDimension("d", DataType.STRING)
+        .addSingleValueDimension("t", DataType.STRING)
+        .addMetric("m", DataType.LONG)
+        .build();
+    TableConfig tableConfig = new TableConfigBuilder(TableType.OFFLINE).setTableName(RAW_TABLE_NAME)
+        .setFieldConfigList(List.of(
+            new FieldConfig("t", FieldConfig.EncodingType.DICTIONARY, List.of(FieldConfig.IndexType.TEXT), null,
+                null)))
+        .build();
+    List<GenericRow> rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      GenericRow row = new GenericRow();
+      row.putValue("d", "v" + (i % 100));
+      row.putValue("t", "text value " + (i % 100));
+      row.putValue("m", (long) i);
+      rows.add(row);
+    }
+    SegmentGeneratorConfig config = new SegmentGeneratorConfig(tableConfig, schema);
+    config.setOutDir(TABLE_DATA_DIR.getAbsolutePath());
+    config.setSegmentName(SEGMENT_NAME);
+    SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, new GenericRowRecordReader(rows));
+    driver.build();
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(TEMP_DIR);
+  }
+
+  @Test
+  public void testWarmUp()
+      throws Exception {
+    long baseline = SegmentWarmUpManager.getWarmedUpBytes();
+    ImmutableSegment mmapSegment = ImmutableSegmentLoader.load(INDEX_DIR, ReadMode.mmap);
+    // Heap buffers do not support madvise, so the pages are read instead
+    ImmutableSegment heapSegment = ImmutableSegmentLoader.load(INDEX_DIR, ReadMode.heap);
+    try {
+      SegmentWarmUpManager warmUpManager = createWarmUpManager(SegmentWarmUpManager.DEFAULT_MAX_SIZE);
+
+      // Nothing to warm up without index access
+      assertEquals(warmUpManager.warmUp(mmapSegment), 0);
+      assertEquals(SegmentWarmUpManager.getWarmedUpBytes(), baseline);
+
+      // Projection indexes of column 'm'
+      warmUpManager.recordQuery(Set.of("m"), Set.of());
+      long projectionBytes = warmUpManager.warmUp(mmapSegment);
+      assertTrue(projectionBytes > 0);
+      assertEquals(SegmentWarmUpManager.getWarmedUpBytes(), baseline + projectionBytes);
+      warmUpManager.onSegmentClosed(mmapSegment);
+      assertEquals(SegmentWarmUpManager.getWarmedUpBytes(), baseline);
+
+      // All indexes of filter column 'd' on top of the projection indexes of column 'm'
+      warmUpManager.recordQuery(Set.of("d", "m"), Set.of("d"));
+      long mmapBytes = warmUpManager.warmUp(mmapSegment);
+      assertTrue(mmapBytes > projectionBytes);
+      assertEquals(SegmentWarmUpManager.getWarmedUpBytes(), baseline + mmapBytes);
+      long heapBytes = warmUpManager.warmUp(heapSegment);
+      assertEquals(heapBytes, mmapBytes);
+      assertEquals(SegmentWarmUpManager.getWarmedUpBytes(), baseline + mmapBytes + heapBytes);
+
+      // The warmed up size is returned to the budget when the segment is closed, and only once
+      warmUpManager.onSegmentClosed(mmapSegment);
+      assertEquals(SegmentWarmUpManager.getWarmedUpBytes(), baseline + heapBytes);
+      warmUpManager.onSegmentClosed(mmapSegment);
+      assertEquals(SegmentWarmUpManager.getWarmedUpBytes(), baseline + heapBytes);
+      warmUpManager.onSegmentClosed(heapSegment);
+      assertEquals(SegmentWarmUpManager.getWarmedUpBytes(), baseline);
+    } finally {
+      mmapSegment.destroy();
+      heapSegment.destroy();
+    }
+  }
+
+  @Test
+  public void testWarmUpTextIndexedColumn()
+      throws Exception {
+    long baseline = SegmentWarmUpManager.getWarmedUpBytes();
+    ImmutableSegment segment = ImmutableSegmentLoader.load(INDEX_DIR, ReadMode.mmap);
+    try {
+      // Text index is stored outside the index buffers, and should be skipped without failing the warm-up of the other
+      // indexes of the filter column
+      SegmentWarmUpManager warmUpManager = createWarmUpManager(SegmentWarmUpManager.DEFAULT_MAX_SIZE);
+      warmUpManager.recordQuery(Set.of("t"), Set.of("t"));
+      long textColumnBytes = warmUpManager.warmUp(segment);
+      assertTrue(textColumnBytes > 0);
+      assertEquals(SegmentWarmUpManager.getWarmedUpBytes(), baseline + textColumnBytes);
+      warmUpManager.onSegmentClosed(segment);
+      assertEquals(SegmentWarmUpManager.getWarmedUpBytes(), baseline);
+    } finally {
+      segment.destroy();
+    }
+  }
+
+  @Test
+  public void testWarmUpBudget()
+      throws Exception {
+    ImmutableSegment segment1 = ImmutableSegmentLoader.load(INDEX_DIR, ReadMode.mmap);
+    ImmutableSegment segment2 = ImmutableSegmentLoader.load(INDEX_DIR, ReadMode.mmap);
+    try {
+      SegmentWarmUpManager warmUpManager = createWarmUpManager(SegmentWarmUpManager.DEFAULT_MAX_SIZE);
+      warmUpManager.recordQuery(Set.of("d", "m"), Set.of("d"));
+      long segmentBytes = warmUpManager.warmUp(segment1);
+      assertTrue(segmentBytes > 0);
+      warmUpManager.onSegmentClosed(segment1);
+
+      // Budget for exactly one segment
+      long baseline = SegmentWarmUpManager.getWarmedUpBytes();
+      warmUpManager = createWarmUpManager((baseline + segmentBytes) + "B");
+      warmUpManager.recordQuery(Set.of("d", "m"), Set.of("d"));
+      assertEquals(warmUpManager.warmUp(segment1), segmentBytes);
+      assertEquals(SegmentWarmUpManager.getWarmedUpBytes(), baseline + segmentBytes);
+      assertEquals(warmUpManager.warmUp(segment2), 0);
+      assertEquals(SegmentWarmUpManager.getWarmedUpBytes(), baseline + segmentBytes);
+
+      // Closing the first segment makes room for the second one
+      warmUpManager.onSegmentClosed(segment1);
+      assertEquals(SegmentWarmUpManager.getWarmedUpBytes(), baseline);
+      assertEquals(warmUpManager.warmUp(segment2), segmentBytes);
+      assertEquals(SegmentWarmUpManager.getWarmedUpBytes(), baseline + segmentBytes);
+      warmUpManager.onSegmentClosed(segment2);
+      assertEquals(SegmentWarmUpManager.getWarmedUpBytes(), baseline);
+    } finally {
+      segment1.destroy();
+      segment2.destroy();
+    }
+  }
+
+  @Test
+  public void testWarmUpAsync()
+      throws Exception {
+    long baseline = SegmentWarmUpManager.getWarmedUpBytes();
+    ImmutableSegment segment = ImmutableSegmentLoader.load(INDEX_DIR, ReadMode.mmap);
+    ImmutableSegment newSegment = ImmutableSegmentLoader.load(INDEX_DIR, ReadMode.mmap);
+    try {
+      // Warm up runs in the calling thread with the direct executor
+      SegmentWarmUpManager warmUpManager = createWarmUpManager(SegmentWarmUpManager.DEFAULT_MAX_SIZE);
+      warmUpManager.recordQuery(Set.of("d", "m"), Set.of("d"));
+      TableDataManager tableDataManager = mock(TableDataManager.class);
+      SegmentDataManager segmentDataManager = mock(SegmentDataManager.class);
+      when(tableDataManager.acquireSegment(SEGMENT_NAME)).thenReturn(segmentDataManager);
+
+      // Skip the segment replaced before the warm-up starts
+      when(segmentDataManager.getSegment()).thenReturn(newSegment);
+      warmUpManager.warmUpAsync(tableDataManager, segment);
+      verify(tableDataManager).releaseSegment(segmentDataManager);
+      assertEquals(SegmentWarmUpManager.getWarmedUpBytes(), baseline);
+
+      // Skip the segment removed before the warm-up starts
+      when(tableDataManager.acquireSegment(SEGMENT_NAME)).thenReturn(null);
+      warmUpManager.warmUpAsync(tableDataManager, segment);
+      assertEquals(SegmentWarmUpManager.getWarmedUpBytes(), baseline);
+
+      // Warm up the segment still being served
+      when(tableDataManager.acquireSegment(SEGMENT_NAME)).thenReturn(segmentDataManager);
+      when(segmentDataManager.getSegment()).thenReturn(segment);
+      warmUpManager.warmUpAsync(tableDataManager, segment);
+      verify(tableDataManager, times(2)).releaseSegment(segmentDataManager);
+      assertTrue(SegmentWarmUpManager.getWarmedUpBytes() > baseline);
+      warmUpManager.onSegmentClosed(segment);
+      assertEquals(SegmentWarmUpManager.getWarmedUpBytes(), baseline);
+    } finally {
+      segment.destroy();
+      newSegment.destroy();
+    }
+  }
+
+  private static SegmentWarmUpManager createWarmUpManager(String maxSize) {
+    // Use a min score lower than a single access so that the score decay does not filter out the indexes
+    PinotConfiguration config = new PinotConfiguration(
+        Map.of(SegmentWarmUpManager.MAX_SIZE_KEY, maxSize, SegmentWarmUpManager.MIN_SCORE_KEY, "0.5"));
+    return new SegmentWarmUpManager(TABLE_NAME_WITH_TYPE, TABLE_DATA_DIR, config, mock(ServerMetrics.class),
+        MoreExecutors.newDirectExecutorService());
+  }
+}
@@ -20,7 +20,9 @@ package org.apache.pinot.segment.spi;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import javax.annotation.Nullable;
+import org.apache.pinot.segment.spi.index.startree.StarTreeV2;
 import org.apache.pinot.spi.data.readers.GenericRow;
 import org.apache.pinot.spi.stream.StreamMessageMetadata;
 
@@ -48,4 +50,15 @@ public interface MutableSegment extends IndexSegment {
    * Returns the consumer dir containing any segment files.
    */
   File getConsumerDir();
+
+  /**
+   * Returns the star-tree indexes of the segment, or {@code null} if there is none. {@link #getStarTrees()} only
+   * returns the star-trees covering all the records indexed so far.
+   *
+   * @param allowStale Whether to return the star-trees that do not cover the most recently indexed records
+   */
+  @Nullable
+  default List<StarTreeV2> getStarTrees(boolean allowStale) {
+    return getStarTrees();
+  }
 }
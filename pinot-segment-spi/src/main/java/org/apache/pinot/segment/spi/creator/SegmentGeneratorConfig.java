@@ -113,6 +113,8 @@ public class SegmentGeneratorConfig implements Serializable {
   private boolean _optimizeDictionaryType = false;
   private double _noDictionarySizeRatioThreshold = IndexingConfig.DEFAULT_NO_DICTIONARY_SIZE_RATIO_THRESHOLD;
   private Double _noDictionaryCardinalityRatioThreshold;
+  // Number of threads to create the column indexes in parallel
+  private int _numIndexCreationThreads = 1;
   private boolean _realtimeConversion = false;
   // consumerDir contains data from the consuming segment, and is used during _realtimeConversion optimization
   private File _consumerDir;
@@ -160,6 +162,7 @@ public class SegmentGeneratorConfig implements Serializable {
     _optimizeDictionaryType = indexingConfig.isOptimizeDictionaryType();
     _noDictionarySizeRatioThreshold = indexingConfig.getNoDictionarySizeRatioThreshold();
     _noDictionaryCardinalityRatioThreshold = indexingConfig.getNoDictionaryCardinalityRatioThreshold();
+    _numIndexCreationThreads = Math.max(indexingConfig.getNumIndexCreationThreads(), 1);
 
     // Star-tree configs
     setStarTreeIndexConfigs(indexingConfig.getStarTreeIndexConfigs());
@@ -637,6 +640,15 @@ public class SegmentGeneratorConfig implements Serializable {
     _optimizeDictionaryType = optimizeDictionaryType;
   }
 
+  public int getNumIndexCreationThreads() {
+    return _numIndexCreationThreads;
+  }
+
+  public void setNumIndexCreationThreads(int numIndexCreationThreads) {
+    Preconditions.checkArgument(numIndexCreationThreads > 0, "Number of index creation threads must be positive");
+    _numIndexCreationThreads = numIndexCreationThreads;
+  }
+
   public double getNoDictionarySizeRatioThreshold() {
     return _noDictionarySizeRatioThreshold;
   }
@@ -240,6 +240,11 @@ public class NonNativePinotDataBuffer extends PinotDataBuffer {
     return _nativeBuffer.size();
   }
 
+  @Override
+  public boolean adviseWillNeed(long offset, long size) {
+    return _nativeBuffer.adviseWillNeed(offset, size);
+  }
+
   @Override
   public void flush() {
     _nativeBuffer.flush();
@@ -707,6 +707,17 @@ public abstract class PinotDataBuffer implements DataBuffer {
     }
   }
 
+  /**
+   * Hints that the given range of the buffer will be accessed soon, so that a memory mapped buffer can start reading it
+   * into the page cache asynchronously (e.g. with madvise(WILLNEED)).
+   *
+   * @return {@code false} if the hint is not supported by the buffer, in which case the caller can read the pages
+   *         instead
+   */
+  public boolean adviseWillNeed(long offset, long size) {
+    return false;
+  }
+
   @Override
   public abstract void flush();
 
@@ -99,6 +99,24 @@ public class MmapMemory implements Memory {
     PosixAPI.posix().msync(_address, _size, mode);
   }
 
+  /**
+   * Advises the OS that the given range of the mapped memory will be accessed soon, so that the pages can be read into
+   * the page cache asynchronously. The range is extended to the enclosing pages.
+   *
+   * @param address Address of the first byte of the range, which must be within the mapped memory.
+   * @param size Size of the range.
+   * @return {@code false} if madvise is not available on the platform.
+   */
+  public boolean adviseWillNeed(long address, long size) {
+    if (MapSection.LIB_C == null || size <= 0) {
+      return false;
+    }
+    long pageSize = Unsafer.UNSAFE.pageSize();
+    long alignedAddress = address - address % pageSize;
+    return MapSection.LIB_C.posix_madvise(alignedAddress, size + address - alignedAddress,
+        LibC.POSIX_MADV_WILLNEED) == 0;
+  }
+
   @Override
   public synchronized void close() {
     try {
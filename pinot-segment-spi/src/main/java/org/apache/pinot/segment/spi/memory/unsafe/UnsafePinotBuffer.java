@@ -171,6 +171,12 @@ public class UnsafePinotBuffer extends PinotDataBuffer {
         .order(byteOrder);
   }
 
+  @Override
+  public boolean adviseWillNeed(long offset, long size) {
+    checkOffset(offset, size);
+    return _memory instanceof MmapMemory && ((MmapMemory) _memory).adviseWillNeed(_address + offset, size);
+  }
+
   @Override
   public void flush() {
     _memory.flush();
@@ -82,6 +82,12 @@ public class HelixInstanceDataManagerConfig implements InstanceDataManagerConfig
   private static final long DEFAULT_STREAM_SEGMENT_DOWNLOAD_UNTAR_RATE_LIMIT =
       TarCompressionUtils.NO_DISK_WRITE_RATE_LIMIT;
 
+  // Key of the segment download bandwidth limit of each table, in bytes per second, -1 for no limit
+  // NOTE: Only applied to streamed download-untar with segment fetchers supporting download throttling
+  private static final String TABLE_LEVEL_SEGMENT_DOWNLOAD_RATE_LIMIT =
+      "table.level.segment.download.rate.limit.bytes.per.sec";
+  private static final long DEFAULT_TABLE_LEVEL_SEGMENT_DOWNLOAD_RATE_LIMIT = -1;
+
   // Key of whether to use streamed server segment download-untar
   private static final String ENABLE_STREAM_SEGMENT_DOWNLOAD_UNTAR = "segment.stream.download.untar";
   private static final boolean DEFAULT_ENABLE_STREAM_SEGMENT_DOWNLOAD_UNTAR = false;
@@ -304,6 +310,12 @@ public class HelixInstanceDataManagerConfig implements InstanceDataManagerConfig
         DEFAULT_STREAM_SEGMENT_DOWNLOAD_UNTAR_RATE_LIMIT);
   }
 
+  @Override
+  public long getTableLevelSegmentDownloadRateLimit() {
+    return _serverConfig.getProperty(TABLE_LEVEL_SEGMENT_DOWNLOAD_RATE_LIMIT,
+        DEFAULT_TABLE_LEVEL_SEGMENT_DOWNLOAD_RATE_LIMIT);
+  }
+
   @Override
   public int getDeletedTablesCacheTtlMinutes() {
     return _serverConfig.getProperty(DELETED_TABLES_CACHE_TTL_MINUTES, DEFAULT_DELETED_TABLES_CACHE_TTL_MINUTES);
@@ -71,6 +71,8 @@ public interface InstanceDataManagerConfig {
 
   long getStreamSegmentDownloadUntarRateLimit();
 
+  long getTableLevelSegmentDownloadRateLimit();
+
   int getDeletedTablesCacheTtlMinutes();
 
   int getDeletedSegmentsCacheSize();
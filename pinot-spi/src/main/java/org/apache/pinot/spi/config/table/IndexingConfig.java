@@ -32,6 +32,7 @@ import org.apache.pinot.spi.config.table.ingestion.IngestionConfig;
 public class IndexingConfig extends BaseJsonConfig {
   // Default ratio for overriding dictionary for fixed width columns
   public static final double DEFAULT_NO_DICTIONARY_SIZE_RATIO_THRESHOLD = 0.85d;
+  public static final long DEFAULT_CONSUMING_SEGMENT_STAR_TREE_REFRESH_INTERVAL_MS = 1000L;
 
   /**
    * This should be equal to the one specified in RangeIndexType.
@@ -59,6 +60,12 @@ public class IndexingConfig extends BaseJsonConfig {
   private List<StarTreeIndexConfig> _starTreeIndexConfigs;
   // Whether to allow creating star-tree when server loads the segment
   private boolean _enableDynamicStarTreeCreation;
+  // Whether to maintain the star-trees for the consuming segments of the realtime table
+  private boolean _enableConsumingSegmentStarTree;
+  // Min interval to rebuild the star-tree snapshot of the consuming segment when more rows are indexed. Queries only
+  // use a snapshot missing the rows indexed within this interval when allowed by the query option
+  // allowStaleConsumingSegmentStarTree, and scan the consuming segment otherwise.
+  private long _consumingSegmentStarTreeRefreshIntervalMs = DEFAULT_CONSUMING_SEGMENT_STAR_TREE_REFRESH_INTERVAL_MS;
   private SegmentPartitionConfig _segmentPartitionConfig;
   private boolean _aggregateMetrics;
   private boolean _nullHandlingEnabled;
@@ -93,6 +100,12 @@ public class IndexingConfig extends BaseJsonConfig {
   // then create a dictionary for the column. A value around 0.1 (10%) is a reasonable starting point
   private Double _noDictionaryCardinalityRatioThreshold;
 
+  /**
+   * Number of threads to create the column indexes in parallel during segment creation. Indexes are created on a
+   * single thread when it is not larger than 1.
+   */
+  private int _numIndexCreationThreads;
+
   // TODO: Add a new configuration related to the segment generation
   private boolean _autoGeneratedInvertedIndex;
   private String _segmentNameGeneratorType;
@@ -307,6 +320,22 @@ public class IndexingConfig extends BaseJsonConfig {
     _enableDynamicStarTreeCreation = enableDynamicStarTreeCreation;
   }
 
+  public boolean isEnableConsumingSegmentStarTree() {
+    return _enableConsumingSegmentStarTree;
+  }
+
+  public void setEnableConsumingSegmentStarTree(boolean enableConsumingSegmentStarTree) {
+    _enableConsumingSegmentStarTree = enableConsumingSegmentStarTree;
+  }
+
+  public long getConsumingSegmentStarTreeRefreshIntervalMs() {
+    return _consumingSegmentStarTreeRefreshIntervalMs;
+  }
+
+  public void setConsumingSegmentStarTreeRefreshIntervalMs(long consumingSegmentStarTreeRefreshIntervalMs) {
+    _consumingSegmentStarTreeRefreshIntervalMs = consumingSegmentStarTreeRefreshIntervalMs;
+  }
+
   @Nullable
   public SegmentPartitionConfig getSegmentPartitionConfig() {
     return _segmentPartitionConfig;
@@ -403,6 +432,14 @@ public class IndexingConfig extends BaseJsonConfig {
     _noDictionaryCardinalityRatioThreshold = noDictionaryCardinalityRatioThreshold;
   }
 
+  public int getNumIndexCreationThreads() {
+    return _numIndexCreationThreads;
+  }
+
+  public void setNumIndexCreationThreads(int numIndexCreationThreads) {
+    _numIndexCreationThreads = numIndexCreationThreads;
+  }
+
   public String getSegmentNameGeneratorType() {
     return _segmentNameGeneratorType;
   }
@@ -56,18 +56,33 @@ public class QueryConfig extends BaseJsonConfig {
   // Indicates the maximum length of the serialized response per server for a query.
   private final Long _maxServerResponseSizeBytes;
 
+  // Time-to-live in milliseconds of the query results cached on the broker for this table. Only takes effect when the
+  // broker query result cache is enabled. When not set, the broker default TTL is used; 0 disables caching for the
+  // table.
+  private final Long _resultCacheTtlMs;
+
+  public QueryConfig(@Nullable Long timeoutMs, @Nullable Boolean disableGroovy,
+      @Nullable Boolean useApproximateFunction, @Nullable Map<String, String> expressionOverrideMap,
+      @Nullable Long maxQueryResponseSizeBytes, @Nullable Long maxServerResponseSizeBytes) {
+    this(timeoutMs, disableGroovy, useApproximateFunction, expressionOverrideMap, maxQueryResponseSizeBytes,
+        maxServerResponseSizeBytes, null);
+  }
+
   @JsonCreator
   public QueryConfig(@JsonProperty("timeoutMs") @Nullable Long timeoutMs,
       @JsonProperty("disableGroovy") @Nullable Boolean disableGroovy,
       @JsonProperty("useApproximateFunction") @Nullable Boolean useApproximateFunction,
       @JsonProperty("expressionOverrideMap") @Nullable Map<String, String> expressionOverrideMap,
       @JsonProperty("maxQueryResponseSizeBytes") @Nullable Long maxQueryResponseSizeBytes,
-      @JsonProperty("maxServerResponseSizeBytes") @Nullable Long maxServerResponseSizeBytes) {
+      @JsonProperty("maxServerResponseSizeBytes") @Nullable Long maxServerResponseSizeBytes,
+      @JsonProperty("resultCacheTtlMs") @Nullable Long resultCacheTtlMs) {
     Preconditions.checkArgument(timeoutMs == null || timeoutMs > 0, "Invalid 'timeoutMs': %s", timeoutMs);
     Preconditions.checkArgument(maxQueryResponseSizeBytes == null || maxQueryResponseSizeBytes > 0,
         "Invalid 'maxQueryResponseSizeBytes': %s", maxQueryResponseSizeBytes);
     Preconditions.checkArgument(maxServerResponseSizeBytes == null || maxServerResponseSizeBytes > 0,
         "Invalid 'maxServerResponseSizeBytes': %s", maxServerResponseSizeBytes);
+    Preconditions.checkArgument(resultCacheTtlMs == null || resultCacheTtlMs >= 0, "Invalid 'resultCacheTtlMs': %s",
+        resultCacheTtlMs);
 
     _timeoutMs = timeoutMs;
     _disableGroovy = disableGroovy;
@@ -75,6 +90,7 @@ public class QueryConfig extends BaseJsonConfig {
     _expressionOverrideMap = expressionOverrideMap;
     _maxQueryResponseSizeBytes = maxQueryResponseSizeBytes;
     _maxServerResponseSizeBytes = maxServerResponseSizeBytes;
+    _resultCacheTtlMs = resultCacheTtlMs;
   }
 
   @Nullable
@@ -112,4 +128,10 @@ public class QueryConfig extends BaseJsonConfig {
   public Long getMaxServerResponseSizeBytes() {
     return _maxServerResponseSizeBytes;
   }
+
+  @Nullable
+  @JsonProperty("resultCacheTtlMs")
+  public Long getResultCacheTtlMs() {
+    return _resultCacheTtlMs;
+  }
 }
@@ -62,6 +62,11 @@ public class StreamIngestionConfig extends BaseJsonConfig {
   @JsonPropertyDescription("Class to handle realtime offset auto reset")
   private String _realtimeOffsetAutoResetHandlerClass;
 
+  @JsonPropertyDescription("Number of threads to decode and transform the stream messages in parallel during "
+      + "consumption. The rows are still indexed in offset order by the consumer thread. Messages are decoded on the "
+      + "consumer thread when it is not larger than 1")
+  private int _numDecodeThreads;
+
   @JsonCreator
   public StreamIngestionConfig(@JsonProperty("streamConfigMaps") List<Map<String, String>> streamConfigMaps) {
     _streamConfigMaps = streamConfigMaps;
@@ -136,4 +141,12 @@ public class StreamIngestionConfig extends BaseJsonConfig {
   public void setRealtimeOffsetAutoResetHandlerClass(String realtimeOffsetAutoResetHandlerClass) {
     _realtimeOffsetAutoResetHandlerClass = realtimeOffsetAutoResetHandlerClass;
   }
+
+  public int getNumDecodeThreads() {
+    return _numDecodeThreads;
+  }
+
+  public void setNumDecodeThreads(int numDecodeThreads) {
+    _numDecodeThreads = numDecodeThreads;
+  }
 }
@@ -27,6 +27,8 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Predicate;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.pinot.spi.annotations.InterfaceAudience;
 import org.apache.pinot.spi.annotations.InterfaceStability;
 import org.apache.pinot.spi.env.PinotConfiguration;
@@ -285,6 +287,29 @@ public interface PinotFS extends Closeable, Serializable {
   InputStream open(URI uri)
       throws IOException;
 
+  /**
+   * Opens a file in the underlying filesystem and returns an InputStream to read the given range of it. This allows
+   * reading different parts of a large file with parallel ranged requests.
+   * The default implementation opens the whole file and skips to the offset. Implementations backed by an object
+   * store should override this to only request the given range.
+   * @param uri location of the file to open
+   * @param offset offset of the first byte to read
+   * @param length number of bytes to read
+   * @return a new InputStream that ends after the given range
+   * @throws IOException on any IO error - missing file, not a file etc
+   */
+  default InputStream open(URI uri, long offset, long length)
+      throws IOException {
+    InputStream inputStream = open(uri);
+    try {
+      IOUtils.skipFully(inputStream, offset);
+      return BoundedInputStream.builder().setInputStream(inputStream).setMaxCount(length).get();
+    } catch (IOException e) {
+      inputStream.close();
+      throw e;
+    }
+  }
+
   /**
    * For certain filesystems, we may need to close the filesystem and do relevant operations to prevent leaks.
    * By default, this method does nothing.
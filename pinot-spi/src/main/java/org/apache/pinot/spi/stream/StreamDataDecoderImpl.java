@@ -20,6 +20,7 @@ package org.apache.pinot.spi.stream;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import javax.annotation.Nullable;
 import org.apache.pinot.spi.data.FieldSpec;
 import org.apache.pinot.spi.data.Schema;
 import org.apache.pinot.spi.data.readers.GenericRow;
@@ -38,7 +39,8 @@ public class StreamDataDecoderImpl implements StreamDataDecoder {
 
   private final StreamMessageDecoder _valueDecoder;
   private final boolean _isKeyBytesType;
-  private final GenericRow _reuse = new GenericRow();
+  @Nullable
+  private final GenericRow _reuse;
 
   /**
    * @return Whether the given key is one of the special types of keys (__key, __header$, etc.)
@@ -60,18 +62,34 @@ public class StreamDataDecoderImpl implements StreamDataDecoder {
   }
 
   public StreamDataDecoderImpl(StreamMessageDecoder valueDecoder, boolean isKeyBytesType) {
+    this(valueDecoder, isKeyBytesType, true);
+  }
+
+  /**
+   * @param reuseRow Whether to reuse the same {@link GenericRow} across the decode calls. The decoded row must not be
+   *                 reused when it is still referenced after decoding the next message, e.g. when the decoded rows are
+   *                 buffered before being indexed.
+   */
+  public StreamDataDecoderImpl(StreamMessageDecoder valueDecoder, boolean isKeyBytesType, boolean reuseRow) {
     _valueDecoder = valueDecoder;
     _isKeyBytesType = isKeyBytesType;
+    _reuse = reuseRow ? new GenericRow() : null;
   }
 
   @Override
   public StreamDataDecoderResult decode(StreamMessage message) {
     try {
-      _reuse.clear();
+      GenericRow reuse;
+      if (_reuse != null) {
+        reuse = _reuse;
+        reuse.clear();
+      } else {
+        reuse = new GenericRow();
+      }
       Object value = message.getValue();
       assert value != null;
       int length = message.getLength();
-      GenericRow row = _valueDecoder.decode(value, 0, length, _reuse);
+      GenericRow row = _valueDecoder.decode(value, 0, length, reuse);
       if (row != null) {
         if (message.getKey() != null) {
           row.putValue(KEY, _isKeyBytesType
@@ -376,6 +376,22 @@ public class CommonConstants {
         "pinot.broker.enable.query.fingerprinting";
     public static final boolean DEFAULT_BROKER_ENABLE_QUERY_FINGERPRINTING = false;
     public static final String DEFAULT_QUERY_HASH = "";
+
+    // Broker side query result cache for single-stage queries. Results are keyed on the compiled query and the segments
+    // selected by the routing, and are invalidated when the routing of any queried table changes.
+    public static final String CONFIG_OF_BROKER_QUERY_RESULT_CACHE_ENABLED = "pinot.broker.query.result.cache.enabled";
+    public static final boolean DEFAULT_BROKER_QUERY_RESULT_CACHE_ENABLED = false;
+    public static final String CONFIG_OF_BROKER_QUERY_RESULT_CACHE_MAX_SIZE_BYTES =
+        "pinot.broker.query.result.cache.max.size.bytes";
+    public static final long DEFAULT_BROKER_QUERY_RESULT_CACHE_MAX_SIZE_BYTES = 64 * 1024 * 1024L;
+    // Default TTL of the cached results, which can be overridden per table via QueryConfig.resultCacheTtlMs
+    public static final String CONFIG_OF_BROKER_QUERY_RESULT_CACHE_TTL_MS = "pinot.broker.query.result.cache.ttl.ms";
+    public static final long DEFAULT_BROKER_QUERY_RESULT_CACHE_TTL_MS = 60_000L;
+    // Whether to cache results for queries hitting REALTIME tables. The consuming segments keep changing without
+    // changing the routing, so results for such queries can be stale up to the TTL.
+    public static final String CONFIG_OF_BROKER_QUERY_RESULT_CACHE_REALTIME_ENABLED =
+        "pinot.broker.query.result.cache.realtime.enabled";
+    public static final boolean DEFAULT_BROKER_QUERY_RESULT_CACHE_REALTIME_ENABLED = false;
     public static final double DEFAULT_BROKER_QUERY_LOG_MAX_RATE_PER_SECOND = 10_000d;
     public static final String CONFIG_OF_BROKER_TIMEOUT_MS = "pinot.broker.timeoutMs";
     public static final long DEFAULT_BROKER_TIMEOUT_MS = 10_000L;
@@ -654,6 +670,11 @@ public class CommonConstants {
         public static final String SKIP_UPSERT_VIEW = "skipUpsertView";
         public static final String UPSERT_VIEW_FRESHNESS_MS = "upsertViewFreshnessMs";
         public static final String USE_STAR_TREE = "useStarTree";
+        /**
+         * When true, use the star-tree snapshot of the consuming segments even if it does not cover the most recently
+         * indexed rows (bounded by the star-tree refresh interval of the table), instead of scanning the segments.
+         */
+        public static final String ALLOW_STALE_CONSUMING_SEGMENT_STAR_TREE = "allowStaleConsumingSegmentStarTree";
         /**
          * When true, use index-based distinct (JsonIndexDistinctOperator) when applicable.
          */
@@ -663,8 +684,12 @@ public class CommonConstants {
         public static final String TABLE_SAMPLER = "sampler";
         public static final String USE_SCAN_REORDER_OPTIMIZATION = "useScanReorderOpt";
         public static final String MAX_EXECUTION_THREADS = "maxExecutionThreads";
+        // Overrides the server level minimum number of docs per morsel when splitting large segments, 0 to disable
+        public static final String MORSEL_MIN_DOCS = "morselMinDocs";
         public static final String COLLECT_GC_STATS = "collectGCStats";
         public static final String QUERY_HASH = "queryHash";
+        // Set to false to bypass the broker query result cache for a query
+        public static final String USE_RESULT_CACHE = "useResultCache";
 
         // For group-by queries with order-by clause, the tail groups are trimmed off to reduce the memory footprint. To
         // ensure the accuracy of the result, {@code max(limit * 5, minTrimSize)} groups are retained. When
@@ -759,6 +784,11 @@ public class CommonConstants {
         // TODO: Apply this to SSE as well
         /** Throw an exception on reaching num_groups_limit instead of just setting a flag. */
         public static final String ERROR_ON_NUM_GROUPS_LIMIT = "errorOnNumGroupsLimit";
+        /**
+         * Spill the rows of the new groups to disk on reaching num_groups_limit in MSE, and aggregate them partition by
+         * partition afterward instead of dropping them.
+         */
+        public static final String SPILL_ON_NUM_GROUPS_LIMIT = "spillOnNumGroupsLimit";
 
         public static final String NUM_GROUPS_LIMIT = "numGroupsLimit";
         // Not actually accepted as Query Option but faked as one during MSE
@@ -793,6 +823,14 @@ public class CommonConstants {
         public static final String MAX_ROWS_IN_JOIN = "maxRowsInJoin";
         public static final String JOIN_OVERFLOW_MODE = "joinOverflowMode";
 
+        // Number of partitions the rows are spilled into when spilling is enabled in MSE
+        public static final String NUM_SPILL_PARTITIONS = "numSpillPartitions";
+        // Max number of rows buffered in memory by each sender of a sender sorted exchange, and for each mailbox on the
+        // receiver of it, before spilling to the local disk in MSE
+        public static final String MAX_ROWS_IN_SORTED_EXCHANGE = "maxRowsInSortedExchange";
+        // Not actually accepted as Query Option but faked as one during MSE
+        public static final String MSE_SPILL_DIR = "mseSpillDir";
+
         // Early terminate DISTINCT queries based on wall-clock execution time on server
         public static final String MAX_EXECUTION_TIME_MS_IN_DISTINCT = "maxExecutionTimeMsInDistinct";
 
@@ -1272,6 +1310,28 @@ public class CommonConstants {
     public static final String CONFIG_OF_QUERY_EXECUTOR_GROUPBY_TRIM_THRESHOLD =
         QUERY_EXECUTOR_CONFIG_PREFIX + "." + GROUPBY_TRIM_THRESHOLD;
     public static final int DEFAULT_QUERY_EXECUTOR_GROUPBY_TRIM_THRESHOLD = 1_000_000;
+    // Cache of segment level aggregation and group-by results for immutable segments. The results of an immutable
+    // segment never change until the segment is reloaded or replaced, which changes the segment CRC in the cache key.
+    public static final String SEGMENT_RESULT_CACHE_ENABLED = "segment.result.cache.enabled";
+    public static final String CONFIG_OF_QUERY_EXECUTOR_SEGMENT_RESULT_CACHE_ENABLED =
+        QUERY_EXECUTOR_CONFIG_PREFIX + "." + SEGMENT_RESULT_CACHE_ENABLED;
+    public static final boolean DEFAULT_QUERY_EXECUTOR_SEGMENT_RESULT_CACHE_ENABLED = false;
+    public static final String SEGMENT_RESULT_CACHE_MAX_SIZE_BYTES = "segment.result.cache.max.size.bytes";
+    public static final String CONFIG_OF_QUERY_EXECUTOR_SEGMENT_RESULT_CACHE_MAX_SIZE_BYTES =
+        QUERY_EXECUTOR_CONFIG_PREFIX + "." + SEGMENT_RESULT_CACHE_MAX_SIZE_BYTES;
+    public static final long DEFAULT_QUERY_EXECUTOR_SEGMENT_RESULT_CACHE_MAX_SIZE_BYTES = 256L * 1024 * 1024;
+    // Segment results with more groups than this limit are not cached
+    public static final String SEGMENT_RESULT_CACHE_MAX_NUM_GROUPS = "segment.result.cache.max.num.groups";
+    public static final String CONFIG_OF_QUERY_EXECUTOR_SEGMENT_RESULT_CACHE_MAX_NUM_GROUPS =
+        QUERY_EXECUTOR_CONFIG_PREFIX + "." + SEGMENT_RESULT_CACHE_MAX_NUM_GROUPS;
+    public static final int DEFAULT_QUERY_EXECUTOR_SEGMENT_RESULT_CACHE_MAX_NUM_GROUPS = 10_000;
+    // Minimum number of docs in each doc id range (morsel) when splitting a large immutable segment into multiple
+    // morsels processed in parallel. Only applies to aggregation queries touching fewer segments than the execution
+    // threads. Non-positive value disables the split.
+    public static final String MORSEL_MIN_DOCS = "morsel.min.docs";
+    public static final String CONFIG_OF_QUERY_EXECUTOR_MORSEL_MIN_DOCS =
+        QUERY_EXECUTOR_CONFIG_PREFIX + "." + MORSEL_MIN_DOCS;
+    public static final int DEFAULT_QUERY_EXECUTOR_MORSEL_MIN_DOCS = 0;
     // Do sort-aggregation when LIMIT is below this threshold
     public static final int DEFAULT_SORT_AGGREGATE_LIMIT_THRESHOLD = 10_000;
     // Use sequential instead of pair-wise combine for sort-aggr when numSegments is below this threshold
@@ -1408,6 +1468,19 @@ public class CommonConstants {
     // Default to 0.0 (no limit)
     public static final double DEFAULT_SERVER_CONSUMPTION_RATE_LIMIT = 0.0;
 
+    // Memory budget (in bytes) shared by all the consuming segments on the server. When set, the max number of rows of
+    // a consuming segment is capped based on the memory used per row observed in the past consuming segments.
+    public static final String CONFIG_OF_SERVER_CONSUMPTION_MEMORY_BUDGET_BYTES =
+        "pinot.server.consumption.memory.budget.bytes";
+    // Default to 0 (no budget)
+    public static final long DEFAULT_SERVER_CONSUMPTION_MEMORY_BUDGET_BYTES = 0L;
+    // Expected number of consuming partitions on the server to share the memory budget. The budget is shared by at
+    // least the consuming partitions assigned to the server in the ideal states, so this is only needed to reserve the
+    // budget for the tables not loaded yet (e.g. while the server is starting up).
+    public static final String CONFIG_OF_SERVER_CONSUMPTION_MEMORY_BUDGET_EXPECTED_CONSUMING_PARTITIONS =
+        "pinot.server.consumption.memory.budget.expected.consuming.partitions";
+    public static final int DEFAULT_SERVER_CONSUMPTION_MEMORY_BUDGET_EXPECTED_CONSUMING_PARTITIONS = 0;
+
     public static final String CONFIG_OF_MMAP_DEFAULT_ADVICE = "pinot.server.mmap.advice.default";
     public static final String PREFIX_OF_CONFIG_OF_SEGMENT_FETCHER_FACTORY = "pinot.server.segment.fetcher";
 
@@ -2034,6 +2107,12 @@ public class CommonConstants {
     public static final String KEY_OF_MAX_ROWS_IN_JOIN = "pinot.query.join.max.rows";
     public static final String KEY_OF_JOIN_OVERFLOW_MODE = "pinot.query.join.overflow.mode";
 
+    /**
+     * Local directory where the operators spill the rows to when the rows cannot fit in memory. Defaults to a directory
+     * under the JVM temp directory.
+     */
+    public static final String KEY_OF_SPILL_DIR = "pinot.query.runner.spill.dir";
+
     /// Specifies the send stats mode used in MSE.
     ///
     /// Valid values are (in lower or upper case):
@@ -2068,7 +2147,7 @@ public class CommonConstants {
     public static final String KEY_OF_LOG_STATS = "logStats";
 
     public enum JoinOverFlowMode {
-      THROW, BREAK
+      THROW, BREAK, SPILL
     }
 
     /**